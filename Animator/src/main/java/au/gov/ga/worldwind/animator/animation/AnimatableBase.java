@@ -292,7 +292,7 @@ public abstract class AnimatableBase extends PropagatingChangeableEventListener
 		{
 			Validate.isTrue(context.hasKey(constants.getAnimationKey()), "An animation is required in context.");
 
-			XPath xpath = WWXML.makeXPath();
+			XPath xpath = XMLUtil.makeXPath();
 			Animation animation = (Animation) context.getValue(constants.getAnimationKey());
 			String name =
 					XMLUtil.getText(element, ATTRIBUTE_PATH_PREFIX + constants.getAnimatableAttributeName(), xpath);
@@ -141,6 +141,13 @@ public interface Animation extends AnimationObject, XmlSerializable<Animation>,
 	 */
 	KeyFrame getKeyFrameWithParameterAfterFrame(Parameter p, int frame, boolean inclusive);
 	
+	/**
+	 * @return A number that changes whenever a key frame, or one of the values
+	 *         stored in a key frame, changes. Can be used to invalidate
+	 *         information cached from the key frames.
+	 */
+	int getKeyFrameVersion();
+	
 	/**
 	 * @return The first key frame in the animation, or <code>null</code> if no key frames are recorded
 	 */
@@ -29,6 +29,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.NavigableMap;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.logging.Level;
 
@@ -40,6 +41,7 @@ import au.gov.ga.worldwind.animator.animation.camera.Camera;
 import au.gov.ga.worldwind.animator.animation.camera.CameraImpl;
 import au.gov.ga.worldwind.animator.animation.elevation.AnimatableElevation;
 import au.gov.ga.worldwind.animator.animation.elevation.DefaultAnimatableElevation;
+import au.gov.ga.worldwind.animator.animation.event.AnimationEvent;
 import au.gov.ga.worldwind.animator.animation.event.PropagatingChangeableEventListener;
 import au.gov.ga.worldwind.animator.animation.io.AnimationFileVersion;
 import au.gov.ga.worldwind.animator.animation.io.AnimationIOConstants;
@@ -81,6 +83,9 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 	private NavigableMap<Integer, KeyFrame> keyFrameMap = new TreeMap<Integer, KeyFrame>();
 	private ReadWriteLock keyFrameMapLock = new LenientReadWriteLock();
 
+	/** Incremented whenever the key frames or their values change */
+	private final AtomicInteger keyFrameVersion = new AtomicInteger();
+
 	/** The number of frames in this animation */
 	private int frameCount;
 
@@ -252,6 +257,20 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 		}
 	}
 
+	@Override
+	public int getKeyFrameVersion()
+	{
+		return keyFrameVersion.get();
+	}
+
+	@Override
+	protected boolean handleEvent(AnimationEvent event)
+	{
+		//events from the key frames (and the animatable objects) can indicate changed key frame values
+		keyFrameVersion.incrementAndGet();
+		return super.handleEvent(event);
+	}
+
 	@Override
 	public KeyFrame getFirstKeyFrame()
 	{
@@ -571,6 +590,7 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 			finally
 			{
 				keyFrameMapLock.writeLock().unlock();
+				keyFrameVersion.incrementAndGet();
 			}
 		}
 
@@ -659,6 +679,7 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 			finally
 			{
 				keyFrameMapLock.writeLock().unlock();
+				keyFrameVersion.incrementAndGet();
 			}
 		}
 
@@ -947,6 +968,7 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 			finally
 			{
 				keyFrameMapLock.writeLock().unlock();
+				keyFrameVersion.incrementAndGet();
 			}
 			fireRemoveEvent(keyFrame);
 		}
@@ -970,6 +992,7 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 		finally
 		{
 			keyFrameMapLock.writeLock().unlock();
+			keyFrameVersion.incrementAndGet();
 		}
 	}
 
@@ -1020,6 +1043,7 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 		finally
 		{
 			keyFrameMapLock.writeLock().unlock();
+			keyFrameVersion.incrementAndGet();
 		}
 
 		fireChangeEvent(newFrameCount);
@@ -1066,7 +1090,7 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 
 			context.setValue(constants.getAnimationKey(), result);
 
-			XPath xpath = WWXML.makeXPath();
+			XPath xpath = XMLUtil.makeXPath();
 
 			result.setCurrentFrame(0);
 			Integer frameCount =
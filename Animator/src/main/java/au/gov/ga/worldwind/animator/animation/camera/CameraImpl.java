@@ -205,16 +205,15 @@ public class CameraImpl extends AnimatableBase implements Camera
 	{
 		Validate.isTrue(startFrame <= endFrame, "End frame must not be less than start frame");
 
-		ParameterValue[] latValues = lat.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] lonValues = lon.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] elevationValues = elevation.getValuesBetweenFrames(startFrame, endFrame, null);
+		double[] latValues = lat.getDoubleValuesBetweenFrames(startFrame, endFrame, null);
+		double[] lonValues = lon.getDoubleValuesBetweenFrames(startFrame, endFrame, null);
+		double[] elevationValues = elevation.getDoubleValuesBetweenFrames(startFrame, endFrame, null);
 
 		Position[] result = new Position[latValues.length];
 		for (int i = 0; i < result.length; i++)
 		{
 			result[i] =
-					Position.fromDegrees(latValues[i].getValue(), lonValues[i].getValue(),
-							animation.unapplyZoomScaling(elevationValues[i].getValue()));
+					Position.fromDegrees(latValues[i], lonValues[i], animation.unapplyZoomScaling(elevationValues[i]));
 		}
 
 		return result;
@@ -164,16 +164,15 @@ public class HeadImpl extends AnimatableBase implements Head
 	{
 		Validate.isTrue(startFrame <= endFrame, "End frame must not be less than start frame");
 
-		ParameterValue[] xValues = rotationX.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] yValues = rotationY.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] zValues = rotationZ.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] wValues = rotationW.getValuesBetweenFrames(startFrame, endFrame, null);
+		double[] xValues = rotationX.getDoubleValuesBetweenFrames(startFrame, endFrame, null);
+		double[] yValues = rotationY.getDoubleValuesBetweenFrames(startFrame, endFrame, null);
+		double[] zValues = rotationZ.getDoubleValuesBetweenFrames(startFrame, endFrame, null);
+		double[] wValues = rotationW.getDoubleValuesBetweenFrames(startFrame, endFrame, null);
 
 		Quaternion[] result = new Quaternion[xValues.length];
 		for (int i = 0; i < result.length; i++)
 		{
-			result[i] = new Quaternion(xValues[i].getValue(), yValues[i].getValue(), zValues[i].getValue(),
-					wValues[i].getValue());
+			result[i] = new Quaternion(xValues[i], yValues[i], zValues[i], wValues[i]);
 		}
 
 		return result;
@@ -191,14 +190,14 @@ public class HeadImpl extends AnimatableBase implements Head
 	{
 		Validate.isTrue(startFrame <= endFrame, "End frame must not be less than start frame");
 
-		ParameterValue[] xValues = positionX.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] yValues = positionY.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] zValues = positionZ.getValuesBetweenFrames(startFrame, endFrame, null);
+		double[] xValues = positionX.getDoubleValuesBetweenFrames(startFrame, endFrame, null);
+		double[] yValues = positionY.getDoubleValuesBetweenFrames(startFrame, endFrame, null);
+		double[] zValues = positionZ.getDoubleValuesBetweenFrames(startFrame, endFrame, null);
 
 		Vec4[] result = new Vec4[xValues.length];
 		for (int i = 0; i < result.length; i++)
 		{
-			result[i] = new Vec4(xValues[i].getValue(), yValues[i].getValue(), zValues[i].getValue());
+			result[i] = new Vec4(xValues[i], yValues[i], zValues[i]);
 		}
 
 		return result;
@@ -19,7 +19,6 @@ import static au.gov.ga.worldwind.animator.util.message.AnimationMessageConstant
 import static au.gov.ga.worldwind.common.util.message.MessageSourceAccessor.getMessageOrDefault;
 import gov.nasa.worldwind.View;
 import gov.nasa.worldwind.avlist.AVList;
-import gov.nasa.worldwind.util.WWXML;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -164,11 +163,11 @@ public class StereoCameraImpl extends CameraImpl implements StereoCamera
 			StereoCameraImpl stereo = (StereoCameraImpl) camera;
 			stereo.focalLength =
 					new FocalLengthParameter().fromXml(
-							WWXML.getElement(element, constants.getCameraFocalLengthElementName(), null), version,
+							XMLUtil.getElement(element, constants.getCameraFocalLengthElementName(), null), version,
 							context);
 			stereo.eyeSeparation =
 					new FocalLengthParameter().fromXml(
-							WWXML.getElement(element, constants.getCameraEyeSeparationElementName(), null), version,
+							XMLUtil.getElement(element, constants.getCameraEyeSeparationElementName(), null), version,
 							context);
 			stereo.dynamicStereo = XMLUtil.getBoolean(element, constants.getCameraDynamicStereoElementName(), true);
 		}
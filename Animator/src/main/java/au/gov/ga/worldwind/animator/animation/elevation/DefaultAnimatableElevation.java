@@ -44,6 +44,7 @@ import au.gov.ga.worldwind.animator.terrain.ElevationModelIdentifierImpl;
 import au.gov.ga.worldwind.animator.terrain.exaggeration.ElevationExaggeration;
 import au.gov.ga.worldwind.animator.terrain.exaggeration.VerticalExaggerationElevationModel;
 import au.gov.ga.worldwind.common.util.Validate;
+import au.gov.ga.worldwind.common.util.XMLUtil;
 
 /**
  * The default implementation of the {@link AnimatableElevation} interface
@@ -250,16 +251,16 @@ public class DefaultAnimatableElevation extends AnimatableBase implements Animat
 
 		// Load the models
 		Element[] modelIdentifierElements =
-				WWXML.getElements(element, "./" + constants.getAnimatableElevationModelContainerName() + "/*", null);
+				XMLUtil.getElements(element, "./" + constants.getAnimatableElevationModelContainerName() + "/*", null);
 		if (modelIdentifierElements != null)
 		{
 			for (Element modelIdentifierElement : modelIdentifierElements)
 			{
 				String modelName =
-						WWXML.getText(modelIdentifierElement,
+						XMLUtil.getText(modelIdentifierElement,
 								ATTRIBUTE_PATH_PREFIX + constants.getAnimatableAttributeName());
 				String modelUrl =
-						WWXML.getText(modelIdentifierElement,
+						XMLUtil.getText(modelIdentifierElement,
 								ATTRIBUTE_PATH_PREFIX + constants.getAnimatableAttributeUrl());
 				result.addElevationModel(new ElevationModelIdentifierImpl(modelName, modelUrl));
 			}
@@ -268,7 +269,7 @@ public class DefaultAnimatableElevation extends AnimatableBase implements Animat
 		// Load the exaggerators
 		ElevationExaggerationParameterImpl parameterFactory = new ElevationExaggerationParameterImpl();
 		Element[] exaggeratorElements =
-				WWXML.getElements(element, "./" + constants.getElevationExaggerationElementName(), null);
+				XMLUtil.getElements(element, "./" + constants.getElevationExaggerationElementName(), null);
 		if (exaggeratorElements != null)
 		{
 			for (Element exaggeratorElement : exaggeratorElements)
@@ -32,6 +32,7 @@ import au.gov.ga.worldwind.animator.animation.parameter.ParameterValueFactory;
 import au.gov.ga.worldwind.animator.terrain.exaggeration.ElevationExaggeration;
 import au.gov.ga.worldwind.animator.terrain.exaggeration.ElevationExaggerationImpl;
 import au.gov.ga.worldwind.common.util.Validate;
+import au.gov.ga.worldwind.common.util.XMLUtil;
 
 /**
  * Default implementation of the {@link ElevationExaggerationParameter}
@@ -127,10 +128,10 @@ public class ElevationExaggerationParameterImpl extends ParameterBase implements
 		AnimationIOConstants constants = version.getConstants();
 
 		double boundary =
-				WWXML.getDouble(element,
+				XMLUtil.getDouble(element,
 						ATTRIBUTE_PATH_PREFIX + constants.getElevationExaggerationBoundaryAttributeName(), null);
 		double exaggeration =
-				WWXML.getDouble(parameterElement,
+				XMLUtil.getDouble(parameterElement,
 						ATTRIBUTE_PATH_PREFIX + constants.getParameterAttributeDefaultValue(), null);
 
 		ElevationExaggeration exaggerator = new ElevationExaggerationImpl(exaggeration, boundary);
@@ -96,7 +96,7 @@ public class XmlAnimationReader implements AnimationReader
 			}
 			default:
 			{
-				Element animationElement = WWXML.getElement(xmlDocument.getDocumentElement(), version.getConstants().getAnimationElementName(), null);
+				Element animationElement = XMLUtil.getElement(xmlDocument.getDocumentElement(), version.getConstants().getAnimationElementName(), null);
 				return new WorldWindAnimationImpl(worldWindow).fromXml(animationElement, version, context);
 			}
 			
@@ -125,7 +125,7 @@ public class XmlAnimationReader implements AnimationReader
 		// If it's V2 or above, get the version from the root node attribute
 		if (rootElement.getNodeName().equals(AnimationFileVersion.VERSION020.getConstants().getRootElementName()))
 		{
-			return AnimationFileVersion.fromDisplayName(WWXML.getText(rootElement, XmlSerializable.ATTRIBUTE_PATH_PREFIX + WORLD_WIND_ANIMATION_VERSION, null));
+			return AnimationFileVersion.fromDisplayName(XMLUtil.getText(rootElement, XmlSerializable.ATTRIBUTE_PATH_PREFIX + WORLD_WIND_ANIMATION_VERSION));
 		}
 		// Otherwise, check for a V1 file
 		else if (rootElement.getNodeName().equals(AnimationFileVersion.VERSION010.getConstants().getRootElementName()))
@@ -44,6 +44,7 @@ import au.gov.ga.worldwind.animator.layers.LayerIdentifier;
 import au.gov.ga.worldwind.animator.layers.LayerIdentifierFactory;
 import au.gov.ga.worldwind.common.util.AVKeyMore;
 import au.gov.ga.worldwind.common.util.Validate;
+import au.gov.ga.worldwind.common.util.XMLUtil;
 
 /**
  * A default implementation of the {@link AnimatableLayer} interface.
@@ -204,7 +205,7 @@ public class DefaultAnimatableLayer extends AnimatableBase implements Animatable
 		AnimationIOConstants constants = version.getConstants();
 
 		// Extract the layer properties from the XML
-		String layerUrlString = WWXML.getText(element, ATTRIBUTE_PATH_PREFIX + constants.getAnimatableAttributeUrl());
+		String layerUrlString = XMLUtil.getText(element, ATTRIBUTE_PATH_PREFIX + constants.getAnimatableAttributeUrl());
 		if (layerUrlString == null)
 		{
 			Logging.logger().log(Level.WARNING, "No url found for layer " + name);
@@ -228,7 +229,7 @@ public class DefaultAnimatableLayer extends AnimatableBase implements Animatable
 		// Load the parameters for the layer
 		context.setValue(constants.getCurrentLayerKey(), loadedLayer);
 		List<LayerParameter> parameters = new ArrayList<LayerParameter>();
-		Element[] parameterElements = WWXML.getElements(element, "./*", null);
+		Element[] parameterElements = XMLUtil.getElements(element, "./*", null);
 		if (parameterElements != null)
 		{
 			for (Element parameterElement : parameterElements)
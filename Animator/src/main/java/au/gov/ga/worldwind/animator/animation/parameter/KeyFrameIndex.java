@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.animation.parameter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.animator.animation.KeyFrame;
+import au.gov.ga.worldwind.animator.math.interpolation.Interpolator;
+import au.gov.ga.worldwind.animator.math.vector.Vector2;
+
+/**
+ * A sorted index of the {@link KeyFrame}s that contain a value for a single
+ * {@link Parameter}, used to evaluate the parameter at any frame without
+ * searching the {@link Animation}'s key frames.
+ * <p/>
+ * The {@link Interpolator} for each pair of consecutive key frames is created
+ * the first time it is needed, and reused for every frame in that interval.
+ * <p/>
+ * An index is a snapshot of the key frames at a particular
+ * {@link Animation#getKeyFrameVersion()}, and should be discarded when the
+ * version changes.
+ * 
+ * @author Michael de Hoog (michael.deHoog@ga.gov.au)
+ */
+public class KeyFrameIndex
+{
+	private final int version;
+	private final int[] frames;
+	private final ParameterValue[] values;
+	private final List<Interpolator<Vector2>> interpolators;
+
+	public KeyFrameIndex(Parameter parameter, List<KeyFrame> keyFrames, int version)
+	{
+		this.version = version;
+		frames = new int[keyFrames.size()];
+		values = new ParameterValue[keyFrames.size()];
+		for (int i = 0; i < frames.length; i++)
+		{
+			KeyFrame keyFrame = keyFrames.get(i);
+			frames[i] = keyFrame.getFrame();
+			values[i] = keyFrame.getValueForParameter(parameter);
+		}
+		interpolators = new ArrayList<Interpolator<Vector2>>(Collections.<Interpolator<Vector2>> nCopies(
+				Math.max(0, frames.length - 1), null));
+	}
+
+	/**
+	 * @return The {@link Animation#getKeyFrameVersion()} this index was
+	 *         created from
+	 */
+	public int getVersion()
+	{
+		return version;
+	}
+
+	/**
+	 * @return Are there no key frames with a value for the parameter?
+	 */
+	public boolean isEmpty()
+	{
+		return frames.length == 0;
+	}
+
+	/**
+	 * Calculate the value of the parameter at the given frame.
+	 * <p/>
+	 * Before the first key frame the first key frame's value is returned, and
+	 * after the last key frame the last key frame's value is returned. Between
+	 * two key frames the value is interpolated, and a new
+	 * {@link ParameterValue} is created.
+	 * 
+	 * @param parameter
+	 *            Parameter this index was created for
+	 * @param frame
+	 * @return Value at the given frame, or <code>null</code> if the index is
+	 *         empty
+	 */
+	public ParameterValue getValueAtFrame(Parameter parameter, int frame)
+	{
+		if (isEmpty())
+		{
+			return null;
+		}
+
+		int index = floorIndex(frame);
+		if (index < 0)
+		{
+			return values[0];
+		}
+		if (index == frames.length - 1 || frames[index] == frame)
+		{
+			return values[index];
+		}
+		return ParameterValueFactory.createParameterValue(parameter, interpolate(index, frame), frame);
+	}
+
+	/**
+	 * Calculate the values of the parameter between the given frames
+	 * (inclusive). See {@link #getValueAtFrame(Parameter, int)}.
+	 * 
+	 * @param startFrame
+	 *            Start frame (inclusive)
+	 * @param endFrame
+	 *            End frame (inclusive)
+	 * @param array
+	 *            Array to put the values in, starting at index 0
+	 */
+	public void getValuesBetweenFrames(int startFrame, int endFrame, double[] array)
+	{
+		int index = floorIndex(startFrame);
+		for (int frame = startFrame; frame <= endFrame; frame++)
+		{
+			//move to the next interval when passing a key frame
+			while (index < frames.length - 1 && frame >= frames[index + 1])
+			{
+				index++;
+			}
+
+			double value;
+			if (index < 0)
+			{
+				value = values[0].getValue();
+			}
+			else if (index == frames.length - 1 || frames[index] == frame)
+			{
+				value = values[index].getValue();
+			}
+			else
+			{
+				value = interpolate(index, frame);
+			}
+			array[frame - startFrame] = value;
+		}
+	}
+
+	/**
+	 * @return The index of the last key frame at or before the given frame, or
+	 *         -1 if the frame is before the first key frame
+	 */
+	private int floorIndex(int frame)
+	{
+		int index = Arrays.binarySearch(frames, frame);
+		return index >= 0 ? index : -index - 2;
+	}
+
+	/**
+	 * Interpolate the value at a frame between the key frame at the given
+	 * index and the next key frame.
+	 */
+	private double interpolate(int index, int frame)
+	{
+		Interpolator<Vector2> interpolator = interpolators.get(index);
+		if (interpolator == null)
+		{
+			//benign race: concurrent callers would create identical interpolators
+			interpolator = InterpolatorFactory.getInterpolator(values[index], values[index + 1]);
+			interpolators.set(index, interpolator);
+		}
+		double percent = ((double) (frame - frames[index])) / ((double) (frames[index + 1] - frames[index]));
+		return interpolator.computeValue(percent).y;
+	}
+}
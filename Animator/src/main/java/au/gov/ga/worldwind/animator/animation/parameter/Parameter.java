@@ -98,6 +98,25 @@ public interface Parameter extends AnimationObject, Serializable, Nameable, XmlS
 	 */
 	ParameterValue[] getValuesBetweenFrames(int startFrame, int endFrame, ParameterValue[] array);
 
+	/**
+	 * Get the raw values of this {@link Parameter} between the provided frames,
+	 * inclusive. Equivalent to calling {@link ParameterValue#getValue()} on
+	 * each of the values returned by
+	 * {@link #getValuesBetweenFrames(int, int, ParameterValue[])}, without
+	 * creating a {@link ParameterValue} for each frame.
+	 * 
+	 * @param startFrame
+	 *            Start frame (inclusive)
+	 * @param endFrame
+	 *            End frame (inclusive)
+	 * @param array
+	 *            Array to put values in (if null or doesn't contain enough
+	 *            space, a new array is returned)
+	 * 
+	 * @return Values for the frames provided.
+	 */
+	double[] getDoubleValuesBetweenFrames(int startFrame, int endFrame, double[] array);
+
 	/**
 	 * Get the default value of this parameter. This could be a static value
 	 * stored in the parameter, or a dynamic value based on the current state of
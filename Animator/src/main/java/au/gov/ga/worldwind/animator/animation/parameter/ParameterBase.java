@@ -37,6 +37,7 @@ import au.gov.ga.worldwind.animator.util.Armable;
 import au.gov.ga.worldwind.animator.util.CodependantHelper;
 import au.gov.ga.worldwind.animator.util.Enableable;
 import au.gov.ga.worldwind.common.util.Validate;
+import au.gov.ga.worldwind.common.util.XMLUtil;
 
 /**
  * Base implementation of the {@link Parameter} interface.
@@ -71,6 +72,9 @@ public abstract class ParameterBase extends PropagatingChangeableEventListener i
 
 	private final CodependantHelper codependantHelper;
 
+	/** Index of the key frames with a value for this parameter */
+	private transient volatile KeyFrameIndex keyFrameIndex;
+
 	/**
 	 * Constructor. Initialises the mandatory {@link Animation} parameter.
 	 */
@@ -219,9 +223,12 @@ public abstract class ParameterBase extends PropagatingChangeableEventListener i
 	public final ParameterValue getValueAtFrame(int frame)
 	{
 		// Interpolate between the two surrounding frames
-		KeyFrame previousKeyFrame = animation.getKeyFrameWithParameterBeforeFrame(this, frame, true);
-		KeyFrame nextKeyFrame = animation.getKeyFrameWithParameterAfterFrame(this, frame, false);
-		return calculateInterpolatedParameterValue(frame, previousKeyFrame, nextKeyFrame);
+		KeyFrameIndex index = getKeyFrameIndex();
+		if (index.isEmpty())
+		{
+			return ParameterValueFactory.createParameterValue(this, getDefaultValue(frame), frame);
+		}
+		return index.getValueAtFrame(this, frame);
 	}
 
 	@Override
@@ -234,26 +241,67 @@ public abstract class ParameterBase extends PropagatingChangeableEventListener i
 			array = new ParameterValue[endFrame - startFrame + 1];
 		}
 
-		KeyFrame previousKeyFrame = null;
-		KeyFrame nextKeyFrame = null;
+		KeyFrameIndex index = getKeyFrameIndex();
 		for (int frame = startFrame; frame <= endFrame; frame++)
 		{
-			//if the frame is outside of the bounds of previous and next, then recalculate
-			if (frame == startFrame || (nextKeyFrame != null && frame >= nextKeyFrame.getFrame()))
+			array[frame - startFrame] =
+					index.isEmpty() ? ParameterValueFactory.createParameterValue(this, getDefaultValue(frame), frame)
+							: index.getValueAtFrame(this, frame);
+		}
+
+		return array;
+	}
+
+	@Override
+	public double[] getDoubleValuesBetweenFrames(int startFrame, int endFrame, double[] array)
+	{
+		Validate.isTrue(startFrame <= endFrame, "End frame must not be less than start frame");
+
+		if (array == null || array.length < (endFrame - startFrame + 1))
+		{
+			array = new double[endFrame - startFrame + 1];
+		}
+
+		KeyFrameIndex index = getKeyFrameIndex();
+		if (index.isEmpty())
+		{
+			for (int frame = startFrame; frame <= endFrame; frame++)
 			{
-				previousKeyFrame = animation.getKeyFrameWithParameterBeforeFrame(this, frame, true);
-				nextKeyFrame = animation.getKeyFrameWithParameterAfterFrame(this, frame, false);
+				array[frame - startFrame] = getDefaultValue(frame);
 			}
-			array[frame - startFrame] = calculateInterpolatedParameterValue(frame, previousKeyFrame, nextKeyFrame);
+		}
+		else
+		{
+			index.getValuesBetweenFrames(startFrame, endFrame, array);
 		}
 
 		return array;
 	}
 
 	/**
-	 * Invoked by the {@link ParameterBase#getValueAtFrame(int)} and
+	 * @return The index of the key frames with a value for this parameter,
+	 *         recreating it if the animation's key frames have changed since
+	 *         it was created
+	 */
+	protected KeyFrameIndex getKeyFrameIndex()
+	{
+		int version = animation.getKeyFrameVersion();
+		KeyFrameIndex index = keyFrameIndex;
+		if (index == null || index.getVersion() != version)
+		{
+			index = new KeyFrameIndex(this, animation.getKeyFrames(this), version);
+			keyFrameIndex = index;
+		}
+		return index;
+	}
+
+	/**
+	 * Calculate the value of this parameter at the given frame, between the
+	 * two provided key frames (either of which can be null).
+	 * <p/>
+	 * Note that {@link ParameterBase#getValueAtFrame(int)} and
 	 * {@link ParameterBase#getValuesBetweenFrames(int, int, ParameterValue[])}
-	 * functions.
+	 * use the {@link KeyFrameIndex} instead, which caches the interpolators.
 	 */
 	protected ParameterValue calculateInterpolatedParameterValue(int frame, KeyFrame previousKeyFrame,
 			KeyFrame nextKeyFrame)
@@ -404,7 +452,7 @@ public abstract class ParameterBase extends PropagatingChangeableEventListener i
 		Validate.notNull(context, "A context is required");
 
 		AnimationIOConstants constants = version.getConstants();
-		Element parameterElement = WWXML.getElement(element, "./" + constants.getParameterElementName(), null);
+		Element parameterElement = XMLUtil.getElement(element, "./" + constants.getParameterElementName(), null);
 		Validate.notNull(parameterElement, "<" + constants.getParameterElementName() + "> element not found");
 
 		switch (version)
@@ -415,19 +463,19 @@ public abstract class ParameterBase extends PropagatingChangeableEventListener i
 
 			Animation animation = (Animation) context.getValue(constants.getAnimationKey());
 			String name =
-					WWXML.getText(parameterElement, ATTRIBUTE_PATH_PREFIX + constants.getAnimatableAttributeName());
+					XMLUtil.getText(parameterElement, ATTRIBUTE_PATH_PREFIX + constants.getAnimatableAttributeName());
 			ParameterBase result = createParameterFromXml(name, animation, element, parameterElement, version, context);
 
-			result.setDefaultValue(WWXML.getDouble(parameterElement,
+			result.setDefaultValue(XMLUtil.getDouble(parameterElement,
 					ATTRIBUTE_PATH_PREFIX + constants.getParameterAttributeDefaultValue(), null));
-			result.setEnabled(WWXML.getBoolean(parameterElement,
+			result.setEnabled(XMLUtil.getBoolean(parameterElement,
 					ATTRIBUTE_PATH_PREFIX + constants.getParameterAttributeEnabled(), null));
 
 			// Create a parameter value for each child element
 			// Insert it as a key frame (relies on key frames being merged)
 			context.setValue(constants.getParameterValueOwnerKey(), result);
 			Element[] parameterValueElements =
-					WWXML.getElements(parameterElement, constants.getParameterValueElementName(), null);
+					XMLUtil.getElements(parameterElement, constants.getParameterValueElementName(), null);
 			if (parameterValueElements != null)
 			{
 				for (Element e : parameterValueElements)
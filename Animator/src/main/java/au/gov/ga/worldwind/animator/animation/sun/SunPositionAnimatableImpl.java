@@ -33,6 +33,7 @@ import au.gov.ga.worldwind.animator.animation.Animation;
 import au.gov.ga.worldwind.animator.animation.io.AnimationFileVersion;
 import au.gov.ga.worldwind.animator.animation.io.AnimationIOConstants;
 import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
+import au.gov.ga.worldwind.common.util.XMLUtil;
 
 /**
  * Basic implementation of {@link SunPositionAnimatable}.
@@ -113,7 +114,7 @@ public class SunPositionAnimatableImpl extends AnimatableBase implements SunPosi
 			Element element, AnimationFileVersion version, AVList context)
 	{
 		AnimationIOConstants constants = version.getConstants();
-		XPath xpath = WWXML.makeXPath();
+		XPath xpath = XMLUtil.makeXPath();
 
 		SunPositionAnimatableImpl animatable = new SunPositionAnimatableImpl(name, animation);
 
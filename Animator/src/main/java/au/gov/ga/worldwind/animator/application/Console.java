@@ -35,7 +35,9 @@ import javax.media.opengl.GLProfile;
 import au.gov.ga.worldwind.animator.animation.Animation;
 import au.gov.ga.worldwind.animator.animation.RenderParameters;
 import au.gov.ga.worldwind.animator.animation.io.XmlAnimationReader;
-import au.gov.ga.worldwind.animator.application.render.AnimationRenderer;
+import au.gov.ga.worldwind.animator.application.render.DistributedRenderWorker;
+import au.gov.ga.worldwind.animator.application.render.FrameLeaseManager;
+import au.gov.ga.worldwind.animator.application.render.StereoOffscreenRenderer;
 import au.gov.ga.worldwind.animator.application.settings.Settings;
 import au.gov.ga.worldwind.animator.view.AnimatorView;
 
@@ -59,6 +61,14 @@ public class Console
 
 		try
 		{
+			if (parameters.cacheDirectory != null)
+			{
+				//the data file store writes to the first writable location, so these must be set before initialisation
+				String cacheDirectory = new File(parameters.cacheDirectory).getAbsolutePath();
+				System.setProperty("gov.nasa.worldwind.platform.user.store", cacheDirectory);
+				System.setProperty("gov.nasa.worldwind.platform.alluser.store", cacheDirectory);
+			}
+
 			AnimatorConfiguration.initialiseConfiguration();
 			Settings.get();
 
@@ -84,7 +94,7 @@ public class Console
 			File output = new File(parameters.outputFile);
 			XmlAnimationReader animationReader = new XmlAnimationReader();
 			Animation animation = animationReader.readAnimation(input, wwd);
-			AnimationRenderer renderer = new ConsoleOffscreenRenderer(wwd);
+			StereoOffscreenRenderer renderer = new ConsoleOffscreenRenderer(wwd);
 
 			((AnimatorSceneController) wwd.getSceneController()).setAnimation(animation);
 			model.getGlobe().setElevationModel(animation.getRootElevationModel());
@@ -121,6 +131,21 @@ public class Console
 				renderParams.setImageScalePercent(100);
 			}
 
+			FrameLeaseManager leases = null;
+			if (parameters.jobDirectory != null)
+			{
+				File jobDirectory = new File(parameters.jobDirectory);
+				FrameLeaseManager.createJob(jobDirectory, parameters.start, parameters.end, parameters.chunkSize);
+				leases =
+						new FrameLeaseManager(jobDirectory, FrameLeaseManager.createWorkerId(),
+								parameters.leaseTimeout * 1000L);
+				if (parameters.coordinate)
+				{
+					coordinate(leases);
+					return;
+				}
+			}
+
 			GLDrawableFactory factory = GLDrawableFactory.getFactory(GLProfile.get(GLProfile.GL2));
 			GLOffscreenAutoDrawable drawable =
 					factory.createOffscreenAutoDrawable(null, AnimatorConfiguration.getGLCapabilities(), null,
@@ -128,8 +153,19 @@ public class Console
 			drawable.display();
 			wwd.initDrawable(drawable);
 
-			Thread thread = renderer.render(animation, renderParams);
-			thread.join();
+			if (leases != null)
+			{
+				DistributedRenderWorker worker =
+						new DistributedRenderWorker(leases, new ConsoleFrameRenderer(renderer, animation, renderParams));
+				worker.run();
+				System.out.println("Rendered " + worker.getRenderedFrameCount() + " frames, skipped "
+						+ worker.getSkippedFrameCount() + " already rendered frames");
+			}
+			else
+			{
+				Thread thread = renderer.render(animation, renderParams);
+				thread.join();
+			}
 		}
 		catch (Exception e)
 		{
@@ -139,6 +175,23 @@ public class Console
 		System.out.println("Main thread exiting");
 	}
 
+	private static void coordinate(FrameLeaseManager leases) throws InterruptedException
+	{
+		System.out.println("Coordinating job of " + leases.getChunkCount() + " chunks (frames "
+				+ leases.getStartFrame() + "-" + leases.getEndFrame() + ")");
+		while (true)
+		{
+			int completed = leases.getCompletedChunkCount();
+			System.out.println(completed + " of " + leases.getChunkCount() + " chunks complete, "
+					+ leases.getLeasedChunkCount() + " leased");
+			if (completed >= leases.getChunkCount())
+			{
+				break;
+			}
+			Thread.sleep(DistributedRenderWorker.DEFAULT_POLL_INTERVAL);
+		}
+	}
+
 	private static ConsoleParameters handleCommandLineArguments(String[] args)
 	{
 		ConsoleParameters parameters = new ConsoleParameters();
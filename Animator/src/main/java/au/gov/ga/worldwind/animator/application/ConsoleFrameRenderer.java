@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright 2014 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.application;
+
+import java.awt.Dimension;
+import java.io.File;
+
+import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.animator.animation.RenderParameters;
+import au.gov.ga.worldwind.animator.application.render.AnimationImageSequenceNameFactory;
+import au.gov.ga.worldwind.animator.application.render.DistributedRenderWorker;
+import au.gov.ga.worldwind.animator.application.render.DistributedRenderWorker.FrameRenderer;
+import au.gov.ga.worldwind.animator.application.render.StereoOffscreenRenderer;
+import au.gov.ga.worldwind.animator.util.TGAScreenshot;
+import au.gov.ga.worldwind.common.view.stereo.IStereoViewDelegate.Eye;
+
+/**
+ * {@link FrameRenderer} used by the {@link Console} to render the chunks of
+ * frames leased by a {@link DistributedRenderWorker}. A frame is treated as
+ * rendered if its TARGA files (one per eye for stereo animations) have been
+ * completely written.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class ConsoleFrameRenderer implements FrameRenderer
+{
+	private final StereoOffscreenRenderer renderer;
+	private final Animation animation;
+	private final RenderParameters renderParams;
+
+	public ConsoleFrameRenderer(StereoOffscreenRenderer renderer, Animation animation, RenderParameters renderParams)
+	{
+		this.renderer = renderer;
+		this.animation = animation;
+		this.renderParams = renderParams;
+	}
+
+	@Override
+	public void render(int firstFrame, int lastFrame) throws Exception
+	{
+		renderParams.setStartFrame(firstFrame);
+		renderParams.setEndFrame(lastFrame);
+		Thread thread = renderer.render(animation, renderParams);
+		if (thread == null)
+		{
+			throw new IllegalStateException("Renderer did not start rendering frames " + firstFrame + "-" + lastFrame);
+		}
+		thread.join();
+	}
+
+	@Override
+	public boolean isRendered(int frame)
+	{
+		Dimension dimension = renderParams.getRenderDimension();
+		for (File file : getFrameFiles(frame))
+		{
+			if (!TGAScreenshot.isCompleteTargaFile(file, dimension.width, dimension.height))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void stop()
+	{
+		renderer.stop();
+	}
+
+	private File[] getFrameFiles(int frame)
+	{
+		String frameName = renderParams.getFrameName();
+		File directory = renderParams.getRenderDirectory();
+		if (renderer.isStereo(animation))
+		{
+			return new File[] {
+					AnimationImageSequenceNameFactory.createStereoImageSequenceFile(animation, frame, frameName,
+							directory, Eye.LEFT),
+					AnimationImageSequenceNameFactory.createStereoImageSequenceFile(animation, frame, frameName,
+							directory, Eye.RIGHT) };
+		}
+		return new File[] { AnimationImageSequenceNameFactory.createImageSequenceFile(animation, frame, frameName,
+				directory) };
+	}
+}
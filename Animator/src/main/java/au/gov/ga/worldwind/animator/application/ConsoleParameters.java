@@ -45,6 +45,21 @@ public class ConsoleParameters
 	@Parameter(names = { "-h", "-height" }, description = "Override the height of the rendered frames.", required = false)
 	public Integer height = null;
 
+	@Parameter(names = { "-j", "-job" }, description = "Shared job directory for distributed rendering; frames are leased in chunks by each console rendering the same job.", required = false)
+	public String jobDirectory = null;
+
+	@Parameter(names = { "-c", "-chunk" }, description = "Number of frames leased at a time when rendering a distributed job.", required = false)
+	public int chunkSize = 25;
+
+	@Parameter(names = { "-lease" }, description = "Time (in seconds) after which the lease of an unresponsive distributed job worker expires.", required = false)
+	public int leaseTimeout = 120;
+
+	@Parameter(names = { "-coordinate" }, description = "Create the distributed job and report its progress until complete, without rendering.", required = false)
+	public boolean coordinate = false;
+
+	@Parameter(names = { "-cache" }, description = "Tile cache directory (can be shared between distributed job workers).", required = false)
+	public String cacheDirectory = null;
+
 	@Parameter(names = { "-?", "-help" }, description = "Print these command line usage instructions.")
 	public boolean showUsage = false;
 }
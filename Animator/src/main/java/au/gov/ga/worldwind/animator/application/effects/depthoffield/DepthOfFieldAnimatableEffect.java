@@ -32,6 +32,7 @@ import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
 import au.gov.ga.worldwind.animator.application.effects.AnimatableEffect;
 import au.gov.ga.worldwind.animator.application.effects.AnimatableEffectBase;
 import au.gov.ga.worldwind.common.effects.depthoffield.DepthOfFieldEffect;
+import au.gov.ga.worldwind.common.util.XMLUtil;
 
 /**
  * {@link AnimatableEffect} implementation that provides a depth-of-field effect, with
@@ -104,7 +105,7 @@ public class DepthOfFieldAnimatableEffect extends AnimatableEffectBase<DepthOfFi
 			Element element, AnimationFileVersion version, AVList context)
 	{
 		AnimationIOConstants constants = version.getConstants();
-		XPath xpath = WWXML.makeXPath();
+		XPath xpath = XMLUtil.makeXPath();
 
 		DepthOfFieldAnimatableEffect effect = new DepthOfFieldAnimatableEffect(name, animation);
 		context.setValue(constants.getCurrentEffectKey(), effect);
@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright 2014 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.application.render;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import au.gov.ga.worldwind.animator.application.render.FrameLeaseManager.Chunk;
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
+
+/**
+ * Renders the frames of a distributed render job, leasing chunks of frames
+ * from a {@link FrameLeaseManager} until the job is complete.
+ * <p/>
+ * Frames whose output has already been written and verified (for example, by
+ * a worker that died before completing its chunk) are skipped. While a chunk
+ * is being rendered, its lease is renewed by a heartbeat thread; if the lease
+ * is lost, rendering of the chunk is stopped, and the worker moves on.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class DistributedRenderWorker
+{
+	public static final long DEFAULT_POLL_INTERVAL = 5000;
+
+	private final FrameLeaseManager leases;
+	private final FrameRenderer renderer;
+	private final AtomicBoolean stopped = new AtomicBoolean(false);
+	private long pollInterval = DEFAULT_POLL_INTERVAL;
+
+	private int renderedFrameCount;
+	private int skippedFrameCount;
+
+	public DistributedRenderWorker(FrameLeaseManager leases, FrameRenderer renderer)
+	{
+		this.leases = leases;
+		this.renderer = renderer;
+	}
+
+	/**
+	 * Lease and render chunks until the job is complete, or the worker is
+	 * stopped. When no chunks are available (because they are all leased by
+	 * other workers), the job is polled for completed or expired chunks.
+	 * 
+	 * @throws Exception
+	 *             if a frame fails to render, or isn't written by the
+	 *             renderer; the chunk is released for another worker before
+	 *             the exception is thrown
+	 */
+	public void run() throws Exception
+	{
+		while (!stopped.get())
+		{
+			Chunk chunk = leases.acquire();
+			if (chunk == null)
+			{
+				if (leases.isComplete())
+				{
+					break;
+				}
+				Thread.sleep(pollInterval);
+				continue;
+			}
+			renderChunk(chunk);
+		}
+	}
+
+	/**
+	 * Stop rendering. The current chunk's lease is released.
+	 */
+	public void stop()
+	{
+		stopped.set(true);
+		renderer.stop();
+	}
+
+	protected void renderChunk(final Chunk chunk) throws Exception
+	{
+		final AtomicBoolean chunkFinished = new AtomicBoolean(false);
+		final AtomicBoolean leaseLost = new AtomicBoolean(false);
+		final long heartbeatInterval = Math.max(1, leases.getLeaseTimeout() / 4);
+		Thread heartbeatThread = DaemonThreadFactory.newThread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				while (!chunkFinished.get())
+				{
+					try
+					{
+						Thread.sleep(heartbeatInterval);
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+					if (!chunkFinished.get() && !leases.heartbeat(chunk))
+					{
+						leaseLost.set(true);
+						renderer.stop();
+						return;
+					}
+				}
+			}
+		}, "Render lease heartbeat");
+		heartbeatThread.start();
+
+		boolean complete = false;
+		boolean missingFrames = false;
+		try
+		{
+			//render each run of frames that haven't already been rendered
+			int frame = chunk.firstFrame;
+			while (frame <= chunk.lastFrame && !leaseLost.get() && !stopped.get())
+			{
+				if (renderer.isRendered(frame))
+				{
+					skippedFrameCount++;
+					frame++;
+					continue;
+				}
+				int last = frame;
+				while (last < chunk.lastFrame && !renderer.isRendered(last + 1))
+				{
+					last++;
+				}
+				renderer.render(frame, last);
+				renderedFrameCount += last - frame + 1;
+				frame = last + 1;
+			}
+
+			if (!leaseLost.get() && !stopped.get())
+			{
+				complete = isRendered(chunk);
+				missingFrames = !complete;
+			}
+		}
+		finally
+		{
+			chunkFinished.set(true);
+			heartbeatThread.interrupt();
+			heartbeatThread.join();
+			completeOrRelease(chunk, complete);
+		}
+
+		if (missingFrames)
+		{
+			//the renderer failed without throwing (eg a frame couldn't be written); leasing the chunk again
+			//would just fail again, so stop
+			throw new IOException("Rendering of frames " + chunk.firstFrame + "-" + chunk.lastFrame
+					+ " completed, but not all frames were written");
+		}
+	}
+
+	private void completeOrRelease(Chunk chunk, boolean complete) throws IOException
+	{
+		if (complete)
+		{
+			leases.complete(chunk);
+		}
+		else
+		{
+			leases.release(chunk);
+		}
+	}
+
+	private boolean isRendered(Chunk chunk)
+	{
+		for (int frame = chunk.firstFrame; frame <= chunk.lastFrame; frame++)
+		{
+			if (!renderer.isRendered(frame))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return Time (in milliseconds) to wait before polling the job again
+	 *         when no chunks are available
+	 */
+	public long getPollInterval()
+	{
+		return pollInterval;
+	}
+
+	public void setPollInterval(long pollInterval)
+	{
+		this.pollInterval = pollInterval;
+	}
+
+	/**
+	 * @return Number of frames rendered by this worker
+	 */
+	public int getRenderedFrameCount()
+	{
+		return renderedFrameCount;
+	}
+
+	/**
+	 * @return Number of frames skipped by this worker because they had already
+	 *         been rendered
+	 */
+	public int getSkippedFrameCount()
+	{
+		return skippedFrameCount;
+	}
+
+	/**
+	 * Renders ranges of frames for a {@link DistributedRenderWorker}.
+	 */
+	public static interface FrameRenderer
+	{
+		/**
+		 * Render the frames in the given range (inclusive), returning when
+		 * they have been written.
+		 */
+		void render(int firstFrame, int lastFrame) throws Exception;
+
+		/**
+		 * @return True if the output of the given frame has been completely
+		 *         written
+		 */
+		boolean isRendered(int frame);
+
+		/**
+		 * Stop the current call to {@link #render(int, int)} as soon as
+		 * possible.
+		 */
+		void stop();
+	}
+}
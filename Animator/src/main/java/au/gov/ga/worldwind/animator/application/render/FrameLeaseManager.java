@@ -0,0 +1,525 @@
+/*******************************************************************************
+ * Copyright 2014 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.application.render;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import au.gov.ga.worldwind.animator.util.FileUtil;
+
+/**
+ * Leases chunks of a frame range to render workers through a shared job
+ * directory, so that a long render can be split across processes and
+ * machines.
+ * <p/>
+ * The job directory contains a <code>job.properties</code> file describing
+ * the frame range and chunk size. A worker leases a chunk by atomically
+ * creating the chunk's <code>.lease</code> file, and keeps the lease alive by
+ * regularly rewriting the file with an incremented heartbeat counter. When a
+ * chunk's frames have all been rendered, the worker creates the chunk's
+ * <code>.done</code> file and deletes the lease.
+ * <p/>
+ * A lease expires when its heartbeat hasn't changed for the lease timeout.
+ * Expiry is measured by each observer's own clock, from when it first saw the
+ * current heartbeat, so the clocks of the machines sharing the directory
+ * needn't be synchronised.
+ * <p/>
+ * Lease files are named with a generation number (eg
+ * <code>chunk000003.2.lease</code>), and the lease with the highest
+ * generation is the current lease. An expired lease is taken over by
+ * atomically creating the next generation's lease file, so only one worker can
+ * take over a given lease. Workers only ever write their own generation's
+ * file, so a worker that has lost its lease can't overwrite its successor's.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class FrameLeaseManager
+{
+	public static final String JOB_FILE = "job.properties";
+	public static final long DEFAULT_LEASE_TIMEOUT = 2 * 60 * 1000;
+
+	private static final String START_FRAME = "startFrame";
+	private static final String END_FRAME = "endFrame";
+	private static final String CHUNK_SIZE = "chunkSize";
+	private static final Pattern LEASE_FILE = Pattern.compile("chunk(\\d+)\\.(\\d+)\\.lease");
+
+	private final File directory;
+	private final String workerId;
+	private final long leaseTimeout;
+	private final int startFrame;
+	private final int endFrame;
+	private final int chunkSize;
+
+	//the heartbeat of each leased chunk, and the local time at which it was first seen
+	private final Map<Integer, String> observedHeartbeats = new HashMap<Integer, String>();
+	private final Map<Integer, Long> observedTimes = new HashMap<Integer, Long>();
+	//the leases held by this worker
+	private final Map<Integer, Lease> leases = new HashMap<Integer, Lease>();
+
+	/**
+	 * Create the job file in a job directory, if it doesn't already exist.
+	 * Several processes can safely create the same job concurrently.
+	 * 
+	 * @param directory
+	 *            Shared job directory (created if it doesn't exist)
+	 * @param startFrame
+	 *            First frame to render
+	 * @param endFrame
+	 *            Last frame to render
+	 * @param chunkSize
+	 *            Number of frames leased at a time
+	 * @throws IOException
+	 *             if the job file couldn't be written, or a job with a
+	 *             different frame range or chunk size already exists
+	 */
+	public static void createJob(File directory, int startFrame, int endFrame, int chunkSize) throws IOException
+	{
+		if (chunkSize <= 0 || endFrame < startFrame)
+		{
+			throw new IllegalArgumentException("Invalid job: frames " + startFrame + "-" + endFrame + ", chunk size "
+					+ chunkSize);
+		}
+		if (!directory.isDirectory() && !directory.mkdirs())
+		{
+			throw new IOException("Could not create job directory " + directory);
+		}
+
+		File jobFile = new File(directory, JOB_FILE);
+		if (!jobFile.exists())
+		{
+			Properties job = new Properties();
+			job.setProperty(START_FRAME, String.valueOf(startFrame));
+			job.setProperty(END_FRAME, String.valueOf(endFrame));
+			job.setProperty(CHUNK_SIZE, String.valueOf(chunkSize));
+
+			//write to a temporary file and rename it, so that the job file is never seen partially written
+			File temp = new File(directory, JOB_FILE + "." + UUID.randomUUID() + ".tmp");
+			OutputStream os = new FileOutputStream(temp);
+			try
+			{
+				job.store(os, "Animator render job");
+			}
+			finally
+			{
+				os.close();
+			}
+			if (!temp.renameTo(jobFile))
+			{
+				//another process created the job first
+				temp.delete();
+			}
+		}
+
+		Properties job = readJob(jobFile);
+		if (getInt(job, START_FRAME) != startFrame || getInt(job, END_FRAME) != endFrame
+				|| getInt(job, CHUNK_SIZE) != chunkSize)
+		{
+			throw new IOException("A different job already exists in " + directory + " (frames "
+					+ getInt(job, START_FRAME) + "-" + getInt(job, END_FRAME) + ", chunk size "
+					+ getInt(job, CHUNK_SIZE) + ")");
+		}
+	}
+
+	/**
+	 * Create a lease manager for an existing job.
+	 * 
+	 * @param directory
+	 *            Shared job directory, containing the job file
+	 * @param workerId
+	 *            Unique identifier of the worker (see
+	 *            {@link #createWorkerId()})
+	 * @param leaseTimeout
+	 *            Time (in milliseconds) after which a lease whose heartbeat
+	 *            hasn't changed is treated as abandoned
+	 * @throws IOException
+	 *             if the job file couldn't be read
+	 */
+	public FrameLeaseManager(File directory, String workerId, long leaseTimeout) throws IOException
+	{
+		if (workerId.contains(" "))
+		{
+			throw new IllegalArgumentException("Worker id cannot contain spaces: " + workerId);
+		}
+
+		this.directory = directory;
+		this.workerId = workerId;
+		this.leaseTimeout = leaseTimeout;
+
+		Properties job = readJob(new File(directory, JOB_FILE));
+		startFrame = getInt(job, START_FRAME);
+		endFrame = getInt(job, END_FRAME);
+		chunkSize = getInt(job, CHUNK_SIZE);
+	}
+
+	/**
+	 * @return A worker identifier that is unique to this process
+	 */
+	public static String createWorkerId()
+	{
+		//the runtime name is usually pid@host
+		String name = ManagementFactory.getRuntimeMXBean().getName().replaceAll("[^\\w@.-]", "_");
+		return name + "-" + UUID.randomUUID().toString().substring(0, 8);
+	}
+
+	/**
+	 * Lease the first chunk that isn't complete and isn't leased by a live
+	 * worker.
+	 * 
+	 * @return Leased chunk, or null if there are no chunks available
+	 * @throws IOException
+	 */
+	public synchronized Chunk acquire() throws IOException
+	{
+		Map<Integer, Integer> generations = readGenerations();
+		for (int chunk = 0; chunk < getChunkCount(); chunk++)
+		{
+			if (leases.containsKey(chunk) || getDoneFile(chunk).exists())
+			{
+				continue;
+			}
+
+			Integer generation = generations.get(chunk);
+			if (generation == null)
+			{
+				if (getLeaseFile(chunk, 0).createNewFile())
+				{
+					return lease(chunk, 0);
+				}
+				continue;
+			}
+
+			String heartbeat = readLease(getLeaseFile(chunk, generation));
+			if (heartbeat != null && isExpired(chunk, generation + " " + heartbeat))
+			{
+				//only one worker can create the next generation's lease file
+				if (getLeaseFile(chunk, generation + 1).createNewFile())
+				{
+					getLeaseFile(chunk, generation).delete();
+					return lease(chunk, generation + 1);
+				}
+			}
+		}
+		return null;
+	}
+
+	private Chunk lease(int chunk, int generation) throws IOException
+	{
+		Lease lease = new Lease(generation);
+		leases.put(chunk, lease);
+		writeLease(chunk, lease);
+		int first = startFrame + chunk * chunkSize;
+		return new Chunk(chunk, first, Math.min(first + chunkSize - 1, endFrame));
+	}
+
+	private void writeLease(int chunk, Lease lease) throws IOException
+	{
+		//the token distinguishes this lease from earlier leases of the chunk with the same generation and heartbeat
+		FileUtil.writeStringToFile(workerId + " " + lease.token + " " + lease.heartbeat,
+				getLeaseFile(chunk, lease.generation));
+	}
+
+	/**
+	 * Renew the lease on a chunk. Must be called more often than the lease
+	 * timeout while the chunk is being rendered.
+	 * 
+	 * @param chunk
+	 * @return False if the lease has been lost (because it expired and
+	 *         another worker took it over)
+	 */
+	public synchronized boolean heartbeat(Chunk chunk)
+	{
+		if (!isOwner(chunk))
+		{
+			return false;
+		}
+		Lease lease = leases.get(chunk.index);
+		lease.heartbeat++;
+		try
+		{
+			//if the lease is taken over after the ownership check, this only writes to the previous generation's file
+			writeLease(chunk.index, lease);
+			return true;
+		}
+		catch (IOException e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Mark a leased chunk as complete, and release its lease.
+	 * 
+	 * @param chunk
+	 * @throws IOException
+	 */
+	public synchronized void complete(Chunk chunk) throws IOException
+	{
+		File doneFile = getDoneFile(chunk.index);
+		if (!doneFile.exists() && !doneFile.createNewFile() && !doneFile.exists())
+		{
+			throw new IOException("Could not create " + doneFile);
+		}
+		release(chunk);
+	}
+
+	/**
+	 * Release the lease on a chunk without completing it, so that another
+	 * worker can lease it immediately.
+	 * 
+	 * @param chunk
+	 */
+	public synchronized void release(Chunk chunk)
+	{
+		//only this worker writes its generation's file, so it can be deleted even if the lease has been lost
+		Lease lease = leases.remove(chunk.index);
+		if (lease != null)
+		{
+			getLeaseFile(chunk.index, lease.generation).delete();
+		}
+	}
+
+	/**
+	 * @return True if every chunk of the job is complete
+	 */
+	public boolean isComplete()
+	{
+		return getCompletedChunkCount() == getChunkCount();
+	}
+
+	/**
+	 * @return Number of chunks that have been completed
+	 */
+	public int getCompletedChunkCount()
+	{
+		int count = 0;
+		for (int chunk = 0; chunk < getChunkCount(); chunk++)
+		{
+			if (getDoneFile(chunk).exists())
+			{
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return Number of chunks that are currently leased (including leases
+	 *         that have expired but haven't been taken over)
+	 */
+	public int getLeasedChunkCount()
+	{
+		int count = 0;
+		for (int chunk : readGenerations().keySet())
+		{
+			if (!getDoneFile(chunk).exists())
+			{
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public int getChunkCount()
+	{
+		return (endFrame - startFrame) / chunkSize + 1;
+	}
+
+	public int getStartFrame()
+	{
+		return startFrame;
+	}
+
+	public int getEndFrame()
+	{
+		return endFrame;
+	}
+
+	public int getChunkSize()
+	{
+		return chunkSize;
+	}
+
+	public long getLeaseTimeout()
+	{
+		return leaseTimeout;
+	}
+
+	public String getWorkerId()
+	{
+		return workerId;
+	}
+
+	/**
+	 * @return Current time used to measure lease expiry; can be overridden for
+	 *         testing
+	 */
+	protected long currentTimeMillis()
+	{
+		return System.currentTimeMillis();
+	}
+
+	private boolean isExpired(int chunk, String heartbeat)
+	{
+		long now = currentTimeMillis();
+		if (!heartbeat.equals(observedHeartbeats.get(chunk)))
+		{
+			observedHeartbeats.put(chunk, heartbeat);
+			observedTimes.put(chunk, now);
+			return false;
+		}
+		return now - observedTimes.get(chunk) >= leaseTimeout;
+	}
+
+	private boolean isOwner(Chunk chunk)
+	{
+		Lease lease = leases.get(chunk.index);
+		if (lease == null)
+		{
+			return false;
+		}
+		Integer generation = readGenerations().get(chunk.index);
+		return generation != null && generation == lease.generation;
+	}
+
+	/**
+	 * @return The current (highest) lease generation of each leased chunk
+	 */
+	private Map<Integer, Integer> readGenerations()
+	{
+		Map<Integer, Integer> generations = new HashMap<Integer, Integer>();
+		String[] names = directory.list();
+		if (names == null)
+		{
+			return generations;
+		}
+		for (String name : names)
+		{
+			Matcher matcher = LEASE_FILE.matcher(name);
+			if (matcher.matches())
+			{
+				int chunk = Integer.parseInt(matcher.group(1));
+				int generation = Integer.parseInt(matcher.group(2));
+				Integer current = generations.get(chunk);
+				if (current == null || generation > current)
+				{
+					generations.put(chunk, generation);
+				}
+			}
+		}
+		return generations;
+	}
+
+	/**
+	 * @return Contents of the lease file, or null if it doesn't exist
+	 */
+	private static String readLease(File leaseFile)
+	{
+		try
+		{
+			return FileUtil.readFileAsString(leaseFile);
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+	}
+
+	private File getLeaseFile(int chunk, int generation)
+	{
+		return new File(directory, "chunk" + FileUtil.paddedInt(chunk, 6) + "." + generation + ".lease");
+	}
+
+	private File getDoneFile(int chunk)
+	{
+		return new File(directory, "chunk" + FileUtil.paddedInt(chunk, 6) + ".done");
+	}
+
+	private static Properties readJob(File jobFile) throws IOException
+	{
+		Properties job = new Properties();
+		InputStream is = new FileInputStream(jobFile);
+		try
+		{
+			job.load(is);
+		}
+		finally
+		{
+			is.close();
+		}
+		return job;
+	}
+
+	private static int getInt(Properties job, String key) throws IOException
+	{
+		try
+		{
+			return Integer.parseInt(job.getProperty(key));
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IOException("Invalid job file: missing " + key);
+		}
+	}
+
+	/**
+	 * A lease held by this worker.
+	 */
+	private static class Lease
+	{
+		public final int generation;
+		public final String token = UUID.randomUUID().toString().substring(0, 8);
+		public int heartbeat = 0;
+
+		public Lease(int generation)
+		{
+			this.generation = generation;
+		}
+	}
+
+	/**
+	 * A leased range of frames.
+	 */
+	public static class Chunk
+	{
+		public final int index;
+		public final int firstFrame;
+		public final int lastFrame;
+
+		public Chunk(int index, int firstFrame, int lastFrame)
+		{
+			this.index = index;
+			this.firstFrame = firstFrame;
+			this.lastFrame = lastFrame;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "frames " + firstFrame + "-" + lastFrame;
+		}
+	}
+}
@@ -15,12 +15,14 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.animator.application.render;
 
+import gov.nasa.worldwind.WorldWind;
 import gov.nasa.worldwind.WorldWindow;
 import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.view.orbit.OrbitView;
 
 import java.awt.Dimension;
 import java.io.File;
+import java.util.concurrent.CountDownLatch;
 
 import javax.media.opengl.GL2;
 
@@ -30,6 +32,7 @@ import au.gov.ga.worldwind.animator.application.Animator;
 import au.gov.ga.worldwind.animator.application.AnimatorSceneController;
 import au.gov.ga.worldwind.animator.application.ScreenshotPaintTask;
 import au.gov.ga.worldwind.animator.layers.immediate.ImmediateMode;
+import au.gov.ga.worldwind.animator.layers.immediate.ImmediateTaskService;
 import au.gov.ga.worldwind.common.render.FrameBuffer;
 import au.gov.ga.worldwind.common.render.PaintTask;
 import au.gov.ga.worldwind.common.util.Validate;
@@ -37,12 +40,20 @@ import au.gov.ga.worldwind.common.util.Validate;
 /**
  * An {@link AnimationRenderer} that renders each frame of the animation to an
  * offscreen texture, then writes that texture to disk.
+ * <p/>
+ * Before each frame is rendered, the upcoming frames are drawn (but not saved)
+ * in prefetch mode, which causes the tiles they require to be loaded in
+ * parallel by the {@link ImmediateTaskService}'s prefetch threads. Frames are
+ * still rendered in {@link ImmediateMode}, which loads any tiles that haven't
+ * been prefetched, so prefetching doesn't change the rendered output.
  * 
  * @author James Navin (james.navin@ga.gov.au)
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class OffscreenRenderer extends AnimationRendererBase
 {
+	public static final int DEFAULT_PREFETCH_FRAME_COUNT = 5;
+
 	protected WorldWindow wwd;
 	protected Animator targetApplication;
 	protected AnimatorSceneController animatorSceneController;
@@ -56,6 +67,10 @@ public class OffscreenRenderer extends AnimationRendererBase
 	private PaintTask preRenderTask;
 	private PaintTask prePostRenderTask;
 	private PaintTask postRenderTask;
+	private PaintTask prefetchPreRenderTask;
+
+	private int prefetchFrameCount = DEFAULT_PREFETCH_FRAME_COUNT;
+	private int lastPrefetchedFrame;
 
 	public OffscreenRenderer(WorldWindow wwd, Animator targetApplication)
 	{
@@ -98,6 +113,9 @@ public class OffscreenRenderer extends AnimationRendererBase
 			@Override
 			public void run(DrawContext dc)
 			{
+				//rendered frames must always load their tiles immediately
+				ImmediateMode.setPrefetching(false);
+
 				GL2 gl = dc.getGL().getGL2();
 				frameBuffer.bind(gl);
 				gl.glViewport(0, 0, renderDimensions.width, renderDimensions.height);
@@ -128,6 +146,18 @@ public class OffscreenRenderer extends AnimationRendererBase
 			}
 		};
 
+		//create a pre PaintTask for frames drawn to discover the tiles to prefetch
+		prefetchPreRenderTask = new PaintTask()
+		{
+			@Override
+			public void run(DrawContext dc)
+			{
+				preRenderTask.run(dc);
+				ImmediateMode.setPrefetching(true);
+			}
+		};
+		lastPrefetchedFrame = renderParams.getStartFrame() - 1;
+
 		wwd.redrawNow();
 	}
 
@@ -140,6 +170,8 @@ public class OffscreenRenderer extends AnimationRendererBase
 			targetFile.getParentFile().mkdirs();
 		}
 
+		prefetch(frame, animation, renderParams);
+
 		updateSlider(frame);
 		animation.applyFrame(frame);
 
@@ -161,9 +193,60 @@ public class OffscreenRenderer extends AnimationRendererBase
 		screenshotTask.waitForScreenshot();
 	}
 
+	/**
+	 * Draw the frames from the given frame up to {@link #getPrefetchFrameCount()}
+	 * frames ahead in prefetch mode (skipping any already drawn), causing the
+	 * tiles required by those frames to be loaded in the background.
+	 */
+	protected void prefetch(int frame, Animation animation, RenderParameters renderParams)
+	{
+		if (prefetchFrameCount <= 0 || !(WorldWind.getTaskService() instanceof ImmediateTaskService))
+		{
+			return;
+		}
+
+		int lastFrame = Math.min(frame + prefetchFrameCount, renderParams.getEndFrame());
+		for (int prefetchFrame = Math.max(frame, lastPrefetchedFrame + 1); prefetchFrame <= lastFrame; prefetchFrame++)
+		{
+			animation.applyFrame(prefetchFrame);
+
+			PrefetchPostRenderTask prefetchPostRenderTask = new PrefetchPostRenderTask();
+			animatorSceneController.addPrePaintTask(prefetchPreRenderTask);
+			animatorSceneController.addPostPaintTask(prefetchPostRenderTask);
+
+			wwd.redrawNow();
+			prefetchPostRenderTask.waitForRender();
+			lastPrefetchedFrame = prefetchFrame;
+
+			if (isStopped())
+			{
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @return The number of frames ahead of the current frame to prefetch
+	 *         tiles for (0 disables prefetching)
+	 */
+	public int getPrefetchFrameCount()
+	{
+		return prefetchFrameCount;
+	}
+
+	public void setPrefetchFrameCount(int prefetchFrameCount)
+	{
+		this.prefetchFrameCount = prefetchFrameCount;
+	}
+
 	@Override
 	protected void doPostRender(Animation animation, RenderParameters renderParams)
 	{
+		if (WorldWind.getTaskService() instanceof ImmediateTaskService)
+		{
+			((ImmediateTaskService) WorldWind.getTaskService()).cancelPrefetchTasks();
+		}
+
 		animatorSceneController.setRenderDimensions(null);
 		animatorSceneController.addPostPaintTask(new PaintTask()
 		{
@@ -206,4 +289,35 @@ public class OffscreenRenderer extends AnimationRendererBase
 		((OrbitView) wwd.getView()).setDetectCollisions(detectCollisions);
 		ImmediateMode.setImmediate(wasImmediate);
 	}
+
+	/**
+	 * Post {@link PaintTask} for frames drawn in prefetch mode, which unbinds
+	 * the FBO without drawing it to the screen.
+	 */
+	private class PrefetchPostRenderTask implements PaintTask
+	{
+		private final CountDownLatch rendered = new CountDownLatch(1);
+
+		@Override
+		public void run(DrawContext dc)
+		{
+			ImmediateMode.setPrefetching(false);
+			GL2 gl = dc.getGL().getGL2();
+			frameBuffer.unbind(gl);
+			gl.glViewport(0, 0, dc.getDrawableWidth(), dc.getDrawableHeight());
+			rendered.countDown();
+		}
+
+		public void waitForRender()
+		{
+			try
+			{
+				rendered.await();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
 }
@@ -44,10 +44,7 @@ public class StereoOffscreenRenderer extends OffscreenRenderer
 	protected void renderFrame(int frame, Animation animation, RenderParameters renderParams)
 	{
 		//if the view is not a stereo view, then just render with the super method
-		boolean stereo = wwd.getView() instanceof IDelegateView &&
-				((IDelegateView) wwd.getView()).getDelegate() instanceof IStereoViewDelegate &&
-				animation.getCamera() instanceof StereoCamera;
-		if (!stereo)
+		if (!isStereo(animation))
 		{
 			super.renderFrame(frame, animation, renderParams);
 			return;
@@ -68,4 +65,15 @@ public class StereoOffscreenRenderer extends OffscreenRenderer
 		delegate.setup(false, Eye.LEFT);
 	}
 
+	/**
+	 * @return True if the animation will be rendered as left and right eye
+	 *         sequences
+	 */
+	public boolean isStereo(Animation animation)
+	{
+		return wwd.getView() instanceof IDelegateView &&
+				((IDelegateView) wwd.getView()).getDelegate() instanceof IStereoViewDelegate &&
+				animation.getCamera() instanceof StereoCamera;
+	}
+
 }
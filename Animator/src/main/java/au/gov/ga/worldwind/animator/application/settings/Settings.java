@@ -267,11 +267,11 @@ public class Settings
 	private static void loadDefaultElevationModels(Element rootElement)
 	{
 		List<ElevationModelIdentifier> loadedIdentifiers = new ArrayList<ElevationModelIdentifier>();
-		Integer layerCount = WWXML.getInteger(rootElement, "count(//defaultModels/model)", null);
+		Integer layerCount = XMLUtil.getInteger(rootElement, "count(//defaultModels/model)", null);
 		for (int i = 0; i < layerCount; i++)
 		{
-			String modelName = WWXML.getText(rootElement, "//defaultModels/model[@index='" + i + "']/@name");
-			String modelUrl = WWXML.getText(rootElement, "//defaultModels/model[@index='" + i + "']/@url");
+			String modelName = XMLUtil.getText(rootElement, "//defaultModels/model[@index='" + i + "']/@name");
+			String modelUrl = XMLUtil.getText(rootElement, "//defaultModels/model[@index='" + i + "']/@url");
 			if (!isBlank(modelUrl) && !isBlank(modelName))
 			{
 				loadedIdentifiers.add(new ElevationModelIdentifierImpl(modelName, modelUrl));
@@ -286,11 +286,11 @@ public class Settings
 	private static void loadKnownLayers(Element rootElement)
 	{
 		List<LayerIdentifier> loadedIdentifiers = new ArrayList<LayerIdentifier>();
-		Integer layerCount = WWXML.getInteger(rootElement, "count(//knownLayers/layer)", null);
+		Integer layerCount = XMLUtil.getInteger(rootElement, "count(//knownLayers/layer)", null);
 		for (int i = 0; i < layerCount; i++)
 		{
-			String layerName = WWXML.getText(rootElement, "//knownLayers/layer[@index='" + i + "']/@name");
-			String layerUrl = WWXML.getText(rootElement, "//knownLayers/layer[@index='" + i + "']/@url");
+			String layerName = XMLUtil.getText(rootElement, "//knownLayers/layer[@index='" + i + "']/@name");
+			String layerUrl = XMLUtil.getText(rootElement, "//knownLayers/layer[@index='" + i + "']/@url");
 			if (!isBlank(layerUrl) && !isBlank(layerName))
 			{
 				loadedIdentifiers.add(new LayerIdentifierImpl(layerName, layerUrl));
@@ -306,11 +306,11 @@ public class Settings
 	private static void loadDefaultAnimationLayers(Element rootElement)
 	{
 		List<LayerIdentifier> loadedIdentifiers = new ArrayList<LayerIdentifier>();
-		Integer layerCount = WWXML.getInteger(rootElement, "count(//defaultLayers/layer)", null);
+		Integer layerCount = XMLUtil.getInteger(rootElement, "count(//defaultLayers/layer)", null);
 		for (int i = 0; i < layerCount; i++)
 		{
-			String layerName = WWXML.getText(rootElement, "//defaultLayers/layer[@index='" + i + "']/@name");
-			String layerUrl = WWXML.getText(rootElement, "//defaultLayers/layer[@index='" + i + "']/@url");
+			String layerName = XMLUtil.getText(rootElement, "//defaultLayers/layer[@index='" + i + "']/@name");
+			String layerUrl = XMLUtil.getText(rootElement, "//defaultLayers/layer[@index='" + i + "']/@url");
 			if (!isBlank(layerUrl) && !isBlank(layerName))
 			{
 				loadedIdentifiers.add(new LayerIdentifierImpl(layerName, layerUrl));
@@ -324,7 +324,7 @@ public class Settings
 
 	private static void loadLastUsedLocation(Element rootElement)
 	{
-		String lastUsedLocationPath = WWXML.getText(rootElement, "//lastUsedLocation");
+		String lastUsedLocationPath = XMLUtil.getText(rootElement, "//lastUsedLocation");
 		if (!isBlank(lastUsedLocationPath))
 		{
 			instance.setLastUsedLocation(new File(lastUsedLocationPath));
@@ -335,7 +335,7 @@ public class Settings
 	{
 		for (int i = MAX_NUMBER_RECENT_FILES - 1; i >= 0; i--)
 		{
-			String recentFileName = WWXML.getText(rootElement, "//recentFiles/file[@index='" + i + "']/@path");
+			String recentFileName = XMLUtil.getText(rootElement, "//recentFiles/file[@index='" + i + "']/@path");
 			if (!isBlank(recentFileName))
 			{
 				instance.addRecentFile(new File(recentFileName));
@@ -345,7 +345,7 @@ public class Settings
 
 	private static void loadSplitLocation(Element rootElement)
 	{
-		Integer splitLocation = WWXML.getInteger(rootElement, "//splitLocation/@value", null);
+		Integer splitLocation = XMLUtil.getInteger(rootElement, "//splitLocation/@value", null);
 		if (splitLocation != null)
 		{
 			instance.setSplitLocation(splitLocation);
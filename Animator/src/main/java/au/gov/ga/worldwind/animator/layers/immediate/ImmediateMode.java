@@ -21,19 +21,26 @@ package au.gov.ga.worldwind.animator.layers.immediate;
  * causes layers to download and load textures immediately, instead of passing
  * the request off to the task service. This ensures that the highest resolution
  * imagery and elevation data is available when rendering each frame.
+ * <p/>
+ * While rendering, the animator can also draw upcoming frames in prefetch mode.
+ * Prefetching is enabled per thread; layers drawn by a prefetching thread
+ * behave as if immediate mode is off, and the {@link ImmediateTaskService} runs
+ * the tasks they request on its prefetch threads.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class ImmediateMode
 {
 	private static boolean immediate = false;
+	private static final ThreadLocal<Boolean> prefetching = new ThreadLocal<Boolean>();
 
 	/**
-	 * @return Is immediate mode switched on?
+	 * @return Is immediate mode switched on (and the current thread not
+	 *         prefetching)?
 	 */
 	public static boolean isImmediate()
 	{
-		return immediate;
+		return immediate && !isPrefetching();
 	}
 
 	/**
@@ -45,4 +52,30 @@ public class ImmediateMode
 	{
 		ImmediateMode.immediate = immediate;
 	}
+
+	/**
+	 * @return Is the current thread drawing a frame to discover the tiles that
+	 *         need prefetching?
+	 */
+	public static boolean isPrefetching()
+	{
+		return prefetching.get() != null;
+	}
+
+	/**
+	 * Set prefetch mode on/off for the current thread
+	 * 
+	 * @param prefetching
+	 */
+	public static void setPrefetching(boolean prefetching)
+	{
+		if (prefetching)
+		{
+			ImmediateMode.prefetching.set(Boolean.TRUE);
+		}
+		else
+		{
+			ImmediateMode.prefetching.remove();
+		}
+	}
 }
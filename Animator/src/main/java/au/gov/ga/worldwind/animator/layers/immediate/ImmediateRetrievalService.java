@@ -28,6 +28,9 @@ import java.beans.PropertyChangeListener;
 import java.util.Collection;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
 
 /**
@@ -35,6 +38,10 @@ import java.util.concurrent.FutureTask;
  * {@link #runRetriever(Retriever)}, returning only when retrieval has
  * completed.
  * <p/>
+ * If another thread (such as a prefetch thread, see
+ * {@link ImmediateTaskService}) is already retrieving the same resource, the
+ * call waits for that retrieval to complete rather than downloading it again.
+ * <p/>
  * Delegates to an internal instance of the {@link BasicRetrievalService}.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
@@ -43,6 +50,7 @@ import java.util.concurrent.FutureTask;
 public class ImmediateRetrievalService implements RetrievalService
 {
 	private final RetrievalService delegate = new BasicRetrievalService();
+	private final ConcurrentMap<String, RetrievalTask> immediateTasks = new ConcurrentHashMap<String, RetrievalTask>();
 
 	@Override
 	public void onMessage(Message msg)
@@ -197,17 +205,47 @@ public class ImmediateRetrievalService implements RetrievalService
 	}
 
 	@Override
-	public synchronized RetrievalFuture runRetriever(Retriever retriever, double priority)
+	public RetrievalFuture runRetriever(Retriever retriever, double priority)
 	{
 		if (!ImmediateMode.isImmediate())
 			return delegate.runRetriever(retriever, priority);
 
 		RetrievalTask task = new RetrievalTask(retriever);
-		task.run(); //run the task
+		RetrievalTask existing = immediateTasks.putIfAbsent(retriever.getName(), task);
+		if (existing != null)
+		{
+			waitFor(existing);
+			return existing;
+		}
+
+		try
+		{
+			task.run(); //run the task
+		}
+		finally
+		{
+			immediateTasks.remove(retriever.getName(), task);
+		}
 		Logging.logger().info("Running retrieval immediately: " + retriever.getName());
 		return task;
 	}
 
+	private static void waitFor(RetrievalTask task)
+	{
+		try
+		{
+			task.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			//failures are handled by the thread running the retrieval
+		}
+	}
+
 	@Override
 	public Object setValue(String key, Object value)
 	{
@@ -18,21 +18,130 @@ package au.gov.ga.worldwind.animator.layers.immediate;
 import gov.nasa.worldwind.util.TaskService;
 import gov.nasa.worldwind.util.ThreadedTaskService;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
+
 /**
  * {@link TaskService} that runs tasks immediately when in immediate mode.
+ * <p/>
+ * Tasks added by a thread in prefetch mode (see
+ * {@link ImmediateMode#isPrefetching()}) are instead run on a separate pool of
+ * prefetch threads, which run them immediately, so that the data for upcoming
+ * frames is loaded in parallel while the current frame is rendered.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class ImmediateTaskService extends ThreadedTaskService
 {
+	public final static int DEFAULT_PREFETCH_POOL_SIZE = 8;
+
+	private final ThreadPoolExecutor prefetchExecutor = new ThreadPoolExecutor(DEFAULT_PREFETCH_POOL_SIZE,
+			DEFAULT_PREFETCH_POOL_SIZE, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>(),
+			new DaemonThreadFactory("Prefetch"));
+	private final Set<Runnable> prefetchTasks = Collections.newSetFromMap(new ConcurrentHashMap<Runnable, Boolean>());
+
+	public ImmediateTaskService()
+	{
+		prefetchExecutor.allowCoreThreadTimeOut(true);
+	}
+
 	@Override
-	public synchronized void addTask(Runnable runnable)
+	public void addTask(Runnable runnable)
 	{
+		if (ImmediateMode.isPrefetching())
+		{
+			prefetch(runnable);
+			return;
+		}
 		if (ImmediateMode.isImmediate())
 		{
+			//not synchronized, so that the prefetch threads can run tasks in parallel with the render thread
 			runnable.run();
 			return;
 		}
 		super.addTask(runnable);
 	}
+
+	@Override
+	public boolean isFull()
+	{
+		return !ImmediateMode.isPrefetching() && super.isFull();
+	}
+
+	protected void prefetch(final Runnable runnable)
+	{
+		//the same tile is usually requested by several consecutive frames
+		if (!prefetchTasks.add(runnable))
+		{
+			return;
+		}
+		prefetchExecutor.execute(new PrefetchTask(runnable));
+	}
+
+	/**
+	 * @return The number of prefetch tasks that are queued or running
+	 */
+	public int getNumPrefetchTasksPending()
+	{
+		return prefetchTasks.size();
+	}
+
+	/**
+	 * Remove any prefetch tasks that haven't started yet. Prefetch tasks that
+	 * are already running are allowed to complete.
+	 */
+	public void cancelPrefetchTasks()
+	{
+		List<Runnable> cancelled = new ArrayList<Runnable>();
+		prefetchExecutor.getQueue().drainTo(cancelled);
+		for (Runnable task : cancelled)
+		{
+			prefetchTasks.remove(((PrefetchTask) task).runnable);
+		}
+	}
+
+	@Override
+	public void shutdown(boolean immediately)
+	{
+		super.shutdown(immediately);
+		if (immediately)
+		{
+			prefetchExecutor.shutdownNow();
+		}
+		else
+		{
+			prefetchExecutor.shutdown();
+		}
+	}
+
+	private class PrefetchTask implements Runnable
+	{
+		private final Runnable runnable;
+
+		public PrefetchTask(Runnable runnable)
+		{
+			this.runnable = runnable;
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				runnable.run();
+			}
+			finally
+			{
+				prefetchTasks.remove(runnable);
+			}
+		}
+	}
 }
@@ -17,11 +17,11 @@ package au.gov.ga.worldwind.animator.terrain;
 
 import gov.nasa.worldwind.avlist.AVList;
 import gov.nasa.worldwind.globes.ElevationModel;
-import gov.nasa.worldwind.util.WWXML;
 
 import org.w3c.dom.Element;
 
 import au.gov.ga.worldwind.common.terrain.ElevationModelFactory;
+import au.gov.ga.worldwind.common.util.XMLUtil;
 
 /**
  * {@link ElevationModelFactory} subclass that creates immediate* versions of
@@ -34,7 +34,7 @@ public class AnimatorElevationModelFactory extends ElevationModelFactory
 	@Override
 	protected ElevationModel createNonCompoundModel(Element domElement, AVList params)
 	{
-		String serviceName = WWXML.getText(domElement, "Service/@serviceName");
+		String serviceName = XMLUtil.getText(domElement, "Service/@serviceName");
 		if ("FileTileService".equals(serviceName))
 		{
 			//only enable the immediate file elevation model; others request too many tiles from the server
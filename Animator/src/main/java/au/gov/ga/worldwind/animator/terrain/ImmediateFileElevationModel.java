@@ -31,7 +31,8 @@ import au.gov.ga.worldwind.common.terrain.FileElevationModel;
  */
 public class ImmediateFileElevationModel extends FileElevationModel
 {
-	private boolean requestingTile;
+	//per thread, as tiles are also requested by the prefetch threads
+	private final ThreadLocal<Boolean> requestingTile = new ThreadLocal<Boolean>();
 
 	public ImmediateFileElevationModel(Element domElement, AVList params)
 	{
@@ -41,11 +42,17 @@ public class ImmediateFileElevationModel extends FileElevationModel
 	@Override
 	protected ElevationTile getTileFromMemory(TileKey tileKey)
 	{
-		if (ImmediateMode.isImmediate() && !requestingTile)
+		if (ImmediateMode.isImmediate() && requestingTile.get() == null)
 		{
-			requestingTile = true;
-			requestTile(tileKey);
-			requestingTile = false;
+			requestingTile.set(Boolean.TRUE);
+			try
+			{
+				requestTile(tileKey);
+			}
+			finally
+			{
+				requestingTile.remove();
+			}
 		}
 		return super.getTileFromMemory(tileKey);
 	}
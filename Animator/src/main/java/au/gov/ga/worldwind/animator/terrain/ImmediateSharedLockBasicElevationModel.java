@@ -31,7 +31,8 @@ import au.gov.ga.worldwind.common.terrain.SharedLockBasicElevationModel;
  */
 public class ImmediateSharedLockBasicElevationModel extends SharedLockBasicElevationModel
 {
-	private boolean requestingTile;
+	//per thread, as tiles are also requested by the prefetch threads
+	private final ThreadLocal<Boolean> requestingTile = new ThreadLocal<Boolean>();
 	
 	public ImmediateSharedLockBasicElevationModel(AVList params)
 	{
@@ -46,11 +47,17 @@ public class ImmediateSharedLockBasicElevationModel extends SharedLockBasicEleva
 	@Override
 	protected ElevationTile getTileFromMemory(TileKey tileKey)
 	{
-		if (ImmediateMode.isImmediate() && !requestingTile)
+		if (ImmediateMode.isImmediate() && requestingTile.get() == null)
 		{
-			requestingTile = true;
-			requestTile(tileKey);
-			requestingTile = false;
+			requestingTile.set(Boolean.TRUE);
+			try
+			{
+				requestTile(tileKey);
+			}
+			finally
+			{
+				requestingTile.remove();
+			}
 		}
 		return super.getTileFromMemory(tileKey);
 	}
@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.terrain.exaggeration;
+
+import java.util.Arrays;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeSet;
+
+/**
+ * An immutable, piecewise-linear elevation transfer function compiled from a
+ * set of {@link ElevationExaggeration}s.
+ * <p/>
+ * The function is stored as a sorted array of elevation boundaries, and a
+ * slope and offset for each of the segments between (and either side of) the
+ * boundaries, so that an elevation <code>e</code> in segment <code>k</code> is
+ * transformed to <code>e * slope[k] + offset[k]</code>. Segments are found
+ * with a binary search; when transforming whole buffers the previous segment
+ * is tried first, as neighbouring elevations usually fall in the same
+ * segment.
+ * <p/>
+ * The exaggerator at each boundary applies to elevations between it and the
+ * next boundary above. Elevations below the lowest negative boundary are not
+ * exaggerated, and the function is continuous with 0 mapped to 0.
+ * <p/>
+ * The inverse function has the same form, and is available from
+ * {@link #getInverse()}. Segments with an exaggeration of 0 can't be
+ * inverted; their output is mapped back to the segment's lower boundary.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public final class ExaggerationTransferTable
+{
+	/** Table that doesn't change elevations */
+	public static final ExaggerationTransferTable IDENTITY = new ExaggerationTransferTable(new double[0],
+			new double[] { 1 }, new double[] { 0 }, null);
+
+	private final double[] boundaries;
+	private final double[] slopes;
+	private final double[] offsets;
+	private ExaggerationTransferTable inverse;
+
+	/**
+	 * Compile a transfer table from the given exaggerators, keyed by their
+	 * elevation boundary.
+	 * 
+	 * @param exaggerators
+	 * @return Transfer table that applies the exaggerators
+	 */
+	public static ExaggerationTransferTable compile(NavigableMap<Double, ElevationExaggeration> exaggerators)
+	{
+		if (exaggerators == null || exaggerators.isEmpty())
+		{
+			return IDENTITY;
+		}
+
+		//the exaggeration in effect at 0 always starts a new segment, so that 0 maps to 0
+		TreeSet<Double> boundarySet = new TreeSet<Double>(exaggerators.keySet());
+		boundarySet.add(0.0);
+
+		int count = boundarySet.size();
+		double[] boundaries = new double[count];
+		int zeroIndex = 0;
+		int i = 0;
+		for (Double boundary : boundarySet)
+		{
+			if (boundary == 0.0)
+			{
+				zeroIndex = i;
+			}
+			boundaries[i++] = boundary;
+		}
+
+		//slope[0] is below the lowest boundary, and slope[k] is from boundary k-1 to boundary k
+		double[] slopes = new double[count + 1];
+		slopes[0] = 1.0;
+		for (i = 0; i < count; i++)
+		{
+			Entry<Double, ElevationExaggeration> floor = exaggerators.floorEntry(boundaries[i]);
+			slopes[i + 1] = floor == null ? 1.0 : floor.getValue().getExaggeration();
+		}
+
+		//transformed elevation of each boundary, working outwards from 0
+		double[] transformed = new double[count];
+		for (i = zeroIndex + 1; i < count; i++)
+		{
+			transformed[i] = transformed[i - 1] + slopes[i] * (boundaries[i] - boundaries[i - 1]);
+		}
+		for (i = zeroIndex - 1; i >= 0; i--)
+		{
+			transformed[i] = transformed[i + 1] - slopes[i + 1] * (boundaries[i + 1] - boundaries[i]);
+		}
+
+		double[] offsets = new double[count + 1];
+		offsets[0] = transformed[0] - slopes[0] * boundaries[0];
+		for (i = 1; i <= count; i++)
+		{
+			offsets[i] = transformed[i - 1] - slopes[i] * boundaries[i - 1];
+		}
+
+		//the inverse maps the transformed boundaries back to the original boundaries
+		double[] inverseSlopes = new double[count + 1];
+		double[] inverseOffsets = new double[count + 1];
+		for (i = 0; i <= count; i++)
+		{
+			if (slopes[i] > 0)
+			{
+				inverseSlopes[i] = 1.0 / slopes[i];
+				inverseOffsets[i] = -offsets[i] / slopes[i];
+			}
+			else
+			{
+				inverseSlopes[i] = 0;
+				inverseOffsets[i] = boundaries[i - 1];
+			}
+		}
+
+		ExaggerationTransferTable inverse =
+				new ExaggerationTransferTable(transformed, inverseSlopes, inverseOffsets, null);
+		return new ExaggerationTransferTable(boundaries, slopes, offsets, inverse);
+	}
+
+	private ExaggerationTransferTable(double[] boundaries, double[] slopes, double[] offsets,
+			ExaggerationTransferTable inverse)
+	{
+		this.boundaries = boundaries;
+		this.slopes = slopes;
+		this.offsets = offsets;
+		this.inverse = inverse != null ? inverse : this;
+		if (inverse != null)
+		{
+			inverse.inverse = this;
+		}
+	}
+
+	/**
+	 * @return The inverse of this transfer table
+	 */
+	public ExaggerationTransferTable getInverse()
+	{
+		return inverse;
+	}
+
+	/**
+	 * @return The number of linear segments in this table
+	 */
+	public int getSegmentCount()
+	{
+		return slopes.length;
+	}
+
+	/**
+	 * Transform a single elevation.
+	 */
+	public double apply(double elevation)
+	{
+		int segment = findSegment(elevation);
+		return elevation * slopes[segment] + offsets[segment];
+	}
+
+	/**
+	 * Transform all of the elevations in the buffer in-place.
+	 */
+	public void apply(double[] buffer)
+	{
+		if (buffer != null)
+		{
+			apply(buffer, 0, buffer.length);
+		}
+	}
+
+	/**
+	 * Transform <code>length</code> elevations in the buffer in-place,
+	 * starting at <code>offset</code>.
+	 */
+	public void apply(double[] buffer, int offset, int length)
+	{
+		if (boundaries.length == 0)
+		{
+			//single segment; no lookups required
+			double slope = slopes[0], intercept = offsets[0];
+			for (int i = offset; i < offset + length; i++)
+			{
+				buffer[i] = buffer[i] * slope + intercept;
+			}
+			return;
+		}
+
+		int segment = 0;
+		double lower = Double.NEGATIVE_INFINITY;
+		double upper = boundaries[0];
+		for (int i = offset; i < offset + length; i++)
+		{
+			double elevation = buffer[i];
+			if (!(elevation >= lower && elevation < upper))
+			{
+				segment = findSegment(elevation);
+				lower = segment == 0 ? Double.NEGATIVE_INFINITY : boundaries[segment - 1];
+				upper = segment == boundaries.length ? Double.POSITIVE_INFINITY : boundaries[segment];
+			}
+			buffer[i] = elevation * slopes[segment] + offsets[segment];
+		}
+	}
+
+	/**
+	 * Transform a single elevation using the inverse of this table.
+	 */
+	public double invert(double elevation)
+	{
+		return inverse.apply(elevation);
+	}
+
+	/**
+	 * Transform all of the elevations in the buffer in-place using the inverse
+	 * of this table.
+	 */
+	public void invert(double[] buffer)
+	{
+		inverse.apply(buffer);
+	}
+
+	/**
+	 * @return The index of the segment containing the elevation (the number
+	 *         of boundaries less than or equal to the elevation)
+	 */
+	private int findSegment(double elevation)
+	{
+		int low = 0, high = boundaries.length;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (boundaries[mid] <= elevation)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "boundaries=" + Arrays.toString(boundaries) + ", slopes=" + Arrays.toString(slopes) + ", offsets="
+				+ Arrays.toString(offsets);
+	}
+}
@@ -25,10 +25,8 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.TreeMap;
-import java.util.concurrent.locks.ReadWriteLock;
 
 import au.gov.ga.worldwind.animator.terrain.DetailedElevationModel;
-import au.gov.ga.worldwind.common.util.LenientReadWriteLock;
 
 /**
  * An extension of the {@link DetailedElevationModel} that allows {@link ElevationExaggeration}s to be
@@ -38,6 +36,9 @@ import au.gov.ga.worldwind.common.util.LenientReadWriteLock;
  * two exaggerators will be exaggerated according to the exaggeration amount of the 'bottom' exaggerator.
  * <p/>
  * In addition, an (optional) global elevation offset can be configured. This offset is applied <b>after</b> exaggeration.
+ * <p/>
+ * The exaggerators are compiled into an immutable {@link ExaggerationTransferTable} whenever they change, which is
+ * published atomically, so elevations can be exaggerated without locking.
  * 
  * @author James Navin (james.navin@ga.gov.au)
  */
@@ -47,9 +48,8 @@ public class VerticalExaggerationElevationModel extends DetailedElevationModel i
 	/** The registered exaggerators, keyed by elevation threshold */
 	private TreeMap<Double, ElevationExaggeration> exaggerators = new TreeMap<Double, ElevationExaggeration>();
 	
-	private List<ExaggerationWindow> positiveExaggerationWindows = new ArrayList<ExaggerationWindow>();
-	private List<ExaggerationWindow> negativeExaggerationWindows = new ArrayList<ExaggerationWindow>();
-	private ReadWriteLock exaggerationWindowLock = new LenientReadWriteLock();
+	/** The exaggerators compiled into a transfer function; replaced (not modified) when the exaggerators change */
+	private volatile ExaggerationTransferTable transferTable = ExaggerationTransferTable.IDENTITY;
 	
 	/** The global offset to apply after exaggeration */
 	private double globalOffset = 1.0;
@@ -66,7 +66,7 @@ public class VerticalExaggerationElevationModel extends DetailedElevationModel i
 			return;
 		}
 		doAddExaggerator(exaggerator);
-		recalculateExaggerationWindows();
+		recompileTransferTable();
 	}
 
 	public void addExaggerators(Collection<ElevationExaggeration> exaggerators)
@@ -79,7 +79,7 @@ public class VerticalExaggerationElevationModel extends DetailedElevationModel i
 		{
 			doAddExaggerator(exaggerator);
 		}
-		recalculateExaggerationWindows();
+		recompileTransferTable();
 	}
 	
 	private void doAddExaggerator(ElevationExaggeration exaggerator)
@@ -110,7 +110,7 @@ public class VerticalExaggerationElevationModel extends DetailedElevationModel i
 		
 		exaggerators.get(boundary).removeChangeListener(this);
 		exaggerators.remove(boundary);
-		recalculateExaggerationWindows();
+		recompileTransferTable();
 	}
 	
 	public boolean containsExaggeratorAtBoundary(double boundary)
@@ -199,59 +199,21 @@ public class VerticalExaggerationElevationModel extends DetailedElevationModel i
 	}
 	
 	/**
-	 * Recalculate all of the exaggeration windows from the current set of elevation exaggerators
+	 * @return The transfer function currently used to exaggerate elevations
 	 */
-	private void recalculateExaggerationWindows()
+	public ExaggerationTransferTable getTransferTable()
 	{
-		exaggerationWindowLock.writeLock().lock();
-		reCalculatePositiveExaggerationWindows();
-		reCalculateNegativeExaggerationWindows();
-		exaggerationWindowLock.writeLock().unlock();
+		return transferTable;
 	}
-
-	private void reCalculateNegativeExaggerationWindows()
+	
+	/**
+	 * Recompile the transfer table from the current set of elevation exaggerators
+	 */
+	private void recompileTransferTable()
 	{
-		negativeExaggerationWindows.clear();
-		ExaggerationWindow currentWindow = null;
-		ExaggerationWindow previousWindow = null;
-		
-		List<ElevationExaggeration> exaggerators = getNegativeExaggeratorsDescending();
-		for (int i = exaggerators.size() - 1; i >= 0; i--)
-		{
-			previousWindow = currentWindow;
-			
-			ElevationExaggeration elevationExaggeration = exaggerators.get(i);
-			currentWindow = new ExaggerationWindow(elevationExaggeration.getElevationBoundary(), elevationExaggeration.getExaggeration());
-			currentWindow.setLowerWindow(previousWindow);
-			
-			negativeExaggerationWindows.add(currentWindow);
-		}
-		
-		// Add a [-inf x1 n] window in the negative case
-		currentWindow = new ExaggerationWindow(Double.NEGATIVE_INFINITY, 1.0);
-		currentWindow.setUpperWindow(negativeExaggerationWindows.get(0));
-		negativeExaggerationWindows.add(0, currentWindow);
+		transferTable = ExaggerationTransferTable.compile(exaggerators);
 	}
 
-	private void reCalculatePositiveExaggerationWindows()
-	{
-		positiveExaggerationWindows.clear();
-		ExaggerationWindow currentWindow = null;
-		ExaggerationWindow previousWindow = null;
-		
-		List<ElevationExaggeration> exaggerators = getPositiveExaggeratorsAscending();
-		for (int i = 0; i < exaggerators.size(); i++)
-		{
-			previousWindow = currentWindow;
-			
-			ElevationExaggeration elevationExaggeration = exaggerators.get(i);
-			currentWindow = new ExaggerationWindow(elevationExaggeration.getElevationBoundary(), elevationExaggeration.getExaggeration());
-			currentWindow.setLowerWindow(previousWindow);
-			
-			positiveExaggerationWindows.add(currentWindow);
-		}
-	}
-	
 	/**
 	 * Exaggerate the elevations contained in the provided buffer using the configured {@link ElevationExaggeration}s.
 	 * <p/>
@@ -259,15 +221,7 @@ public class VerticalExaggerationElevationModel extends DetailedElevationModel i
 	 */
 	protected void exaggerateElevationsInPlace(double[] buffer)
 	{
-		if (buffer == null)
-		{
-			return;
-		}
-		
-		for (int i = 0; i < buffer.length; i++)
-		{
-			buffer[i] = exaggerateElevation(buffer[i]);
-		}
+		transferTable.apply(buffer);
 	}
 	
 	/**
@@ -275,89 +229,12 @@ public class VerticalExaggerationElevationModel extends DetailedElevationModel i
 	 */
 	protected double exaggerateElevation(double elevation)
 	{
-		ExaggerationWindow window = getWindowForElevation(elevation);
-		if (window == null)
-		{
-			return elevation;
-		}
-		return window.applyExaggeration(elevation);
-	}
-	
-	private ExaggerationWindow getWindowForElevation(double elevation)
-	{
-		exaggerationWindowLock.readLock().lock();
-		try
-		{
-			if (isNegativeElevation(elevation))
-			{
-				return findWindowForElevation(negativeExaggerationWindows, elevation);
-			}
-			return findWindowForElevation(positiveExaggerationWindows, elevation);
-		}
-		finally
-		{
-			exaggerationWindowLock.readLock().unlock();
-		}
-	}
-
-	private ExaggerationWindow findWindowForElevation(List<ExaggerationWindow> windowList, double elevation)
-	{
-		for (ExaggerationWindow window : windowList)
-		{
-			if (window.elevationIsInWindow(elevation))
-			{
-				return window;
-			}
-		}
-		return null;
-	}
-
-	private boolean isNegativeElevation(double elevation)
-	{
-		return elevation < 0.0;
+		return transferTable.apply(elevation);
 	}
 	
-	/**
-	 * @return The exaggerators with boundaries of positive elevations, ordered by ascending boundaries. 
-	 * Guaranteed to have an exaggerator at 0.0 as the first element in the list.
-	 */
-	private List<ElevationExaggeration> getPositiveExaggeratorsAscending()
-	{
-		List<ElevationExaggeration> result = new ArrayList<ElevationExaggeration>(exaggerators.tailMap(0.0, true).values());
-		if (result.isEmpty() || result.get(0).getElevationBoundary() > 0.0)
-		{
-			double zeroExaggeration = 1.0;
-			if (exaggerators.floorEntry(0.0) != null)
-			{
-				zeroExaggeration = exaggerators.floorEntry(0.0).getValue().getExaggeration();
-			}
-			result.add(0, new ElevationExaggerationImpl(zeroExaggeration, 0.0));
-		}
-		return result;
-	}
-	
-	/**
-	 * @return The exaggerators with boundaries of negative elevations, ordered by descending boundaries. 
-	 * Guaranteed to have an exaggerator at 0.0 as the first element in the list.
-	 */
-	private List<ElevationExaggeration> getNegativeExaggeratorsDescending()
-	{
-		List<ElevationExaggeration> result = new ArrayList<ElevationExaggeration>(exaggerators.headMap(0.0, false).descendingMap().values());
-		if (result.isEmpty() || result.get(0).getElevationBoundary() < 0.0)
-		{
-			double zeroExaggeration = 1.0;
-			if (exaggerators.lowerEntry(0.0) != null)
-			{
-				zeroExaggeration = exaggerators.lowerEntry(0.0).getValue().getExaggeration();
-			}
-			result.add(0, new ElevationExaggerationImpl(zeroExaggeration, 0.0));
-		}
-		return result;
-	}
-
 	@Override
 	public void exaggerationChanged(ElevationExaggeration exaggeration)
 	{
-		recalculateExaggerationWindows(); //TODO: Would be more efficient to recalculate only those windows effected by the change
+		recompileTransferTable();
 	}
 }
@@ -362,7 +362,7 @@ public class DefaultParameterCurveModel implements ParameterCurveModel, Animatio
 			{
 				dirtyWindowEnd = lastFrame;
 			}
-			ParameterValue[] windowValues = parameter.getValuesBetweenFrames(dirtyWindowStart, dirtyWindowEnd, null);
+			double[] windowValues = parameter.getDoubleValuesBetweenFrames(dirtyWindowStart, dirtyWindowEnd, null);
 			
 			// Repopulate the buffer from the recalculated values
 			for (int frame = firstFrame; frame <= lastFrame; frame++)
@@ -372,7 +372,7 @@ public class DefaultParameterCurveModel implements ParameterCurveModel, Animatio
 				boolean inWindow = inWindow(frame, dirtyWindowStart, dirtyWindowEnd);
 				if (inWindow || !curvePointsBackBuffer.containsKey(frame))
 				{
-					double curveValue = inWindow ? windowValues[frame - dirtyWindowStart].getValue() : parameter.getValueAtFrame(frame).getValue();
+					double curveValue = inWindow ? windowValues[frame - dirtyWindowStart] : parameter.getValueAtFrame(frame).getValue();
 					curvePoint = new ParameterCurvePoint(frame, curveValue);
 				}
 				else
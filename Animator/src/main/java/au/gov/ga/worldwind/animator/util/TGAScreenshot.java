@@ -16,7 +16,9 @@
 package au.gov.ga.worldwind.animator.util;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.InputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
@@ -79,6 +81,67 @@ public class TGAScreenshot
 		writer.close();
 	}
 
+	/**
+	 * Check that a file is a completely written uncompressed TARGA image of
+	 * the given size, as written by this class. Used to detect frames that
+	 * were only partially written (for example, by a render process that was
+	 * killed).
+	 * 
+	 * @param file
+	 * @param width
+	 *            Expected image width
+	 * @param height
+	 *            Expected image height
+	 * @return True if the file's header matches the size, and the file is long
+	 *         enough to contain all of the image data
+	 */
+	public static boolean isCompleteTargaFile(File file, int width, int height)
+	{
+		if (!file.isFile() || file.length() < TGAWriter.TARGA_HEADER_SIZE)
+		{
+			return false;
+		}
+
+		byte[] header = new byte[TGAWriter.TARGA_HEADER_SIZE];
+		try
+		{
+			InputStream is = new FileInputStream(file);
+			try
+			{
+				int read = 0;
+				while (read < header.length)
+				{
+					int count = is.read(header, read, header.length - read);
+					if (count < 0)
+					{
+						return false;
+					}
+					read += count;
+				}
+			}
+			finally
+			{
+				is.close();
+			}
+		}
+		catch (IOException e)
+		{
+			return false;
+		}
+
+		int idLength = header[0] & 0xFF;
+		int imageType = header[2];
+		int headerWidth = (header[12] & 0xFF) | (header[13] & 0xFF) << 8;
+		int headerHeight = (header[14] & 0xFF) | (header[15] & 0xFF) << 8;
+		int pixelSize = header[16] & 0xFF;
+		if (imageType != 2 || headerWidth != width || headerHeight != height || (pixelSize != 24 && pixelSize != 32))
+		{
+			return false;
+		}
+		long expectedLength = TGAWriter.TARGA_HEADER_SIZE + idLength + (long) width * height * (pixelSize / 8);
+		return file.length() >= expectedLength;
+	}
+
 	public static class TGAWriter
 	{
 		private static final int TARGA_HEADER_SIZE = 18;
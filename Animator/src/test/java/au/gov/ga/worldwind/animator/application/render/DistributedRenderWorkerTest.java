@@ -0,0 +1,212 @@
+package au.gov.ga.worldwind.animator.application.render;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.animator.application.render.DistributedRenderWorker.FrameRenderer;
+import au.gov.ga.worldwind.animator.application.render.FrameLeaseManager.Chunk;
+
+/**
+ * Unit tests for the {@link DistributedRenderWorker} class
+ */
+public class DistributedRenderWorkerTest
+{
+	private static final int START = 0;
+	private static final int END = 99;
+
+	private File directory;
+	private AtomicIntegerArray renderCounts;
+
+	@Before
+	public void setup() throws IOException
+	{
+		directory = new File(System.getProperty("java.io.tmpdir"), "leases-" + UUID.randomUUID());
+		FrameLeaseManager.createJob(directory, START, END, 7);
+		renderCounts = new AtomicIntegerArray(END + 1);
+	}
+
+	@After
+	public void tearDown()
+	{
+		for (File file : directory.listFiles())
+		{
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void testWorkersRenderEachFrameOnce() throws Exception
+	{
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 4; i++)
+		{
+			final DistributedRenderWorker worker = createWorker("worker" + i);
+			Thread thread = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						worker.run();
+					}
+					catch (Throwable t)
+					{
+						synchronized (errors)
+						{
+							errors.add(t);
+						}
+					}
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertEachFrameRenderedOnce();
+		assertTrue(new FrameLeaseManager(directory, "check", 1000).isComplete());
+	}
+
+	@Test
+	public void testRenderedFramesAreSkipped() throws Exception
+	{
+		for (int frame = 10; frame <= 20; frame++)
+		{
+			renderCounts.set(frame, 1);
+		}
+
+		DistributedRenderWorker worker = createWorker("worker");
+		worker.run();
+
+		assertEachFrameRenderedOnce();
+		assertEquals(11, worker.getSkippedFrameCount());
+		assertEquals(89, worker.getRenderedFrameCount());
+	}
+
+	@Test
+	public void testAbandonedChunkIsTakenOver() throws Exception
+	{
+		//a worker that dies after rendering part of its chunk
+		FrameLeaseManager dead = new FrameLeaseManager(directory, "dead", 1000);
+		Chunk chunk = dead.acquire();
+		for (int frame = chunk.firstFrame; frame < chunk.lastFrame; frame++)
+		{
+			renderCounts.incrementAndGet(frame);
+		}
+
+		FrameLeaseManager leases = new FrameLeaseManager(directory, "worker", 100);
+		DistributedRenderWorker worker = new DistributedRenderWorker(leases, new FakeRenderer());
+		worker.setPollInterval(10);
+		worker.run();
+
+		assertEachFrameRenderedOnce();
+		assertEquals(chunk.lastFrame - chunk.firstFrame, worker.getSkippedFrameCount());
+		assertTrue(leases.isComplete());
+	}
+
+	@Test
+	public void testFailedChunkIsReleased() throws Exception
+	{
+		FrameLeaseManager leases = new FrameLeaseManager(directory, "worker", 1000);
+		DistributedRenderWorker worker = new DistributedRenderWorker(leases, new FakeRenderer()
+		{
+			@Override
+			public void render(int firstFrame, int lastFrame) throws Exception
+			{
+				throw new Exception("Render failed");
+			}
+		});
+		try
+		{
+			worker.run();
+			fail("Expected exception");
+		}
+		catch (Exception e)
+		{
+			assertEquals("Render failed", e.getMessage());
+		}
+		assertEquals(0, leases.getLeasedChunkCount());
+		assertEquals(0, leases.getCompletedChunkCount());
+	}
+
+	@Test
+	public void testUnwrittenFramesFail() throws Exception
+	{
+		FrameLeaseManager leases = new FrameLeaseManager(directory, "worker", 1000);
+		DistributedRenderWorker worker = new DistributedRenderWorker(leases, new FakeRenderer()
+		{
+			@Override
+			public void render(int firstFrame, int lastFrame) throws Exception
+			{
+				//returns normally without writing the frames (eg a swallowed write error)
+			}
+		});
+		try
+		{
+			worker.run();
+			fail("Expected exception");
+		}
+		catch (IOException e)
+		{
+			//expected
+		}
+		assertEquals(0, leases.getLeasedChunkCount());
+		assertEquals(0, leases.getCompletedChunkCount());
+	}
+
+	private DistributedRenderWorker createWorker(String id) throws IOException
+	{
+		DistributedRenderWorker worker =
+				new DistributedRenderWorker(new FrameLeaseManager(directory, id, 1000), new FakeRenderer());
+		worker.setPollInterval(10);
+		return worker;
+	}
+
+	private void assertEachFrameRenderedOnce()
+	{
+		for (int frame = START; frame <= END; frame++)
+		{
+			assertEquals("Frame " + frame, 1, renderCounts.get(frame));
+		}
+	}
+
+	private class FakeRenderer implements FrameRenderer
+	{
+		@Override
+		public void render(int firstFrame, int lastFrame) throws Exception
+		{
+			for (int frame = firstFrame; frame <= lastFrame; frame++)
+			{
+				renderCounts.incrementAndGet(frame);
+			}
+		}
+
+		@Override
+		public boolean isRendered(int frame)
+		{
+			return renderCounts.get(frame) > 0;
+		}
+
+		@Override
+		public void stop()
+		{
+		}
+	}
+}
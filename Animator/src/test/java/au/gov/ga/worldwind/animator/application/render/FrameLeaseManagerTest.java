@@ -0,0 +1,217 @@
+package au.gov.ga.worldwind.animator.application.render;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.animator.application.render.FrameLeaseManager.Chunk;
+
+/**
+ * Unit tests for the {@link FrameLeaseManager} class
+ */
+public class FrameLeaseManagerTest
+{
+	private static final long TIMEOUT = 1000;
+
+	private File directory;
+
+	@Before
+	public void setup() throws IOException
+	{
+		directory = new File(System.getProperty("java.io.tmpdir"), "leases-" + UUID.randomUUID());
+		FrameLeaseManager.createJob(directory, 10, 104, 10);
+	}
+
+	@After
+	public void tearDown()
+	{
+		for (File file : directory.listFiles())
+		{
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void testCreateJobSameJob() throws IOException
+	{
+		FrameLeaseManager.createJob(directory, 10, 104, 10);
+		FrameLeaseManager leases = new FrameLeaseManager(directory, "a", TIMEOUT);
+		assertEquals(10, leases.getStartFrame());
+		assertEquals(104, leases.getEndFrame());
+		assertEquals(10, leases.getChunkSize());
+		assertEquals(10, leases.getChunkCount());
+	}
+
+	@Test(expected = IOException.class)
+	public void testCreateJobDifferentJob() throws IOException
+	{
+		FrameLeaseManager.createJob(directory, 10, 105, 10);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWorkerIdWithSpaces() throws IOException
+	{
+		new FrameLeaseManager(directory, "a b", TIMEOUT);
+	}
+
+	@Test
+	public void testAcquireIsExclusive() throws IOException
+	{
+		FrameLeaseManager a = new FrameLeaseManager(directory, "a", TIMEOUT);
+		FrameLeaseManager b = new FrameLeaseManager(directory, "b", TIMEOUT);
+
+		Chunk first = a.acquire();
+		Chunk second = b.acquire();
+		Chunk third = a.acquire();
+		assertEquals(0, first.index);
+		assertEquals(10, first.firstFrame);
+		assertEquals(19, first.lastFrame);
+		assertEquals(1, second.index);
+		assertEquals(2, third.index);
+		assertEquals(3, a.getLeasedChunkCount());
+	}
+
+	@Test
+	public void testLastChunkIsClamped() throws IOException
+	{
+		FrameLeaseManager a = new FrameLeaseManager(directory, "a", TIMEOUT);
+		Chunk chunk = null;
+		for (int i = 0; i < a.getChunkCount(); i++)
+		{
+			chunk = a.acquire();
+		}
+		assertEquals(9, chunk.index);
+		assertEquals(100, chunk.firstFrame);
+		assertEquals(104, chunk.lastFrame);
+		assertNull(a.acquire());
+	}
+
+	@Test
+	public void testReleasedChunkIsReacquired() throws IOException
+	{
+		FrameLeaseManager a = new FrameLeaseManager(directory, "a", TIMEOUT);
+		FrameLeaseManager b = new FrameLeaseManager(directory, "b", TIMEOUT);
+
+		Chunk chunk = a.acquire();
+		a.release(chunk);
+		assertEquals(chunk.index, b.acquire().index);
+	}
+
+	@Test
+	public void testCompletedChunksAreNotReacquired() throws IOException
+	{
+		FrameLeaseManager a = new FrameLeaseManager(directory, "a", TIMEOUT);
+		for (int i = 0; i < a.getChunkCount(); i++)
+		{
+			assertFalse(a.isComplete());
+			a.complete(a.acquire());
+		}
+		assertTrue(a.isComplete());
+		assertEquals(a.getChunkCount(), a.getCompletedChunkCount());
+		assertEquals(0, a.getLeasedChunkCount());
+		assertNull(new FrameLeaseManager(directory, "b", TIMEOUT).acquire());
+	}
+
+	@Test
+	public void testExpiredLeaseIsTakenOver() throws IOException
+	{
+		FrameLeaseManager a = new FrameLeaseManager(directory, "a", TIMEOUT);
+		FakeClockLeaseManager b = new FakeClockLeaseManager(directory, "b");
+
+		Chunk chunk = a.acquire();
+
+		//first observation of the heartbeat starts the timeout
+		assertEquals(1, b.acquire().index);
+		b.time += TIMEOUT - 1;
+		assertEquals(2, b.acquire().index);
+		b.time += 1;
+		assertEquals(chunk.index, b.acquire().index);
+
+		//the original worker has lost its lease
+		assertFalse(a.heartbeat(chunk));
+	}
+
+	@Test
+	public void testExpiredLeaseIsTakenOverOnce() throws IOException
+	{
+		FrameLeaseManager a = new FrameLeaseManager(directory, "a", TIMEOUT);
+		FakeClockLeaseManager b = new FakeClockLeaseManager(directory, "b");
+		FakeClockLeaseManager c = new FakeClockLeaseManager(directory, "c");
+
+		Chunk chunk = a.acquire();
+		Chunk renewed = b.acquire();
+		assertEquals(1, renewed.index);
+		assertEquals(2, c.acquire().index);
+		b.time += TIMEOUT;
+		c.time += TIMEOUT;
+
+		//both see the lease as expired, but only the first takes it over
+		Chunk taken = b.acquire();
+		assertEquals(chunk.index, taken.index);
+		assertTrue(b.heartbeat(renewed));
+		assertEquals(3, c.acquire().index);
+
+		//the original worker can't renew or release its successor's lease
+		assertFalse(a.heartbeat(chunk));
+		a.release(chunk);
+		assertTrue(b.heartbeat(taken));
+		assertEquals(4, b.getLeasedChunkCount());
+	}
+
+	@Test
+	public void testReacquiredLeaseIsNotExpired() throws IOException
+	{
+		FrameLeaseManager a = new FrameLeaseManager(directory, "a", TIMEOUT);
+		FakeClockLeaseManager b = new FakeClockLeaseManager(directory, "b");
+
+		Chunk chunk = a.acquire();
+		assertEquals(1, b.acquire().index);
+		a.release(chunk);
+		assertEquals(chunk.index, a.acquire().index);
+
+		//the new lease has the same heartbeat as the released lease, but hasn't been observed for the timeout
+		b.time += TIMEOUT;
+		assertEquals(2, b.acquire().index);
+		assertTrue(a.heartbeat(chunk));
+	}
+
+	@Test
+	public void testHeartbeatRenewsLease() throws IOException
+	{
+		FrameLeaseManager a = new FrameLeaseManager(directory, "a", TIMEOUT);
+		FakeClockLeaseManager b = new FakeClockLeaseManager(directory, "b");
+
+		Chunk chunk = a.acquire();
+		for (int i = 0; i < b.getChunkCount() - 1; i++)
+		{
+			assertFalse(chunk.index == b.acquire().index);
+			b.time += TIMEOUT - 1;
+			assertTrue(a.heartbeat(chunk));
+		}
+		assertNull(b.acquire());
+		assertTrue(a.heartbeat(chunk));
+	}
+
+	private static class FakeClockLeaseManager extends FrameLeaseManager
+	{
+		public long time = 0;
+
+		public FakeClockLeaseManager(File directory, String workerId) throws IOException
+		{
+			super(directory, workerId, TIMEOUT);
+		}
+
+		@Override
+		protected long currentTimeMillis()
+		{
+			return time;
+		}
+	}
+}
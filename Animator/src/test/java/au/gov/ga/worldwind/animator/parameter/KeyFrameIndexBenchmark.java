@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.parameter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.jmock.Mockery;
+
+import au.gov.ga.worldwind.animator.animation.KeyFrame;
+import au.gov.ga.worldwind.animator.animation.KeyFrameImpl;
+import au.gov.ga.worldwind.animator.animation.parameter.BasicBezierParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.InterpolatorFactory;
+import au.gov.ga.worldwind.animator.animation.parameter.KeyFrameIndex;
+import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterValueFactory;
+
+/**
+ * Simulates evaluating every parameter of an animation at every frame (as the
+ * offscreen renderer and the parameter curve editor do), and compares
+ * evaluating through a {@link KeyFrameIndex} against searching the
+ * animation's key frame map for the surrounding key frames and creating a new
+ * interpolator for every frame (as the ParameterBase used to).
+ * <p/>
+ * Run as an application. The synthetic animation has 5000 frames and 200
+ * parameters, with key frames every 25 frames each containing values for a
+ * random quarter of the parameters.
+ */
+public class KeyFrameIndexBenchmark
+{
+	private static final int FRAMES = 5000;
+	private static final int PARAMETERS = 200;
+	private static final int KEY_FRAME_SPACING = 25;
+
+	private static double sink;
+
+	public static void main(String[] args)
+	{
+		Mockery context = new Mockery();
+		List<Parameter> parameters = new ArrayList<Parameter>();
+		for (int i = 0; i < PARAMETERS; i++)
+		{
+			parameters.add(context.mock(Parameter.class, "parameter" + i));
+		}
+
+		TreeMap<Integer, KeyFrame> keyFrames = createKeyFrames(parameters);
+		for (int run = 0; run < 5; run++)
+		{
+			report("Key frame search", evaluateBySearch(parameters, keyFrames));
+			report("Key frame index ", evaluateByIndex(parameters, keyFrames));
+		}
+		System.out.println(sink);
+	}
+
+	private static void report(String name, long nanos)
+	{
+		System.out.println(name + ": " + (nanos / 1000000) + " ms, " + (nanos / ((long) FRAMES * PARAMETERS))
+				+ " ns per value");
+	}
+
+	private static TreeMap<Integer, KeyFrame> createKeyFrames(List<Parameter> parameters)
+	{
+		Random random = new Random(0);
+		TreeMap<Integer, KeyFrame> keyFrames = new TreeMap<Integer, KeyFrame>();
+		for (int frame = 0; frame < FRAMES; frame += KEY_FRAME_SPACING)
+		{
+			List<ParameterValue> values = new ArrayList<ParameterValue>();
+			for (Parameter parameter : parameters)
+			{
+				if (frame == 0 || random.nextInt(4) == 0)
+				{
+					values.add(new BasicBezierParameterValue(random.nextDouble() * 100, frame, parameter));
+				}
+			}
+			keyFrames.put(frame, new KeyFrameImpl(frame, values));
+		}
+		return keyFrames;
+	}
+
+	private static long evaluateBySearch(List<Parameter> parameters, TreeMap<Integer, KeyFrame> keyFrames)
+	{
+		long start = System.nanoTime();
+		for (Parameter parameter : parameters)
+		{
+			for (int frame = 0; frame < FRAMES; frame++)
+			{
+				KeyFrame previous = find(keyFrames.headMap(frame, true).descendingMap(), parameter);
+				KeyFrame next = find(keyFrames.tailMap(frame, false), parameter);
+				sink += interpolate(parameter, frame, previous, next);
+			}
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static long evaluateByIndex(List<Parameter> parameters, TreeMap<Integer, KeyFrame> keyFrames)
+	{
+		long start = System.nanoTime();
+		double[] values = new double[FRAMES];
+		for (Parameter parameter : parameters)
+		{
+			List<KeyFrame> parameterKeyFrames = new ArrayList<KeyFrame>();
+			for (KeyFrame keyFrame : keyFrames.values())
+			{
+				if (keyFrame.hasValueForParameter(parameter))
+				{
+					parameterKeyFrames.add(keyFrame);
+				}
+			}
+			KeyFrameIndex index = new KeyFrameIndex(parameter, parameterKeyFrames, 0);
+			index.getValuesBetweenFrames(0, FRAMES - 1, values);
+			for (double value : values)
+			{
+				sink += value;
+			}
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static KeyFrame find(Map<Integer, KeyFrame> keyFrames, Parameter parameter)
+	{
+		for (KeyFrame keyFrame : keyFrames.values())
+		{
+			if (keyFrame.hasValueForParameter(parameter))
+			{
+				return keyFrame;
+			}
+		}
+		return null;
+	}
+
+	private static double interpolate(Parameter parameter, int frame, KeyFrame previous, KeyFrame next)
+	{
+		if (next == null)
+		{
+			return previous.getValueForParameter(parameter).getValue();
+		}
+		ParameterValue start = previous.getValueForParameter(parameter);
+		ParameterValue end = next.getValueForParameter(parameter);
+		double percent = (frame - previous.getFrame()) / (double) (next.getFrame() - previous.getFrame());
+		double value = InterpolatorFactory.getInterpolator(start, end).computeValue(percent).y;
+		return ParameterValueFactory.createParameterValue(parameter, value, frame).getValue();
+	}
+}
@@ -0,0 +1,145 @@
+package au.gov.ga.worldwind.animator.parameter;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.animator.animation.KeyFrame;
+import au.gov.ga.worldwind.animator.animation.KeyFrameImpl;
+import au.gov.ga.worldwind.animator.animation.parameter.BasicBezierParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.BasicParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.InterpolatorFactory;
+import au.gov.ga.worldwind.animator.animation.parameter.KeyFrameIndex;
+import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterValue;
+
+/**
+ * Unit tests for the {@link KeyFrameIndex} class
+ */
+public class KeyFrameIndexTest
+{
+	private static final double ALLOWABLE_ERROR = 0.0001;
+
+	private Parameter owner;
+	private ParameterValue value10;
+	private ParameterValue value20;
+	private ParameterValue value40;
+	private KeyFrameIndex index;
+
+	@Before
+	public void setup()
+	{
+		Mockery context = new Mockery();
+
+		owner = context.mock(Parameter.class);
+
+		value10 = new BasicBezierParameterValue(5.0, 10, owner, 3d, 0.4, 7d, 0.4);
+		value20 = new BasicParameterValue(15.0, 20, owner);
+		value40 = new BasicBezierParameterValue(-5.0, 40, owner, 0d, 0.4, -10d, 0.4);
+
+		//bezier values look up their neighbouring key frames when interpolators are created
+		context.checking(new Expectations(){{
+			allowing(owner).getValueAtKeyFrameBeforeFrame(10); will(returnValue(null));
+			allowing(owner).getValueAtKeyFrameAfterFrame(10); will(returnValue(value20));
+			allowing(owner).getValueAtKeyFrameBeforeFrame(20); will(returnValue(value10));
+			allowing(owner).getValueAtKeyFrameAfterFrame(20); will(returnValue(value40));
+			allowing(owner).getValueAtKeyFrameBeforeFrame(40); will(returnValue(value20));
+			allowing(owner).getValueAtKeyFrameAfterFrame(40); will(returnValue(null));
+		}});
+
+		List<KeyFrame> keyFrames = new ArrayList<KeyFrame>();
+		keyFrames.add(new KeyFrameImpl(10, value10));
+		keyFrames.add(new KeyFrameImpl(20, value20));
+		keyFrames.add(new KeyFrameImpl(40, value40));
+
+		index = new KeyFrameIndex(owner, keyFrames, 3);
+	}
+
+	@Test
+	public void testEmptyIndex()
+	{
+		KeyFrameIndex empty = new KeyFrameIndex(owner, new ArrayList<KeyFrame>(), 0);
+
+		assertTrue(empty.isEmpty());
+		assertNull(empty.getValueAtFrame(owner, 10));
+	}
+
+	@Test
+	public void testVersion()
+	{
+		assertFalse(index.isEmpty());
+		assertEquals(3, index.getVersion());
+	}
+
+	@Test
+	public void testValueBeforeFirstKeyFrame()
+	{
+		assertSame(value10, index.getValueAtFrame(owner, 0));
+		assertSame(value10, index.getValueAtFrame(owner, 9));
+	}
+
+	@Test
+	public void testValueAfterLastKeyFrame()
+	{
+		assertSame(value40, index.getValueAtFrame(owner, 41));
+		assertSame(value40, index.getValueAtFrame(owner, 100));
+	}
+
+	@Test
+	public void testValueAtKeyFrame()
+	{
+		assertSame(value10, index.getValueAtFrame(owner, 10));
+		assertSame(value20, index.getValueAtFrame(owner, 20));
+		assertSame(value40, index.getValueAtFrame(owner, 40));
+	}
+
+	@Test
+	public void testInterpolatedValue()
+	{
+		ParameterValue result = index.getValueAtFrame(owner, 15);
+
+		assertEquals(15, result.getFrame());
+		assertEquals(expected(value10, value20, 15), result.getValue(), ALLOWABLE_ERROR);
+
+		result = index.getValueAtFrame(owner, 33);
+
+		assertEquals(33, result.getFrame());
+		assertEquals(expected(value20, value40, 33), result.getValue(), ALLOWABLE_ERROR);
+	}
+
+	@Test
+	public void testValuesBetweenFramesMatchSingleFrameValues()
+	{
+		double[] values = new double[51];
+		index.getValuesBetweenFrames(0, 50, values);
+
+		for (int frame = 0; frame <= 50; frame++)
+		{
+			assertEquals(index.getValueAtFrame(owner, frame).getValue(), values[frame], ALLOWABLE_ERROR);
+		}
+	}
+
+	@Test
+	public void testValuesBetweenFramesWithinInterval()
+	{
+		double[] values = new double[3];
+		index.getValuesBetweenFrames(24, 26, values);
+
+		for (int i = 0; i < values.length; i++)
+		{
+			assertEquals(expected(value20, value40, 24 + i), values[i], ALLOWABLE_ERROR);
+		}
+	}
+
+	private static double expected(ParameterValue start, ParameterValue end, int frame)
+	{
+		double percent = (frame - start.getFrame()) / (double) (end.getFrame() - start.getFrame());
+		return InterpolatorFactory.getInterpolator(start, end).computeValue(percent).y;
+	}
+}
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.terrain.exaggeration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compares exaggerating elevation tile buffers with an
+ * {@link ExaggerationTransferTable} against taking a read lock and walking a
+ * list of exaggeration windows for every sample (as the
+ * VerticalExaggerationElevationModel used to).
+ * <p/>
+ * Run as an application. Each buffer is a 150x150 elevation tile containing
+ * runs of similar values, exaggerated with 8 exaggeration bands.
+ */
+public class ExaggerationTransferTableBenchmark
+{
+	private static final int TILES = 2000;
+	private static final int TILE_SIZE = 150 * 150;
+	private static final double[] BOUNDARIES = { -4000, -1000, -200, 0, 100, 500, 1000, 2000 };
+	private static final double[] EXAGGERATIONS = { 1.5, 3, 5, 10, 4, 2, 1, 0.5 };
+
+	private static double sink;
+
+	public static void main(String[] args)
+	{
+		TreeMap<Double, ElevationExaggeration> exaggerators = new TreeMap<Double, ElevationExaggeration>();
+		for (int i = 0; i < BOUNDARIES.length; i++)
+		{
+			exaggerators.put(BOUNDARIES[i], new ElevationExaggerationImpl(EXAGGERATIONS[i], BOUNDARIES[i]));
+		}
+		ExaggerationTransferTable table = ExaggerationTransferTable.compile(exaggerators);
+		Windows windows = new Windows(BOUNDARIES, table);
+		double[] source = createTile();
+
+		for (int run = 0; run < 5; run++)
+		{
+			report("Locked window walk", exaggerateWithWindows(windows, source));
+			report("Transfer table    ", exaggerateWithTable(table, source));
+			report("Inverse table     ", invertWithTable(table, source));
+		}
+		System.out.println(sink);
+	}
+
+	private static void report(String name, long nanos)
+	{
+		System.out.println(name + ": " + (nanos / 1000000) + " ms, "
+				+ String.format("%.2f", nanos / ((double) TILES * TILE_SIZE)) + " ns per sample");
+	}
+
+	private static double[] createTile()
+	{
+		Random random = new Random(0);
+		double[] tile = new double[TILE_SIZE];
+		for (int i = 0; i < tile.length; i++)
+		{
+			tile[i] = i % 150 == 0 ? random.nextDouble() * 5000 - 2500 : tile[i - 1] + random.nextDouble() * 20 - 10;
+		}
+		return tile;
+	}
+
+	private static long exaggerateWithWindows(Windows windows, double[] source)
+	{
+		double[] buffer = new double[source.length];
+		long start = System.nanoTime();
+		for (int tile = 0; tile < TILES; tile++)
+		{
+			System.arraycopy(source, 0, buffer, 0, source.length);
+			for (int i = 0; i < buffer.length; i++)
+			{
+				buffer[i] = windows.exaggerate(buffer[i]);
+			}
+			sink += buffer[tile % buffer.length];
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static long exaggerateWithTable(ExaggerationTransferTable table, double[] source)
+	{
+		double[] buffer = new double[source.length];
+		long start = System.nanoTime();
+		for (int tile = 0; tile < TILES; tile++)
+		{
+			System.arraycopy(source, 0, buffer, 0, source.length);
+			table.apply(buffer);
+			sink += buffer[tile % buffer.length];
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static long invertWithTable(ExaggerationTransferTable table, double[] source)
+	{
+		double[] exaggerated = source.clone();
+		table.apply(exaggerated);
+		double[] buffer = new double[source.length];
+		long start = System.nanoTime();
+		for (int tile = 0; tile < TILES; tile++)
+		{
+			System.arraycopy(exaggerated, 0, buffer, 0, source.length);
+			table.invert(buffer);
+			sink += buffer[tile % buffer.length];
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Per-sample lookup through a lock and a linear scan of window objects.
+	 * The results are taken from the table, as only the lookup cost is being
+	 * measured.
+	 */
+	private static class Windows
+	{
+		private final ReadWriteLock lock = new ReentrantReadWriteLock();
+		private final List<Window> positive = new ArrayList<Window>();
+		private final List<Window> negative = new ArrayList<Window>();
+
+		public Windows(double[] boundaries, ExaggerationTransferTable table)
+		{
+			Window below = new Window(Double.NEGATIVE_INFINITY, boundaries[0], table);
+			negative.add(below);
+			for (int i = 0; i < boundaries.length; i++)
+			{
+				double upper = i + 1 < boundaries.length ? boundaries[i + 1] : Double.POSITIVE_INFINITY;
+				(boundaries[i] < 0 ? negative : positive).add(new Window(boundaries[i], upper, table));
+			}
+		}
+
+		public double exaggerate(double elevation)
+		{
+			lock.readLock().lock();
+			try
+			{
+				for (Window window : elevation < 0 ? negative : positive)
+				{
+					if (window.lower <= elevation && elevation < window.upper)
+					{
+						return elevation * window.slope + window.offset;
+					}
+				}
+				return elevation;
+			}
+			finally
+			{
+				lock.readLock().unlock();
+			}
+		}
+	}
+
+	private static class Window
+	{
+		private final Double lower;
+		private final Double upper;
+		private final double slope;
+		private final double offset;
+
+		public Window(double lower, double upper, ExaggerationTransferTable table)
+		{
+			this.lower = lower;
+			this.upper = upper;
+			double a = Double.isInfinite(lower) ? upper - 1 : lower;
+			double b = Double.isInfinite(upper) ? a + 1 : upper;
+			this.slope = (table.apply(b) - table.apply(a)) / (b - a);
+			this.offset = table.apply(a) - slope * a;
+		}
+	}
+}
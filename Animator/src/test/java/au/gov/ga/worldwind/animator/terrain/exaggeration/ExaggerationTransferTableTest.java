@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.terrain.exaggeration;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ExaggerationTransferTable} class
+ */
+public class ExaggerationTransferTableTest
+{
+	private static final double ALLOWABLE_ERROR = 0.0001;
+
+	private TreeMap<Double, ElevationExaggeration> exaggerators;
+
+	@Before
+	public void setup()
+	{
+		exaggerators = new TreeMap<Double, ElevationExaggeration>();
+	}
+
+	@Test
+	public void testEmptyIsIdentity()
+	{
+		ExaggerationTransferTable table = ExaggerationTransferTable.compile(exaggerators);
+		assertSame(ExaggerationTransferTable.IDENTITY, table);
+		assertEquals(123.45, table.apply(123.45), 0);
+		assertEquals(-123.45, table.invert(-123.45), 0);
+		assertTrue(Double.isNaN(table.apply(Double.NaN)));
+	}
+
+	@Test
+	public void testPositiveAndNegativeExaggerators()
+	{
+		add(3.0, 40.0);
+		add(1.0, 20.0);
+		add(2.0, 0.0);
+		add(2.0, -5.0);
+		add(5.0, -10.0);
+		ExaggerationTransferTable table = ExaggerationTransferTable.compile(exaggerators);
+
+		double[] inputs = new double[] { -20.0, -10.0, -08.0, -03.0, 00.0, 10.0, 20.0, 30.0, 40.0, 50.0 };
+		double[] expect = new double[] { -45.0, -35.0, -25.0, -06.0, 00.0, 20.0, 40.0, 50.0, 60.0, 90.0 };
+		for (int i = 0; i < inputs.length; i++)
+		{
+			assertEquals(expect[i], table.apply(inputs[i]), ALLOWABLE_ERROR);
+		}
+
+		table.apply(inputs);
+		assertArrayEquals(expect, inputs, ALLOWABLE_ERROR);
+	}
+
+	@Test
+	public void testExaggerationAtZeroComesFromBelow()
+	{
+		//no exaggerator at 0, so 0-10 uses the exaggerator at -5
+		add(4.0, 10.0);
+		add(3.0, -5.0);
+		ExaggerationTransferTable table = ExaggerationTransferTable.compile(exaggerators);
+
+		assertEquals(0, table.apply(0), ALLOWABLE_ERROR);
+		assertEquals(30, table.apply(10), ALLOWABLE_ERROR);
+		assertEquals(38, table.apply(12), ALLOWABLE_ERROR);
+		assertEquals(-15, table.apply(-5), ALLOWABLE_ERROR);
+		assertEquals(-16, table.apply(-6), ALLOWABLE_ERROR);
+	}
+
+	@Test
+	public void testBufferMatchesSingleValues()
+	{
+		add(3.0, 400.0);
+		add(0.5, 200.0);
+		add(2.0, 0.0);
+		add(10.0, -50.0);
+		add(1.5, -1000.0);
+		ExaggerationTransferTable table = ExaggerationTransferTable.compile(exaggerators);
+
+		Random random = new Random(0);
+		double[] buffer = new double[1000];
+		double[] expected = new double[buffer.length];
+		for (int i = 0; i < buffer.length; i++)
+		{
+			//runs of similar values, as in an elevation tile
+			buffer[i] = i % 50 == 0 ? random.nextDouble() * 3000 - 1500 : buffer[i - 1] + random.nextDouble() - 0.5;
+			expected[i] = table.apply(buffer[i]);
+		}
+		table.apply(buffer, 0, buffer.length);
+		assertArrayEquals(expected, buffer, 0);
+	}
+
+	@Test
+	public void testInverse()
+	{
+		add(3.0, 400.0);
+		add(0.5, 200.0);
+		add(2.0, 0.0);
+		add(10.0, -50.0);
+		add(1.5, -1000.0);
+		ExaggerationTransferTable table = ExaggerationTransferTable.compile(exaggerators);
+		assertSame(table, table.getInverse().getInverse());
+
+		double[] values = new double[] { -5000, -1000, -999, -50, -1, 0, 1, 199, 200, 201, 400, 10000 };
+		for (double value : values)
+		{
+			assertEquals(value, table.invert(table.apply(value)), ALLOWABLE_ERROR);
+		}
+
+		double[] buffer = values.clone();
+		table.apply(buffer);
+		table.invert(buffer);
+		assertArrayEquals(values, buffer, ALLOWABLE_ERROR);
+	}
+
+	@Test
+	public void testZeroExaggerationInverse()
+	{
+		add(0.0, 100.0);
+		add(1.0, 200.0);
+		ExaggerationTransferTable table = ExaggerationTransferTable.compile(exaggerators);
+
+		assertEquals(100, table.apply(100), ALLOWABLE_ERROR);
+		assertEquals(100, table.apply(150), ALLOWABLE_ERROR);
+		assertEquals(110, table.apply(210), ALLOWABLE_ERROR);
+		assertEquals(210, table.invert(110), ALLOWABLE_ERROR);
+		assertEquals(50, table.invert(50), ALLOWABLE_ERROR);
+	}
+
+	private void add(double exaggeration, double boundary)
+	{
+		exaggerators.put(boundary, new ElevationExaggerationImpl(exaggeration, boundary));
+	}
+}
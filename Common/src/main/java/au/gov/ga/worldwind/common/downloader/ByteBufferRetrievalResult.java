@@ -34,9 +34,17 @@ public class ByteBufferRetrievalResult implements RetrievalResult
 	private final boolean fromCache;
 	private final boolean notModified;
 	private final String contentType;
+	private final String etag;
+	private final Long serverLastModified;
 
 	public ByteBufferRetrievalResult(URL sourceURL, ByteBuffer buffer, boolean fromCache,
 			boolean notModified, Exception error, String contentType)
+	{
+		this(sourceURL, buffer, fromCache, notModified, error, contentType, null, null);
+	}
+
+	public ByteBufferRetrievalResult(URL sourceURL, ByteBuffer buffer, boolean fromCache,
+			boolean notModified, Exception error, String contentType, String etag, Long serverLastModified)
 	{
 		this.sourceURL = sourceURL;
 		this.buffer = buffer;
@@ -44,6 +52,25 @@ public class ByteBufferRetrievalResult implements RetrievalResult
 		this.notModified = notModified;
 		this.error = error;
 		this.contentType = contentType;
+		this.etag = etag;
+		this.serverLastModified = serverLastModified;
+	}
+
+	/**
+	 * @return The ETag returned by the server with this result, or null
+	 */
+	public String getETag()
+	{
+		return etag;
+	}
+
+	/**
+	 * @return The last modification date returned by the server with this
+	 *         result, or null if unknown
+	 */
+	public Long getServerLastModified()
+	{
+		return serverLastModified;
 	}
 
 	@Override
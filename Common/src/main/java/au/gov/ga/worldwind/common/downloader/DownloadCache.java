@@ -0,0 +1,466 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.downloader;
+
+import gov.nasa.worldwind.cache.FileStore;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import au.gov.ga.worldwind.common.util.URLUtil;
+
+/**
+ * Local file cache used by the {@link Downloader}.
+ * <p/>
+ * Each cached URL is stored as a file in the cache directory, with a small
+ * properties file of the same name in the metadata subdirectory containing the
+ * ETag and Last-Modified values returned by the server, which are used to
+ * revalidate the cached copy. An in-memory index of
+ * the entries means that repeated lookups don't touch the file system.
+ * <p/>
+ * Access is guarded by a set of striped read/write locks keyed by URL, so
+ * reads and writes of different URLs don't block each other. Writes go to a
+ * temporary file which is then renamed over the cached file, so that readers
+ * (including other processes sharing the cache) never see a partial file.
+ * <p/>
+ * If a {@link FileStore} is provided, URLs that aren't in the cache directory
+ * are also searched for in the store's read locations (for example, a cache
+ * bundled with the application). These are only read; updated copies are
+ * written to the cache directory, which takes precedence.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class DownloadCache
+{
+	private static final int STRIPES = 32;
+	//cached filenames always contain a '!' (from the URL's scheme separator), so can't collide with this directory
+	private static final String METADATA_DIRECTORY = "metadata";
+	private static final String ETAG_KEY = "etag";
+	private static final String LAST_MODIFIED_KEY = "lastModified";
+
+	private final File directory;
+	private final FileStore fileStore;
+	private final String fileStorePath;
+	private final ReadWriteLock[] locks = new ReadWriteLock[STRIPES];
+	private final ConcurrentMap<String, Entry> index = new ConcurrentHashMap<String, Entry>();
+
+	public DownloadCache(File directory)
+	{
+		this(directory, null, null);
+	}
+
+	/**
+	 * @param directory
+	 *            Directory in which cached files are stored
+	 * @param fileStore
+	 *            Store to search for cached files that are not in the
+	 *            directory (can be null)
+	 * @param fileStorePath
+	 *            Path of the cache within the fileStore
+	 */
+	public DownloadCache(File directory, FileStore fileStore, String fileStorePath)
+	{
+		this.directory = directory;
+		this.fileStore = fileStore;
+		this.fileStorePath = fileStorePath;
+		for (int i = 0; i < locks.length; i++)
+		{
+			locks[i] = new ReentrantReadWriteLock();
+		}
+	}
+
+	/**
+	 * @return The directory in which cached files are stored
+	 */
+	public File getDirectory()
+	{
+		return directory;
+	}
+
+	/**
+	 * Get the cached result for the given URL.
+	 * 
+	 * @param url
+	 * @return Cached result, or null if the URL has not been cached
+	 */
+	public FileRetrievalResult get(URL url)
+	{
+		String key = url.toExternalForm();
+		ReadWriteLock lock = lockFor(key);
+		lock.readLock().lock();
+		try
+		{
+			Entry entry = lookup(key);
+			if (entry == null)
+			{
+				return null;
+			}
+			FileRetrievalResult result = new FileRetrievalResult(url, entry.file, true);
+			if (!result.hasData())
+			{
+				//file has been removed from under us
+				index.remove(key, entry);
+				return null;
+			}
+			return result;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Get the index entry for the given URL, which contains the values
+	 * required to revalidate the cached copy with the server.
+	 * 
+	 * @param url
+	 * @return Cache entry, or null if the URL has not been cached
+	 */
+	public Entry getEntry(URL url)
+	{
+		String key = url.toExternalForm();
+		ReadWriteLock lock = lockFor(key);
+		lock.readLock().lock();
+		try
+		{
+			return lookup(key);
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Store the given result's data in the cache. The data is written to a
+	 * temporary file, which is then atomically moved into place.
+	 * 
+	 * @param url
+	 *            URL the result was downloaded from
+	 * @param result
+	 *            Result to cache; must have data
+	 * @param etag
+	 *            ETag returned by the server (can be null)
+	 * @param lastModified
+	 *            Last-Modified time returned by the server (can be null)
+	 */
+	public void put(URL url, RetrievalResult result, String etag, Long lastModified) throws IOException
+	{
+		String key = url.toExternalForm();
+		File file = new File(directory, filenameForURL(url));
+		File metadata = metadataFile(file);
+		File parent = file.getParentFile();
+		File metadataParent = metadata.getParentFile();
+		if (!metadataParent.isDirectory() && !metadataParent.mkdirs() && !metadataParent.isDirectory())
+		{
+			throw new IOException("Could not create cache directory: " + metadataParent);
+		}
+
+		//write outside of the lock; only the renames need to be exclusive
+		File temp = File.createTempFile("download", ".tmp", parent);
+		File tempMetadata = null;
+		try
+		{
+			writeBuffer(result.getAsBuffer(), temp);
+			tempMetadata = File.createTempFile("download", ".tmp", metadataParent);
+			writeMetadata(etag, lastModified, tempMetadata);
+
+			ReadWriteLock lock = lockFor(key);
+			lock.writeLock().lock();
+			try
+			{
+				rename(temp, file);
+				rename(tempMetadata, metadata);
+				//note: the following is only available in Java 6
+				file.setReadable(true, false);
+				file.setWritable(true, false);
+				index.put(key, new Entry(file, etag, lastModified != null ? lastModified : file.lastModified()));
+			}
+			finally
+			{
+				lock.writeLock().unlock();
+			}
+		}
+		finally
+		{
+			temp.delete();
+			if (tempMetadata != null)
+			{
+				tempMetadata.delete();
+			}
+		}
+	}
+
+	/**
+	 * Remove the cached copy of the given URL, if it exists. Copies in the
+	 * {@link FileStore}'s read-only locations are left untouched.
+	 * 
+	 * @param url
+	 */
+	public void remove(URL url)
+	{
+		String key = url.toExternalForm();
+		File file = new File(directory, filenameForURL(url));
+		ReadWriteLock lock = lockFor(key);
+		lock.writeLock().lock();
+		try
+		{
+			index.remove(key);
+			file.delete();
+			metadataFile(file).delete();
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Find the entry for the given key, loading it from disk if it is not yet
+	 * indexed. Must be called with the key's lock held.
+	 */
+	protected Entry lookup(String key)
+	{
+		Entry entry = index.get(key);
+		if (entry != null)
+		{
+			return entry;
+		}
+
+		String filename = filenameForKey(key);
+		File file = new File(directory, filename);
+		if (!file.isFile())
+		{
+			file = findFile(filename);
+			if (file == null)
+			{
+				return null;
+			}
+		}
+
+		String etag = null;
+		Long lastModified = null;
+		File metadata = metadataFile(file);
+		if (metadata.isFile())
+		{
+			Properties properties = readMetadata(metadata);
+			etag = properties.getProperty(ETAG_KEY);
+			String lm = properties.getProperty(LAST_MODIFIED_KEY);
+			if (lm != null)
+			{
+				try
+				{
+					lastModified = Long.valueOf(lm);
+				}
+				catch (NumberFormatException e)
+				{
+				}
+			}
+		}
+		if (lastModified == null)
+		{
+			//files cached before the metadata was stored use the file's modification date
+			lastModified = file.lastModified();
+		}
+
+		entry = new Entry(file, etag, lastModified);
+		Entry existing = index.putIfAbsent(key, entry);
+		return existing != null ? existing : entry;
+	}
+
+	/**
+	 * Search the {@link FileStore} for a cached file that is not in the cache
+	 * directory.
+	 * 
+	 * @param filename
+	 *            Filename relative to the cache directory
+	 * @return Cached file, or null if the file store doesn't contain it
+	 */
+	protected File findFile(String filename)
+	{
+		if (fileStore == null)
+		{
+			return null;
+		}
+		URL url = fileStore.findFile(fileStorePath + File.separator + filename, false);
+		File file = URLUtil.urlToFile(url);
+		return file != null && file.isFile() ? file : null;
+	}
+
+	/**
+	 * @return File containing the metadata for the given cached file
+	 */
+	protected static File metadataFile(File file)
+	{
+		return new File(new File(file.getParentFile(), METADATA_DIRECTORY), file.getName());
+	}
+
+	private ReadWriteLock lockFor(String key)
+	{
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		return locks[(hash & 0x7fffffff) % locks.length];
+	}
+
+	private static void rename(File source, File destination) throws IOException
+	{
+		if (source.renameTo(destination))
+		{
+			return;
+		}
+		//some platforms (Windows) won't rename over an existing file
+		destination.delete();
+		if (!source.renameTo(destination))
+		{
+			throw new IOException("Could not move " + source + " to " + destination);
+		}
+	}
+
+	private static void writeBuffer(ByteBuffer buffer, File file) throws IOException
+	{
+		FileOutputStream fos = new FileOutputStream(file);
+		try
+		{
+			FileChannel channel = fos.getChannel();
+			ByteBuffer duplicate = buffer.duplicate();
+			duplicate.rewind();
+			while (duplicate.hasRemaining())
+			{
+				channel.write(duplicate);
+			}
+		}
+		finally
+		{
+			fos.close();
+		}
+	}
+
+	private static void writeMetadata(String etag, Long lastModified, File file) throws IOException
+	{
+		Properties properties = new Properties();
+		if (etag != null)
+		{
+			properties.setProperty(ETAG_KEY, etag);
+		}
+		if (lastModified != null)
+		{
+			properties.setProperty(LAST_MODIFIED_KEY, lastModified.toString());
+		}
+		OutputStream os = new FileOutputStream(file);
+		try
+		{
+			properties.store(os, null);
+		}
+		finally
+		{
+			os.close();
+		}
+	}
+
+	private static Properties readMetadata(File file)
+	{
+		Properties properties = new Properties();
+		try
+		{
+			InputStream is = new FileInputStream(file);
+			try
+			{
+				properties.load(is);
+			}
+			finally
+			{
+				is.close();
+			}
+		}
+		catch (IOException e)
+		{
+			//ignore; the entry will be revalidated using the file's modification date
+		}
+		return properties;
+	}
+
+	/**
+	 * @return Filename (relative to the cache directory) of the cached file
+	 *         for the given URL
+	 */
+	public static String filenameForURL(URL url)
+	{
+		return filenameForKey(url.toExternalForm());
+	}
+
+	private static String filenameForKey(String external)
+	{
+		// need to replace the following invalid filename characters: \/:*?"<>|
+		// replace them with exclamation points, because that is cool
+		external = external.replaceAll("!", "!!");
+		external = external.replaceAll("[\\/:*?\"<>|]", "!");
+		return external;
+	}
+
+	/**
+	 * An entry in the cache index, containing the location of the cached file
+	 * and the values used to check if the server has a newer version.
+	 */
+	public static class Entry
+	{
+		private final File file;
+		private final String etag;
+		private final Long lastModified;
+
+		public Entry(File file, String etag, Long lastModified)
+		{
+			this.file = file;
+			this.etag = etag;
+			this.lastModified = lastModified;
+		}
+
+		public File getFile()
+		{
+			return file;
+		}
+
+		/**
+		 * @return ETag returned by the server when this entry was downloaded,
+		 *         or null if the server didn't provide one
+		 */
+		public String getETag()
+		{
+			return etag;
+		}
+
+		/**
+		 * @return Last-Modified time returned by the server, or the time the
+		 *         entry was cached if the server didn't provide one
+		 */
+		public Long getLastModified()
+		{
+			return lastModified;
+		}
+	}
+}
@@ -17,11 +17,11 @@ package au.gov.ga.worldwind.common.downloader;
 
 import gov.nasa.worldwind.Configuration;
 import gov.nasa.worldwind.WorldWind;
+import gov.nasa.worldwind.cache.FileStore;
 import gov.nasa.worldwind.retrieve.RetrievalPostProcessor;
 import gov.nasa.worldwind.retrieve.RetrievalService;
 import gov.nasa.worldwind.retrieve.Retriever;
 import gov.nasa.worldwind.retrieve.URLRetriever;
-import gov.nasa.worldwind.util.WWIO;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -29,31 +29,33 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import au.gov.ga.worldwind.common.util.AVKeyMore;
-import au.gov.ga.worldwind.common.util.URLUtil;
 
 /**
  * Utility class which performs downloading from URLs. Supports the file, http
  * and https protocols. Caches downloads (if requested) using the standard data
  * store provided by WorldWind.getDataFileStore(). Supports testing if the data
  * on the server has been modified since last downloaded.
+ * <p/>
+ * Concurrent requests for the same URL are merged into a single download, and
+ * the cache is managed by a {@link DownloadCache}, so downloads of different
+ * URLs never wait on each other.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class Downloader
 {
 	private static final String DIRECTORY = "GA/Download Cache"; //TODO should this be in configuration?
-	private static final Object cacheLock = new Object();
-	private static final Object duplicateLock = new Object();
 
 	//use the standard World Wind BasicRetrievalService for handling downloading
 	private static final RetrievalService service = new DownloaderRetrievalService();
-	private static final ActiveRetrieverCache retrieverCache = new ActiveRetrieverCache();
+	//downloads currently in progress, keyed by URL, used to merge duplicate requests
+	private static final ConcurrentMap<String, HandlerPostProcessor> inFlight =
+			new ConcurrentHashMap<String, HandlerPostProcessor>();
+	private static volatile DownloadCache cache;
 
 	/**
 	 * Performs a download synchronously, returning the result immediately. If
@@ -90,22 +92,7 @@ public class Downloader
 		}
 
 		ImmediateRetrievalHandler immediateHandler = new ImmediateRetrievalHandler();
-		HandlerPostProcessor postProcessor = new HandlerPostProcessor(url, immediateHandler);
-		URLRetriever retriever = createRetriever(url, null, postProcessor, unzip);
-
-		//check if the request is a duplicate
-		synchronized (duplicateLock)
-		{
-			HandlerPostProcessor activeHandler = retrieverCache.getActiveRetriever(retriever);
-			if (activeHandler != null)
-			{
-				activeHandler.addHandler(immediateHandler);
-			}
-			else
-			{
-				runRetriever(retriever, postProcessor);
-			}
-		}
+		runOrJoin(url, null, immediateHandler, unzip);
 
 		//get the result immediately
 		RetrievalResult result = immediateHandler.get();
@@ -146,28 +133,13 @@ public class Downloader
 		}
 
 		FileRetrievalResult cachedResult = getFromCache(url);
-		Long lastModified = null;
+		DownloadCache.Entry entry = null;
 		if (cachedResult != null && cachedResult.hasData())
-			lastModified = cachedResult.lastModified();
+			entry = getCache().getEntry(url);
 
 		ImmediateRetrievalHandler immediateHandler = new ImmediateRetrievalHandler();
-		HandlerPostProcessor postProcessor = new HandlerPostProcessor(url, immediateHandler);
-		//download if lastModified is null or server's modification date is greater than lastModified
-		URLRetriever retriever = createRetriever(url, lastModified, postProcessor, unzip);
-
-		//check if the request is a duplicate
-		synchronized (duplicateLock)
-		{
-			HandlerPostProcessor activeHandler = retrieverCache.getActiveRetriever(retriever);
-			if (activeHandler != null)
-			{
-				activeHandler.addHandler(immediateHandler);
-			}
-			else
-			{
-				runRetriever(retriever, postProcessor);
-			}
-		}
+		//download if there's no entry, or the server's version doesn't match the entry
+		runOrJoin(url, entry, immediateHandler, unzip);
 
 		//get the result immediately
 		RetrievalResult modifiedResult = immediateHandler.get();
@@ -188,6 +160,49 @@ public class Downloader
 		return cachedResult;
 	}
 
+	/**
+	 * Performs a download synchronously, returning the result immediately. If
+	 * the URL is cached, the cached result is returned without waiting for the
+	 * server, and the server is checked in the background whether the URL has
+	 * been modified since the last download. If so, the new result is
+	 * downloaded and cached, and will be returned by the next request. If the
+	 * URL is not cached, it is downloaded and cached.
+	 * 
+	 * @param url
+	 *            URL to download
+	 * @param unzip
+	 *            Should the result be pre-unzipped?
+	 * @return Download result
+	 * @throws Exception
+	 *             If the URL is not cached and the download fails
+	 */
+	public static RetrievalResult downloadImmediatelyAndRevalidate(final URL url, final boolean unzip) throws Exception
+	{
+		if (isJarProtocol(url))
+		{
+			RetrievalResult result = getResultFromJar(url);
+			if (result.getError() != null)
+				throw result.getError();
+			return result;
+		}
+
+		FileRetrievalResult cachedResult = getFromCache(url);
+		if (cachedResult != null && cachedResult.hasData())
+		{
+			//a modified result is saved to the cache by download(), so there's nothing else to handle
+			download(url, null, new RetrievalHandler()
+			{
+				@Override
+				public void handle(RetrievalResult result)
+				{
+				}
+			}, true, unzip);
+			return cachedResult;
+		}
+
+		return downloadImmediately(url, true, unzip);
+	}
+
 	/**
 	 * Performs a download asynchronously, calling the handler when download is
 	 * complete. If the URL is cached, no download is performed, and the handler
@@ -235,21 +250,7 @@ public class Downloader
 			}
 		};
 
-		HandlerPostProcessor postProcessor = new HandlerPostProcessor(url, cacherHandler);
-		URLRetriever retriever = createRetriever(url, null, postProcessor, unzip);
-
-		synchronized (duplicateLock)
-		{
-			HandlerPostProcessor activeHandler = retrieverCache.getActiveRetriever(retriever);
-			if (activeHandler != null)
-			{
-				activeHandler.addHandler(cacherHandler);
-			}
-			else
-			{
-				runRetriever(retriever, postProcessor);
-			}
-		}
+		runOrJoin(url, null, cacherHandler, unzip);
 	}
 
 	/**
@@ -334,7 +335,7 @@ public class Downloader
 			return;
 		}
 
-		Long lastModified = null;
+		DownloadCache.Entry entry = null;
 		if (cacheHandler != null || checkIfModified)
 		{
 			FileRetrievalResult result = getFromCache(url);
@@ -343,7 +344,7 @@ public class Downloader
 				if (cacheHandler != null)
 					cacheHandler.handle(result);
 				if (checkIfModified)
-					lastModified = result.lastModified();
+					entry = getCache().getEntry(url);
 			}
 		}
 
@@ -360,59 +361,70 @@ public class Downloader
 			}
 		};
 
-		HandlerPostProcessor postProcessor = new HandlerPostProcessor(url, cacherHandler);
-		URLRetriever retriever = createRetriever(url, lastModified, postProcessor, unzip);
+		runOrJoin(url, entry, cacherHandler, unzip);
+	}
 
-		synchronized (duplicateLock)
+	/**
+	 * @return The {@link DownloadCache} used to cache downloads. Defaults to a
+	 *         directory within the World Wind data file store's write location,
+	 *         falling back to the store's other (read-only) locations.
+	 */
+	public static DownloadCache getCache()
+	{
+		DownloadCache c = cache;
+		if (c == null)
 		{
-			HandlerPostProcessor currentHandler = retrieverCache.getActiveRetriever(retriever);
-			if (currentHandler != null)
-			{
-				currentHandler.addHandler(cacherHandler);
-			}
-			else
+			synchronized (Downloader.class)
 			{
-				runRetriever(retriever, postProcessor);
+				if (cache == null)
+				{
+					FileStore store = WorldWind.getDataFileStore();
+					cache = new DownloadCache(new File(store.getWriteLocation(), DIRECTORY), store, DIRECTORY);
+				}
+				c = cache;
 			}
 		}
+		return c;
+	}
+
+	/**
+	 * Set the {@link DownloadCache} used to cache downloads.
+	 * 
+	 * @param cache
+	 */
+	public static void setCache(DownloadCache cache)
+	{
+		Downloader.cache = cache;
 	}
 
 	private static FileRetrievalResult getFromCache(URL url)
 	{
-		synchronized (cacheLock)
+		try
+		{
+			return getCache().get(url);
+		}
+		catch (Exception e)
 		{
-			URL fileUrl = getCacheURL(url);
-			if (fileUrl != null)
-			{
-				try
-				{
-					File file = new File(fileUrl.toURI());
-					return new FileRetrievalResult(url, file, true);
-				}
-				catch (Exception e)
-				{
-				}
-			}
 			return null;
 		}
 	}
 
 	private static void saveToCache(URL url, RetrievalResult result)
 	{
-		synchronized (cacheLock)
+		String etag = null;
+		Long lastModified = null;
+		if (result instanceof ByteBufferRetrievalResult)
 		{
-			try
-			{
-				File file = newCacheFile(url);
-				WWIO.saveBuffer(result.getAsBuffer(), file);
-				//note: the following is only available in Java 6
-				file.setReadable(true, false);
-				file.setWritable(true, false);
-			}
-			catch (Exception e)
-			{
-				e.printStackTrace();
-			}
+			etag = ((ByteBufferRetrievalResult) result).getETag();
+			lastModified = ((ByteBufferRetrievalResult) result).getServerLastModified();
+		}
+		try
+		{
+			getCache().put(url, result, etag, lastModified);
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
 		}
 	}
 
@@ -424,41 +436,64 @@ public class Downloader
 	 */
 	public static void removeCache(URL url)
 	{
-		URL fileUrl = getCacheURL(url);
-		File file = URLUtil.urlToFile(fileUrl);
-		if (file != null && file.isFile())
-		{
-			file.delete();
-		}
+		getCache().remove(url);
 	}
 
-	private static URL getCacheURL(URL url)
+	/**
+	 * Download the given URL, notifying the handler with the result. If a
+	 * download of the same URL is already in progress, the handler is added to
+	 * that download instead of starting another.
+	 * 
+	 * @param url
+	 *            URL to download
+	 * @param entry
+	 *            Cache entry to revalidate; if non-null, the server is asked to
+	 *            only return data if it doesn't match this entry
+	 * @param handler
+	 *            Handler to notify with the result
+	 * @param unzip
+	 *            Should the result be pre-unzipped?
+	 */
+	private static void runOrJoin(URL url, DownloadCache.Entry entry, RetrievalHandler handler, boolean unzip)
 	{
-		String filename = filenameForURL(url);
-		return WorldWind.getDataFileStore().findFile(filename, false);
-	}
+		String key = url.toExternalForm();
+		HandlerPostProcessor active = inFlight.get(key);
+		if (active != null)
+		{
+			//if the active download has already completed, the handler is notified immediately
+			active.addHandler(handler);
+			return;
+		}
 
-	private static File newCacheFile(URL url)
-	{
-		String filename = filenameForURL(url);
-		File file = WorldWind.getDataFileStore().newFile(filename);
-		return file;
-	}
+		HandlerPostProcessor postProcessor = new InFlightPostProcessor(url, key, handler);
+		active = inFlight.putIfAbsent(key, postProcessor);
+		if (active != null)
+		{
+			active.addHandler(handler);
+			return;
+		}
 
-	private static String filenameForURL(URL url)
-	{
-		// need to replace the following invalid filename characters: \/:*?"<>|
-		// replace them with exclamation points, because that is cool
-		String external = url.toExternalForm();
-		external = external.replaceAll("!", "!!");
-		external = external.replaceAll("[\\/:*?\"<>|]", "!");
-		return DIRECTORY + File.separator + external;
+		Long ifModifiedSince = entry != null ? entry.getLastModified() : null;
+		String ifNoneMatch = entry != null ? entry.getETag() : null;
+		URLRetriever retriever = createRetriever(url, ifModifiedSince, ifNoneMatch, postProcessor, unzip);
+		boolean submitted = false;
+		try
+		{
+			submitted = service.runRetriever(retriever) != null;
+		}
+		finally
+		{
+			//if the service didn't accept the retriever, it will never run, so release the
+			//URL (and any handlers that have joined this download) straight away
+			if (!submitted)
+				postProcessor.fail(new Exception("Download rejected: " + url));
+		}
 	}
 
-	private static URLRetriever createRetriever(URL url, Long ifModifiedSince, RetrievalPostProcessor postProcessor,
-			boolean unzip)
+	private static URLRetriever createRetriever(URL url, Long ifModifiedSince, String ifNoneMatch,
+			RetrievalPostProcessor postProcessor, boolean unzip)
 	{
-		URLRetriever retriever = doCreateRetriever(url, ifModifiedSince, postProcessor, unzip);
+		URLRetriever retriever = doCreateRetriever(url, ifModifiedSince, ifNoneMatch, postProcessor, unzip);
 		int connectTimeout = Configuration.getIntegerValue(AVKeyMore.DOWNLOADER_CONNECT_TIMEOUT, 30000);
 		int readTimeout = Configuration.getIntegerValue(AVKeyMore.DOWNLOADER_READ_TIMEOUT, 30000);
 		retriever.setConnectTimeout(connectTimeout);
@@ -466,20 +501,14 @@ public class Downloader
 		return retriever;
 	}
 
-	private static URLRetriever doCreateRetriever(URL url, Long ifModifiedSince, RetrievalPostProcessor postProcessor,
-			boolean unzip)
+	private static URLRetriever doCreateRetriever(URL url, Long ifModifiedSince, String ifNoneMatch,
+			RetrievalPostProcessor postProcessor, boolean unzip)
 	{
 		if ("http".equalsIgnoreCase(url.getProtocol()) || "https".equalsIgnoreCase(url.getProtocol()))
-			return new ExtendedHTTPRetriever(url, ifModifiedSince, postProcessor, unzip);
+			return new ExtendedHTTPRetriever(url, ifModifiedSince, ifNoneMatch, postProcessor, unzip);
 		return new ExtendedFileRetriever(url, ifModifiedSince, postProcessor, unzip);
 	}
 
-	private static void runRetriever(Retriever retriever, HandlerPostProcessor postProcessor)
-	{
-		retrieverCache.addRetriever(retriever, postProcessor);
-		service.runRetriever(retriever);
-	}
-
 	private static boolean isJarProtocol(URL url)
 	{
 		if (url == null)
@@ -586,87 +615,28 @@ public class Downloader
 	}
 
 	/**
-	 * Class which acts as a cache for Retrievers, storing Retrievers that are
-	 * currently downloading in the {@link RetrievalService} in a map. This
-	 * allows the download methods above to check for duplicate Retrievers (ie
-	 * Retrievers that are requesting a download from the same URL) and if a
-	 * duplicate is found the method can add their {@link RetrievalHandler} to
-	 * the current {@link HandlerPostProcessor} instead of running a new
-	 * Retriever.
-	 * 
-	 * The {@link RetrievalService} is checked every 5 seconds in a daemon
-	 * thread and if the Retriever is no longer running it is removed from the
-	 * map.
-	 * 
-	 * @author Michael de Hoog
+	 * {@link HandlerPostProcessor} for a download in the in-flight map, which
+	 * removes itself from the map when the download completes or fails
+	 * (including when the retriever never calls its post processor; see
+	 * {@link DownloaderRetrievalService#notifyIncomplete(Retriever)}). Handlers
+	 * added after completion are notified immediately by
+	 * {@link HandlerPostProcessor#addHandler(RetrievalHandler)}.
 	 */
-	private static class ActiveRetrieverCache
+	private static class InFlightPostProcessor extends HandlerPostProcessor
 	{
-		private Object lock = new Object();
-		private final Map<Retriever, HandlerPostProcessor> activeRetrievers =
-				new HashMap<Retriever, HandlerPostProcessor>();
+		private final String key;
 
-		public ActiveRetrieverCache()
+		public InFlightPostProcessor(URL sourceURL, String key, RetrievalHandler handler)
 		{
-			//daemon thread to remove activeRetrievers when they are no longer active
-			//in the retrieval service
-			Thread thread = new Thread(new Runnable()
-			{
-				@Override
-				public void run()
-				{
-					while (true)
-					{
-						try
-						{
-							Thread.sleep(5000);
-							removeNonActiveRetrievers();
-						}
-						catch (Exception e)
-						{
-						}
-					}
-				}
-			});
-			thread.setName("Retriever cache cleaner");
-			thread.setDaemon(true);
-			thread.start();
-		}
-
-		private void removeNonActiveRetrievers()
-		{
-			synchronized (lock)
-			{
-				if (service.getNumRetrieversPending() <= 0)
-					activeRetrievers.clear();
-				else
-				{
-					List<Retriever> toRemove = new ArrayList<Retriever>();
-					for (Retriever r : activeRetrievers.keySet())
-						if (!service.contains(r))
-							toRemove.add(r);
-					for (Retriever r : toRemove)
-						activeRetrievers.remove(r);
-				}
-			}
+			super(sourceURL, handler);
+			this.key = key;
 		}
 
-		public HandlerPostProcessor getActiveRetriever(Retriever retriever)
-		{
-			synchronized (lock)
-			{
-				if (activeRetrievers.containsKey(retriever))
-					return activeRetrievers.get(retriever);
-				return null;
-			}
-		}
-
-		public void addRetriever(Retriever retriever, HandlerPostProcessor postProcessor)
+		@Override
+		protected boolean complete(RetrievalResult result)
 		{
-			synchronized (lock)
-			{
-				activeRetrievers.put(retriever, postProcessor);
-			}
+			inFlight.remove(key, this);
+			return super.complete(result);
 		}
 	}
 }
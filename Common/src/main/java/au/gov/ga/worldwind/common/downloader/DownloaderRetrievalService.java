@@ -19,14 +19,15 @@ import gov.nasa.worldwind.Configuration;
 import gov.nasa.worldwind.WWObjectImpl;
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.retrieve.RetrievalFuture;
+import gov.nasa.worldwind.retrieve.RetrievalPostProcessor;
 import gov.nasa.worldwind.retrieve.RetrievalService;
 import gov.nasa.worldwind.retrieve.Retriever;
+import gov.nasa.worldwind.retrieve.URLRetriever;
 import gov.nasa.worldwind.util.Logging;
 
 import java.net.SocketTimeoutException;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.FutureTask;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -34,6 +35,9 @@ import java.util.logging.Level;
 
 import javax.net.ssl.SSLHandshakeException;
 
+import au.gov.ga.worldwind.common.retrieve.RetrievalQueue;
+import au.gov.ga.worldwind.common.util.AVKeyMore;
+
 /**
  * {@link RetrievalService} used by the {@link Downloader}.
  * 
@@ -44,7 +48,6 @@ public class DownloaderRetrievalService extends WWObjectImpl implements Retrieva
 {
 	// These constants are last-ditch values in case Configuration lacks defaults
 	private static final int DEFAULT_POOL_SIZE = 5;
-	private static final int DEFAULT_TIME_PRIORITY_GRANULARITY = 500; // milliseconds
 
 	private static final String RUNNING_THREAD_NAME_PREFIX = "Active downloader thread: ";
 	private static final String IDLE_THREAD_NAME_PREFIX = "Idle downloader thread";
@@ -59,7 +62,7 @@ public class DownloaderRetrievalService extends WWObjectImpl implements Retrieva
 	 * {@link java.util.concurrent.FutureTask}.
 	 */
 	private static class RetrievalTask extends FutureTask<Retriever> implements RetrievalFuture,
-			Comparable<RetrievalTask>
+			RetrievalQueue.Task
 	{
 		private Retriever retriever;
 		private double priority; // retrieval secondary priority (primary priority is submit time)
@@ -77,6 +80,12 @@ public class DownloaderRetrievalService extends WWObjectImpl implements Retrieva
 			return this.retriever;
 		}
 
+		@Override
+		public double getPriority()
+		{
+			return this.priority;
+		}
+
 		@Override
 		public void run()
 		{
@@ -87,28 +96,21 @@ public class DownloaderRetrievalService extends WWObjectImpl implements Retrieva
 		}
 
 		@Override
-		public int compareTo(RetrievalTask that)
+		public Object getGroupKey()
 		{
-			if (that == null)
-			{
-				String msg = Logging.getMessage("nullValue.RetrieverIsNull");
-				Logging.logger().fine(msg);
-				throw new IllegalArgumentException(msg);
-			}
+			return RetrievalQueue.groupKeyForName(retriever.getName());
+		}
 
-			if (this.priority > 0 && that.priority > 0) // only secondary priority used if either is negative
-			{
-				// Requests submitted within different time-granularity periods are ordered exclusive of their
-				// client-specified priority.
-				long now = System.currentTimeMillis();
-				long thisElapsedTime = now - this.retriever.getSubmitTime();
-				long thatElapsedTime = now - that.retriever.getSubmitTime();
-				if (((thisElapsedTime - thatElapsedTime) / DEFAULT_TIME_PRIORITY_GRANULARITY) != 0)
-					return thisElapsedTime < thatElapsedTime ? -1 : 1;
-			}
+		@Override
+		public long getStaleRequestLimit()
+		{
+			return retriever.getStaleRequestLimit();
+		}
 
-			// The client-pecified priority is compared for requests submitted within the same granularity period.
-			return this.priority == that.priority ? 0 : this.priority < that.priority ? -1 : 1;
+		@Override
+		public void dequeued(long queueWaitTime)
+		{
+			retriever.setValue(AVKeyMore.RETRIEVAL_QUEUE_WAIT_TIME, queueWaitTime);
 		}
 
 		@Override
@@ -147,7 +149,8 @@ public class DownloaderRetrievalService extends WWObjectImpl implements Retrieva
 
 		private RetrievalExecutor(int poolSize)
 		{
-			super(poolSize, poolSize, THREAD_TIMEOUT, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+			//downloads are explicitly requested, so the queue never evicts them as stale
+			super(poolSize, poolSize, THREAD_TIMEOUT, TimeUnit.SECONDS, new RetrievalQueue(-1),
 					new ThreadFactory()
 					{
 						@Override
@@ -281,11 +284,37 @@ public class DownloaderRetrievalService extends WWObjectImpl implements Retrieva
 			}
 			finally
 			{
+				//retrievers that are cancelled, interrupted, or that fail to connect don't call
+				//their post processor, so make sure any waiting handlers are notified
+				notifyIncomplete(task.getRetriever());
 				Thread.currentThread().setName(IDLE_THREAD_NAME_PREFIX);
 			}
 		}
 	}
 
+	/**
+	 * Notify the {@link HandlerPostProcessor} of the given retriever (if it has
+	 * one) that the retrieval has failed, unless it has already been run.
+	 * 
+	 * @param retriever
+	 */
+	protected void notifyIncomplete(Retriever retriever)
+	{
+		if (!(retriever instanceof URLRetriever))
+			return;
+
+		RetrievalPostProcessor postProcessor = ((URLRetriever) retriever).getPostProcessor();
+		if (postProcessor instanceof HandlerPostProcessor)
+		{
+			Exception error = null;
+			if (retriever instanceof ExtendedRetriever)
+				error = ((ExtendedRetriever) retriever).getError();
+			if (error == null)
+				error = new Exception("Download did not complete: " + retriever.getName());
+			((HandlerPostProcessor) postProcessor).fail(error);
+		}
+	}
+
 	public DownloaderRetrievalService()
 	{
 		Integer poolSize = Configuration.getIntegerValue(AVKey.RETRIEVAL_POOL_SIZE, DEFAULT_POOL_SIZE);
@@ -367,8 +396,8 @@ public class DownloaderRetrievalService extends WWObjectImpl implements Retrieva
 		RetrievalTask task = new RetrievalTask(retriever, priority);
 		retriever.setSubmitTime(System.currentTimeMillis());
 
-		// Do not queue duplicates.
-		if (this.activeTasks.contains(task) || this.executor.getQueue().contains(task))
+		// Do not queue duplicates; a duplicate of a queued task moves it up to the current time bucket.
+		if (this.activeTasks.contains(task) || this.getRetrievalQueue().refresh(task))
 			return null;
 
 		this.executor.execute(task);
@@ -376,6 +405,15 @@ public class DownloaderRetrievalService extends WWObjectImpl implements Retrieva
 		return task;
 	}
 
+	/**
+	 * @return The queue of pending retrievals, which provides queue wait time
+	 *         statistics
+	 */
+	public RetrievalQueue getRetrievalQueue()
+	{
+		return (RetrievalQueue) this.executor.getQueue();
+	}
+
 	/**
 	 * @param poolSize
 	 *            the number of threads in the thread pool
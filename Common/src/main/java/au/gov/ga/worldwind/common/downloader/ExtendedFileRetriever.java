@@ -91,6 +91,33 @@ public class ExtendedFileRetriever extends FileRetriever implements ExtendedRetr
 		return notModified;
 	}
 
+	@Override
+	public String getETag()
+	{
+		return null;
+	}
+
+	@Override
+	public Long getLastModified()
+	{
+		File file = URLUtil.urlToFile(getUrl());
+		return file != null && file.exists() ? file.lastModified() : null;
+	}
+
+	@Override
+	public boolean equals(Object o)
+	{
+		//the Downloader merges duplicate requests itself, so retrievers are only
+		//equal to themselves (URLRetriever considers retrievers for the same URL equal)
+		return this == o;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return super.hashCode();
+	}
+
 	@Override
 	protected ByteBuffer readZipStream(InputStream inputStream, URL url) throws IOException
 	{
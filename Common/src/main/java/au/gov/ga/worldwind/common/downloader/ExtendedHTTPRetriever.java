@@ -41,8 +41,11 @@ import java.util.List;
 public class ExtendedHTTPRetriever extends HTTPRetriever implements ExtendedRetriever
 {
 	private Long ifModifiedSince;
+	private String ifNoneMatch;
 	private Exception error;
 	private boolean unzip;
+	private String etag;
+	private Long lastModified;
 
 	public ExtendedHTTPRetriever(URL url, Long ifModifiedSince, RetrievalPostProcessor postProcessor)
 	{
@@ -50,9 +53,21 @@ public class ExtendedHTTPRetriever extends HTTPRetriever implements ExtendedRetr
 	}
 
 	public ExtendedHTTPRetriever(URL url, Long ifModifiedSince, RetrievalPostProcessor postProcessor, boolean unzip)
+	{
+		this(url, ifModifiedSince, null, postProcessor, unzip);
+	}
+
+	/**
+	 * @param ifNoneMatch
+	 *            ETag of the cached version; if the server's version has the
+	 *            same ETag, a NOT MODIFIED status is returned
+	 */
+	public ExtendedHTTPRetriever(URL url, Long ifModifiedSince, String ifNoneMatch,
+			RetrievalPostProcessor postProcessor, boolean unzip)
 	{
 		super(url, postProcessor);
 		this.ifModifiedSince = ifModifiedSince;
+		this.ifNoneMatch = ifNoneMatch;
 		this.unzip = unzip;
 	}
 
@@ -63,9 +78,14 @@ public class ExtendedHTTPRetriever extends HTTPRetriever implements ExtendedRetr
 
 		if (ifModifiedSince != null)
 			connection.setIfModifiedSince(ifModifiedSince.longValue());
+		if (ifNoneMatch != null)
+			connection.setRequestProperty("If-None-Match", ifNoneMatch);
 		try
 		{
 			ByteBuffer buffer = super.doRead(connection);
+			etag = connection.getHeaderField("ETag");
+			long modified = connection.getLastModified();
+			lastModified = modified > 0 ? modified : null;
 			if (buffer == null && !isOk() && !isNotModified())
 			{
 				throw new HttpException(getResponseCode() + ": " + getResponseMessage(), getResponseCode());
@@ -123,6 +143,32 @@ public class ExtendedHTTPRetriever extends HTTPRetriever implements ExtendedRetr
 		return error;
 	}
 
+	@Override
+	public String getETag()
+	{
+		return etag;
+	}
+
+	@Override
+	public Long getLastModified()
+	{
+		return lastModified;
+	}
+
+	@Override
+	public boolean equals(Object o)
+	{
+		//the Downloader merges duplicate requests itself, so retrievers are only
+		//equal to themselves (URLRetriever considers retrievers for the same URL equal)
+		return this == o;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return super.hashCode();
+	}
+
 	@Override
 	protected ByteBuffer readZipStream(InputStream inputStream, URL url) throws IOException
 	{
@@ -41,4 +41,16 @@ public interface ExtendedRetriever extends Retriever
 	 * @return True if the server returned a NOT MODIFIED status
 	 */
 	public boolean isNotModified();
+
+	/**
+	 * @return The entity tag (ETag) returned by the server for the retrieved
+	 *         resource, or null if the server didn't provide one
+	 */
+	public String getETag();
+
+	/**
+	 * @return The last modification date of the retrieved resource, as
+	 *         reported by the server, or null if unknown
+	 */
+	public Long getLastModified();
 }
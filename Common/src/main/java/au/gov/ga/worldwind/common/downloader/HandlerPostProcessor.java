@@ -75,21 +75,47 @@ public class HandlerPostProcessor implements RetrievalPostProcessor
 	{
 		Exception error = null;
 		boolean notModified = false;
+		String etag = null;
+		Long lastModified = null;
 		if (retriever instanceof ExtendedRetriever)
 		{
 			ExtendedRetriever er = (ExtendedRetriever) retriever;
 			error = er.getError();
 			notModified = er.isNotModified();
+			etag = er.getETag();
+			lastModified = er.getLastModified();
 		}
 
 		ByteBuffer buffer = retriever.getBuffer();
+		complete(new ByteBufferRetrievalResult(sourceURL, buffer, false, notModified, error,
+				retriever.getContentType(), etag, lastModified));
+		return buffer;
+	}
+
+	/**
+	 * Notify the handlers with a failed result, if this has not already been
+	 * run. Used for retrievals that finish without calling their post
+	 * processor (for example if they are rejected, cancelled or interrupted).
+	 * 
+	 * @param error
+	 *            Reason the retrieval failed
+	 * @return True if the handlers were notified, false if this had already
+	 *         been run
+	 */
+	public boolean fail(Exception error)
+	{
+		return complete(new ByteBufferRetrievalResult(sourceURL, null, false, false, error, null));
+	}
+
+	protected boolean complete(RetrievalResult result)
+	{
 		int size;
 		synchronized (lock)
 		{
 			//synchronized with the addHandler method to ensure thread safety
-			result =
-					new ByteBufferRetrievalResult(sourceURL, buffer, false, notModified, error,
-							retriever.getContentType());
+			if (this.result != null)
+				return false;
+			this.result = result;
 			size = handlers.size();
 		}
 		//iterate through handlers, ending at size (which was calculated in the synchronzied
@@ -97,6 +123,6 @@ public class HandlerPostProcessor implements RetrievalPostProcessor
 		//will instead be notified immediately by addHandler())
 		for (int i = 0; i < size; i++)
 			handlers.get(i).handle(result);
-		return buffer;
+		return true;
 	}
 }
@@ -0,0 +1,335 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.exaggeration;
+
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.Globe;
+
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
+
+/**
+ * Caches the unexaggerated geometry of a set of vertices, so that they can be
+ * re-exaggerated without recalculating them from their geographic positions.
+ * <p/>
+ * For each vertex the point on the globe's surface, the direction in which the
+ * point moves per metre of elevation, and the unexaggerated elevation are
+ * stored. Exaggerating a vertex is then a single multiply-add:
+ * <code>point + direction * max(elevation * exaggeration, minimumElevation)</code>.
+ * This is exact for ellipsoidal and flat globes, where the direction is the
+ * surface normal.
+ * <p/>
+ * Large vertex sets are exaggerated in parallel chunks on a shared pool of
+ * daemon threads. The methods that write vertices should not be called from
+ * that pool.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class ExaggeratedVertices
+{
+	private static final int CHUNK_SIZE = 16384;
+	private static final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+	private static final ExecutorService executor = THREAD_COUNT > 1 ? Executors.newFixedThreadPool(THREAD_COUNT,
+			new DaemonThreadFactory("Vertex exaggerator")) : null;
+
+	private final int size;
+	private final double[] points;
+	private final double[] directions;
+	private final double[] elevations;
+	private double minimumElevation = -Double.MAX_VALUE;
+
+	public ExaggeratedVertices(int size)
+	{
+		this.size = size;
+		this.points = new double[size * 3];
+		this.directions = new double[size * 3];
+		this.elevations = new double[size];
+	}
+
+	/**
+	 * @return Number of vertices
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Calculate and store the geometry of the vertex at the given location.
+	 * 
+	 * @param index
+	 *            Vertex index
+	 * @param globe
+	 *            Globe on which the vertex lies
+	 * @param latitude
+	 * @param longitude
+	 * @param elevation
+	 *            Unexaggerated elevation of the vertex
+	 */
+	public void setVertex(int index, Globe globe, Angle latitude, Angle longitude, double elevation)
+	{
+		Vec4 point = globe.computePointFromPosition(latitude, longitude, 0);
+		Vec4 above = globe.computePointFromPosition(latitude, longitude, 1);
+		setVertex(index, point, above.subtract3(point), elevation);
+	}
+
+	/**
+	 * Store the geometry of a vertex.
+	 * 
+	 * @param index
+	 *            Vertex index
+	 * @param point
+	 *            Model coordinates of the vertex at an elevation of 0
+	 * @param direction
+	 *            Displacement of the vertex per metre of elevation
+	 * @param elevation
+	 *            Unexaggerated elevation of the vertex
+	 */
+	public void setVertex(int index, Vec4 point, Vec4 direction, double elevation)
+	{
+		int i = index * 3;
+		points[i] = point.x;
+		points[i + 1] = point.y;
+		points[i + 2] = point.z;
+		directions[i] = direction.x;
+		directions[i + 1] = direction.y;
+		directions[i + 2] = direction.z;
+		elevations[index] = elevation;
+	}
+
+	/**
+	 * @return Unexaggerated elevation of the vertex at the given index
+	 */
+	public double getElevation(int index)
+	{
+		return elevations[index];
+	}
+
+	/**
+	 * @return The lowest elevation an exaggerated vertex can have
+	 */
+	public double getMinimumElevation()
+	{
+		return minimumElevation;
+	}
+
+	/**
+	 * Set the lowest elevation an exaggerated vertex can have (for example,
+	 * the negative globe radius, to prevent vertices passing through the
+	 * centre of the globe).
+	 */
+	public void setMinimumElevation(double minimumElevation)
+	{
+		this.minimumElevation = minimumElevation;
+	}
+
+	/**
+	 * Calculate the model coordinates of a single exaggerated vertex.
+	 */
+	public Vec4 getVertex(int index, double exaggeration)
+	{
+		int i = index * 3;
+		double e = Math.max(elevations[index] * exaggeration, minimumElevation);
+		return new Vec4(points[i] + directions[i] * e, points[i + 1] + directions[i + 1] * e, points[i + 2]
+				+ directions[i + 2] * e);
+	}
+
+	/**
+	 * Calculate the axis-aligned extents of the exaggerated vertices.
+	 * 
+	 * @param exaggeration
+	 * @return Array containing the minimum and maximum corners of the extents
+	 *         (or null if there are no vertices)
+	 */
+	public Vec4[] computeExtrema(final double exaggeration)
+	{
+		if (size == 0)
+		{
+			return null;
+		}
+
+		List<double[]> results = runInChunks(new Chunk()
+		{
+			@Override
+			public double[] run(int start, int end)
+			{
+				double[] extrema =
+						new double[] { Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE,
+								-Double.MAX_VALUE, -Double.MAX_VALUE };
+				for (int index = start, i = start * 3; index < end; index++)
+				{
+					double e = Math.max(elevations[index] * exaggeration, minimumElevation);
+					for (int j = 0; j < 3; j++, i++)
+					{
+						double v = points[i] + directions[i] * e;
+						extrema[j] = Math.min(extrema[j], v);
+						extrema[j + 3] = Math.max(extrema[j + 3], v);
+					}
+				}
+				return extrema;
+			}
+		});
+
+		double[] extrema = results.get(0);
+		for (int r = 1; r < results.size(); r++)
+		{
+			double[] result = results.get(r);
+			for (int j = 0; j < 3; j++)
+			{
+				extrema[j] = Math.min(extrema[j], result[j]);
+				extrema[j + 3] = Math.max(extrema[j + 3], result[j + 3]);
+			}
+		}
+		return new Vec4[] { new Vec4(extrema[0], extrema[1], extrema[2]),
+				new Vec4(extrema[3], extrema[4], extrema[5]) };
+	}
+
+	/**
+	 * Write the exaggerated vertices, relative to a reference center, into a
+	 * float array (3 values per vertex).
+	 * 
+	 * @param exaggeration
+	 * @param referenceCenter
+	 *            Point subtracted from each vertex (null for none)
+	 * @param out
+	 *            Array to write to
+	 */
+	public void exaggerate(final double exaggeration, Vec4 referenceCenter, final float[] out)
+	{
+		final double[] center = toArray(referenceCenter);
+		runInChunks(new Chunk()
+		{
+			@Override
+			public double[] run(int start, int end)
+			{
+				for (int index = start, i = start * 3; index < end; index++)
+				{
+					double e = Math.max(elevations[index] * exaggeration, minimumElevation);
+					for (int j = 0; j < 3; j++, i++)
+					{
+						out[i] = (float) (points[i] + directions[i] * e - center[j]);
+					}
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Write the exaggerated vertices, relative to a reference center, into a
+	 * buffer (3 values per vertex, starting at index 0). The buffer's position
+	 * is not changed.
+	 * 
+	 * @param exaggeration
+	 * @param referenceCenter
+	 *            Point subtracted from each vertex (null for none)
+	 * @param out
+	 *            Buffer to write to
+	 */
+	public void exaggerate(final double exaggeration, Vec4 referenceCenter, final DoubleBuffer out)
+	{
+		final double[] center = toArray(referenceCenter);
+		runInChunks(new Chunk()
+		{
+			@Override
+			public double[] run(int start, int end)
+			{
+				for (int index = start, i = start * 3; index < end; index++)
+				{
+					double e = Math.max(elevations[index] * exaggeration, minimumElevation);
+					for (int j = 0; j < 3; j++, i++)
+					{
+						out.put(i, points[i] + directions[i] * e - center[j]);
+					}
+				}
+				return null;
+			}
+		});
+	}
+
+	private static double[] toArray(Vec4 v)
+	{
+		return v == null ? new double[3] : new double[] { v.x, v.y, v.z };
+	}
+
+	/**
+	 * Run the chunk over all of the vertices. If there is more than one chunk,
+	 * the first is run on the calling thread and the rest are run by the
+	 * executor.
+	 * 
+	 * @return The result of each chunk, in order
+	 */
+	private List<double[]> runInChunks(final Chunk chunk)
+	{
+		List<double[]> results = new ArrayList<double[]>();
+		if (executor == null || size <= CHUNK_SIZE)
+		{
+			results.add(chunk.run(0, size));
+			return results;
+		}
+
+		List<Future<double[]>> futures = new ArrayList<Future<double[]>>();
+		for (int start = CHUNK_SIZE; start < size; start += CHUNK_SIZE)
+		{
+			final int s = start;
+			final int e = Math.min(start + CHUNK_SIZE, size);
+			futures.add(executor.submit(new Callable<double[]>()
+			{
+				@Override
+				public double[] call() throws Exception
+				{
+					return chunk.run(s, e);
+				}
+			}));
+		}
+
+		results.add(chunk.run(0, CHUNK_SIZE));
+		try
+		{
+			for (Future<double[]> future : futures)
+			{
+				results.add(future.get());
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while exaggerating vertices", e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new IllegalStateException("Error exaggerating vertices", e.getCause());
+		}
+		return results;
+	}
+
+	/**
+	 * A pass over a range of vertices.
+	 */
+	private interface Chunk
+	{
+		double[] run(int start, int end);
+	}
+}
@@ -24,7 +24,6 @@ import gov.nasa.worldwind.layers.SkyGradientLayer;
 import gov.nasa.worldwind.layers.StarsLayer;
 import gov.nasa.worldwind.layers.mercator.BasicMercatorTiledImageLayer;
 import gov.nasa.worldwind.ogc.OGCConstants;
-import gov.nasa.worldwind.util.WWXML;
 
 import org.w3c.dom.Element;
 
@@ -60,7 +59,7 @@ public class LayerFactory extends BasicLayerFactory
 	{
 		//overridden to allow extra layer types
 
-		String layerType = WWXML.getText(domElement, "@layerType");
+		String layerType = XMLUtil.getText(domElement, "@layerType");
 		if ("SurfaceShapeShapefileLayer".equals(layerType))
 		{
 			return ShapefileLayerFactory.createLayer(domElement, params);
@@ -114,7 +113,7 @@ public class LayerFactory extends BasicLayerFactory
 			return ScreenOverlayLayerFactory.createScreenOverlayLayer(domElement, params);
 		}
 
-		String className = WWXML.getText(domElement, "@className");
+		String className = XMLUtil.getText(domElement, "@className");
 		if (className != null && className.length() > 0)
 		{
 			try
@@ -28,6 +28,7 @@ import javax.xml.xpath.XPath;
 import org.w3c.dom.Element;
 
 import au.gov.ga.worldwind.common.util.AVKeyMore;
+import au.gov.ga.worldwind.common.util.XMLUtil;
 
 /**
  * Provides timed expiration functionality to World Wind layers. Allows the
@@ -56,7 +57,7 @@ public class TimedExpirationHandler
 		if (params == null)
 			params = new AVListImpl();
 
-		XPath xpath = WWXML.makeXPath();
+		XPath xpath = XMLUtil.makeXPath();
 		WWXML.checkAndSetLongParam(domElement, params, AVKeyMore.EXPIRY_START_TIME,
 				"TimedExpiry/Start", xpath);
 		WWXML.checkAndSetDateTimeParam(domElement, params, AVKeyMore.EXPIRY_START_TIME,
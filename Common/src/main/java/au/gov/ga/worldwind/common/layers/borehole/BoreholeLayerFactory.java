@@ -29,6 +29,7 @@ import au.gov.ga.worldwind.common.layers.borehole.providers.ShapefileBoreholePro
 import au.gov.ga.worldwind.common.layers.data.DataLayerFactory;
 import au.gov.ga.worldwind.common.layers.styled.StyleAndAttributeFactory;
 import au.gov.ga.worldwind.common.util.AVKeyMore;
+import au.gov.ga.worldwind.common.util.XMLUtil;
 
 /**
  * Helper class for the creation of {@link BoreholeLayer}s. Contains XML parsing
@@ -62,7 +63,7 @@ public class BoreholeLayerFactory
 		if (params == null)
 			params = new AVListImpl();
 
-		XPath xpath = WWXML.makeXPath();
+		XPath xpath = XMLUtil.makeXPath();
 
 		WWXML.checkAndSetStringParam(domElement, params, AVKey.URL, "URL", xpath);
 		WWXML.checkAndSetLongParam(domElement, params, AVKey.EXPIRY_TIME, "ExpiryTime", xpath);
@@ -20,7 +20,6 @@ import gov.nasa.worldwind.avlist.AVList;
 import gov.nasa.worldwind.avlist.AVListImpl;
 import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.Sector;
-import gov.nasa.worldwind.geom.Vec4;
 import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.layers.AbstractLayer;
 import gov.nasa.worldwind.render.DrawContext;
@@ -44,8 +43,11 @@ import org.w3c.dom.Element;
 import au.gov.ga.worldwind.common.downloader.Downloader;
 import au.gov.ga.worldwind.common.downloader.RetrievalHandler;
 import au.gov.ga.worldwind.common.downloader.RetrievalResult;
+import au.gov.ga.worldwind.common.exaggeration.ExaggeratedVertices;
+import au.gov.ga.worldwind.common.render.fastshape.SingleTaskRunner;
 import au.gov.ga.worldwind.common.util.AVKeyMore;
 import au.gov.ga.worldwind.common.util.Loader;
+import au.gov.ga.worldwind.common.util.XMLUtil;
 
 import com.jogamp.common.nio.Buffers;
 
@@ -60,6 +62,10 @@ import com.jogamp.common.nio.Buffers;
  * <p/>
  * The crust layer will be rendered as a surface deformed by the elevation data
  * and coloured using a colour map based on min and max elevation values.
+ * <p/>
+ * The surface geometry is only recalculated when the data or globe changes.
+ * Vertical exaggeration changes re-exaggerate the cached geometry into a back
+ * buffer off the render thread, which is swapped in once complete.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -67,6 +73,8 @@ public class CrustLayer extends AbstractLayer implements Loader
 {
 	private static final String WHITESPACE_COMMA_REGEX = "(\\s*,\\s*)|\\s+";
 	private final static int MAX_DOWNLOAD_ATTEMPTS = 3;
+	private final static SingleTaskRunner VertexUpdater = new SingleTaskRunner(CrustLayer.class.getName()
+			+ " VertexUpdater"); //$NON-NLS-1$
 
 	private final URL url;
 
@@ -83,15 +91,28 @@ public class CrustLayer extends AbstractLayer implements Loader
 
 	private final Object elevationLock = new Object();
 	private DoubleBuffer elevations;
-	private DoubleBuffer vertices;
+	private volatile DoubleBuffer vertices;
+	private DoubleBuffer backVertices;
+	private volatile DoubleBuffer drawnVertices;
+	private volatile ExaggeratedVertices exaggeratedVertices;
 	private DoubleBuffer colors;
 	private IntBuffer indices;
 
 	private double minElevation = Double.MAX_VALUE;
 	private double maxElevation = -Double.MAX_VALUE;
-	private double lastVerticalExaggeration = -1;
+	private volatile double verticesExaggeration = -1;
+	private volatile double targetVerticalExaggeration = -1;
 	private Globe lastGlobe = null;
 
+	private final Runnable exaggerationUpdater = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			reexaggerateVertices(targetVerticalExaggeration);
+		}
+	};
+
 	public CrustLayer(AVList params)
 	{
 		URL url = null;
@@ -130,6 +151,7 @@ public class CrustLayer extends AbstractLayer implements Loader
 
 		indices = generateTriStripIndices(width, height, wrap);
 		vertices = Buffers.newDirectDoubleBuffer(width * height * 3);
+		backVertices = Buffers.newDirectDoubleBuffer(width * height * 3);
 		colors = Buffers.newDirectDoubleBuffer(width * height * 4);
 	}
 
@@ -150,7 +172,7 @@ public class CrustLayer extends AbstractLayer implements Loader
 			params = new AVListImpl();
 		}
 
-		XPath xpath = WWXML.makeXPath();
+		XPath xpath = XMLUtil.makeXPath();
 
 		// Common layer properties.
 		AbstractLayer.getLayerConfigParams(domElement, params);
@@ -165,31 +187,74 @@ public class CrustLayer extends AbstractLayer implements Loader
 		return params;
 	}
 
+	/**
+	 * Recalculate the cached surface geometry for the given globe, and write
+	 * the exaggerated vertices directly into the front vertex buffer. Called
+	 * on the render thread.
+	 */
 	private void recalculateVertices(Globe globe, double verticalExaggeration)
 	{
 		synchronized (elevationLock)
 		{
 			if (elevations != null)
 			{
-				elevations.rewind();
-				vertices.rewind();
+				ExaggeratedVertices exaggerated = exaggeratedVertices;
+				if (exaggerated == null)
+				{
+					exaggerated = new ExaggeratedVertices(width * height);
+				}
+
 				Angle minlon = sector.getMinLongitude();
 				Angle minlat = sector.getMaxLatitude();
 				double lonstep = sector.getDeltaLonDegrees() / (width - 1);
 				double latstep = sector.getDeltaLatDegrees() / (height - 1);
+				int index = 0;
 				for (int y = 0; y < height; y++)
 				{
 					Angle lat = minlat.subtractDegrees(latstep * y);
 					for (int x = 0; x < width; x++)
 					{
 						Angle lon = minlon.addDegrees(lonstep * x);
-						double elev = elevations.get() * scale * verticalExaggeration;
-						Vec4 point = globe.computePointFromPosition(lat, lon, elev);
-						vertices.put(point.x).put(point.y).put(point.z);
+						exaggerated.setVertex(index, globe, lat, lon, elevations.get(index) * scale);
+						index++;
 					}
 				}
+
+				exaggeratedVertices = exaggerated;
+				exaggerated.exaggerate(verticalExaggeration, null, vertices);
+				verticesExaggeration = verticalExaggeration;
+			}
+		}
+	}
+
+	/**
+	 * Re-exaggerate the cached surface geometry into the back vertex buffer,
+	 * and swap it with the front buffer. Called by the vertex updater thread.
+	 * <p/>
+	 * The back buffer is only reused once the render thread has picked up the
+	 * front buffer; until then it may still be drawing the back buffer, and
+	 * the update is retried on the next frame.
+	 */
+	private void reexaggerateVertices(double verticalExaggeration)
+	{
+		synchronized (elevationLock)
+		{
+			ExaggeratedVertices exaggerated = exaggeratedVertices;
+			if (exaggerated == null || verticesExaggeration == verticalExaggeration
+					|| backVertices == drawnVertices)
+			{
+				return;
 			}
+
+			exaggerated.exaggerate(verticalExaggeration, null, backVertices);
+			DoubleBuffer temp = vertices;
+			vertices = backVertices;
+			backVertices = temp;
+			verticesExaggeration = verticalExaggeration;
 		}
+
+		//trigger a render with the new vertices
+		firePropertyChange(AVKey.LAYER, null, this);
 	}
 
 	private void recalculateColors()
@@ -287,13 +352,18 @@ public class CrustLayer extends AbstractLayer implements Loader
 			downloadData();
 		}
 
-		if (lastVerticalExaggeration != dc.getVerticalExaggeration() || lastGlobe != dc.getGlobe())
+		if (lastGlobe != dc.getGlobe())
 		{
-			lastVerticalExaggeration = dc.getVerticalExaggeration();
 			lastGlobe = dc.getGlobe();
-			recalculateVertices(lastGlobe, lastVerticalExaggeration);
+			recalculateVertices(lastGlobe, dc.getVerticalExaggeration());
 			recalculateColors();
 		}
+		else if (exaggeratedVertices != null && verticesExaggeration != dc.getVerticalExaggeration())
+		{
+			//the updater doesn't write to the buffer drawn below until a later frame has picked up the new front buffer
+			targetVerticalExaggeration = dc.getVerticalExaggeration();
+			VertexUpdater.run(this, exaggerationUpdater);
+		}
 
 		GL2 gl = dc.getGL().getGL2();
 
@@ -319,6 +389,8 @@ public class CrustLayer extends AbstractLayer implements Loader
 		}
 
 		gl.glEnableClientState(GL2.GL_VERTEX_ARRAY);
+		DoubleBuffer vertices = this.vertices;
+		drawnVertices = vertices;
 		gl.glVertexPointer(3, GL2.GL_DOUBLE, 0, vertices.rewind());
 
 		gl.glDrawElements(GL2.GL_TRIANGLE_STRIP, indices.limit(), GL2.GL_UNSIGNED_INT, indices.rewind());
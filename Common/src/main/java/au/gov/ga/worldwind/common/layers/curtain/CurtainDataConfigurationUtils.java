@@ -24,6 +24,7 @@ import javax.xml.xpath.XPath;
 import org.w3c.dom.Element;
 
 import au.gov.ga.worldwind.common.util.AVKeyMore;
+import au.gov.ga.worldwind.common.util.XMLUtil;
 
 /**
  * Extension of the {@link DataConfigurationUtils} class that adds some extra
@@ -37,7 +38,7 @@ public class CurtainDataConfigurationUtils extends DataConfigurationUtils
 	{
 		params = DataConfigurationUtils.getLevelSetConfigParams(domElement, params);
 
-		XPath xpath = WWXML.makeXPath();
+		XPath xpath = XMLUtil.makeXPath();
 
 		WWXML.checkAndSetIntegerParam(domElement, params, AVKeyMore.FULL_WIDTH, "FullSize/Dimension/@width", xpath);
 		WWXML.checkAndSetIntegerParam(domElement, params, AVKeyMore.FULL_HEIGHT, "FullSize/Dimension/@height", xpath);
@@ -28,6 +28,10 @@ import com.jogamp.opengl.util.texture.Texture;
 import com.jogamp.opengl.util.texture.TextureData;
 import com.jogamp.opengl.util.texture.TextureIO;
 
+import au.gov.ga.worldwind.common.profiling.Profiler;
+import au.gov.ga.worldwind.common.profiling.ProfilerCounter;
+import au.gov.ga.worldwind.common.profiling.ProfilerTimer;
+
 /**
  * Extension of the {@link CurtainTile} class which contains texture data for
  * the tile.
@@ -36,6 +40,9 @@ import com.jogamp.opengl.util.texture.TextureIO;
  */
 public class CurtainTextureTile extends CurtainTile
 {
+	private static final ProfilerTimer uploadTimer = Profiler.INSTANCE.getTimer(Profiler.TEXTURE_UPLOAD);
+	private static final ProfilerCounter uploadCounter = Profiler.INSTANCE.getCounter(Profiler.TEXTURE_UPLOADS);
+
 	private volatile TextureData textureData; // if non-null, then must be converted to a Texture
 	private CurtainTextureTile fallbackTile = null; // holds texture to use if own texture not available
 	private boolean hasMipmapData = false;
@@ -287,9 +294,11 @@ public class CurtainTextureTile extends CurtainTile
 			throw new IllegalStateException(msg);
 		}
 
+		long start = uploadTimer.start();
 		try
 		{
 			t = TextureIO.newTexture(this.getTextureData());
+			uploadCounter.increment();
 		}
 		catch (Exception e)
 		{
@@ -297,6 +306,10 @@ public class CurtainTextureTile extends CurtainTile
 			Logging.logger().log(java.util.logging.Level.SEVERE, msg, e);
 			return null;
 		}
+		finally
+		{
+			uploadTimer.stop(start);
+		}
 
 		this.setTexture(dc.getTextureCache(), t);
 		t.bind(dc.getGL());
@@ -33,11 +33,14 @@ import gov.nasa.worldwind.util.TileKey;
 
 import java.nio.FloatBuffer;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
 import java.util.TreeMap;
 
+import au.gov.ga.worldwind.common.terrain.ElevationSampler;
+
 import com.jogamp.common.nio.Buffers;
 
 /**
@@ -225,16 +228,30 @@ public class Path
 			t = b + 1;
 		}
 
+		//reuse the geometry's terrain samples, so that only samples that weren't fully resolved are refined
+		ElevationSampler sampler = null;
+		if (followTerrain)
+		{
+			sampler = geometry != null ? geometry.getTerrainSampler() : null;
+			if (sampler == null || sampler.size() != betweenMap.size())
+			{
+				sampler = createSampler(betweenMap.values());
+			}
+			sampler.update(globe.getElevationModel(), sampler.getBestResolution(globe.getElevationModel()));
+		}
+
 		double percentDistance = segment.getHorizontalDelta();
+		int i = 0;
 		for (Entry<Double, LatLon> entry : betweenMap.entrySet())
 		{
 			LatLon ll = entry.getValue();
 
 			double e = 0;
-			if (followTerrain)
+			if (sampler != null)
 			{
-				e = globe.getElevation(ll.latitude, ll.longitude) * dc.getVerticalExaggeration();
+				e = sampler.getElevation(i) * dc.getVerticalExaggeration();
 			}
+			i++;
 
 			Vec4 point1 = globe.computePointFromPosition(ll, t + e);
 			Vec4 point2 = globe.computePointFromPosition(ll, b + e);
@@ -257,6 +274,7 @@ public class Path
 		{
 			geometry.update(dc, refCenter);
 		}
+		geometry.setTerrainSampler(sampler);
 		return geometry;
 	}
 
@@ -278,16 +296,24 @@ public class Path
 		double t = top - segment.getTop() * height;
 		double b = top - segment.getBottom() * height;
 
+		ElevationSampler sampler = null;
+		if (followTerrain)
+		{
+			sampler = createSampler(betweenMap.values());
+			sampler.update(globe.getElevationModel(), sampler.getBestResolution(globe.getElevationModel()));
+		}
+
 		//add top points, and add bottom points (add them backwards, so it's a loop)
-		int j = 0, k = betweenMap.size() * 2;
+		int i = 0, j = 0, k = betweenMap.size() * 2;
 		for (LatLon ll : betweenMap.values())
 		{
 			double e = 0;
-			if (followTerrain)
+			if (sampler != null)
 			{
 				// Note: The elevation model has already applied vertical exaggeration in the case of the VerticalExaggerationElevationModel...
-				e = globe.getElevation(ll.latitude, ll.longitude) * dc.getVerticalExaggeration();
+				e = sampler.getElevation(i) * dc.getVerticalExaggeration();
 			}
+			i++;
 
 			points[j++] = globe.computePointFromPosition(ll, t + e);
 			points[--k] = globe.computePointFromPosition(ll, b + e);
@@ -296,6 +322,22 @@ public class Path
 		return points;
 	}
 
+	/**
+	 * Create an {@link ElevationSampler} for the given locations, so that
+	 * their terrain elevations can be looked up in bulk.
+	 */
+	protected static ElevationSampler createSampler(Collection<LatLon> latlons)
+	{
+		double[] values = new double[latlons.size() * 2];
+		int index = 0;
+		for (LatLon ll : latlons)
+		{
+			values[index++] = ll.getLatitude().degrees;
+			values[index++] = ll.getLongitude().degrees;
+		}
+		return new ElevationSampler(values);
+	}
+
 	protected NavigableMap<Double, LatLon> segmentMap(Segment segment, int subsegments)
 	{
 		LatLon start = getPercentLatLon(segment.getStart());
@@ -25,6 +25,8 @@ import java.nio.FloatBuffer;
 
 import javax.media.opengl.GL2;
 
+import au.gov.ga.worldwind.common.terrain.ElevationSampler;
+
 /**
  * A {@link Renderable} piece of geometry that draws a segment (or section) of a
  * curtain/path for the {@link TiledCurtainLayer}.
@@ -38,6 +40,7 @@ public class SegmentGeometry implements Renderable
 	private final FloatBuffer texCoords;
 	private Vec4 referenceCenter;
 	private long time;
+	private ElevationSampler terrainSampler;
 
 	protected Object vboCacheKey = new Object();
 
@@ -138,6 +141,20 @@ public class SegmentGeometry implements Renderable
 		return time;
 	}
 
+	/**
+	 * @return Terrain elevations sampled when this geometry was last
+	 *         calculated, or null if the geometry doesn't follow the terrain
+	 */
+	public ElevationSampler getTerrainSampler()
+	{
+		return terrainSampler;
+	}
+
+	public void setTerrainSampler(ElevationSampler terrainSampler)
+	{
+		this.terrainSampler = terrainSampler;
+	}
+
 	public long getSizeInBytes()
 	{
 		return 5 * vertexCount * Float.SIZE / 8;
@@ -48,6 +48,7 @@ import org.w3c.dom.Element;
 import au.gov.ga.worldwind.common.layers.Bounded;
 import au.gov.ga.worldwind.common.layers.Bounds;
 import au.gov.ga.worldwind.common.util.AVKeyMore;
+import au.gov.ga.worldwind.common.util.XMLUtil;
 
 import com.jogamp.opengl.util.awt.TextRenderer;
 
@@ -923,7 +924,7 @@ public abstract class TiledCurtainLayer extends AbstractLayer implements Bounded
 			params = new AVListImpl();
 		}
 
-		XPath xpath = WWXML.makeXPath();
+		XPath xpath = XMLUtil.makeXPath();
 
 		// Common layer properties.
 		AbstractLayer.getLayerConfigParams(domElement, params);
@@ -1029,7 +1030,7 @@ public abstract class TiledCurtainLayer extends AbstractLayer implements Bounded
 			params = new AVListImpl();
 		}
 
-		XPath xpath = WWXML.makeXPath();
+		XPath xpath = XMLUtil.makeXPath();
 
 		Object o = params.getValue(AVKey.TEXTURE_FORMAT);
 		if (o == null)
@@ -36,6 +36,8 @@ import javax.xml.xpath.XPath;
 
 import org.w3c.dom.Element;
 
+import au.gov.ga.worldwind.common.util.XMLUtil;
+
 /**
  * Abstract generic implementation of the {@link IDelegateKit} interface. Stores
  * the delegate objects for each of the delegate types, and forward the delegate
@@ -84,7 +86,7 @@ public abstract class AbstractDelegateKit<TILE extends IDelegatorTile, BOUNDS, L
 		AbstractDelegateKit<TILE, BOUNDS, LEVEL> kit = createNewInstance();
 		IDelegateFactory factory = getFactory();
 
-		XPath xpath = WWXML.makeXPath();
+		XPath xpath = XMLUtil.makeXPath();
 		Element delegatesElement = WWXML.getElement(domElement, "Delegates", xpath);
 		if (delegatesElement != null)
 		{
@@ -25,12 +25,14 @@ import org.w3c.dom.Element;
 import au.gov.ga.worldwind.common.layers.delegate.IDelegatorLayer;
 import au.gov.ga.worldwind.common.layers.delegate.IDelegatorTile;
 import au.gov.ga.worldwind.common.layers.delegate.ITileRequesterDelegate;
+import au.gov.ga.worldwind.common.util.TileIndex;
 import au.gov.ga.worldwind.common.util.Util;
 
 /**
  * Implementation of {@link ITileRequesterDelegate} which provides loading from
  * tilesets stored in the local filesystem. This means that tiles are not
- * downloaded/cached, but are loaded directly from the tileset.
+ * downloaded/cached, but are loaded directly from the tileset. If the tileset
+ * has a {@link TileIndex}, tiles that it doesn't contain are not searched for.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -38,6 +40,9 @@ public abstract class AbstractLocalRequesterDelegate<TILE extends IDelegatorTile
 		ITileRequesterDelegate<TILE>
 {
 	protected final static String DEFINITION_STRING = "LocalRequester";
+
+	private TileIndex tileIndex;
+	private boolean tileIndexRead = false;
 	
 	@Override
 	public String toDefinition(Element layerElement)
@@ -74,12 +79,45 @@ public abstract class AbstractLocalRequesterDelegate<TILE extends IDelegatorTile
 	 */
 	protected boolean loadTexture(TILE tile, IDelegatorLayer<TILE> layer)
 	{
+		if (isTileAbsent(tile, layer))
+			return false;
 		URL url = getLocalTileURL(tile, layer, false);
 		if (url == null)
 			return false;
 		return layer.loadTexture(tile, url);
 	}
 
+	/**
+	 * Check the tileset's {@link TileIndex} (if it has one) to see if a tile
+	 * doesn't exist, so that the file system isn't searched for it.
+	 * 
+	 * @param tile
+	 *            Tile to check
+	 * @param layer
+	 *            Tile's layer
+	 * @return True if the tileset's index says the tile doesn't exist
+	 */
+	protected boolean isTileAbsent(TILE tile, IDelegatorLayer<TILE> layer)
+	{
+		TileIndex index = getTileIndex(tile, layer);
+		return index != null && index.isAbsent(tile.getLevelNumber(), tile.getRow(), tile.getColumn());
+	}
+
+	/**
+	 * @return The {@link TileIndex} of the tileset containing the given tile,
+	 *         or null if the tileset has no index. The index is read the first
+	 *         time this is called.
+	 */
+	protected synchronized TileIndex getTileIndex(TILE tile, IDelegatorLayer<TILE> layer)
+	{
+		if (!tileIndexRead)
+		{
+			tileIndex = TileIndex.find(tile.getService(), tile.getDataset(), layer.getContext());
+			tileIndexRead = true;
+		}
+		return tileIndex;
+	}
+
 	/**
 	 * Return a URL which points to the tile's texture.
 	 * 
@@ -46,6 +46,7 @@ import au.gov.ga.worldwind.common.downloader.Downloader;
 import au.gov.ga.worldwind.common.downloader.RetrievalHandler;
 import au.gov.ga.worldwind.common.downloader.RetrievalResult;
 import au.gov.ga.worldwind.common.render.fastshape.FastShape;
+import au.gov.ga.worldwind.common.render.fastshape.PositionBuffer;
 import au.gov.ga.worldwind.common.util.AVKeyMore;
 import au.gov.ga.worldwind.common.util.HSLColor;
 import au.gov.ga.worldwind.common.util.Loader;
@@ -154,7 +155,7 @@ public class HistoricEarthquakesLayer extends AbstractLayer implements Loader
 		if (params == null)
 			params = new AVListImpl();
 
-		XPath xpath = WWXML.makeXPath();
+		XPath xpath = XMLUtil.makeXPath();
 
 		// Common layer properties.
 		AbstractLayer.getLayerConfigParams(domElement, params);
@@ -278,7 +279,7 @@ public class HistoricEarthquakesLayer extends AbstractLayer implements Loader
 
 	protected void loadEarthquakes(List<Earthquake> earthquakes)
 	{
-		List<Position> positions = new ArrayList<Position>();
+		PositionBuffer positions = new PositionBuffer(earthquakes.size());
 		for (Earthquake earthquake : earthquakes)
 		{
 			positions.add(earthquake.position);
@@ -70,6 +70,7 @@ import au.gov.ga.worldwind.common.util.DefaultLauncher;
 import au.gov.ga.worldwind.common.util.HSLColor;
 import au.gov.ga.worldwind.common.util.Loader;
 import au.gov.ga.worldwind.common.util.MapBackedNamespaceContext;
+import au.gov.ga.worldwind.common.util.XMLUtil;
 
 /**
  * A {@link RenderableLayer} that displays recent earthquake data sourced from a
@@ -161,7 +162,7 @@ public class RSSEarthquakesLayer extends RenderableLayer implements Loader, Sele
 							InputSource source = new InputSource(reader);
 							Document document = builder.parse(source);
 
-							Element[] items = WWXML.getElements(document.getDocumentElement(), "//item", null);
+							Element[] items = XMLUtil.getElements(document.getDocumentElement(), "//item", null);
 							if (items != null)
 							{
 								List<Earthquake> earthquakes =
@@ -366,7 +367,7 @@ public class RSSEarthquakesLayer extends RenderableLayer implements Loader, Sele
 			{
 				throw new IllegalArgumentException("An XML element is required.");
 			}
-			XPath xpath = WWXML.makeXPath();
+			XPath xpath = XMLUtil.makeXPath();
 
 			// Add the georss namespace to the xpath
 			MapBackedNamespaceContext context = new MapBackedNamespaceContext();
@@ -34,8 +34,13 @@ import javax.media.opengl.GL2;
 
 import com.jogamp.opengl.util.awt.TextRenderer;
 
+import au.gov.ga.worldwind.common.profiling.Profiler;
+import au.gov.ga.worldwind.common.profiling.ProfilerFrame;
+
 /**
- * Layer that shows an FPS counter.
+ * Layer that shows an FPS counter. If the {@link Profiler} is enabled, the
+ * time taken by the last recorded frame is also shown; the full breakdown of
+ * each frame is available from the {@link Profiler}.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -44,6 +49,7 @@ public class FPSLayer extends AbstractLayer
 	private Long lastNanos;
 	private int frameCount = 0;
 	private int fps;
+	private String frameTime;
 
 	// Display parameters - TODO: make configurable
 	private Dimension size = new Dimension(150, 10);
@@ -371,8 +377,10 @@ public class FPSLayer extends AbstractLayer
 			fps = frameCount;
 			frameCount = 0;
 			lastNanos = currentNanos;
-		}
 
+			ProfilerFrame frame = Profiler.INSTANCE.isEnabled() ? Profiler.INSTANCE.getRecorder().getLatest() : null;
+			frameTime = frame != null ? String.format(" (%.1f ms)", frame.getFrameTime() / 1000d) : null;
+		}
 
 		GL2 gl = dc.getGL().getGL2();
 
@@ -412,7 +420,7 @@ public class FPSLayer extends AbstractLayer
 
 			// Draw label
 			int divWidth = 0;
-			String label = fps + " fps";
+			String label = fps + " fps" + (frameTime != null ? frameTime : "");
 			gl.glLoadIdentity();
 			gl.glDisable(GL2.GL_CULL_FACE);
 			drawLabel(dc, label,
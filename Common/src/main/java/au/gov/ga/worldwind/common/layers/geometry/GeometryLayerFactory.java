@@ -30,6 +30,7 @@ import au.gov.ga.worldwind.common.layers.geometry.provider.ShapefileShapeProvide
 import au.gov.ga.worldwind.common.layers.geometry.types.airspace.AirspaceGeometryLayer;
 import au.gov.ga.worldwind.common.layers.styled.StyleAndAttributeFactory;
 import au.gov.ga.worldwind.common.util.AVKeyMore;
+import au.gov.ga.worldwind.common.util.XMLUtil;
 
 /**
  * A factory class used to create {@link GeometryLayer}s from XML layer
@@ -49,7 +50,7 @@ public class GeometryLayerFactory
 
 		GeometryLayer layer;
 
-		String type = WWXML.getText(domElement, "RenderType");
+		String type = XMLUtil.getText(domElement, "RenderType");
 		if ("Airspace".equalsIgnoreCase(type))
 		{
 			layer = new AirspaceGeometryLayer(params);
@@ -72,7 +73,7 @@ public class GeometryLayerFactory
 		if (params == null)
 			params = new AVListImpl();
 
-		XPath xpath = WWXML.makeXPath();
+		XPath xpath = XMLUtil.makeXPath();
 
 		WWXML.checkAndSetStringParam(domElement, params, AVKey.URL, "URL", xpath);
 		WWXML.checkAndSetLongParam(domElement, params, AVKey.EXPIRY_TIME, "ExpiryTime", xpath);
@@ -154,35 +154,7 @@ public class GeoName implements GeographicText
 				Collection<GeoName> geonames = parseDocument(document);
 				if (geonames != null)
 				{
-					children = new HashSet<GeoName>();
-					for (GeoName geoname : geonames)
-					{
-						synchronized (mapLock)
-						{
-							GeoName mapped = geonameMap.get(geoname.geonameId);
-							if (mapped == null || mapped.parent == this)
-							{
-								geoname.parent = this;
-								children.add(geoname);
-								geonameMap.put(geoname.geonameId, geoname);
-							}
-							else
-							{
-								geoname = mapped;
-								double distance1 =
-										VisibilityCalculatorImpl.latlonDistanceSquared(latlon, geoname.latlon);
-								double distance2 =
-										VisibilityCalculatorImpl.latlonDistanceSquared(geoname.parent.latlon,
-												geoname.latlon);
-								if (distance1 < distance2)
-								{
-									geoname.parent.getChildren().remove(geoname);
-									children.add(geoname);
-									geoname.parent = this;
-								}
-							}
-						}
-					}
+					setChildren(geonames);
 				}
 			}
 			catch (Exception e)
@@ -193,6 +165,59 @@ public class GeoName implements GeographicText
 		}
 	}
 
+	/**
+	 * Load this GeoName's children from a local index, instead of from the
+	 * cache file.
+	 * 
+	 * @param index
+	 *            Index to read the children from
+	 * @param maxChildren
+	 *            Maximum number of children to load (the most populated
+	 *            children are loaded)
+	 */
+	public void loadChildren(GeoNamesIndex index, int maxChildren)
+	{
+		Collection<GeoName> geonames = new ArrayList<GeoName>();
+		for (GeoNamesIndex.Record record : index.getChildren(geonameId, maxChildren))
+		{
+			LatLon latlon = LatLon.fromDegrees(record.latitude, record.longitude);
+			geonames.add(new GeoName(record.name, record.geonameId, latlon, record.featureClass, record.featureCode,
+					level + 1, fontProvider, visibilityCalculator));
+		}
+		setChildren(geonames);
+	}
+
+	private void setChildren(Collection<GeoName> geonames)
+	{
+		children = new HashSet<GeoName>();
+		for (GeoName geoname : geonames)
+		{
+			synchronized (mapLock)
+			{
+				GeoName mapped = geonameMap.get(geoname.geonameId);
+				if (mapped == null || mapped.parent == this)
+				{
+					geoname.parent = this;
+					children.add(geoname);
+					geonameMap.put(geoname.geonameId, geoname);
+				}
+				else
+				{
+					geoname = mapped;
+					double distance1 = VisibilityCalculatorImpl.latlonDistanceSquared(latlon, geoname.latlon);
+					double distance2 =
+							VisibilityCalculatorImpl.latlonDistanceSquared(geoname.parent.latlon, geoname.latlon);
+					if (distance1 < distance2)
+					{
+						geoname.parent.getChildren().remove(geoname);
+						children.add(geoname);
+						geoname.parent = this;
+					}
+				}
+			}
+		}
+	}
+
 	private Collection<GeoName> parseDocument(Document document)
 	{
 		NodeList resultsCount = document.getElementsByTagName("totalResultsCount");
@@ -0,0 +1,913 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.geonames;
+
+import static au.gov.ga.worldwind.common.layers.geonames.GeoNamesIndex.*;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Imports a GeoNames dump into the memory-mapped {@link GeoNamesIndex} format.
+ * <p/>
+ * The dump is one of the per-country tab-separated files available from <a
+ * href="http://download.geonames.org/export/dump/">here</a> (eg
+ * <code>AU.txt</code>), optionally zipped. The hierarchy file
+ * (<code>hierarchy.txt</code>) and feature codes file
+ * (<code>featureCodes_en.txt</code>) from the same location can also be
+ * imported. Places not assigned a parent by the hierarchy file are assigned
+ * one from their admin codes: administrative divisions to the next level up,
+ * countries and continents to the globe, and populated places to their most
+ * specific administrative division.
+ * <p/>
+ * The import is performed in memory, using roughly 1.3KB of heap per place;
+ * a 2.3 million place dump shaped like <code>US.txt</code>, the largest
+ * country extract, was measured to need -Xmx3g. The whole world
+ * <code>allCountries.txt</code> dump (over 12 million places) is not
+ * supported.
+ * <p/>
+ * Usage: <code>GeoNamesImporter [options] dump.txt index.gni</code>, where the
+ * options are <code>-hierarchy hierarchy.txt</code>,
+ * <code>-featureCodes featureCodes_en.txt</code> and
+ * <code>-cellSize degrees</code>.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class GeoNamesImporter
+{
+	/**
+	 * Default size of the spatial grid cells, in degrees
+	 */
+	public static final float DEFAULT_CELL_SIZE = 2f;
+
+	//sections are built in byte arrays, which most VMs limit to slightly less than Integer.MAX_VALUE
+	private static final int MAX_SECTION_SIZE = Integer.MAX_VALUE - 8;
+
+	private final Map<Integer, Place> places = new HashMap<Integer, Place>();
+	private final Map<Integer, Integer> hierarchy = new HashMap<Integer, Integer>();
+	private final Map<String, String> featureNames = new TreeMap<String, String>();
+	private float cellSize = DEFAULT_CELL_SIZE;
+
+	public static void main(String[] args) throws IOException
+	{
+		GeoNamesImporter importer = new GeoNamesImporter();
+		int i = 0;
+		for (; i < args.length - 2; i += 2)
+		{
+			if ("-hierarchy".equals(args[i]))
+			{
+				importer.readHierarchy(openStream(new File(args[i + 1])));
+			}
+			else if ("-featureCodes".equals(args[i]))
+			{
+				importer.readFeatureCodes(openStream(new File(args[i + 1])));
+			}
+			else if ("-cellSize".equals(args[i]))
+			{
+				importer.setCellSize(Float.parseFloat(args[i + 1]));
+			}
+			else
+			{
+				break;
+			}
+		}
+		if (args.length - i != 2)
+		{
+			System.err.println("Usage: " + GeoNamesImporter.class.getSimpleName()
+					+ " [-hierarchy hierarchy.txt] [-featureCodes featureCodes_en.txt] [-cellSize degrees]"
+					+ " dump.txt index.gni");
+			System.exit(1);
+		}
+
+		long start = System.currentTimeMillis();
+		importer.readDump(openStream(new File(args[i])));
+		importer.write(new File(args[i + 1]));
+		System.out.println("Imported " + importer.places.size() + " places in "
+				+ (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/**
+	 * Open a file, or the first .txt entry within it if it is a zip file.
+	 */
+	private static InputStream openStream(File file) throws IOException
+	{
+		InputStream is = new FileInputStream(file);
+		if (!file.getName().toLowerCase().endsWith(".zip"))
+		{
+			return is;
+		}
+		ZipInputStream zis = new ZipInputStream(is);
+		ZipEntry entry;
+		while ((entry = zis.getNextEntry()) != null)
+		{
+			if (entry.getName().toLowerCase().endsWith(".txt"))
+			{
+				return zis;
+			}
+		}
+		zis.close();
+		throw new IOException("No .txt entry found in " + file);
+	}
+
+	/**
+	 * Set the size of the cells in the spatial grid. Smaller cells speed up
+	 * queries for small sectors, but increase the size of the index.
+	 * 
+	 * @param cellSize
+	 *            Cell size in degrees
+	 */
+	public void setCellSize(float cellSize)
+	{
+		if (cellSize <= 0 || cellSize > 180)
+		{
+			throw new IllegalArgumentException("Invalid cell size: " + cellSize);
+		}
+		this.cellSize = cellSize;
+	}
+
+	/**
+	 * Read the places in a GeoNames dump. Lines that can't be parsed are
+	 * ignored. The stream is closed once read.
+	 */
+	public void readDump(InputStream is) throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+		try
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				String[] columns = line.split("\t", -1);
+				if (columns.length < 15)
+				{
+					continue;
+				}
+				try
+				{
+					Place place = new Place();
+					place.geonameId = Integer.parseInt(columns[0]);
+					place.name = columns[1].trim();
+					place.latitude = Float.parseFloat(columns[4]);
+					place.longitude = Float.parseFloat(columns[5]);
+					place.featureClass = columns[6];
+					place.featureCode = columns[7];
+					place.countryCode = columns[8];
+					place.adminCodes = new String[] { columns[10], columns[11], columns[12], columns[13] };
+					long population = columns[14].length() == 0 ? 0 : Long.parseLong(columns[14]);
+					place.population = (int) Math.min(Integer.MAX_VALUE, Math.max(0, population));
+					if (place.name.length() == 0)
+					{
+						continue;
+					}
+
+					//name, ascii name and alternate names are all searchable; trigrams are
+					//only calculated for the name and ascii name to keep the index compact
+					place.names = new ArrayList<String>();
+					addName(place.names, place.name);
+					addName(place.names, columns[2]);
+					place.trigrams = trigrams(concatenate(place.names));
+					if (columns[3].length() > 0)
+					{
+						for (String alternate : columns[3].split(","))
+						{
+							addName(place.names, alternate);
+						}
+					}
+					places.put(place.geonameId, place);
+				}
+				catch (NumberFormatException e)
+				{
+					//ignore
+				}
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	/**
+	 * Read a GeoNames hierarchy file (parent id, child id and type, tab
+	 * separated). The first parent read for a child is used. The stream is
+	 * closed once read.
+	 */
+	public void readHierarchy(InputStream is) throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+		try
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				String[] columns = line.split("\t");
+				if (columns.length < 2)
+				{
+					continue;
+				}
+				try
+				{
+					int parent = Integer.parseInt(columns[0]);
+					int child = Integer.parseInt(columns[1]);
+					if (parent != child && !hierarchy.containsKey(child))
+					{
+						hierarchy.put(child, parent);
+					}
+				}
+				catch (NumberFormatException e)
+				{
+					//ignore
+				}
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	/**
+	 * Read a GeoNames feature codes file (class.code, name and description,
+	 * tab separated). The stream is closed once read.
+	 */
+	public void readFeatureCodes(InputStream is) throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+		try
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				String[] columns = line.split("\t");
+				if (columns.length >= 2 && columns[0].indexOf('.') > 0)
+				{
+					featureNames.put(columns[0], columns[1]);
+				}
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	/**
+	 * Write the index for the places read.
+	 * 
+	 * @param file
+	 *            Index file to write
+	 */
+	public void write(File file) throws IOException
+	{
+		if (!places.containsKey(GLOBE_ID))
+		{
+			//country extracts don't contain the root of the hierarchy
+			Place globe = new Place();
+			globe.geonameId = GLOBE_ID;
+			globe.name = "Earth";
+			globe.featureClass = "L";
+			globe.featureCode = "AREA";
+			globe.countryCode = "";
+			globe.adminCodes = new String[4];
+			globe.names = new ArrayList<String>();
+			addName(globe.names, globe.name);
+			globe.trigrams = trigrams(concatenate(globe.names));
+			places.put(GLOBE_ID, globe);
+		}
+
+		List<Place> sorted = new ArrayList<Place>(places.values());
+		Collections.sort(sorted, new Comparator<Place>()
+		{
+			@Override
+			public int compare(Place o1, Place o2)
+			{
+				return o1.geonameId < o2.geonameId ? -1 : o1.geonameId == o2.geonameId ? 0 : 1;
+			}
+		});
+		for (int i = 0; i < sorted.size(); i++)
+		{
+			sorted.get(i).index = i;
+		}
+
+		StringPool strings = new StringPool();
+		Map<String, Place> countries = findCountries(sorted);
+		int[] children = buildChildren(sorted, countries);
+		NameEntry[] names = buildNames(sorted, strings);
+		ByteArrayOutputStream postings = new ByteArrayOutputStream();
+		long[] trigramTable = buildTrigrams(sorted, postings);
+		int[][] grid = buildGrid(sorted);
+
+		ByteArrayOutputStream featureNamesBuffer = new ByteArrayOutputStream();
+		DataOutputStream featureNamesOutput = new DataOutputStream(featureNamesBuffer);
+		featureNamesOutput.writeInt(featureNames.size());
+		for (Map.Entry<String, String> entry : featureNames.entrySet())
+		{
+			writeString(featureNamesOutput, entry.getKey());
+			writeString(featureNamesOutput, entry.getValue());
+		}
+
+		//add the record strings to the pool before writing it
+		int[] recordStrings = new int[sorted.size() * 3];
+		for (Place place : sorted)
+		{
+			Place country = countries.get(place.countryCode);
+			String countryName =
+					country != null ? country.name : place.countryCode.length() > 0 ? place.countryCode : null;
+			recordStrings[place.index * 3] = strings.add(place.name);
+			recordStrings[place.index * 3 + 1] = strings.add(countryName);
+			recordStrings[place.index * 3 + 2] = strings.add(place.featureCode.length() > 0 ? place.featureCode : null);
+		}
+
+		long[] lengths = new long[SECTION_COUNT];
+		lengths[RECORDS] = (long) sorted.size() * RECORD_SIZE;
+		lengths[STRINGS] = strings.size();
+		lengths[CHILDREN] = (long) children.length * 4;
+		lengths[NAMES] = (long) names.length * NAME_ENTRY_SIZE;
+		lengths[TRIGRAMS] = (long) trigramTable.length / 3 * TRIGRAM_ENTRY_SIZE;
+		lengths[POSTINGS] = postings.size();
+		lengths[CELLS] = (long) grid[0].length * 4;
+		lengths[CELL_RECORDS] = (long) grid[1].length * 4;
+		lengths[FEATURE_NAMES] = featureNamesBuffer.size();
+		for (long length : lengths)
+		{
+			if (length > MAX_SECTION_SIZE)
+			{
+				throw sectionTooLarge();
+			}
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(sorted.size());
+			out.writeFloat(cellSize);
+			long offset = HEADER_SIZE;
+			for (long length : lengths)
+			{
+				out.writeLong(offset);
+				out.writeLong(length);
+				offset += length;
+			}
+
+			for (Place place : sorted)
+			{
+				out.writeInt(place.geonameId);
+				out.writeFloat(place.latitude);
+				out.writeFloat(place.longitude);
+				out.writeInt(place.population);
+				out.writeInt(recordStrings[place.index * 3]);
+				out.writeInt(recordStrings[place.index * 3 + 1]);
+				out.writeInt(recordStrings[place.index * 3 + 2]);
+				out.writeByte(place.featureClass.length() == 1 ? place.featureClass.charAt(0) : 0);
+				out.writeByte(Math.min(255, place.trigrams.length));
+				out.writeShort(0);
+				out.writeInt(place.childrenStart);
+				out.writeInt(place.childrenCount);
+			}
+			strings.writeTo(out);
+			for (int child : children)
+			{
+				out.writeInt(child);
+			}
+			for (NameEntry name : names)
+			{
+				out.writeInt(name.keyOffset);
+				out.writeInt(name.word ? name.place.index | WORD_FLAG : name.place.index);
+			}
+			for (int i = 0; i < trigramTable.length; i += 3)
+			{
+				out.writeLong(trigramTable[i]);
+				out.writeInt((int) trigramTable[i + 1]);
+				out.writeInt((int) trigramTable[i + 2]);
+			}
+			postings.writeTo(out);
+			for (int cell : grid[0])
+			{
+				out.writeInt(cell);
+			}
+			for (int record : grid[1])
+			{
+				out.writeInt(record);
+			}
+			featureNamesBuffer.writeTo(out);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * @return Map of country code to country place
+	 */
+	private static Map<String, Place> findCountries(List<Place> sorted)
+	{
+		Map<String, Place> countries = new HashMap<String, Place>();
+		for (Place place : sorted)
+		{
+			if (isCountry(place) && place.countryCode.length() > 0)
+			{
+				Place existing = countries.get(place.countryCode);
+				if (existing == null || place.population > existing.population)
+				{
+					countries.put(place.countryCode, place);
+				}
+			}
+		}
+		return countries;
+	}
+
+	/**
+	 * Assign each place's parent, and build the children table.
+	 * 
+	 * @return Indices of the children of each place, grouped by parent
+	 */
+	private int[] buildChildren(List<Place> sorted, Map<String, Place> countries)
+	{
+		//administrative divisions, keyed by country code and admin codes (eg AU.02.123)
+		Map<String, Place> divisions = new HashMap<String, Place>();
+		for (Place place : sorted)
+		{
+			int level = adminLevel(place);
+			if (level > 0)
+			{
+				String key = adminKey(place, level);
+				if (key != null)
+				{
+					Place existing = divisions.get(key);
+					if (existing == null || place.population > existing.population)
+					{
+						divisions.put(key, place);
+					}
+				}
+			}
+		}
+
+		Place globe = places.get(GLOBE_ID);
+		Map<Place, List<Place>> parents = new LinkedHashMap<Place, List<Place>>();
+		for (Place place : sorted)
+		{
+			Place parent = null;
+			Integer parentId = hierarchy.get(place.geonameId);
+			if (parentId != null)
+			{
+				parent = places.get(parentId);
+			}
+			if (parent == null)
+			{
+				parent = deriveParent(place, globe, countries, divisions);
+			}
+			if (parent != null && parent != place)
+			{
+				List<Place> list = parents.get(parent);
+				if (list == null)
+				{
+					list = new ArrayList<Place>();
+					parents.put(parent, list);
+				}
+				list.add(place);
+			}
+		}
+
+		int[] children = new int[sorted.size()];
+		int count = 0;
+		for (Map.Entry<Place, List<Place>> entry : parents.entrySet())
+		{
+			List<Place> list = entry.getValue();
+			Collections.sort(list, POPULATION_COMPARATOR);
+			entry.getKey().childrenStart = count;
+			entry.getKey().childrenCount = list.size();
+			for (Place child : list)
+			{
+				children[count++] = child.index;
+			}
+		}
+		return Arrays.copyOf(children, count);
+	}
+
+	private static Place deriveParent(Place place, Place globe, Map<String, Place> countries,
+			Map<String, Place> divisions)
+	{
+		if (place == globe)
+		{
+			return null;
+		}
+		if ("CONT".equals(place.featureCode) || isCountry(place))
+		{
+			return globe;
+		}
+
+		int level = adminLevel(place);
+		boolean populated = "P".equals(place.featureClass);
+		if (level <= 0 && !populated)
+		{
+			//other features aren't part of the hierarchy; they are found by searching
+			return null;
+		}
+		for (int parentLevel = (level > 0 ? level : 5) - 1; parentLevel > 0; parentLevel--)
+		{
+			String key = adminKey(place, parentLevel);
+			Place parent = key == null ? null : divisions.get(key);
+			if (parent != null)
+			{
+				return parent;
+			}
+		}
+		return countries.get(place.countryCode);
+	}
+
+	/**
+	 * @return Level of an administrative division (1 to 4), otherwise 0
+	 */
+	private static int adminLevel(Place place)
+	{
+		if ("A".equals(place.featureClass) && place.featureCode.length() == 4 && place.featureCode.startsWith("ADM"))
+		{
+			char c = place.featureCode.charAt(3);
+			return c >= '1' && c <= '4' ? c - '0' : 0;
+		}
+		return 0;
+	}
+
+	/**
+	 * @return Key of the administrative division at the given level containing
+	 *         the place, or null if the place's admin codes don't include that
+	 *         level
+	 */
+	private static String adminKey(Place place, int level)
+	{
+		StringBuilder sb = new StringBuilder(place.countryCode);
+		for (int i = 0; i < level; i++)
+		{
+			String code = place.adminCodes[i];
+			if (code == null || code.length() == 0 || code.equals("00"))
+			{
+				return null;
+			}
+			sb.append('.').append(code);
+		}
+		return sb.toString();
+	}
+
+	private static boolean isCountry(Place place)
+	{
+		return "A".equals(place.featureClass)
+				&& ((place.featureCode.startsWith("PCL") && !place.featureCode.equals("PCLH")) || place.featureCode
+						.equals("TERR"));
+	}
+
+	/**
+	 * Build the name entries: each normalized name, and each normalized name
+	 * starting at each subsequent word, sorted by key and then population.
+	 */
+	private static NameEntry[] buildNames(List<Place> sorted, StringPool strings) throws IOException
+	{
+		List<NameEntry> entries = new ArrayList<NameEntry>();
+		for (Place place : sorted)
+		{
+			Map<String, Boolean> keys = new LinkedHashMap<String, Boolean>();
+			for (String name : place.names)
+			{
+				keys.put(name, Boolean.FALSE);
+			}
+			for (String name : place.names)
+			{
+				for (int i = name.indexOf(' '); i >= 0; i = name.indexOf(' ', i + 1))
+				{
+					String word = name.substring(i + 1);
+					if (!keys.containsKey(word))
+					{
+						keys.put(word, Boolean.TRUE);
+					}
+				}
+			}
+			for (Map.Entry<String, Boolean> key : keys.entrySet())
+			{
+				NameEntry entry = new NameEntry();
+				entry.key = toUTF8(key.getKey());
+				entry.place = place;
+				entry.word = key.getValue();
+				entries.add(entry);
+			}
+			//the alternate names are no longer needed
+			place.names = null;
+		}
+
+		NameEntry[] array = entries.toArray(new NameEntry[entries.size()]);
+		Arrays.sort(array, new Comparator<NameEntry>()
+		{
+			@Override
+			public int compare(NameEntry o1, NameEntry o2)
+			{
+				int n = Math.min(o1.key.length, o2.key.length);
+				for (int i = 0; i < n; i++)
+				{
+					int a = o1.key[i] & 0xff, b = o2.key[i] & 0xff;
+					if (a != b)
+					{
+						return a - b;
+					}
+				}
+				if (o1.key.length != o2.key.length)
+				{
+					return o1.key.length - o2.key.length;
+				}
+				return POPULATION_COMPARATOR.compare(o1.place, o2.place);
+			}
+		});
+		for (NameEntry entry : array)
+		{
+			entry.keyOffset = strings.add(entry.key);
+		}
+		return array;
+	}
+
+	/**
+	 * Build the trigram posting lists, which are written to the postings
+	 * stream as varint-encoded gaps between ascending record indices.
+	 * 
+	 * @return Sorted trigram table, as triples of (trigram, postings offset,
+	 *         postings count)
+	 */
+	private static long[] buildTrigrams(List<Place> sorted, ByteArrayOutputStream postings) throws IOException
+	{
+		Map<Long, IntList> lists = new HashMap<Long, IntList>();
+		for (Place place : sorted)
+		{
+			for (long trigram : place.trigrams)
+			{
+				IntList list = lists.get(trigram);
+				if (list == null)
+				{
+					list = new IntList();
+					lists.put(trigram, list);
+				}
+				list.add(place.index);
+			}
+		}
+
+		Long[] keys = lists.keySet().toArray(new Long[lists.size()]);
+		Arrays.sort(keys);
+		long[] table = new long[keys.length * 3];
+		for (int i = 0; i < keys.length; i++)
+		{
+			IntList list = lists.get(keys[i]);
+			//each gap takes at most 5 bytes
+			if (postings.size() + list.size * 5L > MAX_SECTION_SIZE)
+			{
+				throw sectionTooLarge();
+			}
+			table[i * 3] = keys[i];
+			table[i * 3 + 1] = postings.size();
+			table[i * 3 + 2] = list.size;
+			int previous = 0;
+			for (int j = 0; j < list.size; j++)
+			{
+				int gap = list.values[j] - previous;
+				previous = list.values[j];
+				while ((gap & ~0x7f) != 0)
+				{
+					postings.write((gap & 0x7f) | 0x80);
+					gap >>>= 7;
+				}
+				postings.write(gap);
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Build the spatial grid: a cell table per feature class slot containing
+	 * the start of each cell in the record list, and the record list with each
+	 * cell sorted by population.
+	 * 
+	 * @return Cell starts (with a trailing end entry), and cell records
+	 */
+	private int[][] buildGrid(List<Place> sorted)
+	{
+		int columns = columns(cellSize), rows = rows(cellSize);
+		int cellCount = FEATURE_CLASS_SLOTS * rows * columns;
+		List<List<Place>> cells = new ArrayList<List<Place>>(cellCount);
+		for (int i = 0; i < cellCount; i++)
+		{
+			cells.add(null);
+		}
+		for (Place place : sorted)
+		{
+			int slot = place.featureClass.length() == 1 ? FEATURE_CLASSES.indexOf(place.featureClass.charAt(0)) : -1;
+			if (slot < 0)
+			{
+				slot = FEATURE_CLASS_SLOTS - 1;
+			}
+			int column = Math.max(0, Math.min(columns - 1, (int) Math.floor((place.longitude + 180) / cellSize)));
+			int row = Math.max(0, Math.min(rows - 1, (int) Math.floor((place.latitude + 90) / cellSize)));
+			int cell = (slot * rows + row) * columns + column;
+			List<Place> list = cells.get(cell);
+			if (list == null)
+			{
+				list = new ArrayList<Place>();
+				cells.set(cell, list);
+			}
+			list.add(place);
+		}
+
+		int[] starts = new int[cellCount + 1];
+		int[] records = new int[sorted.size()];
+		int count = 0;
+		for (int i = 0; i < cellCount; i++)
+		{
+			starts[i] = count;
+			List<Place> list = cells.get(i);
+			if (list != null)
+			{
+				Collections.sort(list, POPULATION_COMPARATOR);
+				for (Place place : list)
+				{
+					records[count++] = place.index;
+				}
+			}
+		}
+		starts[cellCount] = count;
+		return new int[][] { starts, records };
+	}
+
+	private static void addName(List<String> names, String name)
+	{
+		String normalized = normalize(name);
+		if (normalized.length() > 0 && !names.contains(normalized))
+		{
+			names.add(normalized);
+		}
+	}
+
+	private static String concatenate(List<String> names)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (String name : names)
+		{
+			sb.append(name).append(' ');
+		}
+		return sb.toString().trim();
+	}
+
+	private static IOException sectionTooLarge()
+	{
+		return new IOException("Index section too large; import a smaller dump");
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException
+	{
+		byte[] bytes = toUTF8(s);
+		int length = Math.min(bytes.length, 0xffff);
+		out.writeShort(length);
+		out.write(bytes, 0, length);
+	}
+
+	private static final Comparator<Place> POPULATION_COMPARATOR = new PopulationComparator();
+
+	/**
+	 * Sorts places by population (descending), then by geoname id.
+	 */
+	private static class PopulationComparator implements Comparator<Place>
+	{
+		@Override
+		public int compare(Place o1, Place o2)
+		{
+			if (o1.population != o2.population)
+			{
+				return o1.population > o2.population ? -1 : 1;
+			}
+			return o1.index - o2.index;
+		}
+	}
+
+	/**
+	 * A place read from the dump.
+	 */
+	private static class Place
+	{
+		public int geonameId;
+		public String name;
+		public float latitude;
+		public float longitude;
+		public String featureClass;
+		public String featureCode;
+		public String countryCode;
+		public String[] adminCodes;
+		public int population;
+		public List<String> names;
+		public long[] trigrams;
+
+		public int index;
+		public int childrenStart;
+		public int childrenCount;
+	}
+
+	/**
+	 * An entry in the name index.
+	 */
+	private static class NameEntry
+	{
+		public byte[] key;
+		public int keyOffset;
+		public Place place;
+		public boolean word;
+	}
+
+	/**
+	 * Growable list of ints.
+	 */
+	private static class IntList
+	{
+		public int[] values = new int[4];
+		public int size;
+
+		public void add(int value)
+		{
+			if (size == values.length)
+			{
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+	}
+
+	/**
+	 * Pool of distinct strings, each stored as an unsigned short byte length
+	 * followed by the UTF-8 bytes.
+	 */
+	private static class StringPool
+	{
+		private final Map<String, Integer> offsets = new HashMap<String, Integer>();
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		private final DataOutputStream output = new DataOutputStream(buffer);
+
+		public int add(String s) throws IOException
+		{
+			return s == null ? -1 : add(toUTF8(s));
+		}
+
+		public int add(byte[] bytes) throws IOException
+		{
+			String key = new String(bytes, "ISO-8859-1");
+			Integer offset = offsets.get(key);
+			if (offset == null)
+			{
+				int length = Math.min(bytes.length, 0xffff);
+				if (buffer.size() + 2L + length > MAX_SECTION_SIZE)
+				{
+					throw sectionTooLarge();
+				}
+				offset = buffer.size();
+				offsets.put(key, offset);
+				output.writeShort(length);
+				output.write(bytes, 0, length);
+			}
+			return offset;
+		}
+
+		public int size()
+		{
+			return buffer.size();
+		}
+
+		public void writeTo(DataOutputStream out) throws IOException
+		{
+			buffer.writeTo(out);
+		}
+	}
+}
@@ -0,0 +1,858 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.geonames;
+
+import gov.nasa.worldwind.geom.Sector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+
+import au.gov.ga.worldwind.common.util.LongIntHashMap;
+
+/**
+ * Read-only, memory-mapped index of a GeoNames dump, created by the
+ * {@link GeoNamesImporter}. Answers name searches, hierarchical child lookups
+ * and spatial queries locally, without a connection to geonames.org.
+ * <p/>
+ * The index contains:
+ * <ul>
+ * <li>a fixed size record per place, sorted by geoname id</li>
+ * <li>the children of each place in the GeoName hierarchy, sorted by
+ * population</li>
+ * <li>a sorted list of normalized names (including each name starting at
+ * every word), used for exact and prefix searches</li>
+ * <li>compressed trigram posting lists, used for fuzzy searches</li>
+ * <li>a grid of cells for each feature class, with the places in each cell
+ * sorted by population</li>
+ * </ul>
+ * Instances are safe to use from multiple threads.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class GeoNamesIndex
+{
+	/**
+	 * Id of the root of the GeoName hierarchy (the globe)
+	 */
+	public static final int GLOBE_ID = 6295630;
+
+	static final int MAGIC = 0x474e4958; //GNIX
+	static final int VERSION = 1;
+
+	static final int RECORDS = 0;
+	static final int STRINGS = 1;
+	static final int CHILDREN = 2;
+	static final int NAMES = 3;
+	static final int TRIGRAMS = 4;
+	static final int POSTINGS = 5;
+	static final int CELLS = 6;
+	static final int CELL_RECORDS = 7;
+	static final int FEATURE_NAMES = 8;
+	static final int SECTION_COUNT = 9;
+	static final int HEADER_SIZE = 16 + SECTION_COUNT * 16;
+
+	static final int RECORD_SIZE = 40;
+	static final int NAME_ENTRY_SIZE = 8;
+	static final int TRIGRAM_ENTRY_SIZE = 16;
+	static final int WORD_FLAG = 0x80000000;
+
+	/**
+	 * Feature classes with their own spatial grid; all other classes share a
+	 * final grid
+	 */
+	static final String FEATURE_CLASSES = "AHLPRSTUV";
+	static final int FEATURE_CLASS_SLOTS = FEATURE_CLASSES.length() + 1;
+
+	private static final String[] FEATURE_CLASS_NAMES = { "country, state, region,...", "stream, lake,...",
+			"parks,area,...", "city, village,...", "road, railroad", "spot, building, farm", "mountain,hill,rock,...",
+			"undersea", "forest,heath,..." };
+
+	private static final float FUZZY_MINIMUM_MATCH = 0.6f;
+	private static final int PREFIX_MATCH = 2;
+
+	private static final Pattern DIACRITICS_PATTERN = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+	private static final Pattern SEPARATOR_PATTERN = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+	/**
+	 * Search modes supported by the index.
+	 */
+	public static enum SearchMode
+	{
+		/**
+		 * Names equal to the search text
+		 */
+		EXACT,
+		/**
+		 * Names, or words within names, that start with the search text
+		 */
+		PREFIX,
+		/**
+		 * Names that share most of their trigrams with the search text, which
+		 * tolerates misspellings
+		 */
+		FUZZY
+	}
+
+	/**
+	 * A single place read from the index.
+	 */
+	public static class Record
+	{
+		public final int geonameId;
+		public final String name;
+		public final String country;
+		public final double latitude;
+		public final double longitude;
+		public final String featureClass;
+		public final String featureCode;
+		public final int population;
+
+		public Record(int geonameId, String name, String country, double latitude, double longitude,
+				String featureClass, String featureCode, int population)
+		{
+			this.geonameId = geonameId;
+			this.name = name;
+			this.country = country;
+			this.latitude = latitude;
+			this.longitude = longitude;
+			this.featureClass = featureClass;
+			this.featureCode = featureCode;
+			this.population = population;
+		}
+
+		@Override
+		public String toString()
+		{
+			return name + " (" + geonameId + ")";
+		}
+	}
+
+	private final int recordCount;
+	private final float cellSize;
+	private final int columns;
+	private final int rows;
+	private final ByteBuffer[] sections = new ByteBuffer[SECTION_COUNT];
+	private final Map<String, String> featureNames = new HashMap<String, String>();
+
+	/**
+	 * Open an index file created by the {@link GeoNamesImporter}. The file is
+	 * memory-mapped, and is not read into the heap.
+	 * 
+	 * @param file
+	 *            Index file
+	 * @return Opened index
+	 * @throws IOException
+	 *             If the file could not be read, or is not a GeoNames index
+	 */
+	public static GeoNamesIndex open(File file) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			return new GeoNamesIndex(raf.getChannel(), file);
+		}
+		finally
+		{
+			//mapped buffers remain valid after the channel is closed
+			raf.close();
+		}
+	}
+
+	private GeoNamesIndex(FileChannel channel, File file) throws IOException
+	{
+		if (channel.size() < HEADER_SIZE)
+		{
+			throw new IOException("Not a GeoNames index: " + file);
+		}
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+		if (header.getInt() != MAGIC)
+		{
+			throw new IOException("Not a GeoNames index: " + file);
+		}
+		int version = header.getInt();
+		if (version != VERSION)
+		{
+			throw new IOException("Unsupported GeoNames index version " + version + ": " + file);
+		}
+		recordCount = header.getInt();
+		cellSize = header.getFloat();
+		columns = columns(cellSize);
+		rows = rows(cellSize);
+
+		for (int i = 0; i < SECTION_COUNT; i++)
+		{
+			long offset = header.getLong();
+			long length = header.getLong();
+			if (offset < HEADER_SIZE || offset + length > channel.size())
+			{
+				throw new IOException("Corrupt GeoNames index: " + file);
+			}
+			sections[i] =
+					length == 0 ? ByteBuffer.allocate(0) : channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+		}
+
+		ByteBuffer names = sections[FEATURE_NAMES].duplicate();
+		int count = names.getInt();
+		for (int i = 0; i < count; i++)
+		{
+			String code = readString(names);
+			String name = readString(names);
+			featureNames.put(code, name);
+		}
+	}
+
+	/**
+	 * @return Number of places in the index
+	 */
+	public int size()
+	{
+		return recordCount;
+	}
+
+	/**
+	 * @return The place with the given geoname id, or null if it isn't in the
+	 *         index
+	 */
+	public Record get(int geonameId)
+	{
+		int index = indexOf(geonameId);
+		return index < 0 ? null : createRecord(index);
+	}
+
+	/**
+	 * Find the children of a place in the GeoName hierarchy.
+	 * 
+	 * @param geonameId
+	 *            Parent place
+	 * @param maxResults
+	 *            Maximum number of children to return
+	 * @return The most populated children of the place (empty if the place
+	 *         isn't in the index)
+	 */
+	public List<Record> getChildren(int geonameId, int maxResults)
+	{
+		int index = indexOf(geonameId);
+		if (index < 0)
+		{
+			return Collections.emptyList();
+		}
+		ByteBuffer records = sections[RECORDS];
+		int start = records.getInt(index * RECORD_SIZE + 32);
+		int count = Math.min(maxResults, records.getInt(index * RECORD_SIZE + 36));
+		List<Record> children = new ArrayList<Record>(count);
+		for (int i = 0; i < count; i++)
+		{
+			children.add(createRecord(sections[CHILDREN].getInt((start + i) * 4)));
+		}
+		return children;
+	}
+
+	/**
+	 * Search the index for places by name. Case, diacritics and punctuation
+	 * are ignored.
+	 * 
+	 * @param text
+	 *            Text to search for
+	 * @param mode
+	 *            Type of search to perform
+	 * @param maxResults
+	 *            Maximum number of places to return
+	 * @return Matching places; the most populated first, or for fuzzy
+	 *         searches, the closest matches first
+	 */
+	public List<Record> search(String text, SearchMode mode, int maxResults)
+	{
+		String normalized = normalize(text);
+		if (normalized.length() == 0 || maxResults <= 0)
+		{
+			return Collections.emptyList();
+		}
+		if (mode == SearchMode.FUZZY)
+		{
+			return fuzzySearch(normalized, maxResults);
+		}
+
+		byte[] key = toUTF8(normalized);
+		boolean exact = mode == SearchMode.EXACT;
+		ByteBuffer names = sections[NAMES];
+		int start = lowerBound(key);
+		int end = start;
+		if (exact)
+		{
+			int count = names.capacity() / NAME_ENTRY_SIZE;
+			while (end < count && compareKey(names.getInt(end * NAME_ENTRY_SIZE), key) == 0)
+			{
+				end++;
+			}
+		}
+		else
+		{
+			end = upperBound(key);
+		}
+
+		Results results = new Results(maxResults);
+		LongIntHashMap seen = new LongIntHashMap(64, -1);
+		for (int i = start; i < end; i++)
+		{
+			int entry = names.getInt(i * NAME_ENTRY_SIZE + 4);
+			if (exact && (entry & WORD_FLAG) != 0)
+			{
+				continue;
+			}
+			int record = entry & ~WORD_FLAG;
+			int population = getPopulation(record);
+			if (results.accepts(population, 0) && seen.get(record) < 0)
+			{
+				seen.put(record, 0);
+				results.offer(record, population, 0);
+			}
+		}
+		return results.toRecords();
+	}
+
+	private List<Record> fuzzySearch(String normalized, int maxResults)
+	{
+		long[] trigrams = trigrams(normalized);
+		int[] postings = new int[trigrams.length];
+		int[] counts = new int[trigrams.length];
+		int found = 0;
+		for (long trigram : trigrams)
+		{
+			int entry = findTrigram(trigram);
+			if (entry >= 0)
+			{
+				postings[found] = sections[TRIGRAMS].getInt(entry * TRIGRAM_ENTRY_SIZE + 8);
+				counts[found] = sections[TRIGRAMS].getInt(entry * TRIGRAM_ENTRY_SIZE + 12);
+				found++;
+			}
+		}
+
+		int required = (int) Math.ceil(trigrams.length * FUZZY_MINIMUM_MATCH);
+		if (found < required)
+		{
+			return Collections.emptyList();
+		}
+
+		//sort the posting lists from shortest to longest; a match must appear in
+		//at least one of the shortest (found - required + 1) lists, so only those
+		//lists can add candidates, and the longer lists only add to their counts
+		Integer[] order = new Integer[found];
+		for (int i = 0; i < found; i++)
+		{
+			order[i] = i;
+		}
+		final int[] sortCounts = counts;
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer o1, Integer o2)
+			{
+				return sortCounts[o1] - sortCounts[o2];
+			}
+		});
+
+		LongIntHashMap candidateSlots = new LongIntHashMap(256, -1);
+		int[] candidates = new int[256];
+		int[] matches = new int[256];
+		int candidateCount = 0;
+		ByteBuffer postingsBuffer = sections[POSTINGS];
+		for (int i = 0; i < found; i++)
+		{
+			boolean addCandidates = i <= found - required;
+			int position = postings[order[i]];
+			int record = 0;
+			for (int j = counts[order[i]]; j > 0; j--)
+			{
+				//decode the varint gap from the previous record
+				int gap = 0;
+				for (int shift = 0;; shift += 7)
+				{
+					byte b = postingsBuffer.get(position++);
+					gap |= (b & 0x7f) << shift;
+					if (b >= 0)
+					{
+						break;
+					}
+				}
+				record += gap;
+
+				int slot = candidateSlots.get(record);
+				if (slot >= 0)
+				{
+					matches[slot]++;
+				}
+				else if (addCandidates)
+				{
+					if (candidateCount == candidates.length)
+					{
+						candidates = Arrays.copyOf(candidates, candidateCount * 2);
+						matches = Arrays.copyOf(matches, candidateCount * 2);
+					}
+					candidateSlots.put(record, candidateCount);
+					candidates[candidateCount] = record;
+					matches[candidateCount] = 1;
+					candidateCount++;
+				}
+			}
+		}
+
+		//rank by the dice coefficient of the query and record trigrams
+		Results results = new Results(maxResults);
+		for (int i = 0; i < candidateCount; i++)
+		{
+			if (matches[i] >= required)
+			{
+				int record = candidates[i];
+				int recordTrigrams = sections[RECORDS].get(record * RECORD_SIZE + 29) & 0xff;
+				float score = 2f * matches[i] / (trigrams.length + Math.max(recordTrigrams, matches[i]));
+				results.offer(record, getPopulation(record), score);
+			}
+		}
+		return results.toRecords();
+	}
+
+	/**
+	 * Find places within a sector.
+	 * 
+	 * @param sector
+	 *            Sector to search
+	 * @param featureClasses
+	 *            Feature classes to include (eg "AP" for administrative
+	 *            areas and populated places); null to include all classes
+	 * @param minPopulation
+	 *            Minimum population of the places to include
+	 * @param maxResults
+	 *            Maximum number of places to return
+	 * @return The most populated places in the sector
+	 */
+	public List<Record> find(Sector sector, String featureClasses, int minPopulation, int maxResults)
+	{
+		double minLatitude = sector.getMinLatitude().degrees;
+		double maxLatitude = sector.getMaxLatitude().degrees;
+		double minLongitude = sector.getMinLongitude().degrees;
+		double maxLongitude = sector.getMaxLongitude().degrees;
+		int minColumn = column(minLongitude), maxColumn = column(maxLongitude);
+		int minRow = row(minLatitude), maxRow = row(maxLatitude);
+
+		ByteBuffer records = sections[RECORDS];
+		ByteBuffer cells = sections[CELLS];
+		ByteBuffer cellRecords = sections[CELL_RECORDS];
+		Results results = new Results(maxResults);
+		for (int slot = 0; slot < FEATURE_CLASS_SLOTS; slot++)
+		{
+			if (featureClasses != null && !containsSlot(featureClasses, slot))
+			{
+				continue;
+			}
+			for (int row = minRow; row <= maxRow; row++)
+			{
+				for (int column = minColumn; column <= maxColumn; column++)
+				{
+					int cell = (slot * rows + row) * columns + column;
+					int start = cells.getInt(cell * 4);
+					int end = cells.getInt(cell * 4 + 4);
+					for (int i = start; i < end; i++)
+					{
+						//cells are sorted by population, so stop at the first that can't be included
+						int record = cellRecords.getInt(i * 4);
+						int population = getPopulation(record);
+						if (population < minPopulation || !results.accepts(population, 0))
+						{
+							break;
+						}
+						double latitude = records.getFloat(record * RECORD_SIZE + 4);
+						double longitude = records.getFloat(record * RECORD_SIZE + 8);
+						if (minLatitude <= latitude && latitude <= maxLatitude && minLongitude <= longitude
+								&& longitude <= maxLongitude)
+						{
+							results.offer(record, population, 0);
+						}
+					}
+				}
+			}
+		}
+		return results.toRecords();
+	}
+
+	/**
+	 * @return Description of the given feature class (eg "city,
+	 *         village,..." for "P")
+	 */
+	public static String getFeatureClassName(String featureClass)
+	{
+		int index = featureClass == null || featureClass.length() != 1 ? -1 : FEATURE_CLASSES.indexOf(featureClass);
+		return index < 0 ? featureClass : FEATURE_CLASS_NAMES[index];
+	}
+
+	/**
+	 * @return Name of the given feature code (eg "capital of a political
+	 *         entity" for "P.PPLC"), if the index was created with the feature
+	 *         codes file; otherwise the feature code
+	 */
+	public String getFeatureCodeName(String featureClass, String featureCode)
+	{
+		String name = featureNames.get(featureClass + "." + featureCode);
+		return name == null ? featureCode : name;
+	}
+
+	private Record createRecord(int index)
+	{
+		ByteBuffer records = sections[RECORDS];
+		int offset = index * RECORD_SIZE;
+		byte featureClass = records.get(offset + 28);
+		return new Record(records.getInt(offset), getString(records.getInt(offset + 16)),
+				getString(records.getInt(offset + 20)), records.getFloat(offset + 4), records.getFloat(offset + 8),
+				featureClass == 0 ? null : String.valueOf((char) featureClass), getString(records.getInt(offset + 24)),
+				records.getInt(offset + 12));
+	}
+
+	private int getPopulation(int index)
+	{
+		return sections[RECORDS].getInt(index * RECORD_SIZE + 12);
+	}
+
+	private int indexOf(int geonameId)
+	{
+		ByteBuffer records = sections[RECORDS];
+		int low = 0, high = recordCount - 1;
+		while (low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			int id = records.getInt(mid * RECORD_SIZE);
+			if (id < geonameId)
+			{
+				low = mid + 1;
+			}
+			else if (id > geonameId)
+			{
+				high = mid - 1;
+			}
+			else
+			{
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	private int findTrigram(long trigram)
+	{
+		ByteBuffer trigrams = sections[TRIGRAMS];
+		int low = 0, high = trigrams.capacity() / TRIGRAM_ENTRY_SIZE - 1;
+		while (low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			long t = trigrams.getLong(mid * TRIGRAM_ENTRY_SIZE);
+			if (t < trigram)
+			{
+				low = mid + 1;
+			}
+			else if (t > trigram)
+			{
+				high = mid - 1;
+			}
+			else
+			{
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return Index of the first name entry whose key is not less than the
+	 *         given key
+	 */
+	private int lowerBound(byte[] key)
+	{
+		ByteBuffer names = sections[NAMES];
+		int low = 0, high = names.capacity() / NAME_ENTRY_SIZE;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (compareKey(names.getInt(mid * NAME_ENTRY_SIZE), key) < 0)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @return Index of the first name entry that is greater than the given key
+	 *         and doesn't start with it
+	 */
+	private int upperBound(byte[] key)
+	{
+		ByteBuffer names = sections[NAMES];
+		int low = 0, high = names.capacity() / NAME_ENTRY_SIZE;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			int comparison = compareKey(names.getInt(mid * NAME_ENTRY_SIZE), key);
+			if (comparison <= 0 || comparison == PREFIX_MATCH)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Compare the UTF-8 string at the given offset with a key (unsigned
+	 * bytewise, which matches code point order).
+	 * 
+	 * @return Negative if the string is less than the key, 0 if equal,
+	 *         {@link #PREFIX_MATCH} if the string is longer and starts with the
+	 *         key, otherwise positive
+	 */
+	private int compareKey(int offset, byte[] key)
+	{
+		ByteBuffer strings = sections[STRINGS];
+		int length = strings.getShort(offset) & 0xffff;
+		int n = Math.min(length, key.length);
+		for (int i = 0; i < n; i++)
+		{
+			int a = strings.get(offset + 2 + i) & 0xff;
+			int b = key[i] & 0xff;
+			if (a != b)
+			{
+				return a < b ? -1 : 1;
+			}
+		}
+		return length < key.length ? -1 : length == key.length ? 0 : PREFIX_MATCH;
+	}
+
+	private String getString(int offset)
+	{
+		if (offset < 0)
+		{
+			return null;
+		}
+		ByteBuffer strings = sections[STRINGS].duplicate();
+		strings.position(offset);
+		return readString(strings);
+	}
+
+	private static String readString(ByteBuffer buffer)
+	{
+		byte[] bytes = new byte[buffer.getShort() & 0xffff];
+		buffer.get(bytes);
+		try
+		{
+			return new String(bytes, "UTF-8");
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static boolean containsSlot(String featureClasses, int slot)
+	{
+		if (slot < FEATURE_CLASSES.length())
+		{
+			return featureClasses.indexOf(FEATURE_CLASSES.charAt(slot)) >= 0;
+		}
+		for (int i = 0; i < featureClasses.length(); i++)
+		{
+			if (FEATURE_CLASSES.indexOf(featureClasses.charAt(i)) < 0)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	int column(double longitude)
+	{
+		return Math.max(0, Math.min(columns - 1, (int) Math.floor((longitude + 180) / cellSize)));
+	}
+
+	int row(double latitude)
+	{
+		return Math.max(0, Math.min(rows - 1, (int) Math.floor((latitude + 90) / cellSize)));
+	}
+
+	static int columns(float cellSize)
+	{
+		return (int) Math.ceil(360 / cellSize);
+	}
+
+	static int rows(float cellSize)
+	{
+		return (int) Math.ceil(180 / cellSize);
+	}
+
+	/**
+	 * Normalize a name for indexing and searching: diacritics are removed,
+	 * the name is lower cased, and anything other than letters and digits is
+	 * replaced by a single space.
+	 */
+	static String normalize(String name)
+	{
+		String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+		String stripped = DIACRITICS_PATTERN.matcher(decomposed).replaceAll("");
+		return SEPARATOR_PATTERN.matcher(stripped.toLowerCase(Locale.ENGLISH)).replaceAll(" ").trim();
+	}
+
+	/**
+	 * Calculate the distinct trigrams of a normalized name. Each word is
+	 * padded with two leading spaces and one trailing space, so that the start
+	 * of words is weighted more than the end. Each trigram is packed into a
+	 * long.
+	 * 
+	 * @return Sorted distinct trigrams
+	 */
+	static long[] trigrams(String normalized)
+	{
+		long[] trigrams = new long[normalized.length() * 3 + 3];
+		int count = 0;
+		for (String word : normalized.split(" "))
+		{
+			if (word.length() == 0)
+			{
+				continue;
+			}
+			String padded = "  " + word + " ";
+			for (int i = 0; i + 3 <= padded.length(); i++)
+			{
+				trigrams[count++] =
+						((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+			}
+		}
+		Arrays.sort(trigrams, 0, count);
+		int distinct = 0;
+		for (int i = 0; i < count; i++)
+		{
+			if (distinct == 0 || trigrams[distinct - 1] != trigrams[i])
+			{
+				trigrams[distinct++] = trigrams[i];
+			}
+		}
+		return Arrays.copyOf(trigrams, distinct);
+	}
+
+	static byte[] toUTF8(String s)
+	{
+		try
+		{
+			return s.getBytes("UTF-8");
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Bounded collection of the best results of a query, ordered by score,
+	 * then population, then record index.
+	 */
+	private class Results
+	{
+		private final int maxResults;
+		private final PriorityQueue<long[]> queue;
+		private final Comparator<long[]> comparator = new Comparator<long[]>()
+		{
+			@Override
+			public int compare(long[] o1, long[] o2)
+			{
+				//the worst result is at the head of the queue
+				if (o1[0] != o2[0])
+				{
+					return o1[0] < o2[0] ? -1 : 1;
+				}
+				return o1[1] > o2[1] ? -1 : o1[1] == o2[1] ? 0 : 1;
+			}
+		};
+
+		public Results(int maxResults)
+		{
+			this.maxResults = maxResults;
+			this.queue = new PriorityQueue<long[]>(Math.min(maxResults, 1024) + 1, comparator);
+		}
+
+		/**
+		 * @return Could a result with the given population and score be
+		 *         included in the results?
+		 */
+		public boolean accepts(int population, float score)
+		{
+			if (queue.size() < maxResults)
+			{
+				return true;
+			}
+			long rank = rank(population, score);
+			return rank >= queue.peek()[0];
+		}
+
+		public void offer(int record, int population, float score)
+		{
+			long[] result = new long[] { rank(population, score), record };
+			if (queue.size() < maxResults)
+			{
+				queue.add(result);
+			}
+			else if (comparator.compare(result, queue.peek()) > 0)
+			{
+				queue.poll();
+				queue.add(result);
+			}
+		}
+
+		private long rank(int population, float score)
+		{
+			//scores are in the range [0,1]; populations are non-negative
+			return ((long) Math.round(score * 65535) << 31) | Math.max(0, population);
+		}
+
+		public List<Record> toRecords()
+		{
+			long[][] sorted = queue.toArray(new long[queue.size()][]);
+			Arrays.sort(sorted, Collections.reverseOrder(comparator));
+			List<Record> records = new ArrayList<Record>(sorted.length);
+			for (long[] result : sorted)
+			{
+				records.add(createRecord((int) result[1]));
+			}
+			return records;
+		}
+	}
+}
@@ -37,6 +37,8 @@ import gov.nasa.worldwind.util.Logging;
 
 import java.awt.Color;
 import java.awt.Font;
+import java.io.File;
+import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.ByteBuffer;
@@ -52,6 +54,17 @@ import au.gov.ga.worldwind.common.util.IterableProxy;
  * Place name layer which uses place data from geonames.org. Uses
  * level-of-detail to download levels in the GeoName hirarchy according to
  * camera altitude.
+ * <p/>
+ * If a local {@link GeoNamesIndex} is provided, the GeoName hierarchy is read
+ * from the index instead of being downloaded, which allows the layer to be
+ * used without a connection to geonames.org. The index can be set in a layer
+ * definition using the <code>IndexFile</code> property:
+ * 
+ * <pre>
+ * &lt;Layer className=&quot;au.gov.ga.worldwind.common.layers.geonames.GeoNamesLayer&quot;&gt;
+ *   &lt;Property name=&quot;IndexFile&quot; value=&quot;/path/to/geonames.gni&quot; /&gt;
+ * &lt;/Layer&gt;
+ * </pre>
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -60,8 +73,10 @@ public class GeoNamesLayer extends AbstractLayer
 	private final static String GEONAMES_CHILDREN = "http://ws.geonames.org/children";
 	private final static int GEONAMES_GLOBE_ID = 6295630;
 	private final static String GEONAMES_USERNAME = "gam3dv";
+	private final static int MAX_INDEX_CHILDREN = 200;
 
 	private GeoName topGeoName;
+	private volatile GeoNamesIndex index;
 	private VisibilityCalculatorImpl visibilityCalculator = new VisibilityCalculatorImpl();
 	private Queue<GeoName> requestQ;
 
@@ -72,6 +87,19 @@ public class GeoNamesLayer extends AbstractLayer
 
 	public GeoNamesLayer()
 	{
+		this(null);
+	}
+
+	/**
+	 * Create a layer that reads the GeoName hierarchy from a local index.
+	 * 
+	 * @param index
+	 *            Index to read from; if null, the hierarchy is downloaded from
+	 *            geonames.org
+	 */
+	public GeoNamesLayer(GeoNamesIndex index)
+	{
+		this.index = index;
 		setName("GeoNames");
 		setPickEnabled(false);
 
@@ -91,6 +119,64 @@ public class GeoNamesLayer extends AbstractLayer
 		});
 	}
 
+	/**
+	 * @return The local index the GeoName hierarchy is read from, or null if it
+	 *         is downloaded from geonames.org
+	 */
+	public GeoNamesIndex getIndex()
+	{
+		return index;
+	}
+
+	/**
+	 * Set the local index to read the GeoName hierarchy from. GeoNames that
+	 * have already loaded their children are not reloaded.
+	 * 
+	 * @param index
+	 *            Index to read from; if null, the hierarchy is downloaded from
+	 *            geonames.org
+	 */
+	public void setIndex(GeoNamesIndex index)
+	{
+		this.index = index;
+	}
+
+	/**
+	 * Open the local index file to read the GeoName hierarchy from. If the
+	 * index can't be opened, the error is logged and the hierarchy is
+	 * downloaded from geonames.org.
+	 * 
+	 * @param path
+	 *            Path to an index file created by the {@link GeoNamesImporter};
+	 *            null or blank to download from geonames.org
+	 */
+	public void setIndexFile(String path)
+	{
+		if (path == null || path.trim().length() == 0)
+		{
+			setIndex(null);
+			return;
+		}
+
+		try
+		{
+			setIndex(GeoNamesIndex.open(new File(path.trim())));
+		}
+		catch (IOException e)
+		{
+			Logging.logger().log(java.util.logging.Level.SEVERE, "Error opening GeoNames index " + path, e);
+			setIndex(null);
+		}
+	}
+
+	/**
+	 * @return The root (globe) of the GeoName hierarchy
+	 */
+	GeoName getTopGeoName()
+	{
+		return topGeoName;
+	}
+
 	private ColorFontProvider setupFontProvider()
 	{
 		ColorFont def = new ColorFont(Font.decode("Arial-PLAIN-10"), Color.lightGray, Color.black);
@@ -173,15 +259,32 @@ public class GeoNamesLayer extends AbstractLayer
 		@Override
 		public void run()
 		{
-			if (geoname.cacheFileExists())
-			{
-				loadChildren(geoname);
-			}
-			else
+			fetchChildren(geoname);
+		}
+	}
+
+	/**
+	 * Load the children of the given GeoName from the local index if there is
+	 * one, otherwise from the cache, downloading them if they aren't cached.
+	 */
+	void fetchChildren(GeoName geoname)
+	{
+		GeoNamesIndex index = getIndex();
+		if (index != null)
+		{
+			synchronized (lock)
 			{
-				download(geoname);
+				geoname.loadChildren(index, MAX_INDEX_CHILDREN);
 			}
 		}
+		else if (geoname.cacheFileExists())
+		{
+			loadChildren(geoname);
+		}
+		else
+		{
+			download(geoname);
+		}
 	}
 
 	private int calculateLevel(DrawContext dc)
@@ -0,0 +1,375 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.kml;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Splits a large KML document into a sequence of smaller, self-contained KML
+ * documents (chunks), so that the document can be parsed and displayed
+ * progressively.
+ * <p/>
+ * Only documents whose root element contains a single container (a
+ * <code>Document</code> or <code>Folder</code>) are split. The container's
+ * child features are streamed into chunks of approximately the requested
+ * size; each chunk repeats the container element and all of its non-feature
+ * children (name, shared styles, schemas, etc), so that style references
+ * resolve in every chunk. Features are never split, so a single very large
+ * child folder will be written to a single chunk.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class KMLChunker
+{
+	public static final long DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+	private static final Set<String> FEATURES = new HashSet<String>(Arrays.asList("Placemark", "Folder", "Document",
+			"NetworkLink", "GroundOverlay", "ScreenOverlay", "PhotoOverlay", "Tour"));
+	private static final Set<String> CONTAINERS = new HashSet<String>(Arrays.asList("Document", "Folder"));
+
+	private final long chunkSize;
+	private final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+	private final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+	private final XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+
+	public KMLChunker()
+	{
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	public KMLChunker(long chunkSize)
+	{
+		this.chunkSize = chunkSize;
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+	}
+
+	/**
+	 * Split the given KML file into chunks, passing each chunk to the handler
+	 * as soon as it has been written.
+	 * 
+	 * @param kmlFile
+	 *            KML file to split
+	 * @param handler
+	 *            Handler to pass the chunks to; the handler is responsible for
+	 *            deleting the chunk files
+	 * @return False if the file is smaller than the chunk size or can't be
+	 *         split (in which case the handler isn't called)
+	 * @throws Exception
+	 *             if the file couldn't be read, or the handler threw an
+	 *             exception
+	 */
+	public boolean split(File kmlFile, ChunkHandler handler) throws Exception
+	{
+		if (kmlFile.length() <= chunkSize)
+		{
+			return false;
+		}
+
+		//first pass: find the container, and collect its non-feature children to repeat in every chunk
+		Header header = readHeader(kmlFile);
+		if (header == null)
+		{
+			return false;
+		}
+
+		//second pass: stream the container's features into chunks
+		InputStream is = new BufferedInputStream(new FileInputStream(kmlFile));
+		Chunk chunk = null;
+		try
+		{
+			XMLEventReader reader = inputFactory.createXMLEventReader(is);
+			moveToContainerChildren(reader);
+
+			while (reader.hasNext())
+			{
+				XMLEvent event = reader.nextEvent();
+				if (event.isEndElement())
+				{
+					//end of the container
+					break;
+				}
+				if (!event.isStartElement())
+				{
+					continue;
+				}
+				if (!isFeature(event.asStartElement()))
+				{
+					skipElement(reader);
+					continue;
+				}
+
+				if (chunk == null)
+				{
+					chunk = new Chunk(header);
+				}
+				chunk.writer.add(event);
+				copyElement(reader, chunk.writer);
+				if (chunk.output.count >= chunkSize)
+				{
+					File file = chunk.close();
+					chunk = null;
+					handler.handle(file);
+				}
+			}
+			if (chunk != null)
+			{
+				File file = chunk.close();
+				chunk = null;
+				handler.handle(file);
+			}
+			reader.close();
+		}
+		finally
+		{
+			is.close();
+			if (chunk != null)
+			{
+				//failed part way through a chunk
+				chunk.output.close();
+				chunk.file.delete();
+			}
+		}
+		return true;
+	}
+
+	private Header readHeader(File kmlFile) throws IOException, XMLStreamException
+	{
+		InputStream is = new BufferedInputStream(new FileInputStream(kmlFile));
+		try
+		{
+			XMLEventReader reader = inputFactory.createXMLEventReader(is);
+			StartElement kml = nextStartElement(reader);
+			if (kml == null || !kml.getName().getLocalPart().equals("kml"))
+			{
+				return null;
+			}
+			StartElement container = nextStartElement(reader);
+			if (container == null || !CONTAINERS.contains(container.getName().getLocalPart()))
+			{
+				return null;
+			}
+
+			Header header = new Header(kml, container);
+			int featureCount = 0;
+			while (reader.hasNext())
+			{
+				XMLEvent event = reader.nextEvent();
+				if (event.isEndElement())
+				{
+					break;
+				}
+				if (!event.isStartElement())
+				{
+					continue;
+				}
+				if (isFeature(event.asStartElement()))
+				{
+					featureCount++;
+					skipElement(reader);
+				}
+				else
+				{
+					header.events.add(event);
+					collectElement(reader, header.events);
+				}
+			}
+
+			//the container must be the only child of the kml element (no NetworkLinkControl, etc)
+			if (featureCount < 2 || nextStartElement(reader) != null)
+			{
+				return null;
+			}
+			reader.close();
+			return header;
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+
+	private static void moveToContainerChildren(XMLEventReader reader) throws XMLStreamException
+	{
+		nextStartElement(reader);
+		nextStartElement(reader);
+	}
+
+	private static StartElement nextStartElement(XMLEventReader reader) throws XMLStreamException
+	{
+		while (reader.hasNext())
+		{
+			XMLEvent event = reader.nextEvent();
+			if (event.isStartElement())
+			{
+				return event.asStartElement();
+			}
+		}
+		return null;
+	}
+
+	private static boolean isFeature(StartElement element)
+	{
+		return FEATURES.contains(element.getName().getLocalPart());
+	}
+
+	/**
+	 * Copy the rest of the current element (after its start event) to the
+	 * writer.
+	 */
+	private static void copyElement(XMLEventReader reader, XMLEventWriter writer) throws XMLStreamException
+	{
+		int depth = 1;
+		while (depth > 0)
+		{
+			XMLEvent event = reader.nextEvent();
+			depth += event.isStartElement() ? 1 : event.isEndElement() ? -1 : 0;
+			writer.add(event);
+		}
+	}
+
+	/**
+	 * Add the rest of the current element (after its start event) to the
+	 * list.
+	 */
+	private static void collectElement(XMLEventReader reader, List<XMLEvent> events) throws XMLStreamException
+	{
+		int depth = 1;
+		while (depth > 0)
+		{
+			XMLEvent event = reader.nextEvent();
+			depth += event.isStartElement() ? 1 : event.isEndElement() ? -1 : 0;
+			events.add(event);
+		}
+	}
+
+	/**
+	 * Skip the rest of the current element (after its start event).
+	 */
+	private static void skipElement(XMLEventReader reader) throws XMLStreamException
+	{
+		int depth = 1;
+		while (depth > 0)
+		{
+			XMLEvent event = reader.nextEvent();
+			depth += event.isStartElement() ? 1 : event.isEndElement() ? -1 : 0;
+		}
+	}
+
+	/**
+	 * Handles the chunks written by a {@link KMLChunker}. The handler owns each
+	 * chunk file it is passed, and should delete it once it has been read.
+	 */
+	public static interface ChunkHandler
+	{
+		void handle(File chunk) throws Exception;
+	}
+
+	/**
+	 * The root and container start elements, and the container's non-feature
+	 * children, that are written to every chunk.
+	 */
+	private static class Header
+	{
+		public final StartElement kml;
+		public final StartElement container;
+		public final List<XMLEvent> events = new ArrayList<XMLEvent>();
+
+		public Header(StartElement kml, StartElement container)
+		{
+			this.kml = kml;
+			this.container = container;
+		}
+	}
+
+	private class Chunk
+	{
+		public final File file;
+		public final CountingOutputStream output;
+		public final XMLEventWriter writer;
+		private final Header header;
+
+		public Chunk(Header header) throws IOException, XMLStreamException
+		{
+			this.header = header;
+			file = File.createTempFile("kml", ".kml");
+			output = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			writer = outputFactory.createXMLEventWriter(output, "UTF-8");
+			writer.add(eventFactory.createStartDocument("UTF-8", "1.0"));
+			writer.add(header.kml);
+			writer.add(header.container);
+			for (XMLEvent event : header.events)
+			{
+				writer.add(event);
+			}
+		}
+
+		public File close() throws IOException, XMLStreamException
+		{
+			writer.add(eventFactory.createEndElement(header.container.getName(), null));
+			writer.add(eventFactory.createEndElement(header.kml.getName(), null));
+			writer.add(eventFactory.createEndDocument());
+			writer.close();
+			output.close();
+			return file;
+		}
+	}
+
+	private static class CountingOutputStream extends FilterOutputStream
+	{
+		public long count = 0;
+
+		public CountingOutputStream(OutputStream out)
+		{
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+}
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.kml;
+
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.ogc.kml.KMLAbstractContainer;
+import gov.nasa.worldwind.ogc.kml.KMLAbstractFeature;
+import gov.nasa.worldwind.ogc.kml.KMLDocument;
+import gov.nasa.worldwind.ogc.kml.KMLNetworkLink;
+import gov.nasa.worldwind.ogc.kml.KMLRoot;
+import gov.nasa.worldwind.util.layertree.KMLContainerTreeNode;
+import gov.nasa.worldwind.util.layertree.KMLFeatureTreeNode;
+import gov.nasa.worldwind.util.layertree.KMLNetworkLinkTreeNode;
+import gov.nasa.worldwind.util.tree.TreeNode;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Creates {@link TreeNode}s for KML features, like
+ * {@link KMLFeatureTreeNode#fromKMLFeature(KMLAbstractFeature)}, but with
+ * network link nodes that can be detached from their {@link KMLRoot}.
+ * <p/>
+ * World Wind's {@link KMLNetworkLinkTreeNode} listens to its link's root for
+ * as long as the root exists. {@link KMLLayer} shares cached roots between
+ * layers, so nodes created here must be passed to {@link #detach(TreeNode)}
+ * when they are no longer used.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class KMLFeatureTreeNodes
+{
+	/**
+	 * Create a tree node for the given feature.
+	 * 
+	 * @param feature
+	 * @return Tree node for the feature
+	 */
+	public static KMLFeatureTreeNode fromKMLFeature(KMLAbstractFeature feature)
+	{
+		if (feature instanceof KMLNetworkLink)
+		{
+			return new NetworkLinkTreeNode((KMLNetworkLink) feature);
+		}
+		if (feature instanceof KMLAbstractContainer)
+		{
+			return new ContainerTreeNode((KMLAbstractContainer) feature);
+		}
+		return new KMLFeatureTreeNode(feature);
+	}
+
+	/**
+	 * Stop the network link nodes in the given node's subtree from listening
+	 * to their roots.
+	 * 
+	 * @param node
+	 */
+	public static void detach(TreeNode node)
+	{
+		if (node instanceof NetworkLinkTreeNode)
+		{
+			((NetworkLinkTreeNode) node).detachRoot();
+		}
+		for (TreeNode child : node.getChildren())
+		{
+			detach(child);
+		}
+	}
+
+	/**
+	 * {@link KMLContainerTreeNode} that creates its children with
+	 * {@link KMLFeatureTreeNodes#fromKMLFeature(KMLAbstractFeature)}, and
+	 * detaches them when they are replaced.
+	 */
+	protected static class ContainerTreeNode extends KMLContainerTreeNode
+	{
+		public ContainerTreeNode(KMLAbstractContainer container)
+		{
+			super(container);
+		}
+
+		@Override
+		protected void refresh()
+		{
+			for (TreeNode child : getChildren())
+			{
+				KMLFeatureTreeNodes.detach(child);
+			}
+			super.refresh();
+		}
+
+		@Override
+		protected void addFeatureNode(KMLAbstractFeature feature)
+		{
+			//qualified, because the inherited KMLFeatureTreeNode.fromKMLFeature would otherwise be called
+			TreeNode featureNode = KMLFeatureTreeNodes.fromKMLFeature(feature);
+			if (featureNode != null)
+			{
+				addChild(featureNode);
+			}
+		}
+	}
+
+	/**
+	 * Detachable equivalent of {@link KMLNetworkLinkTreeNode}, which adds the
+	 * features of the link's network resource when it is retrieved.
+	 */
+	protected static class NetworkLinkTreeNode extends ContainerTreeNode
+	{
+		//set by initialize(), which is called by the super constructor, so it must not have an initializer
+		private PropertyChangeListener rootListener;
+
+		public NetworkLinkTreeNode(KMLNetworkLink networkLink)
+		{
+			super(networkLink);
+		}
+
+		@Override
+		public KMLNetworkLink getFeature()
+		{
+			return (KMLNetworkLink) super.getFeature();
+		}
+
+		@Override
+		protected void initialize()
+		{
+			super.initialize();
+
+			rootListener = new PropertyChangeListener()
+			{
+				@Override
+				public void propertyChange(PropertyChangeEvent evt)
+				{
+					if (AVKey.RETRIEVAL_STATE_SUCCESSFUL.equals(evt.getPropertyName())
+							&& getFeature() == evt.getNewValue())
+					{
+						if (SwingUtilities.isEventDispatchThread())
+						{
+							resourceRetrieved();
+						}
+						else
+						{
+							SwingUtilities.invokeLater(new Runnable()
+							{
+								@Override
+								public void run()
+								{
+									resourceRetrieved();
+								}
+							});
+						}
+					}
+				}
+			};
+			getFeature().getRoot().addPropertyChangeListener(rootListener);
+		}
+
+		protected void resourceRetrieved()
+		{
+			//the node may have been detached while waiting for the EDT
+			if (rootListener != null)
+			{
+				refresh();
+				firePropertyChange(AVKey.RETRIEVAL_STATE_SUCCESSFUL, null, this);
+			}
+		}
+
+		@Override
+		protected void refresh()
+		{
+			super.refresh();
+
+			KMLRoot resource = getFeature().getNetworkResource();
+			if (resource == null || resource.getFeature() == null)
+			{
+				return;
+			}
+
+			if (resource.getFeature() instanceof KMLDocument)
+			{
+				for (KMLAbstractFeature feature : ((KMLDocument) resource.getFeature()).getFeatures())
+				{
+					if (feature != null)
+					{
+						addFeatureNode(feature);
+					}
+				}
+			}
+			else
+			{
+				addFeatureNode(resource.getFeature());
+			}
+		}
+
+		protected void detachRoot()
+		{
+			if (rootListener != null)
+			{
+				getFeature().getRoot().removePropertyChangeListener(rootListener);
+				rootListener = null;
+			}
+		}
+	}
+}
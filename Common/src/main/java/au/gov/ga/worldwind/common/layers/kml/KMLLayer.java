@@ -20,6 +20,7 @@ import gov.nasa.worldwind.avlist.AVList;
 import gov.nasa.worldwind.avlist.AVListImpl;
 import gov.nasa.worldwind.layers.Layer;
 import gov.nasa.worldwind.layers.RenderableLayer;
+import gov.nasa.worldwind.ogc.kml.KMLAbstractContainer;
 import gov.nasa.worldwind.ogc.kml.KMLAbstractFeature;
 import gov.nasa.worldwind.ogc.kml.KMLConstants;
 import gov.nasa.worldwind.ogc.kml.KMLRoot;
@@ -28,16 +29,28 @@ import gov.nasa.worldwind.ogc.kml.io.KMLDoc;
 import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.WWIO;
 import gov.nasa.worldwind.util.WWUtil;
-import gov.nasa.worldwind.util.WWXML;
-import gov.nasa.worldwind.util.layertree.KMLLayerTreeNode;
+import gov.nasa.worldwind.util.layertree.LayerTreeNode;
 import gov.nasa.worldwind.util.tree.TreeNode;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
+import javax.swing.SwingUtilities;
 import javax.xml.xpath.XPath;
 
 import org.w3c.dom.Element;
@@ -46,10 +59,14 @@ import au.gov.ga.worldwind.common.downloader.Downloader;
 import au.gov.ga.worldwind.common.downloader.RetrievalHandler;
 import au.gov.ga.worldwind.common.downloader.RetrievalResult;
 import au.gov.ga.worldwind.common.layers.Hierarchical;
+import au.gov.ga.worldwind.common.layers.kml.KMLChunker.ChunkHandler;
+import au.gov.ga.worldwind.common.layers.kml.relativeio.KMLDocPart;
+import au.gov.ga.worldwind.common.layers.kml.relativeio.RelativeKMLDocFactory;
 import au.gov.ga.worldwind.common.layers.kml.relativeio.RelativeKMLFile;
 import au.gov.ga.worldwind.common.layers.kml.relativeio.RelativeKMLInputStream;
 import au.gov.ga.worldwind.common.layers.kml.relativeio.RelativeKMZFile;
 import au.gov.ga.worldwind.common.layers.kml.relativeio.RelativeKMZInputStream;
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
 import au.gov.ga.worldwind.common.util.Loader;
 import au.gov.ga.worldwind.common.util.URLUtil;
 import au.gov.ga.worldwind.common.util.XMLUtil;
@@ -57,14 +74,67 @@ import au.gov.ga.worldwind.common.util.XMLUtil;
 /**
  * A {@link Layer} that parses and renders KML content from a provided KML
  * source.
+ * <p/>
+ * KML is loaded on a shared, bounded pool of loader threads. Large documents
+ * are split into chunks by a {@link KMLChunker}, and each chunk is displayed
+ * as soon as it has been parsed. Parsed documents are cached (keyed by the
+ * source and its modification time or checksum), so reopening an unchanged
+ * document doesn't parse it again. Cached roots are shared by every layer
+ * that opens the same version of a document, so feature visibility and
+ * network link state are also shared between those layers.
  */
 public class KMLLayer extends RenderableLayer implements Loader, Hierarchical
 {
+	private static final int LOADER_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+	private static final int LOADED_CACHE_SIZE = 4;
+
+	private static final ExecutorService loaders = Executors.newFixedThreadPool(LOADER_THREADS,
+			new DaemonThreadFactory("KML loader"));
+
+	/**
+	 * The most recently loaded documents (the parsed roots of each chunk),
+	 * keyed by source version. Roots are shared between layers, so layers must
+	 * detach their listeners from a root when they stop using it.
+	 */
+	private static final Map<String, List<KMLRoot>> loaded = Collections
+			.synchronizedMap(new LinkedHashMap<String, List<KMLRoot>>(16, 0.75f, true)
+			{
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, List<KMLRoot>> eldest)
+				{
+					return size() > LOADED_CACHE_SIZE;
+				}
+			});
+
 	private boolean loading = false;
 	private LoadingListenerList loadingListeners = new LoadingListenerList();
 	private HierarchicalListenerList hierarchicalListeners = new HierarchicalListenerList();
 	private Object lock = new Object();
+	private Object nodeLock = new Object();
 	private TreeNode node;
+	private boolean disposed = false;
+	private final List<KMLController> controllers = new ArrayList<KMLController>();
+	private final List<KMLRoot> publishedRoots = new ArrayList<KMLRoot>();
+	private final List<KMLRoot> nodeRoots = new ArrayList<KMLRoot>();
+	private final PropertyChangeListener rootListener = new PropertyChangeListener()
+	{
+		@Override
+		public void propertyChange(PropertyChangeEvent evt)
+		{
+			//a feature was replaced by a NetworkLinkControl update, so rebuild the tree on the EDT
+			if (AVKey.UPDATED.equals(evt.getPropertyName()) && evt.getNewValue() instanceof KMLAbstractFeature)
+			{
+				SwingUtilities.invokeLater(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						refreshNode();
+					}
+				});
+			}
+		}
+	};
 
 	public KMLLayer(Element domElement, AVList params)
 	{
@@ -83,7 +153,7 @@ public class KMLLayer extends RenderableLayer implements Loader, Hierarchical
 		if (params == null)
 			params = new AVListImpl();
 
-		XPath xpath = WWXML.makeXPath();
+		XPath xpath = XMLUtil.makeXPath();
 
 		XMLUtil.checkAndSetURLParam(domElement, params, AVKey.URL, "URL", xpath);
 
@@ -103,7 +173,7 @@ public class KMLLayer extends RenderableLayer implements Loader, Hierarchical
 		loading = true;
 		notifyLoadingListeners();
 
-		RetrievalHandler handler = new RetrievalHandler()
+		RetrievalHandler cacheHandler = new RetrievalHandler()
 		{
 			@Override
 			public void handle(RetrievalResult result)
@@ -111,7 +181,19 @@ public class KMLLayer extends RenderableLayer implements Loader, Hierarchical
 				loadKml(url, result.getAsInputStream());
 			}
 		};
-		Downloader.downloadIfModified(url, handler, handler, false);
+		RetrievalHandler downloadHandler = new RetrievalHandler()
+		{
+			@Override
+			public void handle(RetrievalResult result)
+			{
+				//the cached version has already been loaded if it hasn't been modified
+				if (!result.isNotModified())
+				{
+					loadKml(url, result.getAsInputStream());
+				}
+			}
+		};
+		Downloader.downloadIfModified(url, cacheHandler, downloadHandler, false);
 	}
 
 	public KMLLayer(URL sourceUrl, InputStream stream, AVList params)
@@ -123,7 +205,7 @@ public class KMLLayer extends RenderableLayer implements Loader, Hierarchical
 
 	protected void loadKml(final URL url, final InputStream inputStream)
 	{
-		Thread thread = new Thread()
+		loaders.execute(new Runnable()
 		{
 			@Override
 			public void run()
@@ -136,54 +218,12 @@ public class KMLLayer extends RenderableLayer implements Loader, Hierarchical
 
 					try
 					{
-						String contentType = WWIO.makeMimeTypeForSuffix(WWIO.getSuffix(url.getPath()));
-						boolean isKmz = KMLConstants.KMZ_MIME_TYPE.equals(contentType);
-						File file = URLUtil.urlToFile(url);
-
-						KMLDoc doc;
-						if (file != null)
-						{
-							doc =
-									isKmz ? new RelativeKMZFile(URLUtil.urlToFile(url), url.toString(), null)
-											: new RelativeKMLFile(URLUtil.urlToFile(url), url.toString(), null);
-						}
-						else
-						{
-							InputStream stream = inputStream != null ? inputStream : WWIO.openStream(url);
-							doc =
-									isKmz ? new RelativeKMZInputStream(stream, url.toURI(), url.toString(), null)
-											: new RelativeKMLInputStream(stream, url.toURI(), url.toString(), null);
-						}
-
-						KMLRoot root;
-						try
-						{
-							//Attempt to create an instance of the CustomKMLRoot object, for loading
-							//COLLADA models. This is done via reflection, so there's no requirement
-							//for the library to be in the classpath.
-							Class<?> colladaKmlRootClass =
-									Class.forName("gov.nasa.worldwind.ogc.kml.custom.CustomKMLRoot");
-							Constructor<?> c = colladaKmlRootClass.getConstructor(KMLDoc.class);
-							root = (KMLRoot) c.newInstance(doc);
-						}
-						catch (Exception e)
-						{
-							root = new KMLRoot(doc);
-						}
-
-						root.parse();
-						KMLController controller = new KMLController(root);
-						addRenderable(controller);
-						setName(formName(url, root));
-
-						node = new KMLLayerTreeNode(KMLLayer.this, root);
-						notifyHierarchicalListeners(node);
+						load(url, inputStream);
 					}
 					catch (Exception e)
 					{
 						String message = "Error parsing KML";
 						Logging.logger().log(Level.SEVERE, message, e);
-						throw new IllegalArgumentException(message, e);
 					}
 					finally
 					{
@@ -192,9 +232,348 @@ public class KMLLayer extends RenderableLayer implements Loader, Hierarchical
 					}
 				}
 			}
-		};
-		thread.setDaemon(true);
-		thread.start();
+		});
+	}
+
+	/**
+	 * Load the KML from the given source, publishing the parsed document (or
+	 * each chunk of a large document) to this layer as it is parsed.
+	 * 
+	 * @param url
+	 *            KML source
+	 * @param inputStream
+	 *            Stream to read the KML from, if the URL isn't a local file
+	 *            (if null, the URL is opened)
+	 * @throws Exception
+	 */
+	protected void load(final URL url, InputStream inputStream) throws Exception
+	{
+		String contentType = WWIO.makeMimeTypeForSuffix(WWIO.getSuffix(url.getPath()));
+		boolean isKmz = KMLConstants.KMZ_MIME_TYPE.equals(contentType);
+		File file = URLUtil.urlToFile(url);
+
+		String key;
+		KMLDoc doc;
+		File kmlFile = null;
+		if (file != null)
+		{
+			key = file.getAbsolutePath() + "|" + file.lastModified() + "|" + file.length();
+			if (publishLoaded(url, key))
+			{
+				return;
+			}
+			doc =
+					isKmz ? new RelativeKMZFile(file, url.toString(), null) : new RelativeKMLFile(file, url.toString(),
+							null);
+			kmlFile = isKmz ? null : file;
+		}
+		else
+		{
+			//copy the stream to a local file, so that it can be checksummed, split, and randomly accessed (if a KMZ)
+			CheckedInputStream stream =
+					new CheckedInputStream(inputStream != null ? inputStream : WWIO.openStream(url), new CRC32());
+			File copy = RelativeKMLDocFactory.copyToTempFile(stream, isKmz ? ".kmz" : ".kml");
+			String version = copy.length() + "|" + stream.getChecksum().getValue();
+			key = url + "|" + version;
+			if (publishLoaded(url, key))
+			{
+				copy.delete();
+				return;
+			}
+			//the KMZ's support files are read from the copy while the document is in use
+			doc =
+					isKmz ? RelativeKMLDocFactory.createSharedKMZDoc(copy, url.toString(), version, url.toURI(),
+							url.toString(), null) : new RelativeKMLInputStream(new FileInputStream(copy), url.toURI(),
+							url.toString(), null);
+			kmlFile = isKmz ? null : copy;
+		}
+
+		//the KML is in a temporary file if it was copied from a stream or extracted from a KMZ
+		boolean temporaryKmlFile = kmlFile == null || file == null;
+		if (kmlFile == null)
+		{
+			//extract the KML from the KMZ, so that it can be split
+			kmlFile = RelativeKMLDocFactory.copyToTempFile(doc.getKMLStream(), ".kml");
+		}
+
+		try
+		{
+			final KMLDoc source = doc;
+			final List<KMLRoot> roots = new ArrayList<KMLRoot>();
+			boolean split = new KMLChunker().split(kmlFile, new ChunkHandler()
+			{
+				@Override
+				public void handle(File chunk) throws Exception
+				{
+					KMLRoot root;
+					try
+					{
+						root = createRoot(new KMLDocPart(chunk, source));
+						root.parse();
+					}
+					finally
+					{
+						chunk.delete();
+					}
+					roots.add(root);
+					publish(url, root, roots.size() == 1);
+				}
+			});
+
+			if (!split)
+			{
+				//a KMZ stream's KML can't be read again after extraction, so parse the extracted copy
+				KMLRoot root = createRoot(doc instanceof RelativeKMZInputStream ? new KMLDocPart(kmlFile, doc) : doc);
+				root.parse();
+				roots.add(root);
+				publish(url, root, true);
+			}
+			loaded.put(key, roots);
+		}
+		finally
+		{
+			if (doc instanceof RelativeKMLInputStream)
+			{
+				//the stream isn't read if the copy was split
+				doc.getKMLStream().close();
+			}
+			if (temporaryKmlFile)
+			{
+				kmlFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Publish the roots of a previously loaded document, if the document with
+	 * the given key is in the cache.
+	 * 
+	 * @return True if the document was cached
+	 */
+	protected boolean publishLoaded(URL url, String key)
+	{
+		List<KMLRoot> roots = loaded.get(key);
+		if (roots == null)
+		{
+			return false;
+		}
+		for (int i = 0; i < roots.size(); i++)
+		{
+			publish(url, roots.get(i), i == 0);
+		}
+		return true;
+	}
+
+	/**
+	 * Add a parsed root (or the root of a single chunk of a larger document)
+	 * to this layer.
+	 * 
+	 * @param url
+	 *            Source URL
+	 * @param root
+	 *            Parsed root
+	 * @param first
+	 *            Is this the first root of the document? If so, the previously
+	 *            loaded document is replaced.
+	 */
+	protected void publish(URL url, KMLRoot root, boolean first)
+	{
+		//each chunk's root contains some of the features of the document's container, so they are added to a single node
+		final List<TreeNode> featureNodes = createFeatureNodes(root);
+
+		//listeners can be added while a chunked document is loading, so don't synchronize on the load lock
+		synchronized (nodeLock)
+		{
+			if (disposed)
+			{
+				//the layer was disposed while loading, so don't attach it to the (possibly shared) root
+				detachFeatureNodes(featureNodes);
+				return;
+			}
+
+			if (first)
+			{
+				detachControllers();
+				detachRoots();
+				setName(formName(url, root));
+				node = new LayerTreeNode(this);
+				nodeRoots.clear();
+			}
+
+			KMLController controller = new KMLController(root);
+			controllers.add(controller);
+			addRenderable(controller);
+
+			publishedRoots.add(root);
+			root.addPropertyChangeListener(rootListener);
+
+			if (first)
+			{
+				//the node hasn't been passed to any listeners yet, so it can be filled on this thread
+				addFeatureNodes((LayerTreeNode) node, root, featureNodes);
+				notifyHierarchicalListeners(node);
+			}
+			else
+			{
+				//the node may already be displayed in a Swing tree, so modify it on the EDT
+				final LayerTreeNode layerNode = (LayerTreeNode) node;
+				final KMLRoot chunkRoot = root;
+				SwingUtilities.invokeLater(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						synchronized (nodeLock)
+						{
+							//ignore chunks of a document that has since been replaced
+							if (node == layerNode)
+							{
+								addFeatureNodes(layerNode, chunkRoot, featureNodes);
+							}
+							else
+							{
+								detachFeatureNodes(featureNodes);
+							}
+						}
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Add the given feature nodes, created from the given root, to the layer
+	 * node.
+	 */
+	protected void addFeatureNodes(LayerTreeNode layerNode, KMLRoot root, List<TreeNode> featureNodes)
+	{
+		for (TreeNode featureNode : featureNodes)
+		{
+			layerNode.addChild(featureNode);
+		}
+		nodeRoots.add(root);
+	}
+
+	/**
+	 * Stop the given feature nodes, which won't be added to the layer node,
+	 * listening to their roots.
+	 */
+	protected static void detachFeatureNodes(List<TreeNode> featureNodes)
+	{
+		for (TreeNode featureNode : featureNodes)
+		{
+			KMLFeatureTreeNodes.detach(featureNode);
+		}
+	}
+
+	/**
+	 * Create tree nodes for the features of the given root. If the root
+	 * feature is a container, nodes are created for its children, so that the
+	 * layer node acts as the container.
+	 */
+	protected static List<TreeNode> createFeatureNodes(KMLRoot root)
+	{
+		List<TreeNode> featureNodes = new ArrayList<TreeNode>();
+		KMLAbstractFeature rootFeature = root.getFeature();
+		if (rootFeature instanceof KMLAbstractContainer)
+		{
+			for (KMLAbstractFeature feature : ((KMLAbstractContainer) rootFeature).getFeatures())
+			{
+				addFeatureNode(featureNodes, feature);
+			}
+		}
+		else
+		{
+			addFeatureNode(featureNodes, rootFeature);
+		}
+		return featureNodes;
+	}
+
+	private static void addFeatureNode(List<TreeNode> featureNodes, KMLAbstractFeature feature)
+	{
+		if (feature == null)
+		{
+			return;
+		}
+		TreeNode featureNode = KMLFeatureTreeNodes.fromKMLFeature(feature);
+		if (featureNode != null)
+		{
+			featureNodes.add(featureNode);
+		}
+	}
+
+	/**
+	 * Rebuild the tree node's children from the roots whose features have
+	 * been added to it. Must be called on the EDT.
+	 */
+	protected void refreshNode()
+	{
+		synchronized (nodeLock)
+		{
+			if (node == null)
+			{
+				return;
+			}
+			LayerTreeNode layerNode = (LayerTreeNode) node;
+			KMLFeatureTreeNodes.detach(layerNode);
+			layerNode.removeAllChildren();
+			for (KMLRoot root : nodeRoots)
+			{
+				for (TreeNode featureNode : createFeatureNodes(root))
+				{
+					layerNode.addChild(featureNode);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remove the controllers from this layer, and stop them listening to their
+	 * (possibly shared) roots. Must be called while holding the node lock,
+	 * which guards the controllers.
+	 */
+	protected void detachControllers()
+	{
+		for (KMLController controller : controllers)
+		{
+			removeRenderable(controller);
+			controller.setKmlRoot(null);
+		}
+		controllers.clear();
+	}
+
+	/**
+	 * Stop this layer and its tree node listening to the (possibly shared)
+	 * roots published to this layer.
+	 */
+	protected void detachRoots()
+	{
+		for (KMLRoot root : publishedRoots)
+		{
+			root.removePropertyChangeListener(rootListener);
+		}
+		publishedRoots.clear();
+		if (node != null)
+		{
+			KMLFeatureTreeNodes.detach(node);
+		}
+	}
+
+	protected static KMLRoot createRoot(KMLDoc doc) throws Exception
+	{
+		try
+		{
+			//Attempt to create an instance of the CustomKMLRoot object, for loading
+			//COLLADA models. This is done via reflection, so there's no requirement
+			//for the library to be in the classpath.
+			Class<?> colladaKmlRootClass = Class.forName("gov.nasa.worldwind.ogc.kml.custom.CustomKMLRoot");
+			Constructor<?> c = colladaKmlRootClass.getConstructor(KMLDoc.class);
+			return (KMLRoot) c.newInstance(doc);
+		}
+		catch (Exception e)
+		{
+			return new KMLRoot(doc);
+		}
 	}
 
 	//from KMLViewer.java
@@ -248,7 +627,7 @@ public class KMLLayer extends RenderableLayer implements Loader, Hierarchical
 	@Override
 	public void addHierarchicalListener(HierarchicalListener listener)
 	{
-		synchronized (lock)
+		synchronized (nodeLock)
 		{
 			hierarchicalListeners.add(listener);
 			if (node != null)
@@ -264,4 +643,19 @@ public class KMLLayer extends RenderableLayer implements Loader, Hierarchical
 	{
 		hierarchicalListeners.remove(listener);
 	}
+
+	@Override
+	public void dispose()
+	{
+		//a load may still be running, so stop it publishing to this layer
+		synchronized (nodeLock)
+		{
+			disposed = true;
+			detachControllers();
+			detachRoots();
+			node = null;
+			nodeRoots.clear();
+		}
+		super.dispose();
+	}
 }
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.kml.relativeio;
+
+import gov.nasa.worldwind.ogc.kml.io.KMLDoc;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link RelativeKMLDoc} whose KML is stored in a local file, but whose
+ * support files are resolved by another (source) document. Used for the
+ * chunks of a large KML document, and for local copies of KML streams.
+ * <p/>
+ * The part has no href and acts as a child of the source document, so
+ * relative paths are resolved once, by the source.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class KMLDocPart implements RelativeKMLDoc
+{
+	private final File file;
+	private final KMLDoc source;
+
+	public KMLDocPart(File file, KMLDoc source)
+	{
+		this.file = file;
+		this.source = source;
+	}
+
+	public File getFile()
+	{
+		return file;
+	}
+
+	public KMLDoc getSource()
+	{
+		return source;
+	}
+
+	@Override
+	public InputStream getKMLStream() throws IOException
+	{
+		return new BufferedInputStream(new FileInputStream(file));
+	}
+
+	@Override
+	public InputStream getSupportFileStream(String path) throws IOException
+	{
+		return source.getSupportFileStream(path);
+	}
+
+	@Override
+	public String getSupportFilePath(String path) throws IOException
+	{
+		return source.getSupportFilePath(path);
+	}
+
+	@Override
+	public String getHref()
+	{
+		return null;
+	}
+
+	@Override
+	public KMLDoc getParent()
+	{
+		return source;
+	}
+
+	@Override
+	public boolean isContainer()
+	{
+		return false;
+	}
+}
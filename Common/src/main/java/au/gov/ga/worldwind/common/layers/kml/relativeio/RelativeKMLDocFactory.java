@@ -21,12 +21,24 @@ import gov.nasa.worldwind.ogc.kml.io.KMLDoc;
 import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.WWIO;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
 
@@ -39,6 +51,51 @@ import java.util.zip.ZipInputStream;
  */
 public class RelativeKMLDocFactory
 {
+	private static final int KMZ_COPY_SOURCES = 16;
+
+	/**
+	 * Temporary copy of the most recent version of each KMZ source, keyed by
+	 * source. Copies of replaced versions (and of sources evicted from this
+	 * map) are retired, and deleted once no document uses them.
+	 */
+	private static final Map<String, KMZCopy> kmzCopies = new LinkedHashMap<String, KMZCopy>(16, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, KMZCopy> eldest)
+		{
+			if (size() > KMZ_COPY_SOURCES)
+			{
+				retiredKMZCopies.add(eldest.getValue());
+				return true;
+			}
+			return false;
+		}
+	};
+	private static final List<KMZCopy> retiredKMZCopies = new ArrayList<KMZCopy>();
+
+	static
+	{
+		//a single hook, rather than a File.deleteOnExit registration for every copy
+		Runtime.getRuntime().addShutdownHook(new Thread("KMZ copy cleanup")
+		{
+			@Override
+			public void run()
+			{
+				synchronized (kmzCopies)
+				{
+					for (KMZCopy copy : kmzCopies.values())
+					{
+						copy.file.delete();
+					}
+					for (KMZCopy copy : retiredKMZCopies)
+					{
+						copy.file.delete();
+					}
+				}
+			}
+		});
+	}
+
 	/**
 	 * Create a RelativeKMLDoc from a docSource.
 	 * 
@@ -115,7 +172,7 @@ public class RelativeKMLDocFactory
 			KMLDoc parent) throws IOException
 	{
 		if (contentType != null && contentType.equals(KMLConstants.KMZ_MIME_TYPE))
-			return new RelativeKMZInputStream(docSource, null, href, parent);
+			return createKMZDoc(docSource, null, href, parent);
 		else if (contentType == null && docSource instanceof ZipInputStream)
 			return new RelativeKMZInputStream(docSource, null, href, parent);
 		else
@@ -133,8 +190,201 @@ public class RelativeKMLDocFactory
 			contentType = WWIO.makeMimeTypeForSuffix(WWIO.getSuffix(docSource.getPath()));
 
 		if (KMLConstants.KMZ_MIME_TYPE.equals(contentType))
-			return new RelativeKMZInputStream(conn.getInputStream(), WWIO.makeURI(docSource), href, parent);
+			return createKMZDoc(conn.getInputStream(), WWIO.makeURI(docSource), href, parent);
 		else
 			return new RelativeKMLInputStream(conn.getInputStream(), WWIO.makeURI(docSource), href, parent);
 	}
+
+	/**
+	 * Create a KMZ document from a stream. The stream is copied to a temporary
+	 * file, so that the KMZ entries can be read using random access from the
+	 * zip file's central directory, rather than by scanning the stream (which
+	 * requires every entry before the requested entry to be extracted).
+	 * <p/>
+	 * Documents created from the same version of the same KMZ share a single
+	 * copy (see
+	 * {@link #createSharedKMZDoc(File, String, String, URI, String, KMLDoc)}).
+	 * 
+	 * @param stream
+	 *            KMZ stream (closed by this method)
+	 * @param uri
+	 *            URI of the KMZ, for resolving relative support files (may be
+	 *            null)
+	 * @param href
+	 * @param parent
+	 * @return A new {@link RelativeKMLDoc}
+	 * @throws IOException
+	 */
+	public static RelativeKMLDoc createKMZDoc(InputStream stream, URI uri, String href, KMLDoc parent)
+			throws IOException
+	{
+		CheckedInputStream checked = new CheckedInputStream(stream, new CRC32());
+		File copy = copyToTempFile(checked, ".kmz");
+		String version = copy.length() + "|" + checked.getChecksum().getValue();
+		return createSharedKMZDoc(copy, String.valueOf(uri != null ? uri : href), version, uri, href, parent);
+	}
+
+	/**
+	 * Create a KMZ document from a temporary copy of a KMZ, sharing the copy
+	 * between all documents created from the same version of the same source.
+	 * KMZ documents read their support files from the copy for as long as they
+	 * are in use.
+	 * <p/>
+	 * Only the copy of the most recent version of each source is kept for
+	 * sharing, so that repeated loads of a changing KMZ (such as a refreshing
+	 * network link to a live feed) don't accumulate copies. The copy of a
+	 * replaced version is deleted once no document created from it is still
+	 * reachable.
+	 * 
+	 * @param copy
+	 *            New temporary copy of the KMZ; deleted if a copy of the same
+	 *            version already exists
+	 * @param source
+	 *            Source of the KMZ (eg its URL)
+	 * @param version
+	 *            Version of the source that was copied (eg length and
+	 *            checksum)
+	 * @param uri
+	 *            URI of the KMZ, for resolving relative support files (may be
+	 *            null)
+	 * @param href
+	 * @param parent
+	 * @return A new {@link RelativeKMLDoc}
+	 * @throws IOException
+	 */
+	public static RelativeKMLDoc createSharedKMZDoc(File copy, String source, String version, URI uri, String href,
+			KMLDoc parent) throws IOException
+	{
+		synchronized (kmzCopies)
+		{
+			KMZCopy shared = kmzCopies.get(source);
+			if (shared != null && shared.version.equals(version) && shared.file.isFile()
+					&& shared.file.length() == copy.length())
+			{
+				copy.delete();
+			}
+			else
+			{
+				if (shared != null)
+				{
+					retiredKMZCopies.add(shared);
+				}
+				shared = new KMZCopy(version, copy);
+				kmzCopies.put(source, shared);
+			}
+			deleteUnusedKMZCopies();
+
+			//the document is registered while locked, so the copy can't be deleted before it is used
+			RelativeKMLDoc doc = createKMZDoc(shared.file, uri, href, parent);
+			shared.users.add(new WeakReference<KMLDoc>(doc));
+			return doc;
+		}
+	}
+
+	/**
+	 * Delete the retired KMZ copies that are no longer used by any document.
+	 * Must be called while synchronized on the copies.
+	 */
+	private static void deleteUnusedKMZCopies()
+	{
+		Iterator<KMZCopy> iterator = retiredKMZCopies.iterator();
+		while (iterator.hasNext())
+		{
+			KMZCopy copy = iterator.next();
+			//a copy that can't be deleted yet (eg still open on Windows) is retried next time
+			if (!copy.isUsed() && (copy.file.delete() || !copy.file.exists()))
+			{
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Create a KMZ document from a local copy of a KMZ.
+	 * 
+	 * @param file
+	 *            Local copy of the KMZ
+	 * @param uri
+	 *            URI of the KMZ, for resolving relative support files (may be
+	 *            null)
+	 * @param href
+	 * @param parent
+	 * @return A new {@link RelativeKMLDoc}
+	 * @throws IOException
+	 */
+	public static RelativeKMLDoc createKMZDoc(File file, URI uri, String href, KMLDoc parent) throws IOException
+	{
+		try
+		{
+			return new RelativeKMZFile(file, uri, href, parent);
+		}
+		catch (ZipException e)
+		{
+			//see createDocSource(File, String, KMLDoc)
+			return new RelativeKMZInputStream(new FileInputStream(file), uri, href, parent);
+		}
+	}
+
+	/**
+	 * Copy a stream to a temporary file. The caller is responsible for deleting
+	 * the file (see
+	 * {@link #createSharedKMZDoc(File, String, String, URI, String, KMLDoc)}
+	 * for KMZ copies that are kept while in use).
+	 * 
+	 * @param stream
+	 *            Stream to copy (closed by this method)
+	 * @param suffix
+	 *            Temporary file suffix
+	 * @return Temporary file
+	 * @throws IOException
+	 */
+	public static File copyToTempFile(InputStream stream, String suffix) throws IOException
+	{
+		File file = File.createTempFile("kml", suffix);
+		OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+		try
+		{
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = stream.read(buffer)) >= 0)
+			{
+				os.write(buffer, 0, read);
+			}
+		}
+		finally
+		{
+			os.close();
+			stream.close();
+		}
+		return file;
+	}
+
+	/**
+	 * Temporary copy of a version of a KMZ, and the documents that use it.
+	 */
+	private static class KMZCopy
+	{
+		public final String version;
+		public final File file;
+		public final List<WeakReference<KMLDoc>> users = new ArrayList<WeakReference<KMLDoc>>();
+
+		public KMZCopy(String version, File file)
+		{
+			this.version = version;
+			this.file = file;
+		}
+
+		public boolean isUsed()
+		{
+			Iterator<WeakReference<KMLDoc>> iterator = users.iterator();
+			while (iterator.hasNext())
+			{
+				if (iterator.next().get() == null)
+				{
+					iterator.remove();
+				}
+			}
+			return !users.isEmpty();
+		}
+	}
 }
@@ -23,24 +23,48 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
 import java.net.URL;
 
 /**
  * The {@link RelativeKMZFile} class is a subclass of {@link KMZFile} that
  * supports better resolving of relative KML references.
+ * <p/>
+ * The file can also be a local copy of a remote KMZ, in which case support
+ * files that aren't in the KMZ are resolved relative to the remote URI. This
+ * allows entries of a downloaded KMZ to be read using random access, rather
+ * than by scanning a {@link RelativeKMZInputStream}.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class RelativeKMZFile extends KMZFile implements RelativeKMLDoc
 {
 	private final File file;
+	private final URI uri;
 	private final String href;
 	private final KMLDoc parent;
 
 	public RelativeKMZFile(File file, String href, KMLDoc parent) throws IOException
+	{
+		this(file, null, href, parent);
+	}
+
+	/**
+	 * @param file
+	 *            KMZ file
+	 * @param uri
+	 *            URI of the remote KMZ that the file is a copy of, used to
+	 *            resolve relative support files (null if the file isn't a
+	 *            copy)
+	 * @param href
+	 * @param parent
+	 * @throws IOException
+	 */
+	public RelativeKMZFile(File file, URI uri, String href, KMLDoc parent) throws IOException
 	{
 		super(file);
 		this.file = file;
+		this.uri = uri;
 		this.href = href;
 		this.parent = parent;
 	}
@@ -80,7 +104,16 @@ public class RelativeKMZFile extends KMZFile implements RelativeKMLDoc
 			return inputStream;
 		}
 
-		File parentFile = file.getParentFile();
+		if (uri != null)
+		{
+			URI remoteFileURI = uri.resolve(path);
+			if (RelativeKMZInputStream.isNotFileOrExistingFile(remoteFileURI))
+			{
+				return remoteFileURI.toURL().openStream();
+			}
+		}
+
+		File parentFile = uri == null ? file.getParentFile() : null;
 		if (parentFile != null)
 		{
 			File childFile = new File(parentFile, path);
@@ -115,7 +148,16 @@ public class RelativeKMZFile extends KMZFile implements RelativeKMLDoc
 			return superPath;
 		}
 
-		File parentFile = file.getParentFile();
+		if (uri != null)
+		{
+			URI remoteFileURI = uri.resolve(path);
+			if (RelativeKMZInputStream.isNotFileOrExistingFile(remoteFileURI))
+			{
+				return remoteFileURI.toString();
+			}
+		}
+
+		File parentFile = uri == null ? file.getParentFile() : null;
 		if (parentFile != null)
 		{
 			File childFile = new File(parentFile, path);
@@ -148,7 +148,7 @@ public class DelegatorMercatorTiledImageLayer extends URLTransformerBasicTiledIm
 		MercatorImageDelegateKit delegateKit = new MercatorImageDelegateKit().createFromXML(domElement, params);
 		params.setValue(AVKeyMore.DELEGATE_KIT, delegateKit);
 
-		XPath xpath = WWXML.makeXPath();
+		XPath xpath = XMLUtil.makeXPath();
 		WWXML.checkAndSetBooleanParam(domElement, params, AVKeyMore.EXTRACT_ZIP_ENTRY, "ExtractZipEntry", xpath);
 		XMLUtil.checkAndSetMercatorSectorParam(domElement, params, AVKey.SECTOR, "MercatorSector", xpath);
 
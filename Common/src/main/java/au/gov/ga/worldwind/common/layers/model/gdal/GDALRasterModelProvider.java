@@ -11,8 +11,6 @@ import java.net.URL;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
-import java.util.ArrayList;
-import java.util.List;
 
 import org.gdal.gdal.Band;
 import org.gdal.gdal.Dataset;
@@ -25,6 +23,7 @@ import au.gov.ga.worldwind.common.layers.model.ModelLayer;
 import au.gov.ga.worldwind.common.layers.model.ModelProvider;
 import au.gov.ga.worldwind.common.layers.volume.btt.BinaryTriangleTree;
 import au.gov.ga.worldwind.common.render.fastshape.FastShape;
+import au.gov.ga.worldwind.common.render.fastshape.PositionBuffer;
 import au.gov.ga.worldwind.common.util.CoordinateTransformationUtil;
 import au.gov.ga.worldwind.common.util.URLUtil;
 import au.gov.ga.worldwind.common.util.Util;
@@ -94,7 +93,9 @@ public class GDALRasterModelProvider extends AbstractDataProvider<ModelLayer> im
 			return false;
 		}
 
-		List<Position> positions = new ArrayList<Position>();
+		//store the pixel coordinate of each position, so that it can be coloured after mesh simplification
+		PositionBuffer positions =
+				new PositionBuffer(gdalDataset.getRasterXSize() * gdalDataset.getRasterYSize(), true);
 		float[][] values = new float[gdalDataset.getRasterXSize()][gdalDataset.getRasterYSize()];
 		float[] minmax = new float[] { Float.MAX_VALUE, -Float.MAX_VALUE };
 
@@ -105,7 +106,7 @@ public class GDALRasterModelProvider extends AbstractDataProvider<ModelLayer> im
 		btt.setForceGLTriangles(true);
 		FastShape shape = btt.buildMesh(modelParameters.getMaxVariance());
 
-		positions = shape.getPositions();
+		positions = (PositionBuffer) shape.getPositions();
 
 		shape.setForceSortedPrimitives(true);
 		shape.setLighted(true);
@@ -126,12 +127,13 @@ public class GDALRasterModelProvider extends AbstractDataProvider<ModelLayer> im
 	/**
 	 * Reads the values from the provided dataset into:
 	 * <ul>
-	 * <li>The provided positions list <code>(lat,lon,elevation)</code>
+	 * <li>The provided positions buffer <code>(lat,lon,elevation)</code>, with
+	 * the pixel coordinate of each position
 	 * <li>The provided values array
 	 * <code>values[x,y] = elevation | NaN (nodata)</code>
 	 * </ul>
 	 */
-	private void readValuesFromDataset(Dataset gdalDataset, List<Position> positions, float[][] values, float[] minmax)
+	private void readValuesFromDataset(Dataset gdalDataset, PositionBuffer positions, float[][] values, float[] minmax)
 	{
 		Band band = getModelBand(gdalDataset);
 
@@ -165,32 +167,26 @@ public class GDALRasterModelProvider extends AbstractDataProvider<ModelLayer> im
 						projectCoordinates(coordinateTransformation, transformedCoords[0], transformedCoords[1],
 								elevation);
 
-				Position position;
+				double positionElevation = projectedCoordinates.elevation;
 				if (isNoData(nodata, (float) datasetValue))
 				{
 					// 'Smooth' out the mesh by setting nodata elevations to the last 'real' elevation value if available
 					// This avoids nodata values 'falling' to the centre of the globe
 					if (positions.size() > 0)
 					{
-						position =
-								new PositionWithCoord(projectedCoordinates.latitude, projectedCoordinates.longitude,
-										positions.get(positions.size() - 1).elevation, x, y);
-					}
-					else
-					{
-						position = new PositionWithCoord(projectedCoordinates, x, y);
+						positionElevation = positions.getElevation(positions.size() - 1);
 					}
 					values[x][y] = Float.NaN;
 				}
 				else
 				{
-					position = new PositionWithCoord(projectedCoordinates, x, y);
-					minmax[0] = Math.min((float) position.elevation, minmax[0]);
-					minmax[1] = Math.max((float) position.elevation, minmax[1]);
-					values[x][y] = (float) position.elevation;
+					minmax[0] = Math.min((float) positionElevation, minmax[0]);
+					minmax[1] = Math.max((float) positionElevation, minmax[1]);
+					values[x][y] = (float) positionElevation;
 				}
 
-				positions.add(position);
+				positions.add(projectedCoordinates.latitude.degrees, projectedCoordinates.longitude.degrees,
+						positionElevation, x, y);
 			}
 		}
 	}
@@ -403,16 +399,14 @@ public class GDALRasterModelProvider extends AbstractDataProvider<ModelLayer> im
 	 * @return An RGBA color buffer that can be used directly by the
 	 *         {@link FastShape} class
 	 */
-	private float[] createColorBufferForDataset(List<Position> positions, float[][] values, float[] minmax,
+	private float[] createColorBufferForDataset(PositionBuffer positions, float[][] values, float[] minmax,
 			Dataset gdalDataset)
 	{
 		FloatBuffer colorBuffer = FloatBuffer.allocate(positions.size() * COLOR_BUFFER_ELEMENT_SIZE);
-		for (Position position : positions)
+		for (int p = 0; p < positions.size(); p++)
 		{
-			PositionWithCoord pwv = (PositionWithCoord) position;
-
-			int u = pwv.u;
-			int v = pwv.v;
+			int u = (int) positions.getU(p);
+			int v = (int) positions.getV(p);
 
 			float[] adjacentValues = getAdjacentValues(values, u, v);
 			//check all values around the current position for NODATA; if NODATA, use a transparent color
@@ -508,31 +502,4 @@ public class GDALRasterModelProvider extends AbstractDataProvider<ModelLayer> im
 	{
 		return modelParameters;
 	}
-
-	/**
-	 * A utility class that stores the pixel coordinates of a raster cell
-	 * alongside it's real-world position
-	 */
-	protected static class PositionWithCoord extends Position
-	{
-		public final int u;
-		public final int v;
-
-		public PositionWithCoord(Position p, int u, int v)
-		{
-			this(p.latitude, p.longitude, p.elevation, u, v);
-		}
-
-		public PositionWithCoord(Angle latitude, Angle longitude, double elevation, int u, int v)
-		{
-			super(latitude, longitude, elevation);
-			this.u = u;
-			this.v = v;
-		}
-
-		public static PositionWithCoord fromDegrees(double latitude, double longitude, double elevation, int u, int v)
-		{
-			return new PositionWithCoord(Angle.fromDegrees(latitude), Angle.fromDegrees(longitude), elevation, u, v);
-		}
-	}
 }
@@ -15,8 +15,6 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.common.layers.model.gocad;
 
-import gov.nasa.worldwind.geom.Angle;
-import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.geom.Vec4;
 
 import java.awt.Color;
@@ -26,8 +24,6 @@ import java.io.InputStream;
 import java.net.URL;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -35,6 +31,7 @@ import org.gdal.osr.CoordinateTransformation;
 
 import au.gov.ga.worldwind.common.layers.volume.btt.BinaryTriangleTree;
 import au.gov.ga.worldwind.common.render.fastshape.FastShape;
+import au.gov.ga.worldwind.common.render.fastshape.PositionBuffer;
 import au.gov.ga.worldwind.common.util.Validate;
 
 /**
@@ -307,7 +304,8 @@ public class GocadGSurfReader implements GocadReader<FastShape>
 		int uSamples = (1 + (nu - 1) / strideU);
 		int vSamples = (1 + (nv - 1) / strideV);
 
-		List<Position> positions = new ArrayList<Position>(uSamples * vSamples);
+		//store the grid coordinate of each position, so that it can be coloured after mesh simplification
+		PositionBuffer positions = new PositionBuffer(uSamples * vSamples, true);
 		float[] values = new float[uSamples * vSamples];
 		float[] minmax = new float[2];
 
@@ -341,7 +339,7 @@ public class GocadGSurfReader implements GocadReader<FastShape>
 		BinaryTriangleTree btt = new BinaryTriangleTree(positions, uSamples, vSamples);
 		btt.setForceGLTriangles(true); //ensures that the shape's triangles can be sorted when transparent
 		FastShape shape = btt.buildMesh(parameters.getMaxVariance());
-		positions = shape.getPositions();
+		positions = (PositionBuffer) shape.getPositions();
 
 		if (name == null)
 		{
@@ -357,10 +355,9 @@ public class GocadGSurfReader implements GocadReader<FastShape>
 		//create a color buffer containing a color for each point
 		int colorBufferElementSize = 4;
 		FloatBuffer colorBuffer = FloatBuffer.allocate(positions.size() * colorBufferElementSize);
-		for (Position position : positions)
+		for (int p = 0; p < positions.size(); p++)
 		{
-			PositionWithCoord pwv = (PositionWithCoord) position;
-			int u = pwv.u, v = pwv.v;
+			int u = (int) positions.getU(p), v = (int) positions.getV(p);
 			int un = u > 0 ? u - 1 : u, up = u < uSamples - 1 ? u + 1 : u, vn = v > 0 ? v - 1 : v, vp =
 					v < vSamples - 1 ? v + 1 : v;
 			v *= uSamples;
@@ -398,7 +395,7 @@ public class GocadGSurfReader implements GocadReader<FastShape>
 	}
 
 	protected void readFileIntoFloatArray(URL context, String file, int offset, String etype, int esize,
-			Double noDataValue, List<Position> positions, float[] values, float[] minmax, int nu, int nv, int uSamples,
+			Double noDataValue, PositionBuffer positions, float[] values, float[] minmax, int nu, int nv, int uSamples,
 			int vSamples, int strideU, int strideV, Vec4 origin, Vec4 axisUStride, Vec4 axisVStride,
 			boolean bilinearMinification) throws IOException
 	{
@@ -482,12 +479,11 @@ public class GocadGSurfReader implements GocadReader<FastShape>
 						if (transformation != null)
 						{
 							transformation.TransformPoint(transformed, p.x, p.y, zPositive ? p.z : -p.z);
-							positions.add(PositionWithCoord.fromDegrees(transformed[1], transformed[0], transformed[2],
-									ui, vi));
+							positions.add(transformed[1], transformed[0], transformed[2], ui, vi);
 						}
 						else
 						{
-							positions.add(PositionWithCoord.fromDegrees(p.y, p.x, zPositive ? p.z : -p.z, ui, vi));
+							positions.add(p.y, p.x, zPositive ? p.z : -p.z, ui, vi);
 						}
 					}
 				}
@@ -531,12 +527,11 @@ public class GocadGSurfReader implements GocadReader<FastShape>
 						if (transformation != null)
 						{
 							transformation.TransformPoint(transformed, p.x, p.y, zPositive ? p.z : -p.z);
-							positions.add(PositionWithCoord.fromDegrees(transformed[1], transformed[0], transformed[2],
-									ui, vi));
+							positions.add(transformed[1], transformed[0], transformed[2], ui, vi);
 						}
 						else
 						{
-							positions.add(PositionWithCoord.fromDegrees(p.y, p.x, zPositive ? p.z : -p.z, ui, vi));
+							positions.add(p.y, p.x, zPositive ? p.z : -p.z, ui, vi);
 						}
 					}
 
@@ -548,24 +543,6 @@ public class GocadGSurfReader implements GocadReader<FastShape>
 		}
 	}
 
-	protected static class PositionWithCoord extends Position
-	{
-		public final int u;
-		public final int v;
-
-		public PositionWithCoord(Angle latitude, Angle longitude, double elevation, int u, int v)
-		{
-			super(latitude, longitude, elevation);
-			this.u = u;
-			this.v = v;
-		}
-
-		public static PositionWithCoord fromDegrees(double latitude, double longitude, double elevation, int u, int v)
-		{
-			return new PositionWithCoord(Angle.fromDegrees(latitude), Angle.fromDegrees(longitude), elevation, u, v);
-		}
-	}
-	
 	public static void skipBytes(InputStream is, long n) throws IOException
 	{
 		while (n > 0)
@@ -15,8 +15,6 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.common.layers.model.gocad;
 
-import gov.nasa.worldwind.geom.Position;
-
 import java.awt.Color;
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
@@ -25,17 +23,15 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.nio.FloatBuffer;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.gdal.osr.CoordinateTransformation;
 
-import au.gov.ga.worldwind.common.layers.model.gocad.GocadGSurfReader.PositionWithCoord;
 import au.gov.ga.worldwind.common.layers.volume.VolumeLayer;
 import au.gov.ga.worldwind.common.layers.volume.btt.BinaryTriangleTree;
 import au.gov.ga.worldwind.common.render.fastshape.FastShape;
+import au.gov.ga.worldwind.common.render.fastshape.PositionBuffer;
 import au.gov.ga.worldwind.common.util.Validate;
 
 /**
@@ -159,7 +155,8 @@ public class GocadSGridReader implements GocadReader<FastShape>
 		Validate.isTrue(xSize > 0 && ySize > 0 && zSize > 0, "Volume dimensions are 0");
 		Validate.isTrue(zSize == 1, "Unsupported AXIS_N z-value: " + zSize + ", only 1 is supported");
 
-		List<Position> positions = new ArrayList<Position>(xSize * ySize);
+		//store the grid coordinate of each position, so that it can be coloured after mesh simplification
+		PositionBuffer positions = new PositionBuffer(xSize * ySize, true);
 		float[] values = new float[xSize * ySize];
 		float minValue = Float.MAX_VALUE;
 		float maxValue = -Float.MAX_VALUE;
@@ -224,9 +221,7 @@ public class GocadSGridReader implements GocadReader<FastShape>
 					//only store the first width*height positions (the rest are evenly spaced at different depths)
 					if (positionIndex < xSize * ySize)
 					{
-						Position position =
-								PositionWithCoord.fromDegrees(y, x, z, positionIndex % xSize, positionIndex / xSize);
-						positions.add(position);
+						positions.add(y, x, z, positionIndex % xSize, positionIndex / xSize);
 					}
 
 					if (positionIndex == 0)
@@ -263,15 +258,15 @@ public class GocadSGridReader implements GocadReader<FastShape>
 			if (reverseX || reverseY)
 			{
 				//if the x-axis or y-axis are reversed, mirror them
-				List<Position> oldPositions = positions;
-				positions = new ArrayList<Position>(oldPositions.size());
+				PositionBuffer oldPositions = positions;
+				positions = new PositionBuffer(oldPositions.size(), true);
 				for (int y = 0; y < ySize; y++)
 				{
 					int ry = reverseY ? ySize - y - 1 : y;
 					for (int x = 0; x < xSize; x++)
 					{
 						int rx = reverseX ? xSize - x - 1 : x;
-						positions.add(oldPositions.get(rx + ry * xSize));
+						positions.add(oldPositions, rx + ry * xSize);
 					}
 				}
 			}
@@ -298,7 +293,7 @@ public class GocadSGridReader implements GocadReader<FastShape>
 		BinaryTriangleTree btt = new BinaryTriangleTree(positions, xSize, ySize);
 		btt.setForceGLTriangles(true); //ensures that the shape's triangles can be sorted when transparent
 		FastShape shape = btt.buildMesh(parameters.getMaxVariance());
-		positions = shape.getPositions();
+		positions = (PositionBuffer) shape.getPositions();
 
 		if (name == null)
 		{
@@ -314,10 +309,9 @@ public class GocadSGridReader implements GocadReader<FastShape>
 		//create a color buffer containing a color for each point
 		int colorBufferElementSize = 4;
 		FloatBuffer colorBuffer = FloatBuffer.allocate(positions.size() * colorBufferElementSize);
-		for (Position position : positions)
+		for (int p = 0; p < positions.size(); p++)
 		{
-			PositionWithCoord pwv = (PositionWithCoord) position;
-			int u = pwv.u, v = pwv.v;
+			int u = (int) positions.getU(p), v = (int) positions.getV(p);
 			int un = u > 0 ? u - 1 : u, up = u < xSize - 1 ? u + 1 : u, vn = v > 0 ? v - 1 : v, vp =
 					v < ySize - 1 ? v + 1 : v;
 			v *= xSize;
@@ -15,8 +15,6 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.common.layers.model.gocad;
 
-import gov.nasa.worldwind.geom.Position;
-
 import java.awt.Color;
 import java.net.URL;
 import java.nio.FloatBuffer;
@@ -32,6 +30,7 @@ import java.util.regex.Pattern;
 import javax.media.opengl.GL2;
 
 import au.gov.ga.worldwind.common.render.fastshape.FastShape;
+import au.gov.ga.worldwind.common.render.fastshape.PositionBuffer;
 import au.gov.ga.worldwind.common.util.ColorMap;
 
 /**
@@ -46,7 +45,7 @@ public class GocadTSurfReader implements GocadReader<FastShape>
 	private final static Pattern trianglePattern = Pattern.compile("TRGL\\s+(\\d+)\\s+(\\d+)\\s+(\\d+).*");
 
 	private GocadReaderParameters parameters;
-	private List<Position> positions;
+	private PositionBuffer positions;
 	private List<Float> values;
 	private float min, max;
 	private List<Integer> triangleIds;
@@ -63,7 +62,7 @@ public class GocadTSurfReader implements GocadReader<FastShape>
 	public void begin(GocadReaderParameters parameters)
 	{
 		this.parameters = parameters;
-		positions = new ArrayList<Position>();
+		positions = new PositionBuffer();
 		values = new ArrayList<Float>();
 		min = Float.MAX_VALUE;
 		max = -Float.MAX_VALUE;
@@ -98,9 +97,8 @@ public class GocadTSurfReader implements GocadReader<FastShape>
 				y = transformed[1];
 				z = transformed[2];
 			}
-			Position position = Position.fromDegrees(y, x, z);
 			vertexIdMap.put(id, positions.size());
-			positions.add(position);
+			positions.add(y, x, z);
 
 			float value = Float.NaN;
 			if (paintedVariableId <= 0)
@@ -140,14 +138,14 @@ public class GocadTSurfReader implements GocadReader<FastShape>
 				throw new IllegalArgumentException("Unknown vertex id: " + id2);
 			}
 
-			Position position = positions.get(vertexIdMap.get(id2));
+			int index = vertexIdMap.get(id2);
 			vertexIdMap.put(id1, positions.size());
-			positions.add(position);
+			positions.add(positions, index);
 
 			float value = Float.NaN;
 			if (paintedVariableId <= 0)
 			{
-				value = (float) position.elevation;
+				value = (float) positions.getElevation(index);
 			}
 			else
 			{
@@ -273,6 +271,7 @@ public class GocadTSurfReader implements GocadReader<FastShape>
 			name = "TSurf";
 		}
 
+		positions.trimToSize();
 		FastShape shape = new FastShape(positions, indicesBuffer.array(), GL2.GL_TRIANGLES);
 		shape.setName(name);
 		shape.setLighted(true);
@@ -23,13 +23,12 @@ import java.io.BufferedInputStream;
 import java.io.InputStream;
 import java.net.URL;
 import java.nio.FloatBuffer;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.regex.Matcher;
 
 import javax.media.opengl.GL2;
 
 import au.gov.ga.worldwind.common.render.fastshape.FastShape;
+import au.gov.ga.worldwind.common.render.fastshape.PositionBuffer;
 import au.gov.ga.worldwind.common.util.HSLColor;
 import au.gov.ga.worldwind.common.util.Validate;
 import au.gov.ga.worldwind.common.util.io.FloatReader;
@@ -209,7 +208,7 @@ public class GocadVoxetReader implements GocadReader<FastShape>
 		long[] axisN = calculateAxisN();
 		int[] samples = calculateSamples(strides, axisN);
 
-		List<Position> positions = new ArrayList<Position>();
+		PositionBuffer positions = new PositionBuffer();
 		float[] values = createValuesArray(samples);
 
 		double[] transformed = new double[3];
@@ -337,6 +336,7 @@ public class GocadVoxetReader implements GocadReader<FastShape>
 			name = "Voxet";
 		}
 
+		positions.trimToSize();
 		FastShape shape = new FastShape(positions, GL2.GL_POINTS);
 		shape.setName(name);
 		shape.setColorBuffer(colorBuffer.array());
@@ -33,6 +33,7 @@ import au.gov.ga.worldwind.common.layers.point.types.IconPointLayer;
 import au.gov.ga.worldwind.common.layers.point.types.MarkerPointLayer;
 import au.gov.ga.worldwind.common.layers.styled.StyleAndAttributeFactory;
 import au.gov.ga.worldwind.common.util.AVKeyMore;
+import au.gov.ga.worldwind.common.util.XMLUtil;
 
 /**
  * Helper class for the creation of {@link PointLayer}s. Contains XML parsing
@@ -56,7 +57,7 @@ public class PointLayerFactory
 
 		PointLayer layer;
 
-		String type = WWXML.getText(domElement, "PointType");
+		String type = XMLUtil.getText(domElement, "PointType");
 		if ("Marker".equalsIgnoreCase(type))
 		{
 			layer = new MarkerPointLayer(helper);
@@ -87,7 +88,7 @@ public class PointLayerFactory
 		if (params == null)
 			params = new AVListImpl();
 
-		XPath xpath = WWXML.makeXPath();
+		XPath xpath = XMLUtil.makeXPath();
 
 		WWXML.checkAndSetStringParam(domElement, params, AVKey.URL, "URL", xpath);
 		WWXML.checkAndSetLongParam(domElement, params, AVKey.EXPIRY_TIME, "ExpiryTime", xpath);
@@ -18,7 +18,6 @@ package au.gov.ga.worldwind.common.layers.screenoverlay;
 import static gov.nasa.worldwind.layers.AbstractLayer.getLayerConfigParams;
 import gov.nasa.worldwind.avlist.AVList;
 import gov.nasa.worldwind.avlist.AVListImpl;
-import gov.nasa.worldwind.util.WWXML;
 
 import javax.xml.xpath.XPath;
 
@@ -72,7 +71,7 @@ public class ScreenOverlayLayerFactory
 			params = new AVListImpl();
 		}
 
-		XPath xpath = WWXML.makeXPath();
+		XPath xpath = XMLUtil.makeXPath();
 
 		XMLUtil.checkAndSetStringParam(domElement, params, ScreenOverlayKeys.URL, "URL", xpath);
 		XMLUtil.checkAndSetStringParam(domElement, params, ScreenOverlayKeys.OVERLAY_CONTENT, "Content", xpath);
@@ -41,6 +41,7 @@ import javax.xml.xpath.XPath;
 import org.w3c.dom.Element;
 
 import au.gov.ga.worldwind.common.util.AVKeyMore;
+import au.gov.ga.worldwind.common.util.XMLUtil;
 
 /**
  * Layer factory which creates a {@link Layer} from an AVList or XML element.
@@ -140,7 +141,7 @@ public class ShapefileLayerFactory
 			params = new AVListImpl();
 		}
 
-		XPath xpath = WWXML.makeXPath();
+		XPath xpath = XMLUtil.makeXPath();
 
 		AbstractLayer.getLayerConfigParams(domElement, params);
 		getAttributeParams(domElement, params);
@@ -239,7 +240,7 @@ public class ShapefileLayerFactory
 			params = new AVListImpl();
 		}
 
-		XPath xpath = WWXML.makeXPath();
+		XPath xpath = XMLUtil.makeXPath();
 
 		WWXML.checkAndSetBooleanParam(domElement, params, ShapeAttributeKey.DRAW_INTERIOR, "DrawInterior", xpath);
 		WWXML.checkAndSetBooleanParam(domElement, params, ShapeAttributeKey.DRAW_OUTLINE, "DrawOutline", xpath);
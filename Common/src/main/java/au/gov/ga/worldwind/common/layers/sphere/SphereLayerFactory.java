@@ -18,7 +18,6 @@ package au.gov.ga.worldwind.common.layers.sphere;
 import gov.nasa.worldwind.avlist.AVList;
 import gov.nasa.worldwind.avlist.AVListImpl;
 import gov.nasa.worldwind.layers.AbstractLayer;
-import gov.nasa.worldwind.util.WWXML;
 
 import javax.xml.xpath.XPath;
 
@@ -59,7 +58,7 @@ public class SphereLayerFactory
 			params = new AVListImpl();
 		}
 
-		XPath xpath = WWXML.makeXPath();
+		XPath xpath = XMLUtil.makeXPath();
 		
 		XMLUtil.checkAndSetDoubleParam(domElement, params, AVKeyMore.SPHERE_RADIUS, "Radius", xpath);
 		XMLUtil.checkAndSetIntegerParam(domElement, params, AVKeyMore.SPHERE_SLICES, "Slices", xpath);
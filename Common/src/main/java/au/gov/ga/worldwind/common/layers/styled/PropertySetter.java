@@ -30,16 +30,25 @@ import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Generalised property setter. Defines a collection of properties that are set
  * on an object using reflection.
+ * <p/>
+ * The first time the properties are set on a particular combination of object
+ * classes, each property is bound to its setter method, and any values that
+ * don't contain attribute placeholders are converted up front. Subsequent calls
+ * for the same classes only convert the attribute-substituted values before
+ * invoking the setters.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -48,6 +57,10 @@ public class PropertySetter
 	protected final Map<String, String> properties = new HashMap<String, String>();
 	protected final Map<String, String[]> typeOverrides = new HashMap<String, String[]>();
 
+	private static final Pattern ATTRIBUTE_PATTERN = Pattern.compile("%[^%]+%");
+	private final ConcurrentMap<BindingKey, BoundProperty[]> bindings =
+			new ConcurrentHashMap<BindingKey, BoundProperty[]>();
+
 	/**
 	 * Add a property that this setter will set.
 	 * 
@@ -66,6 +79,7 @@ public class PropertySetter
 		{
 			this.typeOverrides.put(property, typeOverrides);
 		}
+		bindings.clear();
 	}
 
 	/**
@@ -101,20 +115,51 @@ public class PropertySetter
 	 *            reflection
 	 */
 	public void setPropertiesFromAttributes(URL context, AVList attributeValues, Object... objects)
+	{
+		for (BoundProperty property : getBoundProperties(objects))
+		{
+			property.set(context, attributeValues, objects);
+		}
+	}
+
+	/**
+	 * Get this setter's properties bound to the setter methods of the given
+	 * objects' classes, binding them if this combination of classes hasn't
+	 * been seen before.
+	 */
+	private BoundProperty[] getBoundProperties(Object[] objects)
+	{
+		BindingKey key = new BindingKey(objects);
+		BoundProperty[] bound = bindings.get(key);
+		if (bound == null)
+		{
+			bound = bind(objects);
+			bindings.put(key, bound);
+		}
+		return bound;
+	}
+
+	/**
+	 * Search for the setter method for each of the properties in this setter,
+	 * and convert any property values that don't depend on attribute values.
+	 */
+	private BoundProperty[] bind(Object[] objects)
 	{
 		Map<String, Method> methods = new HashMap<String, Method>();
-		Map<Method, Object> methodToObject = new HashMap<Method, Object>();
+		Map<String, Integer> methodToObject = new HashMap<String, Integer>();
 
 		//create a list of the methods in the objects
-		for (Object object : objects)
+		for (int i = 0; i < objects.length; i++)
 		{
-			for (Method method : object.getClass().getMethods())
+			for (Method method : objects[i].getClass().getMethods())
 			{
 				methods.put(method.getName(), method);
-				methodToObject.put(method, object);
+				methodToObject.put(method.getName(), i);
 			}
 		}
 
+		List<BoundProperty> bound = new ArrayList<BoundProperty>(properties.size());
+
 		//for each of the properties in this setter
 		for (Entry<String, String> entry : properties.entrySet())
 		{
@@ -136,80 +181,113 @@ public class PropertySetter
 
 			//find out the method's parameters
 			Method setter = methods.get(methodName);
-			Object object = methodToObject.get(setter);
+			int objectIndex = methodToObject.get(methodName);
+			Class<?> objectClass = objects[objectIndex].getClass();
 			Class<?>[] parameters = setter.getParameterTypes();
 
-			//get the string value to pass to the method
-			String stringValue = entry.getValue();
-			stringValue = replaceVariablesWithAttributeValues(stringValue, attributeValues);
-
-			String[] paramValueStrings = splitPipeSeparatedString(stringValue);
-
-			if (parameters.length != paramValueStrings.length)
+			String value = entry.getValue();
+			String[] template = parseTemplate(value);
+			String[] paramValueStrings = null;
+			if (template == null)
 			{
-				String message =
-						"Setter method '" + methodName + "' in class " + object.getClass() + " doesn't take "
-								+ paramValueStrings.length + " parameter(s)";
-				Logging.logger().severe(message);
-				// Continue on incase this is an overloaded method
-				continue;
+				//value doesn't depend on the attributes, so it can be checked now
+				paramValueStrings = splitPipeSeparatedString(value);
+				if (!checkParameterCount(methodName, objectClass, parameters, paramValueStrings))
+				{
+					// Continue on incase this is an overloaded method
+					continue;
+				}
 			}
 
-			Object[] parameterValues = new Object[paramValueStrings.length];
-			String[] typeOverrides = getTypeOverridesForProperty(property, parameterValues.length);
-
-			// Convert each parameter value string into a parameter
-			for (int i = 0; i < paramValueStrings.length; i++)
+			Class<?>[] types = getParameterTypes(property, methodName, objectClass, parameters);
+			Object[] constants = null;
+			if (paramValueStrings != null)
 			{
-				//find out the type to pass to the method
-				Class<?> parameterType = parameters[i];
-				Class<?> type = parameterType;
-
-				//check if the type has been overridden (useful if the type above is just 'Object')
-				String typeOverride = typeOverrides[i];
-				if (!isBlank(typeOverride))
+				constants = new Object[types.length];
+				for (int i = 0; i < types.length; i++)
 				{
-					type = convertTypeToClass(typeOverride);
-					if (type == null)
-					{
-						String message = "Could not find class for type " + type;
-						Logging.logger().severe(message);
-						throw new IllegalArgumentException(message);
-					}
-					else if (!parameterType.isAssignableFrom(type))
+					//URLs are relative to the context, which can change between calls
+					if (!types[i].isAssignableFrom(URL.class))
 					{
-						String message =
-								"Setter method '" + methodName + "' in class " + object.getClass() + " parameter type "
-										+ parameterType + " not assignable from type " + type;
-						Logging.logger().severe(message);
-						throw new IllegalArgumentException(message);
+						constants[i] = convertParameter(null, paramValueStrings[i], types[i]);
 					}
 				}
+			}
+
+			bound.add(new BoundProperty(setter, objectIndex, types, value, template, paramValueStrings, constants));
+		}
+
+		return bound.toArray(new BoundProperty[bound.size()]);
+	}
 
-				//convert the string value to a valid type
-				Object value = convertStringToType(context, paramValueStrings[i], type);
-				if (value == null)
+	/**
+	 * Find out the types to convert each of the setter's parameter values to,
+	 * taking into account this property's type overrides.
+	 */
+	private Class<?>[] getParameterTypes(String property, String methodName, Class<?> objectClass,
+			Class<?>[] parameters)
+	{
+		Class<?>[] types = new Class<?>[parameters.length];
+		String[] typeOverrides = getTypeOverridesForProperty(property, parameters.length);
+		for (int i = 0; i < parameters.length; i++)
+		{
+			//find out the type to pass to the method
+			Class<?> parameterType = parameters[i];
+			Class<?> type = parameterType;
+
+			//check if the type has been overridden (useful if the type above is just 'Object')
+			String typeOverride = typeOverrides[i];
+			if (!isBlank(typeOverride))
+			{
+				type = convertTypeToClass(typeOverride);
+				if (type == null)
 				{
-					String message = "Error converting '" + paramValueStrings[i] + "' to type " + type;
+					String message = "Could not find class for type " + typeOverride;
+					Logging.logger().severe(message);
+					throw new IllegalArgumentException(message);
+				}
+				else if (!parameterType.isAssignableFrom(type))
+				{
+					String message =
+							"Setter method '" + methodName + "' in class " + objectClass + " parameter type "
+									+ parameterType + " not assignable from type " + type;
 					Logging.logger().severe(message);
 					throw new IllegalArgumentException(message);
 				}
-
-				parameterValues[i] = value;
 			}
+			types[i] = type;
+		}
+		return types;
+	}
 
-			//invoke the setter with the value
-			try
-			{
-				setter.invoke(object, parameterValues);
-			}
-			catch (Exception e)
-			{
-				String message = "Error invoking '" + methodName + "' in class " + object.getClass() + ": " + e;
-				Logging.logger().severe(message);
-				throw new IllegalArgumentException(message, e);
-			}
+	private static boolean checkParameterCount(String methodName, Class<?> objectClass, Class<?>[] parameters,
+			String[] paramValueStrings)
+	{
+		if (parameters.length != paramValueStrings.length)
+		{
+			String message =
+					"Setter method '" + methodName + "' in class " + objectClass + " doesn't take "
+							+ paramValueStrings.length + " parameter(s)";
+			Logging.logger().severe(message);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Convert a parameter value string to the given type, throwing an
+	 * exception if the conversion fails.
+	 */
+	private static Object convertParameter(URL context, String string, Class<?> type)
+	{
+		Object value = convertStringToType(context, string, type);
+		if (value == null)
+		{
+			String message = "Error converting '" + string + "' to type " + type;
+			Logging.logger().severe(message);
+			throw new IllegalArgumentException(message);
 		}
+		return value;
 	}
 
 	/**
@@ -270,34 +348,73 @@ public class PropertySetter
 		if (attributesValues == null)
 			return string;
 
-		Pattern pattern = Pattern.compile("%[^%]+%");
-		Matcher matcher = pattern.matcher(string);
-		StringBuffer replacement = new StringBuffer();
+		String[] template = parseTemplate(string);
+		if (template == null)
+			return string;
+
+		return replaceVariablesWithAttributeValues(template, attributesValues);
+	}
+
+	/**
+	 * Split a string containing attribute placeholders into a template array.
+	 * Even elements of the array are literal strings, and odd elements are the
+	 * names of the attributes to substitute between them.
+	 * 
+	 * @param string
+	 *            String to parse
+	 * @return Template array, or null if the string contains no placeholders
+	 */
+	private static String[] parseTemplate(String string)
+	{
+		Matcher matcher = ATTRIBUTE_PATTERN.matcher(string);
+		List<String> template = null;
 		int start = 0;
 		while (matcher.find(start))
 		{
-			replacement.append(string.substring(start, matcher.start()));
-
-			String attribute = matcher.group();
-			attribute = attribute.substring(1, attribute.length() - 1);
-
-			if (!attributesValues.hasKey(attribute))
+			if (template == null)
 			{
-				String message = "Could not find attribute '" + attribute + "'";
-				Logging.logger().severe(message);
-				throw new IllegalArgumentException(message);
+				template = new ArrayList<String>();
 			}
-
-			String value = attributesValues.getValue(attribute).toString();
-			replacement.append(value);
-
+			template.add(string.substring(start, matcher.start()));
+			template.add(string.substring(matcher.start() + 1, matcher.end() - 1));
 			start = matcher.end();
 		}
+		if (template == null)
+		{
+			return null;
+		}
+		template.add(string.substring(start));
+		return template.toArray(new String[template.size()]);
+	}
 
-		replacement.append(string.substring(start));
+	private static String replaceVariablesWithAttributeValues(String[] template, AVList attributesValues)
+	{
+		StringBuilder replacement = new StringBuilder();
+		for (int i = 0; i < template.length; i++)
+		{
+			if (i % 2 == 0)
+			{
+				replacement.append(template[i]);
+			}
+			else
+			{
+				replacement.append(getAttributeValue(template[i], attributesValues));
+			}
+		}
 		return replacement.toString();
 	}
 
+	private static Object getAttributeValue(String attribute, AVList attributesValues)
+	{
+		if (!attributesValues.hasKey(attribute))
+		{
+			String message = "Could not find attribute '" + attribute + "'";
+			Logging.logger().severe(message);
+			throw new IllegalArgumentException(message);
+		}
+		return attributesValues.getValue(attribute);
+	}
+
 	/**
 	 * Convert a type string to a class
 	 * 
@@ -488,4 +605,194 @@ public class PropertySetter
 		}
 		return is;
 	}
+
+	/**
+	 * Copy values of mutable types, so that pre-converted constants aren't
+	 * shared between the objects they are set on.
+	 */
+	private static Object copyIfMutable(Object value)
+	{
+		if (value instanceof Point)
+			return new Point((Point) value);
+		if (value instanceof Dimension)
+			return new Dimension((Dimension) value);
+		if (value instanceof Insets)
+			return ((Insets) value).clone();
+		return value;
+	}
+
+	private static Class<?> wrap(Class<?> type)
+	{
+		if (!type.isPrimitive())
+			return type;
+		if (type == int.class)
+			return Integer.class;
+		if (type == double.class)
+			return Double.class;
+		if (type == float.class)
+			return Float.class;
+		if (type == long.class)
+			return Long.class;
+		if (type == boolean.class)
+			return Boolean.class;
+		if (type == char.class)
+			return Character.class;
+		if (type == byte.class)
+			return Byte.class;
+		return type;
+	}
+
+	/**
+	 * A property bound to the setter method of one of the objects passed to
+	 * {@link PropertySetter#setPropertiesFromAttributes(URL, AVList, Object...)}.
+	 */
+	private static class BoundProperty
+	{
+		private final Method setter;
+		private final int objectIndex;
+		private final Class<?>[] types;
+		private final String value;
+		private final String[] template;
+		private final String[] paramValueStrings;
+		private final Object[] constants;
+		private final boolean copyConstants;
+		private final boolean singleAttribute;
+
+		public BoundProperty(Method setter, int objectIndex, Class<?>[] types, String value, String[] template,
+				String[] paramValueStrings, Object[] constants)
+		{
+			this.setter = setter;
+			this.objectIndex = objectIndex;
+			this.types = types;
+			this.value = value;
+			this.template = template;
+			this.paramValueStrings = paramValueStrings;
+			this.constants = constants;
+
+			boolean copy = false;
+			if (constants != null)
+			{
+				for (Object constant : constants)
+				{
+					copy |= constant == null || copyIfMutable(constant) != constant;
+				}
+			}
+			this.copyConstants = copy;
+
+			//a value that is just a placeholder may not need converting at all (except for parameters that accept a
+			//String, which are always passed the attribute converted to a trimmed String)
+			this.singleAttribute =
+					template != null && template.length == 3 && template[0].length() == 0
+							&& template[2].length() == 0 && types.length == 1
+							&& !types[0].isAssignableFrom(String.class);
+		}
+
+		public void set(URL context, AVList attributeValues, Object[] objects)
+		{
+			Object object = objects[objectIndex];
+			Object[] parameterValues = getParameterValues(context, attributeValues, object);
+			if (parameterValues == null)
+			{
+				return;
+			}
+
+			//invoke the setter with the value
+			try
+			{
+				setter.invoke(object, parameterValues);
+			}
+			catch (Exception e)
+			{
+				String message =
+						"Error invoking '" + setter.getName() + "' in class " + object.getClass() + ": " + e;
+				Logging.logger().severe(message);
+				throw new IllegalArgumentException(message, e);
+			}
+		}
+
+		private Object[] getParameterValues(URL context, AVList attributeValues, Object object)
+		{
+			if (constants != null)
+			{
+				if (!copyConstants)
+				{
+					return constants;
+				}
+				Object[] parameterValues = new Object[constants.length];
+				for (int i = 0; i < constants.length; i++)
+				{
+					parameterValues[i] =
+							constants[i] != null ? copyIfMutable(constants[i]) : convertParameter(context,
+									paramValueStrings[i], types[i]);
+				}
+				return parameterValues;
+			}
+
+			if (attributeValues == null)
+			{
+				//placeholders are left as is if there are no attributes
+				return convert(context, value, object);
+			}
+
+			if (singleAttribute)
+			{
+				Object attributeValue = getAttributeValue(template[1], attributeValues);
+				if (wrap(types[0]).isInstance(attributeValue))
+				{
+					return new Object[] { attributeValue };
+				}
+			}
+
+			return convert(context, replaceVariablesWithAttributeValues(template, attributeValues), object);
+		}
+
+		private Object[] convert(URL context, String stringValue, Object object)
+		{
+			String[] paramValueStrings = splitPipeSeparatedString(stringValue);
+			if (!checkParameterCount(setter.getName(), object.getClass(), types, paramValueStrings))
+			{
+				return null;
+			}
+
+			// Convert each parameter value string into a parameter
+			Object[] parameterValues = new Object[paramValueStrings.length];
+			for (int i = 0; i < paramValueStrings.length; i++)
+			{
+				parameterValues[i] = convertParameter(context, paramValueStrings[i], types[i]);
+			}
+			return parameterValues;
+		}
+	}
+
+	/**
+	 * Key for the bound properties, identifying the classes of the objects the
+	 * properties are being set on.
+	 */
+	private static class BindingKey
+	{
+		private final Class<?>[] classes;
+		private final int hash;
+
+		public BindingKey(Object[] objects)
+		{
+			classes = new Class<?>[objects.length];
+			for (int i = 0; i < objects.length; i++)
+			{
+				classes[i] = objects[i].getClass();
+			}
+			hash = Arrays.hashCode(classes);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			return obj instanceof BindingKey && Arrays.equals(classes, ((BindingKey) obj).classes);
+		}
+	}
 }
@@ -19,12 +19,16 @@ import gov.nasa.worldwind.cache.GpuResourceCache;
 import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.Sector;
 import gov.nasa.worldwind.layers.TextureTile;
+import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.util.Level;
 import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.TileKey;
 
 import au.gov.ga.worldwind.common.layers.delegate.IDelegatorTile;
 import au.gov.ga.worldwind.common.layers.delegate.ITileFactoryDelegate;
+import au.gov.ga.worldwind.common.profiling.Profiler;
+import au.gov.ga.worldwind.common.profiling.ProfilerCounter;
+import au.gov.ga.worldwind.common.profiling.ProfilerTimer;
 
 import com.jogamp.opengl.util.texture.Texture;
 
@@ -36,6 +40,9 @@ import com.jogamp.opengl.util.texture.Texture;
  */
 public class DelegatorTextureTile extends TextureTile implements IDelegatorTile
 {
+	private static final ProfilerTimer uploadTimer = Profiler.INSTANCE.getTimer(Profiler.TEXTURE_UPLOAD);
+	private static final ProfilerCounter uploadCounter = Profiler.INSTANCE.getCounter(Profiler.TEXTURE_UPLOADS);
+
 	protected final ITileFactoryDelegate<DelegatorTextureTile, Sector, Level> delegate;
 	protected TileKey transformedTileKey;
 
@@ -90,6 +97,31 @@ public class DelegatorTextureTile extends TextureTile implements IDelegatorTile
 		return transformedTileKey;
 	}
 
+	@Override
+	protected Texture initializeTexture(DrawContext dc)
+	{
+		if (!Profiler.INSTANCE.isEnabled() || getTexture(dc.getTextureCache()) != null)
+		{
+			return super.initializeTexture(dc);
+		}
+
+		//the texture isn't in the cache, so the texture data will be uploaded
+		long start = uploadTimer.start();
+		try
+		{
+			Texture texture = super.initializeTexture(dc);
+			if (texture != null)
+			{
+				uploadCounter.increment();
+			}
+			return texture;
+		}
+		finally
+		{
+			uploadTimer.stop(start);
+		}
+	}
+
 	/* ************************************************************************************
 	 * Below here is copied from TextureTile, with some modifications to use the delegate *
 	 ************************************************************************************ */
@@ -146,7 +146,7 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 		ImageDelegateKit delegateKit = new ImageDelegateKit().createFromXML(domElement, params);
 		params.setValue(AVKeyMore.DELEGATE_KIT, delegateKit);
 
-		XPath xpath = WWXML.makeXPath();
+		XPath xpath = XMLUtil.makeXPath();
 		WWXML.checkAndSetBooleanParam(domElement, params, AVKeyMore.EXTRACT_ZIP_ENTRY, "ExtractZipEntry", xpath);
 
 		return params;
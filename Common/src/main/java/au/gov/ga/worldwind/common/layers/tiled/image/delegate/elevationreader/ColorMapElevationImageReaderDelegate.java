@@ -78,6 +78,8 @@ public class ColorMapElevationImageReaderDelegate extends ElevationImageReaderDe
 	private final static String DEFINITION_STRING = "ColorMapReader";
 
 	private final ColorMap colorMap;
+	private int[] colorLookup;
+	private int colorLookupMinimum;
 
 	@SuppressWarnings("unused")
 	private ColorMapElevationImageReaderDelegate()
@@ -127,25 +129,39 @@ public class ColorMapElevationImageReaderDelegate extends ElevationImageReaderDe
 	@Override
 	protected BufferedImage generateImage(BufferWrapper elevations, int width, int height, Globe globe, Sector sector)
 	{
+		float[] grid = getGridBuffer(width * height);
+		copyElevations(elevations, width, height, grid, width);
+
 		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		int[] lookup = getColorLookup();
+		ElevationKernels.colorRamp(grid, width, height, missingDataSignal, colorMap, lookup, colorLookupMinimum,
+				getPixels(image));
+		return image;
+	}
 
-		for (int y = 0, i = 0; y < height; y++)
+	/**
+	 * @return The colour of every possible elevation for 8 and 16 bit integer
+	 *         tiles (calculated the first time this is called), or null for
+	 *         other pixel types
+	 */
+	protected synchronized int[] getColorLookup()
+	{
+		if (colorLookup == null)
 		{
-			for (int x = 0; x < width; x++, i++)
+			if (AVKey.INT16.equals(pixelType))
 			{
-				double elevation = elevations.getDouble(i);
-				if (elevation == missingDataSignal)
-				{
-					image.setRGB(x, y, 0);
-				}
-				else
-				{
-					int rgba = colorMap.calculateColor(elevation).getRGB();
-					image.setRGB(x, y, rgba);
-				}
+				colorLookupMinimum = Short.MIN_VALUE;
+				colorLookup =
+						ElevationKernels.createColorLookup(colorMap, Short.MIN_VALUE, Short.MAX_VALUE,
+								missingDataSignal);
+			}
+			else if (AVKey.INT8.equals(pixelType))
+			{
+				colorLookupMinimum = Byte.MIN_VALUE;
+				colorLookup =
+						ElevationKernels.createColorLookup(colorMap, Byte.MIN_VALUE, Byte.MAX_VALUE, missingDataSignal);
 			}
 		}
-
-		return image;
+		return colorLookup;
 	}
 }
@@ -21,6 +21,7 @@ import gov.nasa.worldwind.util.BufferWrapper;
 import gov.nasa.worldwind.util.Tile;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.IOException;
 import java.net.URL;
 import java.util.zip.ZipEntry;
@@ -33,6 +34,7 @@ import au.gov.ga.worldwind.common.layers.delegate.ITileReaderDelegate;
 import au.gov.ga.worldwind.common.layers.delegate.reader.MaskHelper;
 import au.gov.ga.worldwind.common.layers.delegate.reader.MaskHelper.MaskInsideZipDelegate;
 import au.gov.ga.worldwind.common.util.IOUtil;
+import au.gov.ga.worldwind.common.util.URLUtil;
 
 /**
  * Abstract class that acts as a super class of all {@link ITileReaderDelegate}s
@@ -50,6 +52,8 @@ public abstract class ElevationImageReaderDelegate implements ITileReaderDelegat
 
 	protected final boolean checkForMask = true;
 
+	private final static ThreadLocal<float[]> gridBuffers = new ThreadLocal<float[]>();
+
 	public ElevationImageReaderDelegate(String pixelType, String byteOrder, double missingDataSignal)
 	{
 		this.pixelType = pixelType;
@@ -110,8 +114,7 @@ public abstract class ElevationImageReaderDelegate implements ITileReaderDelegat
 				byteBuffer[0] = IOUtil.readByteBuffer(url, pixelType, byteOrder);
 			}
 
-			BufferedImage image =
-					generateImage(byteBuffer[0], tile.getWidth(), tile.getHeight(), globe, tile.getSector());
+			BufferedImage image = generateImage(byteBuffer[0], tile, url, globe);
 			if (mask[0] == null)
 				return image;
 			return MaskHelper.compose(image, mask[0]);
@@ -119,10 +122,68 @@ public abstract class ElevationImageReaderDelegate implements ITileReaderDelegat
 		else
 		{
 			BufferWrapper byteBuffer = IOUtil.readByteBuffer(url, pixelType, byteOrder);
-			return generateImage(byteBuffer, tile.getWidth(), tile.getHeight(), globe, tile.getSector());
+			return generateImage(byteBuffer, tile, url, globe);
 		}
 	}
 
+	/**
+	 * Read the elevation data from the given url. If the url references a zip
+	 * file, the first entry that isn't a mask image is read.
+	 * 
+	 * @param url
+	 *            Elevation tile url
+	 * @return Wrapped elevation data, or null if the zip file contains no
+	 *         elevation data
+	 * @throws IOException
+	 *             If the data could not be read
+	 */
+	protected BufferWrapper readElevations(URL url) throws IOException
+	{
+		if (!URLUtil.isForResourceWithExtension(url, "zip"))
+		{
+			return IOUtil.readByteBuffer(url, pixelType, byteOrder);
+		}
+
+		ZipInputStream zis = new ZipInputStream(url.openStream());
+		try
+		{
+			ZipEntry entry;
+			while ((entry = zis.getNextEntry()) != null)
+			{
+				if (!entry.getName().toLowerCase().endsWith(".png"))
+				{
+					return IOUtil.readByteBuffer(zis, pixelType, byteOrder);
+				}
+			}
+			return null;
+		}
+		finally
+		{
+			zis.close();
+		}
+	}
+
+	/**
+	 * Generate an image for a tile from its elevation data. Calls
+	 * {@link #generateImage(BufferWrapper, int, int, Globe, Sector)};
+	 * subclasses can override this if they require the tile itself (for
+	 * example, to find neighbouring tiles).
+	 * 
+	 * @param elevations
+	 *            Wrapped elevation data
+	 * @param tile
+	 *            Tile the elevation data was read for
+	 * @param url
+	 *            Url the elevation data was read from
+	 * @param globe
+	 *            Current globe
+	 * @return Image generated from the elevation data
+	 */
+	protected BufferedImage generateImage(BufferWrapper elevations, Tile tile, URL url, Globe globe)
+	{
+		return generateImage(elevations, tile.getWidth(), tile.getHeight(), globe, tile.getSector());
+	}
+
 	/**
 	 * Generate an image from elevation data.
 	 * 
@@ -140,4 +201,59 @@ public abstract class ElevationImageReaderDelegate implements ITileReaderDelegat
 	 */
 	protected abstract BufferedImage generateImage(BufferWrapper elevations, int width, int height, Globe globe,
 			Sector sector);
+
+	/**
+	 * Copy wrapped elevation data into a float array.
+	 * 
+	 * @param elevations
+	 *            Wrapped elevation data
+	 * @param width
+	 *            Width of the data tile
+	 * @param height
+	 *            Height of the data tile
+	 * @param grid
+	 *            Array to copy into
+	 * @param stride
+	 *            Distance between the start of each row in the array (at least
+	 *            width)
+	 */
+	protected static void copyElevations(BufferWrapper elevations, int width, int height, float[] grid, int stride)
+	{
+		for (int y = 0, i = 0; y < height; y++)
+		{
+			for (int x = 0, j = y * stride; x < width; x++, i++, j++)
+			{
+				grid[j] = (float) elevations.getDouble(i);
+			}
+		}
+	}
+
+	/**
+	 * Get an array to hold elevations while generating an image. The array is
+	 * reused for each image generated by the calling thread, so it should not
+	 * be retained.
+	 * 
+	 * @param size
+	 *            Minimum size of the array
+	 * @return Array of at least the given size
+	 */
+	protected static float[] getGridBuffer(int size)
+	{
+		float[] buffer = gridBuffers.get();
+		if (buffer == null || buffer.length < size)
+		{
+			buffer = new float[size];
+			gridBuffers.set(buffer);
+		}
+		return buffer;
+	}
+
+	/**
+	 * @return The pixel array backing an image of type
+	 *         {@link BufferedImage#TYPE_INT_ARGB}
+	 */
+	protected static int[] getPixels(BufferedImage image)
+	{
+		return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
 }
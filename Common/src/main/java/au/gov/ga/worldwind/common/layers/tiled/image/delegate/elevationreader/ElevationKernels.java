@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.tiled.image.delegate.elevationreader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import au.gov.ga.worldwind.common.util.ColorMap;
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
+
+/**
+ * Per-pixel kernels used by the {@link ElevationImageReaderDelegate}s to
+ * convert elevation tiles to ARGB rasters. The kernels operate on primitive
+ * arrays, and process large tiles in bands of rows on a shared pool of daemon
+ * threads.
+ * <p/>
+ * Elevations are stored as floats, so the missing data signal is narrowed to
+ * a float before comparing; otherwise a signal such as -9999.9 from 64-bit
+ * data would never match its narrowed copy in the grid.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class ElevationKernels
+{
+	private static final int MIN_PARALLEL_PIXELS = 256 * 256;
+	private static final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+	private static final ExecutorService executor = THREAD_COUNT > 1 ? Executors.newFixedThreadPool(THREAD_COUNT,
+			new DaemonThreadFactory("Elevation kernel")) : null;
+
+	private ElevationKernels()
+	{
+	}
+
+	/**
+	 * Calculate the hillshade of an elevation grid. Each pixel is shaded by
+	 * the dot product of the sun vector and the normal of the triangle formed
+	 * by the pixel, its east neighbour and its south neighbour, with vertices
+	 * at (latitude, longitude, elevation * exaggeration).
+	 * <p/>
+	 * The grid has an apron of one column on the east and one row on the
+	 * south (a total of <code>(width + 1) * (height + 1)</code> values, with a
+	 * row stride of <code>width + 1</code>), so that every pixel in the output
+	 * can be shaded. Rows run from north to south.
+	 * 
+	 * @param grid
+	 *            Elevations, including the apron
+	 * @param width
+	 *            Width of the output
+	 * @param height
+	 *            Height of the output
+	 * @param latitudes
+	 *            Latitude of each grid row (<code>height + 1</code> values)
+	 * @param longitudes
+	 *            Longitude of each grid column (<code>width + 1</code> values)
+	 * @param exaggeration
+	 *            Multiplier applied to the elevations
+	 * @param sun
+	 *            Normalized sun vector (x, y, z)
+	 * @param missingDataSignal
+	 *            Elevation value that represents missing data
+	 * @param minElevation
+	 *            Elevations less than this are treated as missing
+	 * @param maxElevation
+	 *            Elevations greater than this are treated as missing
+	 * @param out
+	 *            ARGB output (<code>width * height</code> values); pixels
+	 *            that can't be shaded are set to 0
+	 */
+	public static void hillshade(final float[] grid, final int width, final int height, final double[] latitudes,
+			final double[] longitudes, final double exaggeration, final double[] sun, final double missingDataSignal,
+			final double minElevation, final double maxElevation, final int[] out)
+	{
+		final int stride = width + 1;
+		final float missing = (float) missingDataSignal;
+		runInRowBands(width, height, new RowBand()
+		{
+			@Override
+			public void run(int startRow, int endRow)
+			{
+				double sunX = sun[0], sunY = sun[1], sunZ = sun[2];
+				for (int y = startRow; y < endRow; y++)
+				{
+					double latitude = latitudes[y];
+					double deltaLatitude = latitude - latitudes[y + 1];
+					int row = y * stride;
+					for (int x = 0, i = y * width; x < width; x++, i++)
+					{
+						double e0 = grid[row + x];
+						double e1 = grid[row + x + 1];
+						double e2 = grid[row + stride + x];
+						if (!isValid(e0, missing, minElevation, maxElevation)
+								|| !isValid(e1, missing, minElevation, maxElevation)
+								|| !isValid(e2, missing, minElevation, maxElevation))
+						{
+							out[i] = 0;
+							continue;
+						}
+
+						//normal = (v1 - v0) x (v0 - v2), where v0 is this vertex, v1 is east and v2 is south
+						double deltaLongitude = longitudes[x + 1] - longitudes[x];
+						double z0 = e0 * exaggeration;
+						double eastZ = e1 * exaggeration - z0;
+						double southZ = z0 - e2 * exaggeration;
+						double nx = deltaLongitude * southZ;
+						double ny = eastZ * deltaLatitude;
+						double nz = -(deltaLongitude * deltaLatitude);
+						double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+						if (length != 0)
+						{
+							nx /= length;
+							ny /= length;
+							nz /= length;
+						}
+
+						double light = Math.max(0d, nx * sunX + ny * sunY + nz * sunZ);
+						int c = (int) (255.0 * light) & 0xff;
+						out[i] = 0xff000000 | c << 16 | c << 8 | c;
+					}
+				}
+			}
+		});
+	}
+
+	private static boolean isValid(double elevation, double missingDataSignal, double minElevation,
+			double maxElevation)
+	{
+		return elevation != missingDataSignal && minElevation <= elevation && elevation <= maxElevation;
+	}
+
+	/**
+	 * Apply a colour map to an elevation grid.
+	 * 
+	 * @param elevations
+	 *            Elevations (<code>width * height</code> values)
+	 * @param width
+	 * @param height
+	 * @param missingDataSignal
+	 *            Elevation value that represents missing data; mapped to 0
+	 * @param colorMap
+	 *            Colour map to apply
+	 * @param lookup
+	 *            Optional precalculated colours for each integer elevation
+	 *            from <code>lookupMinimum</code>, used instead of the colour
+	 *            map when not null (see
+	 *            {@link #createColorLookup(ColorMap, int, int, double)})
+	 * @param lookupMinimum
+	 *            Elevation of the first lookup colour
+	 * @param out
+	 *            ARGB output (<code>width * height</code> values)
+	 */
+	public static void colorRamp(final float[] elevations, final int width, int height,
+			final double missingDataSignal, final ColorMap colorMap, final int[] lookup, final int lookupMinimum,
+			final int[] out)
+	{
+		final float missing = (float) missingDataSignal;
+		runInRowBands(width, height, new RowBand()
+		{
+			@Override
+			public void run(int startRow, int endRow)
+			{
+				//neighbouring pixels often have the same elevation, so remember the last colour calculated
+				float lastElevation = Float.NaN;
+				int lastColor = 0;
+				for (int i = startRow * width, end = endRow * width; i < end; i++)
+				{
+					float elevation = elevations[i];
+					if (elevation == missing)
+					{
+						out[i] = 0;
+					}
+					else if (lookup != null)
+					{
+						out[i] = lookup[(int) elevation - lookupMinimum];
+					}
+					else
+					{
+						if (elevation != lastElevation)
+						{
+							lastElevation = elevation;
+							lastColor = colorMap.calculateColor(elevation).getRGB();
+						}
+						out[i] = lastColor;
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Calculate the colour of every integer elevation in a range, for use with
+	 * {@link #colorRamp(float[], int, int, double, ColorMap, int[], int, int[])}
+	 * .
+	 * 
+	 * @param colorMap
+	 * @param minimum
+	 *            Lowest elevation in the range
+	 * @param maximum
+	 *            Highest elevation in the range
+	 * @param missingDataSignal
+	 *            Elevation value that represents missing data; mapped to 0
+	 * @return ARGB colours for the elevations from minimum to maximum
+	 */
+	public static int[] createColorLookup(ColorMap colorMap, int minimum, int maximum, double missingDataSignal)
+	{
+		int[] lookup = new int[maximum - minimum + 1];
+		for (int i = 0; i < lookup.length; i++)
+		{
+			int elevation = minimum + i;
+			lookup[i] = elevation == missingDataSignal ? 0 : colorMap.calculateColor(elevation).getRGB();
+		}
+		return lookup;
+	}
+
+	/**
+	 * Run the band over all rows. Large rasters are split into one band per
+	 * thread; the first band is run on the calling thread.
+	 */
+	private static void runInRowBands(int width, int height, final RowBand band)
+	{
+		int bands = executor == null || width * height < MIN_PARALLEL_PIXELS ? 1 : Math.min(THREAD_COUNT, height);
+		int rowsPerBand = (height + bands - 1) / Math.max(1, bands);
+		if (bands <= 1)
+		{
+			band.run(0, height);
+			return;
+		}
+
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int start = rowsPerBand; start < height; start += rowsPerBand)
+		{
+			final int s = start;
+			final int e = Math.min(start + rowsPerBand, height);
+			futures.add(executor.submit(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					band.run(s, e);
+				}
+			}));
+		}
+
+		band.run(0, rowsPerBand);
+		try
+		{
+			for (Future<?> future : futures)
+			{
+				future.get();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while generating elevation image", e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new IllegalStateException("Error generating elevation image", e.getCause());
+		}
+	}
+
+	/**
+	 * Work done for a range of rows.
+	 */
+	private interface RowBand
+	{
+		void run(int startRow, int endRow);
+	}
+}
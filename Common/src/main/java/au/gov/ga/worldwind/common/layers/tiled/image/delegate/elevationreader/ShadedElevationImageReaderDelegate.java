@@ -22,9 +22,15 @@ import gov.nasa.worldwind.geom.Sector;
 import gov.nasa.worldwind.geom.Vec4;
 import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.util.BufferWrapper;
+import gov.nasa.worldwind.util.Tile;
 import gov.nasa.worldwind.util.WWXML;
 
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -61,17 +67,41 @@ import au.gov.ga.worldwind.common.layers.delegate.IDelegate;
  * </ul>
  * Shading is calculated as a simple dot product between the calculated normals
  * of the elevation model and the sun vector.
+ * <p/>
+ * The normals of the pixels on the east and south edges of a tile are
+ * calculated using the neighbouring tiles' elevations, if those tiles are in
+ * the local cache, so that there are no seams between tiles. Otherwise the
+ * tile's edge slope is extrapolated.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class ShadedElevationImageReaderDelegate extends ElevationImageReaderDelegate
 {
 	private final static String DEFINITION_STRING = "ShadedElevationReader";
+	private final static Pattern TILE_PATH_PATTERN = Pattern.compile("^(.*/)(\\d+)/(\\d+)_(\\d+)([^/]*)$");
+	private final static int BORDER_CACHE_SIZE = 256;
+	private final static String WEST_BORDER = "#west";
+	private final static String NORTH_BORDER = "#north";
 
 	protected final double exaggeration;
 	protected final Vec4 sunPosition;
 	protected final double minElevation;
 	protected final double maxElevation;
+	protected final double[] sun;
+
+	/**
+	 * West column and north row of recently read tiles, keyed by tile url, used
+	 * as the east and south aprons of their neighbours.
+	 */
+	private final Map<String, float[]> borderCache = Collections.synchronizedMap(new LinkedHashMap<String, float[]>(
+			16, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest)
+		{
+			return size() > BORDER_CACHE_SIZE;
+		}
+	});
 
 	@SuppressWarnings("unused")
 	private ShadedElevationImageReaderDelegate()
@@ -88,6 +118,7 @@ public class ShadedElevationImageReaderDelegate extends ElevationImageReaderDele
 		this.sunPosition = sunPosition;
 		this.minElevation = minElevation;
 		this.maxElevation = maxElevation;
+		this.sun = new double[] { sunPosition.x, sunPosition.y, sunPosition.z };
 	}
 
 	@Override
@@ -136,41 +167,196 @@ public class ShadedElevationImageReaderDelegate extends ElevationImageReaderDele
 				+ exaggeration + ")";
 	}
 
+	@Override
+	protected BufferedImage generateImage(BufferWrapper elevations, Tile tile, URL url, Globe globe)
+	{
+		int width = tile.getWidth();
+		int height = tile.getHeight();
+		cacheBorders(url.toString(), elevations, width, height);
+
+		//the east and south neighbours provide the apron for this tile (rows increase northwards)
+		float[] east = getNeighbourBorder(url, tile, tile.getRow(), tile.getColumn() + 1, WEST_BORDER);
+		float[] south = getNeighbourBorder(url, tile, tile.getRow() - 1, tile.getColumn(), NORTH_BORDER);
+		return generateImage(elevations, width, height, tile.getSector(), east, south);
+	}
+
 	@Override
 	protected BufferedImage generateImage(BufferWrapper elevations, int width, int height, Globe globe, Sector sector)
 	{
-		//image has one less in width and height than verts array, because normals are calculated using neighbors
-		//it would be optimal to read the neighboring tiles for normals on tile edges; this would fix visible tile edges
+		return generateImage(elevations, width, height, sector, null, null);
+	}
 
-		BufferedImage image = new BufferedImage(width - 1, height - 1, BufferedImage.TYPE_INT_ARGB);
+	/**
+	 * Generate the shaded image for a tile.
+	 * 
+	 * @param elevations
+	 *            Wrapped elevation data
+	 * @param width
+	 *            Width of the data tile
+	 * @param height
+	 *            Height of the data tile
+	 * @param sector
+	 *            Sector of the data tile
+	 * @param east
+	 *            West column of the tile to the east (null to extrapolate)
+	 * @param south
+	 *            North row of the tile to the south (null to extrapolate)
+	 * @return Shaded image, the same size as the data tile
+	 */
+	protected BufferedImage generateImage(BufferWrapper elevations, int width, int height, Sector sector,
+			float[] east, float[] south)
+	{
+		int stride = width + 1;
+		float[] grid = getGridBuffer(stride * (height + 1));
+		copyElevations(elevations, width, height, grid, stride);
+		fillApron(grid, width, height, east, south);
 
-		Vec4[] verts =
-				calculateTileVerts(width, height, sector, elevations, missingDataSignal, exaggeration * 0.000005);
-		Vec4[] normals = calculateNormals(width, height, verts);
+		double dlon = sector.getDeltaLonDegrees() / width;
+		double dlat = sector.getDeltaLatDegrees() / height;
+		double[] latitudes = new double[height + 1];
+		double[] longitudes = new double[width + 1];
+		for (int y = 0; y <= height; y++)
+		{
+			latitudes[y] = sector.getMaxLatitude().subtractDegrees(dlat * y).degrees;
+		}
+		for (int x = 0; x <= width; x++)
+		{
+			longitudes[x] = sector.getMinLongitude().addDegrees(dlon * x).degrees;
+		}
 
-		for (int y = 0, i = 0; y < height - 1; y++)
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		ElevationKernels.hillshade(grid, width, height, latitudes, longitudes, exaggeration * 0.000005, sun,
+				missingDataSignal, minElevation, maxElevation, getPixels(image));
+		return image;
+	}
+
+	/**
+	 * Fill the east column and south row of the grid's apron, from the given
+	 * neighbour borders if available, otherwise by extrapolating the slope at
+	 * the edge of the tile.
+	 */
+	protected void fillApron(float[] grid, int width, int height, float[] east, float[] south)
+	{
+		int stride = width + 1;
+		for (int y = 0; y < height; y++)
 		{
-			for (int x = 0; x < width - 1; x++, i++)
-			{
-				int argb = 0;
-				Vec4 normal = normals[i];
-				if (normal != null)
-				{
-					double light = Math.max(0d, normal.dot3(sunPosition));
+			int edge = y * stride + width - 1;
+			grid[edge + 1] = east != null ? east[y] : extrapolate(grid, edge, width > 1 ? edge - 1 : -1);
+		}
+		for (int x = 0; x < width; x++)
+		{
+			int edge = (height - 1) * stride + x;
+			grid[edge + stride] = south != null ? south[x] : extrapolate(grid, edge, height > 1 ? edge - stride : -1);
+		}
+		grid[height * stride + width] = (float) missingDataSignal;
+	}
 
-					int r = (int) (255.0 * light);
-					int g = (int) (255.0 * light);
-					int b = (int) (255.0 * light);
+	private float extrapolate(float[] grid, int edge, int inner)
+	{
+		float value = grid[edge];
+		if (inner < 0 || !isValid(value) || !isValid(grid[inner]))
+		{
+			return value;
+		}
+		float extrapolated = 2 * value - grid[inner];
+		return isValid(extrapolated) ? extrapolated : value;
+	}
 
-					argb = (0xff) << 24 | (r & 0xff) << 16 | (g & 0xff) << 8 | (b & 0xff);
-				}
-				image.setRGB(x, y, argb);
-			}
+	private boolean isValid(float elevation)
+	{
+		//the grid holds floats, so compare against the signal narrowed the same way
+		return elevation != (float) missingDataSignal && minElevation <= elevation && elevation <= maxElevation;
+	}
+
+	/**
+	 * Store the west column and north row of a tile in the border cache.
+	 */
+	protected void cacheBorders(String url, BufferWrapper elevations, int width, int height)
+	{
+		float[] west = new float[height];
+		float[] north = new float[width];
+		for (int y = 0; y < height; y++)
+		{
+			west[y] = (float) elevations.getDouble(y * width);
 		}
+		for (int x = 0; x < width; x++)
+		{
+			north[x] = (float) elevations.getDouble(x);
+		}
+		borderCache.put(url + WEST_BORDER, west);
+		borderCache.put(url + NORTH_BORDER, north);
+	}
 
-		return image;
+	/**
+	 * Get a border of a neighbouring tile, from the border cache or by reading
+	 * the neighbour's elevations from the same location as the given tile's.
+	 * 
+	 * @return The neighbour's border, or null if the neighbour is not
+	 *         available
+	 */
+	protected float[] getNeighbourBorder(URL url, Tile tile, int row, int column, String border)
+	{
+		if (row < 0)
+		{
+			return null;
+		}
+		String neighbourUrl = getNeighbourURL(url.toString(), tile.getRow(), tile.getColumn(), row, column);
+		if (neighbourUrl == null)
+		{
+			return null;
+		}
+
+		float[] cached = borderCache.get(neighbourUrl + border);
+		if (cached != null)
+		{
+			return cached;
+		}
+
+		BufferWrapper elevations;
+		try
+		{
+			elevations = readElevations(new URL(neighbourUrl));
+		}
+		catch (IOException e)
+		{
+			//neighbour hasn't been downloaded
+			return null;
+		}
+		int width = tile.getWidth();
+		int height = tile.getHeight();
+		if (elevations == null || elevations.length() != width * height)
+		{
+			return null;
+		}
+		cacheBorders(neighbourUrl, elevations, width, height);
+		return borderCache.get(neighbourUrl + border);
+	}
+
+	/**
+	 * Calculate the url of a neighbouring tile, assuming tile urls end in the
+	 * standard tile path ".../row/row_column.extension".
+	 * 
+	 * @return Neighbouring tile's url, or null if the tile's url doesn't end
+	 *         in the standard tile path
+	 */
+	protected static String getNeighbourURL(String url, int row, int column, int neighbourRow, int neighbourColumn)
+	{
+		Matcher matcher = TILE_PATH_PATTERN.matcher(url);
+		if (!matcher.matches() || !matcher.group(2).equals(String.valueOf(row))
+				|| !matcher.group(3).equals(String.valueOf(row)) || !matcher.group(4).equals(String.valueOf(column)))
+		{
+			return null;
+		}
+		return matcher.group(1) + neighbourRow + "/" + neighbourRow + "_" + neighbourColumn + matcher.group(5);
 	}
 
+	/**
+	 * Calculate the vertices used by {@link #calculateNormals(int, int, Vec4[])}
+	 * . Shading is now calculated by
+	 * {@link ElevationKernels#hillshade(float[], int, int, double[], double[], double, double[], double, double, double, int[])}
+	 * , which produces the same result without allocating a vertex and normal
+	 * per pixel.
+	 */
 	protected Vec4[] calculateTileVerts(int width, int height, Sector sector, BufferWrapper elevations,
 			double missingDataSignal, double exaggeration)
 	{
@@ -28,6 +28,7 @@ import au.gov.ga.worldwind.common.layers.Bounds;
 import au.gov.ga.worldwind.common.layers.data.AbstractDataProvider;
 import au.gov.ga.worldwind.common.layers.volume.btt.BinaryTriangleTree;
 import au.gov.ga.worldwind.common.render.fastshape.FastShape;
+import au.gov.ga.worldwind.common.render.fastshape.PositionBuffer;
 
 /**
  * Abstract implementation of the {@link VolumeDataProvider} interface. Provides
@@ -96,7 +97,7 @@ public abstract class AbstractVolumeDataProvider extends AbstractDataProvider<Vo
 	 * south-west corner to the north-east corner. Longitude (x values) should
 	 * increment first.
 	 */
-	protected List<Position> positions;
+	protected PositionBuffer positions;
 
 	/**
 	 * Float array that contains the volume data.
@@ -113,6 +114,13 @@ public abstract class AbstractVolumeDataProvider extends AbstractDataProvider<Vo
 	 */
 	protected float maxValue;
 
+	/**
+	 * Tree used to create the horizontal surfaces, kept so that its error
+	 * pyramid is reused between surfaces. Recreated if the positions change.
+	 */
+	private BinaryTriangleTree horizontalSurfaceTree;
+	private PositionBuffer horizontalSurfaceTreePositions;
+
 	/**
 	 * Whether the volume data is cell-centred
 	 */
@@ -229,9 +237,18 @@ public abstract class AbstractVolumeDataProvider extends AbstractDataProvider<Vo
 	@Override
 	public FastShape createHorizontalSurface(float maxVariance, Rectangle rectangle)
 	{
-		BinaryTriangleTree btt = new BinaryTriangleTree(positions, xSize, ySize);
-		btt.setForceGLTriangles(true);
-		btt.setGenerateTextureCoordinates(true);
+		BinaryTriangleTree btt;
+		synchronized (this)
+		{
+			if (horizontalSurfaceTree == null || horizontalSurfaceTreePositions != positions)
+			{
+				horizontalSurfaceTree = new BinaryTriangleTree(positions, xSize, ySize);
+				horizontalSurfaceTree.setForceGLTriangles(true);
+				horizontalSurfaceTree.setGenerateTextureCoordinates(true);
+				horizontalSurfaceTreePositions = positions;
+			}
+			btt = horizontalSurfaceTree;
+		}
 		return btt.buildMeshFromCenter(maxVariance, rectangle);
 	}
 
@@ -26,12 +26,12 @@ import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.net.URL;
 import java.nio.FloatBuffer;
-import java.util.ArrayList;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 import au.gov.ga.worldwind.common.layers.Bounds;
+import au.gov.ga.worldwind.common.render.fastshape.PositionBuffer;
 
 /**
  * {@link VolumeDataProvider} which reads its data from a custom object array
@@ -84,14 +84,14 @@ public class ArrayVolumeDataProvider extends AbstractVolumeDataProvider
 				minValue = Float.MAX_VALUE;
 				maxValue = -Float.MAX_VALUE;
 
-				positions = new ArrayList<Position>(xSize * ySize);
+				positions = new PositionBuffer(xSize * ySize);
 				for (int y = 0; y < ySize; y++)
 				{
 					double latitude = minLatitude + (y / (double) (ySize - 1)) * (maxLatitude - minLatitude);
 					for (int x = 0; x < xSize; x++)
 					{
 						double longitude = minLongitude + (x / (double) (xSize - 1)) * (maxLongitude - minLongitude);
-						positions.add(Position.fromDegrees(latitude, longitude, ois.readDouble()));
+						positions.add(latitude, longitude, ois.readDouble());
 					}
 				}
 
@@ -158,9 +158,9 @@ public class ArrayVolumeDataProvider extends AbstractVolumeDataProvider
 				oos.writeDouble(provider.top);
 				oos.writeDouble(provider.depth);
 				oos.writeFloat(provider.noDataValue);
-				for (Position position : provider.positions)
+				for (int i = 0; i < provider.positions.size(); i++)
 				{
-					oos.writeDouble(position.elevation);
+					oos.writeDouble(provider.positions.getElevation(i));
 				}
 				for (int i = 0; i < provider.data.limit(); i++)
 				{
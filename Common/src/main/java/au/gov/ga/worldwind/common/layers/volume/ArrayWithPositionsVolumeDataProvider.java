@@ -26,12 +26,12 @@ import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.net.URL;
 import java.nio.FloatBuffer;
-import java.util.ArrayList;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 import au.gov.ga.worldwind.common.layers.Bounds;
+import au.gov.ga.worldwind.common.render.fastshape.PositionBuffer;
 
 /**
  * {@link VolumeDataProvider} which reads its data from a custom object array
@@ -81,10 +81,10 @@ public class ArrayWithPositionsVolumeDataProvider extends AbstractVolumeDataProv
 				minValue = Float.MAX_VALUE;
 				maxValue = -Float.MAX_VALUE;
 
-				positions = new ArrayList<Position>(xSize * ySize);
+				positions = new PositionBuffer(xSize * ySize);
 				for (int i = 0; i < xSize * ySize; i++)
 				{
-					positions.add(Position.fromDegrees(ois.readDouble(), ois.readDouble(), ois.readDouble()));
+					positions.add(ois.readDouble(), ois.readDouble(), ois.readDouble());
 				}
 
 				data = FloatBuffer.allocate(xSize * ySize * zSize);
@@ -150,11 +150,11 @@ public class ArrayWithPositionsVolumeDataProvider extends AbstractVolumeDataProv
 				oos.writeDouble(provider.top);
 				oos.writeDouble(provider.depth);
 				oos.writeFloat(provider.noDataValue);
-				for (Position position : provider.positions)
+				for (int i = 0; i < provider.positions.size(); i++)
 				{
-					oos.writeDouble(position.latitude.degrees);
-					oos.writeDouble(position.longitude.degrees);
-					oos.writeDouble(position.elevation);
+					oos.writeDouble(provider.positions.getLatitude(i));
+					oos.writeDouble(provider.positions.getLongitude(i));
+					oos.writeDouble(provider.positions.getElevation(i));
 				}
 				for (int i = 0; i < provider.data.limit(); i++)
 				{
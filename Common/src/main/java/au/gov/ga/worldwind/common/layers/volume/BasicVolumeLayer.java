@@ -54,6 +54,7 @@ import au.gov.ga.worldwind.common.layers.Bounds;
 import au.gov.ga.worldwind.common.layers.Wireframeable;
 import au.gov.ga.worldwind.common.render.fastshape.FastShape;
 import au.gov.ga.worldwind.common.render.fastshape.FastShapeRenderListener;
+import au.gov.ga.worldwind.common.render.fastshape.SingleTaskRunner;
 import au.gov.ga.worldwind.common.util.AVKeyMore;
 import au.gov.ga.worldwind.common.util.ColorMap;
 import au.gov.ga.worldwind.common.util.CoordinateTransformationUtil;
@@ -71,6 +72,9 @@ import com.jogamp.opengl.util.awt.TextureRenderer;
 public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wireframeable, SelectListener,
 		FastShapeRenderListener
 {
+	private final static SingleTaskRunner IsosurfaceUpdater = new SingleTaskRunner(BasicVolumeLayer.class.getName()
+			+ " IsosurfaceUpdater"); //$NON-NLS-1$
+
 	protected URL context;
 	protected String url;
 	protected String dataCacheName;
@@ -83,12 +87,16 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 	protected Color noDataColor;
 	protected boolean reverseNormals = false;
 	protected boolean useOrderedRendering = false;
+	protected volatile Double isoValue;
 
 	protected final Object dataLock = new Object();
 	protected boolean dataAvailable = false;
 	protected FastShape topSurface, bottomSurface;
 	protected TopBottomFastShape minLonCurtain, maxLonCurtain, minLatCurtain, maxLatCurtain;
 	protected FastShape boundingBoxShape;
+	protected IsosurfaceExtractor isosurfaceExtractor;
+	protected FastShape isosurface;
+	protected Double isosurfaceValue;
 	protected TextureRenderer topTexture, bottomTexture, minLonTexture, maxLonTexture, minLatTexture, maxLatTexture;
 	protected int topOffset = 0, bottomOffset = 0, minLonOffset = 0, maxLonOffset = 0, minLatOffset = 0,
 			maxLatOffset = 0;
@@ -96,6 +104,15 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 			lastMinLatOffset = -1, lastMaxLatOffset = -1;
 	protected double lastVerticalExaggeration = -Double.MAX_VALUE;
 
+	protected final Runnable isosurfaceUpdater = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			updateIsosurface();
+		}
+	};
+
 	protected final double[] curtainTextureMatrix = new double[] { 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1 };
 
 	protected boolean minLonClipDirty = false, maxLonClipDirty = false, minLatClipDirty = false,
@@ -132,6 +149,7 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 		{
 			maxVariance = d;
 		}
+		isoValue = (Double) params.getValue(AVKeyMore.ISO_VALUE);
 
 		String s = (String) params.getValue(AVKey.COORDINATE_SYSTEM);
 		if (s != null)
@@ -310,10 +328,106 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 		bottomSurface.setElevation(bottomElevation);
 		bottomSurface.setUseOrderedRendering(useOrderedRendering);
 
+		//the isosurface (if any) is extracted by the isosurface updater when first rendered; any existing
+		//isosurface was extracted from previously loaded data, so it is discarded
+		synchronized (dataLock)
+		{
+			isosurfaceExtractor = new IsosurfaceExtractor(dataProvider);
+			isosurface = null;
+			isosurfaceValue = null;
+		}
+		Double value = isoValue;
+		if (value != null)
+		{
+			//keep the iso value within the range of the loaded data
+			isoValue = Math.max(dataProvider.getMinValue(), Math.min(dataProvider.getMaxValue(), value));
+		}
+
 		//update each shape's wireframe property so they match the layer's
 		setWireframe(isWireframe());
 	}
 
+	/**
+	 * @return The value of the isosurface rendered within the volume, or null
+	 *         if no isosurface is rendered
+	 */
+	public Double getIsoValue()
+	{
+		return isoValue;
+	}
+
+	/**
+	 * Set the value of the isosurface rendered within the volume. The surface
+	 * is extracted in the background; the previous surface is rendered until
+	 * it is ready.
+	 * 
+	 * @param isoValue
+	 *            Isosurface value, or null to render no isosurface
+	 */
+	public void setIsoValue(Double isoValue)
+	{
+		this.isoValue = isoValue;
+		firePropertyChange(AVKey.LAYER, null, this);
+	}
+
+	/**
+	 * Create the shape for the isosurface with the given value.
+	 * 
+	 * @param value
+	 * @return Isosurface shape, or null if the volume has no isosurface for
+	 *         the value
+	 */
+	protected FastShape createIsosurface(double value)
+	{
+		IsosurfaceExtractor.Mesh mesh = isosurfaceExtractor.extract((float) value);
+		FastShape shape = isosurfaceExtractor.createShape(mesh);
+		if (shape != null)
+		{
+			shape.addRenderListener(this);
+			shape.setLighted(true);
+			shape.setCalculateNormals(true);
+			shape.setTwoSidedLighting(true);
+			shape.setReverseNormals(reverseNormals);
+			shape.setUseOrderedRendering(useOrderedRendering);
+			shape.setWireframe(isWireframe());
+			if (colorMap != null)
+			{
+				shape.setColor(colorMap.calculateColorNotingIsValuesPercentages(value, dataProvider.getMinValue(),
+						dataProvider.getMaxValue()));
+			}
+		}
+		return shape;
+	}
+
+	/**
+	 * Re-extract the isosurface if the iso value has changed. Called by the
+	 * isosurface updater thread.
+	 */
+	protected void updateIsosurface()
+	{
+		Double value = isoValue;
+		if (Util.equals(value, isosurfaceValue))
+		{
+			return;
+		}
+
+		IsosurfaceExtractor extractor = isosurfaceExtractor;
+		FastShape shape = value == null ? null : createIsosurface(value);
+		synchronized (dataLock)
+		{
+			if (extractor != isosurfaceExtractor)
+			{
+				//the data was reloaded during extraction; the next render extracts from the new data
+				return;
+			}
+			isosurface = shape;
+			isosurfaceValue = value;
+		}
+
+		//trigger a render with the new isosurface
+		firePropertyChange(AVKey.LAYER, null, this);
+	}
+
 	/**
 	 * Recalculate any surfaces that require recalculation. This includes
 	 * regenerating textures when the user has dragged a surface to a different
@@ -850,6 +964,22 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 				}
 			}
 
+			if (!Util.equals(isoValue, isosurfaceValue))
+			{
+				IsosurfaceUpdater.run(this, isosurfaceUpdater);
+			}
+			if (isosurface != null)
+			{
+				if (dc.isPickingMode())
+				{
+					isosurface.pick(dc, dc.getPickPoint());
+				}
+				else
+				{
+					isosurface.render(dc);
+				}
+			}
+
 			if (dragging)
 			{
 				//render a bounding box around the data if the user is dragging a surface
@@ -863,7 +993,8 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 	{
 		//push the OpenGL clipping plane state on the attribute stack
 		dc.getGL().getGL2().glPushAttrib(GL2.GL_TRANSFORM_BIT);
-		setupClippingPlanes(dc, shape == topSurface, shape == bottomSurface);
+		//the isosurface is clipped by the same vertical planes as the top surface
+		setupClippingPlanes(dc, shape == topSurface || shape == isosurface, shape == bottomSurface);
 	}
 
 	@Override
@@ -948,6 +1079,10 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 				minLatCurtain.setWireframe(wireframe);
 				maxLatCurtain.setWireframe(wireframe);
 			}
+			if (isosurface != null)
+			{
+				isosurface.setWireframe(wireframe);
+			}
 		}
 	}
 
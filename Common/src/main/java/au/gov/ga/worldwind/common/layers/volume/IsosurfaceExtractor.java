@@ -0,0 +1,681 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.volume;
+
+import gov.nasa.worldwind.geom.Position;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.media.opengl.GL2;
+
+import au.gov.ga.worldwind.common.render.fastshape.FastShape;
+import au.gov.ga.worldwind.common.render.fastshape.PositionBuffer;
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
+import au.gov.ga.worldwind.common.util.LongIntHashMap;
+
+/**
+ * Extracts isosurfaces from the data of a {@link VolumeDataProvider}, using
+ * the surface nets algorithm: each grid cell that the isosurface passes
+ * through gets a single vertex (the average of the points where the
+ * isosurface crosses the cell's edges), and each crossed grid edge becomes a
+ * quad joining the vertices of the four cells that share the edge.
+ * <p/>
+ * The volume is divided into blocks of {@value #BLOCK_SIZE}<sup>3</sup> cells,
+ * which are extracted in parallel on a shared pool of daemon threads. The
+ * value range of each block is calculated the first time a surface is
+ * extracted, so that changing the iso value only reads the blocks whose range
+ * contains it. Vertices shared between neighbouring blocks are welded when the
+ * blocks are merged.
+ * <p/>
+ * Cells with a corner containing the provider's NODATA value (or NaN) are
+ * skipped, leaving a hole in the surface.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class IsosurfaceExtractor
+{
+	/**
+	 * Number of cells along each side of an extraction block.
+	 */
+	public static final int BLOCK_SIZE = 32;
+
+	private static final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+	private static final ExecutorService executor = THREAD_COUNT > 1 ? Executors.newFixedThreadPool(THREAD_COUNT,
+			new DaemonThreadFactory("Isosurface extractor")) : null;
+
+	private final VolumeDataProvider provider;
+	private final int xSize, ySize, zSize;
+	private final int xBlocks, yBlocks, zBlocks;
+	private final float noDataValue;
+
+	private float[] blockMinimums;
+	private float[] blockMaximums;
+	private float lastIsoValue = Float.NaN;
+	private Mesh lastMesh;
+	private int lastExtractedBlockCount;
+
+	private double[] topLatitudes;
+	private double[] topLongitudes;
+	private double[] topElevations;
+
+	public IsosurfaceExtractor(VolumeDataProvider provider)
+	{
+		this.provider = provider;
+		this.xSize = provider.getXSize();
+		this.ySize = provider.getYSize();
+		this.zSize = provider.getZSize();
+		this.noDataValue = provider.getNoDataValue();
+		this.xBlocks = blockCount(xSize);
+		this.yBlocks = blockCount(ySize);
+		this.zBlocks = blockCount(zSize);
+	}
+
+	private static int blockCount(int size)
+	{
+		return size < 2 ? 0 : (size - 2) / BLOCK_SIZE + 1;
+	}
+
+	/**
+	 * @return Number of blocks that were extracted (ie whose value range
+	 *         contained the iso value) in the last call to
+	 *         {@link #extract(float)}
+	 */
+	public synchronized int getLastExtractedBlockCount()
+	{
+		return lastExtractedBlockCount;
+	}
+
+	/**
+	 * @return Total number of blocks the volume is divided into
+	 */
+	public int getBlockCount()
+	{
+		return xBlocks * yBlocks * zBlocks;
+	}
+
+	/**
+	 * Extract the isosurface for the given value. The surface separates
+	 * samples less than the iso value from those greater than or equal to it.
+	 * The last extracted surface is cached.
+	 * 
+	 * @param isoValue
+	 * @return Extracted surface, in grid coordinates
+	 */
+	public synchronized Mesh extract(float isoValue)
+	{
+		if (lastMesh != null && isoValue == lastIsoValue)
+		{
+			return lastMesh;
+		}
+
+		calculateBlockRanges();
+
+		int[] active = new int[getBlockCount()];
+		int activeCount = 0;
+		for (int block = 0; block < active.length; block++)
+		{
+			if (blockMinimums[block] < isoValue && isoValue <= blockMaximums[block])
+			{
+				active[activeCount++] = block;
+			}
+		}
+
+		final BlockMesh[] blockMeshes = new BlockMesh[activeCount];
+		final int[] activeBlocks = active;
+		final float iso = isoValue;
+		runInParallel(activeCount, new BlockTask()
+		{
+			@Override
+			public void run(int index)
+			{
+				blockMeshes[index] = extractBlock(activeBlocks[index], iso);
+			}
+		});
+
+		lastMesh = merge(blockMeshes);
+		lastIsoValue = isoValue;
+		lastExtractedBlockCount = activeCount;
+		return lastMesh;
+	}
+
+	/**
+	 * Create a {@link FastShape} for an extracted surface, converting each
+	 * vertex from grid coordinates to a geographic position by interpolating
+	 * the positions of the volume's top slice.
+	 * 
+	 * @param mesh
+	 *            Surface returned by {@link #extract(float)}
+	 * @return Triangle shape for the surface, or null if it is empty
+	 */
+	public FastShape createShape(Mesh mesh)
+	{
+		if (mesh.getTriangleCount() == 0)
+		{
+			return null;
+		}
+
+		calculateTopPositions();
+		float[] vertices = mesh.getVertices();
+		int vertexCount = mesh.getVertexCount();
+		double depth = provider.getDepth();
+		PositionBuffer positions = new PositionBuffer(vertexCount);
+		for (int i = 0; i < vertexCount; i++)
+		{
+			float gx = vertices[i * 3];
+			float gy = vertices[i * 3 + 1];
+			float gz = vertices[i * 3 + 2];
+			int x = Math.min((int) gx, xSize - 2);
+			int y = Math.min((int) gy, ySize - 2);
+			double fx = gx - x;
+			double fy = gy - y;
+			int i00 = x + y * xSize;
+			int i10 = i00 + 1;
+			int i01 = i00 + xSize;
+			int i11 = i01 + 1;
+			double latitude = bilinear(topLatitudes, i00, i10, i01, i11, fx, fy);
+			double longitude = bilinear(topLongitudes, i00, i10, i01, i11, fx, fy);
+			double elevation =
+					bilinear(topElevations, i00, i10, i01, i11, fx, fy) - depth * gz / (zSize - 1);
+			positions.add(latitude, longitude, elevation);
+		}
+		return new FastShape(positions, mesh.getIndices(), GL2.GL_TRIANGLES);
+	}
+
+	private static double bilinear(double[] values, int i00, int i10, int i01, int i11, double fx, double fy)
+	{
+		double bottom = values[i00] + (values[i10] - values[i00]) * fx;
+		double top = values[i01] + (values[i11] - values[i01]) * fx;
+		return bottom + (top - bottom) * fy;
+	}
+
+	private synchronized void calculateTopPositions()
+	{
+		if (topLatitudes != null)
+		{
+			return;
+		}
+
+		int count = xSize * ySize;
+		double[] latitudes = new double[count];
+		double[] longitudes = new double[count];
+		double[] elevations = new double[count];
+		for (int y = 0; y < ySize; y++)
+		{
+			for (int x = 0; x < xSize; x++)
+			{
+				Position position = provider.getPosition(x, y);
+				int i = x + y * xSize;
+				latitudes[i] = position.latitude.degrees;
+				longitudes[i] = position.longitude.degrees;
+				elevations[i] = position.elevation;
+			}
+		}
+		topLatitudes = latitudes;
+		topLongitudes = longitudes;
+		topElevations = elevations;
+	}
+
+	/**
+	 * Calculate the minimum and maximum (non-NODATA) sample value of each
+	 * block, if not already calculated.
+	 */
+	private void calculateBlockRanges()
+	{
+		if (blockMinimums != null)
+		{
+			return;
+		}
+
+		final float[] minimums = new float[getBlockCount()];
+		final float[] maximums = new float[getBlockCount()];
+		runInParallel(minimums.length, new BlockTask()
+		{
+			@Override
+			public void run(int block)
+			{
+				int x0 = (block % xBlocks) * BLOCK_SIZE;
+				int y0 = ((block / xBlocks) % yBlocks) * BLOCK_SIZE;
+				int z0 = (block / (xBlocks * yBlocks)) * BLOCK_SIZE;
+				int x1 = Math.min(x0 + BLOCK_SIZE, xSize - 1);
+				int y1 = Math.min(y0 + BLOCK_SIZE, ySize - 1);
+				int z1 = Math.min(z0 + BLOCK_SIZE, zSize - 1);
+
+				float min = Float.MAX_VALUE;
+				float max = -Float.MAX_VALUE;
+				for (int z = z0; z <= z1; z++)
+				{
+					for (int y = y0; y <= y1; y++)
+					{
+						for (int x = x0; x <= x1; x++)
+						{
+							float value = provider.getValue(x, y, z);
+							if (!isNoData(value))
+							{
+								min = Math.min(min, value);
+								max = Math.max(max, value);
+							}
+						}
+					}
+				}
+				minimums[block] = min;
+				maximums[block] = max;
+			}
+		});
+		blockMinimums = minimums;
+		blockMaximums = maximums;
+	}
+
+	private boolean isNoData(float value)
+	{
+		return value == noDataValue || Float.isNaN(value);
+	}
+
+	/**
+	 * Extract the part of the surface owned by a block. A block owns the
+	 * quads for the grid edges that start at the minimum corner of each of its
+	 * cells; as each quad also joins the vertices of the cells below it in the
+	 * other two axes, the vertices are calculated for an extra layer of cells
+	 * on the minimum side of the block.
+	 */
+	private BlockMesh extractBlock(int block, float iso)
+	{
+		//cell range owned by this block
+		int x0 = (block % xBlocks) * BLOCK_SIZE;
+		int y0 = ((block / xBlocks) % yBlocks) * BLOCK_SIZE;
+		int z0 = (block / (xBlocks * yBlocks)) * BLOCK_SIZE;
+		int x1 = Math.min(x0 + BLOCK_SIZE, xSize - 1);
+		int y1 = Math.min(y0 + BLOCK_SIZE, ySize - 1);
+		int z1 = Math.min(z0 + BLOCK_SIZE, zSize - 1);
+
+		//first cell (including the extra layer) and sample counts in each axis
+		int sx = Math.max(x0 - 1, 0);
+		int sy = Math.max(y0 - 1, 0);
+		int sz = Math.max(z0 - 1, 0);
+		int lx = x1 - sx + 1;
+		int ly = y1 - sy + 1;
+		int lz = z1 - sz + 1;
+
+		float[] samples = new float[lx * ly * lz];
+		for (int z = 0, i = 0; z < lz; z++)
+		{
+			for (int y = 0; y < ly; y++)
+			{
+				for (int x = 0; x < lx; x++, i++)
+				{
+					samples[i] = provider.getValue(sx + x, sy + y, sz + z);
+				}
+			}
+		}
+
+		//sample index offsets of each cell corner, and of the next sample along each axis
+		int[] axisOffsets = { 1, lx, lx * ly };
+		int[] cornerOffsets = new int[8];
+		for (int corner = 0; corner < 8; corner++)
+		{
+			cornerOffsets[corner] =
+					(corner & 1) * axisOffsets[0] + ((corner >> 1) & 1) * axisOffsets[1] + ((corner >> 2) & 1)
+							* axisOffsets[2];
+		}
+
+		//calculate a vertex for each cell the surface passes through
+		int cx = lx - 1, cy = ly - 1, cz = lz - 1;
+		int[] cellVertices = new int[cx * cy * cz];
+		Arrays.fill(cellVertices, -1);
+		float[] cellCoordinates = new float[96];
+		int cellVertexCount = 0;
+		float[] corners = new float[8];
+		for (int z = 0, cell = 0; z < cz; z++)
+		{
+			for (int y = 0; y < cy; y++)
+			{
+				for (int x = 0; x < cx; x++, cell++)
+				{
+					int sample = x + y * lx + z * lx * ly;
+					int mask = 0;
+					boolean noData = false;
+					for (int corner = 0; corner < 8; corner++)
+					{
+						float value = samples[sample + cornerOffsets[corner]];
+						noData |= isNoData(value);
+						corners[corner] = value;
+						mask |= (value < iso ? 1 : 0) << corner;
+					}
+					if (noData || mask == 0 || mask == 0xff)
+					{
+						continue;
+					}
+
+					//average the points where the surface crosses the cell's edges
+					float px = 0, py = 0, pz = 0;
+					int crossings = 0;
+					for (int corner = 0; corner < 8; corner++)
+					{
+						for (int axis = 0; axis < 3; axis++)
+						{
+							int bit = 1 << axis;
+							int other = corner | bit;
+							if ((corner & bit) != 0 || ((mask >> corner) & 1) == ((mask >> other) & 1))
+							{
+								continue;
+							}
+							float t = (iso - corners[corner]) / (corners[other] - corners[corner]);
+							px += (corner & 1) + (axis == 0 ? t : 0);
+							py += ((corner >> 1) & 1) + (axis == 1 ? t : 0);
+							pz += ((corner >> 2) & 1) + (axis == 2 ? t : 0);
+							crossings++;
+						}
+					}
+
+					if (cellVertexCount * 3 + 3 > cellCoordinates.length)
+					{
+						cellCoordinates = Arrays.copyOf(cellCoordinates, cellCoordinates.length * 2);
+					}
+					cellCoordinates[cellVertexCount * 3] = sx + x + px / crossings;
+					cellCoordinates[cellVertexCount * 3 + 1] = sy + y + py / crossings;
+					cellCoordinates[cellVertexCount * 3 + 2] = sz + z + pz / crossings;
+					cellVertices[cell] = cellVertexCount++;
+				}
+			}
+		}
+
+		//emit a quad for each crossed edge owned by this block
+		BlockMesh mesh = new BlockMesh(cellVertexCount);
+		int[] cellAxisOffsets = { 1, cx, cx * cy };
+		int[] origin = { sx, sy, sz };
+		int[] position = new int[3];
+		int[] quad = new int[4];
+		for (int z = z0 - sz; z < cz; z++)
+		{
+			for (int y = y0 - sy; y < cy; y++)
+			{
+				for (int x = x0 - sx; x < cx; x++)
+				{
+					int cell = x + y * cx + z * cx * cy;
+					if (cellVertices[cell] < 0)
+					{
+						continue;
+					}
+
+					position[0] = x;
+					position[1] = y;
+					position[2] = z;
+					int sample = x + y * lx + z * lx * ly;
+					float value = samples[sample];
+					for (int axis = 0; axis < 3; axis++)
+					{
+						int u = (axis + 1) % 3;
+						int v = (axis + 2) % 3;
+						if (origin[u] + position[u] < 1 || origin[v] + position[v] < 1)
+						{
+							continue;
+						}
+						float next = samples[sample + axisOffsets[axis]];
+						if ((value < iso) == (next < iso) || isNoData(value) || isNoData(next))
+						{
+							continue;
+						}
+
+						quad[0] = cellVertices[cell];
+						quad[1] = cellVertices[cell - cellAxisOffsets[u]];
+						quad[2] = cellVertices[cell - cellAxisOffsets[u] - cellAxisOffsets[v]];
+						quad[3] = cellVertices[cell - cellAxisOffsets[v]];
+						if (quad[1] < 0 || quad[2] < 0 || quad[3] < 0)
+						{
+							continue;
+						}
+
+						//wind the quad so that its front faces the samples greater than the iso value
+						if (value < iso)
+						{
+							mesh.addQuad(quad[0], quad[1], quad[2], quad[3]);
+						}
+						else
+						{
+							mesh.addQuad(quad[0], quad[3], quad[2], quad[1]);
+						}
+					}
+				}
+			}
+		}
+
+		//copy the referenced vertices, keyed by their global cell index
+		long cellsPerRow = xSize - 1;
+		long cellsPerSlice = cellsPerRow * (ySize - 1);
+		for (int z = 0, cell = 0; z < cz; z++)
+		{
+			for (int y = 0; y < cy; y++)
+			{
+				for (int x = 0; x < cx; x++, cell++)
+				{
+					int vertex = cellVertices[cell];
+					if (vertex >= 0 && mesh.isReferenced(vertex))
+					{
+						long key = (sx + x) + (sy + y) * cellsPerRow + (sz + z) * cellsPerSlice;
+						mesh.setVertex(vertex, key, cellCoordinates, vertex * 3);
+					}
+				}
+			}
+		}
+		return mesh;
+	}
+
+	/**
+	 * Merge the block meshes into a single mesh, welding the vertices shared
+	 * between blocks.
+	 */
+	private static Mesh merge(BlockMesh[] blockMeshes)
+	{
+		int maxVertexCount = 0;
+		int indexCount = 0;
+		for (BlockMesh blockMesh : blockMeshes)
+		{
+			maxVertexCount += blockMesh.vertexCount;
+			indexCount += blockMesh.indexCount;
+		}
+
+		LongIntHashMap vertexIndices = new LongIntHashMap(maxVertexCount, -1);
+		float[] vertices = new float[maxVertexCount * 3];
+		int[] indices = new int[indexCount];
+		int vertexCount = 0;
+		int k = 0;
+		for (BlockMesh blockMesh : blockMeshes)
+		{
+			int[] remap = new int[blockMesh.remap.length];
+			for (int i = 0; i < remap.length; i++)
+			{
+				int local = blockMesh.remap[i];
+				if (local < 0)
+				{
+					continue;
+				}
+				int index = vertexIndices.putIfAbsent(blockMesh.keys[local], vertexCount);
+				if (index == vertexCount)
+				{
+					System.arraycopy(blockMesh.vertices, local * 3, vertices, vertexCount * 3, 3);
+					vertexCount++;
+				}
+				remap[i] = index;
+			}
+			for (int i = 0; i < blockMesh.indexCount; i++)
+			{
+				indices[k++] = remap[blockMesh.indices[i]];
+			}
+		}
+		return new Mesh(Arrays.copyOf(vertices, vertexCount * 3), indices);
+	}
+
+	/**
+	 * Run the task for each index in [0, count). Indices are handed out to the
+	 * calling thread and the executor's threads as each finishes its previous
+	 * index, so that blocks with differing amounts of surface are balanced
+	 * between threads.
+	 */
+	private static void runInParallel(final int count, final BlockTask task)
+	{
+		final AtomicInteger next = new AtomicInteger();
+		Runnable worker = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				int index;
+				while ((index = next.getAndIncrement()) < count)
+				{
+					task.run(index);
+				}
+			}
+		};
+
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		if (executor != null)
+		{
+			for (int i = 1; i < Math.min(THREAD_COUNT, count); i++)
+			{
+				futures.add(executor.submit(worker));
+			}
+		}
+
+		worker.run();
+		try
+		{
+			for (Future<?> future : futures)
+			{
+				future.get();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while extracting isosurface", e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new IllegalStateException("Error extracting isosurface", e.getCause());
+		}
+	}
+
+	/**
+	 * Work done for a single block.
+	 */
+	private interface BlockTask
+	{
+		void run(int index);
+	}
+
+	/**
+	 * Part of the surface extracted from a single block. Triangles reference
+	 * the block's cell vertices, which are compacted to only those referenced
+	 * (through the remap array) before merging.
+	 */
+	private static class BlockMesh
+	{
+		private final int[] remap;
+		private long[] keys = new long[0];
+		private float[] vertices = new float[0];
+		private int vertexCount = 0;
+		private int[] indices = new int[96];
+		private int indexCount = 0;
+
+		public BlockMesh(int cellVertexCount)
+		{
+			remap = new int[cellVertexCount];
+			Arrays.fill(remap, -1);
+		}
+
+		public void addQuad(int v0, int v1, int v2, int v3)
+		{
+			if (indexCount + 6 > indices.length)
+			{
+				indices = Arrays.copyOf(indices, indices.length * 2);
+			}
+			indices[indexCount++] = v0;
+			indices[indexCount++] = v1;
+			indices[indexCount++] = v2;
+			indices[indexCount++] = v0;
+			indices[indexCount++] = v2;
+			indices[indexCount++] = v3;
+			remap[v0] = remap[v1] = remap[v2] = remap[v3] = 0;
+		}
+
+		public boolean isReferenced(int vertex)
+		{
+			return remap[vertex] >= 0;
+		}
+
+		public void setVertex(int vertex, long key, float[] coordinates, int offset)
+		{
+			if (vertexCount >= keys.length)
+			{
+				int capacity = Math.max(16, keys.length * 2);
+				keys = Arrays.copyOf(keys, capacity);
+				vertices = Arrays.copyOf(vertices, capacity * 3);
+			}
+			keys[vertexCount] = key;
+			System.arraycopy(coordinates, offset, vertices, vertexCount * 3, 3);
+			remap[vertex] = vertexCount++;
+		}
+	}
+
+	/**
+	 * Indexed triangle mesh of an extracted isosurface. Vertices are in grid
+	 * coordinates: (x, y, z) is the sample at (x, y, z), with fractional
+	 * values between samples.
+	 */
+	public static class Mesh
+	{
+		private final float[] vertices;
+		private final int[] indices;
+
+		public Mesh(float[] vertices, int[] indices)
+		{
+			this.vertices = vertices;
+			this.indices = indices;
+		}
+
+		/**
+		 * @return Vertex grid coordinates (3 values per vertex)
+		 */
+		public float[] getVertices()
+		{
+			return vertices;
+		}
+
+		/**
+		 * @return Triangle vertex indices (3 values per triangle)
+		 */
+		public int[] getIndices()
+		{
+			return indices;
+		}
+
+		public int getVertexCount()
+		{
+			return vertices.length / 3;
+		}
+
+		public int getTriangleCount()
+		{
+			return indices.length / 3;
+		}
+	}
+}
@@ -37,6 +37,7 @@ import java.util.zip.ZipFile;
 import org.gdal.osr.CoordinateTransformation;
 
 import au.gov.ga.worldwind.common.layers.Bounds;
+import au.gov.ga.worldwind.common.render.fastshape.PositionBuffer;
 import au.gov.ga.worldwind.common.util.URLUtil;
 import au.gov.ga.worldwind.common.util.io.FloatReader;
 import au.gov.ga.worldwind.common.util.io.FloatReader.FloatFormat;
@@ -411,7 +412,7 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 	private void initialiseDataVariables()
 	{
 		bounds = null;
-		positions = new ArrayList<Position>(xSize * ySize);
+		positions = new PositionBuffer(xSize * ySize);
 		data = FloatBuffer.allocate(totalNumberDataPoints());
 		top = 0;
 		minValue = Float.MAX_VALUE;
@@ -561,26 +562,24 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 			//top depth (they are currently at the bottom depth)
 			if (reverseZ)
 			{
-				List<Position> oldPositions = positions;
-				positions = new ArrayList<Position>(oldPositions.size());
-				for (Position position : oldPositions)
+				for (int i = 0; i < positions.size(); i++)
 				{
-					positions.add(new Position(position, position.elevation + depth));
+					positions.setElevation(i, positions.getElevation(i) + depth);
 				}
 			}
 
 			//if the x-axis or y-axis are reversed, mirror them
 			if (reverseX || reverseY)
 			{
-				List<Position> oldPositions = positions;
-				positions = new ArrayList<Position>(oldPositions.size());
+				PositionBuffer oldPositions = positions;
+				positions = new PositionBuffer(oldPositions.size());
 				for (int y = 0; y < ySize; y++)
 				{
 					int ry = reverseY ? ySize - y - 1 : y;
 					for (int x = 0; x < xSize; x++)
 					{
 						int rx = reverseX ? xSize - x - 1 : x;
-						positions.add(oldPositions.get(rx + ry * xSize));
+						positions.add(oldPositions, rx + ry * xSize);
 					}
 				}
 			}
@@ -21,6 +21,7 @@ import gov.nasa.worldwind.geom.Position;
 import java.util.List;
 
 import au.gov.ga.worldwind.common.render.fastshape.FastShape;
+import au.gov.ga.worldwind.common.render.fastshape.PositionBuffer;
 
 /**
  * {@link FastShape} subclass which defines top and bottom elevation offsets.
@@ -123,6 +124,13 @@ public class TopBottomFastShape extends FastShape
 		return elevationOffset;
 	}
 
+	@Override
+	protected double calculateElevationOffset(PositionBuffer positions, int index)
+	{
+		//buffers can't hold TopBottomPositions, so apply the same offsets as for a list of plain positions
+		return calculateElevationOffset(positions.get(index));
+	}
+
 	@Override
 	protected LatLon calculateLatLonOffset()
 	{
@@ -63,7 +63,7 @@ public class VolumeLayerFactory
 			params = new AVListImpl();
 		}
 
-		XPath xpath = WWXML.makeXPath();
+		XPath xpath = XMLUtil.makeXPath();
 
 		WWXML.checkAndSetStringParam(domElement, params, AVKey.URL, "URL", xpath);
 		WWXML.checkAndSetLongParam(domElement, params, AVKey.EXPIRY_TIME, "ExpiryTime", xpath);
@@ -72,6 +72,7 @@ public class VolumeLayerFactory
 
 		WWXML.checkAndSetDoubleParam(domElement, params, AVKeyMore.MAX_VARIANCE, "MaxVariance", xpath);
 		WWXML.checkAndSetDoubleParam(domElement, params, AVKeyMore.MINIMUM_DISTANCE, "MinimumDistance", xpath);
+		WWXML.checkAndSetDoubleParam(domElement, params, AVKeyMore.ISO_VALUE, "IsoValue", xpath);
 		WWXML.checkAndSetStringParam(domElement, params, AVKey.COORDINATE_SYSTEM, "CoordinateSystem", xpath);
 
 		WWXML.checkAndSetColorParam(domElement, params, AVKeyMore.NO_DATA_COLOR, "NoDataColor", xpath);
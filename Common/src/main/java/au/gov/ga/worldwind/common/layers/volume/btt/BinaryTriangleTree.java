@@ -19,27 +19,59 @@ import gov.nasa.worldwind.geom.Position;
 
 import java.awt.Rectangle;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.media.opengl.GL2;
 
 import au.gov.ga.worldwind.common.render.fastshape.FastShape;
+import au.gov.ga.worldwind.common.render.fastshape.PositionBuffer;
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
 import au.gov.ga.worldwind.common.util.Util;
 import au.gov.ga.worldwind.common.util.Validate;
 
 /**
  * A mesh generation helper which uses a grid of positions to generate a mesh.
  * Uses the Binary Triangle Tree mesh simplification algorithm.
+ * <p/>
+ * The tree is implicit: instead of creating triangle objects, the variance of
+ * each triangle in a square is precomputed into an error pyramid (a
+ * <code>float</code> array with a value per position), which is cached, so
+ * meshes for different variances can be extracted from the same grid with a
+ * quick traversal. Independent squares are built in parallel.
+ * <p/>
+ * The generated meshes store their positions in a {@link PositionBuffer}. If
+ * the position grid is a {@link PositionBuffer} with (u,v) coordinates, the
+ * coordinates are copied to the mesh positions.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class BinaryTriangleTree
 {
-	private final List<Position> positions;
+	private static final int BUILDER_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+	/** Squares with less positions than this are built on the calling thread */
+	private static final int MIN_PARALLEL_POSITIONS = 65 * 65;
+
+	private static final ExecutorService builders = Executors.newFixedThreadPool(BUILDER_THREADS,
+			new DaemonThreadFactory("Binary triangle tree builder"));
+
+	private final PositionBuffer positions;
 	private final int width;
 	private final int height;
+
+	/** Error pyramids of the squares that have been built, least recently used first */
+	private final Map<Long, float[]> errorCache = new LinkedHashMap<Long, float[]>(16, 0.75f, true);
+	private final int maxErrorCacheLength;
+	private int errorCacheLength = 0;
+
 	private boolean generateTextureCoordinates = false;
 	private boolean forceGLTriangles = false;
 
@@ -58,9 +90,10 @@ public class BinaryTriangleTree
 	{
 		Validate.isTrue(positions.size() == width * height, "Positions list count doesn't match provided width/height");
 
-		this.positions = positions;
+		this.positions = PositionBuffer.valueOf(positions);
 		this.width = width;
 		this.height = height;
+		this.maxErrorCacheLength = width * height;
 	}
 
 	/**
@@ -147,9 +180,9 @@ public class BinaryTriangleTree
 			return buildFullMesh(rectangle);
 		}
 
-		List<BTTTriangle> triangles = new ArrayList<BTTTriangle>();
-		buildMesh(maxVariance, rectangle.x, rectangle.y, rectangle.width, rectangle.height, false, false, triangles);
-		return buildFastShape(triangles);
+		List<int[]> squares = new ArrayList<int[]>();
+		addSquares(rectangle.x, rectangle.y, rectangle.width, rectangle.height, false, false, squares);
+		return buildFastShape(buildTriangles(maxVariance, squares));
 	}
 
 	/**
@@ -171,7 +204,7 @@ public class BinaryTriangleTree
 			return buildFullMesh(rectangle);
 		}
 
-		List<BTTTriangle> triangles = new ArrayList<BTTTriangle>();
+		List<int[]> squares = new ArrayList<int[]>();
 
 		int centerWidth = Util.nextLowestPowerOf2Plus1(rectangle.width);
 		int centerHeight = Util.nextLowestPowerOf2Plus1(rectangle.height);
@@ -180,18 +213,17 @@ public class BinaryTriangleTree
 		int remainingWidth = rectangle.width - centerWidth - centerXOffset;
 		int remainingHeight = rectangle.height - centerHeight - centerYOffset;
 
-		buildMesh(maxVariance, rectangle.x + centerXOffset, rectangle.y + centerYOffset, centerWidth, centerHeight,
-				false, false, triangles);
-		buildMesh(maxVariance, rectangle.x, rectangle.y, centerWidth + centerXOffset, centerYOffset + 1, true, true,
-				triangles);
-		buildMesh(maxVariance, rectangle.x, rectangle.y + centerYOffset, centerXOffset + 1, rectangle.height
-				- centerYOffset, true, false, triangles);
-		buildMesh(maxVariance, rectangle.x + centerWidth + centerXOffset - 1, rectangle.y, remainingWidth + 1,
-				centerHeight + centerYOffset, false, true, triangles);
-		buildMesh(maxVariance, rectangle.x + centerXOffset, rectangle.y + centerHeight + centerYOffset - 1,
-				rectangle.width - centerXOffset, remainingHeight + 1, false, false, triangles);
-
-		return buildFastShape(triangles);
+		addSquares(rectangle.x + centerXOffset, rectangle.y + centerYOffset, centerWidth, centerHeight, false, false,
+				squares);
+		addSquares(rectangle.x, rectangle.y, centerWidth + centerXOffset, centerYOffset + 1, true, true, squares);
+		addSquares(rectangle.x, rectangle.y + centerYOffset, centerXOffset + 1, rectangle.height - centerYOffset,
+				true, false, squares);
+		addSquares(rectangle.x + centerWidth + centerXOffset - 1, rectangle.y, remainingWidth + 1, centerHeight
+				+ centerYOffset, false, true, squares);
+		addSquares(rectangle.x + centerXOffset, rectangle.y + centerHeight + centerYOffset - 1, rectangle.width
+				- centerXOffset, remainingHeight + 1, false, false, squares);
+
+		return buildFastShape(buildTriangles(maxVariance, squares));
 	}
 
 	/**
@@ -204,7 +236,7 @@ public class BinaryTriangleTree
 	 */
 	public FastShape buildFullMesh(Rectangle rect)
 	{
-		List<Position> positions;
+		PositionBuffer positions;
 		if (rect.x == 0 && rect.y == 0 && rect.width == width && rect.height == height)
 		{
 			//if using the entire area, then use the original positions list
@@ -213,12 +245,12 @@ public class BinaryTriangleTree
 		else
 		{
 			//otherwise, create a new sub-list
-			positions = new ArrayList<Position>(rect.width * rect.height);
+			positions = new PositionBuffer(rect.width * rect.height, this.positions.hasCoordinates());
 			for (int y = rect.y; y < rect.height + rect.y; y++)
 			{
 				for (int x = rect.x; x < rect.width + rect.x; x++)
 				{
-					positions.add(this.positions.get(x + y * width));
+					positions.add(this.positions, x + y * width);
 				}
 			}
 		}
@@ -294,13 +326,11 @@ public class BinaryTriangleTree
 	}
 
 	/**
-	 * Build a mesh within the given rectangle, adding triangles to the triangle
-	 * list. Because the BTT algorithm only supports power-of-2-plus-1 squares,
-	 * this function divides the rectangle area into squares and then builds the
-	 * tree from the sub-squares.
+	 * Divide the given rectangle into the squares from which the mesh is built.
+	 * Because the BTT algorithm only supports power-of-2-plus-1 squares, this
+	 * function divides the rectangle area into squares, which are added to the
+	 * square list as {x, y, size} arrays.
 	 * 
-	 * @param maxVariance
-	 *            BTT algorithm variance
 	 * @param x
 	 *            Rectangle x coordinate
 	 * @param y
@@ -313,11 +343,11 @@ public class BinaryTriangleTree
 	 *            Begin the mesh building from the right instead of left?
 	 * @param reverseY
 	 *            Begin the mesh building from the bottom instead of top?
-	 * @param triangles
-	 *            Triangle list to add generated triangles to
+	 * @param squares
+	 *            Square list to add the squares to
 	 */
-	protected void buildMesh(float maxVariance, int x, int y, int width, int height, boolean reverseX,
-			boolean reverseY, List<BTTTriangle> triangles)
+	protected void addSquares(int x, int y, int width, int height, boolean reverseX, boolean reverseY,
+			List<int[]> squares)
 	{
 		//cannot build a mesh between less that 2 rows/columns
 		if (width < 2 || height < 2)
@@ -337,7 +367,7 @@ public class BinaryTriangleTree
 				{
 					int tx = reverseX ? width - xStart - currentWidth + x * 2 : xStart;
 					int ty = reverseY ? height - yStart - yOffset - currentWidth + y * 2 : yStart + yOffset;
-					buildTree(maxVariance, tx, ty, currentWidth, triangles);
+					squares.add(new int[] { tx, ty, currentWidth });
 				}
 				remainingWidth -= currentWidth - 1;
 				xStart += currentWidth - 1;
@@ -347,8 +377,98 @@ public class BinaryTriangleTree
 		}
 	}
 
+	/**
+	 * Build the triangles for each of the given squares. The squares don't
+	 * share any triangles (the square edges are always fully subdivided), so
+	 * large squares are built in parallel.
+	 * 
+	 * @param maxVariance
+	 *            BTT algorithm variance
+	 * @param squares
+	 *            Squares to build, as {x, y, size} arrays
+	 * @return Array containing the grid indices of the apex, left and right
+	 *         positions of each triangle, in square order
+	 */
+	protected int[] buildTriangles(final float maxVariance, List<int[]> squares)
+	{
+		int[][] results = new int[squares.size()][];
+		List<Future<int[]>> futures = new ArrayList<Future<int[]>>(squares.size());
+		boolean parallel = squares.size() > 1;
+		for (int i = 0; i < squares.size(); i++)
+		{
+			final int[] square = squares.get(i);
+			if (parallel && square[2] * square[2] >= MIN_PARALLEL_POSITIONS)
+			{
+				futures.add(builders.submit(new Callable<int[]>()
+				{
+					@Override
+					public int[] call() throws Exception
+					{
+						return buildTree(maxVariance, square[0], square[1], square[2]);
+					}
+				}));
+			}
+			else
+			{
+				futures.add(null);
+				results[i] = buildTree(maxVariance, square[0], square[1], square[2]);
+			}
+		}
+
+		int count = 0;
+		for (int i = 0; i < results.length; i++)
+		{
+			Future<int[]> future = futures.get(i);
+			if (future != null)
+			{
+				results[i] = getResult(future, squares.get(i), maxVariance);
+			}
+			count += results[i].length;
+		}
+
+		int[] triangles = new int[count];
+		int offset = 0;
+		for (int[] result : results)
+		{
+			System.arraycopy(result, 0, triangles, offset, result.length);
+			offset += result.length;
+		}
+		return triangles;
+	}
+
+	/**
+	 * Wait for the result of a square built in parallel. If the current thread
+	 * is interrupted while waiting, the square is built on the current thread.
+	 */
+	private int[] getResult(Future<int[]> future, int[] square, float maxVariance)
+	{
+		try
+		{
+			return future.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return buildTree(maxVariance, square[0], square[1], square[2]);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IllegalStateException(cause);
+		}
+	}
+
 	/**
 	 * Build a BinaryTriangleTree starting at the x,y coordinate.
+	 * <p/>
+	 * A triangle is split if any of its vertices are on the edge of the square,
+	 * or if the error pyramid value at its hypotenuse midpoint is greater than
+	 * or equal to maxVariance. Because the error pyramid includes the errors of
+	 * the triangles that a split depends on, the resulting mesh has no cracks.
 	 * 
 	 * @param maxVariance
 	 *            BTT algorithm variance
@@ -358,10 +478,10 @@ public class BinaryTriangleTree
 	 *            y coordinate from which to start
 	 * @param size
 	 *            Size of the square (must be a power of 2 plus 1)
-	 * @param triangles
-	 *            Triangle list to add generated triangles to
+	 * @return Array containing the grid indices of the apex, left and right
+	 *         positions of each triangle
 	 */
-	protected void buildTree(float maxVariance, int x, int y, int size, List<BTTTriangle> triangles)
+	protected int[] buildTree(float maxVariance, int x, int y, int size)
 	{
 		/*
 		 *  left
@@ -373,298 +493,227 @@ public class BinaryTriangleTree
 		 *  apex   right
 		 */
 
-		int apex1 = x + y * width, left1 = x + (y + size - 1) * width, right1 = (x + size - 1) + y * width;
-		BTTTriangle t1 = new BTTTriangle(apex1, left1, right1);
-
-		int apex2 = (x + size - 1) + (y + size - 1) * width, left2 = (x + size - 1) + y * width, right2 =
-				x + (y + size - 1) * width;
-		BTTTriangle t2 = new BTTTriangle(apex2, left2, right2);
-
-		t1.bottomNeighbour = t2;
-		t2.bottomNeighbour = t1;
-
-		buildFace(maxVariance, t1, x, y, size);
-		buildFace(maxVariance, t2, x, y, size);
-
-		addLeavesToTriangleList(t1, triangles);
-		addLeavesToTriangleList(t2, triangles);
+		float[] errors = getErrors(x, y, size);
+		TriangleList triangles = new TriangleList();
+		int max = size - 1;
+		addLeaves(maxVariance, errors, x, y, size, 0, 0, 0, max, max, 0, triangles);
+		addLeaves(maxVariance, errors, x, y, size, max, max, max, 0, 0, max, triangles);
+		return triangles.toArray();
 	}
 
 	/**
-	 * Recursively sub-divide triangles within t if the triangle variance is
-	 * greater than the maxVariance.
-	 * 
-	 * @param maxVariance
-	 *            BTT algorithm variance
-	 * @param t
-	 *            Triangle to sub-divide
-	 * @param x
-	 *            x coordinate from which the area started
-	 * @param y
-	 *            y coordinate from which the area started
-	 * @param size
-	 *            Size of the square (must be a power of 2 plus 1)
+	 * Recursively add the leaves of the given triangle to the triangle list,
+	 * splitting the triangle if required. Coordinates are relative to the
+	 * square's x,y coordinate.
 	 */
-	protected void buildFace(float maxVariance, BTTTriangle t, int x, int y, int size)
+	private void addLeaves(float maxVariance, float[] errors, int x, int y, int size, int apexX, int apexY,
+			int leftX, int leftY, int rightX, int rightY, TriangleList triangles)
 	{
-		if (t.leftChild != null)
+		int midX = (leftX + rightX) >> 1;
+		int midY = (leftY + rightY) >> 1;
+		boolean atLowestLevel = Math.abs(apexX - leftX) + Math.abs(apexY - leftY) <= 1;
+		if (!atLowestLevel && errors[midX + midY * size] >= maxVariance)
 		{
-			buildFace(maxVariance, t.leftChild, x, y, size);
-			buildFace(maxVariance, t.rightChild, x, y, size);
+			//left child, then right child
+			addLeaves(maxVariance, errors, x, y, size, midX, midY, apexX, apexY, leftX, leftY, triangles);
+			addLeaves(maxVariance, errors, x, y, size, midX, midY, rightX, rightY, apexX, apexY, triangles);
 		}
 		else
 		{
-			boolean atLowestLevel =
-					Math.abs(t.apexIndex - t.leftIndex) == 1 || Math.abs(t.apexIndex - t.rightIndex) == 1;
-			if (!atLowestLevel)
-			{
-				if (isAnyIndexOnEdge(t.apexIndex, t.leftIndex, t.rightIndex, x, y, size)
-						|| calculateVariance(t.apexIndex, t.leftIndex, t.rightIndex) >= maxVariance)
-				{
-					trySplitFace(t);
-					buildFace(maxVariance, t.leftChild, x, y, size);
-					buildFace(maxVariance, t.rightChild, x, y, size);
-				}
-			}
+			triangles.add(x + apexX + (y + apexY) * width, x + leftX + (y + leftY) * width, x + rightX + (y + rightY)
+					* width);
 		}
 	}
 
 	/**
-	 * Test if any of the provided indices are on the edge of the BTT
-	 * calculation square.
+	 * Get the error pyramid for the given square, calculating it if it hasn't
+	 * been calculated yet.
 	 * 
-	 * @param apexIndex
-	 *            Index of the triangle apex position
-	 * @param leftIndex
-	 *            Index of the triangle left position
-	 * @param rightIndex
-	 *            Index of the triangle right position
 	 * @param x
-	 *            x coordinate from which the area started
+	 *            x coordinate from which the square starts
 	 * @param y
-	 *            y coordinate from which the area started
+	 *            y coordinate from which the square starts
 	 * @param size
 	 *            Size of the square (must be a power of 2 plus 1)
-	 * @return True if the provided indices are on the edge of the area
-	 */
-	protected boolean isAnyIndexOnEdge(int apexIndex, int leftIndex, int rightIndex, int x, int y, int size)
-	{
-		return isIndexOnEdge(apexIndex, x, y, size) || isIndexOnEdge(leftIndex, x, y, size)
-				|| isIndexOnEdge(rightIndex, x, y, size);
-	}
-
-	/**
-	 * Test if the provided index is on the edge of the BTT calculation square.
-	 * 
-	 * @param index
-	 *            Position index
-	 * @param x
-	 *            x coordinate from which the area started
-	 * @param y
-	 *            y coordinate from which the area started
-	 * @param size
-	 *            Size of the square (must be a power of 2 plus 1)
-	 * @return True if the provided index is on the edge of the area
-	 */
-	protected boolean isIndexOnEdge(int index, int x, int y, int size)
-	{
-		int ix = index % width;
-		int iy = index / width;
-		return ix == x || iy == y || ix == x + size - 1 || iy == y + size - 1;
-	}
-
-	/**
-	 * Try splitting the given triangle. If the triangle's bottom neighbour
-	 * isn't split, it also gets split to ensure there's no gaps in the mesh.
-	 * 
-	 * @param t
-	 *            Triangle to split.
+	 * @return Error pyramid for the square
+	 * @see #calculateErrors(int, int, int)
 	 */
-	protected void trySplitFace(BTTTriangle t)
+	protected float[] getErrors(int x, int y, int size)
 	{
-		if (t.bottomNeighbour != null)
+		Long key = ((long) (x + y * width) << 32) | size;
+		synchronized (errorCache)
 		{
-			if (t.bottomNeighbour.bottomNeighbour != t)
+			float[] errors = errorCache.get(key);
+			if (errors != null)
 			{
-				trySplitFace(t.bottomNeighbour);
+				return errors;
 			}
-			splitFace(t);
-			splitFace(t.bottomNeighbour);
-			t.leftChild.rightNeighbour = t.bottomNeighbour.rightChild;
-			t.rightChild.leftNeighbour = t.bottomNeighbour.leftChild;
-			t.bottomNeighbour.leftChild.rightNeighbour = t.rightChild;
-			t.bottomNeighbour.rightChild.leftNeighbour = t.leftChild;
 		}
-		else
+
+		float[] errors = calculateErrors(x, y, size);
+		synchronized (errorCache)
 		{
-			splitFace(t);
+			if (errorCache.put(key, errors) == null)
+			{
+				errorCacheLength += errors.length;
+			}
+			//keep the cache at around the size of the position grid
+			Iterator<float[]> iterator = errorCache.values().iterator();
+			while (errorCacheLength > maxErrorCacheLength && errorCache.size() > 1)
+			{
+				errorCacheLength -= iterator.next().length;
+				iterator.remove();
+			}
 		}
+		return errors;
 	}
 
 	/**
-	 * Actually split the given triangle.
+	 * Calculate the error pyramid for the given square. The error pyramid
+	 * stores, for each position in the square, the maximum variance of the
+	 * triangles whose hypotenuse midpoint is that position, including the
+	 * variance of all the triangles that splitting those triangles depends on.
+	 * Triangles touching the edge of the square have infinite variance, so that
+	 * they are always split.
+	 * <p/>
+	 * The pyramid is calculated from the lowest level up, so that the errors of
+	 * each triangle's children have been calculated before the triangle. Each
+	 * level is made up of two steps: a 'diamond' step, calculating the triangles
+	 * with a hypotenuse along the rows or columns, and a 'square' step,
+	 * calculating the triangles with a hypotenuse along the diagonal of a grid
+	 * cell. The positions in each step are visited in grid order.
 	 * 
-	 * @param t
-	 *            Triangle to split.
+	 * @param x
+	 *            x coordinate from which the square starts
+	 * @param y
+	 *            y coordinate from which the square starts
+	 * @param size
+	 *            Size of the square (must be a power of 2 plus 1)
+	 * @return Error pyramid for the square, indexed by position within the
+	 *         square
 	 */
-	protected void splitFace(BTTTriangle t)
+	protected float[] calculateErrors(int x, int y, int size)
 	{
-		int midpointIndex = hypotenuseMidpointIndex(t.leftIndex, t.rightIndex);
-		t.rightChild = new BTTTriangle(midpointIndex, t.rightIndex, t.apexIndex);
-		t.leftChild = new BTTTriangle(midpointIndex, t.apexIndex, t.leftIndex);
-		t.leftChild.leftNeighbour = t.rightChild;
-		t.rightChild.rightNeighbour = t.leftChild;
-
-		t.leftChild.bottomNeighbour = t.leftNeighbour;
-		if (t.leftNeighbour != null)
-		{
-			if (t.leftNeighbour.bottomNeighbour == t)
-			{
-				t.leftNeighbour.bottomNeighbour = t.leftChild;
-			}
-			else if (t.leftNeighbour.leftNeighbour == t)
-			{
-				t.leftNeighbour.leftNeighbour = t.leftChild;
-			}
-			else
-			{
-				t.leftNeighbour.rightNeighbour = t.leftChild;
-			}
-		}
+		int max = size - 1;
+		float[] errors = new float[size * size];
 
-		t.rightChild.bottomNeighbour = t.rightNeighbour;
-		if (t.rightNeighbour != null)
+		for (int half = 1; half < max; half *= 2)
 		{
-			if (t.rightNeighbour.bottomNeighbour == t)
-			{
-				t.rightNeighbour.bottomNeighbour = t.rightChild;
-			}
-			else if (t.rightNeighbour.rightNeighbour == t)
+			int cell = half * 2;
+
+			//diamond step: hypotenuses of length 'cell' along the rows and columns
+			for (int midY = 0; midY <= max; midY += half)
 			{
-				t.rightNeighbour.rightNeighbour = t.rightChild;
+				boolean horizontal = midY % cell == 0;
+				for (int midX = horizontal ? half : 0; midX <= max; midX += cell)
+				{
+					int dx = horizontal ? half : 0;
+					int dy = horizontal ? 0 : half;
+					float error;
+					//hypotenuse ends, then the apexes of the triangles on either side
+					if (isOnEdge(midX - dx, midY - dy, max) || isOnEdge(midX + dx, midY + dy, max)
+							|| isOnEdge(midX - dy, midY - dx, max) || isOnEdge(midX + dy, midY + dx, max))
+					{
+						error = Float.POSITIVE_INFINITY;
+					}
+					else
+					{
+						error = calculateDelta(x, y, midX, midY, dx, dy);
+						if (half > 1)
+						{
+							//children's hypotenuses are the legs, with midpoints on the diagonals
+							int quarter = half / 2;
+							error = Math.max(error, errors[midX - quarter + (midY - quarter) * size]);
+							error = Math.max(error, errors[midX + quarter + (midY - quarter) * size]);
+							error = Math.max(error, errors[midX - quarter + (midY + quarter) * size]);
+							error = Math.max(error, errors[midX + quarter + (midY + quarter) * size]);
+						}
+					}
+					errors[midX + midY * size] = error;
+				}
 			}
-			else
+
+			//square step: hypotenuses along the diagonals of cells of size 'cell'
+			for (int midY = half, j = 0; midY < max; midY += cell, j++)
 			{
-				t.rightNeighbour.leftNeighbour = t.rightChild;
+				for (int midX = half, i = 0; midX < max; midX += cell, i++)
+				{
+					float error;
+					if (isOnEdge(midX - half, midY - half, max) || isOnEdge(midX + half, midY + half, max))
+					{
+						error = Float.POSITIVE_INFINITY;
+					}
+					else
+					{
+						//the root triangles share the anti-diagonal; below them, the diagonal alternates between cells
+						boolean antiDiagonal = cell == max || (i + j) % 2 == 1;
+						error = calculateDelta(x, y, midX, midY, half, antiDiagonal ? -half : half);
+						//children's hypotenuses are the cell edges
+						error = Math.max(error, errors[midX - half + midY * size]);
+						error = Math.max(error, errors[midX + half + midY * size]);
+						error = Math.max(error, errors[midX + (midY - half) * size]);
+						error = Math.max(error, errors[midX + (midY + half) * size]);
+					}
+					errors[midX + midY * size] = error;
+				}
 			}
 		}
-	}
 
-	/**
-	 * Calculate the variance of the provided triangle.
-	 * 
-	 * @param apexIndex
-	 *            Index of the triangle apex position.
-	 * @param leftIndex
-	 *            Index of the triangle left position.
-	 * @param rightIndex
-	 *            Index of the triangle right position.
-	 * @return Variance of the triangle.
-	 */
-	protected float calculateVariance(int apexIndex, int leftIndex, int rightIndex)
-	{
-		if (Math.abs(apexIndex - leftIndex) == 1 || Math.abs(apexIndex - rightIndex) == 1)
-			return 0;
-
-		int midpointIndex = hypotenuseMidpointIndex(leftIndex, rightIndex);
-		double midpointElevation = positions.get(midpointIndex).elevation;
-		double interpolatedElevation = (positions.get(leftIndex).elevation + positions.get(rightIndex).elevation) / 2;
-		float delta = (float) Math.abs(midpointElevation - interpolatedElevation);
-		delta = Math.max(delta, calculateVariance(midpointIndex, rightIndex, apexIndex));
-		delta = Math.max(delta, calculateVariance(midpointIndex, apexIndex, leftIndex));
-		return delta;
+		return errors;
 	}
 
 	/**
-	 * Index of the midpoint position between the two provided indices.
-	 * 
-	 * @param leftIndex
-	 *            Left position index.
-	 * @param rightIndex
-	 *            Right position index.
-	 * @return Index of the midpoint between leftIndex and rightIndex.
+	 * Calculate the difference between the elevation of the position at the
+	 * given midpoint and the elevation interpolated between the positions at
+	 * the midpoint -/+ (dx,dy). Coordinates are relative to the square's x,y
+	 * coordinate.
 	 */
-	protected int hypotenuseMidpointIndex(int leftIndex, int rightIndex)
+	private float calculateDelta(int x, int y, int midX, int midY, int dx, int dy)
 	{
-		int leftX = leftIndex % width;
-		int leftY = leftIndex / width;
-		int rightX = rightIndex % width;
-		int rightY = rightIndex / width;
-		return (leftX + rightX) / 2 + ((leftY + rightY) / 2) * width;
+		int midpointIndex = x + midX + (y + midY) * width;
+		int offset = dx + dy * width;
+		double midpointElevation = positions.getElevation(midpointIndex);
+		double interpolatedElevation =
+				(positions.getElevation(midpointIndex - offset) + positions.getElevation(midpointIndex + offset)) / 2;
+		return (float) Math.abs(midpointElevation - interpolatedElevation);
 	}
 
 	/**
-	 * Recursively add all the leaves of the binary triangle tree to the
-	 * provided triangle list, beginning at the provided triangle.
-	 * 
-	 * @param t
-	 *            Parent triangle to add leaves from
-	 * @param triangles
-	 *            Triangle list to add leaves to
+	 * Test if the given square coordinate is on the edge of the square.
 	 */
-	protected void addLeavesToTriangleList(BTTTriangle t, List<BTTTriangle> triangles)
+	private static boolean isOnEdge(int x, int y, int max)
 	{
-		if (t.leftChild == null || t.rightChild == null)
-		{
-			triangles.add(t);
-		}
-		else
-		{
-			//recurse through children
-			addLeavesToTriangleList(t.leftChild, triangles);
-			addLeavesToTriangleList(t.rightChild, triangles);
-		}
+		return x == 0 || y == 0 || x == max || y == max;
 	}
 
 	/**
-	 * Build a {@link FastShape} object from the list of binary triangle tree
-	 * leaves.
+	 * Build a {@link FastShape} object from the binary triangle tree leaves.
 	 * 
 	 * @param triangles
-	 *            Triangle list.
-	 * @return FastShape containing triangles from the provided triangle list.
+	 *            Array containing the grid indices of the apex, left and right
+	 *            positions of each triangle.
+	 * @return FastShape containing triangles from the provided triangle array.
 	 */
-	protected FastShape buildFastShape(List<BTTTriangle> triangles)
+	protected FastShape buildFastShape(int[] triangles)
 	{
-		List<Position> positions = new ArrayList<Position>();
-		List<Integer> originalIndices = new ArrayList<Integer>();
-		Map<Position, Integer> positionIndexMap = new HashMap<Position, Integer>();
-		int[] indices = new int[triangles.size() * 3];
+		PositionBuffer positions = new PositionBuffer(triangles.length / 3, this.positions.hasCoordinates());
+		int[] originalIndices = new int[triangles.length];
+		//maps grid indices to mesh indices, -1 if the grid position isn't in the mesh yet
+		int[] meshIndices = new int[this.positions.size()];
+		Arrays.fill(meshIndices, -1);
+		int[] indices = new int[triangles.length];
 		int i = 0;
 
-		for (BTTTriangle triangle : triangles)
+		for (int j = 0; j < triangles.length; j += 3)
 		{
-			Position apexPosition = this.positions.get(triangle.apexIndex);
-			Position leftPosition = this.positions.get(triangle.leftIndex);
-			Position rightPosition = this.positions.get(triangle.rightIndex);
-			Integer apexIndex = positionIndexMap.get(apexPosition);
-			Integer leftIndex = positionIndexMap.get(leftPosition);
-			Integer rightIndex = positionIndexMap.get(rightPosition);
-			if (apexIndex == null)
-			{
-				apexIndex = positions.size();
-				positionIndexMap.put(apexPosition, apexIndex);
-				positions.add(apexPosition);
-				originalIndices.add(triangle.apexIndex);
-			}
-			if (leftIndex == null)
-			{
-				leftIndex = positions.size();
-				positionIndexMap.put(leftPosition, leftIndex);
-				positions.add(leftPosition);
-				originalIndices.add(triangle.leftIndex);
-			}
-			if (rightIndex == null)
-			{
-				rightIndex = positions.size();
-				positionIndexMap.put(rightPosition, rightIndex);
-				positions.add(rightPosition);
-				originalIndices.add(triangle.rightIndex);
-			}
+			int apexIndex = addMeshPosition(triangles[j], positions, meshIndices, originalIndices);
+			int leftIndex = addMeshPosition(triangles[j + 1], positions, meshIndices, originalIndices);
+			int rightIndex = addMeshPosition(triangles[j + 2], positions, meshIndices, originalIndices);
 			indices[i++] = leftIndex;
 			indices[i++] = apexIndex;
 			indices[i++] = rightIndex;
 		}
+		positions.trimToSize();
 
 		FastShape shape = new FastShape(positions, indices, GL2.GL_TRIANGLES);
 
@@ -672,8 +721,9 @@ public class BinaryTriangleTree
 		{
 			float[] textureCoordinateBuffer = new float[positions.size() * 2];
 			i = 0;
-			for (Integer index : originalIndices)
+			for (int j = 0; j < positions.size(); j++)
 			{
+				int index = originalIndices[j];
 				int x = index % width;
 				int y = index / width;
 				textureCoordinateBuffer[i++] = x / (float) (width - 1);
@@ -686,34 +736,46 @@ public class BinaryTriangleTree
 	}
 
 	/**
-	 * Helper class that stores binary triangle tree information.
+	 * Add the grid position at the given index to the mesh positions, if it
+	 * hasn't already been added.
+	 * 
+	 * @return Index of the position in the mesh positions
 	 */
-	protected class BTTTriangle
+	private int addMeshPosition(int gridIndex, PositionBuffer positions, int[] meshIndices, int[] originalIndices)
 	{
-		public final int apexIndex;
-		public final int leftIndex;
-		public final int rightIndex;
-		public BTTTriangle leftChild;
-		public BTTTriangle rightChild;
-		public BTTTriangle leftNeighbour;
-		public BTTTriangle rightNeighbour;
-		public BTTTriangle bottomNeighbour;
-
-		public BTTTriangle(int apexIndex, int leftIndex, int rightIndex)
+		int meshIndex = meshIndices[gridIndex];
+		if (meshIndex < 0)
 		{
-			this.apexIndex = apexIndex;
-			this.leftIndex = leftIndex;
-			this.rightIndex = rightIndex;
+			meshIndex = positions.size();
+			meshIndices[gridIndex] = meshIndex;
+			originalIndices[meshIndex] = gridIndex;
+			positions.add(this.positions, gridIndex);
+		}
+		return meshIndex;
+	}
+
+	/**
+	 * Growable array of triangle grid indices.
+	 */
+	private static class TriangleList
+	{
+		private int[] indices = new int[48];
+		private int size = 0;
+
+		public void add(int apexIndex, int leftIndex, int rightIndex)
+		{
+			if (size + 3 > indices.length)
+			{
+				indices = Arrays.copyOf(indices, indices.length * 2);
+			}
+			indices[size++] = apexIndex;
+			indices[size++] = leftIndex;
+			indices[size++] = rightIndex;
 		}
 
-		@Override
-		public String toString()
+		public int[] toArray()
 		{
-			return "Left: " + (leftIndex % BinaryTriangleTree.this.width) + ","
-					+ (leftIndex / BinaryTriangleTree.this.width) + ", Apex: "
-					+ (apexIndex % BinaryTriangleTree.this.width) + "," + (apexIndex / BinaryTriangleTree.this.width)
-					+ ", Right: " + (rightIndex % BinaryTriangleTree.this.width) + ","
-					+ (rightIndex / BinaryTriangleTree.this.width);
+			return Arrays.copyOf(indices, size);
 		}
 	}
 }
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.profiling;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * {@link ProfilerWriter} that writes frames as comma-separated values. A
+ * header row is written before the first frame, and again whenever the set of
+ * metrics changes (when a metric is created during the session).
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class CsvProfilerWriter extends ProfilerWriter
+{
+	private String[] headerNames;
+
+	public CsvProfilerWriter(Writer writer)
+	{
+		super(writer);
+	}
+
+	@Override
+	protected void writeFrame(Writer writer, ProfilerFrame frame) throws IOException
+	{
+		if (frame.getNames() != headerNames)
+		{
+			headerNames = frame.getNames();
+			writer.write("Frame,Time,");
+			writer.write(escape(Profiler.FRAME_TIME));
+			for (String name : headerNames)
+			{
+				writer.write(',');
+				writer.write(escape(name));
+			}
+			writer.write('\n');
+		}
+
+		writer.write(String.valueOf(frame.getFrameNumber()));
+		writer.write(',');
+		writer.write(String.valueOf(frame.getTime()));
+		writer.write(',');
+		writer.write(String.valueOf(frame.getFrameTime()));
+		for (int i = 0; i < frame.getMetricCount(); i++)
+		{
+			writer.write(',');
+			writer.write(String.valueOf(frame.getValue(i)));
+		}
+		writer.write('\n');
+	}
+
+	private static String escape(String value)
+	{
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0)
+		{
+			return value;
+		}
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+}
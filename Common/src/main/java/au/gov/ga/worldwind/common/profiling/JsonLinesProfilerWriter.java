@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.profiling;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * {@link ProfilerWriter} that writes each frame as a JSON object on its own
+ * line, for example:
+ * 
+ * <pre>
+ * {"frame":12,"time":1349067331000,"frameTime":16210,"metrics":{"Terrain tessellation":2510,...}}
+ * </pre>
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class JsonLinesProfilerWriter extends ProfilerWriter
+{
+	public JsonLinesProfilerWriter(Writer writer)
+	{
+		super(writer);
+	}
+
+	@Override
+	protected void writeFrame(Writer writer, ProfilerFrame frame) throws IOException
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"frame\":").append(frame.getFrameNumber());
+		sb.append(",\"time\":").append(frame.getTime());
+		sb.append(",\"frameTime\":").append(frame.getFrameTime());
+		sb.append(",\"metrics\":{");
+		for (int i = 0; i < frame.getMetricCount(); i++)
+		{
+			if (i > 0)
+			{
+				sb.append(',');
+			}
+			appendString(sb, frame.getName(i));
+			sb.append(':').append(frame.getValue(i));
+		}
+		sb.append("}}\n");
+		writer.write(sb.toString());
+	}
+
+	private static void appendString(StringBuilder sb, String value)
+	{
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\')
+			{
+				sb.append('\\').append(c);
+			}
+			else if (c < 0x20)
+			{
+				sb.append(String.format("\\u%04x", (int) c));
+			}
+			else
+			{
+				sb.append(c);
+			}
+		}
+		sb.append('"');
+	}
+}
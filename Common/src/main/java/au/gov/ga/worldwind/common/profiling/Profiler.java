@@ -0,0 +1,449 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.profiling;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+
+import javax.management.ObjectName;
+
+/**
+ * Records where the time in each rendered frame goes. Code to be profiled uses
+ * named {@link ProfilerTimer}s and {@link ProfilerCounter}s, and values that
+ * are sampled once per frame (such as queue depths) are added as
+ * {@link ProfilerGauge}s. At the end of each frame, the values of all the
+ * metrics are collected into a {@link ProfilerFrame}, which is kept in a
+ * {@link ProfilerRecorder} ring buffer and passed to the
+ * {@link ProfilerListener}s (such as a {@link ProfilerWriter} streaming the
+ * session to a file).
+ * <p/>
+ * The profiler is disabled by default, in which case timers and counters cost
+ * a single volatile read. It can be enabled using the
+ * {@value #ENABLED_PROPERTY} system property, {@link #setEnabled(boolean)}, or
+ * through JMX once {@link #registerMBean()} has been called.
+ * <p/>
+ * The frames are driven by the scene controller, which calls
+ * {@link #frameStarted()} and {@link #frameCompleted()} around each repaint.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class Profiler implements ProfilerMXBean
+{
+	public static final String ENABLED_PROPERTY = "au.gov.ga.worldwind.profiler";
+	public static final String OBJECT_NAME = "au.gov.ga.worldwind:type=Profiler";
+	public static final int DEFAULT_RECORDER_CAPACITY = 3600;
+
+	public static final String FRAME_TIME = "Frame time";
+	public static final String PRE_PAINT_TASKS = "Pre-paint tasks";
+	public static final String POST_PAINT_TASKS = "Post-paint tasks";
+	public static final String TERRAIN = "Terrain tessellation";
+	public static final String PRE_RENDER = "Pre-render";
+	public static final String PICK = "Pick";
+	public static final String DRAW = "Draw";
+	public static final String EFFECTS = "Effect passes";
+	public static final String TEXTURE_UPLOAD = "Texture upload";
+	public static final String TEXTURE_UPLOADS = "Texture uploads";
+	public static final String RETRIEVALS_PENDING = "Retrievals pending";
+	public static final String LAYER_PREFIX = "Layer: ";
+
+	public static final Profiler INSTANCE = new Profiler();
+
+	private volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+	private final Map<String, ProfilerMetric> metricsByName = new ConcurrentHashMap<String, ProfilerMetric>();
+	//copy-on-write, so that frames with the same metrics share the names array
+	private volatile ProfilerMetric[] metrics = new ProfilerMetric[0];
+	private volatile String[] names = new String[0];
+	private final ProfilerRecorder recorder;
+	private final List<ProfilerListener> listeners = new CopyOnWriteArrayList<ProfilerListener>();
+	private long frameStart = 0;
+	private long frameCount = 0;
+
+	public Profiler()
+	{
+		this(DEFAULT_RECORDER_CAPACITY);
+	}
+
+	/**
+	 * Create a new {@link Profiler}.
+	 * 
+	 * @param recorderCapacity
+	 *            Number of frames to keep in memory
+	 */
+	public Profiler(int recorderCapacity)
+	{
+		recorder = new ProfilerRecorder(recorderCapacity);
+	}
+
+	/**
+	 * Register the {@link #INSTANCE} with the platform MBean server, under the
+	 * {@value #OBJECT_NAME} name. Failures are logged.
+	 */
+	public static synchronized void registerMBean()
+	{
+		try
+		{
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+			{
+				ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, name);
+			}
+		}
+		catch (Exception e)
+		{
+			Logging.logger().log(Level.WARNING, "Error registering profiler MBean", e);
+		}
+	}
+
+	@Override
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	@Override
+	public synchronized void setEnabled(boolean enabled)
+	{
+		if (enabled && !this.enabled)
+		{
+			//discard anything accumulated before the profiler was disabled
+			for (ProfilerMetric metric : metrics)
+			{
+				metric.sample();
+			}
+			frameStart = 0;
+		}
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Get the timer with the given name, creating it if it doesn't exist.
+	 * 
+	 * @param name
+	 * @return Timer with the given name
+	 * @throws IllegalArgumentException
+	 *             If a metric of another type exists with the given name
+	 */
+	public ProfilerTimer getTimer(String name)
+	{
+		ProfilerMetric metric = metricsByName.get(name);
+		if (metric == null)
+		{
+			metric = addMetric(new ProfilerTimer(this, name));
+		}
+		return cast(metric, ProfilerTimer.class);
+	}
+
+	/**
+	 * Get the counter with the given name, creating it if it doesn't exist.
+	 * 
+	 * @param name
+	 * @return Counter with the given name
+	 * @throws IllegalArgumentException
+	 *             If a metric of another type exists with the given name
+	 */
+	public ProfilerCounter getCounter(String name)
+	{
+		ProfilerMetric metric = metricsByName.get(name);
+		if (metric == null)
+		{
+			metric = addMetric(new ProfilerCounter(this, name));
+		}
+		return cast(metric, ProfilerCounter.class);
+	}
+
+	/**
+	 * Add a gauge, which is sampled at the end of each frame. If a gauge with
+	 * the given name already exists, it is replaced.
+	 * 
+	 * @param name
+	 * @param gauge
+	 * @throws IllegalArgumentException
+	 *             If a metric of another type exists with the given name
+	 */
+	public synchronized void addGauge(String name, ProfilerGauge gauge)
+	{
+		ProfilerMetric existing = metricsByName.get(name);
+		if (existing != null)
+		{
+			cast(existing, GaugeMetric.class).gauge = gauge;
+			return;
+		}
+		addMetric(new GaugeMetric(name, gauge));
+	}
+
+	private synchronized ProfilerMetric addMetric(ProfilerMetric metric)
+	{
+		ProfilerMetric existing = metricsByName.get(metric.getName());
+		if (existing != null)
+		{
+			return existing;
+		}
+
+		ProfilerMetric[] newMetrics = Arrays.copyOf(metrics, metrics.length + 1);
+		String[] newNames = Arrays.copyOf(names, names.length + 1);
+		newMetrics[metrics.length] = metric;
+		newNames[names.length] = metric.getName();
+		metricsByName.put(metric.getName(), metric);
+		metrics = newMetrics;
+		names = newNames;
+		return metric;
+	}
+
+	/**
+	 * Stop recording a metric. Metrics for objects that come and go (such as
+	 * layers) should be removed when the object is discarded; otherwise every
+	 * frame records a value for every object ever profiled.
+	 * 
+	 * @param metric
+	 */
+	public synchronized void removeMetric(ProfilerMetric metric)
+	{
+		if (!isRecorded(metric))
+		{
+			return;
+		}
+
+		int index = Arrays.asList(metrics).indexOf(metric);
+		ProfilerMetric[] newMetrics = new ProfilerMetric[metrics.length - 1];
+		String[] newNames = new String[names.length - 1];
+		System.arraycopy(metrics, 0, newMetrics, 0, index);
+		System.arraycopy(metrics, index + 1, newMetrics, index, newMetrics.length - index);
+		System.arraycopy(names, 0, newNames, 0, index);
+		System.arraycopy(names, index + 1, newNames, index, newNames.length - index);
+		metricsByName.remove(metric.getName());
+		metrics = newMetrics;
+		names = newNames;
+	}
+
+	/**
+	 * @param metric
+	 * @return Is the metric recorded by this profiler (false once removed)?
+	 */
+	public boolean isRecorded(ProfilerMetric metric)
+	{
+		return metricsByName.get(metric.getName()) == metric;
+	}
+
+	private static <T extends ProfilerMetric> T cast(ProfilerMetric metric, Class<T> type)
+	{
+		if (!type.isInstance(metric))
+		{
+			throw new IllegalArgumentException("Metric '" + metric.getName() + "' is not a "
+					+ type.getSimpleName());
+		}
+		return type.cast(metric);
+	}
+
+	/**
+	 * Mark the start of a frame. Called on the render thread.
+	 */
+	public void frameStarted()
+	{
+		if (enabled)
+		{
+			frameStart = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Mark the end of a frame, recording the metric values accumulated since
+	 * the previous frame. Called on the render thread.
+	 */
+	public void frameCompleted()
+	{
+		if (!enabled || frameStart == 0)
+		{
+			return;
+		}
+
+		long frameTime = (System.nanoTime() - frameStart) / 1000;
+		frameStart = 0;
+
+		ProfilerFrame frame;
+		synchronized (this)
+		{
+			ProfilerMetric[] metrics = this.metrics;
+			long[] values = new long[metrics.length];
+			for (int i = 0; i < metrics.length; i++)
+			{
+				values[i] = metrics[i].sample();
+			}
+			frame = new ProfilerFrame(++frameCount, System.currentTimeMillis(), frameTime, names, values);
+		}
+
+		recorder.add(frame);
+		for (ProfilerListener listener : listeners)
+		{
+			try
+			{
+				listener.frameRecorded(frame);
+			}
+			catch (Exception e)
+			{
+				Logging.logger().log(Level.WARNING, "Error notifying profiler listener", e);
+			}
+		}
+	}
+
+	/**
+	 * @return The ring buffer containing the most recent frames
+	 */
+	public ProfilerRecorder getRecorder()
+	{
+		return recorder;
+	}
+
+	public void addListener(ProfilerListener listener)
+	{
+		listeners.add(listener);
+	}
+
+	public void removeListener(ProfilerListener listener)
+	{
+		listeners.remove(listener);
+	}
+
+	@Override
+	public synchronized long getFrameCount()
+	{
+		return frameCount;
+	}
+
+	@Override
+	public int getRecordedFrameCount()
+	{
+		return recorder.size();
+	}
+
+	@Override
+	public double getAverageFrameMillis()
+	{
+		List<ProfilerFrame> frames = recorder.getFrames();
+		if (frames.isEmpty())
+		{
+			return 0;
+		}
+		long total = 0;
+		for (ProfilerFrame frame : frames)
+		{
+			total += frame.getFrameTime();
+		}
+		return total / 1000d / frames.size();
+	}
+
+	@Override
+	public Map<String, Long> getLatestFrame()
+	{
+		ProfilerFrame frame = recorder.getLatest();
+		return frame == null ? new LinkedHashMap<String, Long>() : frame.toMap();
+	}
+
+	@Override
+	public Map<String, Double> getAverages()
+	{
+		//metrics created during the session are averaged over the frames that recorded them
+		Map<String, long[]> totals = new LinkedHashMap<String, long[]>();
+		for (ProfilerFrame frame : recorder.getFrames())
+		{
+			for (Map.Entry<String, Long> entry : frame.toMap().entrySet())
+			{
+				long[] total = totals.get(entry.getKey());
+				if (total == null)
+				{
+					total = new long[2];
+					totals.put(entry.getKey(), total);
+				}
+				total[0] += entry.getValue();
+				total[1]++;
+			}
+		}
+
+		Map<String, Double> averages = new LinkedHashMap<String, Double>();
+		for (Map.Entry<String, long[]> entry : totals.entrySet())
+		{
+			averages.put(entry.getKey(), entry.getValue()[0] / (double) entry.getValue()[1]);
+		}
+		return averages;
+	}
+
+	@Override
+	public void clear()
+	{
+		recorder.clear();
+	}
+
+	@Override
+	public void exportCsv(String path) throws IOException
+	{
+		export(new CsvProfilerWriter(new FileWriter(path)));
+	}
+
+	@Override
+	public void exportJsonLines(String path) throws IOException
+	{
+		export(new JsonLinesProfilerWriter(new FileWriter(path)));
+	}
+
+	private void export(ProfilerWriter writer) throws IOException
+	{
+		try
+		{
+			writer.write(recorder.getFrames());
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	/**
+	 * {@link ProfilerMetric} that samples a {@link ProfilerGauge}.
+	 */
+	private static class GaugeMetric extends ProfilerMetric
+	{
+		private volatile ProfilerGauge gauge;
+
+		public GaugeMetric(String name, ProfilerGauge gauge)
+		{
+			super(name);
+			this.gauge = gauge;
+		}
+
+		@Override
+		protected long sample()
+		{
+			try
+			{
+				return gauge.getValue();
+			}
+			catch (RuntimeException e)
+			{
+				//the sampled object may not be ready yet (or any more); record a negative value
+				return -1;
+			}
+		}
+	}
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.profiling;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link ProfilerMetric} that counts events during each frame. Counting is
+ * ignored while the {@link Profiler} is disabled.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class ProfilerCounter extends ProfilerMetric
+{
+	private final Profiler profiler;
+	private final AtomicLong count = new AtomicLong();
+
+	ProfilerCounter(Profiler profiler, String name)
+	{
+		super(name);
+		this.profiler = profiler;
+	}
+
+	/**
+	 * Add one to this frame's count.
+	 */
+	public void increment()
+	{
+		add(1);
+	}
+
+	/**
+	 * Add the given amount to this frame's count.
+	 * 
+	 * @param amount
+	 */
+	public void add(long amount)
+	{
+		if (profiler.isEnabled())
+		{
+			count.addAndGet(amount);
+		}
+	}
+
+	@Override
+	protected long sample()
+	{
+		return count.getAndSet(0);
+	}
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.profiling;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The metric values recorded by the {@link Profiler} for a single frame.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class ProfilerFrame
+{
+	private final long frameNumber;
+	private final long time;
+	private final long frameTime;
+	private final String[] names;
+	private final long[] values;
+
+	/**
+	 * Create a new {@link ProfilerFrame}.
+	 * 
+	 * @param frameNumber
+	 *            Number of this frame
+	 * @param time
+	 *            Time at which this frame completed, in milliseconds since the
+	 *            epoch
+	 * @param frameTime
+	 *            Time taken by this frame, in microseconds
+	 * @param names
+	 *            Metric names; the array is shared between frames with the
+	 *            same metrics, and must not be modified
+	 * @param values
+	 *            Metric values, in the same order as the names
+	 */
+	public ProfilerFrame(long frameNumber, long time, long frameTime, String[] names, long[] values)
+	{
+		this.frameNumber = frameNumber;
+		this.time = time;
+		this.frameTime = frameTime;
+		this.names = names;
+		this.values = values;
+	}
+
+	/**
+	 * @return Number of this frame, starting at 1
+	 */
+	public long getFrameNumber()
+	{
+		return frameNumber;
+	}
+
+	/**
+	 * @return Time at which this frame completed, in milliseconds since the
+	 *         epoch
+	 */
+	public long getTime()
+	{
+		return time;
+	}
+
+	/**
+	 * @return Time taken by this frame, in microseconds
+	 */
+	public long getFrameTime()
+	{
+		return frameTime;
+	}
+
+	/**
+	 * @return Number of metrics recorded for this frame
+	 */
+	public int getMetricCount()
+	{
+		return names.length;
+	}
+
+	/**
+	 * @return Name of the metric at the given index
+	 */
+	public String getName(int index)
+	{
+		return names[index];
+	}
+
+	/**
+	 * @return Value of the metric at the given index
+	 */
+	public long getValue(int index)
+	{
+		return values[index];
+	}
+
+	/**
+	 * @return Value of the metric with the given name, or null if the metric
+	 *         wasn't recorded for this frame
+	 */
+	public Long getValue(String name)
+	{
+		for (int i = 0; i < names.length; i++)
+		{
+			if (names[i].equals(name))
+			{
+				return values[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return Metric names, shared between frames with the same metrics
+	 */
+	String[] getNames()
+	{
+		return names;
+	}
+
+	/**
+	 * @return Map of metric name to value, including the frame time
+	 */
+	public Map<String, Long> toMap()
+	{
+		Map<String, Long> map = new LinkedHashMap<String, Long>();
+		map.put(Profiler.FRAME_TIME, frameTime);
+		for (int i = 0; i < names.length; i++)
+		{
+			map.put(names[i], values[i]);
+		}
+		return map;
+	}
+}
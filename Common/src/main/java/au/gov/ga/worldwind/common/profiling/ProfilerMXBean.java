@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.profiling;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * JMX management interface of the {@link Profiler}. Times are in
+ * microseconds, unless stated otherwise.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public interface ProfilerMXBean
+{
+	/**
+	 * @return Is the profiler recording frames?
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Enable/disable recording of frames.
+	 * 
+	 * @param enabled
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * @return Number of frames recorded since the profiler was created
+	 */
+	long getFrameCount();
+
+	/**
+	 * @return Number of frames kept in memory
+	 */
+	int getRecordedFrameCount();
+
+	/**
+	 * @return Average frame time of the frames kept in memory, in milliseconds
+	 */
+	double getAverageFrameMillis();
+
+	/**
+	 * @return Metric values of the most recent frame
+	 */
+	Map<String, Long> getLatestFrame();
+
+	/**
+	 * @return Average metric values of the frames kept in memory
+	 */
+	Map<String, Double> getAverages();
+
+	/**
+	 * Remove the frames kept in memory.
+	 */
+	void clear();
+
+	/**
+	 * Write the frames kept in memory to a CSV file.
+	 * 
+	 * @param path
+	 *            Path of the file to write
+	 * @throws IOException
+	 */
+	void exportCsv(String path) throws IOException;
+
+	/**
+	 * Write the frames kept in memory to a JSON-lines file.
+	 * 
+	 * @param path
+	 *            Path of the file to write
+	 * @throws IOException
+	 */
+	void exportJsonLines(String path) throws IOException;
+}
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.profiling;
+
+/**
+ * A named value recorded by the {@link Profiler} for each frame.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public abstract class ProfilerMetric
+{
+	private final String name;
+
+	protected ProfilerMetric(String name)
+	{
+		this.name = name;
+	}
+
+	/**
+	 * @return Name of this metric
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Return the value of this metric for the frame that has just completed,
+	 * and reset any per-frame accumulation.
+	 * 
+	 * @return Value of this metric for the completed frame
+	 */
+	protected abstract long sample();
+
+	@Override
+	public String toString()
+	{
+		return name;
+	}
+}
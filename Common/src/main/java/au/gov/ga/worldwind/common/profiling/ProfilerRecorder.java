@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.profiling;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ring buffer that keeps the most recent {@link ProfilerFrame}s.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class ProfilerRecorder
+{
+	private final ProfilerFrame[] frames;
+	private int next = 0;
+	private int size = 0;
+
+	/**
+	 * Create a new {@link ProfilerRecorder}.
+	 * 
+	 * @param capacity
+	 *            Number of frames to keep
+	 */
+	public ProfilerRecorder(int capacity)
+	{
+		if (capacity <= 0)
+		{
+			throw new IllegalArgumentException("Capacity must be greater than 0");
+		}
+		frames = new ProfilerFrame[capacity];
+	}
+
+	/**
+	 * @return Number of frames this recorder keeps
+	 */
+	public int getCapacity()
+	{
+		return frames.length;
+	}
+
+	/**
+	 * Add a frame, replacing the oldest frame if the recorder is full.
+	 * 
+	 * @param frame
+	 */
+	public synchronized void add(ProfilerFrame frame)
+	{
+		frames[next] = frame;
+		next = (next + 1) % frames.length;
+		size = Math.min(size + 1, frames.length);
+	}
+
+	/**
+	 * @return Number of frames currently recorded
+	 */
+	public synchronized int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return The most recently recorded frame, or null if no frames are
+	 *         recorded
+	 */
+	public synchronized ProfilerFrame getLatest()
+	{
+		if (size == 0)
+		{
+			return null;
+		}
+		return frames[(next - 1 + frames.length) % frames.length];
+	}
+
+	/**
+	 * @return A copy of the recorded frames, oldest first
+	 */
+	public synchronized List<ProfilerFrame> getFrames()
+	{
+		List<ProfilerFrame> list = new ArrayList<ProfilerFrame>(size);
+		int first = (next - size + frames.length) % frames.length;
+		for (int i = 0; i < size; i++)
+		{
+			list.add(frames[(first + i) % frames.length]);
+		}
+		return list;
+	}
+
+	/**
+	 * Remove all the recorded frames.
+	 */
+	public synchronized void clear()
+	{
+		for (int i = 0; i < frames.length; i++)
+		{
+			frames[i] = null;
+		}
+		next = 0;
+		size = 0;
+	}
+}
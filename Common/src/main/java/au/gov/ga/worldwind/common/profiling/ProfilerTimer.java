@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.profiling;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link ProfilerMetric} that accumulates the time spent in a section of code
+ * during each frame. The frame value is in microseconds.
+ * <p/>
+ * Usage:
+ * 
+ * <pre>
+ * long start = timer.start();
+ * try
+ * {
+ * 	...
+ * }
+ * finally
+ * {
+ * 	timer.stop(start);
+ * }
+ * </pre>
+ * 
+ * If the {@link Profiler} is disabled, {@link #start()} returns 0 without
+ * reading the clock, and {@link #stop(long)} does nothing.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class ProfilerTimer extends ProfilerMetric
+{
+	private final Profiler profiler;
+	private final AtomicLong nanos = new AtomicLong();
+
+	ProfilerTimer(Profiler profiler, String name)
+	{
+		super(name);
+		this.profiler = profiler;
+	}
+
+	/**
+	 * Start timing.
+	 * 
+	 * @return Start time to pass to {@link #stop(long)}, or 0 if the profiler
+	 *         is disabled
+	 */
+	public long start()
+	{
+		return profiler.isEnabled() ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Stop timing, adding the time since the given start time to this frame's
+	 * total.
+	 * 
+	 * @param start
+	 *            Value returned by {@link #start()}
+	 */
+	public void stop(long start)
+	{
+		if (start != 0)
+		{
+			nanos.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	protected long sample()
+	{
+		return nanos.getAndSet(0) / 1000;
+	}
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.profiling;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * Base class for exporters that write {@link ProfilerFrame}s to a
+ * {@link Writer}, one line per frame. Can be added to the {@link Profiler} as
+ * a {@link ProfilerListener} to stream a session to a file, or used to write
+ * the frames kept by a {@link ProfilerRecorder}.
+ * <p/>
+ * The writer is buffered. If writing fails while listening, the error is
+ * logged once and later frames are ignored.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public abstract class ProfilerWriter implements ProfilerListener, Closeable
+{
+	private final Writer writer;
+	private boolean failed = false;
+
+	public ProfilerWriter(Writer writer)
+	{
+		this.writer = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer);
+	}
+
+	/**
+	 * Write the given frames.
+	 * 
+	 * @param frames
+	 * @throws IOException
+	 */
+	public void write(List<ProfilerFrame> frames) throws IOException
+	{
+		for (ProfilerFrame frame : frames)
+		{
+			write(frame);
+		}
+	}
+
+	/**
+	 * Write a single frame.
+	 * 
+	 * @param frame
+	 * @throws IOException
+	 */
+	public synchronized void write(ProfilerFrame frame) throws IOException
+	{
+		writeFrame(writer, frame);
+	}
+
+	/**
+	 * Write the given frame to the writer.
+	 */
+	protected abstract void writeFrame(Writer writer, ProfilerFrame frame) throws IOException;
+
+	@Override
+	public void frameRecorded(ProfilerFrame frame)
+	{
+		if (failed)
+		{
+			return;
+		}
+		try
+		{
+			write(frame);
+		}
+		catch (IOException e)
+		{
+			failed = true;
+			Logging.logger().log(Level.WARNING, "Error writing profiler frame", e);
+		}
+	}
+
+	public synchronized void flush() throws IOException
+	{
+		writer.flush();
+	}
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		writer.close();
+	}
+}
@@ -15,21 +15,36 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.common.render;
 
+import gov.nasa.worldwind.layers.Layer;
+import gov.nasa.worldwind.layers.LayerList;
 import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.render.DrawContextImpl;
 import gov.nasa.worldwind.render.GLRuntimeCapabilities;
 import gov.nasa.worldwind.terrain.SectorGeometryList;
 
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
 import javax.media.opengl.GL;
 import javax.media.opengl.GL2;
 
 import au.gov.ga.worldwind.common.exaggeration.VerticalExaggerationListener;
 import au.gov.ga.worldwind.common.exaggeration.VerticalExaggerationService;
+import au.gov.ga.worldwind.common.profiling.Profiler;
+import au.gov.ga.worldwind.common.profiling.ProfilerTimer;
 
 /**
  * Extension of {@link DrawContextImpl} that provides better wireframe elevation
  * rendering. Also stores the sector geometry for tiled layers that ignore
  * elevation (rendered on a flat surface).
+ * <p/>
+ * When the {@link Profiler} is enabled, the time between each change of the
+ * current layer during the render pass is recorded against that layer. The
+ * pre-render and pick passes are not recorded per layer; they are covered by
+ * the scene controller's {@link Profiler#PRE_RENDER} and {@link Profiler#PICK}
+ * timers. A layer's timer is removed from the profiler once the layer is no
+ * longer in the model (see {@link #removeUnusedLayerTimers()}).
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -39,6 +54,9 @@ public class ExtendedDrawContext extends DrawContextDelegate implements Vertical
 	protected ExtendedSurfaceTileRenderer geographicSurfaceTileRenderer;
 	protected SectorGeometryList flatSurfaceGeometry;
 	protected SectorGeometryList oldSurfaceGeomtry;
+	protected ProfilerTimer currentLayerTimer;
+	protected long currentLayerStart;
+	protected final Map<Layer, ProfilerTimer> layerTimers = new IdentityHashMap<Layer, ProfilerTimer>();
 
 	public ExtendedDrawContext(DrawContext delegate)
 	{
@@ -78,6 +96,78 @@ public class ExtendedDrawContext extends DrawContextDelegate implements Vertical
 		VerticalExaggerationService.INSTANCE.set(verticalExaggeration);
 	}
 
+	@Override
+	public void setCurrentLayer(Layer layer)
+	{
+		//the scene controller sets the current layer before rendering each layer, and clears it afterwards
+		if (currentLayerTimer != null)
+		{
+			currentLayerTimer.stop(currentLayerStart);
+			currentLayerTimer = null;
+		}
+		//only the render pass is timed per layer; the same layers are also visited in pre-render and pick mode
+		if (layer != null && !isPreRenderMode() && !isPickingMode() && Profiler.INSTANCE.isEnabled())
+		{
+			currentLayerTimer = getLayerTimer(layer);
+			currentLayerStart = currentLayerTimer.start();
+		}
+		super.setCurrentLayer(layer);
+	}
+
+	/**
+	 * Get the profiler timer for a layer, replacing it if the layer has been
+	 * renamed. Layers with the same name share a timer.
+	 */
+	protected ProfilerTimer getLayerTimer(Layer layer)
+	{
+		String name =
+				Profiler.LAYER_PREFIX + (layer.getName() != null ? layer.getName() : layer.getClass().getSimpleName());
+		ProfilerTimer timer = layerTimers.get(layer);
+		if (timer == null || !timer.getName().equals(name) || !Profiler.INSTANCE.isRecorded(timer))
+		{
+			if (timer != null)
+			{
+				layerTimers.remove(layer);
+				releaseLayerTimer(timer);
+			}
+			timer = Profiler.INSTANCE.getTimer(name);
+			layerTimers.put(layer, timer);
+		}
+		return timer;
+	}
+
+	/**
+	 * Remove the profiler timers of layers that are no longer in the model, so
+	 * that the profiler doesn't keep a metric for every layer ever rendered.
+	 * Called by the scene controller at the end of each frame.
+	 */
+	public void removeUnusedLayerTimers()
+	{
+		if (layerTimers.isEmpty())
+		{
+			return;
+		}
+		LayerList layers = getLayers();
+		Iterator<Map.Entry<Layer, ProfilerTimer>> iterator = layerTimers.entrySet().iterator();
+		while (iterator.hasNext())
+		{
+			Map.Entry<Layer, ProfilerTimer> entry = iterator.next();
+			if (layers == null || !layers.contains(entry.getKey()))
+			{
+				iterator.remove();
+				releaseLayerTimer(entry.getValue());
+			}
+		}
+	}
+
+	private void releaseLayerTimer(ProfilerTimer timer)
+	{
+		if (!layerTimers.containsValue(timer))
+		{
+			Profiler.INSTANCE.removeMetric(timer);
+		}
+	}
+
 	@Override
 	public void setSurfaceGeometry(SectorGeometryList surfaceGeometry)
 	{
@@ -17,6 +17,7 @@ package au.gov.ga.worldwind.common.render;
 
 import gov.nasa.worldwind.BasicSceneController;
 import gov.nasa.worldwind.SceneController;
+import gov.nasa.worldwind.WorldWind;
 import gov.nasa.worldwind.geom.Sector;
 import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.render.SurfaceObjectTileBuilder;
@@ -35,6 +36,9 @@ import java.util.concurrent.locks.ReentrantLock;
 import au.gov.ga.worldwind.common.effects.Effect;
 import au.gov.ga.worldwind.common.exaggeration.VerticalExaggerationListener;
 import au.gov.ga.worldwind.common.exaggeration.VerticalExaggerationService;
+import au.gov.ga.worldwind.common.profiling.Profiler;
+import au.gov.ga.worldwind.common.profiling.ProfilerGauge;
+import au.gov.ga.worldwind.common.profiling.ProfilerTimer;
 import au.gov.ga.worldwind.common.util.SectorClipPlanes;
 import au.gov.ga.worldwind.common.view.delegate.IDelegateView;
 
@@ -45,12 +49,35 @@ import au.gov.ga.worldwind.common.view.delegate.IDelegateView;
  * <p/>
  * Also provides the ability to add {@link PaintTask}'s to call before or after
  * a repaint occurs.
+ * <p/>
+ * Each repaint is a frame of the {@link Profiler}, which times the stages of
+ * the repaint when enabled.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class ExtendedSceneController extends BasicSceneController implements DrawableSceneController,
 		VerticalExaggerationListener
 {
+	private static final ProfilerTimer prePaintTimer = Profiler.INSTANCE.getTimer(Profiler.PRE_PAINT_TASKS);
+	private static final ProfilerTimer postPaintTimer = Profiler.INSTANCE.getTimer(Profiler.POST_PAINT_TASKS);
+	private static final ProfilerTimer terrainTimer = Profiler.INSTANCE.getTimer(Profiler.TERRAIN);
+	private static final ProfilerTimer preRenderTimer = Profiler.INSTANCE.getTimer(Profiler.PRE_RENDER);
+	private static final ProfilerTimer pickTimer = Profiler.INSTANCE.getTimer(Profiler.PICK);
+	private static final ProfilerTimer drawTimer = Profiler.INSTANCE.getTimer(Profiler.DRAW);
+	private static final ProfilerTimer effectsTimer = Profiler.INSTANCE.getTimer(Profiler.EFFECTS);
+
+	static
+	{
+		Profiler.INSTANCE.addGauge(Profiler.RETRIEVALS_PENDING, new ProfilerGauge()
+		{
+			@Override
+			public long getValue()
+			{
+				return WorldWind.getRetrievalService().getNumRetrieversPending();
+			}
+		});
+	}
+
 	private FlatRectangularTessellator flatTessellator = new FlatRectangularTessellator();
 	protected final SectorClipPlanes sectorClipping = new SectorClipPlanes();
 
@@ -112,31 +139,91 @@ public class ExtendedSceneController extends BasicSceneController implements Dra
 	@Override
 	public void doRepaint(DrawContext dc)
 	{
-		doPrePaintTasks(dc);
-		this.initializeFrame(dc);
+		Profiler.INSTANCE.frameStarted();
 		try
 		{
-			this.applyView(dc);
-			this.createPickFrustum(dc);
-			this.createTerrain(dc);
-			this.preRender(dc);
-			this.clearFrame(dc);
-			this.pick(dc);
-			this.clearFrame(dc);
-			if (view instanceof IDelegateView)
+			long start = prePaintTimer.start();
+			try
+			{
+				doPrePaintTasks(dc);
+			}
+			finally
+			{
+				prePaintTimer.stop(start);
+			}
+			this.initializeFrame(dc);
+			try
+			{
+				this.applyView(dc);
+				this.createPickFrustum(dc);
+				start = terrainTimer.start();
+				try
+				{
+					this.createTerrain(dc);
+				}
+				finally
+				{
+					terrainTimer.stop(start);
+				}
+				start = preRenderTimer.start();
+				try
+				{
+					this.preRender(dc);
+				}
+				finally
+				{
+					preRenderTimer.stop(start);
+				}
+				this.clearFrame(dc);
+				start = pickTimer.start();
+				try
+				{
+					this.pick(dc);
+				}
+				finally
+				{
+					pickTimer.stop(start);
+				}
+				this.clearFrame(dc);
+				start = drawTimer.start();
+				try
+				{
+					if (view instanceof IDelegateView)
+					{
+						((IDelegateView) view).draw(dc, this);
+					}
+					else
+					{
+						this.draw(dc);
+					}
+				}
+				finally
+				{
+					drawTimer.stop(start);
+				}
+			}
+			finally
 			{
-				((IDelegateView) view).draw(dc, this);
+				this.finalizeFrame(dc);
 			}
-			else
+			start = postPaintTimer.start();
+			try
+			{
+				doPostPaintTasks(dc);
+			}
+			finally
 			{
-				this.draw(dc);
+				postPaintTimer.stop(start);
 			}
 		}
 		finally
 		{
-			this.finalizeFrame(dc);
+			Profiler.INSTANCE.frameCompleted();
+			if (dc instanceof ExtendedDrawContext)
+			{
+				((ExtendedDrawContext) dc).removeUnusedLayerTimers();
+			}
 		}
-		doPostPaintTasks(dc);
 	}
 
 	/**
@@ -209,22 +296,31 @@ public class ExtendedSceneController extends BasicSceneController implements Dra
 			firstEffect.unbindFrameBuffer(dc, dimensions);
 		}
 
-		for (int i = 1; i < effects.size(); i++)
+		//time the effect passes, excluding the scene drawn into the first effect's frame buffer
+		long start = effectsTimer.start();
+		try
 		{
-			try
+			for (int i = 1; i < effects.size(); i++)
 			{
-				effects.get(i).bindFrameBuffer(dc, dimensions);
-				this.clearFrame(dc);
-				//draw the previous effect's frame buffer onto the current frame buffer:
-				effects.get(i - 1).drawFrameBufferWithEffect(dc, dimensions);
-			}
-			finally
-			{
-				effects.get(i).unbindFrameBuffer(dc, dimensions);
+				try
+				{
+					effects.get(i).bindFrameBuffer(dc, dimensions);
+					this.clearFrame(dc);
+					//draw the previous effect's frame buffer onto the current frame buffer:
+					effects.get(i - 1).drawFrameBufferWithEffect(dc, dimensions);
+				}
+				finally
+				{
+					effects.get(i).unbindFrameBuffer(dc, dimensions);
+				}
 			}
-		}
 
-		lastEffect.drawFrameBufferWithEffect(dc, dimensions); //draw the final effect's frame buffer onto the final buffer
+			lastEffect.drawFrameBufferWithEffect(dc, dimensions); //draw the final effect's frame buffer onto the final buffer
+		}
+		finally
+		{
+			effectsTimer.stop(start);
+		}
 	}
 
 	protected void clippedDraw(DrawContext dc)
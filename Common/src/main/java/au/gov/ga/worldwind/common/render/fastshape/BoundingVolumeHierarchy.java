@@ -0,0 +1,1316 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.render.fastshape;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.media.opengl.GL2;
+
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
+
+/**
+ * A bounding volume hierarchy over the primitives of a {@link FastShape}, used
+ * to answer ray, nearest point and box/frustum queries on the CPU, without
+ * rendering a pick pass.
+ * <p/>
+ * The hierarchy is built from the shape's vertex array (which is relative to
+ * an offset, the center of the shape's bounding sphere) and optional index
+ * array. Every OpenGL primitive mode is supported: points, the line modes
+ * (line loops and strips are split into segments) and the triangle modes
+ * (strips, fans, quads and polygons are split into triangles). Primitives are
+ * numbered in the order they appear in this decomposition; for example, the
+ * n'th triangle of a triangle strip is primitive n. Query coordinates are in
+ * model coordinates, ie the offset is applied.
+ * <p/>
+ * Nodes are split at the median primitive along the longest axis of the
+ * primitive centroids, and are stored in depth-first order in primitive
+ * arrays. Large hierarchies are built on a shared pool of daemon threads. When
+ * only the vertex positions change (for example, for a change in vertical
+ * exaggeration), {@link #refit(float[], double, double, double)} recalculates
+ * the node bounds without rebuilding the tree.
+ * <p/>
+ * Instances are immutable, so they can be queried from any thread.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class BoundingVolumeHierarchy
+{
+	private static final int LEAF_SIZE = 4;
+	private static final int MAX_DEPTH = 64;
+	private static final int MIN_PARALLEL_PRIMITIVES = 64 * 1024;
+	private static final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+	private static final ExecutorService executor = THREAD_COUNT > 1 ? Executors.newFixedThreadPool(THREAD_COUNT,
+			new DaemonThreadFactory("Bounding volume hierarchy")) : null;
+
+	private final float[] vertices;
+	private final int[] primitives;
+	private final int primitiveSize;
+	private final int primitiveCount;
+	private final double offsetX;
+	private final double offsetY;
+	private final double offsetZ;
+
+	//primitive indices, in the order they are referenced by the leaves
+	private final int[] order;
+	//3 values per node: first primitive (in order), primitive count, right child index (-1 for leaves)
+	private final int[] nodes;
+	//6 values per node: min x, y, z, max x, y, z
+	private final float[] bounds;
+
+	/**
+	 * Build a hierarchy over the primitives of a shape.
+	 * 
+	 * @param vertices
+	 *            Vertex array (x, y, z per vertex), relative to the offset;
+	 *            the hierarchy keeps a reference to this array, so it must not
+	 *            be modified afterwards
+	 * @param indices
+	 *            Index array, or null if the vertices are drawn in order
+	 * @param mode
+	 *            OpenGL primitive mode (eg {@link GL2#GL_TRIANGLE_STRIP})
+	 * @param offsetX
+	 *            Offset added to the vertices to get model coordinates
+	 * @param offsetY
+	 * @param offsetZ
+	 * @return New hierarchy
+	 * @throws IllegalArgumentException
+	 *             if the mode is unsupported, or an index is outside the
+	 *             vertex array
+	 */
+	public static BoundingVolumeHierarchy build(float[] vertices, int[] indices, int mode, double offsetX,
+			double offsetY, double offsetZ)
+	{
+		int primitiveSize = getPrimitiveSize(mode);
+		int[] primitives = createPrimitives(indices, vertices.length / 3, mode);
+		return new BoundingVolumeHierarchy(vertices, primitives, primitiveSize, offsetX, offsetY, offsetZ);
+	}
+
+	private BoundingVolumeHierarchy(float[] vertices, int[] primitives, int primitiveSize, double offsetX,
+			double offsetY, double offsetZ)
+	{
+		this.vertices = vertices;
+		this.primitives = primitives;
+		this.primitiveSize = primitiveSize;
+		this.primitiveCount = primitives.length / primitiveSize;
+		this.offsetX = offsetX;
+		this.offsetY = offsetY;
+		this.offsetZ = offsetZ;
+
+		//triangles with repeated vertices (such as those joining triangle strips) have no area, but can be long
+		//enough to bloat the bounds of every node they are in, so they are left out of the tree
+		int treeCount = 0;
+		int[] order = new int[primitiveCount];
+		for (int i = 0; i < primitiveCount; i++)
+		{
+			if (!isDegenerate(i))
+			{
+				order[treeCount++] = i;
+			}
+		}
+		this.order = treeCount == primitiveCount ? order : Arrays.copyOf(order, treeCount);
+
+		Map<Integer, Integer> nodeCounts = new HashMap<Integer, Integer>();
+		int nodeCount = treeCount == 0 ? 0 : countNodes(treeCount, nodeCounts);
+		nodes = new int[nodeCount * 3];
+		bounds = new float[nodeCount * 6];
+		if (nodeCount > 0)
+		{
+			buildTree(calculateCentroids(), nodeCounts);
+		}
+	}
+
+	private BoundingVolumeHierarchy(BoundingVolumeHierarchy topology, float[] vertices, double offsetX,
+			double offsetY, double offsetZ)
+	{
+		this.vertices = vertices;
+		this.primitives = topology.primitives;
+		this.primitiveSize = topology.primitiveSize;
+		this.primitiveCount = topology.primitiveCount;
+		this.offsetX = offsetX;
+		this.offsetY = offsetY;
+		this.offsetZ = offsetZ;
+		this.order = topology.order;
+		this.nodes = topology.nodes;
+		this.bounds = new float[topology.bounds.length];
+		calculateAllBounds();
+	}
+
+	/**
+	 * Create a hierarchy with the same tree as this one, over new positions of
+	 * the same vertices. This is much faster than rebuilding the hierarchy,
+	 * but queries become slower if the vertices have moved a long way relative
+	 * to each other.
+	 * 
+	 * @param vertices
+	 *            New vertex array, with the same number of vertices
+	 * @param offsetX
+	 *            New offset added to the vertices
+	 * @param offsetY
+	 * @param offsetZ
+	 * @return Refit hierarchy
+	 */
+	public BoundingVolumeHierarchy refit(float[] vertices, double offsetX, double offsetY, double offsetZ)
+	{
+		if (vertices.length != this.vertices.length)
+		{
+			throw new IllegalArgumentException("Vertex count changed from " + getVertexCount() + " to "
+					+ (vertices.length / 3));
+		}
+		return new BoundingVolumeHierarchy(this, vertices, offsetX, offsetY, offsetZ);
+	}
+
+	/**
+	 * @return Number of vertices in the vertex array
+	 */
+	public int getVertexCount()
+	{
+		return vertices.length / 3;
+	}
+
+	/**
+	 * @return Number of primitives in the hierarchy
+	 */
+	public int getPrimitiveCount()
+	{
+		return primitiveCount;
+	}
+
+	/**
+	 * @return Number of vertices per primitive: 1 for points, 2 for lines, and
+	 *         3 for triangles
+	 */
+	public int getPrimitiveSize()
+	{
+		return primitiveSize;
+	}
+
+	/**
+	 * @return Number of nodes in the tree
+	 */
+	public int getNodeCount()
+	{
+		return nodes.length / 3;
+	}
+
+	/**
+	 * @param primitive
+	 * @return Indices (into the vertex array) of the primitive's vertices
+	 */
+	public int[] getPrimitiveVertices(int primitive)
+	{
+		int start = primitive * primitiveSize;
+		return Arrays.copyOfRange(primitives, start, start + primitiveSize);
+	}
+
+	/**
+	 * Find the first primitive intersected by a ray. Triangles are intersected
+	 * from either side. As points and lines have no area, they are
+	 * intersected if they are within the tolerance of the ray.
+	 * 
+	 * @param originX
+	 *            Ray origin, in model coordinates
+	 * @param originY
+	 * @param originZ
+	 * @param directionX
+	 *            Ray direction (needn't be normalized)
+	 * @param directionY
+	 * @param directionZ
+	 * @param tolerance
+	 *            Maximum distance of point and line primitives from the ray
+	 * @return Closest intersection along the ray, or null if nothing is hit
+	 */
+	public Hit intersect(double originX, double originY, double originZ, double directionX, double directionY,
+			double directionZ, double tolerance)
+	{
+		double length = Math.sqrt(directionX * directionX + directionY * directionY + directionZ * directionZ);
+		if (nodes.length == 0 || length == 0)
+		{
+			return null;
+		}
+
+		double[] origin = new double[] { originX - offsetX, originY - offsetY, originZ - offsetZ };
+		double[] direction = new double[] { directionX / length, directionY / length, directionZ / length };
+		double[] inverse = new double[] { 1 / direction[0], 1 / direction[1], 1 / direction[2] };
+		double pad = primitiveSize == 3 ? 0 : tolerance;
+
+		double[] point = new double[3];
+		double[] bestPoint = new double[3];
+		double best = Double.POSITIVE_INFINITY;
+		int bestPrimitive = -1;
+
+		//entry distance of each node on the stack, so that nodes behind a closer hit can be skipped
+		int[] stack = new int[MAX_DEPTH * 2];
+		double[] stackT = new double[MAX_DEPTH * 2];
+		int top = 0;
+		double rootT = intersectBox(0, origin, inverse, pad, best);
+		if (rootT >= 0)
+		{
+			stackT[top] = rootT;
+			stack[top++] = 0;
+		}
+		while (top > 0)
+		{
+			int node = stack[--top];
+			if (stackT[top] > best)
+			{
+				continue;
+			}
+			int n = node * 3;
+			if (nodes[n + 2] < 0)
+			{
+				for (int i = nodes[n], end = i + nodes[n + 1]; i < end; i++)
+				{
+					double t = intersectPrimitive(order[i], origin, direction, tolerance, best, point);
+					if (t >= 0 && t < best)
+					{
+						best = t;
+						bestPrimitive = order[i];
+						System.arraycopy(point, 0, bestPoint, 0, 3);
+					}
+				}
+				continue;
+			}
+
+			//visit the nearest child first, as its hits may allow the other to be skipped
+			int left = node + 1, right = nodes[n + 2];
+			double leftT = intersectBox(left, origin, inverse, pad, best);
+			double rightT = intersectBox(right, origin, inverse, pad, best);
+			if (leftT >= 0 && rightT >= 0)
+			{
+				boolean leftFirst = leftT <= rightT;
+				stackT[top] = leftFirst ? rightT : leftT;
+				stack[top++] = leftFirst ? right : left;
+				stackT[top] = leftFirst ? leftT : rightT;
+				stack[top++] = leftFirst ? left : right;
+			}
+			else if (leftT >= 0)
+			{
+				stackT[top] = leftT;
+				stack[top++] = left;
+			}
+			else if (rightT >= 0)
+			{
+				stackT[top] = rightT;
+				stack[top++] = right;
+			}
+		}
+
+		return bestPrimitive < 0 ? null : createHit(bestPrimitive, bestPoint, best);
+	}
+
+	/**
+	 * Find the closest point on any primitive to a point.
+	 * 
+	 * @param x
+	 *            Point, in model coordinates
+	 * @param y
+	 * @param z
+	 * @param maxDistance
+	 *            Primitives further than this distance are ignored
+	 * @return Closest point, or null if there are no primitives within the
+	 *         maximum distance
+	 */
+	public Hit nearest(double x, double y, double z, double maxDistance)
+	{
+		if (nodes.length == 0)
+		{
+			return null;
+		}
+
+		double[] p = new double[] { x - offsetX, y - offsetY, z - offsetZ };
+		double[] point = new double[3];
+		double[] bestPoint = new double[3];
+		double best = maxDistance * maxDistance;
+		int bestPrimitive = -1;
+
+		int[] stack = new int[MAX_DEPTH * 2];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0)
+		{
+			int node = stack[--top];
+			int n = node * 3;
+			if (boxDistanceSquared(node, p) > best)
+			{
+				continue;
+			}
+			if (nodes[n + 2] < 0)
+			{
+				for (int i = nodes[n], end = i + nodes[n + 1]; i < end; i++)
+				{
+					closestPoint(order[i], p, point);
+					double dx = point[0] - p[0], dy = point[1] - p[1], dz = point[2] - p[2];
+					double distance = dx * dx + dy * dy + dz * dz;
+					if (distance <= best)
+					{
+						best = distance;
+						bestPrimitive = order[i];
+						System.arraycopy(point, 0, bestPoint, 0, 3);
+					}
+				}
+				continue;
+			}
+
+			int left = node + 1, right = nodes[n + 2];
+			boolean leftFirst = boxDistanceSquared(left, p) <= boxDistanceSquared(right, p);
+			stack[top++] = leftFirst ? right : left;
+			stack[top++] = leftFirst ? left : right;
+		}
+
+		return bestPrimitive < 0 ? null : createHit(bestPrimitive, bestPoint, Math.sqrt(best));
+	}
+
+	/**
+	 * Find the primitives whose bounding boxes intersect an axis-aligned box.
+	 * Point primitives are only returned if they are inside the box.
+	 * 
+	 * @param minX
+	 *            Box minimum, in model coordinates
+	 * @param minY
+	 * @param minZ
+	 * @param maxX
+	 *            Box maximum, in model coordinates
+	 * @param maxY
+	 * @param maxZ
+	 * @return Sorted indices of the primitives found
+	 */
+	public int[] findInBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ)
+	{
+		return findInPlanes(new double[] { 1, 0, 0, -minX, -1, 0, 0, maxX, 0, 1, 0, -minY, 0, -1, 0, maxY, 0, 0, 1,
+				-minZ, 0, 0, -1, maxZ });
+	}
+
+	/**
+	 * Find the primitives whose bounding boxes intersect a convex volume
+	 * bounded by planes, such as a view frustum. This is conservative: a line
+	 * or triangle whose bounding box straddles a corner of the volume may be
+	 * returned even though it is outside. Point primitives are only returned
+	 * if they are inside the volume.
+	 * 
+	 * @param planes
+	 *            Four values (a, b, c, d) per plane, in model coordinates; a
+	 *            point is inside the volume if
+	 *            <code>ax + by + cz + d &gt;= 0</code> for every plane
+	 * @return Sorted indices of the primitives found
+	 */
+	public int[] findInPlanes(double[] planes)
+	{
+		if (nodes.length == 0)
+		{
+			return new int[0];
+		}
+
+		//move the planes into the space of the vertices
+		double[] local = planes.clone();
+		for (int i = 0; i + 3 < local.length; i += 4)
+		{
+			local[i + 3] += local[i] * offsetX + local[i + 1] * offsetY + local[i + 2] * offsetZ;
+		}
+
+		IntArray result = new IntArray();
+		float[] box = new float[6];
+		int[] stack = new int[MAX_DEPTH * 2];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0)
+		{
+			int node = stack[--top];
+			int n = node * 3;
+			System.arraycopy(bounds, node * 6, box, 0, 6);
+			int classification = classify(box, local);
+			if (classification < 0)
+			{
+				continue;
+			}
+			if (classification > 0)
+			{
+				//entirely inside, so every primitive in the subtree is found
+				result.add(order, nodes[n], nodes[n + 1]);
+			}
+			else if (nodes[n + 2] < 0)
+			{
+				for (int i = nodes[n], end = i + nodes[n + 1]; i < end; i++)
+				{
+					calculatePrimitiveBounds(order[i], box, 0);
+					if (classify(box, local) >= 0)
+					{
+						result.add(order[i]);
+					}
+				}
+			}
+			else
+			{
+				stack[top++] = nodes[n + 2];
+				stack[top++] = node + 1;
+			}
+		}
+
+		int[] found = result.toArray();
+		Arrays.sort(found);
+		return found;
+	}
+
+	/**
+	 * Classify a box against a convex volume.
+	 * 
+	 * @return -1 if the box is outside the volume, 1 if it is entirely inside,
+	 *         and 0 if it intersects the volume's boundary
+	 */
+	private static int classify(float[] box, double[] planes)
+	{
+		int classification = 1;
+		for (int i = 0; i + 3 < planes.length; i += 4)
+		{
+			double a = planes[i], b = planes[i + 1], c = planes[i + 2], d = planes[i + 3];
+			//the corners furthest along and against the plane normal
+			double far = a * (a > 0 ? box[3] : box[0]) + b * (b > 0 ? box[4] : box[1]) + c * (c > 0 ? box[5] : box[2]);
+			if (far + d < 0)
+			{
+				return -1;
+			}
+			double near = a * (a > 0 ? box[0] : box[3]) + b * (b > 0 ? box[1] : box[4]) + c * (c > 0 ? box[2] : box[5]);
+			if (near + d < 0)
+			{
+				classification = 0;
+			}
+		}
+		return classification;
+	}
+
+	/**
+	 * @return Distance along the ray to the node's bounds (expanded by the
+	 *         pad), or -1 if the ray misses the bounds before the maximum
+	 *         distance
+	 */
+	private double intersectBox(int node, double[] origin, double[] inverse, double pad, double maxT)
+	{
+		int b = node * 6;
+		double near = 0, far = maxT;
+		for (int axis = 0; axis < 3; axis++)
+		{
+			double min = bounds[b + axis] - pad - origin[axis];
+			double max = bounds[b + 3 + axis] + pad - origin[axis];
+			if (Double.isInfinite(inverse[axis]))
+			{
+				//ray is parallel to this slab
+				if (min > 0 || max < 0)
+				{
+					return -1;
+				}
+				continue;
+			}
+			double t1 = min * inverse[axis];
+			double t2 = max * inverse[axis];
+			near = Math.max(near, Math.min(t1, t2));
+			far = Math.min(far, Math.max(t1, t2));
+			if (near > far)
+			{
+				return -1;
+			}
+		}
+		return near;
+	}
+
+	private double boxDistanceSquared(int node, double[] p)
+	{
+		int b = node * 6;
+		double distance = 0;
+		for (int axis = 0; axis < 3; axis++)
+		{
+			double d = Math.max(bounds[b + axis] - p[axis], p[axis] - bounds[b + 3 + axis]);
+			if (d > 0)
+			{
+				distance += d * d;
+			}
+		}
+		return distance;
+	}
+
+	/**
+	 * Intersect a primitive with a normalized ray.
+	 * 
+	 * @param point
+	 *            Set to the point on the primitive that was hit
+	 * @return Distance along the ray to the primitive, or -1 if it isn't hit
+	 *         before the maximum distance
+	 */
+	private double intersectPrimitive(int primitive, double[] origin, double[] direction, double tolerance,
+			double maxT, double[] point)
+	{
+		int p = primitive * primitiveSize;
+		double ox = origin[0], oy = origin[1], oz = origin[2];
+		double dx = direction[0], dy = direction[1], dz = direction[2];
+		int a = primitives[p] * 3;
+
+		if (primitiveSize == 1)
+		{
+			double px = vertices[a], py = vertices[a + 1], pz = vertices[a + 2];
+			double t = Math.max(0, (px - ox) * dx + (py - oy) * dy + (pz - oz) * dz);
+			double ex = ox + t * dx - px, ey = oy + t * dy - py, ez = oz + t * dz - pz;
+			if (t >= maxT || ex * ex + ey * ey + ez * ez > tolerance * tolerance)
+			{
+				return -1;
+			}
+			set(point, px, py, pz);
+			return t;
+		}
+
+		int b = primitives[p + 1] * 3;
+		if (primitiveSize == 2)
+		{
+			//closest points between the ray and the segment
+			double ax = vertices[a], ay = vertices[a + 1], az = vertices[a + 2];
+			double sx = vertices[b] - ax, sy = vertices[b + 1] - ay, sz = vertices[b + 2] - az;
+			double rx = ox - ax, ry = oy - ay, rz = oz - az;
+			double ss = sx * sx + sy * sy + sz * sz;
+			double ds = dx * sx + dy * sy + dz * sz;
+			double dr = dx * rx + dy * ry + dz * rz;
+			double sr = sx * rx + sy * ry + sz * rz;
+			double t, s;
+			if (ss == 0)
+			{
+				s = 0;
+				t = Math.max(0, -dr);
+			}
+			else
+			{
+				double denominator = ss - ds * ds;
+				t = denominator > 1e-12 * ss ? Math.max(0, (ds * sr - dr * ss) / denominator) : 0;
+				s = (sr + t * ds) / ss;
+				if (s < 0)
+				{
+					s = 0;
+					t = Math.max(0, -dr);
+				}
+				else if (s > 1)
+				{
+					s = 1;
+					t = Math.max(0, ds - dr);
+				}
+			}
+			double ex = rx + t * dx - s * sx, ey = ry + t * dy - s * sy, ez = rz + t * dz - s * sz;
+			if (t >= maxT || ex * ex + ey * ey + ez * ez > tolerance * tolerance)
+			{
+				return -1;
+			}
+			set(point, ax + s * sx, ay + s * sy, az + s * sz);
+			return t;
+		}
+
+		//Moller-Trumbore, without culling back faces
+		int c = primitives[p + 2] * 3;
+		double ax = vertices[a], ay = vertices[a + 1], az = vertices[a + 2];
+		double e1x = vertices[b] - ax, e1y = vertices[b + 1] - ay, e1z = vertices[b + 2] - az;
+		double e2x = vertices[c] - ax, e2y = vertices[c + 1] - ay, e2z = vertices[c + 2] - az;
+		double px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+		double determinant = e1x * px + e1y * py + e1z * pz;
+		if (determinant == 0)
+		{
+			return -1;
+		}
+		double inverse = 1 / determinant;
+		double tx = ox - ax, ty = oy - ay, tz = oz - az;
+		double u = (tx * px + ty * py + tz * pz) * inverse;
+		if (u < 0 || u > 1)
+		{
+			return -1;
+		}
+		double qx = ty * e1z - tz * e1y, qy = tz * e1x - tx * e1z, qz = tx * e1y - ty * e1x;
+		double v = (dx * qx + dy * qy + dz * qz) * inverse;
+		if (v < 0 || u + v > 1)
+		{
+			return -1;
+		}
+		double t = (e2x * qx + e2y * qy + e2z * qz) * inverse;
+		if (t < 0 || t >= maxT)
+		{
+			return -1;
+		}
+		set(point, ox + t * dx, oy + t * dy, oz + t * dz);
+		return t;
+	}
+
+	/**
+	 * Calculate the closest point on a primitive to a point.
+	 */
+	private void closestPoint(int primitive, double[] p, double[] out)
+	{
+		int i = primitive * primitiveSize;
+		int a = primitives[i] * 3;
+		double ax = vertices[a], ay = vertices[a + 1], az = vertices[a + 2];
+		if (primitiveSize == 1)
+		{
+			set(out, ax, ay, az);
+			return;
+		}
+
+		int b = primitives[i + 1] * 3;
+		double abx = vertices[b] - ax, aby = vertices[b + 1] - ay, abz = vertices[b + 2] - az;
+		double apx = p[0] - ax, apy = p[1] - ay, apz = p[2] - az;
+		if (primitiveSize == 2)
+		{
+			double ab = abx * abx + aby * aby + abz * abz;
+			double s = ab == 0 ? 0 : Math.max(0, Math.min(1, (apx * abx + apy * aby + apz * abz) / ab));
+			set(out, ax + s * abx, ay + s * aby, az + s * abz);
+			return;
+		}
+
+		//find the Voronoi region of the triangle containing the point (Ericson, Real-Time Collision Detection)
+		int c = primitives[i + 2] * 3;
+		double acx = vertices[c] - ax, acy = vertices[c + 1] - ay, acz = vertices[c + 2] - az;
+		double d1 = abx * apx + aby * apy + abz * apz;
+		double d2 = acx * apx + acy * apy + acz * apz;
+		if (d1 <= 0 && d2 <= 0)
+		{
+			set(out, ax, ay, az);
+			return;
+		}
+
+		double bpx = p[0] - vertices[b], bpy = p[1] - vertices[b + 1], bpz = p[2] - vertices[b + 2];
+		double d3 = abx * bpx + aby * bpy + abz * bpz;
+		double d4 = acx * bpx + acy * bpy + acz * bpz;
+		if (d3 >= 0 && d4 <= d3)
+		{
+			set(out, vertices[b], vertices[b + 1], vertices[b + 2]);
+			return;
+		}
+
+		double vc = d1 * d4 - d3 * d2;
+		if (vc <= 0 && d1 >= 0 && d3 <= 0)
+		{
+			double v = d1 / (d1 - d3);
+			set(out, ax + v * abx, ay + v * aby, az + v * abz);
+			return;
+		}
+
+		double cpx = p[0] - vertices[c], cpy = p[1] - vertices[c + 1], cpz = p[2] - vertices[c + 2];
+		double d5 = abx * cpx + aby * cpy + abz * cpz;
+		double d6 = acx * cpx + acy * cpy + acz * cpz;
+		if (d6 >= 0 && d5 <= d6)
+		{
+			set(out, vertices[c], vertices[c + 1], vertices[c + 2]);
+			return;
+		}
+
+		double vb = d5 * d2 - d1 * d6;
+		if (vb <= 0 && d2 >= 0 && d6 <= 0)
+		{
+			double w = d2 / (d2 - d6);
+			set(out, ax + w * acx, ay + w * acy, az + w * acz);
+			return;
+		}
+
+		double va = d3 * d6 - d5 * d4;
+		if (va <= 0 && d4 - d3 >= 0 && d5 - d6 >= 0)
+		{
+			double w = (d4 - d3) / ((d4 - d3) + (d5 - d6));
+			set(out, vertices[b] + w * (vertices[c] - vertices[b]), vertices[b + 1] + w
+					* (vertices[c + 1] - vertices[b + 1]), vertices[b + 2] + w * (vertices[c + 2] - vertices[b + 2]));
+			return;
+		}
+
+		double sum = va + vb + vc;
+		if (sum == 0)
+		{
+			//degenerate triangle
+			set(out, ax, ay, az);
+			return;
+		}
+		double v = vb / sum;
+		double w = vc / sum;
+		set(out, ax + abx * v + acx * w, ay + aby * v + acy * w, az + abz * v + acz * w);
+	}
+
+	private Hit createHit(int primitive, double[] point, double distance)
+	{
+		int[] primitiveVertices = getPrimitiveVertices(primitive);
+		int nearestVertex = primitiveVertices[0];
+		double nearestDistance = Double.POSITIVE_INFINITY;
+		for (int vertex : primitiveVertices)
+		{
+			int v = vertex * 3;
+			double dx = vertices[v] - point[0], dy = vertices[v + 1] - point[1], dz = vertices[v + 2] - point[2];
+			double d = dx * dx + dy * dy + dz * dz;
+			if (d < nearestDistance)
+			{
+				nearestDistance = d;
+				nearestVertex = vertex;
+			}
+		}
+		return new Hit(primitive, primitiveVertices, nearestVertex, distance, point[0] + offsetX, point[1] + offsetY,
+				point[2] + offsetZ);
+	}
+
+	private static void set(double[] out, double x, double y, double z)
+	{
+		out[0] = x;
+		out[1] = y;
+		out[2] = z;
+	}
+
+	/**
+	 * Split the top of the tree on the calling thread until there is a subtree
+	 * per thread, and then build the subtrees in parallel.
+	 */
+	private void buildTree(final float[] centroids, final Map<Integer, Integer> nodeCounts)
+	{
+		int subtrees = executor == null || order.length < MIN_PARALLEL_PRIMITIVES ? 1 : THREAD_COUNT;
+		LinkedList<int[]> pending = new LinkedList<int[]>();
+		List<Integer> splitNodes = new ArrayList<Integer>();
+		pending.add(new int[] { 0, 0, order.length });
+		while (pending.size() < subtrees && pending.getFirst()[2] > LEAF_SIZE)
+		{
+			int[] subtree = pending.removeFirst();
+			int right = split(subtree[0], subtree[1], subtree[2], centroids, nodeCounts);
+			int leftCount = subtree[2] / 2;
+			pending.add(new int[] { subtree[0] + 1, subtree[1], leftCount });
+			pending.add(new int[] { right, subtree[1] + leftCount, subtree[2] - leftCount });
+			splitNodes.add(subtree[0]);
+		}
+
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int i = 1; i < pending.size(); i++)
+		{
+			final int[] subtree = pending.get(i);
+			futures.add(executor.submit(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					buildNode(subtree[0], subtree[1], subtree[2], centroids, nodeCounts);
+				}
+			}));
+		}
+		int[] first = pending.getFirst();
+		buildNode(first[0], first[1], first[2], centroids, nodeCounts);
+		waitFor(futures);
+
+		//children are split after their parents, so union the split nodes in reverse
+		for (int i = splitNodes.size() - 1; i >= 0; i--)
+		{
+			int node = splitNodes.get(i);
+			unionBounds(node, node + 1, nodes[node * 3 + 2]);
+		}
+	}
+
+	private void buildNode(int node, int start, int count, float[] centroids, Map<Integer, Integer> nodeCounts)
+	{
+		if (count <= LEAF_SIZE)
+		{
+			setNode(node, start, count, -1);
+			calculateLeafBounds(node);
+			return;
+		}
+
+		int right = split(node, start, count, centroids, nodeCounts);
+		int leftCount = count / 2;
+		buildNode(node + 1, start, leftCount, centroids, nodeCounts);
+		buildNode(right, start + leftCount, count - leftCount, centroids, nodeCounts);
+		unionBounds(node, node + 1, right);
+	}
+
+	/**
+	 * Partition a node's primitives at the median centroid along the longest
+	 * axis of the centroids' bounds.
+	 * 
+	 * @return Index of the node's right child
+	 */
+	private int split(int node, int start, int count, float[] centroids, Map<Integer, Integer> nodeCounts)
+	{
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+		for (int i = start, end = start + count; i < end; i++)
+		{
+			int c = order[i] * 3;
+			minX = Math.min(minX, centroids[c]);
+			maxX = Math.max(maxX, centroids[c]);
+			minY = Math.min(minY, centroids[c + 1]);
+			maxY = Math.max(maxY, centroids[c + 1]);
+			minZ = Math.min(minZ, centroids[c + 2]);
+			maxZ = Math.max(maxZ, centroids[c + 2]);
+		}
+		float extentX = maxX - minX, extentY = maxY - minY, extentZ = maxZ - minZ;
+		int axis = extentX >= extentY && extentX >= extentZ ? 0 : extentY >= extentZ ? 1 : 2;
+
+		int leftCount = count / 2;
+		select(centroids, axis, start, start + count - 1, start + leftCount);
+
+		int right = node + 1 + nodeCount(leftCount, nodeCounts);
+		setNode(node, start, count, right);
+		return right;
+	}
+
+	/**
+	 * Quickselect: partially sort the order array between left and right
+	 * (inclusive), so that the k'th entry is in its sorted position along the
+	 * axis, with no greater entries before it and no smaller entries after.
+	 */
+	private void select(float[] centroids, int axis, int left, int right, int k)
+	{
+		while (right > left)
+		{
+			float a = centroids[order[left] * 3 + axis];
+			float b = centroids[order[(left + right) >>> 1] * 3 + axis];
+			float c = centroids[order[right] * 3 + axis];
+			float pivot = Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+
+			int i = left, j = right;
+			while (i <= j)
+			{
+				while (centroids[order[i] * 3 + axis] < pivot)
+				{
+					i++;
+				}
+				while (centroids[order[j] * 3 + axis] > pivot)
+				{
+					j--;
+				}
+				if (i <= j)
+				{
+					int temp = order[i];
+					order[i++] = order[j];
+					order[j--] = temp;
+				}
+			}
+
+			if (k <= j)
+			{
+				right = j;
+			}
+			else if (k >= i)
+			{
+				left = i;
+			}
+			else
+			{
+				return;
+			}
+		}
+	}
+
+	private boolean isDegenerate(int primitive)
+	{
+		if (primitiveSize < 3)
+		{
+			return false;
+		}
+		int p = primitive * 3;
+		int a = primitives[p], b = primitives[p + 1], c = primitives[p + 2];
+		return a == b || b == c || a == c;
+	}
+
+	private void setNode(int node, int start, int count, int right)
+	{
+		int n = node * 3;
+		nodes[n] = start;
+		nodes[n + 1] = count;
+		nodes[n + 2] = right;
+	}
+
+	private void calculateLeafBounds(int node)
+	{
+		int n = node * 3;
+		int b = node * 6;
+		bounds[b] = bounds[b + 1] = bounds[b + 2] = Float.MAX_VALUE;
+		bounds[b + 3] = bounds[b + 4] = bounds[b + 5] = -Float.MAX_VALUE;
+		for (int i = nodes[n], end = i + nodes[n + 1]; i < end; i++)
+		{
+			int p = order[i] * primitiveSize;
+			for (int j = 0; j < primitiveSize; j++)
+			{
+				int v = primitives[p + j] * 3;
+				for (int axis = 0; axis < 3; axis++)
+				{
+					bounds[b + axis] = Math.min(bounds[b + axis], vertices[v + axis]);
+					bounds[b + 3 + axis] = Math.max(bounds[b + 3 + axis], vertices[v + axis]);
+				}
+			}
+		}
+	}
+
+	private void calculatePrimitiveBounds(int primitive, float[] out, int offset)
+	{
+		int p = primitive * primitiveSize;
+		int v = primitives[p] * 3;
+		for (int axis = 0; axis < 3; axis++)
+		{
+			out[offset + axis] = out[offset + 3 + axis] = vertices[v + axis];
+		}
+		for (int j = 1; j < primitiveSize; j++)
+		{
+			v = primitives[p + j] * 3;
+			for (int axis = 0; axis < 3; axis++)
+			{
+				out[offset + axis] = Math.min(out[offset + axis], vertices[v + axis]);
+				out[offset + 3 + axis] = Math.max(out[offset + 3 + axis], vertices[v + axis]);
+			}
+		}
+	}
+
+	private void unionBounds(int node, int left, int right)
+	{
+		int b = node * 6, l = left * 6, r = right * 6;
+		for (int i = 0; i < 3; i++)
+		{
+			bounds[b + i] = Math.min(bounds[l + i], bounds[r + i]);
+			bounds[b + 3 + i] = Math.max(bounds[l + 3 + i], bounds[r + 3 + i]);
+		}
+	}
+
+	/**
+	 * Calculate the bounds of every node from the vertices, without changing
+	 * the tree.
+	 */
+	private void calculateAllBounds()
+	{
+		final int nodeCount = getNodeCount();
+		runInChunks(nodeCount, new Chunk()
+		{
+			@Override
+			public void run(int start, int end)
+			{
+				for (int node = start; node < end; node++)
+				{
+					if (nodes[node * 3 + 2] < 0)
+					{
+						calculateLeafBounds(node);
+					}
+				}
+			}
+		});
+
+		//children are stored after their parents
+		for (int node = nodeCount - 1; node >= 0; node--)
+		{
+			int right = nodes[node * 3 + 2];
+			if (right >= 0)
+			{
+				unionBounds(node, node + 1, right);
+			}
+		}
+	}
+
+	/**
+	 * @return Center of each primitive's bounding box (x, y, z per primitive)
+	 */
+	private float[] calculateCentroids()
+	{
+		final float[] centroids = new float[primitiveCount * 3];
+		runInChunks(primitiveCount, new Chunk()
+		{
+			@Override
+			public void run(int start, int end)
+			{
+				float[] box = new float[6];
+				for (int i = start; i < end; i++)
+				{
+					calculatePrimitiveBounds(i, box, 0);
+					centroids[i * 3] = (box[0] + box[3]) * 0.5f;
+					centroids[i * 3 + 1] = (box[1] + box[4]) * 0.5f;
+					centroids[i * 3 + 2] = (box[2] + box[5]) * 0.5f;
+				}
+			}
+		});
+		return centroids;
+	}
+
+	private static int countNodes(int count, Map<Integer, Integer> nodeCounts)
+	{
+		if (count <= LEAF_SIZE)
+		{
+			return 1;
+		}
+		Integer nodeCount = nodeCounts.get(count);
+		if (nodeCount == null)
+		{
+			nodeCount = 1 + countNodes(count / 2, nodeCounts) + countNodes(count - count / 2, nodeCounts);
+			nodeCounts.put(count, nodeCount);
+		}
+		return nodeCount;
+	}
+
+	/**
+	 * @return Number of nodes in a subtree containing the given number of
+	 *         primitives (which are always split in half, so each subtree size
+	 *         has a fixed number of nodes)
+	 */
+	private static int nodeCount(int count, Map<Integer, Integer> nodeCounts)
+	{
+		return count <= LEAF_SIZE ? 1 : nodeCounts.get(count);
+	}
+
+	/**
+	 * Run the chunk over the range [0, count). Large ranges are split into one
+	 * chunk per thread; the first chunk is run on the calling thread.
+	 */
+	private static void runInChunks(int count, final Chunk chunk)
+	{
+		int chunks = executor == null || count < MIN_PARALLEL_PRIMITIVES ? 1 : THREAD_COUNT;
+		int chunkSize = (count + chunks - 1) / chunks;
+		if (chunks <= 1)
+		{
+			chunk.run(0, count);
+			return;
+		}
+
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int start = chunkSize; start < count; start += chunkSize)
+		{
+			final int s = start;
+			final int e = Math.min(start + chunkSize, count);
+			futures.add(executor.submit(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					chunk.run(s, e);
+				}
+			}));
+		}
+
+		chunk.run(0, chunkSize);
+		waitFor(futures);
+	}
+
+	private static void waitFor(List<Future<?>> futures)
+	{
+		try
+		{
+			for (Future<?> future : futures)
+			{
+				future.get();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while building bounding volume hierarchy", e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new IllegalStateException("Error building bounding volume hierarchy", e.getCause());
+		}
+	}
+
+	/**
+	 * @param mode
+	 *            OpenGL primitive mode
+	 * @return Number of vertices in each primitive of the mode's
+	 *         decomposition
+	 */
+	protected static int getPrimitiveSize(int mode)
+	{
+		switch (mode)
+		{
+		case GL2.GL_POINTS:
+			return 1;
+		case GL2.GL_LINES:
+		case GL2.GL_LINE_LOOP:
+		case GL2.GL_LINE_STRIP:
+			return 2;
+		case GL2.GL_TRIANGLES:
+		case GL2.GL_TRIANGLE_STRIP:
+		case GL2.GL_TRIANGLE_FAN:
+		case GL2.GL_QUADS:
+		case GL2.GL_QUAD_STRIP:
+		case GL2.GL_POLYGON:
+			return 3;
+		default:
+			throw new IllegalArgumentException("Unsupported primitive mode: " + mode);
+		}
+	}
+
+	/**
+	 * Decompose the elements drawn in a primitive mode into points, line
+	 * segments or triangles.
+	 * 
+	 * @return Vertex indices of each primitive
+	 */
+	protected static int[] createPrimitives(int[] indices, int vertexCount, int mode)
+	{
+		int n = indices != null ? indices.length : vertexCount;
+		IntArray elements = new IntArray();
+		switch (mode)
+		{
+		case GL2.GL_POINTS:
+			for (int i = 0; i < n; i++)
+			{
+				elements.add(i);
+			}
+			break;
+		case GL2.GL_LINES:
+			for (int i = 0; i + 1 < n; i += 2)
+			{
+				elements.add(i, i + 1);
+			}
+			break;
+		case GL2.GL_LINE_STRIP:
+			for (int i = 0; i + 1 < n; i++)
+			{
+				elements.add(i, i + 1);
+			}
+			break;
+		case GL2.GL_LINE_LOOP:
+			for (int i = 0; n > 1 && i < n; i++)
+			{
+				elements.add(i, (i + 1) % n);
+			}
+			break;
+		case GL2.GL_TRIANGLES:
+			for (int i = 0; i + 2 < n; i += 3)
+			{
+				elements.add(i, i + 1, i + 2);
+			}
+			break;
+		case GL2.GL_TRIANGLE_STRIP:
+			for (int i = 0; i + 2 < n; i++)
+			{
+				//keep the winding consistent
+				if (i % 2 == 0)
+				{
+					elements.add(i, i + 1, i + 2);
+				}
+				else
+				{
+					elements.add(i + 1, i, i + 2);
+				}
+			}
+			break;
+		case GL2.GL_TRIANGLE_FAN:
+		case GL2.GL_POLYGON:
+			for (int i = 1; i + 1 < n; i++)
+			{
+				elements.add(0, i, i + 1);
+			}
+			break;
+		case GL2.GL_QUADS:
+			for (int i = 0; i + 3 < n; i += 4)
+			{
+				elements.add(i, i + 1, i + 2);
+				elements.add(i, i + 2, i + 3);
+			}
+			break;
+		case GL2.GL_QUAD_STRIP:
+			for (int i = 0; i + 3 < n; i += 2)
+			{
+				elements.add(i, i + 1, i + 3);
+				elements.add(i, i + 3, i + 2);
+			}
+			break;
+		default:
+			throw new IllegalArgumentException("Unsupported primitive mode: " + mode);
+		}
+
+		int[] primitives = elements.toArray();
+		for (int i = 0; i < primitives.length; i++)
+		{
+			int vertex = indices != null ? indices[primitives[i]] : primitives[i];
+			if (vertex < 0 || vertex >= vertexCount)
+			{
+				throw new IllegalArgumentException("Index " + vertex + " is outside the vertex array");
+			}
+			primitives[i] = vertex;
+		}
+		return primitives;
+	}
+
+	/**
+	 * Work done for a range of elements.
+	 */
+	private interface Chunk
+	{
+		void run(int start, int end);
+	}
+
+	/**
+	 * Growable array of ints.
+	 */
+	private static class IntArray
+	{
+		private int[] values = new int[16];
+		private int size = 0;
+
+		public void add(int... values)
+		{
+			add(values, 0, values.length);
+		}
+
+		public void add(int[] values, int offset, int length)
+		{
+			if (size + length > this.values.length)
+			{
+				this.values = Arrays.copyOf(this.values, Math.max(size + length, this.values.length * 2));
+			}
+			System.arraycopy(values, offset, this.values, size, length);
+			size += length;
+		}
+
+		public int[] toArray()
+		{
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	/**
+	 * The result of a ray or nearest point query.
+	 */
+	public static class Hit
+	{
+		/**
+		 * Index of the primitive, in the hierarchy's decomposition of the
+		 * shape's primitives
+		 */
+		public final int primitive;
+		/**
+		 * Indices (into the vertex array) of the primitive's vertices
+		 */
+		public final int[] vertices;
+		/**
+		 * The primitive's vertex closest to the hit point
+		 */
+		public final int nearestVertex;
+		/**
+		 * Distance along the ray, or from the query point, to the hit point
+		 */
+		public final double distance;
+		/**
+		 * Hit point on the primitive, in model coordinates
+		 */
+		public final double x;
+		public final double y;
+		public final double z;
+
+		public Hit(int primitive, int[] vertices, int nearestVertex, double distance, double x, double y, double z)
+		{
+			this.primitive = primitive;
+			this.vertices = vertices;
+			this.nearestVertex = nearestVertex;
+			this.distance = distance;
+			this.x = x;
+			this.y = y;
+			this.z = z;
+		}
+	}
+}
@@ -15,13 +15,19 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.common.render.fastshape;
 
+import gov.nasa.worldwind.View;
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.cache.Cacheable;
+import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.Extent;
+import gov.nasa.worldwind.geom.Frustum;
 import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Line;
+import gov.nasa.worldwind.geom.Plane;
 import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.geom.Sphere;
 import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.ElevationModel;
 import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.layers.Layer;
 import gov.nasa.worldwind.pick.PickSupport;
@@ -38,7 +44,6 @@ import java.awt.Point;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.net.URL;
-import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -51,7 +56,9 @@ import javax.media.opengl.GL2GL3;
 
 import au.gov.ga.worldwind.common.layers.Bounded;
 import au.gov.ga.worldwind.common.layers.Bounds;
+import au.gov.ga.worldwind.common.exaggeration.ExaggeratedVertices;
 import au.gov.ga.worldwind.common.layers.Wireframeable;
+import au.gov.ga.worldwind.common.terrain.ElevationSampler;
 
 import com.jogamp.opengl.util.texture.Texture;
 
@@ -60,6 +67,21 @@ import com.jogamp.opengl.util.texture.Texture;
  * for meshes or points or lines with a large number of vertices, as the vertex
  * positions aren't updated every frame (instead they are updated in a vertex
  * updater thread).
+ * <p/>
+ * For large shapes, the positions should be provided as a
+ * {@link PositionBuffer}, which stores them packed in a primitive array, and
+ * from which the vertices are calculated without creating a {@link Position}
+ * per vertex.
+ * <p/>
+ * When following the terrain, the terrain elevations under the positions are
+ * sampled in bulk by an {@link ElevationSampler}; the vertices are only
+ * recalculated for terrain changes until every position has been sampled at
+ * the best resolution the elevation model has for the shape's sector.
+ * <p/>
+ * Ray, nearest point and frustum queries can be answered on the CPU (without a
+ * pick pass) using the shape's {@link BoundingVolumeHierarchy}, which is built
+ * when first queried, and refit or rebuilt when the vertices or indices
+ * change.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -140,6 +162,15 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 
 	protected Layer lastLayer;
 	protected long lastFollowTerrainUpdateTime;
+	protected volatile ElevationSampler terrainSampler;
+	protected volatile ExaggeratedVertices exaggeratedVertices;
+	protected float[] spareVertices;
+	protected Vec4 vertexCenter;
+
+	protected final Object hierarchyLock = new Object();
+	protected BoundingVolumeHierarchy hierarchy;
+	protected volatile boolean hierarchyVerticesChanged = false;
+	protected volatile boolean hierarchyIndicesChanged = false;
 
 	protected final List<FastShapeRenderListener> renderListeners = new ArrayList<FastShapeRenderListener>();
 
@@ -558,16 +589,22 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 			if (currentTime - lastFollowTerrainUpdateTime > getFollowTerrainUpdateFrequency())
 			{
 				lastFollowTerrainUpdateTime = currentTime;
-				followTerrainRecalculationRequired = true;
+				//no need to recalculate if the terrain samples can't be refined any further
+				ElevationSampler sampler = terrainSampler;
+				followTerrainRecalculationRequired =
+						sampler == null || !sampler.isComplete(dc.getGlobe().getElevationModel());
 			}
 		}
 
+		//if only the vertical exaggeration has changed, the cached vertex geometry can be re-exaggerated
+		boolean exaggerationOnly =
+				!followTerrainRecalculationRequired && !elevationChanged && !verticesDirty
+						&& lastGlobe == dc.getGlobe();
 		boolean recalculateVertices =
-				followTerrainRecalculationRequired || elevationChanged || verticesDirty || lastGlobe != dc.getGlobe()
-						|| lastVerticalExaggeration != dc.getVerticalExaggeration();
+				!exaggerationOnly || lastVerticalExaggeration != dc.getVerticalExaggeration();
 		if (recalculateVertices)
 		{
-			boolean willRecalculate = recalculateVertices(dc, false);
+			boolean willRecalculate = recalculateVertices(dc, false, exaggerationOnly);
 			if (willRecalculate)
 			{
 				lastGlobe = dc.getGlobe();
@@ -589,6 +626,26 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 	}
 
 	protected boolean recalculateVertices(final DrawContext dc, boolean runNow)
+	{
+		return recalculateVertices(dc, runNow, false);
+	}
+
+	/**
+	 * Recalculate this shape's vertices. The vertices are calculated into a
+	 * spare array, which is swapped with the vertex VBO's array once complete,
+	 * so that rendering isn't blocked during the calculation.
+	 * 
+	 * @param dc
+	 * @param runNow
+	 *            Calculate on the current thread, instead of the vertex
+	 *            updater thread
+	 * @param exaggerationOnly
+	 *            Only the vertical exaggeration has changed since the last
+	 *            calculation, so the cached {@link ExaggeratedVertices} can be
+	 *            re-exaggerated instead of recalculating every vertex
+	 * @return True if the vertices were (or will be) recalculated
+	 */
+	protected boolean recalculateVertices(final DrawContext dc, boolean runNow, final boolean exaggerationOnly)
 	{
 		Runnable runnable = new Runnable()
 		{
@@ -601,20 +658,36 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 					int size = positions.size() * 3;
 					float[] vertices;
 
-					vertexVBO.lock();
-					try
+					synchronized (FastShape.this)
 					{
-						vertices = vertexVBO.getBuffer();
+						vertices = spareVertices;
 						if (vertices == null || vertices.length != size)
 						{
 							vertices = new float[size];
 						}
-						calculateVertices(dc, vertices);
-						vertexVBO.setBuffer(vertices);
-					}
-					finally
-					{
-						vertexVBO.unlock();
+
+						ExaggeratedVertices exaggerated = exaggeratedVertices;
+						if (exaggerationOnly && exaggerated != null && exaggerated.size() == positions.size())
+						{
+							exaggerateVertices(exaggerated, dc.getVerticalExaggeration(), vertices);
+						}
+						else
+						{
+							calculateVertices(dc, vertices);
+						}
+
+						vertexVBO.lock();
+						try
+						{
+							spareVertices = vertexVBO.getBuffer();
+							vertexVBO.setBuffer(vertices);
+							vertexCenter = modBoundingSphere.getCenter();
+							hierarchyVerticesChanged = true;
+						}
+						finally
+						{
+							vertexVBO.unlock();
+						}
 					}
 
 					if (willCalculateNormals())
@@ -664,19 +737,77 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 		}
 	}
 
+	/**
+	 * Calculate this shape's vertices from its positions, relative to the
+	 * center of the modified bounding sphere. The unexaggerated geometry of
+	 * each vertex is cached in {@link #exaggeratedVertices}, so that a later
+	 * change in vertical exaggeration only requires a call to
+	 * {@link #exaggerateVertices(ExaggeratedVertices, double, float[])}.
+	 * 
+	 * @param dc
+	 * @param vertices
+	 *            Array to write the vertices to
+	 */
 	protected synchronized void calculateVertices(DrawContext dc, float[] vertices)
 	{
-		int index = 0;
-		for (LatLon position : positions)
+		ElevationSampler sampler = followTerrain ? updateTerrainSampler(dc) : null;
+		Globe globe = dc.getGlobe();
+		LatLon offset = calculateLatLonOffset();
+
+		ExaggeratedVertices exaggerated = exaggeratedVertices;
+		if (exaggerated == null || exaggerated.size() != positions.size())
 		{
-			Vec4 v = calculateVertex(dc, position);
-			vertices[index++] = (float) v.x;
-			vertices[index++] = (float) v.y;
-			vertices[index++] = (float) v.z;
+			exaggerated = new ExaggeratedVertices(positions.size());
 		}
+		exaggerated.setMinimumElevation(-globe.getMaximumRadius());
 
-		BufferWrapper wrapper = new BufferWrapper.FloatBufferWrapper(FloatBuffer.wrap(vertices));
-		modBoundingSphere = createBoundingSphere(wrapper);
+		if (positions instanceof PositionBuffer)
+		{
+			PositionBuffer buffer = (PositionBuffer) positions;
+			for (int i = 0; i < buffer.size(); i++)
+			{
+				double terrainElevation = sampler != null ? sampler.getElevation(i) : 0;
+				setExaggeratedVertex(exaggerated, i, globe, buffer.getLatitude(i), buffer.getLongitude(i), offset,
+						this.elevation + terrainElevation + calculateElevationOffset(buffer, i));
+			}
+		}
+		else
+		{
+			int i = 0;
+			for (LatLon position : positions)
+			{
+				double terrainElevation = sampler != null ? sampler.getElevation(i) : 0;
+				setExaggeratedVertex(exaggerated, i++, globe, position.getLatitude().degrees,
+						position.getLongitude().degrees, offset,
+						this.elevation + terrainElevation + calculateElevationOffset(position));
+			}
+		}
+
+		exaggeratedVertices = exaggerated;
+		exaggerateVertices(exaggerated, dc.getVerticalExaggeration(), vertices);
+	}
+
+	private void setExaggeratedVertex(ExaggeratedVertices exaggerated, int index, Globe globe, double latitude,
+			double longitude, LatLon offset, double elevation)
+	{
+		Angle lat = Angle.normalizedLatitude(Angle.fromDegrees(latitude + offset.getLatitude().degrees));
+		Angle lon = Angle.normalizedLongitude(Angle.fromDegrees(longitude + offset.getLongitude().degrees));
+		exaggerated.setVertex(index, globe, lat, lon, elevation);
+	}
+
+	/**
+	 * Exaggerate the cached vertex geometry, writing the vertices relative to
+	 * the center of the modified bounding sphere, which is also recalculated.
+	 * 
+	 * @param exaggerated
+	 *            Cached vertex geometry
+	 * @param verticalExaggeration
+	 * @param vertices
+	 *            Array to write the vertices to
+	 */
+	protected void exaggerateVertices(ExaggeratedVertices exaggerated, double verticalExaggeration, float[] vertices)
+	{
+		modBoundingSphere = createBoundingSphere(exaggerated.computeExtrema(verticalExaggeration));
 
 		//prevent NullPointerExceptions when there's no vertices:
 		if (modBoundingSphere == null)
@@ -684,25 +815,48 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 			modBoundingSphere = new Sphere(Vec4.ZERO, 1);
 		}
 
-		for (int i = 0; i < vertices.length; i += 3)
-		{
-			vertices[i + 0] -= (float) modBoundingSphere.getCenter().x;
-			vertices[i + 1] -= (float) modBoundingSphere.getCenter().y;
-			vertices[i + 2] -= (float) modBoundingSphere.getCenter().z;
-		}
+		exaggerated.exaggerate(verticalExaggeration, modBoundingSphere.getCenter(), vertices);
 	}
 
-	protected Vec4 calculateVertex(DrawContext dc, LatLon position)
+	/**
+	 * Sample the terrain elevations under this shape's positions, refining
+	 * only the samples that haven't reached the best resolution the elevation
+	 * model has for them. The sampler is recreated when the positions change.
+	 * 
+	 * @param dc
+	 * @return Sampler containing the terrain elevation for each position
+	 */
+	protected ElevationSampler updateTerrainSampler(DrawContext dc)
 	{
-		double elevation = this.elevation;
-		if (followTerrain)
+		ElevationSampler sampler = terrainSampler;
+		if (sampler == null || sampler.size() != positions.size())
 		{
-			elevation += dc.getGlobe().getElevation(position.getLatitude(), position.getLongitude());
+			double[] latlons = new double[positions.size() * 2];
+			int index = 0;
+			if (positions instanceof PositionBuffer)
+			{
+				PositionBuffer buffer = (PositionBuffer) positions;
+				for (int i = 0; i < buffer.size(); i++)
+				{
+					latlons[index++] = buffer.getLatitude(i);
+					latlons[index++] = buffer.getLongitude(i);
+				}
+			}
+			else
+			{
+				for (LatLon position : positions)
+				{
+					latlons[index++] = position.getLatitude().degrees;
+					latlons[index++] = position.getLongitude().degrees;
+				}
+			}
+			sampler = new ElevationSampler(latlons);
+			terrainSampler = sampler;
 		}
-		elevation += calculateElevationOffset(position);
-		elevation *= dc.getVerticalExaggeration();
-		elevation = Math.max(elevation, -dc.getGlobe().getMaximumRadius());
-		return dc.getGlobe().computePointFromPosition(position.add(calculateLatLonOffset()), elevation);
+
+		ElevationModel model = dc.getGlobe().getElevationModel();
+		sampler.update(model, sampler.getBestResolution(model));
+		return sampler;
 	}
 
 	protected double calculateElevationOffset(LatLon position)
@@ -714,15 +868,35 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 		return 0;
 	}
 
+	/**
+	 * Calculate the elevation offset of the position at the given index in a
+	 * {@link PositionBuffer}, without creating a {@link Position} object. This
+	 * is the {@link PositionBuffer} equivalent of
+	 * {@link #calculateElevationOffset(LatLon)}; subclasses that override one
+	 * should override the other.
+	 * 
+	 * @param positions
+	 * @param index
+	 * @return Elevation offset of the position at index
+	 */
+	protected double calculateElevationOffset(PositionBuffer positions, int index)
+	{
+		return positions.getElevation(index);
+	}
+
 	protected LatLon calculateLatLonOffset()
 	{
 		return LatLon.ZERO;
 	}
 
 	protected static Sphere createBoundingSphere(BufferWrapper wrapper)
+	{
+		return createBoundingSphere(Vec4.computeExtrema(wrapper));
+	}
+
+	protected static Sphere createBoundingSphere(Vec4[] extrema)
 	{
 		//the Sphere.createBoundingSphere() function doesn't ensure that the radius is at least 1, causing errors
-		Vec4[] extrema = Vec4.computeExtrema(wrapper);
 		if (extrema == null)
 		{
 			return null;
@@ -1010,11 +1184,20 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 		{
 			this.positions = positions;
 			verticesDirty = true;
+			terrainSampler = null;
+			exaggeratedVertices = null;
 
 			bounds = null;
-			for (Position position : positions)
+			if (positions instanceof PositionBuffer)
+			{
+				bounds = ((PositionBuffer) positions).getBounds();
+			}
+			else
 			{
-				bounds = Bounds.union(bounds, position);
+				for (Position position : positions)
+				{
+					bounds = Bounds.union(bounds, position);
+				}
 			}
 		}
 		finally
@@ -1031,6 +1214,152 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 	public void setIndices(int[] indices)
 	{
 		indexVBO.setBuffer(indices);
+		hierarchyIndicesChanged = true;
+	}
+
+	/**
+	 * Get the bounding volume hierarchy over this shape's primitives. The
+	 * hierarchy is built on the first call, and then refit (if only the
+	 * vertices have changed) or rebuilt (if the indices or number of vertices
+	 * have changed) when next requested after a change.
+	 * 
+	 * @return Bounding volume hierarchy, in model coordinates, or null if the
+	 *         vertices haven't been calculated yet
+	 */
+	public BoundingVolumeHierarchy getBoundingVolumeHierarchy()
+	{
+		synchronized (hierarchyLock)
+		{
+			if (hierarchy != null && !hierarchyVerticesChanged && !hierarchyIndicesChanged)
+			{
+				return hierarchy;
+			}
+
+			boolean rebuild;
+			float[] vertices;
+			Vec4 center;
+			vertexVBO.lock();
+			try
+			{
+				float[] buffer = vertexVBO.getBuffer();
+				if (buffer == null)
+				{
+					return null;
+				}
+				//the vertex updater reuses the previous vertex array, so the hierarchy needs its own copy
+				vertices = buffer.clone();
+				center = vertexCenter;
+				rebuild = hierarchy == null || hierarchyIndicesChanged;
+				hierarchyVerticesChanged = false;
+				hierarchyIndicesChanged = false;
+			}
+			finally
+			{
+				vertexVBO.unlock();
+			}
+
+			if (!rebuild && hierarchy.getVertexCount() == vertices.length / 3)
+			{
+				hierarchy = hierarchy.refit(vertices, center.x, center.y, center.z);
+			}
+			else
+			{
+				hierarchy = BoundingVolumeHierarchy.build(vertices, getIndices(), mode, center.x, center.y, center.z);
+			}
+			return hierarchy;
+		}
+	}
+
+	/**
+	 * Find the first primitive of this shape intersected by a ray.
+	 * 
+	 * @param ray
+	 *            Ray in model coordinates
+	 * @param tolerance
+	 *            Maximum distance of point and line primitives from the ray
+	 * @return Closest intersection along the ray, or null if this shape isn't
+	 *         hit
+	 * @see BoundingVolumeHierarchy#intersect(double, double, double, double,
+	 *      double, double, double)
+	 */
+	public BoundingVolumeHierarchy.Hit intersect(Line ray, double tolerance)
+	{
+		BoundingVolumeHierarchy hierarchy = getBoundingVolumeHierarchy();
+		if (hierarchy == null)
+		{
+			return null;
+		}
+		Vec4 origin = ray.getOrigin();
+		Vec4 direction = ray.getDirection();
+		return hierarchy.intersect(origin.x, origin.y, origin.z, direction.x, direction.y, direction.z, tolerance);
+	}
+
+	/**
+	 * Find the first primitive of this shape under a screen point.
+	 * 
+	 * @param view
+	 * @param screenPoint
+	 *            Point in AWT screen coordinates
+	 * @param pixelTolerance
+	 *            Maximum distance (in pixels, at the distance of this shape)
+	 *            of point and line primitives from the screen point
+	 * @return Closest intersection, or null if this shape isn't under the
+	 *         point
+	 */
+	public BoundingVolumeHierarchy.Hit intersect(View view, Point screenPoint, double pixelTolerance)
+	{
+		Sphere boundingSphere = this.boundingSphere;
+		if (boundingSphere == null)
+		{
+			return null;
+		}
+		Line ray = view.computeRayFromScreenPoint(screenPoint.x, screenPoint.y);
+		double distance = Math.max(0, view.getEyePoint().distanceTo3(boundingSphere.getCenter()));
+		return intersect(ray, pixelTolerance * view.computePixelSizeAtDistance(distance));
+	}
+
+	/**
+	 * Find the closest point on this shape's primitives to a point.
+	 * 
+	 * @param point
+	 *            Point in model coordinates
+	 * @param maxDistance
+	 *            Primitives further than this distance are ignored
+	 * @return Closest point, or null if there are no primitives within the
+	 *         maximum distance
+	 */
+	public BoundingVolumeHierarchy.Hit nearest(Vec4 point, double maxDistance)
+	{
+		BoundingVolumeHierarchy hierarchy = getBoundingVolumeHierarchy();
+		return hierarchy == null ? null : hierarchy.nearest(point.x, point.y, point.z, maxDistance);
+	}
+
+	/**
+	 * Find this shape's primitives within a frustum (such as the view frustum
+	 * in model coordinates).
+	 * 
+	 * @param frustum
+	 * @return Sorted indices of the primitives found
+	 * @see BoundingVolumeHierarchy#findInPlanes(double[])
+	 */
+	public int[] findInFrustum(Frustum frustum)
+	{
+		BoundingVolumeHierarchy hierarchy = getBoundingVolumeHierarchy();
+		if (hierarchy == null)
+		{
+			return new int[0];
+		}
+		Plane[] planes = frustum.getAllPlanes();
+		double[] values = new double[planes.length * 4];
+		for (int i = 0; i < planes.length; i++)
+		{
+			Vec4 vector = planes[i].getVector();
+			values[i * 4] = vector.x;
+			values[i * 4 + 1] = vector.y;
+			values[i * 4 + 2] = vector.z;
+			values[i * 4 + 3] = vector.w;
+		}
+		return hierarchy.findInPlanes(values);
 	}
 
 	@Override
@@ -1303,8 +1632,13 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 	@Override
 	public long getSizeInBytes()
 	{
+		List<Position> positions = getPositions();
+		if (positions instanceof PositionBuffer)
+		{
+			return 500 + ((PositionBuffer) positions).getSizeInBytes();
+		}
 		//very approximate, measured by checking JVM memory usage over many object creations
-		return 500 + 80 * getPositions().size();
+		return 500 + 80 * positions.size();
 	}
 
 	/**
@@ -0,0 +1,337 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.render.fastshape;
+
+import gov.nasa.worldwind.geom.Position;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import au.gov.ga.worldwind.common.layers.Bounds;
+
+/**
+ * A list of positions stored packed in a single <code>double</code> array
+ * (latitude and longitude in degrees, and elevation), optionally with a
+ * (u,v) coordinate for each position.
+ * <p/>
+ * Each {@link Position} holds two {@link gov.nasa.worldwind.geom.Angle}
+ * objects, so a list of positions costs around 80 bytes per position; this
+ * class costs 24 bytes per position (40 with coordinates). It implements
+ * {@link List}, so it can be used anywhere a list of positions is expected, but
+ * {@link #get(int)} creates a new {@link Position} on each call. Code that
+ * iterates large buffers should use the primitive getters instead, as
+ * {@link FastShape} does when calculating its vertices.
+ * <p/>
+ * Positions can be added and replaced, but not removed.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class PositionBuffer extends AbstractList<Position> implements RandomAccess
+{
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private final boolean coordinates;
+	private final int stride;
+	private double[] values;
+	private int size = 0;
+
+	/**
+	 * Create a new empty {@link PositionBuffer} without coordinates.
+	 */
+	public PositionBuffer()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create a new empty {@link PositionBuffer} without coordinates.
+	 * 
+	 * @param capacity
+	 *            Number of positions to allocate space for
+	 */
+	public PositionBuffer(int capacity)
+	{
+		this(capacity, false);
+	}
+
+	/**
+	 * Create a new empty {@link PositionBuffer}.
+	 * 
+	 * @param capacity
+	 *            Number of positions to allocate space for
+	 * @param coordinates
+	 *            Should a (u,v) coordinate be stored with each position?
+	 */
+	public PositionBuffer(int capacity, boolean coordinates)
+	{
+		if (capacity < 0)
+		{
+			throw new IllegalArgumentException("Capacity cannot be negative");
+		}
+		this.coordinates = coordinates;
+		this.stride = coordinates ? 5 : 3;
+		this.values = new double[Math.max(1, capacity) * stride];
+	}
+
+	/**
+	 * Convert the given list of positions to a {@link PositionBuffer}. If the
+	 * list is already a {@link PositionBuffer}, it is returned.
+	 * 
+	 * @param positions
+	 * @return {@link PositionBuffer} containing the given positions
+	 */
+	public static PositionBuffer valueOf(List<Position> positions)
+	{
+		if (positions instanceof PositionBuffer)
+		{
+			return (PositionBuffer) positions;
+		}
+		PositionBuffer buffer = new PositionBuffer(positions.size());
+		for (Position position : positions)
+		{
+			buffer.add(position);
+		}
+		return buffer;
+	}
+
+	/**
+	 * @return Does this buffer store a (u,v) coordinate with each position?
+	 */
+	public boolean hasCoordinates()
+	{
+		return coordinates;
+	}
+
+	/**
+	 * @return Latitude (in degrees) of the position at the given index
+	 */
+	public double getLatitude(int index)
+	{
+		return values[index * stride];
+	}
+
+	/**
+	 * @return Longitude (in degrees) of the position at the given index
+	 */
+	public double getLongitude(int index)
+	{
+		return values[index * stride + 1];
+	}
+
+	/**
+	 * @return Elevation of the position at the given index
+	 */
+	public double getElevation(int index)
+	{
+		return values[index * stride + 2];
+	}
+
+	/**
+	 * @return U coordinate of the position at the given index, or 0 if this
+	 *         buffer doesn't store coordinates
+	 */
+	public double getU(int index)
+	{
+		return coordinates ? values[index * stride + 3] : 0;
+	}
+
+	/**
+	 * @return V coordinate of the position at the given index, or 0 if this
+	 *         buffer doesn't store coordinates
+	 */
+	public double getV(int index)
+	{
+		return coordinates ? values[index * stride + 4] : 0;
+	}
+
+	/**
+	 * Set the elevation of the position at the given index.
+	 * 
+	 * @param index
+	 * @param elevation
+	 */
+	public void setElevation(int index, double elevation)
+	{
+		checkIndex(index);
+		values[index * stride + 2] = elevation;
+	}
+
+	/**
+	 * Add a position to the end of this buffer. If this buffer stores
+	 * coordinates, the position's coordinate is set to (0,0).
+	 * 
+	 * @param latitude
+	 *            Latitude in degrees
+	 * @param longitude
+	 *            Longitude in degrees
+	 * @param elevation
+	 */
+	public void add(double latitude, double longitude, double elevation)
+	{
+		add(latitude, longitude, elevation, 0, 0);
+	}
+
+	/**
+	 * Add a position to the end of this buffer. The coordinate is ignored if
+	 * this buffer doesn't store coordinates.
+	 * 
+	 * @param latitude
+	 *            Latitude in degrees
+	 * @param longitude
+	 *            Longitude in degrees
+	 * @param elevation
+	 * @param u
+	 * @param v
+	 */
+	public void add(double latitude, double longitude, double elevation, double u, double v)
+	{
+		ensureCapacity(size + 1);
+		int offset = size * stride;
+		values[offset] = latitude;
+		values[offset + 1] = longitude;
+		values[offset + 2] = elevation;
+		if (coordinates)
+		{
+			values[offset + 3] = u;
+			values[offset + 4] = v;
+		}
+		size++;
+		modCount++;
+	}
+
+	/**
+	 * Add a copy of the position at the given index in another buffer
+	 * (including its coordinate) to the end of this buffer.
+	 * 
+	 * @param source
+	 *            Buffer to copy the position from
+	 * @param index
+	 *            Index of the position in <code>source</code>
+	 */
+	public void add(PositionBuffer source, int index)
+	{
+		add(source.getLatitude(index), source.getLongitude(index), source.getElevation(index), source.getU(index),
+				source.getV(index));
+	}
+
+	@Override
+	public boolean add(Position position)
+	{
+		add(position.latitude.degrees, position.longitude.degrees, position.elevation);
+		return true;
+	}
+
+	@Override
+	public Position get(int index)
+	{
+		checkIndex(index);
+		return Position.fromDegrees(getLatitude(index), getLongitude(index), getElevation(index));
+	}
+
+	@Override
+	public Position set(int index, Position position)
+	{
+		Position old = get(index);
+		int offset = index * stride;
+		values[offset] = position.latitude.degrees;
+		values[offset + 1] = position.longitude.degrees;
+		values[offset + 2] = position.elevation;
+		return old;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public void clear()
+	{
+		size = 0;
+		modCount++;
+	}
+
+	/**
+	 * Ensure that this buffer has space for at least the given number of
+	 * positions.
+	 * 
+	 * @param capacity
+	 */
+	public void ensureCapacity(int capacity)
+	{
+		if (capacity * stride > values.length)
+		{
+			int newCapacity = Math.max(capacity, (values.length / stride) * 3 / 2 + 1);
+			values = Arrays.copyOf(values, newCapacity * stride);
+		}
+	}
+
+	/**
+	 * Release any space allocated for positions beyond the current size.
+	 */
+	public void trimToSize()
+	{
+		if (size * stride < values.length)
+		{
+			values = Arrays.copyOf(values, Math.max(1, size) * stride);
+		}
+	}
+
+	/**
+	 * @return The bounds of the positions in this buffer, or null if this
+	 *         buffer is empty
+	 */
+	public Bounds getBounds()
+	{
+		if (size == 0)
+		{
+			return null;
+		}
+
+		double minLatitude = Double.MAX_VALUE, minLongitude = Double.MAX_VALUE, minElevation = Double.MAX_VALUE;
+		double maxLatitude = -Double.MAX_VALUE, maxLongitude = -Double.MAX_VALUE, maxElevation = -Double.MAX_VALUE;
+		for (int i = 0, offset = 0; i < size; i++, offset += stride)
+		{
+			minLatitude = Math.min(minLatitude, values[offset]);
+			maxLatitude = Math.max(maxLatitude, values[offset]);
+			minLongitude = Math.min(minLongitude, values[offset + 1]);
+			maxLongitude = Math.max(maxLongitude, values[offset + 1]);
+			minElevation = Math.min(minElevation, values[offset + 2]);
+			maxElevation = Math.max(maxElevation, values[offset + 2]);
+		}
+		return new Bounds(Position.fromDegrees(minLatitude, minLongitude, minElevation), Position.fromDegrees(
+				maxLatitude, maxLongitude, maxElevation));
+	}
+
+	/**
+	 * @return Approximate size of this buffer in memory, in bytes
+	 */
+	public long getSizeInBytes()
+	{
+		return 32 + 16 + values.length * 8L;
+	}
+
+	private void checkIndex(int index)
+	{
+		if (index < 0 || index >= size)
+		{
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+}
@@ -21,10 +21,16 @@ import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
+import au.gov.ga.worldwind.common.profiling.Profiler;
+import au.gov.ga.worldwind.common.profiling.ProfilerGauge;
+
 /**
  * Helper class for running tasks. Contains a number of threads that accepts
  * runnables and their owner. Ensures that only one runnable from each owner
  * exists in the runnable queue.
+ * <p/>
+ * The number of queued runnables is recorded by the {@link Profiler} as the
+ * runner's backlog.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -62,6 +68,23 @@ public class SingleTaskRunner
 			thread.setDaemon(true);
 			thread.start();
 		}
+
+		Profiler.INSTANCE.addGauge(threadName + " backlog", new ProfilerGauge()
+		{
+			@Override
+			public long getValue()
+			{
+				return getBacklog();
+			}
+		});
+	}
+
+	/**
+	 * @return Number of runnables waiting to be run
+	 */
+	public int getBacklog()
+	{
+		return queue.size();
 	}
 
 	public synchronized boolean run(Object owner, Runnable runnable)
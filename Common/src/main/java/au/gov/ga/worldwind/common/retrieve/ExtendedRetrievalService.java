@@ -18,7 +18,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.FutureTask;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -26,8 +25,19 @@ import java.util.logging.Level;
 
 import javax.net.ssl.SSLHandshakeException;
 
+import au.gov.ga.worldwind.common.util.AVKeyMore;
+
 /**
  * Performs threaded retrieval of data.
+ * <p/>
+ * Pending retrievals are scheduled by a {@link RetrievalQueue}, which orders
+ * them by submit time bucket and priority without depending on the current
+ * time, shares threads fairly between layers, and evicts requests for tiles
+ * that are no longer being requested. The time each retrieval spent queued is
+ * stored in the retriever under {@link AVKeyMore#RETRIEVAL_QUEUE_WAIT_TIME}.
+ * <p/>
+ * New requests are rejected while {@link AVKey#RETRIEVAL_QUEUE_SIZE} requests
+ * are queued; resubmissions of queued requests are always accepted.
  *
  * @author Tom Gaskins
  * @version $Id: BasicRetrievalService.java 448 2012-03-13 14:50:11Z tgaskins $
@@ -39,7 +49,6 @@ public class ExtendedRetrievalService extends WWObjectImpl
     private static final int DEFAULT_QUEUE_SIZE = 100;
     private static final int DEFAULT_POOL_SIZE = 5;
     private static final long DEFAULT_STALE_REQUEST_LIMIT = 30000; // milliseconds
-    private static final int DEFAULT_TIME_PRIORITY_GRANULARITY = 500; // milliseconds
 
     private static final String RUNNING_THREAD_NAME_PREFIX = Logging.getMessage(
         "BasicRetrievalService.RunningThreadNamePrefix");
@@ -48,14 +57,15 @@ public class ExtendedRetrievalService extends WWObjectImpl
 
     private RetrievalExecutor executor; // thread pool for running retrievers
     private ConcurrentLinkedQueue<RetrievalTask> activeTasks; // tasks currently allocated a thread
-    private int queueSize; // maximum queue size
+    private int queueSize; // maximum number of queued requests
 
     /** Encapsulates a single threaded retrieval as a {@link java.util.concurrent.FutureTask}. */
     private static class RetrievalTask extends FutureTask<Retriever>
-        implements RetrievalFuture, Comparable<RetrievalTask>
+        implements RetrievalFuture, RetrievalQueue.Task
     {
         private Retriever retriever;
         private double priority; // retrieval secondary priority (primary priority is submit time)
+        private Object groupKey;
 
         private RetrievalTask(Retriever retriever, double priority)
         {
@@ -83,35 +93,28 @@ public class ExtendedRetrievalService extends WWObjectImpl
             super.run();
         }
 
-        /**
-         * @param that the task to compare with this one
-         *
-         * @return 0 if task priorities are equal, -1 if priority of this is less than that, 1 otherwise
-         *
-         * @throws IllegalArgumentException if <code>that</code> is null
-         */
-        public int compareTo(RetrievalTask that)
+        public Object getGroupKey()
         {
-            if (that == null)
+            if (groupKey == null)
             {
-                String msg = Logging.getMessage("nullValue.RetrieverIsNull");
-                Logging.logger().fine(msg);
-                throw new IllegalArgumentException(msg);
+                // Group tiles by the layer or elevation model that requested them
+                groupKey = RetrievalListenerHelper.getLayer(this.retriever);
+                if (groupKey == null)
+                    groupKey = RetrievalListenerHelper.getElevationModel(this.retriever);
+                if (groupKey == null)
+                    groupKey = RetrievalQueue.groupKeyForName(this.retriever.getName());
             }
+            return groupKey;
+        }
 
-            if (this.priority > 0 && that.priority > 0) // only secondary priority used if either is negative
-            {
-                // Requests submitted within different time-granularity periods are ordered exclusive of their
-                // client-specified priority.
-                long now = System.currentTimeMillis();
-                long thisElapsedTime = now - this.retriever.getSubmitTime();
-                long thatElapsedTime = now - that.retriever.getSubmitTime();
-                if (((thisElapsedTime - thatElapsedTime) / DEFAULT_TIME_PRIORITY_GRANULARITY) != 0)
-                    return thisElapsedTime < thatElapsedTime ? -1 : 1;
-            }
+        public long getStaleRequestLimit()
+        {
+            return this.retriever.getStaleRequestLimit();
+        }
 
-            // The client-specified priority is compared for requests submitted within the same granularity period.
-            return this.priority == that.priority ? 0 : this.priority < that.priority ? -1 : 1;
+        public void dequeued(long queueWaitTime)
+        {
+            this.retriever.setValue(AVKeyMore.RETRIEVAL_QUEUE_WAIT_TIME, queueWaitTime);
         }
 
         public boolean equals(Object o)
@@ -155,11 +158,11 @@ public class ExtendedRetrievalService extends WWObjectImpl
     private class RetrievalExecutor extends ThreadPoolExecutor
     {
         private static final long THREAD_TIMEOUT = 2; // keep idle threads alive this many seconds
-        private long staleRequestLimit; // reject requests older than this
 
-        private RetrievalExecutor(int poolSize, int queueSize)
+        private RetrievalExecutor(int poolSize, long staleRequestLimit)
         {
-            super(poolSize, poolSize, THREAD_TIMEOUT, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(queueSize),
+            // The queue rejects requests that haven't been resubmitted within the stale request limit
+            super(poolSize, poolSize, THREAD_TIMEOUT, TimeUnit.SECONDS, new RetrievalQueue(staleRequestLimit),
                 new ThreadFactory()
                 {
                     public Thread newThread(Runnable runnable)
@@ -170,22 +173,7 @@ public class ExtendedRetrievalService extends WWObjectImpl
                         thread.setUncaughtExceptionHandler(ExtendedRetrievalService.this);
                         return thread;
                     }
-                }, new ThreadPoolExecutor.DiscardPolicy() // abandon task when queue is full
-            {
-                // This listener is invoked only when the executor queue is a bounded queue and runs out of room.
-                // If the queue is a java.util.concurrent.PriorityBlockingQueue, this listener is never invoked.
-                public void rejectedExecution(Runnable runnable, ThreadPoolExecutor threadPoolExecutor)
-                {
-                    // Interposes logging for rejected execution
-                    Logging.logger().finer(Logging.getMessage("BasicRetrievalService.ResourceRejected",
-                        ((RetrievalTask) runnable).getRetriever().getName()));
-
-                    super.rejectedExecution(runnable, threadPoolExecutor);
-                }
-            });
-
-            this.staleRequestLimit = Configuration.getLongValue(AVKey.RETRIEVAL_QUEUE_STALE_REQUEST_LIMIT,
-                DEFAULT_STALE_REQUEST_LIMIT);
+                });
         }
 
         /**
@@ -212,15 +200,6 @@ public class ExtendedRetrievalService extends WWObjectImpl
             RetrievalTask task = (RetrievalTask) runnable;
 
             task.retriever.setBeginTime(System.currentTimeMillis());
-            long limit = task.retriever.getStaleRequestLimit() >= 0
-                ? task.retriever.getStaleRequestLimit() : this.staleRequestLimit;
-            if (task.retriever.getBeginTime() - task.retriever.getSubmitTime() > limit)
-            {
-                // Task has been sitting on the queue too long
-                Logging.logger().finer(Logging.getMessage("BasicRetrievalService.CancellingTooOldRetrieval",
-                    task.getRetriever().getName()));
-                task.cancel(true);
-            }
 
             if (ExtendedRetrievalService.this.activeTasks.contains(task))
             {
@@ -323,8 +302,11 @@ public class ExtendedRetrievalService extends WWObjectImpl
         Integer poolSize = Configuration.getIntegerValue(AVKey.RETRIEVAL_POOL_SIZE, DEFAULT_POOL_SIZE);
         this.queueSize = Configuration.getIntegerValue(AVKey.RETRIEVAL_QUEUE_SIZE, DEFAULT_QUEUE_SIZE);
 
+        long staleRequestLimit = Configuration.getLongValue(AVKey.RETRIEVAL_QUEUE_STALE_REQUEST_LIMIT,
+            DEFAULT_STALE_REQUEST_LIMIT);
+
         // this.executor runs the retrievers, each in their own thread
-        this.executor = new RetrievalExecutor(poolSize, this.queueSize);
+        this.executor = new RetrievalExecutor(poolSize, staleRequestLimit);
 
         // this.activeTasks holds the list of currently executing tasks (*not* those pending on the queue)
         this.activeTasks = new ConcurrentLinkedQueue<RetrievalTask>();
@@ -343,7 +325,8 @@ public class ExtendedRetrievalService extends WWObjectImpl
     /**
      * @param retriever the retriever to run
      *
-     * @return a future object that can be used to query the request status of cancel the request.
+     * @return a future object that can be used to query the request status of cancel the request, or null if
+     *         the request is already queued or running, or the queue is full.
      *
      * @throws IllegalArgumentException if <code>retriever</code> is null or has no name
      */
@@ -370,7 +353,8 @@ public class ExtendedRetrievalService extends WWObjectImpl
      * @param retriever the retriever to run
      * @param priority  the secondary priority of the retriever, or negative if it is to be the primary priority
      *
-     * @return a future object that can be used to query the request status of cancel the request.
+     * @return a future object that can be used to query the request status of cancel the request, or null if
+     *         the request is already queued or running, or the queue is full.
      *
      * @throws IllegalArgumentException if <code>retriever</code> is null or has no name
      */
@@ -390,23 +374,34 @@ public class ExtendedRetrievalService extends WWObjectImpl
             throw new IllegalArgumentException(message);
         }
 
-        if (!this.isAvailable())
-        {
-            Logging.logger().finer(Logging.getMessage("BasicRetrievalService.ResourceRejected", retriever.getName()));
-        }
-
         RetrievalTask task = new RetrievalTask(retriever, priority);
         retriever.setSubmitTime(System.currentTimeMillis());
 
-        // Do not queue duplicates.
-        if (this.activeTasks.contains(task) || this.executor.getQueue().contains(task))
+        // Do not queue duplicates. A duplicate of a queued task is a request for a tile that is still needed,
+        // so the queued task is refreshed, which moves it up to the current time bucket.
+        if (this.activeTasks.contains(task) || this.getRetrievalQueue().refresh(task))
             return null;
 
+        // The RetrievalQueue itself is unbounded, so the queue size is enforced here for new requests
+        if (!this.isAvailable())
+        {
+            Logging.logger().finer(Logging.getMessage("BasicRetrievalService.ResourceRejected", retriever.getName()));
+            return null;
+        }
+
         this.executor.execute(task);
 
         return task;
     }
 
+    /**
+     * @return the queue of pending retrievals, which provides queue wait time and eviction statistics
+     */
+    public RetrievalQueue getRetrievalQueue()
+    {
+        return (RetrievalQueue) this.executor.getQueue();
+    }
+
     /**
      * @param poolSize the number of threads in the thread pool
      *
@@ -0,0 +1,705 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.retrieve;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Work queue used by the retrieval services' thread pools.
+ * <p/>
+ * Unlike a {@link java.util.concurrent.PriorityBlockingQueue} ordered by a
+ * comparator that depends on the current time, the ordering of each task is
+ * calculated once when it is queued (or resubmitted), so it cannot change while
+ * the task sits in the queue:
+ * <ul>
+ * <li>Tasks with a non-positive priority are run first, in priority order.</li>
+ * <li>Other tasks are placed in a bucket according to their submit time (with a
+ * granularity of {@link #TIME_PRIORITY_GRANULARITY}); newer buckets are run
+ * first, and within a bucket tasks are run in priority order.</li>
+ * <li>Tasks with equal ordering are run in the order they were queued.</li>
+ * </ul>
+ * Tasks are also grouped (usually by the layer that requested them). When the
+ * heads of several groups are in the same bucket, the groups are served
+ * round-robin, so that a layer that requests many tiles cannot starve the
+ * others.
+ * <p/>
+ * Resubmitting a task that is already queued (see {@link #refresh(Task)})
+ * moves it into the current bucket. Tiles that remain in view are requested
+ * every frame, so tasks that haven't been resubmitted within their stale
+ * request limit are for tiles no longer in view; these are evicted (and
+ * cancelled) rather than run.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class RetrievalQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable>
+{
+	public static final long TIME_PRIORITY_GRANULARITY = 500; // milliseconds
+	private static final long SWEEP_INTERVAL = 1000; // milliseconds
+
+	/**
+	 * A task that can be scheduled by the {@link RetrievalQueue}. Equal tasks
+	 * are considered resubmissions of the same request.
+	 */
+	public static interface Task extends Runnable
+	{
+		/**
+		 * @return Key identifying the group this task belongs to (such as the
+		 *         requesting layer); groups are served fairly
+		 */
+		Object getGroupKey();
+
+		/**
+		 * @return Priority of this task; lower values are run first, and
+		 *         non-positive values are run before all others
+		 */
+		double getPriority();
+
+		/**
+		 * @return Maximum time (in milliseconds) this task can be queued
+		 *         without being resubmitted, or negative to use the queue's
+		 *         default
+		 */
+		long getStaleRequestLimit();
+
+		/**
+		 * Called when this task is removed from the queue to be run.
+		 * 
+		 * @param queueWaitTime
+		 *            Time in milliseconds since this task was first queued
+		 */
+		void dequeued(long queueWaitTime);
+
+		/**
+		 * Called when this task is evicted from the queue without being run.
+		 */
+		boolean cancel(boolean mayInterruptIfRunning);
+	}
+
+	private final long defaultStaleRequestLimit;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Map<Object, TreeSet<Node>> groups = new LinkedHashMap<Object, TreeSet<Node>>();
+	private final Map<Task, Node> nodes = new HashMap<Task, Node>();
+	private long sequence = 0;
+	private Object lastGroupKey;
+	private long lastSweep;
+
+	private long dequeuedCount;
+	private long evictedCount;
+	private long totalWaitTime;
+	private long maximumWaitTime;
+
+	/**
+	 * @param defaultStaleRequestLimit
+	 *            Time (in milliseconds) after which tasks that haven't been
+	 *            resubmitted are evicted, for tasks that don't specify their own
+	 *            limit; negative to never evict
+	 */
+	public RetrievalQueue(long defaultStaleRequestLimit)
+	{
+		this.defaultStaleRequestLimit = defaultStaleRequestLimit;
+	}
+
+	@Override
+	public boolean offer(Runnable runnable)
+	{
+		if (!(runnable instanceof Task))
+		{
+			throw new IllegalArgumentException("Runnable must be a " + Task.class.getName());
+		}
+
+		Task task = (Task) runnable;
+		lock.lock();
+		try
+		{
+			if (nodes.containsKey(task))
+			{
+				refresh(task);
+				return true;
+			}
+
+			long now = System.currentTimeMillis();
+			Node node = new Node(task, now);
+			node.update(task.getPriority(), now, sequence++);
+			nodes.put(task, node);
+			Object key = task.getGroupKey();
+			TreeSet<Node> group = groups.get(key);
+			if (group == null)
+			{
+				group = new TreeSet<Node>(NODE_ORDER);
+				groups.put(key, group);
+			}
+			group.add(node);
+			notEmpty.signal();
+			return true;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Resubmit a task. If an equal task is queued, it is moved into the current
+	 * time bucket with the given task's priority, and will not be considered
+	 * stale until its stale request limit has elapsed again.
+	 * 
+	 * @param task
+	 *            Task equal to the queued task
+	 * @return True if an equal task was queued
+	 */
+	public boolean refresh(Task task)
+	{
+		lock.lock();
+		try
+		{
+			Node node = nodes.get(task);
+			if (node == null)
+			{
+				return false;
+			}
+			TreeSet<Node> group = groups.get(node.groupKey);
+			group.remove(node);
+			node.update(task.getPriority(), System.currentTimeMillis(), sequence++);
+			group.add(node);
+			return true;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable poll()
+	{
+		lock.lock();
+		try
+		{
+			return dequeue();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable take() throws InterruptedException
+	{
+		lock.lockInterruptibly();
+		try
+		{
+			Runnable runnable;
+			while ((runnable = dequeue()) == null)
+			{
+				notEmpty.await();
+			}
+			return runnable;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException
+	{
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try
+		{
+			Runnable runnable;
+			while ((runnable = dequeue()) == null)
+			{
+				if (nanos <= 0)
+				{
+					return null;
+				}
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+			return runnable;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable peek()
+	{
+		lock.lock();
+		try
+		{
+			Node node = selectNext(false);
+			return node != null ? node.task : null;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void put(Runnable runnable)
+	{
+		offer(runnable);
+	}
+
+	@Override
+	public boolean offer(Runnable runnable, long timeout, TimeUnit unit)
+	{
+		return offer(runnable);
+	}
+
+	@Override
+	public int remainingCapacity()
+	{
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	public int size()
+	{
+		lock.lock();
+		try
+		{
+			return nodes.size();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean contains(Object o)
+	{
+		lock.lock();
+		try
+		{
+			return nodes.containsKey(o);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean remove(Object o)
+	{
+		lock.lock();
+		try
+		{
+			Node node = nodes.get(o);
+			if (node == null)
+			{
+				return false;
+			}
+			removeNode(node);
+			return true;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void clear()
+	{
+		lock.lock();
+		try
+		{
+			nodes.clear();
+			groups.clear();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super Runnable> c)
+	{
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super Runnable> c, int maxElements)
+	{
+		if (c == this)
+		{
+			throw new IllegalArgumentException();
+		}
+		lock.lock();
+		try
+		{
+			int count = 0;
+			Runnable runnable;
+			while (count < maxElements && (runnable = dequeue()) != null)
+			{
+				c.add(runnable);
+				count++;
+			}
+			return count;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return A snapshot iterator over the queued tasks, in no particular
+	 *         order; removal is supported
+	 */
+	@Override
+	public Iterator<Runnable> iterator()
+	{
+		final List<Runnable> snapshot;
+		lock.lock();
+		try
+		{
+			snapshot = new ArrayList<Runnable>(nodes.keySet());
+		}
+		finally
+		{
+			lock.unlock();
+		}
+		final Iterator<Runnable> iterator = snapshot.iterator();
+		return new Iterator<Runnable>()
+		{
+			private Runnable current;
+
+			@Override
+			public boolean hasNext()
+			{
+				return iterator.hasNext();
+			}
+
+			@Override
+			public Runnable next()
+			{
+				current = iterator.next();
+				return current;
+			}
+
+			@Override
+			public void remove()
+			{
+				RetrievalQueue.this.remove(current);
+			}
+		};
+	}
+
+	/**
+	 * @return Number of tasks that have been removed from this queue to be run
+	 */
+	public long getDequeuedCount()
+	{
+		lock.lock();
+		try
+		{
+			return dequeuedCount;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Number of stale tasks that have been evicted from this queue
+	 */
+	public long getEvictedCount()
+	{
+		lock.lock();
+		try
+		{
+			return evictedCount;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Average time (in milliseconds) that run tasks spent queued
+	 */
+	public double getAverageWaitTime()
+	{
+		lock.lock();
+		try
+		{
+			return dequeuedCount == 0 ? 0 : totalWaitTime / (double) dequeuedCount;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Longest time (in milliseconds) that a run task spent queued
+	 */
+	public long getMaximumWaitTime()
+	{
+		lock.lock();
+		try
+		{
+			return maximumWaitTime;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Remove and return the next task to run, evicting stale tasks. Must be
+	 * called with the lock held.
+	 */
+	private Task dequeue()
+	{
+		long now = System.currentTimeMillis();
+		if (now - lastSweep >= SWEEP_INTERVAL)
+		{
+			evictStale(now);
+			lastSweep = now;
+		}
+
+		Node node;
+		while ((node = selectNext(true)) != null)
+		{
+			removeNode(node);
+			if (isStale(node, now))
+			{
+				evict(node);
+				continue;
+			}
+
+			long wait = now - node.queueTime;
+			dequeuedCount++;
+			totalWaitTime += wait;
+			maximumWaitTime = Math.max(maximumWaitTime, wait);
+			node.task.dequeued(wait);
+			return node.task;
+		}
+		return null;
+	}
+
+	/**
+	 * Find the next node to run: the best group head, rotating between groups
+	 * whose heads are in the same bucket as the best. Must be called with the
+	 * lock held.
+	 */
+	private Node selectNext(boolean advance)
+	{
+		Node best = null;
+		for (TreeSet<Node> group : groups.values())
+		{
+			Node head = group.first();
+			if (best == null || NODE_ORDER.compare(head, best) < 0)
+			{
+				best = head;
+			}
+		}
+		if (best == null || best.tier == 0)
+		{
+			//explicitly prioritized tasks (non-positive priority) are not subject to fairness
+			if (advance && best != null)
+			{
+				lastGroupKey = best.groupKey;
+			}
+			return best;
+		}
+
+		//choose the first candidate group after the last group served
+		Node first = null;
+		Node afterLast = null;
+		boolean passedLast = false;
+		for (Map.Entry<Object, TreeSet<Node>> entry : groups.entrySet())
+		{
+			Node head = entry.getValue().first();
+			if (head.tier == best.tier && head.bucket == best.bucket)
+			{
+				if (first == null)
+				{
+					first = head;
+				}
+				if (passedLast && afterLast == null)
+				{
+					afterLast = head;
+				}
+			}
+			if (entry.getKey().equals(lastGroupKey))
+			{
+				passedLast = true;
+			}
+		}
+		Node next = afterLast != null ? afterLast : first;
+		if (advance)
+		{
+			lastGroupKey = next.groupKey;
+		}
+		return next;
+	}
+
+	private void evictStale(long now)
+	{
+		List<Node> stale = new ArrayList<Node>();
+		for (Node node : nodes.values())
+		{
+			if (isStale(node, now))
+			{
+				stale.add(node);
+			}
+		}
+		for (Node node : stale)
+		{
+			removeNode(node);
+			evict(node);
+		}
+	}
+
+	private boolean isStale(Node node, long now)
+	{
+		long limit = node.task.getStaleRequestLimit();
+		if (limit < 0)
+		{
+			limit = defaultStaleRequestLimit;
+		}
+		return limit >= 0 && now - node.refreshTime > limit;
+	}
+
+	private void evict(Node node)
+	{
+		evictedCount++;
+		node.task.cancel(false);
+	}
+
+	private void removeNode(Node node)
+	{
+		nodes.remove(node.task);
+		TreeSet<Node> group = groups.get(node.groupKey);
+		group.remove(node);
+		if (group.isEmpty())
+		{
+			groups.remove(node.groupKey);
+		}
+	}
+
+	/**
+	 * Orders nodes by tier (non-positive priorities first), then by bucket
+	 * (newest first, for positive priorities), then by priority, then by
+	 * sequence. All values are fixed while the node is in a group.
+	 */
+	private static final Comparator<Node> NODE_ORDER = new Comparator<Node>()
+	{
+		@Override
+		public int compare(Node a, Node b)
+		{
+			if (a.tier != b.tier)
+			{
+				return a.tier < b.tier ? -1 : 1;
+			}
+			if (a.bucket != b.bucket)
+			{
+				return a.bucket > b.bucket ? -1 : 1;
+			}
+			int c = Double.compare(a.priority, b.priority);
+			if (c != 0)
+			{
+				return c;
+			}
+			return a.sequence < b.sequence ? -1 : a.sequence == b.sequence ? 0 : 1;
+		}
+	};
+
+	/**
+	 * Queue entry for a task, holding its ordering key.
+	 */
+	private static class Node
+	{
+		private final Task task;
+		private final Object groupKey;
+		private final long queueTime;
+		private long refreshTime;
+		private int tier;
+		private long bucket;
+		private double priority;
+		private long sequence;
+
+		private Node(Task task, long queueTime)
+		{
+			this.task = task;
+			this.groupKey = task.getGroupKey();
+			this.queueTime = queueTime;
+		}
+
+		private void update(double priority, long time, long sequence)
+		{
+			this.priority = priority;
+			this.refreshTime = time;
+			this.sequence = sequence;
+			this.tier = priority > 0 ? 1 : 0;
+			this.bucket = priority > 0 ? time / TIME_PRIORITY_GRANULARITY : 0;
+		}
+	}
+
+	/**
+	 * Calculate a default group key for a retriever name (usually its URL),
+	 * for retrievers that can't be associated with a layer. Returns the host
+	 * part of the URL, or the name itself if it isn't a URL.
+	 * 
+	 * @param name
+	 * @return Group key for the name
+	 */
+	public static Object groupKeyForName(String name)
+	{
+		if (name == null)
+		{
+			return "";
+		}
+		int start = name.indexOf("://");
+		if (start < 0)
+		{
+			return name;
+		}
+		start += 3;
+		int end = name.indexOf('/', start);
+		return end < 0 ? name : name.substring(0, end);
+	}
+}
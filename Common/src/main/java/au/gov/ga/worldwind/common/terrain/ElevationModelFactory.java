@@ -22,11 +22,11 @@ import gov.nasa.worldwind.ogc.OGCConstants;
 import gov.nasa.worldwind.terrain.BasicElevationModelFactory;
 import gov.nasa.worldwind.terrain.CompoundElevationModel;
 import gov.nasa.worldwind.util.Logging;
-import gov.nasa.worldwind.util.WWXML;
 
 import org.w3c.dom.Element;
 
 import au.gov.ga.worldwind.common.layers.Bounded;
+import au.gov.ga.worldwind.common.util.XMLUtil;
 
 /**
  * Extension to World Wind's {@link BasicElevationModelFactory} which creates
@@ -69,7 +69,7 @@ public class ElevationModelFactory extends BasicElevationModelFactory
 	{
 		ElevationModel em;
 
-		String serviceName = WWXML.getText(domElement, "Service/@serviceName");
+		String serviceName = XMLUtil.getText(domElement, "Service/@serviceName");
 
 		if ("Offline".equals(serviceName))
 		{
@@ -0,0 +1,497 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.terrain;
+
+import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.globes.ElevationModel;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Samples the elevation of a large set of locations in bulk, and refines the
+ * samples incrementally as higher resolution elevation data becomes available.
+ * <p/>
+ * Locations are stored packed in a primitive array (latitude and longitude
+ * pairs in degrees). They are grouped into cells that roughly match the size
+ * of an elevation tile at the target resolution, and each cell is sampled with
+ * a single {@link ElevationModel#getElevations(Sector, java.util.List, double, double[])}
+ * call, so the elevation tiles covering the cell are looked up once per cell
+ * instead of once per location.
+ * <p/>
+ * The resolution achieved for each sample is recorded. Subsequent calls to
+ * {@link #update(ElevationModel, double)} only resample the cells containing
+ * samples that haven't yet reached the target resolution (which may change
+ * between updates, for example as the view moves), and report how many
+ * elevations changed, so callers can skip recalculating geometry when nothing
+ * has changed.
+ * <p/>
+ * {@link #isComplete(ElevationModel, double)} doesn't lock, so it can be
+ * called from the render thread while an update is running on another thread.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class ElevationSampler
+{
+	/**
+	 * Number of samples along the edge of a cell at the target resolution;
+	 * matches the default elevation tile width.
+	 */
+	protected static final int CELL_SAMPLES = 150;
+	/**
+	 * Minimum cell size in degrees; ensures the cell keys fit in 32 bits (2^16
+	 * cells around the globe).
+	 */
+	protected static final double MIN_CELL_DELTA = 360d / (1 << 16);
+
+	private final double[] latlons;
+	private final int size;
+	private final double[] elevations;
+	private final double[] resolutions;
+	private final Sector sector;
+	private final double sampleSpacing;
+
+	private int[] order;
+	private int[] cellOffsets;
+	private Sector[] cellSectors;
+	private double groupedResolution = Double.NaN;
+
+	private ElevationModel lastModel;
+	private volatile int unresolvedCount;
+	private volatile Completion completion;
+
+	/**
+	 * Create a sampler for the given locations.
+	 * 
+	 * @param latlons
+	 *            Latitude and longitude pairs, in degrees. The array is not
+	 *            copied, and shouldn't be modified while this sampler is in
+	 *            use.
+	 */
+	public ElevationSampler(double[] latlons)
+	{
+		this(latlons, latlons.length / 2);
+	}
+
+	/**
+	 * Create a sampler for the first <code>count</code> locations in the
+	 * given array.
+	 * 
+	 * @param latlons
+	 *            Latitude and longitude pairs, in degrees
+	 * @param count
+	 *            Number of locations (half the number of values used)
+	 */
+	public ElevationSampler(double[] latlons, int count)
+	{
+		if (latlons == null || count < 0 || count * 2 > latlons.length)
+		{
+			throw new IllegalArgumentException("Invalid location array");
+		}
+
+		this.latlons = latlons;
+		this.size = count;
+		this.elevations = new double[count];
+		this.resolutions = new double[count];
+		Arrays.fill(resolutions, Double.MAX_VALUE);
+		this.unresolvedCount = count;
+		this.sector = calculateSector();
+		this.sampleSpacing = calculateSampleSpacing();
+	}
+
+	/**
+	 * @return Number of locations sampled
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	public double getLatitude(int index)
+	{
+		return latlons[index * 2];
+	}
+
+	public double getLongitude(int index)
+	{
+		return latlons[index * 2 + 1];
+	}
+
+	/**
+	 * @param index
+	 * @return Last sampled elevation of the location at index, or 0 if it
+	 *         hasn't been sampled yet
+	 */
+	public double getElevation(int index)
+	{
+		return elevations[index];
+	}
+
+	/**
+	 * @param index
+	 * @return Resolution (in radians) achieved for the location at index, or
+	 *         {@link Double#MAX_VALUE} if it hasn't been sampled yet
+	 */
+	public double getResolution(int index)
+	{
+		return resolutions[index];
+	}
+
+	/**
+	 * @return Number of locations that haven't been sampled at the target
+	 *         resolution of the last update
+	 */
+	public int getUnresolvedCount()
+	{
+		return unresolvedCount;
+	}
+
+	/**
+	 * Have all locations been sampled at the target resolution of the last
+	 * update, using the given model? Returns false if the model (or its best
+	 * resolution) has changed since the last update.
+	 * 
+	 * @param model
+	 * @return True if another update with the same model and target
+	 *         resolution would not change any elevations
+	 */
+	public boolean isComplete(ElevationModel model)
+	{
+		Completion completion = this.completion;
+		return completion != null && completion.matches(model);
+	}
+
+	/**
+	 * Have all locations been sampled at (at least) the given target
+	 * resolution, using the given model? Returns false if the model (or its
+	 * best resolution) has changed since the last update.
+	 * 
+	 * @param model
+	 * @param targetResolution
+	 *            Resolution in radians
+	 * @return True if an update with the same model and target resolution
+	 *         would not change any elevations
+	 */
+	public boolean isComplete(ElevationModel model, double targetResolution)
+	{
+		Completion completion = this.completion;
+		return completion != null && completion.matches(model)
+				&& targetResolution >= completion.targetResolution;
+	}
+
+	/**
+	 * @return Sector bounding all locations, or null if there are none
+	 */
+	public Sector getSector()
+	{
+		return sector;
+	}
+
+	/**
+	 * @return Average distance between locations in radians
+	 */
+	public double getSampleSpacing()
+	{
+		return sampleSpacing;
+	}
+
+	/**
+	 * Calculate the target resolution that samples the locations at the best
+	 * resolution the given model has for them, the same as
+	 * {@link ElevationModel#getElevation(gov.nasa.worldwind.geom.Angle, gov.nasa.worldwind.geom.Angle)}
+	 * would use.
+	 * 
+	 * @param model
+	 * @return Target resolution in radians for
+	 *         {@link #update(ElevationModel, double)}
+	 */
+	public double getBestResolution(ElevationModel model)
+	{
+		if (model == null || sector == null)
+		{
+			return 0;
+		}
+		return model.getBestResolution(sector);
+	}
+
+	/**
+	 * Mark all samples as unresolved, so that the next update resamples every
+	 * location.
+	 */
+	public synchronized void invalidate()
+	{
+		Arrays.fill(resolutions, Double.MAX_VALUE);
+		unresolvedCount = size;
+		completion = null;
+	}
+
+	/**
+	 * Sample the elevations of the locations that haven't yet been sampled at
+	 * the target resolution. If the model is different from the last update,
+	 * all locations are resampled; samples from a previous target resolution
+	 * are kept if they are good enough for the new one.
+	 * <p/>
+	 * Elevation models request the tiles they are missing, so calling this
+	 * again once those tiles have arrived will refine the remaining samples.
+	 * 
+	 * @param model
+	 *            Elevation model to sample; if null, all elevations are 0
+	 * @param targetResolution
+	 *            Desired resolution in radians
+	 * @return Number of elevations that changed
+	 */
+	public synchronized int update(ElevationModel model, double targetResolution)
+	{
+		completion = null;
+		if (model != lastModel)
+		{
+			Arrays.fill(resolutions, Double.MAX_VALUE);
+			lastModel = model;
+		}
+
+		int changed = 0;
+		if (model == null)
+		{
+			for (int i = 0; i < size; i++)
+			{
+				if (resolutions[i] == Double.MAX_VALUE)
+				{
+					changed += elevations[i] != 0 ? 1 : 0;
+					elevations[i] = 0;
+					resolutions[i] = 0;
+				}
+			}
+			unresolvedCount = 0;
+			completion = new Completion(null, Double.NaN, targetResolution);
+			return changed;
+		}
+
+		if (targetResolution != groupedResolution)
+		{
+			group(targetResolution);
+		}
+		double bestResolution = model.getBestResolution(null);
+
+		double[] buffer = null;
+		int unresolved = 0;
+		for (int cell = 0; cell < cellSectors.length; cell++)
+		{
+			int start = cellOffsets[cell], end = cellOffsets[cell + 1];
+			Sector sector = cellSectors[cell];
+			double requiredResolution = requiredResolution(model, sector, targetResolution);
+
+			boolean resolved = true;
+			for (int i = start; i < end && resolved; i++)
+			{
+				resolved = resolutions[order[i]] <= requiredResolution;
+			}
+			if (resolved)
+			{
+				continue;
+			}
+
+			int count = end - start;
+			if (buffer == null || buffer.length < count)
+			{
+				buffer = new double[count];
+			}
+			double achieved = model.getElevations(sector, new CellLocations(start, end), targetResolution, buffer);
+			for (int i = 0; i < count; i++)
+			{
+				int index = order[start + i];
+				//keep the previous sample if it was better (tiles may have been evicted from memory)
+				if (achieved != Double.MAX_VALUE && achieved < resolutions[index])
+				{
+					if (elevations[index] != buffer[i] || resolutions[index] == Double.MAX_VALUE)
+					{
+						changed++;
+					}
+					elevations[index] = buffer[i];
+					resolutions[index] = achieved;
+				}
+				if (resolutions[index] > requiredResolution)
+				{
+					unresolved++;
+				}
+			}
+		}
+		unresolvedCount = unresolved;
+		//publish the completed state last, so that isComplete() doesn't need to lock
+		completion = unresolved == 0 ? new Completion(model, bestResolution, targetResolution) : null;
+		return changed;
+	}
+
+	/**
+	 * Calculate the resolution a sample in the given sector must have to be
+	 * considered resolved: the target resolution, or the best resolution of
+	 * the model if the model can't achieve the target.
+	 */
+	protected double requiredResolution(ElevationModel model, Sector sector, double targetResolution)
+	{
+		//allow for rounding differences between the model's level resolutions
+		return Math.max(targetResolution, model.getBestResolution(sector)) * 1.0001;
+	}
+
+	/**
+	 * Sort the locations into cells that are roughly the size of an elevation
+	 * tile at the target resolution.
+	 */
+	protected void group(double targetResolution)
+	{
+		double cellDelta = Math.max(MIN_CELL_DELTA, Math.toDegrees(targetResolution) * CELL_SAMPLES);
+		if (Double.isNaN(cellDelta) || Double.isInfinite(cellDelta))
+		{
+			cellDelta = 360d;
+		}
+		long cols = (long) Math.ceil(360d / cellDelta) + 1;
+
+		//pack the cell key and the location index into a single long, so they can be sorted without boxing
+		long[] keys = new long[size];
+		for (int i = 0; i < size; i++)
+		{
+			long row = (long) Math.floor((clamp(getLatitude(i), -90, 90) + 90) / cellDelta);
+			long col = (long) Math.floor((clamp(getLongitude(i), -180, 180) + 180) / cellDelta);
+			keys[i] = ((row * cols + col) << 31) | i;
+		}
+		Arrays.sort(keys);
+
+		order = new int[size];
+		int[] offsets = new int[size + 1];
+		int cellCount = 0;
+		long lastKey = -1;
+		for (int i = 0; i < size; i++)
+		{
+			long key = keys[i] >>> 31;
+			if (key != lastKey)
+			{
+				offsets[cellCount++] = i;
+				lastKey = key;
+			}
+			order[i] = (int) (keys[i] & 0x7fffffffL);
+		}
+		offsets[cellCount] = size;
+		cellOffsets = Arrays.copyOf(offsets, cellCount + 1);
+
+		cellSectors = new Sector[cellCount];
+		for (int cell = 0; cell < cellCount; cell++)
+		{
+			double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+			double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+			for (int i = cellOffsets[cell]; i < cellOffsets[cell + 1]; i++)
+			{
+				double lat = getLatitude(order[i]), lon = getLongitude(order[i]);
+				minLat = Math.min(minLat, lat);
+				maxLat = Math.max(maxLat, lat);
+				minLon = Math.min(minLon, lon);
+				maxLon = Math.max(maxLon, lon);
+			}
+			cellSectors[cell] = Sector.fromDegrees(minLat, maxLat, minLon, maxLon);
+		}
+		groupedResolution = targetResolution;
+	}
+
+	private Sector calculateSector()
+	{
+		if (size == 0)
+		{
+			return null;
+		}
+
+		double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+		double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+		for (int i = 0; i < size; i++)
+		{
+			minLat = Math.min(minLat, getLatitude(i));
+			maxLat = Math.max(maxLat, getLatitude(i));
+			minLon = Math.min(minLon, getLongitude(i));
+			maxLon = Math.max(maxLon, getLongitude(i));
+		}
+		return Sector.fromDegrees(clamp(minLat, -90, 90), clamp(maxLat, -90, 90), clamp(minLon, -180, 180),
+				clamp(maxLon, -180, 180));
+	}
+
+	private double calculateSampleSpacing()
+	{
+		if (size < 2)
+		{
+			return 0;
+		}
+
+		double height = sector.getDeltaLatRadians();
+		double width = sector.getDeltaLonRadians() * Math.cos(sector.getCentroid().getLatitude().radians);
+		//area based spacing for meshes, and length based spacing for lines (whose area is ~0)
+		return Math.max(Math.sqrt(height * width / size), Math.max(height, width) / (size - 1));
+	}
+
+	private static double clamp(double value, double min, double max)
+	{
+		return value < min ? min : value > max ? max : value;
+	}
+
+	/**
+	 * Model and resolutions of an update that sampled every location at its
+	 * target resolution.
+	 */
+	private static class Completion
+	{
+		private final ElevationModel model;
+		private final double bestResolution;
+		private final double targetResolution;
+
+		public Completion(ElevationModel model, double bestResolution, double targetResolution)
+		{
+			this.model = model;
+			this.bestResolution = bestResolution;
+			this.targetResolution = targetResolution;
+		}
+
+		public boolean matches(ElevationModel model)
+		{
+			return model == this.model && (model == null || model.getBestResolution(null) == bestResolution);
+		}
+	}
+
+	/**
+	 * Lightweight list of the locations in a cell; creates {@link LatLon}s on
+	 * demand, so the locations don't need to be held as objects.
+	 */
+	private class CellLocations extends AbstractList<LatLon> implements RandomAccess
+	{
+		private final int start;
+		private final int size;
+
+		public CellLocations(int start, int end)
+		{
+			this.start = start;
+			this.size = end - start;
+		}
+
+		@Override
+		public LatLon get(int index)
+		{
+			int i = order[start + index];
+			return LatLon.fromDegrees(getLatitude(i), getLongitude(i));
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+	}
+}
@@ -20,6 +20,7 @@ import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.avlist.AVList;
 import gov.nasa.worldwind.avlist.AVListImpl;
 import gov.nasa.worldwind.util.BufferWrapper;
+import gov.nasa.worldwind.util.Level;
 import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.Tile;
 import gov.nasa.worldwind.util.TileKey;
@@ -33,17 +34,22 @@ import org.w3c.dom.Element;
 
 import au.gov.ga.worldwind.common.util.AVKeyMore;
 import au.gov.ga.worldwind.common.util.IOUtil;
+import au.gov.ga.worldwind.common.util.TileIndex;
 import au.gov.ga.worldwind.common.util.URLUtil;
 import au.gov.ga.worldwind.common.util.Util;
 
 /**
  * Elevation model that retrieves its elevation data from elevation tiles stored
- * in a directory in the local file system.
+ * in a directory in the local file system. If the tileset has a
+ * {@link TileIndex}, tiles that it doesn't contain are not requested.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class FileElevationModel extends BoundedBasicElevationModel
 {
+	private TileIndex tileIndex;
+	private boolean tileIndexRead = false;
+
 	public FileElevationModel(Element domElement, AVList params)
 	{
 		super(getBasicElevationModelConfigParams(domElement, createURLBuilderParam(params)));
@@ -103,7 +109,7 @@ public class FileElevationModel extends BoundedBasicElevationModel
 			return;
 		}
 
-		if (this.getLevels().isResourceAbsent(key))
+		if (this.getLevels().isResourceAbsent(key) || isTileAbsent(key))
 		{
 			return;
 		}
@@ -112,6 +118,34 @@ public class FileElevationModel extends BoundedBasicElevationModel
 		WorldWind.getTaskService().addTask(request);
 	}
 
+	/**
+	 * @return True if the tileset's {@link TileIndex} says the given tile
+	 *         doesn't exist
+	 */
+	protected boolean isTileAbsent(TileKey key)
+	{
+		TileIndex index = getTileIndex();
+		return index != null && index.isAbsent(key.getLevelNumber(), key.getRow(), key.getColumn());
+	}
+
+	/**
+	 * @return The {@link TileIndex} of this model's tileset, or null if the
+	 *         tileset has no index. The index is read the first time this is
+	 *         called.
+	 */
+	protected synchronized TileIndex getTileIndex()
+	{
+		if (!tileIndexRead)
+		{
+			Level level = getLevels().getFirstLevel();
+			AVList params = (AVList) getValue(AVKey.CONSTRUCTION_PARAMETERS);
+			URL context = params != null ? (URL) params.getValue(AVKeyMore.CONTEXT_URL) : null;
+			tileIndex = TileIndex.find(level.getService(), level.getDataset(), context);
+			tileIndexRead = true;
+		}
+		return tileIndex;
+	}
+
 	@Override
 	protected BufferWrapper readElevations(URL url) throws IOException
 	{
@@ -38,6 +38,7 @@ import org.w3c.dom.Element;
 import au.gov.ga.worldwind.common.layers.tiled.image.delegate.FileLockSharer;
 import au.gov.ga.worldwind.common.util.AVKeyMore;
 import au.gov.ga.worldwind.common.util.IOUtil;
+import au.gov.ga.worldwind.common.util.XMLUtil;
 
 /**
  * {@link BasicElevationModel} that uses the {@link FileLockSharer} to
@@ -73,7 +74,7 @@ public class SharedLockBasicElevationModel extends URLTransformerBasicElevationM
 	{
 		params = getBasicElevationModelConfigParams(domElement, params);
 		
-		XPath xpath = WWXML.makeXPath();
+		XPath xpath = XMLUtil.makeXPath();
 		WWXML.checkAndSetBooleanParam(domElement, params, AVKeyMore.EXTRACT_ZIP_ENTRY, "ExtractZipEntry", xpath);
 		
 		return params;
@@ -30,6 +30,7 @@ public interface AVKeyMore extends AVKey
 	final static String DELEGATE_KIT = "au.gov.ga.worldwind.AVKeyMore.DelegateKit";
 	final static String DOWNLOADER_CONNECT_TIMEOUT = "au.gov.ga.worldwind.AVKeyMore.DownloaderConnectTimeout";
 	final static String DOWNLOADER_READ_TIMEOUT = "au.gov.ga.worldwind.AVKeyMore.DownloaderReadTimeout";
+	final static String RETRIEVAL_QUEUE_WAIT_TIME = "au.gov.ga.worldwind.AVKeyMore.RetrievalQueueWaitTime";
 	final static String EXPIRY_TIMESPAN = "au.gov.ga.worldwind.AVKeyMore.ExpiryTimespan";
 	final static String EXPIRY_START_TIME = "au.gov.ga.worldwind.AVKeyMore.ExpiryStartTime";
 	final static String MINIMUM_DISTANCE = "au.gov.ga.worldwind.AVKeyMore.MinimumDistance";
@@ -105,6 +106,7 @@ public interface AVKeyMore extends AVKey
 	final static String INITIAL_OFFSET_MIN_W = "au.gov.ga.worldwind.AVKeyMore.InitialOffsetMinW";
 	final static String INITIAL_OFFSET_MAX_W = "au.gov.ga.worldwind.AVKeyMore.InitialOffsetMaxW";
 	final static String FORCE_TWO_SIDED_LIGHTING = "au.gov.ga.worldwind.AVKeyMore.Force2SidedLighting";
+	final static String ISO_VALUE = "au.gov.ga.worldwind.AVKeyMore.IsoValue";
 
 	//model layer
 	final static String TARGET_BAND = "au.gov.ga.worldwind.AVKeyMore.TargetBand";
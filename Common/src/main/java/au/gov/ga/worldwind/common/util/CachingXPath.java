@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFunctionResolver;
+import javax.xml.xpath.XPathVariableResolver;
+
+import org.xml.sax.InputSource;
+
+/**
+ * An {@link XPath} wrapper that keeps the most recently used compiled
+ * {@link XPathExpression}s, so that evaluating the same path repeatedly (such
+ * as <code>@name</code> for every element in a large document) only compiles
+ * it once.
+ * <p/>
+ * Like the {@link XPath} it wraps, instances of this class are not thread
+ * safe. Use {@link XMLUtil#makeXPath()} to create an instance per thread.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class CachingXPath implements XPath
+{
+	public final static int DEFAULT_CACHE_SIZE = 256;
+
+	private final XPath delegate;
+	private final Map<String, XPathExpression> expressions;
+
+	public CachingXPath(XPath delegate)
+	{
+		this(delegate, DEFAULT_CACHE_SIZE);
+	}
+
+	public CachingXPath(XPath delegate, final int cacheSize)
+	{
+		Validate.notNull(delegate, "XPath delegate cannot be null");
+		this.delegate = delegate;
+		this.expressions = new LinkedHashMap<String, XPathExpression>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest)
+			{
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * @return The cached compiled expression for the given path, compiling it
+	 *         if it has not been seen recently
+	 */
+	protected XPathExpression expression(String expression) throws XPathExpressionException
+	{
+		XPathExpression compiled = expressions.get(expression);
+		if (compiled == null)
+		{
+			compiled = delegate.compile(expression);
+			expressions.put(expression, compiled);
+		}
+		return compiled;
+	}
+
+	@Override
+	public XPathExpression compile(String expression) throws XPathExpressionException
+	{
+		return expression(expression);
+	}
+
+	@Override
+	public Object evaluate(String expression, Object item, QName returnType) throws XPathExpressionException
+	{
+		return expression(expression).evaluate(item, returnType);
+	}
+
+	@Override
+	public String evaluate(String expression, Object item) throws XPathExpressionException
+	{
+		return expression(expression).evaluate(item);
+	}
+
+	@Override
+	public Object evaluate(String expression, InputSource source, QName returnType)
+			throws XPathExpressionException
+	{
+		return expression(expression).evaluate(source, returnType);
+	}
+
+	@Override
+	public String evaluate(String expression, InputSource source) throws XPathExpressionException
+	{
+		return expression(expression).evaluate(source);
+	}
+
+	@Override
+	public void reset()
+	{
+		delegate.reset();
+		expressions.clear();
+	}
+
+	@Override
+	public void setXPathVariableResolver(XPathVariableResolver resolver)
+	{
+		//compiled expressions capture the resolvers, so they must be recompiled
+		delegate.setXPathVariableResolver(resolver);
+		expressions.clear();
+	}
+
+	@Override
+	public XPathVariableResolver getXPathVariableResolver()
+	{
+		return delegate.getXPathVariableResolver();
+	}
+
+	@Override
+	public void setXPathFunctionResolver(XPathFunctionResolver resolver)
+	{
+		delegate.setXPathFunctionResolver(resolver);
+		expressions.clear();
+	}
+
+	@Override
+	public XPathFunctionResolver getXPathFunctionResolver()
+	{
+		return delegate.getXPathFunctionResolver();
+	}
+
+	@Override
+	public void setNamespaceContext(NamespaceContext nsContext)
+	{
+		delegate.setNamespaceContext(nsContext);
+		expressions.clear();
+	}
+
+	@Override
+	public NamespaceContext getNamespaceContext()
+	{
+		return delegate.getNamespaceContext();
+	}
+}
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from non-negative <code>long</code> keys to
+ * <code>int</code> values, without boxing either. Uses linear probing in
+ * arrays whose size is a power of two.
+ * <p/>
+ * Not thread safe.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class LongIntHashMap
+{
+	private static final long EMPTY = -1;
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private final int noEntryValue;
+	private long[] keys;
+	private int[] values;
+	private int mask;
+	private int size;
+
+	/**
+	 * Create a new map.
+	 * 
+	 * @param expectedSize
+	 *            Number of entries to allocate space for
+	 * @param noEntryValue
+	 *            Value returned by {@link #get(long)} for keys not in the map
+	 */
+	public LongIntHashMap(int expectedSize, int noEntryValue)
+	{
+		this.noEntryValue = noEntryValue;
+		int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+		allocate(capacity);
+	}
+
+	/**
+	 * @return The value for the key, or the no entry value if the key isn't in
+	 *         the map
+	 */
+	public int get(long key)
+	{
+		for (int i = index(key);; i = (i + 1) & mask)
+		{
+			long k = keys[i];
+			if (k == key)
+			{
+				return values[i];
+			}
+			if (k == EMPTY)
+			{
+				return noEntryValue;
+			}
+		}
+	}
+
+	/**
+	 * Add the key to the map with the given value, unless it is already in
+	 * the map.
+	 * 
+	 * @return The key's existing value, or the given value if the key was
+	 *         added
+	 */
+	public int putIfAbsent(long key, int value)
+	{
+		if (key < 0)
+		{
+			throw new IllegalArgumentException("Keys must be non-negative");
+		}
+		int i = index(key);
+		for (;; i = (i + 1) & mask)
+		{
+			long k = keys[i];
+			if (k == key)
+			{
+				return values[i];
+			}
+			if (k == EMPTY)
+			{
+				break;
+			}
+		}
+
+		keys[i] = key;
+		values[i] = value;
+		if (++size > keys.length * LOAD_FACTOR)
+		{
+			rehash(keys.length << 1);
+		}
+		return value;
+	}
+
+	/**
+	 * Set the value for the key.
+	 */
+	public void put(long key, int value)
+	{
+		if (putIfAbsent(key, value) != value)
+		{
+			for (int i = index(key);; i = (i + 1) & mask)
+			{
+				if (keys[i] == key)
+				{
+					values[i] = value;
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return Number of entries in the map
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Remove all entries from the map.
+	 */
+	public void clear()
+	{
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+	}
+
+	private int index(long key)
+	{
+		//fibonacci hashing spreads sequential keys (such as grid indices) across the table
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	private void allocate(int capacity)
+	{
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(keys, EMPTY);
+		mask = capacity - 1;
+	}
+
+	private void rehash(int capacity)
+	{
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+		for (int j = 0; j < oldKeys.length; j++)
+		{
+			long key = oldKeys[j];
+			if (key != EMPTY)
+			{
+				int i = index(key);
+				while (keys[i] != EMPTY)
+				{
+					i = (i + 1) & mask;
+				}
+				keys[i] = key;
+				values[i] = oldValues[j];
+			}
+		}
+	}
+}
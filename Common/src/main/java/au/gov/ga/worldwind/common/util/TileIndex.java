@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.util;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.logging.Level;
+
+/**
+ * Read-only index of the tiles that exist in a local tileset, written by the
+ * Tiler's tileset scanner (<code>tiles.idx</code> inside a tileset directory,
+ * or <code>&lt;dataset&gt;.idx</code> next to a packed tileset zip). Tile
+ * requesters use it to skip requesting tiles that don't exist, rather than
+ * searching the file system for each one.
+ * <p/>
+ * For each level, the index stores the row/column extents of the tiles that
+ * intersect the tileset's sector, and a bit for each tile within the extents.
+ * The binary format (big-endian) is:
+ * 
+ * <pre>
+ * int     magic number (0x57575449, 'WWTI')
+ * int     version (1)
+ * int     level count
+ * for each level:
+ *   int   first row
+ *   int   first column
+ *   int   row count
+ *   int   column count
+ *   long  ceil(rows * columns / 64) words of bits; tile (row, column) is bit
+ *         ((row - first row) * column count + (column - first column))
+ * </pre>
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class TileIndex
+{
+	public final static int MAGIC = 0x57575449;
+	public final static int VERSION = 1;
+	public final static String FILENAME = "tiles.idx";
+	public final static String PACKED_SUFFIX = ".idx";
+
+	private final int[] firstRows;
+	private final int[] firstCols;
+	private final int[] rowCounts;
+	private final int[] colCounts;
+	private final long[][] bits;
+
+	protected TileIndex(int levelCount)
+	{
+		firstRows = new int[levelCount];
+		firstCols = new int[levelCount];
+		rowCounts = new int[levelCount];
+		colCounts = new int[levelCount];
+		bits = new long[levelCount][];
+	}
+
+	/**
+	 * @return Number of levels in this index
+	 */
+	public int getLevelCount()
+	{
+		return bits.length;
+	}
+
+	/**
+	 * @return Does the given tile exist? Tiles outside the extents of their
+	 *         level, or in levels beyond the index, don't exist.
+	 */
+	public boolean contains(int level, int row, int col)
+	{
+		if (!isWithinExtents(level, row, col))
+			return false;
+
+		long bit = (long) (row - firstRows[level]) * colCounts[level] + (col - firstCols[level]);
+		return (bits[level][(int) (bit >>> 6)] & (1L << (bit & 63))) != 0;
+	}
+
+	/**
+	 * Is the given tile known to be absent from the tileset? Unlike
+	 * {@link #contains(int, int, int)}, tiles in levels that the index doesn't
+	 * cover are not considered absent, because the index may be older than the
+	 * tileset.
+	 * 
+	 * @return True if the tile's level is indexed and the tile doesn't exist
+	 */
+	public boolean isAbsent(int level, int row, int col)
+	{
+		return level >= 0 && level < bits.length && !contains(level, row, col);
+	}
+
+	/**
+	 * @return Is the given tile within the extents of its level?
+	 */
+	public boolean isWithinExtents(int level, int row, int col)
+	{
+		return level >= 0 && level < bits.length && row >= firstRows[level]
+				&& row < firstRows[level] + rowCounts[level] && col >= firstCols[level]
+				&& col < firstCols[level] + colCounts[level];
+	}
+
+	/**
+	 * Read an index from a file.
+	 * 
+	 * @param file
+	 * @return Index read from the file
+	 * @throws IOException
+	 */
+	public static TileIndex read(File file) throws IOException
+	{
+		InputStream is = new BufferedInputStream(new FileInputStream(file));
+		try
+		{
+			return read(is);
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+
+	/**
+	 * Read an index from an input stream.
+	 * 
+	 * @param is
+	 * @return Index read from the stream
+	 * @throws IOException
+	 *             If the stream doesn't contain a valid index
+	 */
+	public static TileIndex read(InputStream is) throws IOException
+	{
+		DataInputStream dis = new DataInputStream(is);
+		if (dis.readInt() != MAGIC)
+			throw new IOException("Not a tile index");
+		int version = dis.readInt();
+		if (version != VERSION)
+			throw new IOException("Unsupported tile index version: " + version);
+
+		int levelCount = dis.readInt();
+		if (levelCount < 0)
+			throw new IOException("Invalid level count: " + levelCount);
+
+		TileIndex index = new TileIndex(levelCount);
+		for (int level = 0; level < levelCount; level++)
+		{
+			index.firstRows[level] = dis.readInt();
+			index.firstCols[level] = dis.readInt();
+			int rows = index.rowCounts[level] = dis.readInt();
+			int cols = index.colCounts[level] = dis.readInt();
+			if (rows < 0 || cols < 0)
+				throw new IOException("Invalid extents for level " + level);
+
+			long[] words = new long[(int) (((long) rows * cols + 63) / 64)];
+			for (int i = 0; i < words.length; i++)
+			{
+				words[i] = dis.readLong();
+			}
+			index.bits[level] = words;
+		}
+		return index;
+	}
+
+	/**
+	 * Find and read the index of a local tileset, using the same dataset
+	 * location rules as
+	 * {@link Util#getLocalTileURL(String, String, int, int, int, URL, String, String)}
+	 * .
+	 * 
+	 * @param service
+	 *            Tileset service
+	 * @param dataset
+	 *            Tileset dataset
+	 * @param context
+	 *            URL the dataset path is relative to
+	 * @return Index of the tileset, or null if the tileset has no (readable)
+	 *         index
+	 */
+	public static TileIndex find(String service, String dataset, URL context)
+	{
+		if (dataset == null || dataset.length() <= 0)
+			dataset = service;
+		else if (service != null && service.length() > 0)
+			dataset = service + "/" + dataset;
+
+		if (dataset == null)
+			return null;
+
+		File file = Util.getPathWithinContext(dataset + File.separator + FILENAME, context);
+		if (file == null)
+			file = Util.getPathWithinContext(dataset + PACKED_SUFFIX, context);
+		if (file == null || !file.isFile())
+			return null;
+
+		try
+		{
+			return read(file);
+		}
+		catch (IOException e)
+		{
+			Logging.logger().log(Level.WARNING, "Error reading tile index " + file, e);
+			return null;
+		}
+	}
+}
@@ -209,7 +209,7 @@ public class Util
 	/**
 	 * Attempt to find a directory or file, relative to a given context URL
 	 */
-	private static File getPathWithinContext(String path, URL context)
+	static File getPathWithinContext(String path, URL context)
 	{
 		//first attempt finding of the directory using a URL
 		try
@@ -707,6 +707,15 @@ public class Util
 		return array == null || array.length == 0;
 	}
 
+	/**
+	 * @return Whether the provided objects are both <code>null</code>, or are
+	 *         equal
+	 */
+	public static boolean equals(Object o1, Object o2)
+	{
+		return o1 == null ? o2 == null : o1.equals(o2);
+	}
+
 	/**
 	 * Clamp the provided value to the range specified by
 	 * <code>[min, max]</code>
@@ -95,6 +95,80 @@ public class XMLUtil extends WWXML
 		return null;
 	}
 
+	/**
+	 * Per-thread {@link CachingXPath}, used by the helper methods below when the
+	 * caller doesn't provide an {@link XPath}. This means calls that pass a
+	 * <code>null</code> xpath don't recompile the expression each time.
+	 */
+	private final static ThreadLocal<XPath> cachedXPath = new ThreadLocal<XPath>()
+	{
+		@Override
+		protected XPath initialValue()
+		{
+			return makeXPath();
+		}
+	};
+
+	/**
+	 * Create a new {@link XPath} that caches its compiled expressions. Like any
+	 * {@link XPath}, the returned object is not thread safe.
+	 * 
+	 * @see WWXML#makeXPath()
+	 */
+	public static XPath makeXPath()
+	{
+		return new CachingXPath(WWXML.makeXPath());
+	}
+
+	/**
+	 * @return The given xpath, or the calling thread's cached {@link XPath} if
+	 *         the given xpath is null
+	 */
+	public static XPath cachedXPath(XPath xpath)
+	{
+		return xpath != null ? xpath : cachedXPath.get();
+	}
+
+	public static String getText(Element context, String path)
+	{
+		return WWXML.getText(context, path, cachedXPath(null));
+	}
+
+	public static String getText(Element context, String path, XPath xpath)
+	{
+		return WWXML.getText(context, path, cachedXPath(xpath));
+	}
+
+	public static Boolean getBoolean(Element context, String path, XPath xpath)
+	{
+		return WWXML.getBoolean(context, path, cachedXPath(xpath));
+	}
+
+	public static Double getDouble(Element context, String path, XPath xpath)
+	{
+		return WWXML.getDouble(context, path, cachedXPath(xpath));
+	}
+
+	public static Integer getInteger(Element context, String path, XPath xpath)
+	{
+		return WWXML.getInteger(context, path, cachedXPath(xpath));
+	}
+
+	public static Long getLong(Element context, String path, XPath xpath)
+	{
+		return WWXML.getLong(context, path, cachedXPath(xpath));
+	}
+
+	public static Element getElement(Element context, String path, XPath xpath)
+	{
+		return WWXML.getElement(context, path, cachedXPath(xpath));
+	}
+
+	public static Element[] getElements(Element context, String path, XPath xpath)
+	{
+		return WWXML.getElements(context, path, cachedXPath(xpath));
+	}
+
 	public static String getText(Element context, String path, String def)
 	{
 		return getText(context, path, def, null);
@@ -256,7 +330,7 @@ public class XMLUtil extends WWXML
 		return getURL(text, context);
 	}
 
-	protected static URL getURL(String text, URL context) throws MalformedURLException
+	public static URL getURL(String text, URL context) throws MalformedURLException
 	{
 		URL url = textToURL(text, context);
 		return URLTransformer.transform(url);
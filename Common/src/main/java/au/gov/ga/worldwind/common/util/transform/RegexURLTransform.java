@@ -15,9 +15,16 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.common.util.transform;
 
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 /**
  * {@link URLTransform} implementation that transforms urls by searching for a
  * particular regular expression and replacing it with the provided replacement.
+ * <p/>
+ * The regular expression is compiled once. If it starts with literal text
+ * (such as a host name), urls that don't contain that text are returned
+ * without evaluating the regular expression.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -25,11 +32,27 @@ public class RegexURLTransform implements URLTransform
 {
 	private final String regex;
 	private final String replacement;
+	private final Pattern pattern;
+	private final String literalPrefix;
+	private final boolean anchored;
 
 	public RegexURLTransform(String regex, String replacement)
 	{
 		this.regex = regex;
 		this.replacement = replacement;
+		this.pattern = Pattern.compile(regex);
+		this.anchored = regex.startsWith("^");
+		this.literalPrefix = getLiteralPrefix(anchored ? regex.substring(1) : regex);
+	}
+
+	public String getRegex()
+	{
+		return regex;
+	}
+
+	public String getReplacement()
+	{
+		return replacement;
 	}
 
 	@Override
@@ -39,6 +62,71 @@ public class RegexURLTransform implements URLTransform
 		{
 			return url;
 		}
-		return url.replaceAll(regex, replacement);
+		if (literalPrefix.length() > 0
+				&& (anchored ? !url.startsWith(literalPrefix) : url.indexOf(literalPrefix) < 0))
+		{
+			return url;
+		}
+
+		Matcher matcher = pattern.matcher(url);
+		if (!matcher.find())
+		{
+			return url;
+		}
+		return matcher.replaceAll(replacement);
+	}
+
+	/**
+	 * Calculate the literal text that any match of the given regular
+	 * expression must start with. Returns an empty string if the expression
+	 * doesn't start with literal text, or contains an alternation (which could
+	 * match without the prefix).
+	 * 
+	 * @param regex
+	 * @return Literal text at the start of every match
+	 */
+	protected static String getLiteralPrefix(String regex)
+	{
+		if (regex.indexOf('|') >= 0)
+		{
+			return "";
+		}
+
+		StringBuilder prefix = new StringBuilder();
+		int i = 0;
+		while (i < regex.length())
+		{
+			char c = regex.charAt(i);
+			char literal;
+			int next;
+			if (c == '\\')
+			{
+				//escaped punctuation is literal; escaped letters/digits are character classes or back references
+				if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1)))
+				{
+					break;
+				}
+				literal = regex.charAt(i + 1);
+				next = i + 2;
+			}
+			else if (".[](){}*+?^$".indexOf(c) >= 0)
+			{
+				break;
+			}
+			else
+			{
+				literal = c;
+				next = i + 1;
+			}
+
+			//a quantified character is optional (or repeated), so it can't be part of the prefix
+			if (next < regex.length() && "*+?{".indexOf(regex.charAt(next)) >= 0)
+			{
+				break;
+			}
+			prefix.append(literal);
+			i = next;
+		}
+		return prefix.toString();
 	}
 }
@@ -17,9 +17,11 @@ package au.gov.ga.worldwind.common.util.transform;
 
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Maintains a static list of {@link URLTransform}'s that can be applied in
@@ -28,50 +30,100 @@ import java.util.List;
  * Examples of {@link URLTransform}s might be to change the port number based on
  * the current environment, or append request parameters to URLs matching a
  * given pattern.
+ * <p/>
+ * Every tile url passes through this class, so transforming doesn't lock: the
+ * list of transforms is copied when it is modified. When every transform is a
+ * {@link RegexURLTransform} (whose output depends only on its input), recent
+ * results are remembered, as tile urls are usually built from a small number
+ * of service urls.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class URLTransformer
 {
-	private static List<URLTransform> transforms = new ArrayList<URLTransform>();
+	/** Maximum number of remembered results; the memo is cleared when full */
+	protected static final int MEMO_SIZE = 256;
+
+	private static final List<URLTransform> transforms = new CopyOnWriteArrayList<URLTransform>();
+	private static volatile ConcurrentMap<String, String> memo = null;
 
 	public synchronized static void addTransform(URLTransform transform)
 	{
 		transforms.add(transform);
+		transformsChanged();
 	}
 
 	public synchronized static void removeTransform(URLTransform transform)
 	{
 		transforms.remove(transform);
+		transformsChanged();
 	}
 
-	public synchronized static URL transform(URL url) throws MalformedURLException
+	public static URL transform(URL url) throws MalformedURLException
 	{
 		if (url == null)
 			return null;
 
-		return new URL(transform(url.toExternalForm()));
+		String external = url.toExternalForm();
+		String transformed = transform(external);
+		return transformed.equals(external) ? url : new URL(transformed);
 	}
 
-	public synchronized static String transform(String url)
+	public static String transform(String url)
 	{
 		if (url == null)
 			return null;
 
+		ConcurrentMap<String, String> memo = URLTransformer.memo;
+		if (memo != null)
+		{
+			String result = memo.get(url);
+			if (result != null)
+			{
+				return result;
+			}
+		}
+
+		String result = url;
 		for (URLTransform transform : transforms)
 		{
-			url = transform.transformURL(url);
+			result = transform.transformURL(result);
+		}
+
+		if (memo != null && result != null)
+		{
+			if (memo.size() >= MEMO_SIZE)
+			{
+				memo.clear();
+			}
+			memo.put(url, result);
 		}
-		return url;
+		return result;
 	}
 
 	public synchronized static void clearTransforms()
 	{
 		transforms.clear();
+		transformsChanged();
 	}
 
 	public static List<URLTransform> getTransforms()
 	{
 		return Collections.unmodifiableList(transforms);
 	}
+
+	/**
+	 * Replace the memo, so that results of the previous transforms are
+	 * forgotten. Results are only remembered if all the transforms are known
+	 * to be deterministic.
+	 */
+	private static void transformsChanged()
+	{
+		boolean memoize = !transforms.isEmpty();
+		for (URLTransform transform : transforms)
+		{
+			memoize &= transform instanceof RegexURLTransform;
+		}
+		memo = memoize ? new ConcurrentHashMap<String, String>() : null;
+	}
 }
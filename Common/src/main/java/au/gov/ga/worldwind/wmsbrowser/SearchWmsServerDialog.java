@@ -76,6 +76,8 @@ import au.gov.ga.worldwind.wmsbrowser.search.CSWSearchService;
 import au.gov.ga.worldwind.wmsbrowser.search.ChainingSearchService;
 import au.gov.ga.worldwind.wmsbrowser.search.CompoundSearchService;
 import au.gov.ga.worldwind.wmsbrowser.search.DirectUrlSearchService;
+import au.gov.ga.worldwind.wmsbrowser.search.IncrementalSearchService;
+import au.gov.ga.worldwind.wmsbrowser.search.WmsServerSearchListener;
 import au.gov.ga.worldwind.wmsbrowser.search.WmsServerSearchResult;
 import au.gov.ga.worldwind.wmsbrowser.search.WmsServerSearchService;
 import au.gov.ga.worldwind.wmsbrowser.wmsserver.WmsServer;
@@ -165,7 +167,7 @@ public class SearchWmsServerDialog extends JDialog
 		addResultsPanel(containerConstraints);
 		addButtonPanel(containerConstraints);
 		
-		updateSearchResultsPanel();
+		updateSearchResultsPanel(null);
 		
 		addComponentListener(new ComponentAdapter()
 		{
@@ -458,12 +460,25 @@ public class SearchWmsServerDialog extends JDialog
 		return searchService;
 	}
 	
-	private void updateSearchResultsPanel()
+	/**
+	 * Rebuild the results panel from the current search results
+	 * 
+	 * @param search The search that is still in progress, or <code>null</code>. The searching
+	 * indicator is shown below the results found so far if the search hasn't finished by the time
+	 * the panel is rebuilt on the EDT.
+	 */
+	private void updateSearchResultsPanel(final SearchTask search)
 	{
 		SwingUtil.invokeTaskOnEDT(new Runnable(){
 			@Override
 			public void run()
 			{
+				// A cancelled search's results will be replaced by the next search
+				if (search != null && search.cancelled)
+				{
+					return;
+				}
+				boolean searching = search != null && !search.finished;
 				try
 				{
 					searchResultsLock.readLock().lock();
@@ -496,6 +511,12 @@ public class SearchWmsServerDialog extends JDialog
 						constraints.gridy++;
 					}
 					
+					if (searching)
+					{
+						resultsPanel.add(searchingIndicator, constraints);
+						constraints.gridy++;
+					}
+					
 					constraints.weighty = 1;
 					constraints.fill = GridBagConstraints.BOTH;
 					resultsPanel.add(Box.createVerticalGlue(), constraints);
@@ -676,6 +697,11 @@ public class SearchWmsServerDialog extends JDialog
 
 		private Future<List<WmsServerSearchResult>> searchFuture; 
 		
+		// Results streamed from the search service before the search completes
+		private final List<WmsServerSearchResult> foundResults = new ArrayList<WmsServerSearchResult>();
+		private volatile boolean finished = false;
+		private volatile boolean cancelled = false;
+		
 		public SearchTask(String searchString)
 		{
 			this.searchString = searchString;
@@ -701,6 +727,17 @@ public class SearchWmsServerDialog extends JDialog
 				@Override
 				public List<WmsServerSearchResult> call() throws Exception
 				{
+					if (searchService instanceof IncrementalSearchService)
+					{
+						return ((IncrementalSearchService) searchService).searchForServers(searchString, new WmsServerSearchListener()
+						{
+							@Override
+							public void resultsFound(List<WmsServerSearchResult> results)
+							{
+								addFoundResults(results);
+							}
+						});
+					}
 					List<WmsServerSearchResult> searchResults = searchService.searchForServers(searchString);
 					return searchResults;
 				}
@@ -721,14 +758,42 @@ public class SearchWmsServerDialog extends JDialog
 			}
 			
 			// Update the results as appropriate
-			setSearchResults(searchResults);
-			updateSearchResultsPanel();
+			synchronized (foundResults)
+			{
+				finished = true;
+				setSearchResults(searchResults);
+			}
+			updateSearchResultsPanel(null);
 			
 			executor.shutdownNow();
 		}
 		
+		/**
+		 * Show results found by the search service while the search is still in progress
+		 */
+		private void addFoundResults(List<WmsServerSearchResult> results)
+		{
+			synchronized (foundResults)
+			{
+				if (finished || cancelled)
+				{
+					return;
+				}
+				for (WmsServerSearchResult result : results)
+				{
+					if (!foundResults.contains(result))
+					{
+						foundResults.add(result);
+					}
+				}
+				setSearchResults(foundResults);
+			}
+			updateSearchResultsPanel(this);
+		}
+		
 		public void cancel()
 		{
+			cancelled = true;
 			searchFuture.cancel(true);
 		}
 		
@@ -146,7 +146,7 @@ public class WmsBrowserSettings
 		// Otherwise load the settings from the file
 		Document xmlDocument = WWXML.openDocument(settingsFile);
 		Element rootElement = xmlDocument.getDocumentElement();
-		XPath xpath = WWXML.makeXPath();
+		XPath xpath = XMLUtil.makeXPath();
 		
 		loadSplitLocation(rootElement, xpath);
 		loadWindowSize(rootElement, xpath);
@@ -177,11 +177,11 @@ public class WmsBrowserSettings
 	private static void loadWmsServerLocations(Element rootElement, XPath xpath)
 	{
 		List<WmsServerIdentifier> servers = new ArrayList<WmsServerIdentifier>();
-		Integer serverCount = WWXML.getInteger(rootElement, "count(//serverLocations/server)", null);
+		Integer serverCount = WWXML.getInteger(rootElement, "count(//serverLocations/server)", xpath);
 		for (int i = 0; i < serverCount; i++)
 		{
-			String serverName = WWXML.getText(rootElement, "//serverLocations/server[@index='" + i + "']/@name");
-			String serverLocation = WWXML.getText(rootElement, "//serverLocations/server[@index='" + i + "']/@url");
+			String serverName = WWXML.getText(rootElement, "//serverLocations/server[@index='" + i + "']/@name", xpath);
+			String serverLocation = WWXML.getText(rootElement, "//serverLocations/server[@index='" + i + "']/@url", xpath);
 			if (!isBlank(serverLocation))
 			{
 				URL url = toUrl(serverLocation);
@@ -200,10 +200,10 @@ public class WmsBrowserSettings
 	private static void loadCswCatalogueServers(Element rootElement, XPath xpath)
 	{
 		List<URL> servers = new ArrayList<URL>();
-		Integer serverCount = WWXML.getInteger(rootElement, "count(//cswCatalogues/server)", null);
+		Integer serverCount = WWXML.getInteger(rootElement, "count(//cswCatalogues/server)", xpath);
 		for (int i = 0; i < serverCount; i++)
 		{
-			String serverLocation = WWXML.getText(rootElement, "//cswCatalogues/server[@index='" + i + "']/@url");
+			String serverLocation = WWXML.getText(rootElement, "//cswCatalogues/server[@index='" + i + "']/@url", xpath);
 			if (!isBlank(serverLocation))
 			{
 				URL url = toUrl(serverLocation);
@@ -25,29 +25,26 @@ import java.util.List;
  * 
  * @author James Navin (james.navin@ga.gov.au)
  */
-public class ChainingSearchService extends DelegatingSearchService implements WmsServerSearchService
+public class ChainingSearchService extends DelegatingSearchService implements IncrementalSearchService
 {
 	@Override
 	public List<WmsServerSearchResult> searchForServers(String searchString)
 	{
-		try
+		return searchForServers(searchString, null);
+	}
+
+	@Override
+	public List<WmsServerSearchResult> searchForServers(String searchString, WmsServerSearchListener listener)
+	{
+		for (WmsServerSearchService service : getServicesSnapshot())
 		{
-			lockServices();
-			
-			for (WmsServerSearchService service : getServices())
+			List<WmsServerSearchResult> servers = search(service, searchString, listener);
+			if (!servers.isEmpty())
 			{
-				List<WmsServerSearchResult> servers = service.searchForServers(searchString);
-				if (!servers.isEmpty())
-				{
-					return servers;
-				}
+				return servers;
 			}
-			
-			return Collections.emptyList();
-		}
-		finally
-		{
-			unlockServices();
 		}
+
+		return Collections.emptyList();
 	}
 }
@@ -15,41 +15,137 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.wmsbrowser.search;
 
+import gov.nasa.worldwind.util.Logging;
+
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
 
 /**
  * An implementation of the {@link WmsServerSearchService} interface
- * that queries each search service in turn and accumulates the results
+ * that queries each search service concurrently and accumulates the results
  * into a single returned list of servers.
+ * <p/>
+ * Results are returned in the order of the search services, regardless of the
+ * order in which the services respond. Services that have not responded within
+ * the timeout are cancelled, and their results are omitted.
  * 
  * @author James Navin (james.navin@ga.gov.au)
  */
-public class CompoundSearchService extends DelegatingSearchService implements WmsServerSearchService
+public class CompoundSearchService extends DelegatingSearchService implements IncrementalSearchService
 {
+	private static final Logger logger = Logging.logger();
+
+	/** The default time (in milliseconds) to wait for each service to respond */
+	public static final long DEFAULT_TIMEOUT = 30000;
+
+	private static final ExecutorService executor = Executors.newCachedThreadPool(new DaemonThreadFactory("WMS server search"));
+
+	private long timeout = DEFAULT_TIMEOUT;
+
+	/**
+	 * @return The time (in milliseconds) to wait for each service to respond
+	 */
+	public long getTimeout()
+	{
+		return timeout;
+	}
+
+	/**
+	 * Set the time (in milliseconds) to wait for each service to respond
+	 */
+	public void setTimeout(long timeout)
+	{
+		this.timeout = timeout;
+	}
 
 	@Override
 	public List<WmsServerSearchResult> searchForServers(String searchString)
 	{
+		return searchForServers(searchString, null);
+	}
+
+	@Override
+	public List<WmsServerSearchResult> searchForServers(final String searchString, final WmsServerSearchListener listener)
+	{
+		// Results reported by services that respond after the search has returned are dropped
+		final AtomicBoolean complete = new AtomicBoolean(false);
+		final WmsServerSearchListener guardedListener = listener == null ? null : new WmsServerSearchListener()
+		{
+			@Override
+			public void resultsFound(List<WmsServerSearchResult> results)
+			{
+				if (!complete.get())
+				{
+					listener.resultsFound(results);
+				}
+			}
+		};
+
+		List<WmsServerSearchService> services = getServicesSnapshot();
+		List<Future<List<WmsServerSearchResult>>> futures = new ArrayList<Future<List<WmsServerSearchResult>>>(services.size());
+		for (final WmsServerSearchService service : services)
+		{
+			futures.add(executor.submit(new Callable<List<WmsServerSearchResult>>()
+			{
+				@Override
+				public List<WmsServerSearchResult> call() throws Exception
+				{
+					return search(service, searchString, guardedListener);
+				}
+			}));
+		}
+
+		// All services are searched at the same time, so they share a deadline
+		long deadline = System.currentTimeMillis() + timeout;
+		Set<WmsServerSearchResult> result = new LinkedHashSet<WmsServerSearchResult>(); // Maintain insertion order
 		try
 		{
-			lockServices();
-			
-			Set<WmsServerSearchResult> result = new LinkedHashSet<WmsServerSearchResult>(); // Maintain insertion order
-			for (WmsServerSearchService service : getServices())
+			for (int i = 0; i < futures.size(); i++)
 			{
-				List<WmsServerSearchResult> servers = service.searchForServers(searchString);
-				result.addAll(servers);
+				try
+				{
+					long remaining = Math.max(0, deadline - System.currentTimeMillis());
+					result.addAll(futures.get(i).get(remaining, TimeUnit.MILLISECONDS));
+				}
+				catch (TimeoutException e)
+				{
+					logger.warning("Search of " + services.get(i) + " timed out after " + timeout + "ms");
+				}
+				catch (ExecutionException e)
+				{
+					logger.log(Level.SEVERE, "Exception occurred during search of " + services.get(i), e.getCause());
+				}
 			}
-			
-			return new ArrayList<WmsServerSearchResult>(result);
+		}
+		catch (InterruptedException e)
+		{
+			// The search has been cancelled; return what has been found so far
+			Thread.currentThread().interrupt();
 		}
 		finally
 		{
-			unlockServices();
+			complete.set(true);
+			for (Future<List<WmsServerSearchResult>> future : futures)
+			{
+				future.cancel(true);
+			}
 		}
+
+		return new ArrayList<WmsServerSearchResult>(result);
 	}
 
 }
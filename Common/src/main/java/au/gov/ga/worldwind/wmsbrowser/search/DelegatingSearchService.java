@@ -47,7 +47,45 @@ public abstract class DelegatingSearchService implements WmsServerSearchService
 	{
 		return searchServices;
 	}
-	
+
+	/**
+	 * @return A copy of the current list of search services, so that the services
+	 * can be searched without holding the services lock
+	 */
+	protected List<WmsServerSearchService> getServicesSnapshot()
+	{
+		try
+		{
+			lockServices();
+			return new ArrayList<WmsServerSearchService>(searchServices);
+		}
+		finally
+		{
+			unlockServices();
+		}
+	}
+
+	/**
+	 * Search the provided service, notifying the listener (if any) of the results.
+	 * <p/>
+	 * If the service is an {@link IncrementalSearchService}, the listener is passed
+	 * on to it, so that results are reported as soon as they are found.
+	 */
+	protected static List<WmsServerSearchResult> search(WmsServerSearchService service, String searchString, WmsServerSearchListener listener)
+	{
+		if (service instanceof IncrementalSearchService)
+		{
+			return ((IncrementalSearchService) service).searchForServers(searchString, listener);
+		}
+
+		List<WmsServerSearchResult> results = service.searchForServers(searchString);
+		if (listener != null && !results.isEmpty())
+		{
+			listener.resultsFound(results);
+		}
+		return results;
+	}
+
 	public void addService(WmsServerSearchService service)
 	{
 		try
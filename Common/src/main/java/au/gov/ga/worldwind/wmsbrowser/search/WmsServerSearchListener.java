@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.wmsbrowser.search;
+
+import java.util.List;
+
+/**
+ * A listener that is notified of search results as they are found by an
+ * {@link IncrementalSearchService}, before the search as a whole completes.
+ * 
+ * @author James Navin (james.navin@ga.gov.au)
+ */
+public interface WmsServerSearchListener
+{
+	/**
+	 * Called when some results have been found. May be called more than once
+	 * during a single search, and from any thread.
+	 * 
+	 * @param results
+	 *            The newly found results; never empty
+	 */
+	void resultsFound(List<WmsServerSearchResult> results);
+}
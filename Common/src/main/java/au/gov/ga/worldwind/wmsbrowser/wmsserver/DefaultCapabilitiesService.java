@@ -18,20 +18,60 @@ package au.gov.ga.worldwind.wmsbrowser.wmsserver;
 import gov.nasa.worldwind.ogc.wms.WMSCapabilities;
 import gov.nasa.worldwind.wms.CapabilitiesRequest;
 
-import java.net.MalformedURLException;
-import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import au.gov.ga.worldwind.common.downloader.Downloader;
+import au.gov.ga.worldwind.common.downloader.RetrievalResult;
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
 
 /**
  * The default {@link WmsCapabilitiesService} implementation.
  * <p/>
- * Uses the {@link WMSCapabilities#retrieve(java.net.URI)} method to 
- * perform capabilities retrieval.
+ * Capabilities documents are downloaded using the {@link Downloader}, which
+ * caches them on disk and revalidates the cached copy with the server (using
+ * the ETag and Last-Modified headers) on each request. Documents are parsed on
+ * a bounded pool of worker threads, and the most recently parsed documents are
+ * kept in memory so that an unmodified document is not parsed again.
+ * <p/>
+ * Version 1.3.0 of the capabilities is requested first, then 1.1.1. The
+ * version each server responds to is remembered, so later requests to the same
+ * server go straight to that version.
  * 
  * @author James Navin (james.navin@ga.gov.au)
  */
 public final class DefaultCapabilitiesService implements WmsCapabilitiesService
 {
+	private static final String[] VERSIONS = { "1.3.0", "1.1.1" };
+	private static final int PARSER_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+	private static final int PARSED_CACHE_SIZE = 32;
+
+	private static final ExecutorService parsers = Executors.newFixedThreadPool(PARSER_THREADS,
+			new DaemonThreadFactory("WMS capabilities parser"));
+
+	/** The version each server last responded to, keyed by capabilities URL */
+	private static final ConcurrentMap<String, String> versions = new ConcurrentHashMap<String, String>();
+
+	/** The most recently parsed documents, keyed by request URL */
+	private static final Map<String, WMSCapabilities> parsed = Collections
+			.synchronizedMap(new LinkedHashMap<String, WMSCapabilities>(16, 0.75f, true)
+			{
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, WMSCapabilities> eldest)
+				{
+					return size() > PARSED_CACHE_SIZE;
+				}
+			});
+
 	@Override
 	public WMSCapabilities retrieveCapabilities(URL url) throws Exception
 	{
@@ -39,32 +79,89 @@ public final class DefaultCapabilitiesService implements WmsCapabilitiesService
 		{
 			return null;
 		}
-		
-		// TODO: Implement own capabilities loading mechanism to avoid hard-coding the version
-		WMSCapabilities result = null;
-		try
+
+		String key = url.toExternalForm();
+		String knownVersion = versions.get(key);
+		if (knownVersion != null)
 		{
-			CapabilitiesRequest request = new CapabilitiesRequest(url.toURI());
+			WMSCapabilities result = retrieveCapabilities(url, knownVersion);
+			if (result != null)
+			{
+				return result;
+			}
+		}
 
-			// Try v1.3.0 first, then v1.1.1
-			request.setVersion("1.3.0");
-			result = new WMSCapabilities(request).parse();
-			
-			if (result == null)
+		for (String version : VERSIONS)
+		{
+			if (version.equals(knownVersion))
+			{
+				continue;
+			}
+			WMSCapabilities result = retrieveCapabilities(url, version);
+			if (result != null)
 			{
-				request.setVersion("1.1.1");
-				result = new WMSCapabilities(request).parse();
+				versions.put(key, version);
+				return result;
 			}
 		}
-		catch (URISyntaxException e)
+		return null;
+	}
+
+	/**
+	 * Retrieve a specific version of the capabilities document from the provided URL
+	 */
+	private WMSCapabilities retrieveCapabilities(URL url, String version) throws Exception
+	{
+		CapabilitiesRequest request = new CapabilitiesRequest(url.toURI());
+		request.setVersion(version);
+		URL requestUrl = request.getUri().toURL();
+		String key = requestUrl.toExternalForm();
+
+		final RetrievalResult result = Downloader.downloadImmediatelyIfModified(requestUrl, false);
+		if (!result.hasData())
 		{
-			e.printStackTrace();
+			return null;
+		}
+
+		// If the server says the cached document is still current, don't parse it again
+		if (result.isFromCache())
+		{
+			WMSCapabilities capabilities = parsed.get(key);
+			if (capabilities != null)
+			{
+				return capabilities;
+			}
+		}
+
+		Future<WMSCapabilities> future = parsers.submit(new Callable<WMSCapabilities>()
+		{
+			@Override
+			public WMSCapabilities call() throws Exception
+			{
+				return new WMSCapabilities(result.getAsInputStream()).parse();
+			}
+		});
+
+		WMSCapabilities capabilities;
+		try
+		{
+			capabilities = future.get();
 		}
-		catch (MalformedURLException e)
+		catch (InterruptedException e)
 		{
-			e.printStackTrace();
+			future.cancel(true);
+			throw e;
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			throw cause instanceof Exception ? (Exception) cause : e;
 		}
 
-		return result;
+		if (capabilities != null)
+		{
+			parsed.put(key, capabilities);
+		}
+		return capabilities;
 	}
 }
@@ -75,11 +75,11 @@ public class ResourceUtil
         if (resource == null)
             return null;
 
-        String urlString = WWXML.getText(resource, "@url", null);
+        String urlString = WWXML.getText(resource, "@url", xpath);
         if (!WWUtil.isEmpty(urlString))
             return WWIO.makeURL(urlString);
 
-        String path = WWXML.getText(resource, "@path", null);
+        String path = WWXML.getText(resource, "@path", xpath);
         if (!WWUtil.isEmpty(path))
             return path;
 
@@ -0,0 +1,367 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.downloader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.retrieve.RetrievalFuture;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for the {@link Downloader} and {@link DownloadCache} classes, run
+ * against a local HTTP stub server.
+ */
+public class DownloaderTest
+{
+	private static final String ETAG = "\"v1\"";
+	private static final String BODY = "downloaded content";
+
+	private HttpServer server;
+	private File directory;
+	private final AtomicInteger requests = new AtomicInteger();
+	private final AtomicInteger notModified = new AtomicInteger();
+	private volatile long delay = 0;
+
+	@Before
+	public void setup() throws IOException
+	{
+		directory = File.createTempFile("downloader", "");
+		directory.delete();
+		directory.mkdirs();
+		Downloader.setCache(new DownloadCache(directory));
+
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", new HttpHandler()
+		{
+			@Override
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				requests.incrementAndGet();
+				try
+				{
+					Thread.sleep(delay);
+				}
+				catch (InterruptedException e)
+				{
+				}
+				if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match")))
+				{
+					notModified.incrementAndGet();
+					exchange.sendResponseHeaders(304, -1);
+					exchange.close();
+					return;
+				}
+				byte[] bytes = BODY.getBytes("UTF-8");
+				exchange.getResponseHeaders().set("ETag", ETAG);
+				exchange.getResponseHeaders().set("Content-Type", "text/plain");
+				exchange.sendResponseHeaders(200, bytes.length);
+				OutputStream os = exchange.getResponseBody();
+				os.write(bytes);
+				os.close();
+			}
+		});
+		server.start();
+	}
+
+	@After
+	public void cleanup()
+	{
+		server.stop(0);
+		Downloader.setCache(null);
+		delete(directory);
+	}
+
+	@Test
+	public void testCachedDownloadDoesNotHitServer() throws Exception
+	{
+		URL url = url("/cached.txt");
+
+		RetrievalResult first = Downloader.downloadImmediately(url, true, false);
+		assertEquals(BODY, first.getAsString());
+		assertEquals(1, requests.get());
+
+		RetrievalResult second = Downloader.downloadImmediately(url, true, false);
+		assertEquals(BODY, second.getAsString());
+		assertTrue(second.isFromCache());
+		assertEquals(1, requests.get());
+	}
+
+	@Test
+	public void testRevalidationUsesETag() throws Exception
+	{
+		URL url = url("/revalidate.txt");
+
+		Downloader.downloadImmediately(url, true, false);
+		assertEquals(ETAG, Downloader.getCache().getEntry(url).getETag());
+
+		RetrievalResult result = Downloader.downloadImmediatelyIfModified(url, false);
+		assertEquals(2, requests.get());
+		assertEquals(1, notModified.get());
+		assertTrue(result.isFromCache());
+		assertEquals(BODY, result.getAsString());
+	}
+
+	@Test
+	public void testCachedResultIsReturnedBeforeRevalidation() throws Exception
+	{
+		URL url = url("/stale.txt");
+		Downloader.downloadImmediately(url, true, false);
+
+		delay = 500;
+		RetrievalResult result = Downloader.downloadImmediatelyAndRevalidate(url, false);
+		assertTrue(result.isFromCache());
+		assertEquals(BODY, result.getAsString());
+
+		//the revalidation request is made in the background
+		for (int i = 0; i < 100 && notModified.get() == 0; i++)
+		{
+			Thread.sleep(50);
+		}
+		assertEquals(2, requests.get());
+		assertEquals(1, notModified.get());
+	}
+
+	@Test
+	public void testConcurrentRequestsAreMerged() throws Exception
+	{
+		final URL url = url("/merged.txt");
+		delay = 500;
+
+		int threadCount = 8;
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threadCount);
+		final List<String> results = new ArrayList<String>();
+		for (int i = 0; i < threadCount; i++)
+		{
+			Thread thread = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						start.await();
+						String result = Downloader.downloadImmediately(url, false, false).getAsString();
+						synchronized (results)
+						{
+							results.add(result);
+						}
+					}
+					catch (Exception e)
+					{
+					}
+					finally
+					{
+						done.countDown();
+					}
+				}
+			});
+			thread.setDaemon(true);
+			thread.start();
+		}
+		start.countDown();
+		done.await();
+
+		assertEquals(threadCount, results.size());
+		for (String result : results)
+		{
+			assertEquals(BODY, result);
+		}
+		assertEquals(1, requests.get());
+	}
+
+	@Test
+	public void testCacheIndexIsRestoredFromDisk() throws Exception
+	{
+		URL url = url("/restored.txt");
+		Downloader.downloadImmediately(url, true, false);
+
+		DownloadCache reopened = new DownloadCache(directory);
+		DownloadCache.Entry entry = reopened.getEntry(url);
+		assertNotNull(entry);
+		assertEquals(ETAG, entry.getETag());
+		assertEquals(BODY, reopened.get(url).getAsString());
+
+		reopened.remove(url);
+		assertNull(reopened.get(url));
+		assertNull(new DownloadCache(directory).get(url));
+	}
+
+	@Test
+	public void testMetadataDoesNotCollideWithCachedFiles() throws Exception
+	{
+		//previously the metadata for /data was stored in the file used to cache /data.meta
+		Downloader.downloadImmediately(url("/data.meta"), true, false);
+		Downloader.downloadImmediately(url("/data"), true, false);
+
+		DownloadCache reopened = new DownloadCache(directory);
+		assertEquals(BODY, reopened.get(url("/data.meta")).getAsString());
+		assertEquals(ETAG, reopened.getEntry(url("/data")).getETag());
+		assertEquals(ETAG, reopened.getEntry(url("/data.meta")).getETag());
+	}
+
+	@Test
+	public void testReadOnlyLocationIsSearched() throws Exception
+	{
+		final File readOnly = File.createTempFile("downloader", "");
+		readOnly.delete();
+		readOnly.mkdirs();
+		try
+		{
+			URL url = url("/bundled.txt");
+			OutputStream os = new FileOutputStream(new File(readOnly, DownloadCache.filenameForURL(url)));
+			os.write("bundled content".getBytes("UTF-8"));
+			os.close();
+
+			Downloader.setCache(new DownloadCache(directory)
+			{
+				@Override
+				protected File findFile(String filename)
+				{
+					File file = new File(readOnly, filename);
+					return file.isFile() ? file : null;
+				}
+			});
+			RetrievalResult result = Downloader.downloadImmediately(url, true, false);
+			assertTrue(result.isFromCache());
+			assertEquals("bundled content", result.getAsString());
+			assertEquals(0, requests.get());
+
+			//a newer copy is written to the cache directory, which takes precedence
+			Downloader.downloadIgnoreCache(url, new RetrievalHandler()
+			{
+				@Override
+				public void handle(RetrievalResult result)
+				{
+				}
+			}, false);
+			for (int i = 0; i < 100 && Downloader.getCache().getEntry(url).getETag() == null; i++)
+			{
+				Thread.sleep(50);
+			}
+			assertEquals(BODY, Downloader.downloadImmediately(url, true, false).getAsString());
+		}
+		finally
+		{
+			delete(readOnly);
+		}
+	}
+
+	@Test(timeout = 20000)
+	public void testCancelledRetrievalNotifiesHandlers() throws Exception
+	{
+		DownloaderRetrievalService service = new DownloaderRetrievalService();
+		service.setRetrieverPoolSize(1);
+		delay = 500;
+		try
+		{
+			URL first = url("/first.txt");
+			URL second = url("/second.txt");
+			ImmediateHandler firstHandler = new ImmediateHandler();
+			ImmediateHandler secondHandler = new ImmediateHandler();
+			service.runRetriever(new ExtendedHTTPRetriever(first, null, new HandlerPostProcessor(first,
+					firstHandler), false));
+			RetrievalFuture future =
+					service.runRetriever(new ExtendedHTTPRetriever(second, null, new HandlerPostProcessor(second,
+							secondHandler), false));
+
+			//the queued retriever is cancelled, so it never calls its post processor
+			future.cancel(false);
+			assertEquals(BODY, firstHandler.get().getAsString());
+			RetrievalResult result = secondHandler.get();
+			assertNotNull(result.getError());
+			assertTrue(!result.hasData());
+			assertEquals(1, requests.get());
+		}
+		finally
+		{
+			service.shutdown(true);
+		}
+	}
+
+	@Test
+	public void testNoTemporaryFilesRemain() throws Exception
+	{
+		for (int i = 0; i < 5; i++)
+		{
+			Downloader.downloadImmediately(url("/file" + i + ".txt"), true, false);
+		}
+		for (File file : directory.listFiles())
+		{
+			assertTrue(file.getName(), !file.getName().endsWith(".tmp"));
+		}
+		for (File file : DownloadCache.metadataFile(new File(directory, "file")).getParentFile().listFiles())
+		{
+			assertTrue(file.getName(), !file.getName().endsWith(".tmp"));
+		}
+	}
+
+	private static class ImmediateHandler implements RetrievalHandler
+	{
+		private final CountDownLatch latch = new CountDownLatch(1);
+		private volatile RetrievalResult result;
+
+		@Override
+		public void handle(RetrievalResult result)
+		{
+			this.result = result;
+			latch.countDown();
+		}
+
+		public RetrievalResult get() throws InterruptedException
+		{
+			latch.await();
+			return result;
+		}
+	}
+
+	private URL url(String path) throws Exception
+	{
+		return new URL("http://localhost:" + server.getAddress().getPort() + path);
+	}
+
+	private static void delete(File file)
+	{
+		if (file.isDirectory())
+		{
+			for (File child : file.listFiles())
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
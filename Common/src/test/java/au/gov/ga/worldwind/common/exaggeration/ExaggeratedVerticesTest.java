@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.exaggeration;
+
+import static org.junit.Assert.*;
+import gov.nasa.worldwind.geom.Vec4;
+
+import java.nio.DoubleBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ExaggeratedVertices} class
+ */
+public class ExaggeratedVerticesTest
+{
+	private static final double ALLOWABLE_ERROR = 0.0001;
+
+	@Test
+	public void testExaggerateRelativeToReferenceCenter()
+	{
+		ExaggeratedVertices vertices = new ExaggeratedVertices(2);
+		vertices.setVertex(0, new Vec4(100, 0, 0), new Vec4(1, 0, 0), 10);
+		vertices.setVertex(1, new Vec4(0, 100, 0), new Vec4(0, 0.6, 0.8), -5);
+
+		float[] out = new float[6];
+		vertices.exaggerate(3, new Vec4(1, 2, 3), out);
+		assertArrayEquals(new float[] { 129, -2, -3, -1, 89, -15 }, out, (float) ALLOWABLE_ERROR);
+
+		Vec4 v = vertices.getVertex(1, 3);
+		assertEquals(0, v.x, ALLOWABLE_ERROR);
+		assertEquals(91, v.y, ALLOWABLE_ERROR);
+		assertEquals(-12, v.z, ALLOWABLE_ERROR);
+		assertEquals(-5, vertices.getElevation(1), 0);
+	}
+
+	@Test
+	public void testMinimumElevation()
+	{
+		ExaggeratedVertices vertices = new ExaggeratedVertices(2);
+		vertices.setVertex(0, new Vec4(100, 0, 0), new Vec4(1, 0, 0), -40);
+		vertices.setVertex(1, new Vec4(0, 0, 100), new Vec4(0, 0, 1), 40);
+		vertices.setMinimumElevation(-100);
+
+		DoubleBuffer out = DoubleBuffer.allocate(6);
+		vertices.exaggerate(10, null, out);
+		assertEquals(0, out.position());
+		assertArrayEquals(new double[] { 0, 0, 0, 0, 0, 500 }, out.array(), ALLOWABLE_ERROR);
+
+		Vec4[] extrema = vertices.computeExtrema(10);
+		assertEquals(0, extrema[0].x, ALLOWABLE_ERROR);
+		assertEquals(0, extrema[0].z, ALLOWABLE_ERROR);
+		assertEquals(0, extrema[1].x, ALLOWABLE_ERROR);
+		assertEquals(500, extrema[1].z, ALLOWABLE_ERROR);
+	}
+
+	@Test
+	public void testNoVertices()
+	{
+		ExaggeratedVertices vertices = new ExaggeratedVertices(0);
+		assertNull(vertices.computeExtrema(1));
+		vertices.exaggerate(1, null, new float[0]);
+	}
+
+	@Test
+	public void testLargeVertexSetsMatchSingleVertices()
+	{
+		//large enough to be split into multiple chunks
+		int size = 100000;
+		Random random = new Random(0);
+		ExaggeratedVertices vertices = new ExaggeratedVertices(size);
+		for (int i = 0; i < size; i++)
+		{
+			double lat = random.nextDouble() * Math.PI - Math.PI / 2;
+			double lon = random.nextDouble() * Math.PI * 2;
+			Vec4 normal = new Vec4(Math.cos(lat) * Math.cos(lon), Math.cos(lat) * Math.sin(lon), Math.sin(lat));
+			Vec4 point = new Vec4(normal.x * 6378137, normal.y * 6378137, normal.z * 6378137);
+			vertices.setVertex(i, point, normal, random.nextDouble() * 20000 - 10000);
+		}
+
+		double exaggeration = 7.5;
+		DoubleBuffer out = DoubleBuffer.allocate(size * 3);
+		vertices.exaggerate(exaggeration, null, out);
+
+		double[] min = { Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE };
+		double[] max = { -Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE };
+		for (int i = 0; i < size; i++)
+		{
+			Vec4 v = vertices.getVertex(i, exaggeration);
+			double[] xyz = { v.x, v.y, v.z };
+			for (int j = 0; j < 3; j++)
+			{
+				assertEquals(xyz[j], out.get(i * 3 + j), 0);
+				min[j] = Math.min(min[j], xyz[j]);
+				max[j] = Math.max(max[j], xyz[j]);
+			}
+		}
+
+		Vec4[] extrema = vertices.computeExtrema(exaggeration);
+		assertArrayEquals(min, new double[] { extrema[0].x, extrema[0].y, extrema[0].z }, 0);
+		assertArrayEquals(max, new double[] { extrema[1].x, extrema[1].y, extrema[1].z }, 0);
+	}
+}
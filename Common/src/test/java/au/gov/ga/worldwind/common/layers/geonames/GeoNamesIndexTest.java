@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.geonames;
+
+import static org.junit.Assert.*;
+import gov.nasa.worldwind.geom.Sector;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.common.layers.geonames.GeoNamesIndex.Record;
+import au.gov.ga.worldwind.common.layers.geonames.GeoNamesIndex.SearchMode;
+
+/**
+ * Unit tests for the {@link GeoNamesIndex} and {@link GeoNamesImporter}
+ * classes, using a small sample of the GeoNames dump
+ */
+public class GeoNamesIndexTest
+{
+	private File file;
+	private GeoNamesIndex index;
+
+	@Before
+	public void setup() throws IOException
+	{
+		GeoNamesImporter importer = new GeoNamesImporter();
+		importer.readHierarchy(getClass().getResourceAsStream("sampleHierarchy.txt"));
+		importer.readFeatureCodes(getClass().getResourceAsStream("sampleFeatureCodes.txt"));
+		importer.readDump(getClass().getResourceAsStream("sampleGeoNames.txt"));
+		index = write(importer);
+	}
+
+	@After
+	public void tearDown()
+	{
+		if (file != null)
+		{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testGet()
+	{
+		assertEquals(19, index.size());
+
+		Record canberra = index.get(2172517);
+		assertEquals("Canberra", canberra.name);
+		assertEquals("Australia", canberra.country);
+		assertEquals("P", canberra.featureClass);
+		assertEquals("PPLC", canberra.featureCode);
+		assertEquals(367752, canberra.population);
+		assertEquals(-35.28346, canberra.latitude, 1e-5);
+		assertEquals(149.12807, canberra.longitude, 1e-5);
+
+		//populations are clamped to the range of an int
+		assertEquals(Integer.MAX_VALUE, index.get(GeoNamesIndex.GLOBE_ID).population);
+		assertNull(index.get(GeoNamesIndex.GLOBE_ID).country);
+		assertNull(index.get(12345));
+	}
+
+	@Test
+	public void testExactSearch()
+	{
+		//diacritics and case are ignored, and results are ordered by population
+		assertNames(index.search("SAO PAULO", SearchMode.EXACT, 10), "S\u00e3o Paulo", "S\u00e3o Paulo");
+		assertEquals(3448433, index.search("s\u00e3o paulo", SearchMode.EXACT, 10).get(0).geonameId);
+
+		//alternate names are searchable
+		assertNames(index.search("Sampa", SearchMode.EXACT, 10), "S\u00e3o Paulo");
+
+		//words within names only match prefix searches
+		assertNames(index.search("springs", SearchMode.EXACT, 10));
+		assertNames(index.search("", SearchMode.EXACT, 10));
+	}
+
+	@Test
+	public void testPrefixSearch()
+	{
+		assertNames(index.search("syd", SearchMode.PREFIX, 10), "Sydney", "Sydney Harbour");
+		assertNames(index.search("spring", SearchMode.PREFIX, 10), "Alice Springs", "Alice Springs", "Springvale");
+		assertNames(index.search("spring", SearchMode.PREFIX, 1), "Alice Springs");
+		assertEquals(2077895, index.search("spring", SearchMode.PREFIX, 1).get(0).geonameId);
+
+		//places matching by several names are only returned once
+		assertNames(index.search("port jackson", SearchMode.PREFIX, 10), "Sydney Harbour");
+		assertNames(index.search("a", SearchMode.PREFIX, 3), "South America", "Australia",
+				"Australian Capital Territory");
+	}
+
+	@Test
+	public void testFuzzySearch()
+	{
+		assertEquals("Melbourne", index.search("Melborne", SearchMode.FUZZY, 10).get(0).name);
+		assertEquals("Canberra", index.search("canbera", SearchMode.FUZZY, 10).get(0).name);
+		assertEquals("Mount Kosciuszko", index.search("kosciusko", SearchMode.FUZZY, 10).get(0).name);
+		assertNames(index.search("xyzzy", SearchMode.FUZZY, 10));
+	}
+
+	@Test
+	public void testChildren()
+	{
+		assertNames(index.getChildren(GeoNamesIndex.GLOBE_ID, 10), "South America", "Oceania");
+		assertNames(index.getChildren(2077456, 10), "New South Wales", "Victoria", "Australian Capital Territory",
+				"Northern Territory");
+		assertNames(index.getChildren(2077456, 2), "New South Wales", "Victoria");
+
+		//places not in the hierarchy file are assigned parents from their admin codes
+		assertNames(index.getChildren(2064513, 10), "Alice Springs");
+		assertEquals("ADM2", index.getChildren(2064513, 10).get(0).featureCode);
+		assertNames(index.getChildren(7839702, 10), "Alice Springs");
+		assertNames(index.getChildren(2155400, 10), "Sydney");
+		assertNames(index.getChildren(2145234, 10), "Melbourne", "Springvale");
+
+		//features other than administrative divisions and populated places aren't in the hierarchy
+		assertNames(index.getChildren(2147714, 10));
+		assertNames(index.getChildren(12345, 10));
+	}
+
+	@Test
+	public void testDerivedHierarchyWithoutGlobe() throws IOException
+	{
+		//import a country extract, which has no globe and no hierarchy file
+		StringBuilder sb = new StringBuilder();
+		InputStream is = getClass().getResourceAsStream("sampleGeoNames.txt");
+		BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+		String line;
+		while ((line = reader.readLine()) != null)
+		{
+			if (line.contains("\tAU\t"))
+			{
+				sb.append(line).append('\n');
+			}
+		}
+		reader.close();
+
+		GeoNamesImporter importer = new GeoNamesImporter();
+		importer.readDump(new ByteArrayInputStream(sb.toString().getBytes("UTF-8")));
+		file.delete();
+		index = write(importer);
+
+		assertEquals("Earth", index.get(GeoNamesIndex.GLOBE_ID).name);
+		assertNames(index.getChildren(GeoNamesIndex.GLOBE_ID, 10), "Australia");
+		assertNames(index.getChildren(2077456, 10), "New South Wales", "Victoria", "Australian Capital Territory",
+				"Northern Territory");
+		assertNames(index.getChildren(2177478, 10), "Canberra");
+	}
+
+	@Test
+	public void testFind()
+	{
+		Sector southEast = Sector.fromDegrees(-40, -30, 140, 155);
+		assertNames(index.find(southEast, "P", 0, 10), "Sydney", "Melbourne", "Canberra", "Springvale");
+		assertNames(index.find(southEast, "P", 1000000, 10), "Sydney", "Melbourne");
+		assertNames(index.find(southEast, "P", 0, 1), "Sydney");
+		assertNames(index.find(southEast, "TH", 0, 10), "Sydney Harbour", "Mount Kosciuszko");
+		assertEquals(9, index.find(southEast, null, 0, 20).size());
+
+		Sector centre = Sector.fromDegrees(-24, -19, 130, 135);
+		assertNames(index.find(centre, "AP", 0, 10), "Northern Territory", "Alice Springs", "Alice Springs");
+		assertEquals("PPL", index.find(centre, "AP", 0, 10).get(1).featureCode);
+	}
+
+	@Test
+	public void testFeatureNames()
+	{
+		assertEquals("capital of a political entity", index.getFeatureCodeName("P", "PPLC"));
+		assertEquals("first-order administrative division", index.getFeatureCodeName("A", "ADM1"));
+		assertEquals("MT", index.getFeatureCodeName("T", "MT"));
+		assertEquals("city, village,...", GeoNamesIndex.getFeatureClassName("P"));
+		assertEquals("X", GeoNamesIndex.getFeatureClassName("X"));
+	}
+
+	@Test
+	public void testNormalize()
+	{
+		assertEquals("sao paulo", GeoNamesIndex.normalize(" S\u00e3o  Paulo "));
+		assertEquals("nouvelle galles du sud", GeoNamesIndex.normalize("Nouvelle-Galles du Sud"));
+		assertEquals("", GeoNamesIndex.normalize("--"));
+	}
+
+	@Test(expected = IOException.class)
+	public void testOpenInvalidFile() throws IOException
+	{
+		File invalid = File.createTempFile("geonames", ".gni");
+		try
+		{
+			GeoNamesIndex.open(invalid);
+		}
+		finally
+		{
+			invalid.delete();
+		}
+	}
+
+	private GeoNamesIndex write(GeoNamesImporter importer) throws IOException
+	{
+		file = File.createTempFile("geonames", ".gni");
+		importer.write(file);
+		return GeoNamesIndex.open(file);
+	}
+
+	private static void assertNames(List<Record> records, String... expected)
+	{
+		List<String> names = new ArrayList<String>();
+		for (Record record : records)
+		{
+			names.add(record.name);
+		}
+		assertEquals(Arrays.asList(expected), names);
+	}
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.geonames;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link GeoNamesLayer} class, using a local
+ * {@link GeoNamesIndex} created from a small sample of the GeoNames dump
+ */
+public class GeoNamesLayerTest
+{
+	private File file;
+
+	@Before
+	public void setup() throws IOException
+	{
+		GeoNamesImporter importer = new GeoNamesImporter();
+		importer.readHierarchy(getClass().getResourceAsStream("sampleHierarchy.txt"));
+		importer.readFeatureCodes(getClass().getResourceAsStream("sampleFeatureCodes.txt"));
+		importer.readDump(getClass().getResourceAsStream("sampleGeoNames.txt"));
+		file = File.createTempFile("geonames", ".gni");
+		importer.write(file);
+	}
+
+	@After
+	public void tearDown()
+	{
+		file.delete();
+	}
+
+	@Test
+	public void testChildrenAreReadFromIndexFile()
+	{
+		GeoNamesLayer layer = new GeoNamesLayer();
+		layer.setIndexFile(file.getAbsolutePath());
+		assertNotNull(layer.getIndex());
+
+		GeoName globe = layer.getTopGeoName();
+		assertFalse(globe.loadedChildren());
+		layer.fetchChildren(globe);
+		assertTrue(globe.loadedChildren());
+		assertNames(globe, "South America", "Oceania");
+
+		GeoName oceania = getChild(globe, "Oceania");
+		layer.fetchChildren(oceania);
+		assertNames(oceania, "Australia");
+		assertEquals(1, getChild(oceania, "Australia").level);
+	}
+
+	@Test
+	public void testInvalidIndexFile() throws IOException
+	{
+		File invalid = File.createTempFile("geonames", ".gni");
+		try
+		{
+			GeoNamesLayer layer = new GeoNamesLayer();
+			layer.setIndexFile(invalid.getAbsolutePath());
+			assertNull(layer.getIndex());
+
+			layer.setIndexFile(file.getAbsolutePath());
+			assertNotNull(layer.getIndex());
+			layer.setIndexFile(" ");
+			assertNull(layer.getIndex());
+		}
+		finally
+		{
+			invalid.delete();
+		}
+	}
+
+	private static GeoName getChild(GeoName parent, String name)
+	{
+		for (GeoName child : parent.getChildren())
+		{
+			if (name.equals(child.name))
+			{
+				return child;
+			}
+		}
+		fail("No child named " + name);
+		return null;
+	}
+
+	private static void assertNames(GeoName parent, String... expected)
+	{
+		//children are unordered
+		Set<String> names = new HashSet<String>();
+		for (GeoName child : parent.getChildren())
+		{
+			names.add(child.name);
+		}
+		assertEquals(new HashSet<String>(Arrays.asList(expected)), names);
+	}
+}
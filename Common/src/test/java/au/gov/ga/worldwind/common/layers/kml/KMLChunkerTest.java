@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.kml;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.After;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import au.gov.ga.worldwind.common.layers.kml.KMLChunker.ChunkHandler;
+
+/**
+ * Unit tests for the {@link KMLChunker} class
+ */
+public class KMLChunkerTest
+{
+	private static final String KML_NAMESPACE = "http://www.opengis.net/kml/2.2";
+	private static final String GX_NAMESPACE = "http://www.google.com/kml/ext/2.2";
+
+	private final List<File> files = new ArrayList<File>();
+
+	@After
+	public void tearDown()
+	{
+		for (File file : files)
+		{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testSplitRepeatsHeaderInEveryChunk() throws Exception
+	{
+		File kml = write(createDocument("Document", 200, ""));
+		List<Document> chunks = split(kml, 2000);
+
+		assertTrue(chunks.size() > 1);
+		int placemark = 0;
+		for (Document chunk : chunks)
+		{
+			Element root = chunk.getDocumentElement();
+			assertEquals("kml", root.getLocalName());
+			assertEquals(KML_NAMESPACE, root.getNamespaceURI());
+
+			Element container = (Element) root.getElementsByTagNameNS(KML_NAMESPACE, "Document").item(0);
+			assertEquals("Big document", getChildText(container, "name"));
+			//styles defined both before and after the features
+			assertEquals(2, container.getElementsByTagNameNS(KML_NAMESPACE, "Style").getLength());
+			assertEquals(1, container.getElementsByTagNameNS(GX_NAMESPACE, "balloonVisibility").getLength());
+
+			NodeList placemarks = container.getElementsByTagNameNS(KML_NAMESPACE, "Placemark");
+			assertTrue(placemarks.getLength() > 0);
+			for (int i = 0; i < placemarks.getLength(); i++)
+			{
+				//features are written in order, each exactly once
+				assertEquals("Placemark " + placemark++, getChildText((Element) placemarks.item(i), "name"));
+			}
+		}
+		assertEquals(200, placemark);
+	}
+
+	@Test
+	public void testSplitFolder() throws Exception
+	{
+		File kml = write(createDocument("Folder", 50, ""));
+		List<Document> chunks = split(kml, 1000);
+		assertTrue(chunks.size() > 1);
+		for (Document chunk : chunks)
+		{
+			assertEquals(1, chunk.getElementsByTagNameNS(KML_NAMESPACE, "Folder").getLength());
+		}
+	}
+
+	@Test
+	public void testSmallFileIsNotSplit() throws Exception
+	{
+		File kml = write(createDocument("Document", 200, ""));
+		assertNull(split(kml, kml.length()));
+	}
+
+	@Test
+	public void testNetworkLinkControlIsNotSplit() throws Exception
+	{
+		File kml = write(createDocument("Document", 200, "<NetworkLinkControl><minRefreshPeriod>1</minRefreshPeriod>"
+				+ "</NetworkLinkControl>"));
+		assertNull(split(kml, 1000));
+	}
+
+	@Test
+	public void testRootFeatureIsNotSplit() throws Exception
+	{
+		File kml = write("<kml xmlns=\"" + KML_NAMESPACE + "\">" + createPlacemark(0) + "</kml>");
+		assertNull(split(kml, 10));
+	}
+
+	private List<Document> split(File kml, long chunkSize) throws Exception
+	{
+		final List<File> chunkFiles = new ArrayList<File>();
+		boolean split = new KMLChunker(chunkSize).split(kml, new ChunkHandler()
+		{
+			@Override
+			public void handle(File chunk)
+			{
+				chunkFiles.add(chunk);
+			}
+		});
+		files.addAll(chunkFiles);
+		if (!split)
+		{
+			assertTrue(chunkFiles.isEmpty());
+			return null;
+		}
+
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+		List<Document> documents = new ArrayList<Document>();
+		for (File chunkFile : chunkFiles)
+		{
+			documents.add(factory.newDocumentBuilder().parse(chunkFile));
+		}
+		return documents;
+	}
+
+	private File write(String kml) throws IOException
+	{
+		File file = File.createTempFile("chunkertest", ".kml");
+		files.add(file);
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		writer.write(kml);
+		writer.close();
+		return file;
+	}
+
+	private static String createDocument(String container, int placemarks, String afterContainer)
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		sb.append("<kml xmlns=\"" + KML_NAMESPACE + "\" xmlns:gx=\"" + GX_NAMESPACE + "\">\n");
+		sb.append("<" + container + " id=\"root\">\n<name>Big document</name>\n");
+		sb.append("<Style id=\"first\"><IconStyle><scale>2</scale></IconStyle></Style>\n");
+		for (int i = 0; i < placemarks; i++)
+		{
+			sb.append(createPlacemark(i));
+		}
+		sb.append("<Style id=\"last\"><BalloonStyle><gx:balloonVisibility>1</gx:balloonVisibility>"
+				+ "</BalloonStyle></Style>\n");
+		sb.append("</" + container + ">\n");
+		sb.append(afterContainer);
+		sb.append("</kml>\n");
+		return sb.toString();
+	}
+
+	private static String createPlacemark(int i)
+	{
+		return "<Placemark><name>Placemark " + i + "</name><styleUrl>#first</styleUrl><description><![CDATA[<b>"
+				+ i + " &amp; more</b>]]></description><Point><coordinates>" + (i % 180) + ",-" + (i % 90)
+				+ ",0</coordinates></Point></Placemark>\n";
+	}
+
+	private static String getChildText(Element element, String name)
+	{
+		NodeList children = element.getChildNodes();
+		for (int i = 0; i < children.getLength(); i++)
+		{
+			if (name.equals(children.item(i).getLocalName()))
+			{
+				return children.item(i).getTextContent();
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.kml;
+
+import static org.junit.Assert.*;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.ogc.kml.KMLAbstractContainer;
+import gov.nasa.worldwind.ogc.kml.KMLAbstractFeature;
+import gov.nasa.worldwind.ogc.kml.KMLNetworkLink;
+import gov.nasa.worldwind.ogc.kml.KMLRoot;
+import gov.nasa.worldwind.util.layertree.KMLContainerTreeNode;
+import gov.nasa.worldwind.util.layertree.KMLFeatureTreeNode;
+import gov.nasa.worldwind.util.layertree.KMLNetworkLinkTreeNode;
+import gov.nasa.worldwind.util.tree.TreeNode;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link KMLFeatureTreeNodes} class
+ */
+public class KMLFeatureTreeNodesTest
+{
+	private static final String KML = "<kml xmlns=\"http://www.opengis.net/kml/2.2\"><Document>"
+			+ "<Placemark><name>Point</name></Placemark>"
+			+ "<Folder><name>Folder</name><NetworkLink><name>Link</name></NetworkLink></Folder>"
+			+ "</Document></kml>";
+
+	private KMLRoot root;
+	private KMLNetworkLink link;
+
+	@Before
+	public void setup() throws Exception
+	{
+		root = KMLRoot.createAndParse(new ByteArrayInputStream(KML.getBytes("UTF-8")));
+		KMLAbstractContainer folder = (KMLAbstractContainer) getFeature(root.getFeature(), 1);
+		link = (KMLNetworkLink) getFeature(folder, 0);
+	}
+
+	@Test
+	public void testNodesMatchFeatures()
+	{
+		KMLAbstractContainer document = (KMLAbstractContainer) root.getFeature();
+		assertFalse(KMLFeatureTreeNodes.fromKMLFeature(getFeature(document, 0)) instanceof KMLContainerTreeNode);
+
+		TreeNode folderNode = KMLFeatureTreeNodes.fromKMLFeature(getFeature(document, 1));
+		assertTrue(folderNode instanceof KMLContainerTreeNode);
+		TreeNode linkNode = folderNode.getChildren().iterator().next();
+		assertFalse(linkNode instanceof KMLNetworkLinkTreeNode);
+		assertSame(link, ((KMLFeatureTreeNode) linkNode).getFeature());
+	}
+
+	@Test
+	public void testAttachedNetworkLinkNodeIsRefreshed() throws Exception
+	{
+		TreeNode folderNode = KMLFeatureTreeNodes.fromKMLFeature(getFeature(root.getFeature(), 1));
+		AtomicInteger refreshes = countRefreshes(folderNode.getChildren().iterator().next());
+
+		fireRetrieved();
+		assertEquals(1, refreshes.get());
+	}
+
+	@Test
+	public void testDetachedNetworkLinkNodeIsNotRefreshed() throws Exception
+	{
+		TreeNode folderNode = KMLFeatureTreeNodes.fromKMLFeature(getFeature(root.getFeature(), 1));
+		AtomicInteger refreshes = countRefreshes(folderNode.getChildren().iterator().next());
+
+		KMLFeatureTreeNodes.detach(folderNode);
+		fireRetrieved();
+		assertEquals(0, refreshes.get());
+	}
+
+	private static KMLAbstractFeature getFeature(KMLAbstractFeature container, int index)
+	{
+		return ((KMLAbstractContainer) container).getFeatures().get(index);
+	}
+
+	private static AtomicInteger countRefreshes(TreeNode node)
+	{
+		final AtomicInteger refreshes = new AtomicInteger();
+		node.addPropertyChangeListener(AVKey.RETRIEVAL_STATE_SUCCESSFUL, new PropertyChangeListener()
+		{
+			@Override
+			public void propertyChange(PropertyChangeEvent evt)
+			{
+				refreshes.incrementAndGet();
+			}
+		});
+		return refreshes;
+	}
+
+	private void fireRetrieved() throws Exception
+	{
+		root.firePropertyChange(AVKey.RETRIEVAL_STATE_SUCCESSFUL, null, link);
+		//the refresh is posted to the EDT, so wait for it
+		SwingUtilities.invokeAndWait(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+			}
+		});
+	}
+}
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.kml.relativeio;
+
+import static org.junit.Assert.*;
+import gov.nasa.worldwind.ogc.kml.io.KMLDoc;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link RelativeKMLDocFactory} class
+ */
+public class RelativeKMLDocFactoryTest
+{
+	@Test
+	public void testSameVersionSharesCopy() throws Exception
+	{
+		File first = createKMZ("first");
+		File second = createKMZ("first");
+
+		KMLDoc firstDoc = RelativeKMLDocFactory.createSharedKMZDoc(first, "same", "1", null, "same", null);
+		KMLDoc secondDoc = RelativeKMLDocFactory.createSharedKMZDoc(second, "same", "1", null, "same", null);
+
+		assertTrue(first.isFile());
+		assertFalse(second.exists());
+		assertNotNull(firstDoc.getKMLStream());
+		assertNotNull(secondDoc.getKMLStream());
+	}
+
+	@Test
+	public void testReplacedVersionIsDeletedWhenUnused() throws Exception
+	{
+		File first = createKMZ("first");
+		KMLDoc firstDoc = RelativeKMLDocFactory.createSharedKMZDoc(first, "changing", "1", null, "changing", null);
+
+		//the first version is still in use, so it is kept
+		File second = createKMZ("second");
+		RelativeKMLDocFactory.createSharedKMZDoc(second, "changing", "2", null, "changing", null);
+		assertTrue(first.isFile());
+		assertTrue(second.isFile());
+		assertNotNull(firstDoc.getKMLStream());
+
+		//once the first version's document is unreachable, the next load deletes it
+		firstDoc = null;
+		for (int i = 0; i < 20 && first.exists(); i++)
+		{
+			System.gc();
+			Thread.sleep(10);
+			RelativeKMLDocFactory.createSharedKMZDoc(createKMZ("third"), "changing", "3", null, "changing", null);
+		}
+		assertFalse(first.exists());
+	}
+
+	private static File createKMZ(String name) throws IOException
+	{
+		File file = File.createTempFile("kmz", ".kmz");
+		ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file));
+		try
+		{
+			zos.putNextEntry(new ZipEntry("doc.kml"));
+			zos.write(("<kml xmlns=\"http://www.opengis.net/kml/2.2\"><Document><name>" + name
+					+ "</name></Document></kml>").getBytes("UTF-8"));
+			zos.closeEntry();
+		}
+		finally
+		{
+			zos.close();
+		}
+		return file;
+	}
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.styled;
+
+import gov.nasa.worldwind.avlist.AVList;
+import gov.nasa.worldwind.avlist.AVListImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import au.gov.ga.worldwind.common.layers.borehole.BoreholeSampleImpl;
+
+/**
+ * Simulates loading a borehole shapefile, setting a sample style's properties
+ * on every sample record, and compares applying the same {@link Style} to
+ * every sample against creating a new {@link Style} per sample (which binds
+ * the setter methods and converts the constant values on every call, as the
+ * reflective implementation used to).
+ * <p/>
+ * Run as an application. The synthetic shapefile contains 2000 boreholes with
+ * 50 samples each; each sample record has an identifier, depth range,
+ * lithology and colour attribute, similar to the DBase records read by the
+ * ShapefileBoreholeProvider.
+ */
+public class PropertySetterBenchmark
+{
+	private static final int BOREHOLES = 2000;
+	private static final int SAMPLES = 50;
+
+	public static void main(String[] args)
+	{
+		List<AVList> records = createRecords();
+		for (int run = 0; run < 5; run++)
+		{
+			report("Style per sample", load(records, false));
+			report("Shared style    ", load(records, true));
+		}
+	}
+
+	private static void report(String name, long nanos)
+	{
+		System.out.println(name + ": " + (nanos / 1000000) + " ms, " + (nanos / (BOREHOLES * SAMPLES))
+				+ " ns per sample");
+	}
+
+	private static long load(List<AVList> records, boolean shared)
+	{
+		Style style = createStyle();
+		long start = System.nanoTime();
+		for (AVList record : records)
+		{
+			if (!shared)
+			{
+				style = createStyle();
+			}
+			BoreholeSampleImpl sample = new BoreholeSampleImpl(null);
+			style.setPropertiesFromAttributes(null, record, sample);
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static Style createStyle()
+	{
+		Style style = new Style("sample", true);
+		style.addProperty("color", "%COLOUR%");
+		style.addProperty("depthFrom", "%FROM%");
+		style.addProperty("depthTo", "%TO%");
+		style.addProperty("text", "%LITHOLOGY% (%HOLE_ID%)");
+		style.addProperty("link", "http://www.ga.gov.au/boreholes");
+		return style;
+	}
+
+	private static List<AVList> createRecords()
+	{
+		String[] lithologies = { "Sandstone", "Siltstone", "Mudstone", "Granite", "Basalt", "Limestone" };
+		Random random = new Random(0);
+		List<AVList> records = new ArrayList<AVList>(BOREHOLES * SAMPLES);
+		for (int i = 0; i < BOREHOLES; i++)
+		{
+			double depth = 0;
+			for (int j = 0; j < SAMPLES; j++)
+			{
+				double thickness = 0.5 + random.nextDouble() * 10;
+				AVList record = new AVListImpl();
+				record.setValue("HOLE_ID", "BH" + i);
+				record.setValue("FROM", depth);
+				record.setValue("TO", depth + thickness);
+				record.setValue("LITHOLOGY", lithologies[random.nextInt(lithologies.length)]);
+				record.setValue("COLOUR", random.nextInt(256) + "," + random.nextInt(256) + "," + random.nextInt(256));
+				records.add(record);
+				depth += thickness;
+			}
+		}
+		return records;
+	}
+}
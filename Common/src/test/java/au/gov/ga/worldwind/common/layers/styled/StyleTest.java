@@ -1,6 +1,8 @@
 package au.gov.ga.worldwind.common.layers.styled;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import gov.nasa.worldwind.avlist.AVList;
@@ -178,6 +180,89 @@ public class StyleTest
 		assertEquals(new Dimension(300,400), bean.getObject(4));
 	}
 	
+	@Test
+	public void testSetPropertiesFromAttributesConvertsAttributesForObjectParameters()
+	{
+		classToTest.addProperty("object0", "%value%");
+		classToTest.addProperty("object1", "%color%", "Color");
+		
+		AVList attributeValues = new AVListImpl();
+		attributeValues.setValue("value", 5);
+		attributeValues.setValue("color", Color.red);
+		
+		TypeOverrideBean bean = new TypeOverrideBean();
+		classToTest.setPropertiesFromAttributes(null, attributeValues, bean);
+		
+		assertEquals("5", bean.getObject(0));
+		assertSame(Color.red, bean.getObject(1));
+	}
+	
+	@Test
+	public void testSetPropertiesFromAttributesTrimsStringAttributes()
+	{
+		classToTest.addProperty("string", "%name%");
+		
+		AVList attributeValues = new AVListImpl();
+		attributeValues.setValue("name", "  Padded  ");
+		
+		SimpleDummyBean bean = new SimpleDummyBean();
+		classToTest.setPropertiesFromAttributes(null, attributeValues, bean);
+		
+		assertEquals("Padded", bean.getString());
+	}
+	
+	@Test
+	public void testSetPropertiesFromAttributesRepeatedlySubstitutesEachFeaturesAttributes()
+	{
+		classToTest.addProperty("littleIInteger", "%int%");
+		classToTest.addProperty("string", "Sample %id%");
+		classToTest.addProperty("bigDDouble", "1.5");
+		
+		for (int i = 0; i < 3; i++)
+		{
+			AVList attributeValues = new AVListImpl();
+			attributeValues.setValue("int", i);
+			attributeValues.setValue("id", "S" + i);
+			
+			SimpleDummyBean bean = new SimpleDummyBean();
+			classToTest.setPropertiesFromAttributes(null, attributeValues, bean);
+			
+			assertEquals(i, bean.getLittleIInteger());
+			assertEquals("Sample S" + i, bean.getString());
+			assertEquals(1.5, bean.getBigDDouble(), ALLOWABLE_ERROR);
+		}
+	}
+	
+	@Test
+	public void testSetPropertiesFromAttributesDoesNotShareMutableValues()
+	{
+		classToTest.addProperty("point", "300,400");
+		
+		ComplexDummyBean bean1 = new ComplexDummyBean();
+		ComplexDummyBean bean2 = new ComplexDummyBean();
+		classToTest.setPropertiesFromAttributes(null, null, bean1);
+		classToTest.setPropertiesFromAttributes(null, null, bean2);
+		
+		assertNotSame(bean1.getPoint(), bean2.getPoint());
+		bean1.getPoint().x = 0;
+		assertEquals(new Point(300,400), bean2.getPoint());
+	}
+	
+	@Test
+	public void testSetPropertiesFromAttributesAfterAddingProperty()
+	{
+		classToTest.addProperty("littleIInteger", "1");
+		classToTest.setPropertiesFromAttributes(null, null, new SimpleDummyBean());
+		
+		classToTest.addProperty("littleIInteger", "2");
+		classToTest.addProperty("string", "added");
+		SimpleDummyBean bean = new SimpleDummyBean();
+		classToTest.setPropertiesFromAttributes(null, null, bean);
+		
+		assertEquals(2, bean.getLittleIInteger());
+		assertEquals("added", bean.getString());
+	}
+	
 	/**
 	 * A dummy bean used to test type override setters
 	 */
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.tiled.image.delegate.elevationreader;
+
+import static org.junit.Assert.*;
+import gov.nasa.worldwind.util.BufferWrapper;
+
+import java.awt.Color;
+import java.nio.DoubleBuffer;
+
+import org.junit.Test;
+
+import au.gov.ga.worldwind.common.util.ColorMap;
+
+/**
+ * Unit tests for the {@link ElevationKernels} class
+ */
+public class ElevationKernelsTest
+{
+	//not exactly representable as a float
+	private static final double MISSING = -9999.9;
+
+	private final ColorMap colorMap = createColorMap();
+
+	@Test
+	public void testColorRamp()
+	{
+		float[] elevations = { 0, 25, 25, 100, (float) MISSING, 60 };
+		int[] out = new int[elevations.length];
+		ElevationKernels.colorRamp(elevations, 3, 2, MISSING, colorMap, null, 0, out);
+
+		for (int i = 0; i < elevations.length; i++)
+		{
+			int expected = i == 4 ? 0 : colorMap.calculateColor(elevations[i]).getRGB();
+			assertEquals("Pixel " + i, expected, out[i]);
+		}
+	}
+
+	@Test
+	public void testColorRampWithLookup()
+	{
+		int[] lookup = ElevationKernels.createColorLookup(colorMap, -10, 110, -5);
+		float[] elevations = { -10, -5, 0, 33, 110, 72 };
+		int[] out = new int[elevations.length];
+		ElevationKernels.colorRamp(elevations, 2, 3, -5, colorMap, lookup, -10, out);
+
+		for (int i = 0; i < elevations.length; i++)
+		{
+			int expected = i == 1 ? 0 : colorMap.calculateColor(elevations[i]).getRGB();
+			assertEquals("Pixel " + i, expected, out[i]);
+		}
+	}
+
+	@Test
+	public void testFloat64MissingDataIsTransparent()
+	{
+		int width = 4, height = 3;
+		double[] values = new double[width * height];
+		for (int i = 0; i < values.length; i++)
+		{
+			values[i] = i == 5 ? MISSING : i * 10;
+		}
+		BufferWrapper elevations = new BufferWrapper.DoubleBufferWrapper(DoubleBuffer.wrap(values));
+
+		float[] grid = new float[width * height];
+		ElevationImageReaderDelegate.copyElevations(elevations, width, height, grid, width);
+		int[] colors = new int[width * height];
+		ElevationKernels.colorRamp(grid, width, height, MISSING, colorMap, null, 0, colors);
+		assertEquals(0, colors[5]);
+		assertTrue(colors[4] != 0);
+
+		//shade the top-left 3x2 pixels, using the rest of the grid as the apron
+		int[] shaded = new int[3 * 2];
+		ElevationKernels.hillshade(grid, 3, 2, new double[] { 0, -1, -2 }, new double[] { 0, 1, 2, 3 }, 1,
+				new double[] { 0, 0, -1 }, MISSING, -Double.MAX_VALUE, Double.MAX_VALUE, shaded);
+		//the missing value is at (1,1); pixels using it as a vertex, or as an east or south neighbour, aren't shaded
+		assertTrue(shaded[0] != 0);
+		assertEquals(0, shaded[1]);
+		assertEquals(0, shaded[3]);
+		assertEquals(0, shaded[4]);
+		assertTrue(shaded[2] != 0);
+	}
+
+	private static ColorMap createColorMap()
+	{
+		ColorMap colorMap = new ColorMap();
+		colorMap.put(0d, Color.blue);
+		colorMap.put(100d, Color.white);
+		return colorMap;
+	}
+}
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.tiled.image.delegate.elevationreader;
+
+import static org.junit.Assert.*;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.util.BufferWrapper;
+
+import java.awt.image.BufferedImage;
+import java.nio.ShortBuffer;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ShadedElevationImageReaderDelegate} class
+ */
+public class ShadedElevationImageReaderDelegateTest
+{
+	private static final double MISSING = -9999;
+	private static final double EXAGGERATION = 10;
+
+	private final ShadedElevationImageReaderDelegate delegate = new ShadedElevationImageReaderDelegate(AVKey.INT16,
+			AVKey.LITTLE_ENDIAN, MISSING, EXAGGERATION, new Vec4(-0.7, 0.7, -1).normalize3(), -Double.MAX_VALUE,
+			Double.MAX_VALUE);
+
+	@Test
+	public void testInteriorPixelsMatchVectorNormals()
+	{
+		int width = 40, height = 30;
+		Sector sector = Sector.fromDegrees(-35.3, -34.1, 148.2, 149.9);
+		BufferWrapper elevations = terrain(0, 0, width, height, true);
+
+		BufferedImage image = delegate.generateImage(elevations, width, height, null, sector);
+		assertEquals(width, image.getWidth());
+		assertEquals(height, image.getHeight());
+
+		//calculate the shading using the per-pixel vertex and normal objects
+		Vec4[] normals =
+				delegate.calculateNormals(width, height,
+						delegate.calculateTileVerts(width, height, sector, elevations, MISSING, EXAGGERATION * 0.000005));
+		int transparent = 0;
+		for (int y = 0, i = 0; y < height - 1; y++)
+		{
+			for (int x = 0; x < width - 1; x++, i++)
+			{
+				int expected = 0;
+				if (normals[i] != null)
+				{
+					int c = (int) (255.0 * Math.max(0d, normals[i].dot3(delegate.sunPosition))) & 0xff;
+					expected = 0xff << 24 | c << 16 | c << 8 | c;
+				}
+				else
+				{
+					transparent++;
+				}
+				assertEquals("Pixel " + x + "," + y, expected, image.getRGB(x, y));
+			}
+		}
+		assertTrue(transparent > 0);
+	}
+
+	@Test
+	public void testNeighbourAprons()
+	{
+		//shading the top-left quarter with its neighbours' borders should match shading the whole area at once
+		int width = 32, height = 32;
+		Sector sector = Sector.fromDegrees(-36, -35, 148, 149);
+		Sector largeSector = Sector.fromDegrees(-37, -35, 148, 150);
+
+		BufferedImage large =
+				delegate.generateImage(terrain(0, 0, width * 2, height * 2, false), width * 2, height * 2, null,
+						largeSector);
+
+		float[] east = new float[height];
+		float[] south = new float[width];
+		for (int i = 0; i < width; i++)
+		{
+			east[i] = elevation(width, i, false);
+			south[i] = elevation(i, height, false);
+		}
+		BufferedImage image =
+				delegate.generateImage(terrain(0, 0, width, height, false), width, height, sector, east, south);
+
+		for (int y = 0; y < height; y++)
+		{
+			for (int x = 0; x < width; x++)
+			{
+				assertEquals("Pixel " + x + "," + y, large.getRGB(x, y), image.getRGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void testEdgesExtrapolatedWithoutNeighbours()
+	{
+		//a plane has the same shading everywhere, including the extrapolated edges
+		int width = 16, height = 16;
+		short[] plane = new short[width * height];
+		for (int y = 0, i = 0; y < height; y++)
+		{
+			for (int x = 0; x < width; x++, i++)
+			{
+				plane[i] = (short) (x * 40 - y * 25);
+			}
+		}
+		BufferedImage image =
+				delegate.generateImage(new BufferWrapper.ShortBufferWrapper(ShortBuffer.wrap(plane)), width, height,
+						null, Sector.fromDegrees(-36, -35, 148, 149));
+
+		int expected = image.getRGB(0, 0);
+		assertTrue(expected != 0);
+		assertEquals(expected, image.getRGB(width - 1, 0));
+		assertEquals(expected, image.getRGB(0, height - 1));
+		assertEquals(expected, image.getRGB(width - 1, height - 1));
+	}
+
+	@Test
+	public void testGetNeighbourURL()
+	{
+		assertEquals("file:/cache/layer/3/12/12_8.bil.zip",
+				ShadedElevationImageReaderDelegate.getNeighbourURL("file:/cache/layer/3/12/12_7.bil.zip", 12, 7, 12, 8));
+		assertEquals("file:/cache/layer/3/11/11_7.bil",
+				ShadedElevationImageReaderDelegate.getNeighbourURL("file:/cache/layer/3/12/12_7.bil", 12, 7, 11, 7));
+		assertNull(ShadedElevationImageReaderDelegate.getNeighbourURL("file:/cache/layer/3/12/12_7.bil", 12, 6, 11,
+				6));
+		assertNull(ShadedElevationImageReaderDelegate.getNeighbourURL("file:/cache/tile.bil", 12, 7, 11, 7));
+	}
+
+	private static BufferWrapper terrain(int x0, int y0, int width, int height, boolean holes)
+	{
+		short[] values = new short[width * height];
+		for (int y = 0, i = 0; y < height; y++)
+		{
+			for (int x = 0; x < width; x++, i++)
+			{
+				values[i] = (short) elevation(x0 + x, y0 + y, holes);
+			}
+		}
+		return new BufferWrapper.ShortBufferWrapper(ShortBuffer.wrap(values));
+	}
+
+	private static float elevation(int x, int y, boolean holes)
+	{
+		if (holes && (x * 7 + y * 3) % 23 == 0)
+		{
+			return (float) MISSING;
+		}
+		return (float) Math.floor(800 * Math.sin(x * 0.3) * Math.cos(y * 0.2) + 40 * ((x * 31 + y * 17) % 11));
+	}
+}
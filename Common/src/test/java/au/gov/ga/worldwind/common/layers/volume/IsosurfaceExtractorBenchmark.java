@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.volume;
+
+import java.net.URL;
+
+/**
+ * Times the {@link IsosurfaceExtractor} on a synthetic voxet (a gyroid with a
+ * period of 128 samples), including the first extraction (which also
+ * calculates the block value ranges) and re-extraction after changes to the
+ * iso value.
+ * <p/>
+ * Run as an application, with enough heap for the extracted surfaces (eg
+ * -Xmx2g). The voxet size can be passed as the first argument (default 512).
+ */
+public class IsosurfaceExtractorBenchmark
+{
+	public static void main(String[] args)
+	{
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+		GyroidVolumeDataProvider provider = new GyroidVolumeDataProvider(size, 128);
+		IsosurfaceExtractor extractor = new IsosurfaceExtractor(provider);
+		System.out.println(size + "^3 voxet, " + extractor.getBlockCount() + " blocks, "
+				+ Runtime.getRuntime().availableProcessors() + " processors");
+
+		float[] isoValues = { 0, 0.5f, 1.2f, 1.4f, 0 };
+		for (float isoValue : isoValues)
+		{
+			long start = System.nanoTime();
+			IsosurfaceExtractor.Mesh mesh = extractor.extract(isoValue);
+			long time = System.nanoTime() - start;
+			System.out.println("Iso value " + isoValue + ": " + (time / 1000000) + " ms, "
+					+ extractor.getLastExtractedBlockCount() + " blocks extracted, " + mesh.getVertexCount()
+					+ " vertices, " + mesh.getTriangleCount() + " triangles");
+
+			//extract something else, so that the next iteration isn't cached
+			extractor.extract(-10);
+		}
+	}
+
+	/**
+	 * Volume whose values are calculated from
+	 * <code>sin(x)cos(y) + sin(y)cos(z) + sin(z)cos(x)</code>, using per-axis
+	 * lookup tables so that reading the data is cheap compared to extraction.
+	 */
+	private static class GyroidVolumeDataProvider extends AbstractVolumeDataProvider
+	{
+		private final float[] sin;
+		private final float[] cos;
+
+		public GyroidVolumeDataProvider(int size, int period)
+		{
+			this.xSize = size;
+			this.ySize = size;
+			this.zSize = size;
+			this.noDataValue = Float.NaN;
+			this.minValue = -1.5f;
+			this.maxValue = 1.5f;
+			sin = new float[size];
+			cos = new float[size];
+			for (int i = 0; i < size; i++)
+			{
+				double angle = 2 * Math.PI * i / period;
+				sin[i] = (float) Math.sin(angle);
+				cos[i] = (float) Math.cos(angle);
+			}
+		}
+
+		@Override
+		public float getValue(int x, int y, int z)
+		{
+			return sin[x] * cos[y] + sin[y] * cos[z] + sin[z] * cos[x];
+		}
+
+		@Override
+		protected boolean doLoadData(URL url, VolumeLayer layer)
+		{
+			return false;
+		}
+	}
+}
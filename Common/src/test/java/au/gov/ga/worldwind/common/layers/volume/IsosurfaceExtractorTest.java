@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.volume;
+
+import static org.junit.Assert.*;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link IsosurfaceExtractor} class
+ */
+public class IsosurfaceExtractorTest
+{
+	private static final float RADIUS = 15;
+
+	@Test
+	public void testSphereIsClosedAndWelded()
+	{
+		//spans 2 blocks along each axis
+		IsosurfaceExtractor extractor = new IsosurfaceExtractor(new SphereVolumeDataProvider(48, 40, 36, -1));
+		assertEquals(8, extractor.getBlockCount());
+
+		IsosurfaceExtractor.Mesh mesh = extractor.extract(RADIUS);
+		assertTrue(mesh.getTriangleCount() > 0);
+		assertEquals(0, countBoundaryEdges(mesh));
+
+		//each vertex is distinct, and lies close to the sphere
+		float[] vertices = mesh.getVertices();
+		Set<String> distinct = new HashSet<String>();
+		for (int i = 0; i < mesh.getVertexCount(); i++)
+		{
+			float x = vertices[i * 3], y = vertices[i * 3 + 1], z = vertices[i * 3 + 2];
+			assertTrue(distinct.add(x + "," + y + "," + z));
+			assertEquals(RADIUS, SphereVolumeDataProvider.distance(x, y, z), 0.5);
+		}
+	}
+
+	@Test
+	public void testTrianglesFaceHigherValues()
+	{
+		IsosurfaceExtractor extractor = new IsosurfaceExtractor(new SphereVolumeDataProvider(48, 40, 36, -1));
+		IsosurfaceExtractor.Mesh mesh = extractor.extract(RADIUS);
+
+		//samples greater than the iso value are outside the sphere, so the triangles wind anticlockwise seen from outside
+		assertTrue(signedVolume(mesh) > 0);
+		assertEquals(4 / 3d * Math.PI * RADIUS * RADIUS * RADIUS, signedVolume(mesh), 500);
+	}
+
+	@Test
+	public void testOnlyBlocksContainingIsoValueAreExtracted()
+	{
+		IsosurfaceExtractor extractor = new IsosurfaceExtractor(new SphereVolumeDataProvider(48, 40, 36, -1));
+
+		//the sample values of all blocks except the one containing the center are at least 8
+		IsosurfaceExtractor.Mesh larger = extractor.extract(10);
+		assertEquals(2, extractor.getLastExtractedBlockCount());
+		IsosurfaceExtractor.Mesh smaller = extractor.extract(3);
+		assertEquals(1, extractor.getLastExtractedBlockCount());
+		assertTrue(smaller.getTriangleCount() < larger.getTriangleCount());
+		assertEquals(0, countBoundaryEdges(larger));
+		assertEquals(0, countBoundaryEdges(smaller));
+
+		//the last surface is cached
+		assertSame(smaller, extractor.extract(3));
+
+		IsosurfaceExtractor.Mesh none = extractor.extract(1000);
+		assertEquals(0, extractor.getLastExtractedBlockCount());
+		assertEquals(0, none.getTriangleCount());
+		assertNull(extractor.createShape(none));
+	}
+
+	@Test
+	public void testNoDataLeavesHole()
+	{
+		IsosurfaceExtractor extractor = new IsosurfaceExtractor(new SphereVolumeDataProvider(48, 40, 36, 20));
+		IsosurfaceExtractor.Mesh mesh = extractor.extract(RADIUS);
+		assertTrue(mesh.getTriangleCount() > 0);
+		assertTrue(countBoundaryEdges(mesh) > 0);
+
+		float[] vertices = mesh.getVertices();
+		for (int i = 0; i < mesh.getVertexCount(); i++)
+		{
+			assertTrue(vertices[i * 3] < 20);
+		}
+	}
+
+	/**
+	 * @return Number of triangle edges that aren't matched by an opposing edge
+	 *         in another triangle
+	 */
+	private static int countBoundaryEdges(IsosurfaceExtractor.Mesh mesh)
+	{
+		Map<Long, Integer> edges = new HashMap<Long, Integer>();
+		int[] indices = mesh.getIndices();
+		for (int i = 0; i < indices.length; i += 3)
+		{
+			for (int j = 0; j < 3; j++)
+			{
+				long a = indices[i + j];
+				long b = indices[i + (j + 1) % 3];
+				Long reverse = (b << 32) | a;
+				Integer count = edges.get(reverse);
+				if (count != null)
+				{
+					if (count == 1)
+					{
+						edges.remove(reverse);
+					}
+					else
+					{
+						edges.put(reverse, count - 1);
+					}
+				}
+				else
+				{
+					Long edge = (a << 32) | b;
+					count = edges.get(edge);
+					edges.put(edge, count == null ? 1 : count + 1);
+				}
+			}
+		}
+		int boundary = 0;
+		for (Integer count : edges.values())
+		{
+			boundary += count;
+		}
+		return boundary;
+	}
+
+	private static double signedVolume(IsosurfaceExtractor.Mesh mesh)
+	{
+		float[] v = mesh.getVertices();
+		int[] indices = mesh.getIndices();
+		double volume = 0;
+		for (int i = 0; i < indices.length; i += 3)
+		{
+			int a = indices[i] * 3, b = indices[i + 1] * 3, c = indices[i + 2] * 3;
+			volume +=
+					v[a] * (v[b + 1] * v[c + 2] - v[b + 2] * v[c + 1]) - v[a + 1] * (v[b] * v[c + 2] - v[b + 2] * v[c])
+							+ v[a + 2] * (v[b] * v[c + 1] - v[b + 1] * v[c]);
+		}
+		return volume / 6;
+	}
+
+	/**
+	 * Volume whose values are the distance from the sample (24,20,18), with
+	 * NODATA for samples at or beyond an optional x value.
+	 */
+	private static class SphereVolumeDataProvider extends AbstractVolumeDataProvider
+	{
+		private final int noDataX;
+
+		public SphereVolumeDataProvider(int xSize, int ySize, int zSize, int noDataX)
+		{
+			this.xSize = xSize;
+			this.ySize = ySize;
+			this.zSize = zSize;
+			this.noDataX = noDataX;
+			this.noDataValue = -9999;
+		}
+
+		public static float distance(float x, float y, float z)
+		{
+			return (float) Math.sqrt((x - 24) * (x - 24) + (y - 20) * (y - 20) + (z - 18) * (z - 18));
+		}
+
+		@Override
+		public float getValue(int x, int y, int z)
+		{
+			return noDataX >= 0 && x >= noDataX ? noDataValue : distance(x, y, z);
+		}
+
+		@Override
+		protected boolean doLoadData(URL url, VolumeLayer layer)
+		{
+			return false;
+		}
+	}
+}
@@ -40,6 +40,9 @@ public class VolumeLayerFactoryTest
 		assertNotNull(params.getValue(AVKeyMore.MINIMUM_DISTANCE));
 		assertEquals(1e5, (Double)params.getValue(AVKeyMore.MINIMUM_DISTANCE), 0.001);
 		
+		assertNotNull(params.getValue(AVKeyMore.ISO_VALUE));
+		assertEquals(0.5, (Double)params.getValue(AVKeyMore.ISO_VALUE), 0.001);
+		
 		assertNotNull(params.getValue(AVKeyMore.DATA_LAYER_PROVIDER));
 		assertTrue(params.getValue(AVKeyMore.DATA_LAYER_PROVIDER) instanceof ArrayVolumeDataProvider);
 		
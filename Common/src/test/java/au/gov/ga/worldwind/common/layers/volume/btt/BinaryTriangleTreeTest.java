@@ -57,6 +57,33 @@ public class BinaryTriangleTreeTest
 		Assert.assertTrue(areImagesEqual(image, reference));
 	}
 
+	@Test
+	public void testCachedErrorsGiveSameMesh()
+	{
+		//large enough to be divided into several squares that are built in parallel
+		int width = 300;
+		int height = 200;
+		List<Position> positions = new ArrayList<Position>(width * height);
+		for (int y = 0; y < height; y++)
+		{
+			for (int x = 0; x < width; x++)
+			{
+				positions.add(Position.fromDegrees(y, x, Math.sin(x * 0.05) * Math.cos(y * 0.07) * 100));
+			}
+		}
+
+		BinaryTriangleTree cached = new BinaryTriangleTree(positions, width, height);
+		cached.buildMesh(10);
+		cached.buildMeshFromCenter(1, new Rectangle(10, 10, 250, 150));
+		FastShape shape = cached.buildMesh(2);
+
+		BinaryTriangleTree fresh = new BinaryTriangleTree(positions, width, height);
+		FastShape expected = fresh.buildMesh(2);
+
+		Assert.assertArrayEquals(expected.getIndices(), shape.getIndices());
+		Assert.assertEquals(expected.getPositions(), shape.getPositions());
+	}
+
 	protected BufferedImage shapeToImage(FastShape shape, int width, int height)
 	{
 		int[] indices = shape.getIndices();
@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.profiling;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link Profiler} class
+ */
+public class ProfilerTest
+{
+	private Profiler profiler;
+
+	@Before
+	public void setup()
+	{
+		profiler = new Profiler(3);
+		profiler.setEnabled(true);
+	}
+
+	@Test
+	public void testDisabledRecordsNothing()
+	{
+		profiler.setEnabled(false);
+		ProfilerTimer timer = profiler.getTimer("timer");
+		ProfilerCounter counter = profiler.getCounter("counter");
+
+		profiler.frameStarted();
+		assertEquals(0, timer.start());
+		counter.increment();
+		profiler.frameCompleted();
+
+		assertEquals(0, profiler.getRecordedFrameCount());
+
+		profiler.setEnabled(true);
+		recordFrame();
+		assertEquals(Long.valueOf(0), profiler.getRecorder().getLatest().getValue("counter"));
+	}
+
+	@Test
+	public void testMetricsAreResetEachFrame() throws InterruptedException
+	{
+		ProfilerTimer timer = profiler.getTimer("timer");
+		ProfilerCounter counter = profiler.getCounter("counter");
+
+		profiler.frameStarted();
+		long start = timer.start();
+		Thread.sleep(5);
+		timer.stop(start);
+		counter.add(3);
+		counter.increment();
+		profiler.frameCompleted();
+
+		ProfilerFrame frame = profiler.getRecorder().getLatest();
+		assertEquals(1, frame.getFrameNumber());
+		assertTrue(frame.getValue("timer") >= 5000);
+		assertTrue(frame.getFrameTime() >= frame.getValue("timer"));
+		assertEquals(Long.valueOf(4), frame.getValue("counter"));
+
+		recordFrame();
+		frame = profiler.getRecorder().getLatest();
+		assertEquals(Long.valueOf(0), frame.getValue("timer"));
+		assertEquals(Long.valueOf(0), frame.getValue("counter"));
+	}
+
+	@Test
+	public void testGetMetricReturnsSameInstance()
+	{
+		assertSame(profiler.getTimer("timer"), profiler.getTimer("timer"));
+		assertSame(profiler.getCounter("counter"), profiler.getCounter("counter"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testGetMetricOfWrongType()
+	{
+		profiler.getTimer("metric");
+		profiler.getCounter("metric");
+	}
+
+	@Test
+	public void testRemovedMetricIsNotRecorded()
+	{
+		ProfilerTimer first = profiler.getTimer("first");
+		ProfilerTimer removed = profiler.getTimer("removed");
+		profiler.getCounter("last");
+		recordFrame();
+		assertEquals(3, profiler.getRecorder().getLatest().getMetricCount());
+
+		profiler.removeMetric(removed);
+		assertFalse(profiler.isRecorded(removed));
+		assertTrue(profiler.isRecorded(first));
+		recordFrame();
+		ProfilerFrame frame = profiler.getRecorder().getLatest();
+		assertEquals(2, frame.getMetricCount());
+		assertNull(frame.getValue("removed"));
+		assertEquals(Long.valueOf(0), frame.getValue("last"));
+
+		//a metric with the same name can be created again
+		assertNotSame(removed, profiler.getTimer("removed"));
+	}
+
+	@Test
+	public void testGaugeIsSampled()
+	{
+		final long[] value = { 7 };
+		profiler.addGauge("gauge", new ProfilerGauge()
+		{
+			@Override
+			public long getValue()
+			{
+				return value[0];
+			}
+		});
+
+		recordFrame();
+		assertEquals(Long.valueOf(7), profiler.getRecorder().getLatest().getValue("gauge"));
+		value[0] = 2;
+		recordFrame();
+		assertEquals(Long.valueOf(2), profiler.getRecorder().getLatest().getValue("gauge"));
+	}
+
+	@Test
+	public void testRecorderKeepsMostRecentFrames()
+	{
+		for (int i = 0; i < 5; i++)
+		{
+			recordFrame();
+		}
+
+		List<ProfilerFrame> frames = profiler.getRecorder().getFrames();
+		assertEquals(3, frames.size());
+		assertEquals(3, frames.get(0).getFrameNumber());
+		assertEquals(5, frames.get(2).getFrameNumber());
+		assertEquals(5, profiler.getFrameCount());
+
+		profiler.clear();
+		assertEquals(0, profiler.getRecordedFrameCount());
+		assertNull(profiler.getRecorder().getLatest());
+	}
+
+	@Test
+	public void testListenerIsNotified()
+	{
+		final List<ProfilerFrame> frames = new ArrayList<ProfilerFrame>();
+		profiler.addListener(new ProfilerListener()
+		{
+			@Override
+			public void frameRecorded(ProfilerFrame frame)
+			{
+				frames.add(frame);
+			}
+		});
+
+		recordFrame();
+		recordFrame();
+		assertEquals(2, frames.size());
+	}
+
+	@Test
+	public void testCsvWriterRepeatsHeaderWhenMetricsChange() throws IOException
+	{
+		profiler.getCounter("a").increment();
+		recordFrame();
+		profiler.getCounter("b, with comma");
+		recordFrame();
+
+		StringWriter output = new StringWriter();
+		CsvProfilerWriter writer = new CsvProfilerWriter(output);
+		writer.write(profiler.getRecorder().getFrames());
+		writer.close();
+
+		String[] lines = output.toString().split("\n");
+		assertEquals(4, lines.length);
+		assertEquals("Frame,Time,Frame time,a", lines[0]);
+		assertTrue(lines[1].startsWith("1,"));
+		assertTrue(lines[1].endsWith(",1"));
+		assertEquals("Frame,Time,Frame time,a,\"b, with comma\"", lines[2]);
+		assertTrue(lines[3].endsWith(",0,0"));
+	}
+
+	@Test
+	public void testJsonLinesWriter() throws IOException
+	{
+		profiler.getCounter("quote\"d").add(2);
+		recordFrame();
+
+		StringWriter output = new StringWriter();
+		JsonLinesProfilerWriter writer = new JsonLinesProfilerWriter(output);
+		writer.write(profiler.getRecorder().getFrames());
+		writer.close();
+
+		String line = output.toString();
+		assertTrue(line.startsWith("{\"frame\":1,\"time\":"));
+		assertTrue(line.endsWith(",\"metrics\":{\"quote\\\"d\":2}}\n"));
+	}
+
+	@Test
+	public void testAverages()
+	{
+		ProfilerCounter counter = profiler.getCounter("counter");
+		counter.add(2);
+		recordFrame();
+		counter.add(4);
+		recordFrame();
+
+		assertEquals(3d, profiler.getAverages().get("counter"), 0);
+		assertEquals(Long.valueOf(4), profiler.getLatestFrame().get("counter"));
+	}
+
+	private void recordFrame()
+	{
+		profiler.frameStarted();
+		profiler.frameCompleted();
+	}
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.render.fastshape;
+
+import java.util.Random;
+
+import javax.media.opengl.GL2;
+
+/**
+ * Measures the time taken to build and refit a {@link BoundingVolumeHierarchy}
+ * over a surface similar to a large GOCAD triangulated surface, and the
+ * throughput of ray and nearest point queries against it.
+ * <p/>
+ * Run as an application, with enough heap for the surface (eg -Xmx2g). The
+ * number of triangles can be passed as the first argument (default 4
+ * million).
+ */
+public class BoundingVolumeHierarchyBenchmark
+{
+	private static final int QUERIES = 100000;
+
+	public static void main(String[] args)
+	{
+		int triangles = args.length > 0 ? Integer.parseInt(args[0]) : 4000000;
+		int size = (int) Math.sqrt(triangles / 2);
+
+		float[] vertices = new float[(size + 1) * (size + 1) * 3];
+		for (int y = 0, i = 0; y <= size; y++)
+		{
+			for (int x = 0; x <= size; x++)
+			{
+				vertices[i++] = x * 10;
+				vertices[i++] = y * 10;
+				vertices[i++] = (float) surface(x, y);
+			}
+		}
+		//a single strip per row, joined with degenerate triangles
+		int[] indices = new int[size * (size + 1) * 2 + (size - 1) * 2];
+		for (int y = 0, i = 0; y < size; y++)
+		{
+			if (y > 0)
+			{
+				indices[i++] = (y + 1) * (size + 1) - 1;
+				indices[i++] = y * (size + 1);
+			}
+			for (int x = 0; x <= size; x++)
+			{
+				indices[i++] = y * (size + 1) + x;
+				indices[i++] = (y + 1) * (size + 1) + x;
+			}
+		}
+
+		System.out.println(Runtime.getRuntime().availableProcessors() + " processors");
+		BoundingVolumeHierarchy bvh = null;
+		for (int run = 0; run < 3; run++)
+		{
+			long start = System.nanoTime();
+			bvh = BoundingVolumeHierarchy.build(vertices, indices, GL2.GL_TRIANGLE_STRIP, 0, 0, 0);
+			long buildTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			BoundingVolumeHierarchy refit = bvh.refit(vertices.clone(), 0, 0, 1000);
+			long refitTime = System.nanoTime() - start;
+
+			System.out.println(bvh.getPrimitiveCount() + " triangles, " + refit.getNodeCount() + " nodes: build "
+					+ (buildTime / 1000000) + " ms, refit " + (refitTime / 1000000) + " ms");
+		}
+
+		Random random = new Random(0);
+		double extent = size * 10;
+		for (int run = 0; run < 3; run++)
+		{
+			int hits = 0;
+			long start = System.nanoTime();
+			for (int i = 0; i < QUERIES; i++)
+			{
+				double x = random.nextDouble() * extent, y = random.nextDouble() * extent;
+				if (bvh.intersect(x, y, 2000, random.nextDouble() - 0.5, random.nextDouble() - 0.5, -2, 0) != null)
+				{
+					hits++;
+				}
+			}
+			long rayTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			double sum = 0;
+			for (int i = 0; i < QUERIES; i++)
+			{
+				//points near the surface, as picked by a measurement tool
+				double x = random.nextDouble() * extent, y = random.nextDouble() * extent;
+				double z = surface(x / 10, y / 10) + random.nextDouble() * 100 - 50;
+				sum += bvh.nearest(x, y, z, Double.POSITIVE_INFINITY).distance;
+			}
+			long nearestTime = System.nanoTime() - start;
+
+			System.out.println("Rays: " + (rayTime / QUERIES) + " ns per query (" + hits + " hits), nearest: "
+					+ (nearestTime / QUERIES) + " ns per query" + (sum >= 0 ? "" : " (negative distance!)"));
+		}
+	}
+
+	private static double surface(double x, double y)
+	{
+		return 500 * Math.sin(x * 0.01) * Math.cos(y * 0.013) + 20 * Math.sin(x * 0.3) * Math.sin(y * 0.2);
+	}
+}
@@ -0,0 +1,412 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.render.fastshape;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.media.opengl.GL2;
+
+import org.junit.Test;
+
+import au.gov.ga.worldwind.common.render.fastshape.BoundingVolumeHierarchy.Hit;
+
+/**
+ * Unit tests for the {@link BoundingVolumeHierarchy} class
+ */
+public class BoundingVolumeHierarchyTest
+{
+	private static final double OFFSET_X = 1000;
+	private static final double OFFSET_Y = -2000;
+	private static final double OFFSET_Z = 3000;
+
+	@Test
+	public void testPrimitiveDecomposition()
+	{
+		int[] six = new int[] { 10, 11, 12, 13, 14, 15 };
+		assertDecomposition(GL2.GL_POINTS, six, 10, 11, 12, 13, 14, 15);
+		assertDecomposition(GL2.GL_LINES, six, 10, 11, 12, 13, 14, 15);
+		assertDecomposition(GL2.GL_LINE_STRIP, six, 10, 11, 11, 12, 12, 13, 13, 14, 14, 15);
+		assertDecomposition(GL2.GL_LINE_LOOP, new int[] { 10, 11, 12 }, 10, 11, 11, 12, 12, 10);
+		assertDecomposition(GL2.GL_TRIANGLES, six, 10, 11, 12, 13, 14, 15);
+		assertDecomposition(GL2.GL_TRIANGLE_STRIP, new int[] { 10, 11, 12, 13 }, 10, 11, 12, 12, 11, 13);
+		assertDecomposition(GL2.GL_TRIANGLE_FAN, new int[] { 10, 11, 12, 13 }, 10, 11, 12, 10, 12, 13);
+		assertDecomposition(GL2.GL_POLYGON, new int[] { 10, 11, 12, 13 }, 10, 11, 12, 10, 12, 13);
+		assertDecomposition(GL2.GL_QUADS, new int[] { 10, 11, 12, 13 }, 10, 11, 12, 10, 12, 13);
+		assertDecomposition(GL2.GL_QUAD_STRIP, six, 10, 11, 13, 10, 13, 12, 12, 13, 15, 12, 15, 14);
+
+		//incomplete primitives are ignored
+		assertDecomposition(GL2.GL_TRIANGLES, new int[] { 10, 11, 12, 13, 14 }, 10, 11, 12);
+		assertDecomposition(GL2.GL_TRIANGLE_STRIP, new int[] { 10, 11 });
+
+		//without indices, the vertices are used in order
+		assertArrayEquals(new int[] { 0, 1, 2, 2, 1, 3 },
+				BoundingVolumeHierarchy.createPrimitives(null, 4, GL2.GL_TRIANGLE_STRIP));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testIndexOutsideVertices()
+	{
+		BoundingVolumeHierarchy.build(new float[9], new int[] { 0, 1, 3 }, GL2.GL_TRIANGLES, 0, 0, 0);
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		BoundingVolumeHierarchy bvh = BoundingVolumeHierarchy.build(new float[0], null, GL2.GL_TRIANGLES, 0, 0, 0);
+		assertEquals(0, bvh.getPrimitiveCount());
+		assertNull(bvh.intersect(0, 0, 0, 0, 0, 1, 0));
+		assertNull(bvh.nearest(0, 0, 0, Double.POSITIVE_INFINITY));
+		assertEquals(0, bvh.findInBox(-1, -1, -1, 1, 1, 1).length);
+	}
+
+	@Test
+	public void testRayIntersectsGrid()
+	{
+		//200x200 quads as triangles is large enough to be built in parallel
+		int size = 200;
+		BoundingVolumeHierarchy bvh = createGrid(size);
+		assertEquals(size * size * 2, bvh.getPrimitiveCount());
+
+		Random random = new Random(1);
+		for (int i = 0; i < 1000; i++)
+		{
+			double x = random.nextDouble() * size;
+			double y = random.nextDouble() * size;
+			//ray from above at an angle, with an unnormalized direction
+			Hit hit = bvh.intersect(OFFSET_X + x - 5, OFFSET_Y + y + 10, OFFSET_Z + 50, 2.5, -5, -25, 0);
+			assertNotNull(hit);
+			assertEquals(OFFSET_X + x, hit.x, 1e-6);
+			assertEquals(OFFSET_Y + y, hit.y, 1e-6);
+			assertEquals(OFFSET_Z, hit.z, 1e-6);
+			assertEquals(Math.sqrt(25 + 100 + 2500), hit.distance, 1e-6);
+
+			//the hit triangle is in the quad containing the hit point
+			int quad = (int) y * size + (int) x;
+			assertEquals(quad, hit.primitive / 2);
+			int nearest = (int) Math.round(y) * (size + 1) + (int) Math.round(x);
+			assertEquals(nearest, hit.nearestVertex);
+		}
+
+		//from below, the back faces are hit too
+		assertNotNull(bvh.intersect(OFFSET_X + 10, OFFSET_Y + 10, OFFSET_Z - 1, 0, 0, 1, 0));
+		//pointing away, parallel or outside the grid
+		assertNull(bvh.intersect(OFFSET_X + 10, OFFSET_Y + 10, OFFSET_Z + 1, 0, 0, 1, 0));
+		assertNull(bvh.intersect(OFFSET_X + 10, OFFSET_Y + 10, OFFSET_Z + 1, 1, 0, 0, 0));
+		assertNull(bvh.intersect(OFFSET_X - 10, OFFSET_Y + 10, OFFSET_Z + 1, 0, 0, -1, 0));
+		assertNull(bvh.intersect(OFFSET_X + 10, OFFSET_Y + 10, OFFSET_Z + 1, 0, 0, 0, 0));
+	}
+
+	@Test
+	public void testRayMatchesBruteForce()
+	{
+		Random random = new Random(2);
+		for (int mode : new int[] { GL2.GL_POINTS, GL2.GL_LINES, GL2.GL_TRIANGLES })
+		{
+			float[] vertices = randomVertices(random, 600);
+			BoundingVolumeHierarchy bvh = BoundingVolumeHierarchy.build(vertices, null, mode, OFFSET_X, OFFSET_Y,
+					OFFSET_Z);
+			List<BoundingVolumeHierarchy> singles = createSingles(bvh, vertices, mode);
+
+			for (int i = 0; i < 200; i++)
+			{
+				double[] ray = randomRay(random);
+				double tolerance = 0.5;
+				Hit hit = bvh.intersect(ray[0], ray[1], ray[2], ray[3], ray[4], ray[5], tolerance);
+
+				Hit expected = null;
+				for (BoundingVolumeHierarchy single : singles)
+				{
+					Hit h = single.intersect(ray[0], ray[1], ray[2], ray[3], ray[4], ray[5], tolerance);
+					if (h != null && (expected == null || h.distance < expected.distance))
+					{
+						expected = h;
+					}
+				}
+
+				if (expected == null)
+				{
+					assertNull(hit);
+				}
+				else
+				{
+					assertNotNull(hit);
+					assertEquals(expected.distance, hit.distance, 1e-9);
+					assertArrayEquals(expected.vertices, hit.vertices);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testDegenerateTrianglesIgnored()
+	{
+		//two strips of two triangles each, joined by degenerate triangles
+		float[] vertices = new float[] { 0, 0, 0, 0, 1, 0, 1, 0, 0, 1, 1, 0, 5, 0, 0, 5, 1, 0, 6, 0, 0, 6, 1, 0 };
+		int[] indices = new int[] { 0, 1, 2, 3, 3, 4, 4, 5, 6, 7 };
+		BoundingVolumeHierarchy bvh = BoundingVolumeHierarchy.build(vertices, indices, GL2.GL_TRIANGLE_STRIP, 0, 0, 0);
+		assertEquals(8, bvh.getPrimitiveCount());
+
+		assertEquals(6, bvh.intersect(5.2, 0.5, 1, 0, 0, -1, 0).primitive);
+		assertNull(bvh.intersect(3, 0.5, 1, 0, 0, -1, 0));
+		assertArrayEquals(new int[] { 0, 1, 6, 7 }, bvh.findInBox(-1, -1, -1, 10, 10, 1));
+	}
+
+	@Test
+	public void testPointAndLineTolerance()
+	{
+		float[] vertices = new float[] { 0, 0, 0, 10, 0, 0 };
+		BoundingVolumeHierarchy points = BoundingVolumeHierarchy.build(vertices, null, GL2.GL_POINTS, 0, 0, 0);
+		assertNull(points.intersect(5, 1, 10, 0, 0, -1, 0.5));
+		Hit hit = points.intersect(9.8, 0.1, 10, 0, 0, -1, 0.5);
+		assertEquals(1, hit.primitive);
+		assertEquals(1, hit.nearestVertex);
+		assertEquals(10, hit.x, 0);
+		assertEquals(10, hit.distance, 1e-9);
+
+		BoundingVolumeHierarchy line = BoundingVolumeHierarchy.build(vertices, null, GL2.GL_LINES, 0, 0, 0);
+		assertNull(line.intersect(5, 1, 10, 0, 0, -1, 0.5));
+		hit = line.intersect(4, 0.2, 10, 0, 0, -1, 0.5);
+		assertEquals(0, hit.primitive);
+		assertEquals(0, hit.nearestVertex);
+		assertEquals(4, hit.x, 1e-9);
+		assertEquals(0, hit.y, 1e-9);
+		assertEquals(10, hit.distance, 1e-9);
+	}
+
+	@Test
+	public void testNearest()
+	{
+		BoundingVolumeHierarchy bvh = createGrid(50);
+
+		Hit hit = bvh.nearest(OFFSET_X + 12.3, OFFSET_Y + 45.6, OFFSET_Z + 7, Double.POSITIVE_INFINITY);
+		assertEquals(7, hit.distance, 1e-6);
+		assertEquals(OFFSET_X + 12.3, hit.x, 1e-6);
+		assertEquals(OFFSET_Y + 45.6, hit.y, 1e-6);
+		assertEquals(46 * 51 + 12, hit.nearestVertex);
+
+		//off the corner of the grid
+		hit = bvh.nearest(OFFSET_X - 3, OFFSET_Y - 4, OFFSET_Z, 10);
+		assertEquals(5, hit.distance, 1e-6);
+		assertEquals(0, hit.nearestVertex);
+		assertNull(bvh.nearest(OFFSET_X - 3, OFFSET_Y - 4, OFFSET_Z, 4));
+
+		//compare with brute force for each primitive type
+		Random random = new Random(3);
+		for (int mode : new int[] { GL2.GL_POINTS, GL2.GL_LINE_STRIP, GL2.GL_TRIANGLE_STRIP })
+		{
+			float[] vertices = randomVertices(random, 300);
+			bvh = BoundingVolumeHierarchy.build(vertices, null, mode, OFFSET_X, OFFSET_Y, OFFSET_Z);
+			List<BoundingVolumeHierarchy> singles = createSingles(bvh, vertices, mode);
+			for (int i = 0; i < 100; i++)
+			{
+				double[] ray = randomRay(random);
+				double expected = Double.POSITIVE_INFINITY;
+				for (BoundingVolumeHierarchy single : singles)
+				{
+					expected = Math.min(expected, single.nearest(ray[0], ray[1], ray[2], 1000).distance);
+				}
+				assertEquals(expected, bvh.nearest(ray[0], ray[1], ray[2], 1000).distance, 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void testFindInBoxAndPlanes()
+	{
+		Random random = new Random(4);
+		float[] vertices = randomVertices(random, 5000);
+		BoundingVolumeHierarchy points =
+				BoundingVolumeHierarchy.build(vertices, null, GL2.GL_POINTS, OFFSET_X, OFFSET_Y, OFFSET_Z);
+
+		List<Integer> expected = new ArrayList<Integer>();
+		for (int i = 0; i < 5000; i++)
+		{
+			if (vertices[i * 3] >= 10 && vertices[i * 3] <= 30 && vertices[i * 3 + 1] >= -20
+					&& vertices[i * 3 + 1] <= 0 && vertices[i * 3 + 2] <= 25)
+			{
+				expected.add(i);
+			}
+		}
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, toList(points.findInBox(OFFSET_X + 10, OFFSET_Y - 20, OFFSET_Z - 100, OFFSET_X + 30,
+				OFFSET_Y, OFFSET_Z + 25)));
+
+		//the half space x + y >= 0
+		expected.clear();
+		for (int i = 0; i < 5000; i++)
+		{
+			if (vertices[i * 3] + vertices[i * 3 + 1] >= 0)
+			{
+				expected.add(i);
+			}
+		}
+		assertEquals(expected, toList(points.findInPlanes(new double[] { 1, 1, 0, -OFFSET_X - OFFSET_Y })));
+
+		//a triangle is found if its bounds intersect the box
+		float[] triangle = new float[] { 0, 0, 0, 10, 0, 0, 0, 10, 0 };
+		BoundingVolumeHierarchy triangles = BoundingVolumeHierarchy.build(triangle, null, GL2.GL_TRIANGLES, 0, 0, 0);
+		assertEquals(1, triangles.findInBox(4, 4, -1, 6, 6, 1).length);
+		assertEquals(0, triangles.findInBox(4, 4, 1, 6, 6, 2).length);
+	}
+
+	@Test
+	public void testRefit()
+	{
+		int size = 20;
+		BoundingVolumeHierarchy bvh = createGrid(size);
+		float[] vertices = createGridVertices(size);
+		for (int i = 0; i < vertices.length; i += 3)
+		{
+			//tilt the grid so that z = x
+			vertices[i + 2] = vertices[i];
+		}
+
+		BoundingVolumeHierarchy refit = bvh.refit(vertices, 0, 0, 0);
+		assertEquals(bvh.getNodeCount(), refit.getNodeCount());
+		assertEquals(bvh.getPrimitiveCount(), refit.getPrimitiveCount());
+
+		Hit hit = refit.intersect(5.5, 7.5, 100, 0, 0, -1, 0);
+		assertEquals(5.5, hit.z, 1e-6);
+		assertEquals(7 * size + 5, hit.primitive / 2);
+
+		//the original hierarchy is unchanged
+		hit = bvh.intersect(OFFSET_X + 5.5, OFFSET_Y + 7.5, OFFSET_Z + 100, 0, 0, -1, 0);
+		assertEquals(OFFSET_Z, hit.z, 1e-6);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRefitWithDifferentVertexCount()
+	{
+		createGrid(2).refit(new float[3], 0, 0, 0);
+	}
+
+	private static void assertDecomposition(int mode, int[] indices, int... expected)
+	{
+		assertArrayEquals(expected, BoundingVolumeHierarchy.createPrimitives(indices, 16, mode));
+	}
+
+	private static float[] createGridVertices(int size)
+	{
+		float[] vertices = new float[(size + 1) * (size + 1) * 3];
+		for (int y = 0, i = 0; y <= size; y++)
+		{
+			for (int x = 0; x <= size; x++)
+			{
+				vertices[i++] = x;
+				vertices[i++] = y;
+				vertices[i++] = 0;
+			}
+		}
+		return vertices;
+	}
+
+	/**
+	 * @return A grid of size x size quads in the z = 0 plane, drawn as two
+	 *         triangles per quad
+	 */
+	private static BoundingVolumeHierarchy createGrid(int size)
+	{
+		int[] indices = new int[size * size * 6];
+		for (int y = 0, i = 0; y < size; y++)
+		{
+			for (int x = 0; x < size; x++)
+			{
+				int v = y * (size + 1) + x;
+				indices[i++] = v;
+				indices[i++] = v + 1;
+				indices[i++] = v + size + 2;
+				indices[i++] = v;
+				indices[i++] = v + size + 2;
+				indices[i++] = v + size + 1;
+			}
+		}
+		return BoundingVolumeHierarchy.build(createGridVertices(size), indices, GL2.GL_TRIANGLES, OFFSET_X, OFFSET_Y,
+				OFFSET_Z);
+	}
+
+	/**
+	 * @return A hierarchy for each primitive of the given hierarchy
+	 */
+	private static List<BoundingVolumeHierarchy> createSingles(BoundingVolumeHierarchy bvh, float[] vertices,
+			int mode)
+	{
+		int singleMode = bvh.getPrimitiveSize() == 1 ? GL2.GL_POINTS : bvh.getPrimitiveSize() == 2 ? GL2.GL_LINES
+				: GL2.GL_TRIANGLES;
+		List<BoundingVolumeHierarchy> singles = new ArrayList<BoundingVolumeHierarchy>();
+		for (int i = 0; i < bvh.getPrimitiveCount(); i++)
+		{
+			singles.add(BoundingVolumeHierarchy.build(vertices, bvh.getPrimitiveVertices(i), singleMode, OFFSET_X,
+					OFFSET_Y, OFFSET_Z));
+		}
+		return singles;
+	}
+
+	private static float[] randomVertices(Random random, int count)
+	{
+		float[] vertices = new float[count * 3];
+		for (int i = 0; i < vertices.length; i += 3)
+		{
+			//small primitives scattered through a cube
+			float x = random.nextFloat() * 100 - 50;
+			float y = random.nextFloat() * 100 - 50;
+			float z = random.nextFloat() * 100 - 50;
+			if (i % 9 != 0)
+			{
+				x = vertices[i - 3] + random.nextFloat() * 10 - 5;
+				y = vertices[i - 2] + random.nextFloat() * 10 - 5;
+				z = vertices[i - 1] + random.nextFloat() * 10 - 5;
+			}
+			vertices[i] = x;
+			vertices[i + 1] = y;
+			vertices[i + 2] = z;
+		}
+		return vertices;
+	}
+
+	/**
+	 * @return Ray origin (in model coordinates) and direction, pointing
+	 *         through the middle of the random vertices
+	 */
+	private static double[] randomRay(Random random)
+	{
+		double[] ray = new double[6];
+		for (int i = 0; i < 3; i++)
+		{
+			double origin = random.nextDouble() * 160 - 80;
+			double target = random.nextDouble() * 60 - 30;
+			ray[i] = origin;
+			ray[i + 3] = target - origin;
+		}
+		ray[0] += OFFSET_X;
+		ray[1] += OFFSET_Y;
+		ray[2] += OFFSET_Z;
+		return ray;
+	}
+
+	private static List<Integer> toList(int[] values)
+	{
+		List<Integer> list = new ArrayList<Integer>();
+		for (int value : values)
+		{
+			list.add(value);
+		}
+		return list;
+	}
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.render.fastshape;
+
+import gov.nasa.worldwind.geom.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the heap footprint of a list of {@link Position}s (as previously
+ * passed to {@link FastShape}) against a {@link PositionBuffer} holding the
+ * same positions, and the time taken to iterate each.
+ * <p/>
+ * Run as an application, with enough heap for the list (eg -Xmx2g). The
+ * number of positions can be passed as the first argument (default 2 million).
+ */
+public class PositionBufferBenchmark
+{
+	public static void main(String[] args)
+	{
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+
+		long before = usedMemory();
+		List<Position> list = new ArrayList<Position>(count);
+		for (int i = 0; i < count; i++)
+		{
+			list.add(Position.fromDegrees(latitude(i), longitude(i), elevation(i)));
+		}
+		long listBytes = usedMemory() - before;
+
+		before = usedMemory();
+		PositionBuffer buffer = new PositionBuffer(count);
+		for (int i = 0; i < count; i++)
+		{
+			buffer.add(latitude(i), longitude(i), elevation(i));
+		}
+		long bufferBytes = usedMemory() - before;
+
+		System.out.println(count + " positions");
+		System.out.println("List<Position>: " + (listBytes / (1024 * 1024)) + " MB (" + (listBytes / count)
+				+ " bytes per position)");
+		System.out.println("PositionBuffer: " + (bufferBytes / (1024 * 1024)) + " MB (" + (bufferBytes / count)
+				+ " bytes per position)");
+
+		for (int run = 0; run < 3; run++)
+		{
+			long start = System.nanoTime();
+			double sum = 0;
+			for (Position position : list)
+			{
+				sum += position.latitude.degrees + position.longitude.degrees + position.elevation;
+			}
+			long listTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			double bufferSum = 0;
+			for (int i = 0; i < buffer.size(); i++)
+			{
+				bufferSum += buffer.getLatitude(i) + buffer.getLongitude(i) + buffer.getElevation(i);
+			}
+			long bufferTime = System.nanoTime() - start;
+
+			System.out.println("Iteration: List<Position> " + (listTime / 1000000) + " ms, PositionBuffer "
+					+ (bufferTime / 1000000) + " ms" + (sum == bufferSum ? "" : " (sums differ!)"));
+		}
+
+		//keep both alive until measurement is complete
+		System.out.println(list.size() + buffer.size() > 0 ? "" : "empty");
+	}
+
+	private static double latitude(int i)
+	{
+		return -45 + (i % 1000) * 0.01;
+	}
+
+	private static double longitude(int i)
+	{
+		return 110 + (i / 1000) * 0.001;
+	}
+
+	private static double elevation(int i)
+	{
+		return -(i % 5000);
+	}
+
+	private static long usedMemory()
+	{
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++)
+		{
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.render.fastshape;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.geom.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import au.gov.ga.worldwind.common.layers.Bounds;
+
+/**
+ * Unit tests for the {@link PositionBuffer} class
+ */
+public class PositionBufferTest
+{
+	private static final double DELTA = 1e-9;
+
+	@Test
+	public void testAddGrowsBuffer()
+	{
+		PositionBuffer buffer = new PositionBuffer(1);
+		for (int i = 0; i < 100; i++)
+		{
+			buffer.add(i * 0.5, -i, i * 10);
+		}
+
+		assertEquals(100, buffer.size());
+		assertEquals(49.5, buffer.getLatitude(99), DELTA);
+		assertEquals(-99, buffer.getLongitude(99), DELTA);
+		assertEquals(990, buffer.getElevation(99), DELTA);
+	}
+
+	@Test
+	public void testGetCreatesEqualPosition()
+	{
+		PositionBuffer buffer = new PositionBuffer();
+		Position position = Position.fromDegrees(-35.3, 149.1, -1200);
+		buffer.add(position);
+
+		assertEquals(position, buffer.get(0));
+		assertEquals(1, buffer.size());
+	}
+
+	@Test
+	public void testCoordinatesAreStoredAndCopied()
+	{
+		PositionBuffer source = new PositionBuffer(2, true);
+		source.add(1, 2, 3, 4, 5);
+		source.add(6, 7, 8, 9, 10);
+
+		PositionBuffer copy = new PositionBuffer(0, true);
+		copy.add(source, 1);
+
+		assertTrue(copy.hasCoordinates());
+		assertEquals(6, copy.getLatitude(0), DELTA);
+		assertEquals(8, copy.getElevation(0), DELTA);
+		assertEquals(9, copy.getU(0), DELTA);
+		assertEquals(10, copy.getV(0), DELTA);
+	}
+
+	@Test
+	public void testCoordinatesAreIgnoredWithoutCoordinates()
+	{
+		PositionBuffer buffer = new PositionBuffer();
+		buffer.add(1, 2, 3, 4, 5);
+
+		assertFalse(buffer.hasCoordinates());
+		assertEquals(0, buffer.getU(0), DELTA);
+		assertEquals(0, buffer.getV(0), DELTA);
+		assertEquals(3, buffer.getElevation(0), DELTA);
+	}
+
+	@Test
+	public void testSetReplacesPosition()
+	{
+		PositionBuffer buffer = new PositionBuffer();
+		buffer.add(1, 2, 3);
+		buffer.add(4, 5, 6);
+
+		Position old = buffer.set(1, Position.fromDegrees(7, 8, 9));
+		buffer.setElevation(0, 30);
+
+		assertEquals(Position.fromDegrees(4, 5, 6), old);
+		assertEquals(Position.fromDegrees(7, 8, 9), buffer.get(1));
+		assertEquals(30, buffer.getElevation(0), DELTA);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetBeyondSizeFails()
+	{
+		PositionBuffer buffer = new PositionBuffer(10);
+		buffer.add(1, 2, 3);
+		buffer.get(1);
+	}
+
+	@Test
+	public void testBounds()
+	{
+		PositionBuffer buffer = new PositionBuffer();
+		assertNull(buffer.getBounds());
+
+		buffer.add(-10, 120, -500);
+		buffer.add(-30, 150, 100);
+		buffer.add(-20, 130, 0);
+		Bounds bounds = buffer.getBounds();
+
+		assertEquals(-30, bounds.minimum.latitude.degrees, DELTA);
+		assertEquals(120, bounds.minimum.longitude.degrees, DELTA);
+		assertEquals(-500, bounds.minimum.elevation, DELTA);
+		assertEquals(-10, bounds.maximum.latitude.degrees, DELTA);
+		assertEquals(150, bounds.maximum.longitude.degrees, DELTA);
+		assertEquals(100, bounds.maximum.elevation, DELTA);
+	}
+
+	@Test
+	public void testValueOf()
+	{
+		PositionBuffer buffer = new PositionBuffer();
+		assertSame(buffer, PositionBuffer.valueOf(buffer));
+
+		List<Position> list = new ArrayList<Position>();
+		list.add(Position.fromDegrees(1, 2, 3));
+		list.add(Position.fromDegrees(4, 5, 6));
+		PositionBuffer converted = PositionBuffer.valueOf(list);
+
+		assertEquals(list, converted);
+	}
+}
@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.retrieve;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulates a burst of tile requests followed by a change of view, comparing
+ * the {@link RetrievalQueue} against the previous time-dependent
+ * {@link PriorityBlockingQueue} ordering. Reports the time from the new view's
+ * first request until its first (and last) tile is retrieved.
+ * <p/>
+ * Run as an application. The simulation uses real time: 2000 requests are
+ * queued across 4 layers, then 40 requests for the new view are submitted
+ * (and resubmitted every frame until retrieved, as layers do) while 5 threads
+ * process the queue with a simulated 5ms latency per request.
+ */
+public class RetrievalQueueBenchmark
+{
+	private static final int BURST = 2000;
+	private static final int LAYERS = 4;
+	private static final int VISIBLE = 40;
+	private static final int THREADS = 5;
+	private static final long LATENCY = 5;
+	private static final long FRAME = 16;
+	private static final long STALE_LIMIT = 1000;
+
+	public static void main(String[] args) throws Exception
+	{
+		for (int run = 0; run < 3; run++)
+		{
+			report("PriorityBlockingQueue", simulate(false));
+			report("RetrievalQueue       ", simulate(true));
+		}
+	}
+
+	private static void report(String name, long[] result)
+	{
+		System.out.println(name + ": first visible tile " + result[0] + " ms, all visible tiles " + result[1]
+				+ " ms, old view tiles retrieved meanwhile " + result[2]);
+	}
+
+	private static long[] simulate(boolean stable) throws Exception
+	{
+		BlockingQueue<Runnable> queue =
+				stable ? new RetrievalQueue(STALE_LIMIT) : new PriorityBlockingQueue<Runnable>(BURST);
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 2, TimeUnit.SECONDS, queue);
+		executor.prestartAllCoreThreads();
+
+		final AtomicLong firstVisible = new AtomicLong();
+		final AtomicLong burstRetrieved = new AtomicLong();
+		final CountDownLatch visibleDone = new CountDownLatch(VISIBLE);
+		Random random = new Random(0);
+
+		//the burst: tiles for the previous view, which are never requested again
+		for (int i = 0; i < BURST; i++)
+		{
+			executor.execute(new SimulatedTask("old" + i, "layer" + (i % LAYERS), 1 + random.nextDouble() * 1000,
+					null, burstRetrieved, null));
+		}
+
+		Thread.sleep(100);
+
+		//the new view; layers resubmit their visible tiles every frame until retrieved
+		long start = System.currentTimeMillis();
+		List<SimulatedTask> visible = new ArrayList<SimulatedTask>();
+		for (int i = 0; i < VISIBLE; i++)
+		{
+			visible.add(new SimulatedTask("new" + i, "layer" + (i % LAYERS), 1 + random.nextDouble() * 1000,
+					firstVisible, null, visibleDone));
+		}
+		while (visibleDone.getCount() > 0)
+		{
+			for (SimulatedTask task : visible)
+			{
+				if (!task.isRetrieved())
+				{
+					if (stable)
+					{
+						if (!((RetrievalQueue) queue).refresh(task) && !task.isStarted())
+							executor.execute(task);
+					}
+					else if (!queue.contains(task) && !task.isStarted())
+					{
+						//the previous services dropped duplicates, so only submit once
+						task.setSubmitTime(System.currentTimeMillis());
+						executor.execute(task);
+					}
+				}
+			}
+			Thread.sleep(FRAME);
+		}
+		long all = System.currentTimeMillis() - start;
+
+		executor.shutdownNow();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+		return new long[] { firstVisible.get() - start, all, burstRetrieved.get() };
+	}
+
+	/**
+	 * Simulated retrieval. Implements both the {@link RetrievalQueue.Task}
+	 * interface and the time-dependent ordering previously used by the
+	 * retrieval services.
+	 */
+	private static class SimulatedTask implements RetrievalQueue.Task, Comparable<SimulatedTask>
+	{
+		private final String name;
+		private final Object group;
+		private final double priority;
+		private final AtomicLong firstTime;
+		private final AtomicLong counter;
+		private final CountDownLatch latch;
+		private volatile long submitTime = System.currentTimeMillis();
+		private volatile boolean started = false;
+		private volatile boolean retrieved = false;
+
+		public SimulatedTask(String name, Object group, double priority, AtomicLong firstTime, AtomicLong counter,
+				CountDownLatch latch)
+		{
+			this.name = name;
+			this.group = group;
+			this.priority = priority;
+			this.firstTime = firstTime;
+			this.counter = counter;
+			this.latch = latch;
+		}
+
+		@Override
+		public void run()
+		{
+			started = true;
+			try
+			{
+				Thread.sleep(LATENCY);
+			}
+			catch (InterruptedException e)
+			{
+				return;
+			}
+			retrieved = true;
+			if (firstTime != null)
+				firstTime.compareAndSet(0, System.currentTimeMillis());
+			if (counter != null)
+				counter.incrementAndGet();
+			if (latch != null)
+				latch.countDown();
+		}
+
+		public boolean isStarted()
+		{
+			return started;
+		}
+
+		public boolean isRetrieved()
+		{
+			return retrieved;
+		}
+
+		public void setSubmitTime(long submitTime)
+		{
+			this.submitTime = submitTime;
+		}
+
+		@Override
+		public Object getGroupKey()
+		{
+			return group;
+		}
+
+		@Override
+		public double getPriority()
+		{
+			return priority;
+		}
+
+		@Override
+		public long getStaleRequestLimit()
+		{
+			return -1;
+		}
+
+		@Override
+		public void dequeued(long queueWaitTime)
+		{
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning)
+		{
+			return true;
+		}
+
+		@Override
+		public int compareTo(SimulatedTask that)
+		{
+			//the ordering previously used by the retrieval services
+			long now = System.currentTimeMillis();
+			long thisElapsedTime = now - this.submitTime;
+			long thatElapsedTime = now - that.submitTime;
+			if (((thisElapsedTime - thatElapsedTime) / RetrievalQueue.TIME_PRIORITY_GRANULARITY) != 0)
+				return thisElapsedTime < thatElapsedTime ? -1 : 1;
+			return this.priority == that.priority ? 0 : this.priority < that.priority ? -1 : 1;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			return obj instanceof SimulatedTask && ((SimulatedTask) obj).name.equals(name);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return name.hashCode();
+		}
+	}
+}
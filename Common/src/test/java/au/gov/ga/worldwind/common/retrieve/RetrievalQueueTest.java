@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.retrieve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link RetrievalQueue} class
+ */
+public class RetrievalQueueTest
+{
+	@Test
+	public void testPriorityOrderWithinBucket()
+	{
+		RetrievalQueue queue = new RetrievalQueue(-1);
+		queue.offer(new TestTask("a", "layer", 3));
+		queue.offer(new TestTask("b", "layer", 1));
+		queue.offer(new TestTask("c", "layer", 2));
+		queue.offer(new TestTask("d", "layer", 1));
+
+		assertEquals("b", name(queue.poll()));
+		assertEquals("d", name(queue.poll()));
+		assertEquals("c", name(queue.poll()));
+		assertEquals("a", name(queue.poll()));
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void testNonPositivePrioritiesRunFirst()
+	{
+		RetrievalQueue queue = new RetrievalQueue(-1);
+		queue.offer(new TestTask("positive", "layer", 1));
+		queue.offer(new TestTask("zero", "other", 0));
+		queue.offer(new TestTask("negative", "other", -5));
+
+		assertEquals("negative", name(queue.poll()));
+		assertEquals("zero", name(queue.poll()));
+		assertEquals("positive", name(queue.poll()));
+	}
+
+	@Test
+	public void testNewerBucketsRunFirst() throws Exception
+	{
+		RetrievalQueue queue = new RetrievalQueue(-1);
+		queue.offer(new TestTask("old", "layer", 1));
+		Thread.sleep(RetrievalQueue.TIME_PRIORITY_GRANULARITY + 100);
+		queue.offer(new TestTask("new", "layer", 100));
+
+		assertEquals("new", name(queue.poll()));
+		assertEquals("old", name(queue.poll()));
+	}
+
+	@Test
+	public void testGroupsAreServedRoundRobin()
+	{
+		RetrievalQueue queue = new RetrievalQueue(-1);
+		for (int i = 0; i < 6; i++)
+		{
+			queue.offer(new TestTask("a" + i, "busy", 1));
+		}
+		queue.offer(new TestTask("b0", "quiet", 5));
+		queue.offer(new TestTask("b1", "quiet", 6));
+
+		assertEquals("a0", name(queue.poll()));
+		assertEquals("b0", name(queue.poll()));
+		assertEquals("a1", name(queue.poll()));
+		assertEquals("b1", name(queue.poll()));
+		assertEquals("a2", name(queue.poll()));
+		assertEquals("a3", name(queue.poll()));
+	}
+
+	@Test
+	public void testDuplicateOfferRefreshesTask() throws Exception
+	{
+		RetrievalQueue queue = new RetrievalQueue(-1);
+		TestTask original = new TestTask("tile", "layer", 1);
+		queue.offer(original);
+		Thread.sleep(RetrievalQueue.TIME_PRIORITY_GRANULARITY + 100);
+		queue.offer(new TestTask("other", "layer", 1));
+
+		assertTrue(queue.refresh(new TestTask("tile", "layer", 0.5)));
+		assertEquals(2, queue.size());
+		assertSame(original, queue.poll());
+		assertEquals("other", name(queue.poll()));
+		assertFalse(queue.refresh(original));
+	}
+
+	@Test
+	public void testStaleTasksAreEvicted() throws Exception
+	{
+		RetrievalQueue queue = new RetrievalQueue(50);
+		TestTask stale = new TestTask("stale", "layer", 1);
+		TestTask kept = new TestTask("kept", "layer", 2);
+		queue.offer(stale);
+		queue.offer(kept);
+		Thread.sleep(100);
+		queue.refresh(kept);
+
+		assertSame(kept, queue.poll());
+		assertNull(queue.poll());
+		assertTrue(stale.cancelled);
+		assertFalse(kept.cancelled);
+		assertEquals(1, queue.getEvictedCount());
+	}
+
+	@Test
+	public void testWaitTimeIsReported() throws Exception
+	{
+		RetrievalQueue queue = new RetrievalQueue(-1);
+		TestTask task = new TestTask("tile", "layer", 1);
+		queue.offer(task);
+		Thread.sleep(50);
+		queue.poll();
+
+		assertTrue(task.waitTime >= 50);
+		assertEquals(1, queue.getDequeuedCount());
+		assertEquals(task.waitTime, queue.getMaximumWaitTime());
+	}
+
+	@Test
+	public void testGroupKeyForName()
+	{
+		assertEquals("http://example.com", RetrievalQueue.groupKeyForName("http://example.com/tiles/1/2/3.jpg"));
+		assertEquals("http://example.com", RetrievalQueue.groupKeyForName("http://example.com"));
+		assertEquals("name", RetrievalQueue.groupKeyForName("name"));
+	}
+
+	private static String name(Runnable runnable)
+	{
+		return ((TestTask) runnable).name;
+	}
+
+	private static class TestTask implements RetrievalQueue.Task
+	{
+		private final String name;
+		private final Object group;
+		private final double priority;
+		private boolean cancelled = false;
+		private long waitTime = -1;
+
+		public TestTask(String name, Object group, double priority)
+		{
+			this.name = name;
+			this.group = group;
+			this.priority = priority;
+		}
+
+		@Override
+		public void run()
+		{
+		}
+
+		@Override
+		public Object getGroupKey()
+		{
+			return group;
+		}
+
+		@Override
+		public double getPriority()
+		{
+			return priority;
+		}
+
+		@Override
+		public long getStaleRequestLimit()
+		{
+			return -1;
+		}
+
+		@Override
+		public void dequeued(long queueWaitTime)
+		{
+			waitTime = queueWaitTime;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning)
+		{
+			cancelled = true;
+			return true;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			return obj instanceof TestTask && ((TestTask) obj).name.equals(name);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return name.hashCode();
+		}
+	}
+}
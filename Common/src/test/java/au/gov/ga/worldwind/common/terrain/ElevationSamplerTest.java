@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.terrain;
+
+import static org.junit.Assert.*;
+import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.terrain.ZeroElevationModel;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ElevationSampler} class
+ */
+public class ElevationSamplerTest
+{
+	private static final double FINE = Math.toRadians(0.001);
+	private static final double COARSE = Math.toRadians(0.1);
+
+	private MockElevationModel model;
+
+	@Before
+	public void setup()
+	{
+		model = new MockElevationModel();
+	}
+
+	@Test
+	public void testSamplesAreGroupedIntoCells()
+	{
+		//two clusters of locations, far enough apart to be in different cells
+		ElevationSampler sampler = new ElevationSampler(new double[] { 0, 0, 0.01, 0.01, 50, 50, 0.02, 0.02 });
+		model.resolution = FINE;
+
+		assertEquals(4, sampler.update(model, FINE));
+		assertEquals(2, model.calls);
+		assertEquals(4, model.sampled);
+		assertEquals(0, sampler.getUnresolvedCount());
+
+		assertEquals(elevation(0, 0), sampler.getElevation(0), 0);
+		assertEquals(elevation(0.01, 0.01), sampler.getElevation(1), 0);
+		assertEquals(elevation(50, 50), sampler.getElevation(2), 0);
+		assertEquals(elevation(0.02, 0.02), sampler.getElevation(3), 0);
+	}
+
+	@Test
+	public void testOnlyUnresolvedCellsAreRefined()
+	{
+		ElevationSampler sampler = new ElevationSampler(new double[] { 0, 0, 0.01, 0.01, 50, 50 });
+		model.resolution = FINE;
+		model.coarseBelowLatitude = 10;
+
+		sampler.update(model, FINE);
+		assertEquals(2, sampler.getUnresolvedCount());
+		assertFalse(sampler.isComplete(model));
+
+		//second update only resamples the unresolved cell, and nothing has changed
+		model.calls = 0;
+		assertEquals(0, sampler.update(model, FINE));
+		assertEquals(1, model.calls);
+
+		//finer data arrives
+		model.coarseBelowLatitude = -90;
+		model.offset = 1;
+		assertEquals(2, sampler.update(model, FINE));
+		assertEquals(0, sampler.getUnresolvedCount());
+		assertTrue(sampler.isComplete(model));
+		assertEquals(elevation(0, 0) + 1, sampler.getElevation(0), 0);
+		assertEquals(elevation(50, 50), sampler.getElevation(2), 0);
+
+		model.calls = 0;
+		assertEquals(0, sampler.update(model, FINE));
+		assertEquals(0, model.calls);
+	}
+
+	@Test
+	public void testBetterSamplesAreKept()
+	{
+		ElevationSampler sampler = new ElevationSampler(new double[] { 0, 0 });
+		model.best = FINE / 10;
+		model.resolution = FINE;
+		sampler.update(model, FINE / 10);
+		assertEquals(FINE, sampler.getResolution(0), 0);
+		assertEquals(1, sampler.getUnresolvedCount());
+
+		//tiles evicted from memory; the coarser result shouldn't replace the finer one
+		model.resolution = COARSE;
+		model.offset = 5;
+		assertEquals(0, sampler.update(model, FINE / 10));
+		assertEquals(2, model.calls);
+		assertEquals(elevation(0, 0), sampler.getElevation(0), 0);
+		assertEquals(FINE, sampler.getResolution(0), 0);
+	}
+
+	@Test
+	public void testTargetResolutionChangeKeepsGoodEnoughSamples()
+	{
+		ElevationSampler sampler = new ElevationSampler(new double[] { 0, 0, 10, 10 });
+		model.resolution = FINE;
+		sampler.update(model, FINE);
+		assertTrue(sampler.isComplete(model, FINE));
+		assertTrue(sampler.isComplete(model, COARSE));
+		assertFalse(sampler.isComplete(model, FINE / 10));
+
+		//coarser target; the existing samples are already good enough
+		model.calls = 0;
+		assertEquals(0, sampler.update(model, COARSE));
+		assertEquals(0, model.calls);
+		assertTrue(sampler.isComplete(model, COARSE));
+		assertFalse(sampler.isComplete(model, FINE));
+	}
+
+	@Test
+	public void testModelChangeResamplesEverything()
+	{
+		ElevationSampler sampler = new ElevationSampler(new double[] { 0, 0, 10, 10 });
+		model.resolution = FINE;
+		sampler.update(model, FINE);
+		assertTrue(sampler.isComplete(model));
+
+		MockElevationModel other = new MockElevationModel();
+		other.resolution = FINE;
+		other.offset = 2;
+		assertFalse(sampler.isComplete(other));
+		assertEquals(2, sampler.update(other, FINE));
+		assertEquals(elevation(10, 10) + 2, sampler.getElevation(1), 0);
+
+		assertEquals(2, sampler.update(null, FINE));
+		assertEquals(0, sampler.getElevation(0), 0);
+		assertTrue(sampler.isComplete(null));
+	}
+
+	@Test
+	public void testSampleSpacing()
+	{
+		//line of 11 points, 1 degree apart
+		double[] line = new double[22];
+		for (int i = 0; i < 11; i++)
+		{
+			line[i * 2 + 1] = i;
+		}
+		assertEquals(Math.toRadians(1), new ElevationSampler(line).getSampleSpacing(), 1e-9);
+
+		//10x10 grid, 1 degree apart at the equator
+		double[] grid = new double[200];
+		for (int i = 0; i < 100; i++)
+		{
+			grid[i * 2] = (i / 10) - 4.5;
+			grid[i * 2 + 1] = i % 10;
+		}
+		assertEquals(Math.toRadians(1), new ElevationSampler(grid).getSampleSpacing(), Math.toRadians(0.2));
+
+		assertEquals(0, new ElevationSampler(new double[] { 1, 2 }).getSampleSpacing(), 0);
+	}
+
+	@Test
+	public void testBestResolutionTarget()
+	{
+		ElevationSampler sampler = new ElevationSampler(new double[] { -10, 20, 10, 40 });
+		assertEquals(Sector.fromDegrees(-10, 10, 20, 40), sampler.getSector());
+
+		//sparse locations are sampled at the model's best resolution, not at their spacing
+		model.best = FINE;
+		model.resolution = FINE;
+		sampler.update(model, sampler.getBestResolution(model));
+		assertTrue(sampler.isComplete(model, FINE));
+		assertEquals(FINE, sampler.getResolution(1), 0);
+
+		assertEquals(0, sampler.getBestResolution(null), 0);
+		assertNull(new ElevationSampler(new double[0]).getSector());
+	}
+
+	private static double elevation(double latitude, double longitude)
+	{
+		return latitude * 100 + longitude;
+	}
+
+	private static class MockElevationModel extends ZeroElevationModel
+	{
+		private double best = FINE;
+		private double resolution;
+		private double coarseBelowLatitude = -90;
+		private double offset;
+		private int calls;
+		private int sampled;
+
+		@Override
+		public double getBestResolution(Sector sector)
+		{
+			return best;
+		}
+
+		@Override
+		public double getElevations(Sector sector, List<? extends LatLon> latlons, double targetResolution,
+				double[] buffer)
+		{
+			calls++;
+			sampled += latlons.size();
+			for (int i = 0; i < latlons.size(); i++)
+			{
+				LatLon ll = latlons.get(i);
+				assertTrue(sector.contains(ll));
+				buffer[i] = elevation(ll.getLatitude().degrees, ll.getLongitude().degrees) + offset;
+			}
+			return sector.getMinLatitude().degrees < coarseBelowLatitude ? COARSE : resolution;
+		}
+	}
+}
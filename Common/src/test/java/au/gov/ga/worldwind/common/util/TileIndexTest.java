@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link TileIndex} class, reading indices in the format
+ * written by the Tiler's tileset scanner.
+ */
+public class TileIndexTest
+{
+	private File directory;
+
+	@Before
+	public void setup() throws IOException
+	{
+		directory = File.createTempFile("tileindex", "");
+		directory.delete();
+		directory.mkdirs();
+	}
+
+	@After
+	public void cleanup()
+	{
+		delete(directory);
+	}
+
+	@Test
+	public void testRead() throws Exception
+	{
+		TileIndex index = TileIndex.read(new ByteArrayInputStream(createIndex()));
+		assertEquals(2, index.getLevelCount());
+
+		assertTrue(index.contains(0, 0, 0));
+		assertTrue(index.contains(0, 0, 1));
+		assertTrue(index.contains(1, 3, 4));
+		assertTrue(index.contains(1, 11, 14));
+		assertFalse(index.contains(1, 3, 5));
+		assertFalse(index.contains(1, 12, 14));
+		assertFalse(index.contains(2, 0, 0));
+
+		assertTrue(index.isWithinExtents(1, 2, 4));
+		assertFalse(index.isWithinExtents(1, 1, 4));
+	}
+
+	@Test
+	public void testLevelsBeyondIndexAreNotAbsent() throws Exception
+	{
+		TileIndex index = TileIndex.read(new ByteArrayInputStream(createIndex()));
+		assertFalse(index.isAbsent(1, 3, 4));
+		assertTrue(index.isAbsent(1, 3, 5));
+		assertTrue(index.isAbsent(1, 0, 0));
+		assertFalse(index.isAbsent(2, 0, 0));
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidMagic() throws Exception
+	{
+		byte[] bytes = createIndex();
+		bytes[0] = 0;
+		TileIndex.read(new ByteArrayInputStream(bytes));
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncated() throws Exception
+	{
+		byte[] bytes = createIndex();
+		byte[] truncated = new byte[bytes.length - 4];
+		System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+		TileIndex.read(new ByteArrayInputStream(truncated));
+	}
+
+	@Test
+	public void testFindInTilesetDirectory() throws Exception
+	{
+		File tileset = new File(directory, "service/dataset");
+		tileset.mkdirs();
+		write(new File(tileset, TileIndex.FILENAME), createIndex());
+
+		TileIndex index = TileIndex.find("service", "dataset", directory.toURI().toURL());
+		assertNotNull(index);
+		assertTrue(index.contains(1, 3, 4));
+
+		assertNull(TileIndex.find("service", "other", directory.toURI().toURL()));
+	}
+
+	@Test
+	public void testFindNextToPackedTileset() throws Exception
+	{
+		write(new File(directory, "dataset.zip"), new byte[0]);
+		write(new File(directory, "dataset" + TileIndex.PACKED_SUFFIX), createIndex());
+
+		TileIndex index = TileIndex.find(null, "dataset", directory.toURI().toURL());
+		assertNotNull(index);
+		assertTrue(index.contains(0, 0, 1));
+	}
+
+	@Test
+	public void testFindInvalidIndex() throws Exception
+	{
+		File tileset = new File(directory, "dataset");
+		tileset.mkdirs();
+		write(new File(tileset, TileIndex.FILENAME), new byte[] { 1, 2, 3 });
+
+		assertNull(TileIndex.find(null, "dataset", directory.toURI().toURL()));
+	}
+
+	/**
+	 * Create an index with two levels: level 0 is 1x2 tiles, both existing;
+	 * level 1 is rows 2-11 and columns 4-14, with only the first and last
+	 * tiles of each row existing.
+	 */
+	private static byte[] createIndex() throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream(baos);
+		dos.writeInt(TileIndex.MAGIC);
+		dos.writeInt(TileIndex.VERSION);
+		dos.writeInt(2);
+
+		dos.writeInt(0);
+		dos.writeInt(0);
+		dos.writeInt(1);
+		dos.writeInt(2);
+		dos.writeLong(3L);
+
+		int firstRow = 2, firstCol = 4, rows = 10, cols = 11;
+		long[] words = new long[(rows * cols + 63) / 64];
+		for (int row = 0; row < rows; row++)
+		{
+			int first = row * cols;
+			int last = first + cols - 1;
+			words[first >>> 6] |= 1L << (first & 63);
+			words[last >>> 6] |= 1L << (last & 63);
+		}
+		dos.writeInt(firstRow);
+		dos.writeInt(firstCol);
+		dos.writeInt(rows);
+		dos.writeInt(cols);
+		for (long word : words)
+		{
+			dos.writeLong(word);
+		}
+		dos.flush();
+		return baos.toByteArray();
+	}
+
+	private static void write(File file, byte[] bytes) throws IOException
+	{
+		FileOutputStream fos = new FileOutputStream(file);
+		try
+		{
+			fos.write(bytes);
+		}
+		finally
+		{
+			fos.close();
+		}
+	}
+
+	private static void delete(File file)
+	{
+		if (file.isDirectory())
+		{
+			for (File child : file.listFiles())
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
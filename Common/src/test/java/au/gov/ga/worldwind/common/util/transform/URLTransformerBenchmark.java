@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.util.transform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares the {@link URLTransformer} against a synchronized transform chain
+ * calling {@link String#replaceAll(String, String)} for every url (as the
+ * URLTransformer used to), with many retrieval threads transforming service
+ * urls concurrently. The precompiled transforms are also timed without the
+ * URLTransformer's memo.
+ * <p/>
+ * Run as an application. 16 threads each transform 200000 urls, drawn from
+ * 40 service urls, through a chain of 3 regex transforms (only one of which
+ * matches).
+ */
+public class URLTransformerBenchmark
+{
+	private static final int THREADS = 16;
+	private static final int URLS_PER_THREAD = 200000;
+	private static final String[][] TRANSFORMS = { { "www\\.ga\\.gov\\.au", "localhost" },
+			{ "^http://dev\\.server/", "http://test.server/" }, { "/wms\\?", "/wms/proxy?" } };
+
+	private static final int LEGACY = 0;
+	private static final int PRECOMPILED = 1;
+	private static final int TRANSFORMER = 2;
+
+	private static final List<RegexURLTransform> legacy = new ArrayList<RegexURLTransform>();
+	private static int sink;
+
+	public static void main(String[] args) throws Exception
+	{
+		for (String[] transform : TRANSFORMS)
+		{
+			URLTransformer.addTransform(new RegexURLTransform(transform[0], transform[1]));
+			legacy.add(new RegexURLTransform(transform[0], transform[1]));
+		}
+		final String[] urls = new String[40];
+		for (int i = 0; i < urls.length; i++)
+		{
+			urls[i] = "http://" + (i % 2 == 0 ? "www.ga.gov.au" : "other.server") + "/tiles/dataset" + i + "/";
+		}
+
+		for (int run = 0; run < 5; run++)
+		{
+			report("Synchronized replaceAll", run(urls, LEGACY));
+			report("Precompiled, no memo   ", run(urls, PRECOMPILED));
+			report("URLTransformer         ", run(urls, TRANSFORMER));
+		}
+		System.out.println(sink);
+	}
+
+	private static void report(String name, long nanos)
+	{
+		System.out.println(name + ": " + (nanos / 1000000) + " ms, " + (nanos / ((long) THREADS * URLS_PER_THREAD))
+				+ " ns per url (wall clock)");
+	}
+
+	private static long run(final String[] urls, final int mode) throws InterruptedException
+	{
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(THREADS);
+		for (int t = 0; t < THREADS; t++)
+		{
+			final int offset = t;
+			new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						start.await();
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+					int length = 0;
+					for (int i = 0; i < URLS_PER_THREAD; i++)
+					{
+						String url = urls[(i + offset) % urls.length];
+						length += transform(url, mode).length();
+					}
+					synchronized (URLTransformerBenchmark.class)
+					{
+						sink += length;
+					}
+					done.countDown();
+				}
+			}.start();
+		}
+
+		long startTime = System.nanoTime();
+		start.countDown();
+		done.await();
+		return System.nanoTime() - startTime;
+	}
+
+	private static String transform(String url, int mode)
+	{
+		if (mode == LEGACY)
+		{
+			return legacyTransform(url);
+		}
+		if (mode == PRECOMPILED)
+		{
+			for (RegexURLTransform transform : legacy)
+			{
+				url = transform.transformURL(url);
+			}
+			return url;
+		}
+		return URLTransformer.transform(url);
+	}
+
+	private synchronized static String legacyTransform(String url)
+	{
+		for (RegexURLTransform transform : legacy)
+		{
+			url = url.replaceAll(transform.getRegex(), transform.getReplacement());
+		}
+		return url;
+	}
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.util.transform;
+
+import static org.junit.Assert.*;
+
+import java.net.URL;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link URLTransformer} and {@link RegexURLTransform}
+ * classes
+ */
+public class URLTransformerTest
+{
+	@After
+	public void tearDown()
+	{
+		URLTransformer.clearTransforms();
+	}
+
+	@Test
+	public void testNoTransforms() throws Exception
+	{
+		URL url = new URL("http://www.ga.gov.au/tiles?T=1");
+		assertSame(url, URLTransformer.transform(url));
+		assertEquals("http://www.ga.gov.au/tiles", URLTransformer.transform("http://www.ga.gov.au/tiles"));
+		assertNull(URLTransformer.transform((String) null));
+	}
+
+	@Test
+	public void testTransformsAppliedInOrder() throws Exception
+	{
+		URLTransformer.addTransform(new RegexURLTransform("www\\.ga\\.gov\\.au", "localhost"));
+		URLTransformer.addTransform(new RegexURLTransform("localhost/", "localhost:8080/"));
+
+		assertEquals("http://localhost:8080/tiles?T=1",
+				URLTransformer.transform(new URL("http://www.ga.gov.au/tiles?T=1")).toExternalForm());
+		assertEquals("http://other.com/tiles", URLTransformer.transform("http://other.com/tiles"));
+	}
+
+	@Test
+	public void testRememberedResultsAreForgottenWhenTransformsChange()
+	{
+		RegexURLTransform transform = new RegexURLTransform("old", "new");
+		URLTransformer.addTransform(transform);
+		assertEquals("http://new/", URLTransformer.transform("http://old/"));
+		assertEquals("http://new/", URLTransformer.transform("http://old/"));
+
+		URLTransformer.removeTransform(transform);
+		assertEquals("http://old/", URLTransformer.transform("http://old/"));
+	}
+
+	@Test
+	public void testNonRegexTransformsAreNotRemembered()
+	{
+		final int[] count = new int[1];
+		URLTransformer.addTransform(new URLTransform()
+		{
+			@Override
+			public String transformURL(String url)
+			{
+				return url + "?" + (count[0]++);
+			}
+		});
+		assertEquals("http://a?0", URLTransformer.transform("http://a"));
+		assertEquals("http://a?1", URLTransformer.transform("http://a"));
+	}
+
+	@Test
+	public void testRegexTransformMatchesReplaceAll()
+	{
+		String[] regexes =
+				{ "www\\.ga\\.gov\\.au", "^http://", "^https?://", "ga(\\.gov)", "(?i)GA\\.GOV", "a|tiles",
+						"ab*c", "x{2}", "tiles/(\\d+)", "\\d+", "[a-z]+\\.au", "/$" };
+		String[] urls =
+				{ "http://www.ga.gov.au/tiles/12", "https://ga.gov.au/", "http://abc.com/xx/", "http://ac.com/",
+						"ftp://www.ga.gov.au" };
+		for (String regex : regexes)
+		{
+			RegexURLTransform transform = new RegexURLTransform(regex, "[$0]");
+			for (String url : urls)
+			{
+				assertEquals(regex + " on " + url, url.replaceAll(regex, "[$0]"), transform.transformURL(url));
+			}
+		}
+	}
+
+	@Test
+	public void testLiteralPrefix()
+	{
+		assertEquals("www.ga.gov.au", RegexURLTransform.getLiteralPrefix("www\\.ga\\.gov\\.au"));
+		assertEquals("http://", RegexURLTransform.getLiteralPrefix("http://"));
+		assertEquals("http", RegexURLTransform.getLiteralPrefix("https?://"));
+		assertEquals("ga", RegexURLTransform.getLiteralPrefix("ga(\\.gov)"));
+		assertEquals("tiles/", RegexURLTransform.getLiteralPrefix("tiles/\\d+"));
+		assertEquals("", RegexURLTransform.getLiteralPrefix("(?i)ga"));
+		assertEquals("", RegexURLTransform.getLiteralPrefix("a|tiles"));
+		assertEquals("", RegexURLTransform.getLiteralPrefix(".*"));
+	}
+}
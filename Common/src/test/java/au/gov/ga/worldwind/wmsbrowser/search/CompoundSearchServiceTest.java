@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.wmsbrowser.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.wmsbrowser.wmsserver.WmsServerImpl;
+
+/**
+ * Unit tests for the {@link CompoundSearchService} class
+ * 
+ * @author James Navin (james.navin@ga.gov.au)
+ */
+public class CompoundSearchServiceTest
+{
+	private CompoundSearchService classUnderTest;
+
+	@Before
+	public void setup()
+	{
+		classUnderTest = new CompoundSearchService();
+		classUnderTest.setTimeout(5000);
+	}
+
+	@Test
+	public void testResultsAreInServiceOrder() throws Exception
+	{
+		final CountDownLatch firstCanFinish = new CountDownLatch(1);
+		classUnderTest.addService(new StubSearchService("first")
+		{
+			@Override
+			protected void beforeReturn() throws InterruptedException
+			{
+				firstCanFinish.await();
+			}
+		});
+		classUnderTest.addService(new StubSearchService("second")
+		{
+			@Override
+			protected void beforeReturn()
+			{
+				firstCanFinish.countDown();
+			}
+		});
+
+		List<WmsServerSearchResult> results = classUnderTest.searchForServers("search");
+
+		assertEquals(2, results.size());
+		assertEquals("first", results.get(0).getTitle());
+		assertEquals("second", results.get(1).getTitle());
+	}
+
+	@Test
+	public void testServicesAreSearchedConcurrently() throws Exception
+	{
+		// Each service waits for all of the others to start, so would time out if searched in turn
+		final int serviceCount = 4;
+		final CountDownLatch allStarted = new CountDownLatch(serviceCount);
+		for (int i = 0; i < serviceCount; i++)
+		{
+			classUnderTest.addService(new StubSearchService("service" + i)
+			{
+				@Override
+				protected void beforeReturn() throws InterruptedException
+				{
+					allStarted.countDown();
+					allStarted.await();
+				}
+			});
+		}
+
+		List<WmsServerSearchResult> results = classUnderTest.searchForServers("search");
+
+		assertEquals(serviceCount, results.size());
+	}
+
+	@Test
+	public void testSlowServiceIsOmittedAfterTimeout() throws Exception
+	{
+		classUnderTest.setTimeout(200);
+		classUnderTest.addService(new StubSearchService("slow")
+		{
+			@Override
+			protected void beforeReturn() throws InterruptedException
+			{
+				new CountDownLatch(1).await();
+			}
+		});
+		classUnderTest.addService(new StubSearchService("fast"));
+
+		List<WmsServerSearchResult> results = classUnderTest.searchForServers("search");
+
+		assertEquals(1, results.size());
+		assertEquals("fast", results.get(0).getTitle());
+	}
+
+	@Test
+	public void testFailingServiceIsOmitted() throws Exception
+	{
+		classUnderTest.addService(new StubSearchService("failing")
+		{
+			@Override
+			protected void beforeReturn()
+			{
+				throw new IllegalStateException("Expected failure");
+			}
+		});
+		classUnderTest.addService(new StubSearchService("working"));
+
+		List<WmsServerSearchResult> results = classUnderTest.searchForServers("search");
+
+		assertEquals(1, results.size());
+		assertEquals("working", results.get(0).getTitle());
+	}
+
+	@Test
+	public void testListenerIsNotifiedBeforeSearchCompletes() throws Exception
+	{
+		final CountDownLatch fastReported = new CountDownLatch(1);
+		classUnderTest.addService(new StubSearchService("slow")
+		{
+			@Override
+			protected void beforeReturn() throws InterruptedException
+			{
+				// Only completes once the listener has seen the fast service's results
+				assertTrue(fastReported.await(5, TimeUnit.SECONDS));
+			}
+		});
+		classUnderTest.addService(new StubSearchService("fast"));
+
+		final List<String> reported = Collections.synchronizedList(new ArrayList<String>());
+		List<WmsServerSearchResult> results = classUnderTest.searchForServers("search", new WmsServerSearchListener()
+		{
+			@Override
+			public void resultsFound(List<WmsServerSearchResult> found)
+			{
+				for (WmsServerSearchResult result : found)
+				{
+					reported.add(result.getTitle());
+				}
+				fastReported.countDown();
+			}
+		});
+
+		assertEquals(2, results.size());
+		assertEquals("fast", reported.get(0));
+		assertEquals("slow", reported.get(1));
+	}
+
+	/**
+	 * A search service that returns a single result with the given name
+	 */
+	private static class StubSearchService implements WmsServerSearchService
+	{
+		private final String name;
+
+		public StubSearchService(String name)
+		{
+			this.name = name;
+		}
+
+		@Override
+		public List<WmsServerSearchResult> searchForServers(String searchString)
+		{
+			try
+			{
+				beforeReturn();
+				URL url = new URL("http://localhost/" + name + "/wms");
+				List<WmsServerSearchResult> results = new ArrayList<WmsServerSearchResult>();
+				results.add(new WmsServerSearchResultImpl(new WmsServerImpl(name, url)));
+				return results;
+			}
+			catch (RuntimeException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				return Collections.emptyList();
+			}
+		}
+
+		protected void beforeReturn() throws InterruptedException
+		{
+		}
+
+		@Override
+		public String toString()
+		{
+			return name;
+		}
+	}
+}
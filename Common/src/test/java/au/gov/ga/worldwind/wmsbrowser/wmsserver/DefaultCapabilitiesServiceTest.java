@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.wmsbrowser.wmsserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.ogc.wms.WMSCapabilities;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.common.downloader.DownloadCache;
+import au.gov.ga.worldwind.common.downloader.Downloader;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for the {@link DefaultCapabilitiesService} class, run against a
+ * local WMS stub server.
+ */
+public class DefaultCapabilitiesServiceTest
+{
+	private static final String ETAG = "\"caps\"";
+
+	private HttpServer server;
+	private File directory;
+	private byte[] capabilities;
+	private final AtomicInteger requests = new AtomicInteger();
+	private final AtomicInteger notModified = new AtomicInteger();
+	private volatile String lastQuery;
+
+	@Before
+	public void setup() throws IOException
+	{
+		capabilities = readResource("wmsbrowser/nasaNeoWmsCapabilities.xml");
+
+		directory = File.createTempFile("capabilities", "");
+		directory.delete();
+		directory.mkdirs();
+		Downloader.setCache(new DownloadCache(directory));
+
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", new HttpHandler()
+		{
+			@Override
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				requests.incrementAndGet();
+				lastQuery = exchange.getRequestURI().getQuery();
+				if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match")))
+				{
+					notModified.incrementAndGet();
+					exchange.sendResponseHeaders(304, -1);
+					exchange.close();
+					return;
+				}
+				exchange.getResponseHeaders().set("ETag", ETAG);
+				exchange.getResponseHeaders().set("Content-Type", "text/xml");
+				exchange.sendResponseHeaders(200, capabilities.length);
+				OutputStream os = exchange.getResponseBody();
+				os.write(capabilities);
+				os.close();
+			}
+		});
+		server.start();
+	}
+
+	@After
+	public void cleanup()
+	{
+		server.stop(0);
+		Downloader.setCache(null);
+		delete(directory);
+	}
+
+	@Test
+	public void testRetrieveFromServer() throws Exception
+	{
+		WMSCapabilities result = new DefaultCapabilitiesService().retrieveCapabilities(url("/retrieve/wms"));
+
+		assertNotNull(result);
+		assertEquals("1.3.0", result.getVersion());
+		assertEquals(1, requests.get());
+		assertTrue(lastQuery.toUpperCase().contains("VERSION=1.3.0"));
+	}
+
+	@Test
+	public void testUnmodifiedCapabilitiesAreRevalidatedAndNotReparsed() throws Exception
+	{
+		DefaultCapabilitiesService classUnderTest = new DefaultCapabilitiesService();
+		URL url = url("/revalidate/wms");
+
+		WMSCapabilities first = classUnderTest.retrieveCapabilities(url);
+		WMSCapabilities second = classUnderTest.retrieveCapabilities(url);
+
+		assertEquals(2, requests.get());
+		assertEquals(1, notModified.get());
+		assertSame(first, second);
+	}
+
+	private URL url(String path) throws IOException
+	{
+		return new URL("http://localhost:" + server.getAddress().getPort() + path);
+	}
+
+	private byte[] readResource(String name) throws IOException
+	{
+		InputStream is = getClass().getClassLoader().getResourceAsStream(name);
+		try
+		{
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = is.read(buffer)) >= 0)
+			{
+				baos.write(buffer, 0, read);
+			}
+			return baos.toByteArray();
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+
+	private static void delete(File file)
+	{
+		if (file.isDirectory())
+		{
+			for (File child : file.listFiles())
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -17,12 +17,28 @@ package au.gov.ga.worldwind.tiler.ribbon;
 
 import java.awt.Dimension;
 import java.awt.Graphics2D;
+import java.awt.Insets;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.imageio.ImageIO;
 
@@ -74,14 +90,52 @@ public class RibbonTiler
 			throw new IllegalArgumentException("A contex is required");
 		}
 
-		log(context, "Tiled on: " + new Date(), true);
-		log(context, "Source: " + context.getSourceFile().getAbsolutePath(), true);
-		log(context, "", true);
-
-		Dataset dataset = GDALUtil.open(context.getSourceFile());
+		final Dataset dataset = GDALUtil.open(context.getSourceFile());
 
 		int width = dataset.GetRasterXSize() - context.getInsets().left - context.getInsets().right;
 		int height = dataset.GetRasterYSize() - context.getInsets().top - context.getInsets().bottom;
+
+		ImageSource source = new ImageSource()
+		{
+			@Override
+			public BufferedImage read(Rectangle rectangle) throws Exception
+			{
+				GDALTileParameters parameters = new GDALTileParameters(dataset, rectangle.getSize(), rectangle);
+				GDALTile tile = new GDALTile(parameters);
+				return tile.getAsImage();
+			}
+		};
+
+		tileRibbon(context, source, width, height);
+	}
+
+	/**
+	 * Tile the ribbon image provided by the given source.
+	 * <p/>
+	 * The source is only read from the calling thread. Top level tiles are
+	 * encoded, and overview tiles are built and encoded, on a pool of
+	 * {@link RibbonTilingContext#getThreadCount()} threads. Each overview tile
+	 * is built as soon as all of its child tiles are complete, using the child
+	 * images kept in memory if they are still in the raster cache, otherwise
+	 * reading them back from disk.
+	 * 
+	 * @param context
+	 *            Tiling context
+	 * @param source
+	 *            Source of the ribbon image pixels (the context's insets are
+	 *            added to the rectangles requested from the source)
+	 * @param width
+	 *            Width of the ribbon image (excluding insets)
+	 * @param height
+	 *            Height of the ribbon image (excluding insets)
+	 */
+	public void tileRibbon(RibbonTilingContext context, ImageSource source, int width, int height) throws Exception
+	{
+		log(context, "Tiled on: " + new Date(), true);
+		log(context, "Source: " + (context.getSourceFile() == null ? null : context.getSourceFile().getAbsolutePath()),
+				true);
+		log(context, "", true);
+
 		context.setSourceImageSize(new Dimension(width, height));
 
 		int levels = levelCount(width, height, context.getTilesize());
@@ -118,9 +172,7 @@ public class RibbonTiler
 					//get an image of the full height, 1 pixel wide at column x
 					Rectangle src =
 							new Rectangle(context.getInsets().left + startX, context.getInsets().top, w, height);
-					GDALTileParameters parameters = new GDALTileParameters(dataset, src.getSize(), src);
-					GDALTile tile = new GDALTile(parameters);
-					BufferedImage image = tile.getAsImage();
+					BufferedImage image = source.read(src);
 
 					log(context, (100 * (startX + 1) / width) + "% done", false);
 
@@ -164,177 +216,9 @@ public class RibbonTiler
 			}
 		}
 
-		//calculate tiling parameters
-		int xStrips = Math.max(1, context.getTilesize() / width);
-		int yStrips = Math.max(1, context.getTilesize() / height);
-		int rows = (height - 1) / (context.getTilesize() * xStrips) + 1;
-		int cols = (width - 1) / (context.getTilesize() * yStrips) + 1;
-		File levelDir = new File(context.getTilesetRoot(), String.valueOf(levels - 1));
-
-		//create top level tiles
-		log(context, "Creating top level tiles...", false);
-		for (int y = 0, row = 0; y < height; y += context.getTilesize() * xStrips, row++)
-		{
-			//create row directory
-			String rowPadded = Util.paddedInt(row, 4);
-			File rowDir = new File(levelDir, rowPadded);
-			rowDir.mkdirs();
-
-			int h = Math.min(context.getTilesize() * xStrips / yStrips, height - y);
-
-			for (int x = 0, col = 0; x < width; x += context.getTilesize() * yStrips, col++)
-			{
-				File imageFile = tileFile(levelDir, row, col, context.getFormat());
-				if (imageFile.exists())
-				{
-					continue;
-				}
-
-				int w = Math.min(context.getTilesize() * yStrips / xStrips, width - x);
-
-				Rectangle src = new Rectangle(x + context.getInsets().left, y + context.getInsets().top, w, h);
-				GDALTileParameters parameters = new GDALTileParameters(dataset, src.getSize(), src);
-				GDALTile tile = new GDALTile(parameters);
-				BufferedImage image = tile.getAsImage();
-
-				if (context.isRemoveConstantColumns())
-				{
-					image =
-							removeConstantColumns(image, constantPixelsFromTop, constantPixelsFromBottom, x, y, width,
-									height, context.isMask());
-				}
-
-				ImageIO.write(image, context.getFormat(), imageFile);
-			}
-		}
-
-		//create overviews
-		for (int level = levels - 2; level >= 0; level--)
-		{
-			int lastRows = rows;
-			int lastCols = cols;
-
-			if (cols == 1)
-			{
-				xStrips <<= 1;
-				rows = (rows + 1) / 2;
-			}
-			if (rows == 1)
-			{
-				yStrips <<= 1;
-				cols = (cols + 1) / 2;
-			}
-
-			rows = (rows + 1) / 2;
-			cols = (cols + 1) / 2;
-
-			log(context, "", true);
-			log(context, "Level " + level, true);
-			log(context, "lastRows x lastCols = " + lastRows + " x " + lastCols, true);
-			log(context, "Rows x Cols = " + rows + " x " + cols, true);
-			log(context, "xStrips,yStrips = " + xStrips + "," + yStrips, true);
-			log(context, "", true);
-
-			File lastLevelDir = levelDir;
-			levelDir = new File(context.getTilesetRoot(), String.valueOf(level));
-			levelDir.mkdirs();
-
-			int rowMultiplier = lastRows == 1 ? 0 : 1;
-			int rowDivisor = lastCols == 1 ? 1 : 2;
-			int colMultiplier = lastCols == 1 ? 0 : 1;
-			int colDelta = lastRows == 1 ? 2 : 0;
-
-			for (int row = 0; row < rows; row++)
-			{
-				//if lastRows == 1: 0,0,0,0 / 0,0,0,0
-				//if lastCols == 1: 0,1,2,3 / 4,5,6,7
-				//            else: 0,0,1,1 / 2,2,3,3
-
-				String rowPadded = Util.paddedInt(row, 4);
-				File rowDir = new File(levelDir, rowPadded);
-				rowDir.mkdirs();
-
-				int firstRow = row * 4;
-				int r0 = rowMultiplier * (firstRow + 0) / rowDivisor;
-				int r1 = rowMultiplier * (firstRow + 1) / rowDivisor;
-				int r2 = rowMultiplier * (firstRow + 2) / rowDivisor;
-				int r3 = rowMultiplier * (firstRow + 3) / rowDivisor;
-
-				for (int col = 0; col < cols; col++)
-				{
-					//if lastCols == 1: 0,0,0,0 / 0,0,0,0
-					//if lastRows == 1: 0,1,2,3 / 4,5,6,7
-					//            else: 0,1,0,1 / 2,3,2,3
-
-					File imageFile = tileFile(levelDir, row, col, context.getFormat());
-					if (imageFile.exists())
-					{
-						continue;
-					}
-
-					int firstCol = col * (lastRows == 1 ? 4 : 2);
-					int c0 = colMultiplier * (firstCol);
-					int c1 = colMultiplier * (firstCol + 1);
-					int c2 = colMultiplier * (firstCol + colDelta);
-					int c3 = colMultiplier * (firstCol + colDelta + 1);
-
-					File src0 = tileFile(lastLevelDir, r0, c0, context.getFormat());
-					File src1 = tileFile(lastLevelDir, r1, c1, context.getFormat());
-					File src2 = tileFile(lastLevelDir, r2, c2, context.getFormat());
-					File src3 = tileFile(lastLevelDir, r3, c3, context.getFormat());
-
-					BufferedImage img0 = src0.exists() ? ImageIO.read(src0) : null;
-					BufferedImage img1 = src1.exists() ? ImageIO.read(src1) : null;
-					BufferedImage img2 = src2.exists() ? ImageIO.read(src2) : null;
-					BufferedImage img3 = src3.exists() ? ImageIO.read(src3) : null;
-
-					int w0 = img0 == null ? 0 : (img0.getWidth() + 1) / 2;
-					int w1 = img1 == null ? 0 : (img1.getWidth() + 1) / 2;
-					int w2 = img2 == null ? 0 : (img2.getWidth() + 1) / 2;
-					int w3 = img3 == null ? 0 : (img3.getWidth() + 1) / 2;
-					int h0 = img0 == null ? 0 : (img0.getHeight() + 1) / 2;
-					int h1 = img1 == null ? 0 : (img1.getHeight() + 1) / 2;
-					int h2 = img2 == null ? 0 : (img2.getHeight() + 1) / 2;
-					int h3 = img3 == null ? 0 : (img3.getHeight() + 1) / 2;
-
-					int w = w0 + (lastCols == 1 ? 0 : w1) + (lastRows == 1 ? w2 + w3 : 0);
-					int h = h0 + (lastRows == 1 ? 0 : h2) + (lastCols == 1 ? h1 + h3 : 0);
-
-					int type = context.isMask() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
-					BufferedImage image = new BufferedImage(w, h, type);
-					Graphics2D g = image.createGraphics();
-					g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-
-					int x = 0;
-					int y = 0;
-					if (img0 != null)
-					{
-						g.drawImage(img0, x, y, w0, h0, null);
-					}
-					x += lastCols == 1 ? 0 : w0;
-					y += lastCols == 1 ? h0 : 0;
-					if (img1 != null)
-					{
-						g.drawImage(img1, x, y, w1, h1, null);
-					}
-					x += lastCols == 1 ? 0 : lastRows == 1 ? w1 : -w0;
-					y += lastCols == 1 ? h1 : lastRows == 1 ? 0 : h0;
-					if (img2 != null)
-					{
-						g.drawImage(img2, x, y, w2, h2, null);
-					}
-					x += lastCols == 1 ? 0 : w2;
-					y += lastCols == 1 ? h2 : 0;
-					if (img3 != null)
-					{
-						g.drawImage(img3, x, y, w3, h3, null);
-					}
-
-					g.dispose();
-					ImageIO.write(image, context.getFormat(), imageFile);
-				}
-			}
-		}
+		TilingPipeline pipeline =
+				new TilingPipeline(context, width, height, levels, constantPixelsFromTop, constantPixelsFromBottom);
+		pipeline.run(source);
 
 		if (context.isCopySource())
 		{
@@ -400,6 +284,7 @@ public class RibbonTiler
 		int type = mask ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
 		BufferedImage newImage = new BufferedImage(width, height, type);
 
+		int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
 		for (int x = 0; x < width; x++)
 		{
 			int fromTop = constantPixelsFromTop[startX + x];
@@ -407,23 +292,108 @@ public class RibbonTiler
 
 			for (int y = 0; y < height; y++)
 			{
+				int index = y * width + x;
 				boolean withinTop = y + startY < fromTop;
 				boolean withinBottom = y + startY > totalHeight - 1 - fromBottom;
 				if (withinTop || withinBottom)
 				{
-					newImage.setRGB(x, y, mask ? 0 : 0xffffffff);
+					pixels[index] = mask ? 0 : 0xffffffff;
 				}
-				else
+				else if (mask)
 				{
-					newImage.setRGB(x, y, mask ? 0xffffffff : image.getRGB(x, y));
+					pixels[index] = 0xffffffff;
 				}
 			}
 		}
 
+		newImage.setRGB(0, 0, width, height, pixels, 0, width);
 		return newImage;
 	}
 
-	private static void log(RibbonTilingContext context, String msg, boolean addToTilingLog)
+	/**
+	 * Create an overview tile by drawing the (up to) 4 child images at half
+	 * size.
+	 * 
+	 * @param images
+	 *            Child images (null if the child doesn't exist)
+	 * @param lastRowsOne
+	 *            Did the child level only have a single row?
+	 * @param lastColsOne
+	 *            Did the child level only have a single column?
+	 * @param mask
+	 *            Create an image with an alpha channel?
+	 * @return Overview image
+	 */
+	private static BufferedImage createOverview(BufferedImage[] images, boolean lastRowsOne, boolean lastColsOne,
+			boolean mask)
+	{
+		BufferedImage img0 = images[0];
+		BufferedImage img1 = images[1];
+		BufferedImage img2 = images[2];
+		BufferedImage img3 = images[3];
+
+		int w0 = img0 == null ? 0 : (img0.getWidth() + 1) / 2;
+		int w1 = img1 == null ? 0 : (img1.getWidth() + 1) / 2;
+		int w2 = img2 == null ? 0 : (img2.getWidth() + 1) / 2;
+		int w3 = img3 == null ? 0 : (img3.getWidth() + 1) / 2;
+		int h0 = img0 == null ? 0 : (img0.getHeight() + 1) / 2;
+		int h1 = img1 == null ? 0 : (img1.getHeight() + 1) / 2;
+		int h2 = img2 == null ? 0 : (img2.getHeight() + 1) / 2;
+		int h3 = img3 == null ? 0 : (img3.getHeight() + 1) / 2;
+
+		int w = w0 + (lastColsOne ? 0 : w1) + (lastRowsOne ? w2 + w3 : 0);
+		int h = h0 + (lastRowsOne ? 0 : h2) + (lastColsOne ? h1 + h3 : 0);
+
+		int type = mask ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+		BufferedImage image = new BufferedImage(w, h, type);
+		Graphics2D g = image.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+
+		int x = 0;
+		int y = 0;
+		if (img0 != null)
+		{
+			g.drawImage(img0, x, y, w0, h0, null);
+		}
+		x += lastColsOne ? 0 : w0;
+		y += lastColsOne ? h0 : 0;
+		if (img1 != null)
+		{
+			g.drawImage(img1, x, y, w1, h1, null);
+		}
+		x += lastColsOne ? 0 : lastRowsOne ? w1 : -w0;
+		y += lastColsOne ? h1 : lastRowsOne ? 0 : h0;
+		if (img2 != null)
+		{
+			g.drawImage(img2, x, y, w2, h2, null);
+		}
+		x += lastColsOne ? 0 : w2;
+		y += lastColsOne ? h2 : 0;
+		if (img3 != null)
+		{
+			g.drawImage(img3, x, y, w3, h3, null);
+		}
+
+		g.dispose();
+		return image;
+	}
+
+	/**
+	 * Interleave the bits of the row and column (Morton/Z-order), so that
+	 * tiles that share an overview tile are generated close together.
+	 */
+	private static long interleave(int row, int col)
+	{
+		long result = 0;
+		for (int i = 0; i < 31; i++)
+		{
+			result |= ((long) (col >> i) & 1) << (2 * i);
+			result |= ((long) (row >> i) & 1) << (2 * i + 1);
+		}
+		return result;
+	}
+
+	private static synchronized void log(RibbonTilingContext context, String msg, boolean addToTilingLog)
 	{
 		try
 		{
@@ -440,4 +410,490 @@ public class RibbonTiler
 			e.printStackTrace();
 		}
 	}
+
+	/**
+	 * Source of the pixels of the ribbon image being tiled.
+	 */
+	public static interface ImageSource
+	{
+		/**
+		 * Read the given rectangle of the source image. Only called from a
+		 * single thread.
+		 * 
+		 * @param rectangle
+		 *            Rectangle to read
+		 * @return Image containing the pixels within the rectangle
+		 */
+		BufferedImage read(Rectangle rectangle) throws Exception;
+	}
+
+	/**
+	 * A single tile in the tile pyramid, along with the tiles it depends on.
+	 */
+	private static class TileNode
+	{
+		private final File file;
+		private final Rectangle sourceRectangle;
+		private final TileNode[] children = new TileNode[4];
+		private final List<TileNode> parents = new ArrayList<TileNode>(1);
+		private final AtomicInteger remaining = new AtomicInteger();
+		private boolean lastRowsOne;
+		private boolean lastColsOne;
+
+		public TileNode(File file, Rectangle sourceRectangle)
+		{
+			this.file = file;
+			this.sourceRectangle = sourceRectangle;
+		}
+	}
+
+	/**
+	 * Simple LRU cache of tile images, limited to a maximum number of pixels.
+	 */
+	private static class RasterCache
+	{
+		private final long capacity;
+		private long size = 0;
+		private final LinkedHashMap<File, BufferedImage> images = new LinkedHashMap<File, BufferedImage>(16, 0.75f,
+				true);
+
+		public RasterCache(long capacity)
+		{
+			this.capacity = capacity;
+		}
+
+		public synchronized void put(File file, BufferedImage image)
+		{
+			remove(file);
+			images.put(file, image);
+			size += pixels(image);
+			Iterator<BufferedImage> iterator = images.values().iterator();
+			while (size > capacity && iterator.hasNext())
+			{
+				size -= pixels(iterator.next());
+				iterator.remove();
+			}
+		}
+
+		public synchronized BufferedImage get(File file)
+		{
+			return images.get(file);
+		}
+
+		public synchronized void remove(File file)
+		{
+			BufferedImage image = images.remove(file);
+			if (image != null)
+			{
+				size -= pixels(image);
+			}
+		}
+
+		private static long pixels(BufferedImage image)
+		{
+			return (long) image.getWidth() * (long) image.getHeight();
+		}
+	}
+
+	/**
+	 * Generates all the tiles of a ribbon tileset. The top level tiles are read
+	 * from the source on the calling thread (in Z-order) and encoded on a
+	 * thread pool. Overview tiles are built on the same pool as soon as all of
+	 * their children are complete.
+	 */
+	private static class TilingPipeline
+	{
+		private final RibbonTilingContext context;
+		private final int width;
+		private final int height;
+		private final int[] constantPixelsFromTop;
+		private final int[] constantPixelsFromBottom;
+		private final String format;
+		private final boolean lossy;
+		private final boolean mask;
+		private final RasterCache cache;
+
+		private final List<TileNode> topLevel = new ArrayList<TileNode>();
+		private final List<TileNode> childless = new ArrayList<TileNode>();
+		private int nodeCount = 0;
+
+		private ExecutorService executor;
+		private final AtomicInteger pending = new AtomicInteger();
+		private final AtomicInteger completed = new AtomicInteger();
+		private final CountDownLatch finished = new CountDownLatch(1);
+		private volatile Exception failure;
+
+		public TilingPipeline(RibbonTilingContext context, int width, int height, int levels,
+				int[] constantPixelsFromTop, int[] constantPixelsFromBottom)
+		{
+			this.context = context;
+			this.width = width;
+			this.height = height;
+			this.constantPixelsFromTop = constantPixelsFromTop;
+			this.constantPixelsFromBottom = constantPixelsFromBottom;
+			this.format = context.getFormat();
+			this.lossy = "jpg".equalsIgnoreCase(format) || "jpeg".equalsIgnoreCase(format);
+			this.mask = context.isMask();
+			this.cache = new RasterCache(Math.max(0, context.getRasterCacheSize()) * 1024L * 1024L / 4L);
+
+			createNodes(levels);
+		}
+
+		private void createNodes(int levels)
+		{
+			int tilesize = context.getTilesize();
+
+			//calculate tiling parameters
+			int xStrips = Math.max(1, tilesize / width);
+			int yStrips = Math.max(1, tilesize / height);
+			int rows = (height - 1) / (tilesize * xStrips) + 1;
+			int cols = (width - 1) / (tilesize * yStrips) + 1;
+			File levelDir = new File(context.getTilesetRoot(), String.valueOf(levels - 1));
+
+			TileNode[] nodes = new TileNode[rows * cols];
+			final long[] zOrder = new long[rows * cols];
+			for (int y = 0, row = 0; y < height; y += tilesize * xStrips, row++)
+			{
+				int h = Math.min(tilesize * xStrips / yStrips, height - y);
+				for (int x = 0, col = 0; x < width; x += tilesize * yStrips, col++)
+				{
+					int w = Math.min(tilesize * yStrips / xStrips, width - x);
+					Rectangle src = new Rectangle(x, y, w, h);
+					nodes[row * cols + col] = new TileNode(tileFile(levelDir, row, col, format), src);
+					zOrder[row * cols + col] = interleave(row, col);
+				}
+			}
+			nodeCount += nodes.length;
+
+			//sort the top level in Z-order so that the overviews can be built from cached children
+			List<Integer> indices = new ArrayList<Integer>(nodes.length);
+			for (int i = 0; i < nodes.length; i++)
+			{
+				indices.add(i);
+			}
+			Collections.sort(indices, new Comparator<Integer>()
+			{
+				@Override
+				public int compare(Integer o1, Integer o2)
+				{
+					long z1 = zOrder[o1];
+					long z2 = zOrder[o2];
+					return z1 < z2 ? -1 : z1 == z2 ? 0 : 1;
+				}
+			});
+			for (Integer index : indices)
+			{
+				topLevel.add(nodes[index]);
+			}
+
+			//create overviews
+			for (int level = levels - 2; level >= 0; level--)
+			{
+				int lastRows = rows;
+				int lastCols = cols;
+				TileNode[] lastNodes = nodes;
+
+				if (cols == 1)
+				{
+					xStrips <<= 1;
+					rows = (rows + 1) / 2;
+				}
+				if (rows == 1)
+				{
+					yStrips <<= 1;
+					cols = (cols + 1) / 2;
+				}
+
+				rows = (rows + 1) / 2;
+				cols = (cols + 1) / 2;
+
+				log(context, "", true);
+				log(context, "Level " + level, true);
+				log(context, "lastRows x lastCols = " + lastRows + " x " + lastCols, true);
+				log(context, "Rows x Cols = " + rows + " x " + cols, true);
+				log(context, "xStrips,yStrips = " + xStrips + "," + yStrips, true);
+				log(context, "", true);
+
+				levelDir = new File(context.getTilesetRoot(), String.valueOf(level));
+
+				int rowMultiplier = lastRows == 1 ? 0 : 1;
+				int rowDivisor = lastCols == 1 ? 1 : 2;
+				int colMultiplier = lastCols == 1 ? 0 : 1;
+				int colDelta = lastRows == 1 ? 2 : 0;
+
+				nodes = new TileNode[rows * cols];
+				for (int row = 0; row < rows; row++)
+				{
+					//if lastRows == 1: 0,0,0,0 / 0,0,0,0
+					//if lastCols == 1: 0,1,2,3 / 4,5,6,7
+					//            else: 0,0,1,1 / 2,2,3,3
+
+					int firstRow = row * 4;
+					int[] r = new int[4];
+					for (int i = 0; i < 4; i++)
+					{
+						r[i] = rowMultiplier * (firstRow + i) / rowDivisor;
+					}
+
+					for (int col = 0; col < cols; col++)
+					{
+						//if lastCols == 1: 0,0,0,0 / 0,0,0,0
+						//if lastRows == 1: 0,1,2,3 / 4,5,6,7
+						//            else: 0,1,0,1 / 2,3,2,3
+
+						int firstCol = col * (lastRows == 1 ? 4 : 2);
+						int[] c = new int[4];
+						c[0] = colMultiplier * (firstCol);
+						c[1] = colMultiplier * (firstCol + 1);
+						c[2] = colMultiplier * (firstCol + colDelta);
+						c[3] = colMultiplier * (firstCol + colDelta + 1);
+
+						TileNode node = new TileNode(tileFile(levelDir, row, col, format), null);
+						node.lastRowsOne = lastRows == 1;
+						node.lastColsOne = lastCols == 1;
+						for (int i = 0; i < 4; i++)
+						{
+							if (r[i] < lastRows && c[i] < lastCols)
+							{
+								TileNode child = lastNodes[r[i] * lastCols + c[i]];
+								node.children[i] = child;
+								if (!child.parents.contains(node))
+								{
+									child.parents.add(node);
+									node.remaining.incrementAndGet();
+								}
+							}
+						}
+						if (node.remaining.get() == 0)
+						{
+							childless.add(node);
+						}
+						nodes[row * cols + col] = node;
+					}
+				}
+				nodeCount += nodes.length;
+			}
+		}
+
+		public void run(ImageSource source) throws Exception
+		{
+			log(context, "Creating tiles...", false);
+
+			int threadCount = Math.max(1, context.getThreadCount());
+			executor = Executors.newFixedThreadPool(threadCount);
+			//limit the number of source images waiting to be encoded
+			final Semaphore inFlight = new Semaphore(threadCount * 2);
+
+			//count the producer as a pending task, so that completion isn't signalled early
+			pending.incrementAndGet();
+			try
+			{
+				for (TileNode node : childless)
+				{
+					complete(node);
+				}
+
+				Insets insets = context.getInsets();
+				for (final TileNode node : topLevel)
+				{
+					if (failure != null)
+					{
+						break;
+					}
+					if (node.file.exists())
+					{
+						complete(node);
+						continue;
+					}
+
+					final Rectangle src = node.sourceRectangle;
+					inFlight.acquire();
+					final BufferedImage image;
+					try
+					{
+						image =
+								source.read(new Rectangle(src.x + insets.left, src.y + insets.top, src.width,
+										src.height));
+					}
+					catch (Exception e)
+					{
+						inFlight.release();
+						throw e;
+					}
+
+					submit(new Callable<Void>()
+					{
+						@Override
+						public Void call() throws Exception
+						{
+							try
+							{
+								BufferedImage tile = image;
+								if (context.isRemoveConstantColumns())
+								{
+									tile =
+											removeConstantColumns(tile, constantPixelsFromTop,
+													constantPixelsFromBottom, src.x, src.y, width, height, mask);
+								}
+								write(node, tile);
+							}
+							finally
+							{
+								inFlight.release();
+							}
+							complete(node);
+							return null;
+						}
+					});
+				}
+			}
+			finally
+			{
+				taskFinished();
+				finished.await();
+				executor.shutdownNow();
+			}
+
+			if (failure != null)
+			{
+				throw failure;
+			}
+		}
+
+		private void submit(final Callable<Void> task)
+		{
+			pending.incrementAndGet();
+			executor.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						if (failure == null)
+						{
+							task.call();
+						}
+					}
+					catch (Exception e)
+					{
+						failure = e;
+					}
+					finally
+					{
+						taskFinished();
+					}
+				}
+			});
+		}
+
+		private void taskFinished()
+		{
+			if (pending.decrementAndGet() == 0)
+			{
+				finished.countDown();
+			}
+		}
+
+		/**
+		 * Mark the given tile as complete, and schedule any parents which have
+		 * no remaining incomplete children.
+		 */
+		private void complete(TileNode node)
+		{
+			long done = completed.incrementAndGet();
+			if ((done * 100) / nodeCount != ((done - 1) * 100) / nodeCount)
+			{
+				log(context, ((done * 100) / nodeCount) + "% done", false);
+			}
+
+			for (final TileNode parent : node.parents)
+			{
+				if (parent.remaining.decrementAndGet() == 0)
+				{
+					submit(new Callable<Void>()
+					{
+						@Override
+						public Void call() throws Exception
+						{
+							buildOverview(parent);
+							return null;
+						}
+					});
+				}
+			}
+		}
+
+		private void buildOverview(TileNode node) throws IOException
+		{
+			if (!node.file.exists())
+			{
+				BufferedImage[] images = new BufferedImage[4];
+				for (int i = 0; i < 4; i++)
+				{
+					TileNode child = node.children[i];
+					if (child != null)
+					{
+						images[i] = cache.get(child.file);
+						if (images[i] == null && child.file.exists())
+						{
+							images[i] = ImageIO.read(child.file);
+						}
+					}
+				}
+
+				BufferedImage image = createOverview(images, node.lastRowsOne, node.lastColsOne, mask);
+				write(node, image);
+			}
+
+			//children are no longer required once their only parent has been built
+			for (TileNode child : node.children)
+			{
+				if (child != null && child.parents.size() == 1)
+				{
+					cache.remove(child.file);
+				}
+			}
+
+			complete(node);
+		}
+
+		/**
+		 * Encode the image to the node's file, and keep the image (as it will
+		 * be read back from the file) in the cache for building the overview.
+		 */
+		private void write(TileNode node, BufferedImage image) throws IOException
+		{
+			node.file.getParentFile().mkdirs();
+			if (node.parents.isEmpty())
+			{
+				ImageIO.write(image, format, node.file);
+				return;
+			}
+
+			if (lossy)
+			{
+				//cache the decoded image so that the overviews are identical whether
+				//or not they are built from the cache
+				ByteArrayOutputStream baos = new ByteArrayOutputStream();
+				ImageIO.write(image, format, baos);
+				byte[] bytes = baos.toByteArray();
+				FileOutputStream fos = new FileOutputStream(node.file);
+				try
+				{
+					fos.write(bytes);
+				}
+				finally
+				{
+					fos.close();
+				}
+				image = ImageIO.read(new ByteArrayInputStream(bytes));
+			}
+			else
+			{
+				ImageIO.write(image, format, node.file);
+			}
+			cache.put(node.file, image);
+		}
+	}
 }
@@ -55,6 +55,10 @@ public class RibbonTilingContext {
 	@Parameter(names="-format", description="Override the output format")
 	private String format = null;
 	private int numLevels;
+	@Parameter(names="-threads", description="The number of threads to use for encoding tiles and building overviews")
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+	@Parameter(names="-rasterCache", description="The amount of memory (in MB) used to keep tiles in memory for building overviews")
+	private int rasterCacheSize = 256;
 	
 	// Flags
 	@Parameter(names="-removeConstantColumns", description="Remove constant colour from the top and bottom of the image")
@@ -523,4 +527,24 @@ public class RibbonTilingContext {
 	{
 		this.pathSimplifyTolerance = pathSimplifyTolerance;
 	}
+
+	public int getThreadCount()
+	{
+		return threadCount;
+	}
+
+	public void setThreadCount(int threadCount)
+	{
+		this.threadCount = threadCount;
+	}
+
+	public int getRasterCacheSize()
+	{
+		return rasterCacheSize;
+	}
+
+	public void setRasterCacheSize(int rasterCacheSize)
+	{
+		this.rasterCacheSize = rasterCacheSize;
+	}
 }
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.scan;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Data types of elevation (BIL) tiles, matching the data types supported by
+ * the Tiler.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public enum ElevationDataType
+{
+	BYTE(1)
+	{
+		@Override
+		public double get(ByteBuffer buffer, int index)
+		{
+			return buffer.get(index);
+		}
+
+		@Override
+		public double cast(double value)
+		{
+			return (byte) value;
+		}
+	},
+	INT16(2)
+	{
+		@Override
+		public double get(ByteBuffer buffer, int index)
+		{
+			return buffer.getShort(index * 2);
+		}
+
+		@Override
+		public double cast(double value)
+		{
+			return (short) value;
+		}
+	},
+	INT32(4)
+	{
+		@Override
+		public double get(ByteBuffer buffer, int index)
+		{
+			return buffer.getInt(index * 4);
+		}
+
+		@Override
+		public double cast(double value)
+		{
+			return (int) value;
+		}
+	},
+	FLOAT32(4)
+	{
+		@Override
+		public double get(ByteBuffer buffer, int index)
+		{
+			return buffer.getFloat(index * 4);
+		}
+
+		@Override
+		public double cast(double value)
+		{
+			return (float) value;
+		}
+	},
+	FLOAT64(8)
+	{
+		@Override
+		public double get(ByteBuffer buffer, int index)
+		{
+			return buffer.getDouble(index * 8);
+		}
+
+		@Override
+		public double cast(double value)
+		{
+			return value;
+		}
+	};
+
+	private final int size;
+
+	private ElevationDataType(int size)
+	{
+		this.size = size;
+	}
+
+	/**
+	 * @return Size of each value in bytes
+	 */
+	public int getSize()
+	{
+		return size;
+	}
+
+	/**
+	 * Read the value at the given index (in values, not bytes) from the buffer.
+	 * 
+	 * @param buffer
+	 * @param index
+	 * @return Value at index
+	 */
+	public abstract double get(ByteBuffer buffer, int index);
+
+	/**
+	 * Convert a value to the precision of this type, so it can be compared
+	 * with values read by {@link #get(ByteBuffer, int)}.
+	 * 
+	 * @param value
+	 * @return Value converted to this type
+	 */
+	public abstract double cast(double value);
+}
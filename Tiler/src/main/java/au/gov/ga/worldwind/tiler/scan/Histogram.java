@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.scan;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Histogram of values that doesn't need to know the range of the values up
+ * front.
+ * <p/>
+ * Values are counted in bins of a fixed width anchored at 0. If the values
+ * span more than {@link #MAX_BINS} bins, the bin width is doubled (merging
+ * neighbouring bins) until they fit. Because every bin width is the base width
+ * multiplied by a power of two, histograms calculated separately (such as one
+ * per tile) can be merged without losing any precision beyond that of the
+ * coarser histogram.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class Histogram
+{
+	public final static int MAX_BINS = 1 << 16;
+	private final static double MAX_BIN_INDEX = 1L << 53;
+
+	private final double baseBinSize;
+	private double binSize;
+	private int scale = 0;
+	private long offset;
+	private long[] counts;
+	private int first;
+	private int last;
+	private long total;
+
+	/**
+	 * Create a new {@link Histogram}.
+	 * 
+	 * @param baseBinSize
+	 *            Width of the bins, before any doubling
+	 */
+	public Histogram(double baseBinSize)
+	{
+		if (!(baseBinSize > 0) || Double.isInfinite(baseBinSize))
+			throw new IllegalArgumentException("Invalid bin size: " + baseBinSize);
+
+		this.baseBinSize = baseBinSize;
+		this.binSize = baseBinSize;
+	}
+
+	/**
+	 * @return Current width of each bin
+	 */
+	public double getBinSize()
+	{
+		return binSize;
+	}
+
+	/**
+	 * @return Number of values added to this histogram
+	 */
+	public long getTotal()
+	{
+		return total;
+	}
+
+	/**
+	 * Add a value to this histogram. NaN and infinite values are ignored.
+	 * 
+	 * @param value
+	 */
+	public void add(double value)
+	{
+		if (Double.isNaN(value) || Double.isInfinite(value))
+			return;
+
+		while (Math.abs(value / binSize) >= MAX_BIN_INDEX)
+		{
+			coarsen();
+		}
+		add((long) Math.floor(value / binSize), scale, 1);
+	}
+
+	/**
+	 * Add all the values counted in another histogram to this histogram.
+	 * 
+	 * @param histogram
+	 *            Histogram to merge; must have the same base bin size
+	 */
+	public void merge(Histogram histogram)
+	{
+		if (histogram.baseBinSize != baseBinSize)
+			throw new IllegalArgumentException("Histograms have different bin sizes");
+
+		if (histogram.counts == null)
+			return;
+
+		for (int i = histogram.first; i <= histogram.last; i++)
+		{
+			long count = histogram.counts[i];
+			if (count != 0)
+			{
+				add(histogram.offset + i, histogram.scale, count);
+			}
+		}
+	}
+
+	/**
+	 * Calculate the bins of this histogram between the minimum and maximum
+	 * values added, merging neighbouring bins so that there are at most
+	 * maxBins bins.
+	 * 
+	 * @param maxBins
+	 *            Maximum number of bins to return
+	 * @return List of bins, ordered by value
+	 */
+	public List<Bin> getBins(int maxBins)
+	{
+		List<Bin> bins = new ArrayList<Bin>();
+		if (counts == null)
+			return bins;
+
+		int count = last - first + 1;
+		int group = (count + Math.max(1, maxBins) - 1) / Math.max(1, maxBins);
+		for (int i = first; i <= last; i += group)
+		{
+			long sum = 0;
+			int end = Math.min(i + group, last + 1);
+			for (int j = i; j < end; j++)
+			{
+				sum += counts[j];
+			}
+			double min = (offset + i) * binSize;
+			double max = (offset + end) * binSize;
+			bins.add(new Bin(min, max, sum));
+		}
+		return bins;
+	}
+
+	/**
+	 * Add a count to the bin with the given index, calculated at the given
+	 * scale.
+	 */
+	private void add(long bin, int binScale, long count)
+	{
+		while (scale < binScale)
+		{
+			coarsen();
+		}
+		bin >>= scale - binScale;
+
+		while (!include(bin))
+		{
+			coarsen();
+			bin >>= 1;
+		}
+
+		int index = (int) (bin - offset);
+		counts[index] += count;
+		first = Math.min(first, index);
+		last = Math.max(last, index);
+		total += count;
+	}
+
+	/**
+	 * Grow the counts array so that it includes the given bin.
+	 * 
+	 * @return False if the bin can't be included without exceeding
+	 *         {@link #MAX_BINS}
+	 */
+	private boolean include(long bin)
+	{
+		if (counts == null)
+		{
+			counts = new long[16];
+			offset = bin - counts.length / 2;
+			first = counts.length;
+			last = -1;
+			return true;
+		}
+
+		if (bin >= offset && bin < offset + counts.length)
+			return true;
+
+		long min = last >= first ? Math.min(offset + first, bin) : bin;
+		long max = last >= first ? Math.max(offset + last, bin) : bin;
+		if (max - min + 1 > MAX_BINS)
+			return false;
+
+		int length = (int) Math.min(MAX_BINS, Math.max(max - min + 1, counts.length * 2L));
+		long newOffset = bin < offset ? max - length + 1 : min;
+		long[] newCounts = new long[length];
+		if (last >= first)
+		{
+			System.arraycopy(counts, first, newCounts, (int) (offset + first - newOffset), last - first + 1);
+			first = (int) (offset + first - newOffset);
+			last = (int) (offset + last - newOffset);
+		}
+		else
+		{
+			first = length;
+			last = -1;
+		}
+		counts = newCounts;
+		offset = newOffset;
+		return true;
+	}
+
+	/**
+	 * Double the bin size, merging each pair of neighbouring bins.
+	 */
+	private void coarsen()
+	{
+		scale++;
+		binSize = baseBinSize * Math.pow(2, scale);
+		if (counts == null)
+			return;
+
+		long newOffset = offset >> 1;
+		long[] newCounts = new long[counts.length];
+		int newFirst = newCounts.length;
+		int newLast = -1;
+		for (int i = first; i <= last; i++)
+		{
+			if (counts[i] != 0)
+			{
+				int index = (int) (((offset + i) >> 1) - newOffset);
+				newCounts[index] += counts[i];
+				newFirst = Math.min(newFirst, index);
+				newLast = Math.max(newLast, index);
+			}
+		}
+		counts = newCounts;
+		offset = newOffset;
+		first = newFirst;
+		last = newLast;
+	}
+
+	/**
+	 * A single bin in the histogram.
+	 */
+	public static class Bin
+	{
+		public final double min;
+		public final double max;
+		public final long count;
+
+		public Bin(double min, double max, long count)
+		{
+			this.min = min;
+			this.max = max;
+			this.count = count;
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.scan;
+
+/**
+ * A tile found in a tileset by the {@link TilesetReader}.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class TileEntry implements Comparable<TileEntry>
+{
+	private final int level;
+	private final int row;
+	private final int col;
+	private final String extension;
+	private final String path;
+	private final String location;
+	private final boolean misplaced;
+
+	/**
+	 * Create a new {@link TileEntry}.
+	 * 
+	 * @param level
+	 * @param row
+	 * @param col
+	 * @param extension
+	 *            File extension of the tile (without the '.' prefix)
+	 * @param path
+	 *            Path of the tile, relative to the tileset, used for reporting
+	 * @param location
+	 *            Location of the tile within its {@link TilesetReader.TileGroup}
+	 * @param misplaced
+	 *            Is the tile stored in the wrong level or row directory?
+	 */
+	public TileEntry(int level, int row, int col, String extension, String path, String location, boolean misplaced)
+	{
+		this.level = level;
+		this.row = row;
+		this.col = col;
+		this.extension = extension;
+		this.path = path;
+		this.location = location;
+		this.misplaced = misplaced;
+	}
+
+	public int getLevel()
+	{
+		return level;
+	}
+
+	public int getRow()
+	{
+		return row;
+	}
+
+	public int getCol()
+	{
+		return col;
+	}
+
+	public String getExtension()
+	{
+		return extension;
+	}
+
+	public String getPath()
+	{
+		return path;
+	}
+
+	public String getLocation()
+	{
+		return location;
+	}
+
+	public boolean isMisplaced()
+	{
+		return misplaced;
+	}
+
+	@Override
+	public int compareTo(TileEntry o)
+	{
+		if (level != o.level)
+			return level < o.level ? -1 : 1;
+		if (row != o.row)
+			return row < o.row ? -1 : 1;
+		if (col != o.col)
+			return col < o.col ? -1 : 1;
+		return path.compareTo(o.path);
+	}
+
+	@Override
+	public String toString()
+	{
+		return path;
+	}
+}
@@ -0,0 +1,297 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.scan;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Index of the tiles that exist in a tileset, so that a tile requester can
+ * skip requesting tiles that don't exist (such as blank tiles that were not
+ * written by the Tiler).
+ * <p/>
+ * For each level, the index stores the row/column extents of the tiles that
+ * intersect the tileset's sector, and a bit for each tile within the extents.
+ * The binary format (big-endian) is:
+ * 
+ * <pre>
+ * int     magic number (0x57575449, 'WWTI')
+ * int     version (1)
+ * int     level count
+ * for each level:
+ *   int   first row
+ *   int   first column
+ *   int   row count
+ *   int   column count
+ *   long  ceil(rows * columns / 64) words of bits; tile (row, column) is bit
+ *         ((row - first row) * column count + (column - first column))
+ * </pre>
+ * 
+ * The index is read by the tile requesters in Common
+ * (au.gov.ga.worldwind.common.util.TileIndex), so any change to the format
+ * must be made in both places.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class TileIndex
+{
+	public final static int MAGIC = 0x57575449;
+	public final static int VERSION = 1;
+
+	private final int[] firstRows;
+	private final int[] firstCols;
+	private final int[] rowCounts;
+	private final int[] colCounts;
+	private final long[][] bits;
+
+	/**
+	 * Create a new empty {@link TileIndex}. The extents of each level must be
+	 * set using {@link #setExtents(int, int, int, int, int)} before tiles are
+	 * added.
+	 * 
+	 * @param levelCount
+	 *            Number of levels in the tileset
+	 */
+	public TileIndex(int levelCount)
+	{
+		firstRows = new int[levelCount];
+		firstCols = new int[levelCount];
+		rowCounts = new int[levelCount];
+		colCounts = new int[levelCount];
+		bits = new long[levelCount][];
+		for (int i = 0; i < levelCount; i++)
+		{
+			bits[i] = new long[0];
+		}
+	}
+
+	/**
+	 * @return Number of levels in this index
+	 */
+	public int getLevelCount()
+	{
+		return bits.length;
+	}
+
+	/**
+	 * Set the extents of the tiles at the given level. Clears any tiles
+	 * already added to the level.
+	 * 
+	 * @param level
+	 * @param firstRow
+	 * @param firstCol
+	 * @param lastRow
+	 * @param lastCol
+	 */
+	public synchronized void setExtents(int level, int firstRow, int firstCol, int lastRow, int lastCol)
+	{
+		int rows = Math.max(0, lastRow - firstRow + 1);
+		int cols = Math.max(0, lastCol - firstCol + 1);
+		firstRows[level] = firstRow;
+		firstCols[level] = firstCol;
+		rowCounts[level] = rows;
+		colCounts[level] = cols;
+		bits[level] = new long[(int) (((long) rows * cols + 63) / 64)];
+	}
+
+	/**
+	 * @return Is the given tile within the extents of its level?
+	 */
+	public boolean isWithinExtents(int level, int row, int col)
+	{
+		return level >= 0 && level < bits.length && row >= firstRows[level]
+				&& row < firstRows[level] + rowCounts[level] && col >= firstCols[level]
+				&& col < firstCols[level] + colCounts[level];
+	}
+
+	/**
+	 * Mark the given tile as existing.
+	 * 
+	 * @return False if the tile is outside the extents of its level
+	 */
+	public synchronized boolean add(int level, int row, int col)
+	{
+		if (!isWithinExtents(level, row, col))
+			return false;
+
+		long bit = bitIndex(level, row, col);
+		bits[level][(int) (bit >>> 6)] |= 1L << (bit & 63);
+		return true;
+	}
+
+	/**
+	 * @return Does the given tile exist?
+	 */
+	public synchronized boolean contains(int level, int row, int col)
+	{
+		if (!isWithinExtents(level, row, col))
+			return false;
+
+		long bit = bitIndex(level, row, col);
+		return (bits[level][(int) (bit >>> 6)] & (1L << (bit & 63))) != 0;
+	}
+
+	/**
+	 * @return Number of tiles that exist at the given level
+	 */
+	public synchronized long getCount(int level)
+	{
+		long count = 0;
+		for (long word : bits[level])
+		{
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	public int getFirstRow(int level)
+	{
+		return firstRows[level];
+	}
+
+	public int getFirstCol(int level)
+	{
+		return firstCols[level];
+	}
+
+	public int getRowCount(int level)
+	{
+		return rowCounts[level];
+	}
+
+	public int getColCount(int level)
+	{
+		return colCounts[level];
+	}
+
+	private long bitIndex(int level, int row, int col)
+	{
+		return (long) (row - firstRows[level]) * colCounts[level] + (col - firstCols[level]);
+	}
+
+	/**
+	 * Write this index to a file.
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException
+	{
+		OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+		try
+		{
+			write(os);
+		}
+		finally
+		{
+			os.close();
+		}
+	}
+
+	/**
+	 * Write this index to an output stream.
+	 * 
+	 * @param os
+	 * @throws IOException
+	 */
+	public synchronized void write(OutputStream os) throws IOException
+	{
+		DataOutputStream dos = new DataOutputStream(os);
+		dos.writeInt(MAGIC);
+		dos.writeInt(VERSION);
+		dos.writeInt(bits.length);
+		for (int level = 0; level < bits.length; level++)
+		{
+			dos.writeInt(firstRows[level]);
+			dos.writeInt(firstCols[level]);
+			dos.writeInt(rowCounts[level]);
+			dos.writeInt(colCounts[level]);
+			for (long word : bits[level])
+			{
+				dos.writeLong(word);
+			}
+		}
+		dos.flush();
+	}
+
+	/**
+	 * Read an index from a file.
+	 * 
+	 * @param file
+	 * @return Index read from the file
+	 * @throws IOException
+	 */
+	public static TileIndex read(File file) throws IOException
+	{
+		InputStream is = new BufferedInputStream(new FileInputStream(file));
+		try
+		{
+			return read(is);
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+
+	/**
+	 * Read an index from an input stream.
+	 * 
+	 * @param is
+	 * @return Index read from the stream
+	 * @throws IOException
+	 */
+	public static TileIndex read(InputStream is) throws IOException
+	{
+		DataInputStream dis = new DataInputStream(is);
+		if (dis.readInt() != MAGIC)
+			throw new IOException("Not a tile index");
+		int version = dis.readInt();
+		if (version != VERSION)
+			throw new IOException("Unsupported tile index version: " + version);
+
+		int levelCount = dis.readInt();
+		if (levelCount < 0)
+			throw new IOException("Invalid level count: " + levelCount);
+
+		TileIndex index = new TileIndex(levelCount);
+		for (int level = 0; level < levelCount; level++)
+		{
+			int firstRow = dis.readInt();
+			int firstCol = dis.readInt();
+			int rows = dis.readInt();
+			int cols = dis.readInt();
+			if (rows < 0 || cols < 0)
+				throw new IOException("Invalid extents for level " + level);
+
+			index.setExtents(level, firstRow, firstCol, firstRow + rows - 1, firstCol + cols - 1);
+			long[] words = index.bits[level];
+			for (int i = 0; i < words.length; i++)
+			{
+				words[i] = dis.readLong();
+			}
+		}
+		return index;
+	}
+}
@@ -0,0 +1,437 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.scan;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Lists the tiles in a tileset, and reads their contents. Supports the same
+ * layouts as the TileServer:
+ * <ul>
+ * <li>Directories: <code>tileset/level/row/row_col.ext</code></li>
+ * <li>Level zips: <code>tileset/level.zip</code> containing
+ * <code>row/row_col.ext</code></li>
+ * <li>Row zips: <code>tileset/level/row.zip</code> containing
+ * <code>row_col.ext</code></li>
+ * <li>Packed archives: <code>tileset.zip</code> containing
+ * <code>level/row/row_col.ext</code></li>
+ * </ul>
+ * The tiles are listed in {@link TileGroup}s, each of which is a row of tiles
+ * stored in the same container. A group should only be read by one thread at
+ * a time, but different groups can be read concurrently.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class TilesetReader implements Closeable
+{
+	private final static Pattern TILE_PATTERN = Pattern
+			.compile("(?:.*/)?(\\d+)/(\\d+)/(\\d+)_(\\d+)\\.([^./]+)");
+	private final static Pattern NUMBER_PATTERN = Pattern.compile("\\d+");
+
+	private final File tileset;
+	private final List<ZipFile> sharedZips = new ArrayList<ZipFile>();
+	private final List<TileGroup> groups = new ArrayList<TileGroup>();
+	private int tileCount = 0;
+	private int maxLevel = -1;
+
+	/**
+	 * Create a new {@link TilesetReader}, listing all the tiles in the given
+	 * tileset.
+	 * 
+	 * @param tileset
+	 *            Tileset directory or packed archive
+	 * @throws IOException
+	 *             If the tileset can't be listed
+	 */
+	public TilesetReader(File tileset) throws IOException
+	{
+		this.tileset = tileset;
+		if (tileset.isDirectory())
+		{
+			listDirectory();
+		}
+		else if (tileset.isFile() && tileset.getName().toLowerCase().endsWith(".zip"))
+		{
+			ZipFile zip = openShared(tileset);
+			listZip(zip, true, null, "", tileset.getName() + "!/", -1);
+		}
+		else
+		{
+			throw new IOException("Not a tileset directory or archive: " + tileset);
+		}
+	}
+
+	/**
+	 * @return The tileset being read
+	 */
+	public File getTileset()
+	{
+		return tileset;
+	}
+
+	/**
+	 * @return Groups of tiles in this tileset
+	 */
+	public List<TileGroup> getGroups()
+	{
+		return Collections.unmodifiableList(groups);
+	}
+
+	/**
+	 * @return Number of tiles found in this tileset
+	 */
+	public int getTileCount()
+	{
+		return tileCount;
+	}
+
+	/**
+	 * @return Highest level containing tiles in this tileset, or -1 if no tiles
+	 *         were found
+	 */
+	public int getMaxLevel()
+	{
+		return maxLevel;
+	}
+
+	@Override
+	public void close()
+	{
+		for (ZipFile zip : sharedZips)
+		{
+			try
+			{
+				zip.close();
+			}
+			catch (IOException e)
+			{
+			}
+		}
+		sharedZips.clear();
+	}
+
+	private void listDirectory() throws IOException
+	{
+		for (File levelFile : sortedFiles(tileset))
+		{
+			String name = levelFile.getName();
+			if (levelFile.isDirectory() && isNumber(name))
+			{
+				for (File rowFile : sortedFiles(levelFile))
+				{
+					String rowName = rowFile.getName();
+					if (rowFile.isDirectory() && isNumber(rowName))
+					{
+						TileGroup group = new FileGroup();
+						for (File file : sortedFiles(rowFile))
+						{
+							if (file.isFile())
+							{
+								String path = name + "/" + rowName + "/" + file.getName();
+								TileEntry entry = parseEntry(path, path, file.getPath(), -1);
+								if (entry != null)
+								{
+									group.entries.add(entry);
+								}
+							}
+						}
+						addGroup(group);
+					}
+					else if (rowFile.isFile() && isZip(rowName))
+					{
+						ZipFile zip = new ZipFile(rowFile);
+						try
+						{
+							String prefix = name + "/" + stripZip(rowName) + "/";
+							String displayPrefix = name + "/" + rowName + "!/";
+							listZip(zip, false, rowFile, prefix, displayPrefix, Integer.parseInt(name));
+						}
+						finally
+						{
+							zip.close();
+						}
+					}
+				}
+			}
+			else if (levelFile.isFile() && isZip(name))
+			{
+				ZipFile zip = openShared(levelFile);
+				String prefix = stripZip(name) + "/";
+				listZip(zip, true, null, prefix, name + "!/", Integer.parseInt(stripZip(name)));
+			}
+		}
+	}
+
+	/**
+	 * List the tiles in a zip file.
+	 * 
+	 * @param zip
+	 *            Zip file to list
+	 * @param shared
+	 *            Is the zip file kept open and shared by the groups? If false,
+	 *            all the tiles are put in a single group that reopens the file
+	 * @param file
+	 *            Zip file to reopen when reading, if not shared
+	 * @param prefix
+	 *            Path of the zip's contents relative to the tileset
+	 * @param displayPrefix
+	 *            Prefix to add to entry names when reporting
+	 * @param level
+	 *            Level of the container, or -1 if the entries' paths contain
+	 *            the level
+	 */
+	private void listZip(ZipFile zip, boolean shared, File file, String prefix, String displayPrefix, int level)
+	{
+		List<String> names = new ArrayList<String>();
+		Enumeration<? extends ZipEntry> entries = zip.entries();
+		while (entries.hasMoreElements())
+		{
+			ZipEntry entry = entries.nextElement();
+			if (!entry.isDirectory())
+			{
+				names.add(entry.getName());
+			}
+		}
+		Collections.sort(names);
+
+		//shared zips are split into a group per row, so rows can be read concurrently
+		Map<String, TileGroup> rows = new LinkedHashMap<String, TileGroup>();
+		for (String name : names)
+		{
+			TileEntry entry = parseEntry(prefix + name, displayPrefix + name, name, level);
+			if (entry == null)
+				continue;
+
+			String key = shared ? entry.getLevel() + "/" + entry.getRow() : "";
+			TileGroup group = rows.get(key);
+			if (group == null)
+			{
+				group = shared ? new ZipGroup(zip, null) : new ZipGroup(null, file);
+				rows.put(key, group);
+			}
+			group.entries.add(entry);
+		}
+
+		for (TileGroup group : rows.values())
+		{
+			addGroup(group);
+		}
+	}
+
+	/**
+	 * Parse a tile's level, row and column from its path.
+	 * 
+	 * @return Tile entry, or null if the path isn't a tile
+	 */
+	private TileEntry parseEntry(String path, String displayPath, String location, int containerLevel)
+	{
+		Matcher matcher = TILE_PATTERN.matcher(path);
+		if (!matcher.matches())
+			return null;
+
+		int level = Integer.parseInt(matcher.group(1));
+		int rowDirectory = Integer.parseInt(matcher.group(2));
+		int row = Integer.parseInt(matcher.group(3));
+		int col = Integer.parseInt(matcher.group(4));
+		String extension = matcher.group(5).toLowerCase();
+		boolean misplaced = row != rowDirectory || (containerLevel >= 0 && containerLevel != level);
+		return new TileEntry(level, row, col, extension, displayPath, location, misplaced);
+	}
+
+	private void addGroup(TileGroup group)
+	{
+		if (group.entries.isEmpty())
+			return;
+
+		groups.add(group);
+		tileCount += group.entries.size();
+		for (TileEntry entry : group.entries)
+		{
+			maxLevel = Math.max(maxLevel, entry.getLevel());
+		}
+	}
+
+	private ZipFile openShared(File file) throws IOException
+	{
+		ZipFile zip = new ZipFile(file);
+		sharedZips.add(zip);
+		return zip;
+	}
+
+	private static List<File> sortedFiles(File directory)
+	{
+		File[] files = directory.listFiles();
+		if (files == null)
+			return Collections.emptyList();
+		Arrays.sort(files);
+		return Arrays.asList(files);
+	}
+
+	private static boolean isNumber(String name)
+	{
+		return NUMBER_PATTERN.matcher(name).matches();
+	}
+
+	private static boolean isZip(String name)
+	{
+		return name.toLowerCase().endsWith(".zip") && isNumber(stripZip(name));
+	}
+
+	private static String stripZip(String name)
+	{
+		return name.substring(0, name.length() - 4);
+	}
+
+	/**
+	 * Read all the bytes from the given input stream, closing it afterwards.
+	 */
+	protected static byte[] readFully(InputStream is, long size) throws IOException
+	{
+		try
+		{
+			ByteArrayOutputStream baos = new ByteArrayOutputStream(size > 0 ? (int) size : 8192);
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = is.read(buffer)) >= 0)
+			{
+				baos.write(buffer, 0, read);
+			}
+			return baos.toByteArray();
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+
+	/**
+	 * A group of tiles stored in the same container (a row directory or a row
+	 * within a zip file).
+	 */
+	public static abstract class TileGroup
+	{
+		private final List<TileEntry> entries = new ArrayList<TileEntry>();
+
+		/**
+		 * @return Tiles in this group
+		 */
+		public List<TileEntry> getEntries()
+		{
+			return entries;
+		}
+
+		/**
+		 * Open this group's container for reading.
+		 * 
+		 * @throws IOException
+		 */
+		public abstract void open() throws IOException;
+
+		/**
+		 * Read the contents of a tile in this group.
+		 * 
+		 * @param entry
+		 * @return Tile contents
+		 * @throws IOException
+		 */
+		public abstract byte[] read(TileEntry entry) throws IOException;
+
+		/**
+		 * Close this group's container.
+		 */
+		public abstract void close();
+	}
+
+	private static class FileGroup extends TileGroup
+	{
+		@Override
+		public void open()
+		{
+		}
+
+		@Override
+		public byte[] read(TileEntry entry) throws IOException
+		{
+			File file = new File(entry.getLocation());
+			return readFully(new FileInputStream(file), file.length());
+		}
+
+		@Override
+		public void close()
+		{
+		}
+	}
+
+	private static class ZipGroup extends TileGroup
+	{
+		private final ZipFile shared;
+		private final File file;
+		private ZipFile zip;
+
+		public ZipGroup(ZipFile shared, File file)
+		{
+			this.shared = shared;
+			this.file = file;
+		}
+
+		@Override
+		public void open() throws IOException
+		{
+			zip = shared != null ? shared : new ZipFile(file);
+		}
+
+		@Override
+		public byte[] read(TileEntry entry) throws IOException
+		{
+			ZipEntry zipEntry = zip.getEntry(entry.getLocation());
+			if (zipEntry == null)
+				throw new IOException("Entry not found: " + entry.getLocation());
+			return readFully(zip.getInputStream(zipEntry), zipEntry.getSize());
+		}
+
+		@Override
+		public void close()
+		{
+			if (zip != null && zip != shared)
+			{
+				try
+				{
+					zip.close();
+				}
+				catch (IOException e)
+				{
+				}
+			}
+			zip = null;
+		}
+	}
+}
@@ -0,0 +1,585 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.scan;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import au.gov.ga.worldwind.tiler.scan.TilesetScanner.TileResult;
+import au.gov.ga.worldwind.tiler.util.LatLon;
+import au.gov.ga.worldwind.tiler.util.Sector;
+import au.gov.ga.worldwind.tiler.util.Util;
+
+/**
+ * Results of a {@link TilesetScanner} scan: per level tile counts and
+ * elevation statistics, the issues found, and the {@link TileIndex} of the
+ * tiles that exist.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class TilesetReport
+{
+	/**
+	 * Types of issues found in a tileset.
+	 */
+	public static enum IssueType
+	{
+		/** Tile that should exist within the tileset's extents is missing */
+		Missing,
+		/** Tile is outside the tileset's extents or levels */
+		Unexpected,
+		/** Tile is stored in the wrong level or row directory */
+		Misplaced,
+		/** Tile is stored more than once (such as in a directory and a zip) */
+		Conflict,
+		/** Tile can't be read, or has the wrong size */
+		Invalid,
+		/** Tile is a single colour/value, or contains no data */
+		Blank,
+		/** Tile has the same contents as another tile */
+		Duplicate,
+		/** Tile exists but its parent tile in the level above doesn't */
+		Orphan,
+		/** Tile exists but none of its children in the level below do */
+		Childless
+	}
+
+	private final File tileset;
+	private final Sector sector;
+	private final LatLon origin;
+	private final double lzts;
+	private final int tilesize;
+	private final boolean elevations;
+	private final String format;
+	private final int histogramBins;
+	private final int maxIssues;
+	private final Level[] levels;
+	private final TileIndex index;
+
+	private final Map<IssueType, List<Issue>> issues = new EnumMap<IssueType, List<Issue>>(IssueType.class);
+	private final Map<IssueType, Long> issueCounts = new EnumMap<IssueType, Long>(IssueType.class);
+	private final Map<String, TileEntry> firstByHash = new HashMap<String, TileEntry>();
+	private final Map<TileEntry, String> duplicates = new HashMap<TileEntry, String>();
+
+	/**
+	 * Create a new empty report, calculating the tile extents of each level.
+	 * 
+	 * @param context
+	 *            Scan parameters
+	 * @param levelCount
+	 *            Number of levels in the tileset
+	 */
+	public TilesetReport(TilesetScanContext context, int levelCount)
+	{
+		this.tileset = context.getTileset();
+		this.sector = context.getSector();
+		this.origin = context.getOrigin();
+		this.lzts = context.getLzts();
+		this.tilesize = context.getTilesize();
+		this.elevations = context.isElevations();
+		this.format = context.getFormat();
+		this.histogramBins = context.getHistogramBins();
+		this.maxIssues = context.getMaxIssues();
+
+		for (IssueType type : IssueType.values())
+		{
+			issues.put(type, new ArrayList<Issue>());
+			issueCounts.put(type, 0L);
+		}
+
+		levels = new Level[Math.max(0, levelCount)];
+		index = new TileIndex(levels.length);
+		for (int i = 0; i < levels.length; i++)
+		{
+			int firstCol = Util.getTileX(sector.getMinLongitude() + 1e-10, origin, i, lzts);
+			int lastCol = Util.getTileX(sector.getMaxLongitude() - 1e-10, origin, i, lzts);
+			int firstRow = Util.getTileY(sector.getMinLatitude() + 1e-10, origin, i, lzts);
+			int lastRow = Util.getTileY(sector.getMaxLatitude() - 1e-10, origin, i, lzts);
+			index.setExtents(i, firstRow, firstCol, lastRow, lastCol);
+			levels[i] = new Level(i, elevations ? new Histogram(context.getBinSize()) : null);
+		}
+	}
+
+	/**
+	 * @return Index of the tiles that exist in the tileset
+	 */
+	public TileIndex getIndex()
+	{
+		return index;
+	}
+
+	/**
+	 * @return Number of levels in the tileset
+	 */
+	public int getLevelCount()
+	{
+		return levels.length;
+	}
+
+	/**
+	 * @return Statistics for the given level
+	 */
+	public Level getLevel(int level)
+	{
+		return levels[level];
+	}
+
+	/**
+	 * @return Total number of issues of the given type found
+	 */
+	public synchronized long getIssueCount(IssueType type)
+	{
+		return issueCounts.get(type);
+	}
+
+	/**
+	 * @return Issues of the given type (limited to the maximum number of
+	 *         issues listed per type)
+	 */
+	public synchronized List<Issue> getIssues(IssueType type)
+	{
+		return new ArrayList<Issue>(issues.get(type));
+	}
+
+	/**
+	 * @return Does the tileset contain any issues that indicate it is
+	 *         corrupt or inconsistent? Missing and blank tiles are expected
+	 *         in most tilesets, so are not counted.
+	 */
+	public synchronized boolean hasErrors()
+	{
+		for (IssueType type : IssueType.values())
+		{
+			if (type != IssueType.Missing && type != IssueType.Blank && issueCounts.get(type) > 0)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Check that a tile is in the right place and within the tileset's
+	 * extents. If not, the issue is recorded.
+	 * 
+	 * @return True if the tile should be scanned
+	 */
+	public synchronized boolean checkLocation(TileEntry entry)
+	{
+		if (entry.isMisplaced())
+		{
+			addIssue(IssueType.Misplaced, entry, null);
+			return false;
+		}
+		if (!index.isWithinExtents(entry.getLevel(), entry.getRow(), entry.getCol()))
+		{
+			addIssue(IssueType.Unexpected, entry, null);
+			return false;
+		}
+		if (index.contains(entry.getLevel(), entry.getRow(), entry.getCol()))
+		{
+			addIssue(IssueType.Conflict, entry, null);
+			return false;
+		}
+		index.add(entry.getLevel(), entry.getRow(), entry.getCol());
+		return true;
+	}
+
+	/**
+	 * Add the results of scanning a tile to this report.
+	 * 
+	 * @param entry
+	 *            Tile scanned; must have passed {@link #checkLocation(TileEntry)}
+	 * @param result
+	 *            Results of the scan
+	 */
+	public synchronized void addTile(TileEntry entry, TileResult result)
+	{
+		Level level = levels[entry.getLevel()];
+		level.present++;
+
+		if (result.problem != null)
+		{
+			addIssue(IssueType.Invalid, entry, result.problem);
+			return;
+		}
+
+		if (result.blank)
+		{
+			addIssue(IssueType.Blank, entry, null);
+		}
+		else if (result.hash != null)
+		{
+			TileEntry first = firstByHash.get(result.hash);
+			if (first == null)
+			{
+				firstByHash.put(result.hash, entry);
+			}
+			else
+			{
+				//keep the lowest tile as the original, so the report doesn't depend on the scan order
+				if (entry.compareTo(first) < 0)
+				{
+					firstByHash.put(result.hash, entry);
+					entry = first;
+				}
+				duplicates.put(entry, result.hash);
+			}
+		}
+
+		if (result.histogram != null && level.histogram != null)
+		{
+			level.histogram.merge(result.histogram);
+			level.min = Double.isNaN(level.min) ? result.min : Math.min(level.min, result.min);
+			level.max = Double.isNaN(level.max) ? result.max : Math.max(level.max, result.max);
+		}
+	}
+
+	/**
+	 * Find the missing, duplicate and inconsistent tiles, once all the tiles
+	 * have been added.
+	 */
+	public synchronized void finish()
+	{
+		List<TileEntry> sorted = new ArrayList<TileEntry>(duplicates.keySet());
+		Collections.sort(sorted);
+		for (TileEntry entry : sorted)
+		{
+			TileEntry first = firstByHash.get(duplicates.get(entry));
+			addIssue(IssueType.Duplicate, entry, "Same contents as " + first.getPath());
+		}
+
+		for (int level = 0; level < levels.length; level++)
+		{
+			int firstRow = index.getFirstRow(level);
+			int firstCol = index.getFirstCol(level);
+			for (int row = firstRow; row < firstRow + index.getRowCount(level); row++)
+			{
+				for (int col = firstCol; col < firstCol + index.getColCount(level); col++)
+				{
+					levels[level].expected++;
+					if (!index.contains(level, row, col))
+					{
+						addIssue(IssueType.Missing, level, row, col, null, null);
+						continue;
+					}
+
+					if (level > 0 && !index.contains(level - 1, row / 2, col / 2))
+					{
+						addIssue(IssueType.Orphan, level, row, col, null, "Parent tile is missing");
+					}
+					if (level < levels.length - 1 && !index.contains(level + 1, row * 2, col * 2)
+							&& !index.contains(level + 1, row * 2 + 1, col * 2)
+							&& !index.contains(level + 1, row * 2, col * 2 + 1)
+							&& !index.contains(level + 1, row * 2 + 1, col * 2 + 1))
+					{
+						addIssue(IssueType.Childless, level, row, col, null, "No child tiles exist");
+					}
+				}
+			}
+		}
+
+		for (List<Issue> list : issues.values())
+		{
+			Collections.sort(list);
+		}
+	}
+
+	private void addIssue(IssueType type, TileEntry entry, String message)
+	{
+		addIssue(type, entry.getLevel(), entry.getRow(), entry.getCol(), entry.getPath(), message);
+	}
+
+	private void addIssue(IssueType type, int level, int row, int col, String path, String message)
+	{
+		issueCounts.put(type, issueCounts.get(type) + 1);
+		if (level >= 0 && level < levels.length)
+		{
+			levels[level].issueCounts[type.ordinal()]++;
+		}
+
+		List<Issue> list = issues.get(type);
+		if (list.size() < maxIssues)
+		{
+			list.add(new Issue(type, level, row, col, path, message));
+		}
+	}
+
+	/**
+	 * Write this report as an XML document.
+	 * 
+	 * @param file
+	 * @throws FileNotFoundException
+	 */
+	public void write(File file) throws FileNotFoundException
+	{
+		PrintStream stream;
+		try
+		{
+			stream = new PrintStream(file, "UTF-8");
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		try
+		{
+			write(stream);
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+
+	/**
+	 * Write this report as an XML document.
+	 * 
+	 * @param stream
+	 */
+	public synchronized void write(PrintStream stream)
+	{
+		DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+
+		stream.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+		stream.println("<TilesetReport tileset=\"" + escape(tileset.getAbsolutePath()) + "\" created=\""
+				+ dateFormat.format(new Date()) + "\">");
+		stream.println("\t<Parameters type=\"" + (elevations ? "Elevations" : "Images") + "\" sector=\""
+				+ sector.getMinLatitude() + "," + sector.getMinLongitude() + "," + sector.getMaxLatitude() + ","
+				+ sector.getMaxLongitude() + "\" origin=\"" + origin.getLatitude() + "," + origin.getLongitude()
+				+ "\" lzts=\"" + lzts + "\" levels=\"" + levels.length + "\" tilesize=\"" + tilesize + "\""
+				+ (format != null ? " format=\"" + escape(format) + "\"" : "") + " />");
+
+		long expected = 0, present = 0;
+		for (Level level : levels)
+		{
+			expected += level.expected;
+			present += level.present;
+		}
+		StringBuilder summary = new StringBuilder();
+		summary.append("\t<Summary expected=\"" + expected + "\" present=\"" + present + "\"");
+		for (IssueType type : IssueType.values())
+		{
+			summary.append(" " + attributeName(type) + "=\"" + issueCounts.get(type) + "\"");
+		}
+		summary.append(" />");
+		stream.println(summary);
+
+		for (Level level : levels)
+		{
+			int i = level.level;
+			StringBuilder sb = new StringBuilder();
+			sb.append("\t<Level number=\"" + i + "\" firstRow=\"" + index.getFirstRow(i) + "\" firstCol=\""
+					+ index.getFirstCol(i) + "\" rows=\"" + index.getRowCount(i) + "\" cols=\""
+					+ index.getColCount(i) + "\" expected=\"" + level.expected + "\" present=\"" + level.present
+					+ "\"");
+			for (IssueType type : IssueType.values())
+			{
+				sb.append(" " + attributeName(type) + "=\"" + level.issueCounts[type.ordinal()] + "\"");
+			}
+			if (!Double.isNaN(level.min))
+			{
+				sb.append(" min=\"" + level.min + "\" max=\"" + level.max + "\"");
+			}
+
+			if (level.histogram == null || level.histogram.getTotal() == 0)
+			{
+				sb.append(" />");
+				stream.println(sb);
+				continue;
+			}
+
+			sb.append(">");
+			stream.println(sb);
+			stream.println("\t\t<Histogram binSize=\"" + level.histogram.getBinSize() + "\" count=\""
+					+ level.histogram.getTotal() + "\">");
+			for (Histogram.Bin bin : level.histogram.getBins(histogramBins))
+			{
+				stream.println("\t\t\t<Bin min=\"" + bin.min + "\" max=\"" + bin.max + "\" count=\"" + bin.count
+						+ "\" />");
+			}
+			stream.println("\t\t</Histogram>");
+			stream.println("\t</Level>");
+		}
+
+		stream.println("\t<Issues>");
+		for (IssueType type : IssueType.values())
+		{
+			for (Issue issue : issues.get(type))
+			{
+				stream.println("\t\t<Issue type=\"" + type + "\" level=\"" + issue.level + "\" row=\"" + issue.row
+						+ "\" col=\"" + issue.col + "\""
+						+ (issue.path != null ? " path=\"" + escape(issue.path) + "\"" : "")
+						+ (issue.message != null ? " message=\"" + escape(issue.message) + "\"" : "") + " />");
+			}
+		}
+		stream.println("\t</Issues>");
+		stream.println("</TilesetReport>");
+	}
+
+	private static String attributeName(IssueType type)
+	{
+		String name = type.name();
+		return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+	}
+
+	private static String escape(String value)
+	{
+		StringBuilder sb = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			switch (c)
+			{
+			case '&':
+				sb.append("&amp;");
+				break;
+			case '<':
+				sb.append("&lt;");
+				break;
+			case '>':
+				sb.append("&gt;");
+				break;
+			case '"':
+				sb.append("&quot;");
+				break;
+			default:
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Tile counts and elevation statistics for a single level.
+	 */
+	public static class Level
+	{
+		private final int level;
+		private final Histogram histogram;
+		private final long[] issueCounts = new long[IssueType.values().length];
+		private long expected;
+		private long present;
+		private double min = Double.NaN;
+		private double max = Double.NaN;
+
+		private Level(int level, Histogram histogram)
+		{
+			this.level = level;
+			this.histogram = histogram;
+		}
+
+		public int getLevel()
+		{
+			return level;
+		}
+
+		/**
+		 * @return Number of tiles that intersect the tileset's sector
+		 */
+		public long getExpected()
+		{
+			return expected;
+		}
+
+		/**
+		 * @return Number of tiles found within the tileset's extents
+		 */
+		public long getPresent()
+		{
+			return present;
+		}
+
+		/**
+		 * @return Number of issues of the given type in this level
+		 */
+		public long getIssueCount(IssueType type)
+		{
+			return issueCounts[type.ordinal()];
+		}
+
+		/**
+		 * @return Minimum elevation in this level, or NaN if unknown
+		 */
+		public double getMin()
+		{
+			return min;
+		}
+
+		/**
+		 * @return Maximum elevation in this level, or NaN if unknown
+		 */
+		public double getMax()
+		{
+			return max;
+		}
+
+		/**
+		 * @return Histogram of the elevations in this level, or null if the
+		 *         tileset doesn't contain elevations
+		 */
+		public Histogram getHistogram()
+		{
+			return histogram;
+		}
+	}
+
+	/**
+	 * An issue found with a tile.
+	 */
+	public static class Issue implements Comparable<Issue>
+	{
+		public final IssueType type;
+		public final int level;
+		public final int row;
+		public final int col;
+		public final String path;
+		public final String message;
+
+		public Issue(IssueType type, int level, int row, int col, String path, String message)
+		{
+			this.type = type;
+			this.level = level;
+			this.row = row;
+			this.col = col;
+			this.path = path;
+			this.message = message;
+		}
+
+		@Override
+		public int compareTo(Issue o)
+		{
+			if (level != o.level)
+				return level < o.level ? -1 : 1;
+			if (row != o.row)
+				return row < o.row ? -1 : 1;
+			if (col != o.col)
+				return col < o.col ? -1 : 1;
+			String p1 = path == null ? "" : path;
+			String p2 = o.path == null ? "" : o.path;
+			return p1.compareTo(p2);
+		}
+	}
+}
@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.scan;
+
+import java.io.File;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import au.gov.ga.worldwind.tiler.ribbon.DoubleConverter;
+import au.gov.ga.worldwind.tiler.util.LatLon;
+import au.gov.ga.worldwind.tiler.util.Sector;
+import au.gov.ga.worldwind.tiler.util.Util;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.converters.CommaSeparatedConverter;
+import com.beust.jcommander.converters.FileConverter;
+import com.beust.jcommander.converters.IntegerConverter;
+
+/**
+ * Contains the parameters for a {@link TilesetScanner} job.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class TilesetScanContext
+{
+	public final static String REPORT_FILENAME = "tileset_report.xml";
+	public final static String INDEX_FILENAME = "tiles.idx";
+
+	@Parameter(names = "-tileset", description = "Tileset directory or packed zip archive to scan", required = true, converter = FileConverter.class)
+	private File tileset;
+	@Parameter(names = "-sector", description = "Tileset extents: minLat,minLon,maxLat,maxLon", required = true, converter = CommaSeparatedConverter.class)
+	private List<String> sector = new ArrayList<String>();
+	@Parameter(names = "-origin", description = "Tile origin: lat,lon", converter = CommaSeparatedConverter.class)
+	private List<String> origin = Arrays.asList("-90", "-180");
+	@Parameter(names = "-lzts", description = "Level zero tile size in degrees (default: 36.0 for images, 20.0 for elevations)", converter = DoubleConverter.class)
+	private Double lzts;
+	@Parameter(names = "-levels", description = "Number of levels in the tileset (default: highest level found)", converter = IntegerConverter.class)
+	private Integer levels;
+	@Parameter(names = "-tilesize", description = "Width and height of the tiles (default: 512 for images, 150 for elevations)", converter = IntegerConverter.class)
+	private Integer tilesize;
+	@Parameter(names = "-format", description = "Tile file extension (default: bil for elevations, otherwise any)")
+	private String format;
+	@Parameter(names = "-elevations", description = "Scan elevation (BIL) tiles instead of image tiles")
+	private boolean elevations = false;
+	@Parameter(names = "-datatype", description = "Elevation data type: BYTE, INT16, INT32, FLOAT32 or FLOAT64")
+	private String dataType = "INT16";
+	@Parameter(names = "-bigendian", description = "Elevation tiles are big endian")
+	private boolean bigEndian = false;
+	@Parameter(names = "-nodata", description = "Elevation value that marks missing data", converter = DoubleConverter.class)
+	private Double nodata;
+	@Parameter(names = "-binsize", description = "Width of the elevation histogram bins before merging", converter = DoubleConverter.class)
+	private Double binSize = 1d;
+	@Parameter(names = "-bins", description = "Maximum number of elevation histogram bins reported per level")
+	private int histogramBins = 64;
+	@Parameter(names = "-threads", description = "The number of threads used to read tiles")
+	private int threadCount = Runtime.getRuntime().availableProcessors() * 2;
+	@Parameter(names = "-maxIssues", description = "Maximum number of issues of each type listed in the report")
+	private int maxIssues = 1000;
+	@Parameter(names = "-report", description = "Report output file (default: " + REPORT_FILENAME + " in the tileset)", converter = FileConverter.class)
+	private File reportFile;
+	@Parameter(names = "-index", description = "Tile index output file (default: " + INDEX_FILENAME + " in the tileset)", converter = FileConverter.class)
+	private File indexFile;
+
+	public File getTileset()
+	{
+		return tileset;
+	}
+
+	public Sector getSector()
+	{
+		double[] values = parseDoubles("-sector", sector, 4);
+		return new Sector(values[0], values[1], values[2], values[3]);
+	}
+
+	public LatLon getOrigin()
+	{
+		double[] values = parseDoubles("-origin", origin, 2);
+		return new LatLon(values[0], values[1]);
+	}
+
+	public double getLzts()
+	{
+		return lzts != null ? lzts : elevations ? 20d : 36d;
+	}
+
+	/**
+	 * @return Number of levels in the tileset, or null if it should be
+	 *         calculated from the tiles found
+	 */
+	public Integer getLevels()
+	{
+		return levels;
+	}
+
+	public int getTilesize()
+	{
+		return tilesize != null ? tilesize : elevations ? 150 : 512;
+	}
+
+	/**
+	 * @return Extension of the tiles to scan, or null to scan all tiles
+	 */
+	public String getFormat()
+	{
+		if (!Util.isBlank(format))
+			return format.startsWith(".") ? format.substring(1).toLowerCase() : format.toLowerCase();
+		return elevations ? "bil" : null;
+	}
+
+	public boolean isElevations()
+	{
+		return elevations;
+	}
+
+	public ElevationDataType getDataType()
+	{
+		try
+		{
+			return ElevationDataType.valueOf(dataType.toUpperCase());
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new ParameterException("Unknown data type: " + dataType);
+		}
+	}
+
+	public ByteOrder getByteOrder()
+	{
+		return bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+	}
+
+	/**
+	 * @return Elevation value that marks missing data, or null if there is none
+	 */
+	public Double getNodata()
+	{
+		return nodata;
+	}
+
+	public double getBinSize()
+	{
+		return binSize;
+	}
+
+	public int getHistogramBins()
+	{
+		return histogramBins;
+	}
+
+	public int getThreadCount()
+	{
+		return Math.max(1, threadCount);
+	}
+
+	public int getMaxIssues()
+	{
+		return maxIssues;
+	}
+
+	public File getReportFile()
+	{
+		return reportFile != null ? reportFile : defaultOutputFile(REPORT_FILENAME, "_report.xml");
+	}
+
+	public File getIndexFile()
+	{
+		return indexFile != null ? indexFile : defaultOutputFile(INDEX_FILENAME, ".idx");
+	}
+
+	/**
+	 * Output files are written inside tileset directories, or next to packed
+	 * archives.
+	 */
+	private File defaultOutputFile(String filename, String archiveSuffix)
+	{
+		if (tileset.isDirectory())
+			return new File(tileset, filename);
+		return new File(tileset.getAbsoluteFile().getParentFile(), Util.stripExtension(tileset.getName())
+				+ archiveSuffix);
+	}
+
+	private static double[] parseDoubles(String name, List<String> strings, int count)
+	{
+		if (strings == null || strings.size() != count)
+			throw new ParameterException(name + " requires " + count + " comma separated values");
+
+		double[] values = new double[count];
+		for (int i = 0; i < count; i++)
+		{
+			try
+			{
+				values[i] = Double.parseDouble(strings.get(i).trim());
+			}
+			catch (NumberFormatException e)
+			{
+				throw new ParameterException("Invalid " + name + " value: " + strings.get(i));
+			}
+		}
+		return values;
+	}
+}
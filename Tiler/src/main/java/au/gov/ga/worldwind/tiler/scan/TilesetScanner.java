@@ -0,0 +1,404 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.scan;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import au.gov.ga.worldwind.tiler.application.Console.ConsoleProgressReporter;
+import au.gov.ga.worldwind.tiler.scan.TilesetReader.TileGroup;
+import au.gov.ga.worldwind.tiler.scan.TilesetReport.IssueType;
+import au.gov.ga.worldwind.tiler.util.ProgressReporter;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.ParameterException;
+
+/**
+ * Offline scanner that validates a tileset produced by the Tiler, and
+ * calculates statistics about its contents.
+ * <p/>
+ * Every tile is read on a pool of {@link TilesetScanContext#getThreadCount()}
+ * threads (each thread reads a row of tiles at a time, see
+ * {@link TilesetReader}). The scanner checks that each tile is within the
+ * tileset's extents and can be decoded with the expected size, flags blank
+ * tiles and tiles with identical contents, and calculates the min/max and
+ * histogram of each level of elevation tilesets. Once all tiles are read, the
+ * tiles that exist are compared against the tiles expected from the
+ * sector/origin/lzts, and against the levels above and below.
+ * <p/>
+ * The results are written as an XML report, and a {@link TileIndex} of the
+ * tiles that exist is written so that tile requesters can skip tiles that
+ * don't exist.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class TilesetScanner
+{
+	public static void main(String[] args) throws Exception
+	{
+		TilesetScanContext context = new TilesetScanContext();
+		JCommander jCommander = null;
+		try
+		{
+			jCommander = new JCommander();
+			jCommander.addObject(context);
+			jCommander.parse(args);
+			context.getSector();
+			context.getOrigin();
+			context.getDataType();
+		}
+		catch (ParameterException e)
+		{
+			System.out.println(e.getLocalizedMessage());
+			jCommander.usage();
+			return;
+		}
+
+		ConsoleProgressReporter reporter = new ConsoleProgressReporter();
+		TilesetReport report = new TilesetScanner(context, reporter).scan();
+		reporter.printNewLineIfNeeded();
+
+		report.write(context.getReportFile());
+		report.getIndex().write(context.getIndexFile());
+
+		for (IssueType type : IssueType.values())
+		{
+			long count = report.getIssueCount(type);
+			if (count > 0)
+			{
+				reporter.getLogger().info(type + " tiles: " + count);
+			}
+		}
+		reporter.getLogger().info("Report written to " + context.getReportFile());
+		reporter.getLogger().info("Tile index written to " + context.getIndexFile());
+
+		System.exit(report.hasErrors() ? 1 : 0);
+	}
+
+	private final TilesetScanContext context;
+	private final ProgressReporter progress;
+	private final AtomicInteger scanned = new AtomicInteger();
+	private int tileCount;
+
+	public TilesetScanner(TilesetScanContext context, ProgressReporter progress)
+	{
+		if (context == null)
+		{
+			throw new IllegalArgumentException("A context is required");
+		}
+		this.context = context;
+		this.progress = progress;
+	}
+
+	/**
+	 * Scan the tileset.
+	 * 
+	 * @return Report of the scan results
+	 * @throws IOException
+	 *             If the tileset can't be listed
+	 */
+	public TilesetReport scan() throws IOException
+	{
+		progress.getLogger().info("Listing tiles in " + context.getTileset());
+
+		TilesetReader reader = new TilesetReader(context.getTileset());
+		ExecutorService executor = null;
+		try
+		{
+			Integer levels = context.getLevels();
+			int levelCount = levels != null ? levels : reader.getMaxLevel() + 1;
+			final TilesetReport report = new TilesetReport(context, levelCount);
+			final List<TileGroup> groups = reader.getGroups();
+			tileCount = reader.getTileCount();
+			scanned.set(0);
+
+			progress.getLogger().info("Scanning " + tileCount + " tiles in " + levelCount + " levels");
+
+			int threadCount = Math.min(context.getThreadCount(), Math.max(1, groups.size()));
+			executor = Executors.newFixedThreadPool(threadCount);
+			final AtomicInteger next = new AtomicInteger();
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int i = 0; i < threadCount; i++)
+			{
+				futures.add(executor.submit(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						MessageDigest digest = createDigest();
+						int index;
+						while (!progress.isCancelled() && (index = next.getAndIncrement()) < groups.size())
+						{
+							scanGroup(groups.get(index), report, digest);
+						}
+					}
+				}));
+			}
+
+			for (Future<?> future : futures)
+			{
+				try
+				{
+					future.get();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new IOException("Scan interrupted");
+				}
+				catch (ExecutionException e)
+				{
+					throw new IOException("Error scanning tileset", e.getCause());
+				}
+			}
+
+			report.finish();
+			progress.getLogger().info("Scan " + (progress.isCancelled() ? "cancelled" : "complete"));
+			progress.done();
+			return report;
+		}
+		finally
+		{
+			if (executor != null)
+			{
+				executor.shutdownNow();
+			}
+			reader.close();
+		}
+	}
+
+	private void scanGroup(TileGroup group, TilesetReport report, MessageDigest digest)
+	{
+		String format = context.getFormat();
+		IOException openException = null;
+		try
+		{
+			group.open();
+		}
+		catch (IOException e)
+		{
+			openException = e;
+		}
+
+		try
+		{
+			for (TileEntry entry : group.getEntries())
+			{
+				if (progress.isCancelled())
+					break;
+
+				if ((format == null || format.equals(entry.getExtension())) && report.checkLocation(entry))
+				{
+					TileResult result;
+					if (openException != null)
+					{
+						result = new TileResult("Could not open container: " + openException.getMessage());
+					}
+					else
+					{
+						try
+						{
+							result = analyze(entry, group.read(entry), digest);
+						}
+						catch (IOException e)
+						{
+							result = new TileResult("Could not read tile: " + e.getMessage());
+						}
+					}
+					report.addTile(entry, result);
+				}
+
+				int count = scanned.incrementAndGet();
+				synchronized (progress)
+				{
+					progress.progress(count / (double) tileCount);
+				}
+			}
+		}
+		finally
+		{
+			group.close();
+		}
+	}
+
+	/**
+	 * Analyze the contents of a single tile. Only the hash is calculated for
+	 * tiles that aren't elevations or readable images (such as shapefile
+	 * zips).
+	 * 
+	 * @param entry
+	 *            Tile being analyzed
+	 * @param data
+	 *            Tile contents
+	 * @param digest
+	 *            Digest used to calculate the hash of the tile contents
+	 * @return Scan results
+	 */
+	protected TileResult analyze(TileEntry entry, byte[] data, MessageDigest digest)
+	{
+		TileResult result = new TileResult(null);
+		result.hash = toHex(digest.digest(data));
+
+		if (context.isElevations())
+		{
+			analyzeElevations(data, result);
+		}
+		else if (ImageIO.getImageReadersBySuffix(entry.getExtension()).hasNext())
+		{
+			analyzeImage(data, result);
+		}
+		return result;
+	}
+
+	private void analyzeElevations(byte[] data, TileResult result)
+	{
+		ElevationDataType type = context.getDataType();
+		int tilesize = context.getTilesize();
+		int count = tilesize * tilesize;
+		int expectedLength = count * type.getSize();
+		if (data.length != expectedLength)
+		{
+			result.problem = "Invalid size: " + data.length + " bytes (expected " + expectedLength + ")";
+			return;
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(data).order(context.getByteOrder());
+		Double nodata = context.getNodata();
+		double nodataValue = nodata != null ? type.cast(nodata) : Double.NaN;
+
+		Histogram histogram = new Histogram(context.getBinSize());
+		double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+		double first = type.get(buffer, 0);
+		boolean constant = true;
+		for (int i = 0; i < count; i++)
+		{
+			double value = type.get(buffer, i);
+			constant &= value == first;
+			if (Double.isNaN(value) || (nodata != null && value == nodataValue))
+				continue;
+
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+			histogram.add(value);
+		}
+
+		result.blank = constant || histogram.getTotal() == 0;
+		if (histogram.getTotal() > 0)
+		{
+			result.min = min;
+			result.max = max;
+			result.histogram = histogram;
+		}
+	}
+
+	private void analyzeImage(byte[] data, TileResult result)
+	{
+		BufferedImage image = null;
+		try
+		{
+			image = ImageIO.read(new ByteArrayInputStream(data));
+		}
+		catch (Exception e)
+		{
+		}
+
+		if (image == null)
+		{
+			result.problem = "Could not decode image";
+			return;
+		}
+
+		int tilesize = context.getTilesize();
+		if (image.getWidth() != tilesize || image.getHeight() != tilesize)
+		{
+			result.problem =
+					"Invalid dimensions: " + image.getWidth() + "x" + image.getHeight() + " (expected " + tilesize
+							+ "x" + tilesize + ")";
+			return;
+		}
+
+		int width = image.getWidth();
+		int[] row = new int[width];
+		int first = image.getRGB(0, 0);
+		boolean constant = true;
+		boolean transparent = image.getColorModel().hasAlpha();
+		for (int y = 0; y < image.getHeight() && (constant || transparent); y++)
+		{
+			image.getRGB(0, y, width, 1, row, 0, width);
+			for (int x = 0; x < width; x++)
+			{
+				constant &= row[x] == first;
+				transparent &= (row[x] >>> 24) == 0;
+			}
+		}
+		result.blank = constant || transparent;
+	}
+
+	private static MessageDigest createDigest()
+	{
+		try
+		{
+			return MessageDigest.getInstance("MD5");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes)
+	{
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes)
+		{
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+			sb.append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Results of scanning a single tile.
+	 */
+	protected static class TileResult
+	{
+		/** Reason the tile is invalid, or null if it is valid */
+		protected String problem;
+		protected boolean blank;
+		protected String hash;
+		protected double min = Double.NaN;
+		protected double max = Double.NaN;
+		protected Histogram histogram;
+
+		protected TileResult(String problem)
+		{
+			this.problem = problem;
+		}
+	}
+}
@@ -0,0 +1,660 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.shapefile;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.shapefile.ShapefileDataStoreFactory;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.store.ContentFeatureCollection;
+import org.geotools.data.store.ContentFeatureSource;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import au.gov.ga.worldwind.tiler.util.LatLon;
+import au.gov.ga.worldwind.tiler.util.ProgressReporter;
+import au.gov.ga.worldwind.tiler.util.Sector;
+import au.gov.ga.worldwind.tiler.util.Util;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.TopologyException;
+import com.vividsolutions.jts.geom.util.LineStringExtracter;
+import com.vividsolutions.jts.geom.util.PolygonExtracter;
+import com.vividsolutions.jts.operation.linemerge.LineMerger;
+import com.vividsolutions.jts.operation.union.UnaryUnionOp;
+import com.vividsolutions.jts.simplify.DouglasPeuckerSimplifier;
+import com.vividsolutions.jts.simplify.TopologyPreservingSimplifier;
+
+/**
+ * Shapefile tiler that recursively subdivides a quadtree from level zero down
+ * to the requested level, only creating tiles that intersect the shapefile's
+ * geometry.
+ * <p/>
+ * Unlike the {@link ShapefileTiler}, which allocates every tile in the
+ * shapefile's bounding rectangle up front, each quadtree node clips its
+ * geometry against its own sector (using JTS) on a worker pool, and only
+ * passes the clipped geometry on to the children it intersects. Tiles at the
+ * deepest level are written to disk as soon as they are complete. Coarser
+ * levels (down to the minimum level) are built by merging and simplifying the
+ * geometry of a node's children once all of them have finished, after which
+ * the children's geometry is released.
+ * <p/>
+ * The output is written using the same {@link ShapefileTile}/
+ * {@link TileRecord}/{@link Attributes} model, and the same
+ * <code>level/row/row_col.zip</code> directory layout, as the
+ * {@link ShapefileTiler}.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class QuadtreeShapefileTiler
+{
+	/**
+	 * Default number of pixels across a tile used to calculate the
+	 * simplification tolerance when merging children into coarser levels.
+	 */
+	public final static int DEFAULT_SIMPLIFY_RESOLUTION = 512;
+
+	private final File output;
+	private final int minLevel;
+	private final int maxLevel;
+	private final double lzts;
+	private final LatLon origin;
+	private final int simplifyResolution;
+	private final ProgressReporter progress;
+
+	private final GeometryFactory geometryFactory = new GeometryFactory();
+	private SimpleFeatureType schema;
+	private boolean polygon;
+
+	private ExecutorService executor;
+	private final AtomicInteger pendingTasks = new AtomicInteger();
+	private final CountDownLatch finished = new CountDownLatch(1);
+	private final AtomicInteger rootsCompleted = new AtomicInteger();
+	private int rootCount;
+	private volatile Throwable failure;
+
+	/**
+	 * Tile the given shapefile at a single level, using a worker thread per
+	 * available processor.
+	 * 
+	 * @param input
+	 *            Input shapefile
+	 * @param output
+	 *            Output directory
+	 * @param level
+	 *            Level at which to tile
+	 * @param lzts
+	 *            Level zero tile size (in degrees)
+	 * @param origin
+	 *            Origin to begin tiling at
+	 * @param progress
+	 *            Object to report progress
+	 */
+	public static void tile(File input, File output, int level, double lzts, LatLon origin, ProgressReporter progress)
+	{
+		tile(input, output, level, level, lzts, origin, Runtime.getRuntime().availableProcessors(), progress);
+	}
+
+	/**
+	 * Tile the given shapefile at all levels between minLevel and maxLevel
+	 * (inclusive).
+	 * 
+	 * @param input
+	 *            Input shapefile
+	 * @param output
+	 *            Output directory
+	 * @param minLevel
+	 *            Coarsest level to generate
+	 * @param maxLevel
+	 *            Finest level to generate
+	 * @param lzts
+	 *            Level zero tile size (in degrees)
+	 * @param origin
+	 *            Origin to begin tiling at
+	 * @param threadCount
+	 *            Number of worker threads used to clip and write tiles
+	 * @param progress
+	 *            Object to report progress
+	 */
+	public static void tile(File input, File output, int minLevel, int maxLevel, double lzts, LatLon origin,
+			int threadCount, ProgressReporter progress)
+	{
+		if (minLevel < 0 || maxLevel < minLevel)
+			throw new IllegalArgumentException("Invalid level range: " + minLevel + " to " + maxLevel);
+
+		QuadtreeShapefileTiler tiler =
+				new QuadtreeShapefileTiler(output, minLevel, maxLevel, lzts, origin, DEFAULT_SIMPLIFY_RESOLUTION,
+						progress);
+		tiler.run(input, Math.max(1, threadCount));
+	}
+
+	protected QuadtreeShapefileTiler(File output, int minLevel, int maxLevel, double lzts, LatLon origin,
+			int simplifyResolution, ProgressReporter progress)
+	{
+		this.output = output;
+		this.minLevel = minLevel;
+		this.maxLevel = maxLevel;
+		this.lzts = lzts;
+		this.origin = origin;
+		this.simplifyResolution = simplifyResolution;
+		this.progress = progress;
+	}
+
+	protected void run(File input, int threadCount)
+	{
+		ShapefileDataStore dataStore = null;
+		try
+		{
+			progress.getLogger().info("Parsing " + input);
+
+			ShapefileDataStoreFactory factory = new ShapefileDataStoreFactory();
+			dataStore = (ShapefileDataStore) factory.createDataStore(input.toURI().toURL());
+			ContentFeatureSource featureSource = dataStore.getFeatureSource();
+			schema = dataStore.getSchema();
+
+			ReferencedEnvelope bounds = featureSource.getBounds();
+			Sector sector = new Sector(bounds.getMinY(), bounds.getMinX(), bounds.getMaxY(), bounds.getMaxX());
+
+			progress.getLogger().info("Reading records");
+			List<Shape> shapes = readShapes(featureSource.getFeatures());
+			if (shapes == null)
+				return;
+
+			//create the level zero nodes that intersect the shapefile's bounds
+			int minX = Util.getTileX(sector.getMinLongitude() + 1e-10, origin, 0, lzts);
+			int maxX = Util.getTileX(sector.getMaxLongitude() - 1e-10, origin, 0, lzts);
+			int minY = Util.getTileY(sector.getMinLatitude() + 1e-10, origin, 0, lzts);
+			int maxY = Util.getTileY(sector.getMaxLatitude() - 1e-10, origin, 0, lzts);
+
+			List<Node> roots = new ArrayList<Node>();
+			for (int y = minY; y <= maxY; y++)
+			{
+				for (int x = minX; x <= maxX; x++)
+				{
+					Node root = new Node(null, 0, x, y);
+					List<Shape> intersecting = new ArrayList<Shape>();
+					for (Shape shape : shapes)
+					{
+						if (root.envelope.intersects(shape.geometry.getEnvelopeInternal()))
+							intersecting.add(shape);
+					}
+					if (!intersecting.isEmpty())
+					{
+						root.input = intersecting;
+						roots.add(root);
+					}
+				}
+			}
+			shapes = null;
+			rootCount = roots.size();
+
+			progress.getLogger().info("Tiling " + rootCount + " level 0 tiles on " + threadCount + " threads");
+			executor = Executors.newFixedThreadPool(threadCount);
+			//hold a task count while submitting, so that roots finishing early don't signal completion
+			pendingTasks.incrementAndGet();
+			for (Node root : roots)
+			{
+				submit(root);
+			}
+			roots = null;
+			if (pendingTasks.decrementAndGet() == 0)
+			{
+				finished.countDown();
+			}
+
+			finished.await();
+
+			if (failure != null)
+			{
+				progress.getLogger().log(Level.SEVERE, "Error tiling shapefile", failure);
+			}
+			else if (!progress.isCancelled())
+			{
+				progress.done();
+			}
+		}
+		catch (Exception e)
+		{
+			progress.getLogger().log(Level.SEVERE, "Error tiling shapefile", e);
+			e.printStackTrace();
+		}
+		finally
+		{
+			if (executor != null)
+				executor.shutdownNow();
+			if (dataStore != null)
+				dataStore.dispose();
+		}
+	}
+
+	protected List<Shape> readShapes(ContentFeatureCollection featureCollection)
+	{
+		List<Shape> shapes = new ArrayList<Shape>();
+		boolean anyPolygons = false;
+		Boolean lastPolygon = null;
+		int shapeId = 0;
+
+		SimpleFeatureIterator features = featureCollection.features();
+		try
+		{
+			while (features.hasNext())
+			{
+				if (progress.isCancelled())
+					return null;
+
+				SimpleFeature feature = features.next();
+				Object geometry = feature.getDefaultGeometry();
+				boolean isPolygon = geometry instanceof MultiPolygon || geometry instanceof Polygon;
+				boolean isLine = geometry instanceof Geometry && isLinear((Geometry) geometry);
+
+				if (!isPolygon && !isLine)
+				{
+					progress.getLogger().severe("Unsupported shape type: " + geometry);
+					continue;
+				}
+
+				anyPolygons |= isPolygon;
+				if (lastPolygon != null && isPolygon != lastPolygon.booleanValue())
+				{
+					progress.getLogger().warning("Polygons mixed with non-polygons");
+				}
+				lastPolygon = isPolygon;
+
+				Attributes attributes = new Attributes(schema);
+				attributes.loadAttributes(feature);
+				shapes.add(new Shape(shapeId++, attributes, (Geometry) geometry));
+			}
+		}
+		catch (Exception e)
+		{
+			progress.getLogger().log(Level.SEVERE, "Error reading shapefile records", e);
+			return null;
+		}
+		finally
+		{
+			features.close();
+		}
+
+		polygon = anyPolygons;
+		return shapes;
+	}
+
+	protected static boolean isLinear(Geometry geometry)
+	{
+		return !geometry.isEmpty() && geometry.getDimension() == 1;
+	}
+
+	protected void submit(final Node node)
+	{
+		pendingTasks.incrementAndGet();
+		executor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					if (failure == null && !progress.isCancelled())
+						process(node);
+				}
+				catch (Throwable t)
+				{
+					failure = t;
+				}
+				finally
+				{
+					if (pendingTasks.decrementAndGet() == 0)
+						finished.countDown();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Clip the node's input geometry against the node's sector, and either
+	 * write the node (if it is at the finest level) or pass the clipped
+	 * geometry on to the intersecting children.
+	 */
+	protected void process(Node node) throws Exception
+	{
+		List<Shape> clipped = clip(node.input, node);
+		node.input = null;
+
+		if (clipped.isEmpty())
+		{
+			complete(node, clipped);
+			return;
+		}
+
+		if (node.level >= maxLevel)
+		{
+			if (node.level >= minLevel)
+				write(node, clipped);
+			complete(node, clipped);
+			return;
+		}
+
+		List<Node> children = new ArrayList<Node>(4);
+		for (int i = 0; i < 4; i++)
+		{
+			Node child = new Node(node, node.level + 1, node.col * 2 + (i % 2), node.row * 2 + (i / 2));
+			List<Shape> intersecting = new ArrayList<Shape>();
+			for (Shape shape : clipped)
+			{
+				if (child.envelope.intersects(shape.geometry.getEnvelopeInternal()))
+					intersecting.add(shape);
+			}
+			if (!intersecting.isEmpty())
+			{
+				child.input = intersecting;
+				children.add(child);
+			}
+		}
+
+		if (children.isEmpty())
+		{
+			complete(node, new ArrayList<Shape>());
+			return;
+		}
+
+		//set the count before submitting, so that a child cannot complete the node early
+		node.remaining.set(children.size());
+		for (Node child : children)
+		{
+			submit(child);
+		}
+	}
+
+	/**
+	 * Called when a node (and all of its children) have finished. Passes the
+	 * node's geometry up to its parent if the parent is to be written, and
+	 * completes the parent if this was the parent's last outstanding child.
+	 */
+	protected void complete(Node node, List<Shape> shapes) throws Exception
+	{
+		Node parent = node.parent;
+		if (parent == null)
+		{
+			progress.progress(rootsCompleted.incrementAndGet() / (double) rootCount);
+			return;
+		}
+
+		boolean parentWritten = parent.level >= minLevel;
+		if (parentWritten && !shapes.isEmpty())
+		{
+			synchronized (parent.childShapes)
+			{
+				parent.childShapes.addAll(shapes);
+			}
+		}
+
+		if (parent.remaining.decrementAndGet() == 0)
+		{
+			List<Shape> merged = new ArrayList<Shape>();
+			if (parentWritten)
+			{
+				synchronized (parent.childShapes)
+				{
+					merged = merge(parent.childShapes, parent);
+					parent.childShapes.clear();
+				}
+				write(parent, merged);
+			}
+			complete(parent, merged);
+		}
+	}
+
+	/**
+	 * Clip the given shapes to the node's sector. Shapes that are fully within
+	 * the sector are returned unchanged.
+	 */
+	protected List<Shape> clip(List<Shape> shapes, Node node)
+	{
+		List<Shape> clipped = new ArrayList<Shape>(shapes.size());
+		Geometry rectangle = null;
+		for (Shape shape : shapes)
+		{
+			Envelope shapeEnvelope = shape.geometry.getEnvelopeInternal();
+			if (node.envelope.contains(shapeEnvelope))
+			{
+				clipped.add(shape);
+				continue;
+			}
+			if (!node.envelope.intersects(shapeEnvelope))
+			{
+				continue;
+			}
+
+			if (rectangle == null)
+				rectangle = geometryFactory.toGeometry(node.envelope);
+
+			Geometry intersection;
+			try
+			{
+				intersection = shape.geometry.intersection(rectangle);
+			}
+			catch (TopologyException e)
+			{
+				//invalid input polygons can cause robustness failures; buffering by 0 repairs most of them
+				intersection = shape.geometry.buffer(0).intersection(rectangle);
+			}
+
+			Geometry extracted = extract(intersection);
+			if (!extracted.isEmpty())
+				clipped.add(new Shape(shape.shapeId, shape.attributes, extracted));
+		}
+		return clipped;
+	}
+
+	/**
+	 * Merge the shapes of a node's children, grouped by shape id, and simplify
+	 * them to the node's resolution.
+	 */
+	protected List<Shape> merge(List<Shape> childShapes, Node node)
+	{
+		Map<Integer, List<Geometry>> geometries = new LinkedHashMap<Integer, List<Geometry>>();
+		Map<Integer, Attributes> attributes = new LinkedHashMap<Integer, Attributes>();
+		for (Shape shape : childShapes)
+		{
+			List<Geometry> list = geometries.get(shape.shapeId);
+			if (list == null)
+			{
+				list = new ArrayList<Geometry>();
+				geometries.put(shape.shapeId, list);
+				attributes.put(shape.shapeId, shape.attributes);
+			}
+			list.add(shape.geometry);
+		}
+
+		double tolerance = node.envelope.getWidth() / simplifyResolution;
+		List<Shape> merged = new ArrayList<Shape>(geometries.size());
+		for (Map.Entry<Integer, List<Geometry>> entry : geometries.entrySet())
+		{
+			List<Geometry> list = entry.getValue();
+			Geometry geometry;
+			if (polygon)
+			{
+				Geometry union;
+				try
+				{
+					union = list.size() == 1 ? list.get(0) : UnaryUnionOp.union(list, geometryFactory);
+				}
+				catch (TopologyException e)
+				{
+					progress.getLogger().warning("Could not union shape " + entry.getKey() + ": " + e.getMessage());
+					union = geometryFactory.buildGeometry(list);
+				}
+				geometry = TopologyPreservingSimplifier.simplify(union, tolerance);
+			}
+			else
+			{
+				LineMerger merger = new LineMerger();
+				merger.add(list);
+				@SuppressWarnings("unchecked")
+				List<Geometry> lines = new ArrayList<Geometry>(merger.getMergedLineStrings());
+				geometry = DouglasPeuckerSimplifier.simplify(geometryFactory.buildGeometry(lines), tolerance);
+			}
+
+			geometry = extract(geometry);
+			if (!geometry.isEmpty())
+				merged.add(new Shape(entry.getKey(), attributes.get(entry.getKey()), geometry));
+		}
+		return merged;
+	}
+
+	/**
+	 * Extract the polygonal or linear components (depending on the shapefile
+	 * type) of the given geometry, discarding any lower dimension components
+	 * created by clipping.
+	 */
+	@SuppressWarnings("unchecked")
+	protected Geometry extract(Geometry geometry)
+	{
+		List<Geometry> components;
+		if (polygon)
+			components = PolygonExtracter.getPolygons(geometry);
+		else
+			components = LineStringExtracter.getLines(geometry);
+		if (components.size() == 1)
+			return components.get(0);
+		return geometryFactory.buildGeometry(components);
+	}
+
+	/**
+	 * Convert the shapes to {@link TileRecord}s and save them to the node's
+	 * tile zip file.
+	 */
+	protected void write(Node node, List<Shape> shapes) throws Exception
+	{
+		if (shapes.isEmpty())
+			return;
+
+		ShapefileTile tile = new ShapefileTile(node.sector, node.col, node.row);
+		for (Shape shape : shapes)
+		{
+			for (int i = 0; i < shape.geometry.getNumGeometries(); i++)
+			{
+				Geometry part = shape.geometry.getGeometryN(i);
+				if (part instanceof Polygon)
+				{
+					Polygon p = (Polygon) part;
+					//shell coordinates are closed by ShapefileTile.writeFeatures; holes are not
+					Coordinate[] shell = p.getExteriorRing().getCoordinates();
+					TileRecord record =
+							new TileRecord(shape.shapeId, false, shape.attributes, new ArrayList<Coordinate>(
+									Arrays.asList(shell).subList(0, shell.length - 1)));
+					for (int j = 0; j < p.getNumInteriorRing(); j++)
+					{
+						Coordinate[] hole = p.getInteriorRingN(j).getCoordinates();
+						record.holes.add(new TileRecord(-1, false, shape.attributes, new ArrayList<Coordinate>(
+								Arrays.asList(hole))));
+					}
+					tile.addRecord(record);
+				}
+				else if (part instanceof LineString)
+				{
+					Coordinate[] line = part.getCoordinates();
+					tile.addRecord(new TileRecord(shape.shapeId, false, shape.attributes, new ArrayList<Coordinate>(
+							Arrays.asList(line))));
+				}
+			}
+		}
+
+		File rowDir = new File(output, String.valueOf(node.level));
+		rowDir = new File(rowDir, Util.paddedInt(node.row, 4));
+		if (!rowDir.exists())
+			rowDir.mkdirs();
+
+		File dst = new File(rowDir, Util.paddedInt(node.row, 4) + "_" + Util.paddedInt(node.col, 4) + ".zip");
+		ShapefileTiler.saveShapefileZip(tile, schema, geometryFactory, dst, polygon, progress);
+	}
+
+	/**
+	 * Geometry (or part of the geometry) of a single shapefile feature.
+	 */
+	protected static class Shape
+	{
+		public final int shapeId;
+		public final Attributes attributes;
+		public final Geometry geometry;
+
+		public Shape(int shapeId, Attributes attributes, Geometry geometry)
+		{
+			this.shapeId = shapeId;
+			this.attributes = attributes;
+			this.geometry = geometry;
+		}
+	}
+
+	/**
+	 * Node in the tile quadtree.
+	 */
+	protected class Node
+	{
+		public final Node parent;
+		public final int level;
+		public final int col;
+		public final int row;
+		public final Sector sector;
+		public final Envelope envelope;
+
+		/**
+		 * Unclipped input geometry; released once the node has been clipped.
+		 */
+		public List<Shape> input;
+		/**
+		 * Number of children that have not yet completed.
+		 */
+		public final AtomicInteger remaining = new AtomicInteger();
+		/**
+		 * Geometry collected from completed children, to be merged into this
+		 * node.
+		 */
+		public final List<Shape> childShapes = new ArrayList<Shape>();
+
+		public Node(Node parent, int level, int col, int row)
+		{
+			this.parent = parent;
+			this.level = level;
+			this.col = col;
+			this.row = row;
+
+			double tilesizedegrees = Math.pow(0.5, level) * lzts;
+			double lat1 = origin.getLatitude() + row * tilesizedegrees;
+			double lon1 = origin.getLongitude() + col * tilesizedegrees;
+			this.sector = new Sector(lat1, lon1, lat1 + tilesizedegrees, lon1 + tilesizedegrees);
+			this.envelope = new Envelope(lon1, lon1 + tilesizedegrees, lat1, lat1 + tilesizedegrees);
+		}
+	}
+}
@@ -210,6 +210,19 @@ public class ShapefileTile
 		}
 	}
 
+	/**
+	 * Add a complete record to this tile. Used by tilers that clip geometry
+	 * themselves, rather than through the entry/exit model of
+	 * {@link #addCoordinate(int, Coordinate, boolean, boolean, Attributes)}.
+	 *
+	 * @param record
+	 *            Record to add
+	 */
+	public void addRecord(TileRecord record)
+	{
+		records.add(record);
+	}
+
 	/**
 	 * Mark this tile as fully filled (ie inside a polygon).
 	 * 
@@ -41,6 +41,6 @@ public class Tester
 		//File input = input1;
 
 		ProgressReporter progress = new Console.ConsoleProgressReporter();
-		ShapefileTiler.tile(input, output, level, lzts, origin, progress);
+		QuadtreeShapefileTiler.tile(input, output, level, lzts, origin, progress);
 	}
 }
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.ribbon;
+
+import java.io.File;
+
+/**
+ * Benchmark that tiles a synthetic long ribbon image (similar in shape to an
+ * AEM flight line curtain) with different thread counts.
+ * <p/>
+ * Usage: <code>RibbonTilerBenchmark [width] [height] [format]</code>
+ */
+public class RibbonTilerBenchmark
+{
+	public static void main(String[] args) throws Exception
+	{
+		int width = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int height = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+		String format = args.length > 2 ? args[2] : "jpg";
+
+		int processors = Runtime.getRuntime().availableProcessors();
+		int[] threadCounts = processors > 1 ? new int[] { 1, processors } : new int[] { 1 };
+
+		System.out.println("Tiling synthetic " + width + "x" + height + " " + format + " ribbon");
+		for (int threads : threadCounts)
+		{
+			File output = File.createTempFile("ribbonbenchmark", "");
+			output.delete();
+			output.mkdirs();
+
+			RibbonTilingContext context = new RibbonTilingContext();
+			context.setOutputLocation(output);
+			context.setTilesetName("ribbon");
+			context.setFormat(format);
+			context.setThreadCount(threads);
+			context.setHideStdOut(true);
+			context.setSuppressTilingLog(true);
+			context.setSuppressLayerDefinition(true);
+
+			long start = System.nanoTime();
+			new RibbonTiler().tileRibbon(context, new SyntheticRibbonSource(), width, height);
+			long millis = (System.nanoTime() - start) / 1000000;
+
+			System.out.println(threads + " thread(s): " + millis + "ms (" + context.getNumLevels() + " levels)");
+			delete(output);
+		}
+	}
+
+	private static void delete(File file)
+	{
+		if (file.isDirectory())
+		{
+			for (File child : file.listFiles())
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.ribbon;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link RibbonTiler} class
+ */
+public class RibbonTilerTest
+{
+	private File directory;
+
+	@Before
+	public void setup() throws IOException
+	{
+		directory = File.createTempFile("ribbon", "");
+		directory.delete();
+		directory.mkdirs();
+	}
+
+	@After
+	public void cleanup()
+	{
+		delete(directory);
+	}
+
+	@Test
+	public void testAllLevelsAreCreated() throws Exception
+	{
+		RibbonTilingContext context = createContext("ribbon", 4, "png", 64);
+		new RibbonTiler().tileRibbon(context, new SyntheticRibbonSource(), 3000, 200);
+
+		File root = context.getTilesetRoot();
+		int levels = context.getNumLevels();
+		assertTrue(levels > 1);
+
+		//top level: 24 columns x 2 rows of 128px tiles
+		File top = new File(root, String.valueOf(levels - 1));
+		assertEquals(48, countFiles(top));
+		BufferedImage last = ImageIO.read(new File(top, "0001/0001_0023.png"));
+		assertEquals(3000 - 23 * 128, last.getWidth());
+		assertEquals(200 - 128, last.getHeight());
+
+		for (int level = 0; level < levels; level++)
+		{
+			assertTrue(countFiles(new File(root, String.valueOf(level))) > 0);
+		}
+	}
+
+	@Test
+	public void testOutputIsIndependentOfThreadCount() throws Exception
+	{
+		RibbonTilingContext serial = createContext("serial", 1, "jpg", 0);
+		new RibbonTiler().tileRibbon(serial, new SyntheticRibbonSource(), 3000, 200);
+
+		RibbonTilingContext parallel = createContext("parallel", 8, "jpg", 64);
+		new RibbonTiler().tileRibbon(parallel, new SyntheticRibbonSource(), 3000, 200);
+
+		assertEquals(serial.getNumLevels(), parallel.getNumLevels());
+		for (int level = 0; level < serial.getNumLevels(); level++)
+		{
+			File serialLevel = new File(serial.getTilesetRoot(), String.valueOf(level));
+			File parallelLevel = new File(parallel.getTilesetRoot(), String.valueOf(level));
+			assertEquals(countFiles(serialLevel), countFiles(parallelLevel));
+			for (File rowDir : serialLevel.listFiles())
+			{
+				for (File file : rowDir.listFiles())
+				{
+					BufferedImage expected = ImageIO.read(file);
+					BufferedImage actual = ImageIO.read(new File(new File(parallelLevel, rowDir.getName()), file.getName()));
+					assertArrayEquals(file.getPath(), pixels(expected), pixels(actual));
+				}
+			}
+		}
+	}
+
+	private RibbonTilingContext createContext(String name, int threads, String format, int cacheSize)
+	{
+		RibbonTilingContext context = new RibbonTilingContext();
+		context.setOutputLocation(directory);
+		context.setTilesetName(name);
+		context.setTilesize(128);
+		context.setFormat(format);
+		context.setThreadCount(threads);
+		context.setRasterCacheSize(cacheSize);
+		context.setHideStdOut(true);
+		context.setSuppressTilingLog(true);
+		context.setSuppressLayerDefinition(true);
+		return context;
+	}
+
+	private static int[] pixels(BufferedImage image)
+	{
+		return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+	}
+
+	private static int countFiles(File levelDir)
+	{
+		int count = 0;
+		for (File rowDir : levelDir.listFiles())
+		{
+			count += rowDir.listFiles().length;
+		}
+		return count;
+	}
+
+	private static void delete(File file)
+	{
+		if (file.isDirectory())
+		{
+			for (File child : file.listFiles())
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
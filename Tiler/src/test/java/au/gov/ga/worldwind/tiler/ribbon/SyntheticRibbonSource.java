@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.ribbon;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * {@link RibbonTiler.ImageSource} that generates a deterministic pattern,
+ * used in place of a GDAL dataset for testing and benchmarking.
+ */
+public class SyntheticRibbonSource implements RibbonTiler.ImageSource
+{
+	@Override
+	public BufferedImage read(Rectangle rectangle) throws Exception
+	{
+		BufferedImage image = new BufferedImage(rectangle.width, rectangle.height, BufferedImage.TYPE_INT_RGB);
+		int[] pixels = new int[rectangle.width * rectangle.height];
+		for (int y = 0; y < rectangle.height; y++)
+		{
+			int sy = rectangle.y + y;
+			for (int x = 0; x < rectangle.width; x++)
+			{
+				int sx = rectangle.x + x;
+				int r = (sx / 7) & 0xff;
+				int g = (sy * 3) & 0xff;
+				int b = ((sx ^ sy) >> 2) & 0xff;
+				pixels[y * rectangle.width + x] = (r << 16) | (g << 8) | b;
+			}
+		}
+		image.setRGB(0, 0, rectangle.width, rectangle.height, pixels, 0, rectangle.width);
+		return image;
+	}
+}
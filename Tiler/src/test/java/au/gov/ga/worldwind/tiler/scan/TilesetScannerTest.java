@@ -0,0 +1,360 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.scan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.tiler.scan.TilesetReport.Issue;
+import au.gov.ga.worldwind.tiler.scan.TilesetReport.IssueType;
+import au.gov.ga.worldwind.tiler.util.ProgressReporterImpl;
+
+import com.beust.jcommander.JCommander;
+
+/**
+ * Unit tests for the {@link TilesetScanner} class
+ */
+public class TilesetScannerTest
+{
+	private final static int TILESIZE = 4;
+	private final static short NODATA = -32768;
+
+	private File directory;
+
+	@Before
+	public void setup() throws IOException
+	{
+		directory = File.createTempFile("scanner", "");
+		directory.delete();
+		directory.mkdirs();
+	}
+
+	@After
+	public void cleanup()
+	{
+		delete(directory);
+	}
+
+	@Test
+	public void testElevationTileset() throws Exception
+	{
+		File tileset = new File(directory, "tileset");
+		writeDirectories(tileset, createElevationTiles());
+
+		TilesetReport report = scan(tileset, "-elevations", "-tilesize", "4", "-nodata", "-32768");
+
+		//sector covers 1 tile at level 0, and 2x2 tiles at level 1
+		assertEquals(2, report.getLevelCount());
+		assertEquals(1, report.getLevel(0).getExpected());
+		assertEquals(4, report.getLevel(1).getExpected());
+		assertEquals(3, report.getLevel(1).getPresent());
+
+		assertIssues(report, IssueType.Missing, "1/9/19");
+		assertIssues(report, IssueType.Unexpected, "1/0/0");
+		assertIssues(report, IssueType.Invalid, "1/8/19");
+		assertIssues(report, IssueType.Blank, "1/9/18");
+		assertIssues(report, IssueType.Duplicate, "1/8/18");
+		assertIssues(report, IssueType.Orphan);
+		assertIssues(report, IssueType.Childless);
+		assertTrue(report.hasErrors());
+
+		assertEquals(-5, report.getLevel(1).getMin(), 0);
+		assertEquals(9, report.getLevel(1).getMax(), 0);
+		assertEquals(TILESIZE * TILESIZE - 1, report.getLevel(1).getHistogram().getTotal());
+
+		TileIndex index = report.getIndex();
+		assertTrue(index.contains(0, 4, 9));
+		assertTrue(index.contains(1, 8, 18));
+		assertTrue(index.contains(1, 8, 19));
+		assertFalse(index.contains(1, 9, 19));
+		assertFalse(index.contains(1, 0, 0));
+	}
+
+	@Test
+	public void testAllLayoutsGiveSameResults() throws Exception
+	{
+		Map<String, byte[]> tiles = createElevationTiles();
+
+		File directories = new File(directory, "directories");
+		writeDirectories(directories, tiles);
+
+		File levelZips = new File(directory, "levelzips");
+		levelZips.mkdirs();
+		for (String level : new String[] { "0", "1" })
+		{
+			writeZip(new File(levelZips, level + ".zip"), tiles, level + "/", "");
+		}
+
+		File rowZips = new File(directory, "rowzips");
+		for (String row : new String[] { "0/0004", "1/0000", "1/0008", "1/0009" })
+		{
+			File zip = new File(rowZips, row + ".zip");
+			zip.getParentFile().mkdirs();
+			writeZip(zip, tiles, row + "/", "");
+		}
+
+		File archive = new File(directory, "archive.zip");
+		writeZip(archive, tiles, "", "");
+
+		TilesetReport expected = scan(directories, "-elevations", "-tilesize", "4", "-nodata", "-32768");
+		for (File tileset : new File[] { levelZips, rowZips, archive })
+		{
+			TilesetReport report = scan(tileset, "-elevations", "-tilesize", "4", "-nodata", "-32768");
+			for (IssueType type : IssueType.values())
+			{
+				assertEquals(tileset + " " + type, expected.getIssueCount(type), report.getIssueCount(type));
+			}
+			ByteArrayOutputStream expectedIndex = new ByteArrayOutputStream();
+			ByteArrayOutputStream index = new ByteArrayOutputStream();
+			expected.getIndex().write(expectedIndex);
+			report.getIndex().write(index);
+			assertTrue(tileset.toString(), Arrays.equals(expectedIndex.toByteArray(), index.toByteArray()));
+		}
+	}
+
+	@Test
+	public void testImageTileset() throws Exception
+	{
+		Map<String, byte[]> tiles = new TreeMap<String, byte[]>();
+		tiles.put("1/0008/0008_0018.png", createImage(8, 0x00000000));
+		tiles.put("1/0008/0008_0019.png", createImage(4, 0xff00ff00));
+		tiles.put("1/0009/0009_0018.png", createImage(8, 0xffff0000));
+		tiles.put("1/0009/0009_0019.png", "not an image".getBytes());
+		tiles.put("1/0008/0009_0018.png", createImage(8, 0xffff0000));
+
+		File tileset = new File(directory, "images");
+		writeDirectories(tileset, tiles);
+
+		TilesetReport report = scan(tileset, "-lzts", "20", "-tilesize", "8");
+
+		assertIssues(report, IssueType.Missing, "0/4/9");
+		assertIssues(report, IssueType.Blank, "1/8/18");
+		assertIssues(report, IssueType.Invalid, "1/8/19", "1/9/19");
+		assertIssues(report, IssueType.Misplaced, "1/9/18");
+		assertIssues(report, IssueType.Orphan, "1/8/18", "1/8/19", "1/9/18", "1/9/19");
+		assertIssues(report, IssueType.Duplicate);
+	}
+
+	@Test
+	public void testIndexIsWrittenAndRead() throws Exception
+	{
+		File tileset = new File(directory, "tileset");
+		writeDirectories(tileset, createElevationTiles());
+		TilesetReport report = scan(tileset, "-elevations", "-tilesize", "4");
+
+		File file = new File(directory, "tiles.idx");
+		report.getIndex().write(file);
+		TileIndex index = TileIndex.read(file);
+
+		assertEquals(2, index.getLevelCount());
+		assertEquals(1, index.getCount(0));
+		assertEquals(3, index.getCount(1));
+		assertEquals(8, index.getFirstRow(1));
+		assertEquals(18, index.getFirstCol(1));
+		assertTrue(index.contains(1, 9, 18));
+		assertFalse(index.contains(1, 9, 19));
+	}
+
+	@Test
+	public void testHistogramMerging()
+	{
+		Histogram coarse = new Histogram(1);
+		for (int i = 0; i < Histogram.MAX_BINS * 2; i++)
+		{
+			coarse.add(i);
+		}
+		assertEquals(2, coarse.getBinSize(), 0);
+
+		Histogram fine = new Histogram(1);
+		fine.add(-10.5);
+		fine.add(3);
+
+		coarse.merge(fine);
+		assertEquals(Histogram.MAX_BINS * 2 + 2, coarse.getTotal());
+
+		List<Histogram.Bin> bins = coarse.getBins(1);
+		assertEquals(1, bins.size());
+		assertEquals(-12, bins.get(0).min, 0);
+		assertEquals(Histogram.MAX_BINS * 2, bins.get(0).max, 0);
+		assertEquals(coarse.getTotal(), bins.get(0).count);
+	}
+
+	private TilesetReport scan(File tileset, String... args) throws IOException
+	{
+		List<String> list = new ArrayList<String>();
+		list.addAll(Arrays.asList("-tileset", tileset.getPath(), "-sector", "-10,0,10,20", "-threads", "3"));
+		list.addAll(Arrays.asList(args));
+
+		TilesetScanContext context = new TilesetScanContext();
+		new JCommander(context).parse(list.toArray(new String[list.size()]));
+
+		ProgressReporterImpl progress =
+				new ProgressReporterImpl(Logger.getLogger(TilesetScannerTest.class.getName()))
+				{
+					@Override
+					public void progress(double percent)
+					{
+					}
+
+					@Override
+					public void done()
+					{
+					}
+				};
+		return new TilesetScanner(context, progress).scan();
+	}
+
+	private static void assertIssues(TilesetReport report, IssueType type, String... tiles)
+	{
+		List<String> actual = new ArrayList<String>();
+		for (Issue issue : report.getIssues(type))
+		{
+			actual.add(issue.level + "/" + issue.row + "/" + issue.col);
+		}
+		assertEquals(type.toString(), Arrays.asList(tiles), actual);
+		assertEquals(tiles.length, report.getIssueCount(type));
+	}
+
+	/**
+	 * Elevation tiles for the sector (-10,0,10,20) with an lzts of 20; level 0
+	 * contains the tile (4,9), and level 1 contains the tiles (8-9,18-19).
+	 */
+	private static Map<String, byte[]> createElevationTiles()
+	{
+		Map<String, byte[]> tiles = new TreeMap<String, byte[]>();
+		short[] values = new short[TILESIZE * TILESIZE];
+		for (int i = 0; i < values.length; i++)
+		{
+			values[i] = (short) (i - 5);
+		}
+		values[values.length - 1] = NODATA;
+
+		short[] blank = new short[TILESIZE * TILESIZE];
+		Arrays.fill(blank, NODATA);
+
+		tiles.put("0/0004/0004_0009.bil", createElevations(values));
+		tiles.put("1/0008/0008_0018.bil", createElevations(values));
+		tiles.put("1/0008/0008_0019.bil", new byte[10]);
+		tiles.put("1/0009/0009_0018.bil", createElevations(blank));
+		tiles.put("1/0000/0000_0000.bil", createElevations(values));
+		return tiles;
+	}
+
+	private static byte[] createElevations(short[] values)
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(values.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+		for (short value : values)
+		{
+			buffer.putShort(value);
+		}
+		return buffer.array();
+	}
+
+	private static byte[] createImage(int size, int argb) throws IOException
+	{
+		BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+		for (int y = 0; y < size; y++)
+		{
+			for (int x = 0; x < size; x++)
+			{
+				image.setRGB(x, y, x == 0 && y == 0 && argb != 0 ? 0xff0000ff : argb);
+			}
+		}
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", baos);
+		return baos.toByteArray();
+	}
+
+	private static void writeDirectories(File tileset, Map<String, byte[]> tiles) throws IOException
+	{
+		for (Map.Entry<String, byte[]> tile : tiles.entrySet())
+		{
+			File file = new File(tileset, tile.getKey());
+			file.getParentFile().mkdirs();
+			OutputStream os = new FileOutputStream(file);
+			try
+			{
+				os.write(tile.getValue());
+			}
+			finally
+			{
+				os.close();
+			}
+		}
+	}
+
+	/**
+	 * Write the tiles whose paths start with prefix to a zip file, replacing
+	 * the prefix with replacement.
+	 */
+	private static void writeZip(File file, Map<String, byte[]> tiles, String prefix, String replacement)
+			throws IOException
+	{
+		ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file));
+		try
+		{
+			for (Map.Entry<String, byte[]> tile : tiles.entrySet())
+			{
+				if (tile.getKey().startsWith(prefix))
+				{
+					zos.putNextEntry(new ZipEntry(replacement + tile.getKey().substring(prefix.length())));
+					zos.write(tile.getValue());
+					zos.closeEntry();
+				}
+			}
+		}
+		finally
+		{
+			zos.close();
+		}
+	}
+
+	private static void delete(File file)
+	{
+		if (file.isDirectory())
+		{
+			for (File child : file.listFiles())
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
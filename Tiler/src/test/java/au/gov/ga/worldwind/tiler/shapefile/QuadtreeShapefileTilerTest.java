@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.shapefile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Enumeration;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.Transaction;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import au.gov.ga.worldwind.tiler.util.LatLon;
+import au.gov.ga.worldwind.tiler.util.ProgressReporterImpl;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Unit tests for the {@link QuadtreeShapefileTiler} class
+ */
+public class QuadtreeShapefileTilerTest
+{
+	private File directory;
+	private boolean done;
+
+	@Before
+	public void setup() throws IOException
+	{
+		directory = File.createTempFile("quadtree", "");
+		directory.delete();
+		directory.mkdirs();
+	}
+
+	@After
+	public void cleanup()
+	{
+		delete(directory);
+	}
+
+	@Test
+	public void testOnlyIntersectingTilesAreCreated() throws Exception
+	{
+		File input = createRectangleShapefile(0, 0, 50, 20);
+		File output = new File(directory, "output");
+
+		QuadtreeShapefileTiler.tile(input, output, 0, 1, 36, LatLon.DEFAULT_ORIGIN, 4, createProgress());
+		assertTrue(done);
+
+		//level 1 tiles are 18 degrees; rectangle covers columns 10-12 and rows 5-6
+		assertEquals(6, countZips(new File(output, "1")));
+		assertTrue(new File(output, "1/0005/0005_0010.zip").exists());
+		assertTrue(new File(output, "1/0006/0006_0012.zip").exists());
+		assertFalse(new File(output, "1/0005/0005_0009.zip").exists());
+		assertFalse(new File(output, "1/0007/0007_0010.zip").exists());
+
+		//level 0 tiles are 36 degrees; rectangle covers columns 5-6 and rows 2-3
+		assertEquals(4, countZips(new File(output, "0")));
+	}
+
+	@Test
+	public void testClippedAreaAndAttributesArePreserved() throws Exception
+	{
+		File input = createRectangleShapefile(0, 0, 50, 20);
+		File output = new File(directory, "output");
+
+		QuadtreeShapefileTiler.tile(input, output, 0, 1, 36, LatLon.DEFAULT_ORIGIN, 4, createProgress());
+
+		for (String level : new String[] { "0", "1" })
+		{
+			double area = 0;
+			for (File rowDir : new File(output, level).listFiles())
+			{
+				for (File zip : rowDir.listFiles())
+				{
+					area += readArea(zip);
+				}
+			}
+			assertEquals(50 * 20, area, 1e-6);
+		}
+	}
+
+	private ProgressReporterImpl createProgress()
+	{
+		done = false;
+		return new ProgressReporterImpl(Logger.getLogger(QuadtreeShapefileTilerTest.class.getName()))
+		{
+			@Override
+			public void progress(double percent)
+			{
+			}
+
+			@Override
+			public void done()
+			{
+				done = true;
+			}
+		};
+	}
+
+	private File createRectangleShapefile(double minLon, double minLat, double maxLon, double maxLat)
+			throws IOException
+	{
+		SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+		builder.setName("rectangle");
+		builder.add("the_geom", Polygon.class);
+		builder.add("name", String.class);
+		SimpleFeatureType type = builder.buildFeatureType();
+
+		GeometryFactory factory = new GeometryFactory();
+		Polygon polygon =
+				factory.createPolygon(
+						factory.createLinearRing(new Coordinate[] { new Coordinate(minLon, minLat),
+								new Coordinate(minLon, maxLat), new Coordinate(maxLon, maxLat),
+								new Coordinate(maxLon, minLat), new Coordinate(minLon, minLat) }), null);
+
+		File file = new File(directory, "rectangle.shp");
+		ShapefileDataStore store = new ShapefileDataStore(file.toURI().toURL());
+		try
+		{
+			store.createSchema(type);
+			FeatureWriter<SimpleFeatureType, SimpleFeature> writer =
+					store.getFeatureWriter(store.getTypeNames()[0], Transaction.AUTO_COMMIT);
+			try
+			{
+				SimpleFeature feature = writer.next();
+				feature.setDefaultGeometry(polygon);
+				feature.setAttribute("name", "rectangle");
+				writer.write();
+			}
+			finally
+			{
+				writer.close();
+			}
+		}
+		finally
+		{
+			store.dispose();
+		}
+		return file;
+	}
+
+	private double readArea(File zip) throws IOException
+	{
+		File unzipped = new File(directory, "unzipped");
+		delete(unzipped);
+		unzipped.mkdirs();
+
+		File shp = null;
+		ZipFile zipFile = new ZipFile(zip);
+		try
+		{
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements())
+			{
+				ZipEntry entry = entries.nextElement();
+				File file = new File(unzipped, entry.getName());
+				if (file.getName().toLowerCase().endsWith(".shp"))
+					shp = file;
+				InputStream is = zipFile.getInputStream(entry);
+				OutputStream os = new FileOutputStream(file);
+				byte[] buffer = new byte[1024];
+				int read;
+				while ((read = is.read(buffer)) >= 0)
+					os.write(buffer, 0, read);
+				os.close();
+				is.close();
+			}
+		}
+		finally
+		{
+			zipFile.close();
+		}
+
+		double area = 0;
+		ShapefileDataStore store = new ShapefileDataStore(shp.toURI().toURL());
+		try
+		{
+			SimpleFeatureIterator features = store.getFeatureSource().getFeatures().features();
+			try
+			{
+				while (features.hasNext())
+				{
+					SimpleFeature feature = features.next();
+					assertEquals("rectangle", feature.getAttribute("name"));
+					area += ((Geometry) feature.getDefaultGeometry()).getArea();
+				}
+			}
+			finally
+			{
+				features.close();
+			}
+		}
+		finally
+		{
+			store.dispose();
+		}
+		return area;
+	}
+
+	private static int countZips(File levelDir)
+	{
+		int count = 0;
+		for (File rowDir : levelDir.listFiles())
+		{
+			for (File file : rowDir.listFiles())
+			{
+				if (file.getName().endsWith(".zip"))
+					count++;
+			}
+		}
+		return count;
+	}
+
+	private static void delete(File file)
+	{
+		if (file.isDirectory())
+		{
+			for (File child : file.listFiles())
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
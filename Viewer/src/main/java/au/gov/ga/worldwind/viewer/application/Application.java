@@ -26,7 +26,9 @@ import gov.nasa.worldwind.WorldWind;
 import gov.nasa.worldwind.WorldWindow;
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.awt.WorldWindowGLCanvas;
+import gov.nasa.worldwind.event.RenderingEvent;
 import gov.nasa.worldwind.event.RenderingExceptionListener;
+import gov.nasa.worldwind.event.RenderingListener;
 import gov.nasa.worldwind.exception.WWAbsentRequirementException;
 import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.Position;
@@ -60,6 +62,8 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowStateListener;
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -97,6 +101,10 @@ import au.gov.ga.worldwind.common.input.hydra.HydraOrbitInputProvider;
 import au.gov.ga.worldwind.common.input.spacemouse.SpaceMouseInputProvider;
 import au.gov.ga.worldwind.common.newt.NewtInputHandler;
 import au.gov.ga.worldwind.common.newt.WorldWindowNewtAutoDrawable;
+import au.gov.ga.worldwind.common.profiling.CsvProfilerWriter;
+import au.gov.ga.worldwind.common.profiling.JsonLinesProfilerWriter;
+import au.gov.ga.worldwind.common.profiling.Profiler;
+import au.gov.ga.worldwind.common.profiling.ProfilerWriter;
 import au.gov.ga.worldwind.common.newt.WorldWindowNewtCanvas;
 import au.gov.ga.worldwind.common.render.ExtendedDrawContext;
 import au.gov.ga.worldwind.common.render.ExtendedSceneController;
@@ -230,6 +238,44 @@ public class Application
 		return startWithArgs(args, true);
 	}
 
+	/**
+	 * Enable the {@link Profiler}, streaming each frame to the given file (as
+	 * CSV if the filename ends with .csv, otherwise as JSON lines) until the
+	 * application exits.
+	 */
+	private static void startProfiling(String filename)
+	{
+		try
+		{
+			FileWriter fileWriter = new FileWriter(filename);
+			final ProfilerWriter writer =
+					filename.toLowerCase().endsWith(".csv") ? new CsvProfilerWriter(fileWriter)
+							: new JsonLinesProfilerWriter(fileWriter);
+			Profiler.INSTANCE.addListener(writer);
+			Profiler.INSTANCE.setEnabled(true);
+			Runtime.getRuntime().addShutdownHook(new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						Profiler.INSTANCE.removeListener(writer);
+						writer.close();
+					}
+					catch (IOException e)
+					{
+						e.printStackTrace();
+					}
+				}
+			});
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
 	public static Application startWithArgs(String[] args, final boolean useNewt)
 	{
 		Configuration.setValue(AVKey.SCENE_CONTROLLER_CLASS_NAME, getSceneControllerClass().getName());
@@ -239,6 +285,7 @@ public class Application
 		CmdLineParser parser = new CmdLineParser();
 		CmdLineParser.Option urlRegexOption = parser.addStringOption('u', "url-regex");
 		CmdLineParser.Option urlReplacementOption = parser.addStringOption('r', "url-replacement");
+		CmdLineParser.Option profileOption = parser.addStringOption('p', "profile");
 
 		try
 		{
@@ -256,6 +303,14 @@ public class Application
 			URLTransformer.addTransform(new RegexURLTransform(urlRegex, urlReplacement));
 		}
 
+		//make the profiler available to JMX clients, and record to a file if requested
+		Profiler.registerMBean();
+		String profileFile = (String) parser.getOptionValue(profileOption);
+		if (profileFile != null)
+		{
+			startProfiling(profileFile);
+		}
+
 		String[] remaining = parser.getRemainingArgs();
 
 		//Settings need to be initialised before Theme is opened, so that proxy values are set
@@ -448,6 +503,18 @@ public class Application
 		{
 			splashScreen.addRenderingListener(wwd);
 		}
+		wwd.addRenderingListener(new RenderingListener()
+		{
+			@Override
+			public void stageChanged(RenderingEvent event)
+			{
+				if (event.getStage() == RenderingEvent.BEFORE_BUFFER_SWAP)
+				{
+					StartupTimer.phaseComplete(StartupTimer.FIRST_FRAME);
+					wwd.removeRenderingListener(this);
+				}
+			}
+		});
 
 		Model model = (Model) WorldWind.createConfigurationComponent(AVKey.MODEL_CLASS_NAME);
 		model.setLayers(new SectionListLayerList());
@@ -568,6 +635,7 @@ public class Application
 				{
 					frame.setVisible(true);
 					wwdCanvas.createBufferStrategy(2);
+					StartupTimer.phaseComplete(StartupTimer.WINDOW_SHOWN);
 				}
 			});
 		}
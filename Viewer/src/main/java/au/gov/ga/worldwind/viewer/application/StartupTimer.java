@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.viewer.application;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Records the time at which each phase of the application startup completes,
+ * measured from the start of the JVM, so that the time to the first rendered
+ * frame can be tracked. Each phase is logged as it completes, and the times
+ * can be retrieved using {@link #getPhases()}.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class StartupTimer
+{
+	public static final String THEME_LOADED = "Theme loaded";
+	public static final String DATASETS_LOADED = "Datasets loaded";
+	public static final String LAYERS_LOADED = "Layer definitions loaded";
+	public static final String WINDOW_SHOWN = "Window shown";
+	public static final String FIRST_FRAME = "First frame rendered";
+
+	private static final Logger logger = Logging.logger();
+	private static final long startTime = ManagementFactory.getRuntimeMXBean().getStartTime();
+	private static final Map<String, Long> phases = new LinkedHashMap<String, Long>();
+
+	/**
+	 * Record that the given phase has completed. Only the first completion of
+	 * each phase is recorded.
+	 * 
+	 * @param phase
+	 */
+	public static void phaseComplete(String phase)
+	{
+		long elapsed = System.currentTimeMillis() - startTime;
+		synchronized (phases)
+		{
+			if (phases.containsKey(phase))
+			{
+				return;
+			}
+			phases.put(phase, elapsed);
+		}
+		logger.info("Startup phase '" + phase + "' completed after " + elapsed + "ms");
+	}
+
+	/**
+	 * @return The completed phases, in order of completion, mapped to the time
+	 *         (in milliseconds since the JVM started) at which they completed
+	 */
+	public static Map<String, Long> getPhases()
+	{
+		synchronized (phases)
+		{
+			return new LinkedHashMap<String, Long>(phases);
+		}
+	}
+}
@@ -16,11 +16,6 @@
 package au.gov.ga.worldwind.viewer.components.sectorsaver;
 
 import gov.nasa.worldwind.WorldWindow;
-import gov.nasa.worldwind.avlist.AVKey;
-import gov.nasa.worldwind.avlist.AVList;
-import gov.nasa.worldwind.avlist.AVListImpl;
-import gov.nasa.worldwind.data.BufferedImageRaster;
-import gov.nasa.worldwind.formats.tiff.GeotiffWriter;
 import gov.nasa.worldwind.geom.LatLon;
 import gov.nasa.worldwind.geom.Sector;
 import gov.nasa.worldwind.layers.Layer;
@@ -44,10 +39,20 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JDialog;
 import javax.swing.JFileChooser;
 import javax.swing.JLabel;
@@ -60,16 +65,27 @@ import javax.swing.event.DocumentListener;
 import javax.swing.filechooser.FileFilter;
 
 import au.gov.ga.worldwind.common.ui.JIntegerField;
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
 import au.gov.ga.worldwind.common.util.Util;
 
 /**
  * Dialog used to save a sector of the currently displayed imagery layers to a
  * GeoTIFF.
+ * <p/>
+ * The GeoTIFF is written tile by tile using a {@link TiledGeoTiffWriter}.
+ * Output tiles are composited from the layers in parallel, and the number of
+ * tiles in memory at once is bounded, so the size of the output isn't limited
+ * by the available memory.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class ImageSectorSaver
 {
+	private static final int TILE_SIZE = 512;
+	private static final long MEMORY_BUDGET = 64L * 1024 * 1024;
+	private static final int MAX_THREADS = 8;
+	private static final int COMPOSE_TIMEOUT = 30000;
+
 	public static void beginSelection(final Frame frame, String title, final WorldWindow wwd)
 	{
 		new ImageSectorSaver(frame, title, wwd);
@@ -84,6 +100,7 @@ public class ImageSectorSaver
 	private JIntegerField resolutionField;
 	private JLabel dimensionsLabel;
 	private JTextField outputField;
+	private JCheckBox bigTiffCheckBox;
 
 	private Sector sector;
 	private File output;
@@ -322,6 +339,14 @@ public class ImageSectorSaver
 		c.gridx = 1;
 		panel2.add(browseButton, c);
 
+		bigTiffCheckBox = new JCheckBox("Write BigTIFF (required for outputs larger than 4GB)");
+		c = new GridBagConstraints();
+		c.gridx = 1;
+		c.gridy = i++;
+		c.insets = new Insets(0, s, s, s);
+		c.anchor = GridBagConstraints.WEST;
+		panel.add(bigTiffCheckBox, c);
+
 
 		panel = new JPanel(new BorderLayout());
 		int spacing = 5;
@@ -450,6 +475,12 @@ public class ImageSectorSaver
 		valid &= size != null;
 		if (size != null)
 		{
+			boolean bigTiffRequired = TiledGeoTiffWriter.requiresBigTiff(size.width, size.height, TILE_SIZE);
+			bigTiffCheckBox.setEnabled(!bigTiffRequired);
+			if (bigTiffRequired)
+			{
+				bigTiffCheckBox.setSelected(true);
+			}
 			dimensionsLabel.setText(size.width + " x " + size.height);
 		}
 
@@ -483,14 +514,14 @@ public class ImageSectorSaver
 		JPanel panel = new JPanel(new GridBagLayout());
 		dialog.add(panel, BorderLayout.NORTH);
 
-		final JLabel label = new JLabel("Generating layer list");
+		final JLabel label = new JLabel("Preparing output");
 		GridBagConstraints c = new GridBagConstraints();
 		c.insets = new Insets(5, 0, 5, 0);
 		c.anchor = GridBagConstraints.CENTER;
 		c.weightx = 1;
 		panel.add(label, c);
 
-		final JProgressBar progressBar = new JProgressBar(JProgressBar.HORIZONTAL, 0, layers.size());
+		final JProgressBar progressBar = new JProgressBar(JProgressBar.HORIZONTAL, 0, 1);
 		dialog.add(progressBar, BorderLayout.CENTER);
 
 		dialog.pack();
@@ -521,6 +552,7 @@ public class ImageSectorSaver
 		thread.setDaemon(true);
 		thread.start();*/
 
+		final boolean bigTiff = bigTiffCheckBox.isSelected();
 		Thread thread = new Thread(new Runnable()
 		{
 			@Override
@@ -528,7 +560,7 @@ public class ImageSectorSaver
 			{
 				try
 				{
-					saveSector(frame, layers, sector, size, output.getAbsoluteFile(), label, progressBar);
+					saveSector(frame, layers, sector, size, output.getAbsoluteFile(), bigTiff, label, progressBar);
 				}
 				catch (Exception e)
 				{
@@ -542,65 +574,110 @@ public class ImageSectorSaver
 		thread.start();
 	}
 
-	private void saveSector(Frame frame, List<Layer> layers, Sector sector, Dimension size, File output, JLabel label,
-			JProgressBar progressBar) throws Exception
+	private void saveSector(Frame frame, List<Layer> layers, Sector sector, Dimension size, File output,
+			boolean bigTiff, JLabel label, JProgressBar progressBar) throws Exception
 	{
-		try
+		double texelSize = Math.abs(sector.getDeltaLonRadians()) / size.width;
+
+		//the level and image format requested from each layer is the same for every tile
+		final List<LayerSource> sources = new ArrayList<LayerSource>();
+		for (Layer l : layers)
 		{
-			double texelSize = Math.abs(sector.getDeltaLonRadians()) / size.width;
+			if (l.isEnabled() && l instanceof TiledImageLayer)
+			{
+				sources.add(new LayerSource((TiledImageLayer) l, sector, texelSize));
+			}
+		}
 
-			BufferedImage image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+		final TiledGeoTiffWriter writer =
+				new TiledGeoTiffWriter(output, size.width, size.height, TILE_SIZE, sector, bigTiff);
+		final Set<String> failedLayers = Collections.synchronizedSet(new TreeSet<String>());
 
-			for (Layer l : layers)
+		//each tile being composited holds an int image, and the tile's bytes while writing
+		long tileMemory = (long) TILE_SIZE * TILE_SIZE * 7;
+		int threads = (int) Math.max(1, Math.min(MAX_THREADS, MEMORY_BUDGET / tileMemory));
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("Sector saver"));
+		try
+		{
+			CompletionService<Void> completionService = new ExecutorCompletionService<Void>(executor);
+			final double pixelWidth = sector.getDeltaLonDegrees() / size.width;
+			final double pixelHeight = sector.getDeltaLatDegrees() / size.height;
+			final double minLongitude = sector.getMinLongitude().degrees;
+			final double maxLatitude = sector.getMaxLatitude().degrees;
+			int tileCount = (int) writer.getTileCount();
+
+			for (int row = 0; row < writer.getTilesDown(); row++)
 			{
-				label.setText("Saving layer: " + l.getName());
-
-				if (l.isEnabled() && l instanceof TiledImageLayer)
+				for (int column = 0; column < writer.getTilesAcross(); column++)
 				{
-					TiledImageLayer layer = (TiledImageLayer) l;
-					int level = layer.computeLevelForResolution(sector, texelSize);
-
-					String mimeType = layer.getDefaultImageFormat();
-					if (layer.isImageFormatAvailable("image/png"))
+					final int tileColumn = column, tileRow = row;
+					final int x = column * TILE_SIZE;
+					final int y = row * TILE_SIZE;
+					final int width = Math.min(TILE_SIZE, size.width - x);
+					final int height = Math.min(TILE_SIZE, size.height - y);
+					completionService.submit(new Callable<Void>()
 					{
-						mimeType = "image/png";
-					}
-					else if (layer.isImageFormatAvailable("image/jpg"))
-					{
-						mimeType = "image/jpg";
-					}
+						@Override
+						public Void call() throws Exception
+						{
+							Sector tileSector =
+									Sector.fromDegrees(maxLatitude - (y + height) * pixelHeight, maxLatitude - y
+											* pixelHeight, minLongitude + x * pixelWidth, minLongitude
+											+ (x + width) * pixelWidth);
+							BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+							for (LayerSource source : sources)
+							{
+								try
+								{
+									image = source.compose(tileSector, width, height, image);
+								}
+								catch (Exception e)
+								{
+									failedLayers.add(source.layer.getName());
+								}
+							}
+							writer.writeTile(tileColumn, tileRow, image);
+							return null;
+						}
+					});
+				}
+			}
 
-					try
-					{
-						image =
-								layer.composeImageForSector(sector, size.width, size.height, 1d, level, mimeType, true,
-										image, 30000);
-					}
-					catch (Exception e)
+			progressBar.setMaximum(tileCount);
+			for (int i = 0; i < tileCount; i++)
+			{
+				label.setText("Saving tile " + (i + 1) + " of " + tileCount);
+				try
+				{
+					completionService.take().get();
+				}
+				catch (ExecutionException e)
+				{
+					if (e.getCause() instanceof Error)
 					{
-						JOptionPane.showMessageDialog(frame, "Error composing image for layer " + layer.getName()
-								+ ":\n\n" + e.getMessage(), "Warning", JOptionPane.WARNING_MESSAGE);
+						throw (Error) e.getCause();
 					}
+					throw (Exception) e.getCause();
 				}
-
-				progressBar.setValue(progressBar.getValue() + 1);
+				progressBar.setValue(i + 1);
 			}
-
-			AVList params = new AVListImpl();
-
-			params.setValue(AVKey.SECTOR, sector);
-			params.setValue(AVKey.COORDINATE_SYSTEM, AVKey.COORDINATE_SYSTEM_GEOGRAPHIC);
-			params.setValue(AVKey.PIXEL_FORMAT, AVKey.IMAGE);
-			params.setValue(AVKey.BYTE_ORDER, AVKey.BIG_ENDIAN);
-
-			GeotiffWriter writer = new GeotiffWriter(output);
-			writer.write(BufferedImageRaster.wrapAsGeoreferencedRaster(image, params));
 		}
 		catch (OutOfMemoryError e)
 		{
 			JOptionPane.showMessageDialog(frame, "Not enough memory. Try saving at a lower resolution.", "Error",
 					JOptionPane.ERROR_MESSAGE);
 		}
+		finally
+		{
+			executor.shutdownNow();
+			writer.close();
+		}
+
+		if (!failedLayers.isEmpty())
+		{
+			JOptionPane.showMessageDialog(frame, "Error composing image for layers " + failedLayers, "Warning",
+					JOptionPane.WARNING_MESSAGE);
+		}
 	}
 
 	private static Dimension adjustSize(Sector sector, int maxSize)
@@ -653,6 +730,40 @@ public class ImageSectorSaver
 		}
 	}
 
+	/**
+	 * A layer to composite into the output, with the level and image format
+	 * to request from it.
+	 */
+	private static class LayerSource
+	{
+		public final TiledImageLayer layer;
+		public final int level;
+		public final String mimeType;
+
+		public LayerSource(TiledImageLayer layer, Sector sector, double texelSize)
+		{
+			this.layer = layer;
+			this.level = layer.computeLevelForResolution(sector, texelSize);
+
+			String mimeType = layer.getDefaultImageFormat();
+			if (layer.isImageFormatAvailable("image/png"))
+			{
+				mimeType = "image/png";
+			}
+			else if (layer.isImageFormatAvailable("image/jpg"))
+			{
+				mimeType = "image/jpg";
+			}
+			this.mimeType = mimeType;
+		}
+
+		public BufferedImage compose(Sector sector, int width, int height, BufferedImage image) throws Exception
+		{
+			return layer.composeImageForSector(sector, width, height, 1d, level, mimeType, true, image,
+					COMPOSE_TIMEOUT);
+		}
+	}
+
 	public class GeoTIFFFileFilter extends FileFilter
 	{
 		@Override
@@ -0,0 +1,443 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.viewer.components.sectorsaver;
+
+import gov.nasa.worldwind.geom.Sector;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes an uncompressed, internally tiled, 8-bit RGB GeoTIFF (or BigTIFF) in
+ * geographic WGS84 coordinates.
+ * <p/>
+ * As the tiles are uncompressed, the location of every tile in the file is
+ * known up front. The header is written when the writer is created, and tiles
+ * can then be written in any order, from any number of threads, without
+ * holding more than a single tile in memory.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class TiledGeoTiffWriter implements Closeable
+{
+	private static final int TYPE_SHORT = 3;
+	private static final int TYPE_LONG = 4;
+	private static final int TYPE_DOUBLE = 12;
+	private static final int TYPE_LONG8 = 16;
+
+	private static final int TAG_IMAGE_WIDTH = 256;
+	private static final int TAG_IMAGE_LENGTH = 257;
+	private static final int TAG_BITS_PER_SAMPLE = 258;
+	private static final int TAG_COMPRESSION = 259;
+	private static final int TAG_PHOTOMETRIC_INTERPRETATION = 262;
+	private static final int TAG_SAMPLES_PER_PIXEL = 277;
+	private static final int TAG_PLANAR_CONFIGURATION = 284;
+	private static final int TAG_TILE_WIDTH = 322;
+	private static final int TAG_TILE_LENGTH = 323;
+	private static final int TAG_TILE_OFFSETS = 324;
+	private static final int TAG_TILE_BYTE_COUNTS = 325;
+	private static final int TAG_MODEL_PIXEL_SCALE = 33550;
+	private static final int TAG_MODEL_TIEPOINT = 33922;
+	private static final int TAG_GEO_KEY_DIRECTORY = 34735;
+
+	private static final int SAMPLES_PER_PIXEL = 3;
+	private static final long CLASSIC_TIFF_LIMIT = 0xffffffffL;
+	//upper bound on the classic header, IFD and out-of-line values, excluding the tile offset/byte count arrays
+	private static final long CLASSIC_HEADER_SIZE = 1024;
+
+	private final int width;
+	private final int height;
+	private final int tileSize;
+	private final int tilesAcross;
+	private final int tilesDown;
+	private final long tileBytes;
+	private final long dataOffset;
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+
+	/**
+	 * Create a new writer, and write the GeoTIFF header to the file. Any
+	 * existing file is replaced.
+	 * 
+	 * @param output
+	 *            File to write to
+	 * @param width
+	 *            Image width in pixels
+	 * @param height
+	 *            Image height in pixels
+	 * @param tileSize
+	 *            Width and height of each tile (must be a multiple of 16)
+	 * @param sector
+	 *            Sector covered by the image
+	 * @param bigTiff
+	 *            Write a BigTIFF, even if the image would fit in a classic
+	 *            TIFF
+	 * @throws IOException
+	 */
+	public TiledGeoTiffWriter(File output, int width, int height, int tileSize, Sector sector, boolean bigTiff)
+			throws IOException
+	{
+		if (width <= 0 || height <= 0)
+		{
+			throw new IllegalArgumentException("Illegal width or height");
+		}
+		if (tileSize <= 0 || tileSize % 16 != 0)
+		{
+			throw new IllegalArgumentException("Tile size must be a positive multiple of 16");
+		}
+
+		this.width = width;
+		this.height = height;
+		this.tileSize = tileSize;
+		this.tilesAcross = (width - 1) / tileSize + 1;
+		this.tilesDown = (height - 1) / tileSize + 1;
+		this.tileBytes = (long) tileSize * tileSize * SAMPLES_PER_PIXEL;
+
+		bigTiff |= requiresBigTiff(width, height, tileSize);
+		List<Entry> entries = createEntries(sector, bigTiff);
+		ByteBuffer header = layoutHeader(entries, bigTiff);
+		this.dataOffset = header.limit();
+
+		if (output.exists() && !output.delete())
+		{
+			throw new IOException("Could not replace " + output);
+		}
+		file = new RandomAccessFile(output, "rw");
+		channel = file.getChannel();
+		file.setLength(dataOffset + getTileCount() * tileBytes);
+		write(header, 0);
+	}
+
+	/**
+	 * @return True if an image of the given size can't be stored in a classic
+	 *         TIFF (the header and tile data are larger than 4GB)
+	 */
+	public static boolean requiresBigTiff(int width, int height, int tileSize)
+	{
+		long tiles = (long) ((width - 1) / tileSize + 1) * ((height - 1) / tileSize + 1);
+		//the tile offset and byte count arrays each store a 4 byte value per tile
+		long headerSize = CLASSIC_HEADER_SIZE + tiles * 8;
+		return headerSize + tiles * tileSize * tileSize * SAMPLES_PER_PIXEL > CLASSIC_TIFF_LIMIT;
+	}
+
+	public int getWidth()
+	{
+		return width;
+	}
+
+	public int getHeight()
+	{
+		return height;
+	}
+
+	public int getTileSize()
+	{
+		return tileSize;
+	}
+
+	public int getTilesAcross()
+	{
+		return tilesAcross;
+	}
+
+	public int getTilesDown()
+	{
+		return tilesDown;
+	}
+
+	public long getTileCount()
+	{
+		return (long) tilesAcross * tilesDown;
+	}
+
+	/**
+	 * Write the tile at the given column and row. The image can be smaller
+	 * than the tile size (for the tiles on the right and bottom edges); the
+	 * rest of the tile is filled with black. This method is thread safe.
+	 * 
+	 * @param column
+	 * @param row
+	 * @param image
+	 *            Tile image
+	 * @throws IOException
+	 */
+	public void writeTile(int column, int row, BufferedImage image) throws IOException
+	{
+		if (column < 0 || column >= tilesAcross || row < 0 || row >= tilesDown)
+		{
+			throw new IllegalArgumentException("Tile " + column + "," + row + " is outside the image");
+		}
+
+		int w = Math.min(image.getWidth(), tileSize);
+		int h = Math.min(image.getHeight(), tileSize);
+		int[] rgb = image.getRGB(0, 0, w, h, null, 0, w);
+		byte[] bytes = new byte[(int) tileBytes];
+		for (int y = 0; y < h; y++)
+		{
+			for (int x = 0, i = y * tileSize * SAMPLES_PER_PIXEL; x < w; x++)
+			{
+				int pixel = rgb[y * w + x];
+				bytes[i++] = (byte) (pixel >> 16);
+				bytes[i++] = (byte) (pixel >> 8);
+				bytes[i++] = (byte) pixel;
+			}
+		}
+
+		write(ByteBuffer.wrap(bytes), getTileOffset(row * tilesAcross + column));
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+	}
+
+	private long getTileOffset(long tile)
+	{
+		return dataOffset + tile * tileBytes;
+	}
+
+	private void write(ByteBuffer buffer, long position) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			position += channel.write(buffer, position);
+		}
+	}
+
+	private List<Entry> createEntries(Sector sector, boolean bigTiff)
+	{
+		int tileCount = (int) getTileCount();
+		int offsetType = bigTiff ? TYPE_LONG8 : TYPE_LONG;
+		long[] byteCounts = new long[tileCount];
+		for (int i = 0; i < tileCount; i++)
+		{
+			byteCounts[i] = tileBytes;
+		}
+
+		double pixelWidth = sector.getDeltaLonDegrees() / width;
+		double pixelHeight = sector.getDeltaLatDegrees() / height;
+
+		//entries must be sorted by tag; the tile offsets are filled in once the header has been laid out
+		List<Entry> entries = new ArrayList<Entry>();
+		entries.add(new Entry(TAG_IMAGE_WIDTH, TYPE_LONG, width));
+		entries.add(new Entry(TAG_IMAGE_LENGTH, TYPE_LONG, height));
+		entries.add(new Entry(TAG_BITS_PER_SAMPLE, TYPE_SHORT, 8, 8, 8));
+		entries.add(new Entry(TAG_COMPRESSION, TYPE_SHORT, 1)); //none
+		entries.add(new Entry(TAG_PHOTOMETRIC_INTERPRETATION, TYPE_SHORT, 2)); //RGB
+		entries.add(new Entry(TAG_SAMPLES_PER_PIXEL, TYPE_SHORT, SAMPLES_PER_PIXEL));
+		entries.add(new Entry(TAG_PLANAR_CONFIGURATION, TYPE_SHORT, 1)); //chunky
+		entries.add(new Entry(TAG_TILE_WIDTH, TYPE_LONG, tileSize));
+		entries.add(new Entry(TAG_TILE_LENGTH, TYPE_LONG, tileSize));
+		entries.add(new Entry(TAG_TILE_OFFSETS, offsetType, new long[tileCount]));
+		entries.add(new Entry(TAG_TILE_BYTE_COUNTS, offsetType, byteCounts));
+		entries.add(new Entry(TAG_MODEL_PIXEL_SCALE, new double[] { pixelWidth, pixelHeight, 0 }));
+		entries.add(new Entry(TAG_MODEL_TIEPOINT, new double[] { 0, 0, 0, sector.getMinLongitude().degrees,
+				sector.getMaxLatitude().degrees, 0 }));
+		entries.add(new Entry(TAG_GEO_KEY_DIRECTORY, TYPE_SHORT,
+				1, 1, 0, 3, //version 1.1.0, 3 keys
+				1024, 0, 1, 2, //GTModelTypeGeoKey = ModelTypeGeographic
+				1025, 0, 1, 1, //GTRasterTypeGeoKey = RasterPixelIsArea
+				2048, 0, 1, 4326)); //GeographicTypeGeoKey = GCS_WGS_84
+		return entries;
+	}
+
+	/**
+	 * Lay out the TIFF header, IFD and out-of-line entry values, and fill in
+	 * the tile offsets.
+	 * 
+	 * @return Buffer containing the complete header, padded to the start of
+	 *         the tile data
+	 */
+	private ByteBuffer layoutHeader(List<Entry> entries, boolean bigTiff)
+	{
+		int headerSize = bigTiff ? 16 : 8;
+		int entrySize = bigTiff ? 20 : 12;
+		int inlineSize = bigTiff ? 8 : 4;
+		int ifdSize = (bigTiff ? 8 : 2) + entries.size() * entrySize + (bigTiff ? 8 : 4);
+
+		long size = headerSize + ifdSize;
+		for (Entry entry : entries)
+		{
+			if (entry.getSize() > inlineSize)
+			{
+				size += entry.getSize() + (entry.getSize() % 2);
+			}
+		}
+		long tileDataOffset = (size + 15) / 16 * 16;
+		if (tileDataOffset > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Too many tiles");
+		}
+
+		for (Entry entry : entries)
+		{
+			if (entry.tag == TAG_TILE_OFFSETS)
+			{
+				for (int i = 0; i < entry.longs.length; i++)
+				{
+					entry.longs[i] = tileDataOffset + i * tileBytes;
+				}
+			}
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate((int) tileDataOffset); //big endian
+		buffer.put((byte) 'M').put((byte) 'M');
+		if (bigTiff)
+		{
+			buffer.putShort((short) 43).putShort((short) 8).putShort((short) 0).putLong(headerSize);
+			buffer.putLong(entries.size());
+		}
+		else
+		{
+			buffer.putShort((short) 42).putInt(headerSize);
+			buffer.putShort((short) entries.size());
+		}
+
+		long valueOffset = headerSize + ifdSize;
+		for (Entry entry : entries)
+		{
+			buffer.putShort((short) entry.tag).putShort((short) entry.type);
+			if (bigTiff)
+			{
+				buffer.putLong(entry.getCount());
+			}
+			else
+			{
+				buffer.putInt(entry.getCount());
+			}
+
+			if (entry.getSize() <= inlineSize)
+			{
+				//values that fit are stored left-justified in the value field
+				int start = buffer.position();
+				entry.putValues(buffer);
+				while (buffer.position() < start + inlineSize)
+				{
+					buffer.put((byte) 0);
+				}
+			}
+			else
+			{
+				if (bigTiff)
+				{
+					buffer.putLong(valueOffset);
+				}
+				else
+				{
+					putClassicOffset(buffer, valueOffset);
+				}
+				int position = buffer.position();
+				buffer.position((int) valueOffset);
+				entry.putValues(buffer);
+				buffer.position(position);
+				valueOffset += entry.getSize() + (entry.getSize() % 2);
+			}
+		}
+		//no next IFD; the remainder of the buffer is already zeroed
+
+		buffer.rewind();
+		return buffer;
+	}
+
+	/**
+	 * Put an unsigned 32-bit value, as used for classic TIFF offsets.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the value doesn't fit in 32 bits
+	 */
+	private static void putClassicOffset(ByteBuffer buffer, long value)
+	{
+		if (value < 0 || value > CLASSIC_TIFF_LIMIT)
+		{
+			throw new IllegalArgumentException("Value " + value + " does not fit in a classic TIFF");
+		}
+		buffer.putInt((int) value);
+	}
+
+	/**
+	 * An IFD entry, containing either integer values of a given type, or
+	 * doubles.
+	 */
+	private static class Entry
+	{
+		public final int tag;
+		public final int type;
+		public final long[] longs;
+		public final double[] doubles;
+
+		public Entry(int tag, int type, long... values)
+		{
+			this.tag = tag;
+			this.type = type;
+			this.longs = values;
+			this.doubles = null;
+		}
+
+		public Entry(int tag, double[] values)
+		{
+			this.tag = tag;
+			this.type = TYPE_DOUBLE;
+			this.longs = null;
+			this.doubles = values;
+		}
+
+		public int getCount()
+		{
+			return longs != null ? longs.length : doubles.length;
+		}
+
+		public long getSize()
+		{
+			int typeSize = type == TYPE_SHORT ? 2 : type == TYPE_LONG ? 4 : 8;
+			return (long) getCount() * typeSize;
+		}
+
+		public void putValues(ByteBuffer buffer)
+		{
+			if (doubles != null)
+			{
+				for (double d : doubles)
+				{
+					buffer.putDouble(d);
+				}
+				return;
+			}
+			for (long l : longs)
+			{
+				if (type == TYPE_SHORT)
+				{
+					buffer.putShort((short) l);
+				}
+				else if (type == TYPE_LONG)
+				{
+					putClassicOffset(buffer, l);
+				}
+				else
+				{
+					buffer.putLong(l);
+				}
+			}
+		}
+	}
+}
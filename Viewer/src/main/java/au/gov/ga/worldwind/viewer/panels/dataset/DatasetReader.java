@@ -15,8 +15,17 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.viewer.panels.dataset;
 
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.xpath.XPath;
 
 import org.w3c.dom.Element;
 
@@ -24,11 +33,19 @@ import au.gov.ga.worldwind.common.util.XMLUtil;
 
 /**
  * Helper class that reads {@link IDataset}s from XML files.
+ * <p/>
+ * Two readers are provided: {@link #read(Object, URL)} parses the source into
+ * a DOM and queries it using XPath, and {@link #read(InputStream, URL)} builds
+ * the dataset tree in a single streaming (StAX) pass without creating a DOM.
+ * Both produce identical trees; the streaming reader should be preferred for
+ * large dataset lists.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class DatasetReader
 {
+	private final static XMLInputFactory inputFactory = createInputFactory();
+
 	public static IDataset read(Object source, URL context) throws MalformedURLException
 	{
 		//top level dataset (DatasetList) doesn't have a name, and is not shown in the tree
@@ -37,12 +54,13 @@ public class DatasetReader
 		Element elem = XMLUtil.getElementFromSource(source);
 		if (elem != null)
 		{
-			Element[] elements = XMLUtil.getElements(elem, "//DatasetList", null);
+			XPath xpath = XMLUtil.makeXPath();
+			Element[] elements = XMLUtil.getElements(elem, "//DatasetList", xpath);
 			if (elements != null)
 			{
 				for (Element element : elements)
 				{
-					addRelevant(element, root, context);
+					addRelevant(element, root, context, xpath);
 				}
 			}
 		}
@@ -50,62 +68,196 @@ public class DatasetReader
 		return root;
 	}
 
-	private static void addRelevant(Element element, IDataset parent, URL context) throws MalformedURLException
+	/**
+	 * Read a dataset tree from the given stream in a single pass, using StAX.
+	 * The stream is not closed.
+	 * 
+	 * @param stream
+	 *            XML stream containing one or more DatasetList elements
+	 * @param context
+	 *            Context URL against which relative URLs are resolved
+	 * @return Root dataset containing the children of each DatasetList element
+	 */
+	public static IDataset read(InputStream stream, URL context) throws XMLStreamException, MalformedURLException
 	{
-		Element[] elements = XMLUtil.getElements(element, "Dataset|Link|Layer", null);
+		//top level dataset (DatasetList) doesn't have a name, and is not shown in the tree
+		IDataset root = new Dataset(null, null, null, true);
+
+		XMLStreamReader reader;
+		synchronized (inputFactory)
+		{
+			reader = inputFactory.createXMLStreamReader(stream);
+		}
+
+		try
+		{
+			//stack of the datasets that the currently open elements represent;
+			//null entries are elements whose children are ignored
+			List<IDataset> stack = new ArrayList<IDataset>();
+			while (reader.hasNext())
+			{
+				int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT)
+				{
+					String name = reader.getLocalName();
+					IDataset parent = stack.isEmpty() ? null : stack.get(stack.size() - 1);
+					IDataset pushed = null;
+
+					if (name.equals("DatasetList"))
+					{
+						pushed = root;
+					}
+					else if (parent != null)
+					{
+						if (name.equals("Dataset"))
+						{
+							pushed = readDataset(reader, parent, context);
+						}
+						else if (name.equals("Link"))
+						{
+							readLink(reader, parent, context);
+						}
+						else if (name.equals("Layer"))
+						{
+							readLayer(reader, parent, context);
+						}
+					}
+					stack.add(pushed);
+				}
+				else if (event == XMLStreamConstants.END_ELEMENT)
+				{
+					stack.remove(stack.size() - 1);
+				}
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+
+		return root;
+	}
+
+	private static XMLInputFactory createInputFactory()
+	{
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		return factory;
+	}
+
+	private static void addRelevant(Element element, IDataset parent, URL context, XPath xpath)
+			throws MalformedURLException
+	{
+		Element[] elements = XMLUtil.getElements(element, "Dataset|Link|Layer", xpath);
 		if (elements != null)
 		{
 			for (Element e : elements)
 			{
 				if (e.getNodeName().equals("Dataset"))
 				{
-					IDataset dataset = addDataset(e, parent, context);
-					addRelevant(e, dataset, context);
+					IDataset dataset = addDataset(e, parent, context, xpath);
+					addRelevant(e, dataset, context, xpath);
 				}
 				else if (e.getNodeName().equals("Link"))
 				{
-					addLink(e, parent, context);
+					addLink(e, parent, context, xpath);
 				}
 				else if (e.getNodeName().equals("Layer"))
 				{
-					addLayer(e, parent, context);
+					addLayer(e, parent, context, xpath);
 				}
 			}
 		}
 	}
 
-	private static IDataset addDataset(Element element, IDataset parent, URL context) throws MalformedURLException
+	private static IDataset addDataset(Element element, IDataset parent, URL context, XPath xpath)
+			throws MalformedURLException
+	{
+		String name = XMLUtil.getText(element, "@name", xpath);
+		URL info = XMLUtil.getURL(element, "@info", context, xpath);
+		URL icon = XMLUtil.getURL(element, "@icon", context, xpath);
+		boolean base = XMLUtil.getBoolean(element, "@base", false, xpath);
+		IDataset dataset = new Dataset(name, info, icon, base);
+		parent.addChild(dataset);
+		return dataset;
+	}
+
+	private static void addLink(Element element, IDataset parent, URL context, XPath xpath)
+			throws MalformedURLException
+	{
+		String name = XMLUtil.getText(element, "@name", xpath);
+		URL info = XMLUtil.getURL(element, "@info", context, xpath);
+		URL icon = XMLUtil.getURL(element, "@icon", context, xpath);
+		URL url = XMLUtil.getURL(element, "@url", context, xpath);
+		boolean base = XMLUtil.getBoolean(element, "@base", false, xpath);
+		IDataset dataset = new LazyDataset(name, url, info, icon, base);
+		parent.addChild(dataset);
+	}
+
+	private static void addLayer(Element element, IDataset parent, URL context, XPath xpath)
+			throws MalformedURLException
+	{
+		String name = XMLUtil.getText(element, "@name", xpath);
+		URL info = XMLUtil.getURL(element, "@info", context, xpath);
+		URL icon = XMLUtil.getURL(element, "@icon", context, xpath);
+		URL url = XMLUtil.getURL(element, "@url", context, xpath);
+		boolean base = XMLUtil.getBoolean(element, "@base", false, xpath);
+		boolean def = XMLUtil.getBoolean(element, "@default", false, xpath);
+		boolean enabled = XMLUtil.getBoolean(element, "@enabled", true, xpath);
+		ILayerDefinition layer = new LayerDefinition(name, url, info, icon, base, def, enabled);
+		parent.addChild(layer);
+	}
+
+	private static IDataset readDataset(XMLStreamReader reader, IDataset parent, URL context)
+			throws MalformedURLException
 	{
-		String name = XMLUtil.getText(element, "@name");
-		URL info = XMLUtil.getURL(element, "@info", context);
-		URL icon = XMLUtil.getURL(element, "@icon", context);
-		boolean base = XMLUtil.getBoolean(element, "@base", false);
+		String name = attribute(reader, "name");
+		URL info = XMLUtil.getURL(attribute(reader, "info"), context);
+		URL icon = XMLUtil.getURL(attribute(reader, "icon"), context);
+		boolean base = booleanAttribute(reader, "base", false);
 		IDataset dataset = new Dataset(name, info, icon, base);
 		parent.addChild(dataset);
 		return dataset;
 	}
 
-	private static void addLink(Element element, IDataset parent, URL context) throws MalformedURLException
+	private static void readLink(XMLStreamReader reader, IDataset parent, URL context) throws MalformedURLException
 	{
-		String name = XMLUtil.getText(element, "@name");
-		URL info = XMLUtil.getURL(element, "@info", context);
-		URL icon = XMLUtil.getURL(element, "@icon", context);
-		URL url = XMLUtil.getURL(element, "@url", context);
-		boolean base = XMLUtil.getBoolean(element, "@base", false);
+		String name = attribute(reader, "name");
+		URL info = XMLUtil.getURL(attribute(reader, "info"), context);
+		URL icon = XMLUtil.getURL(attribute(reader, "icon"), context);
+		URL url = XMLUtil.getURL(attribute(reader, "url"), context);
+		boolean base = booleanAttribute(reader, "base", false);
 		IDataset dataset = new LazyDataset(name, url, info, icon, base);
 		parent.addChild(dataset);
 	}
 
-	private static void addLayer(Element element, IDataset parent, URL context) throws MalformedURLException
+	private static void readLayer(XMLStreamReader reader, IDataset parent, URL context) throws MalformedURLException
 	{
-		String name = XMLUtil.getText(element, "@name");
-		URL info = XMLUtil.getURL(element, "@info", context);
-		URL icon = XMLUtil.getURL(element, "@icon", context);
-		URL url = XMLUtil.getURL(element, "@url", context);
-		boolean base = XMLUtil.getBoolean(element, "@base", false);
-		boolean def = XMLUtil.getBoolean(element, "@default", false);
-		boolean enabled = XMLUtil.getBoolean(element, "@enabled", true);
+		String name = attribute(reader, "name");
+		URL info = XMLUtil.getURL(attribute(reader, "info"), context);
+		URL icon = XMLUtil.getURL(attribute(reader, "icon"), context);
+		URL url = XMLUtil.getURL(attribute(reader, "url"), context);
+		boolean base = booleanAttribute(reader, "base", false);
+		boolean def = booleanAttribute(reader, "default", false);
+		boolean enabled = booleanAttribute(reader, "enabled", true);
 		ILayerDefinition layer = new LayerDefinition(name, url, info, icon, base, def, enabled);
 		parent.addChild(layer);
 	}
+
+	/**
+	 * @return The value of the given attribute on the current element, or null
+	 *         if it is missing or empty (matching {@link XMLUtil#getText})
+	 */
+	private static String attribute(XMLStreamReader reader, String name)
+	{
+		String value = reader.getAttributeValue(null, name);
+		return value == null || value.length() == 0 ? null : value;
+	}
+
+	private static boolean booleanAttribute(XMLStreamReader reader, String name, boolean def)
+	{
+		String value = attribute(reader, name);
+		return value == null ? def : Boolean.valueOf(value.trim());
+	}
 }
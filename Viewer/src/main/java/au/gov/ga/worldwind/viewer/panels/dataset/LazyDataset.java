@@ -16,8 +16,8 @@
 package au.gov.ga.worldwind.viewer.panels.dataset;
 
 import java.net.URL;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import au.gov.ga.worldwind.common.downloader.Downloader;
 import au.gov.ga.worldwind.common.downloader.RetrievalResult;
@@ -31,8 +31,8 @@ import au.gov.ga.worldwind.common.ui.lazytree.LazyLoadListener;
 public class LazyDataset extends Dataset implements ILazyDataset
 {
 	private final URL url;
-	private final List<LazyLoadListener> listeners = new ArrayList<LazyLoadListener>();
-	private boolean loaded = false;
+	private final List<LazyLoadListener> listeners = new CopyOnWriteArrayList<LazyLoadListener>();
+	private volatile boolean loaded = false;
 
 	public LazyDataset(String name, URL url, URL infoURL, URL iconURL, boolean base)
 	{
@@ -46,11 +46,19 @@ public class LazyDataset extends Dataset implements ILazyDataset
 		return loaded;
 	}
 
+	/**
+	 * Load this dataset's children. Synchronized so that a dataset being
+	 * loaded in the background at startup is not loaded again when expanded in
+	 * the tree.
+	 */
 	@Override
-	public void load() throws Exception
+	public synchronized void load() throws Exception
 	{
-		//download immediately, checking for modifications
-		RetrievalResult result = Downloader.downloadImmediatelyIfModified(url, true);
+		if (loaded)
+			return;
+
+		//use the cached copy if there is one, and check for modifications in the background
+		RetrievalResult result = Downloader.downloadImmediatelyAndRevalidate(url, true);
 		if (result.getError() != null)
 			throw result.getError();
 
@@ -66,8 +74,9 @@ public class LazyDataset extends Dataset implements ILazyDataset
 		}
 		
 		loaded = true;
-		for (int i = listeners.size() - 1; i >= 0; i--)
-			listeners.get(i).loaded(this);
+		//listeners may be added and removed by other threads (and themselves) during notification
+		for (LazyLoadListener listener : listeners)
+			listener.loaded(this);
 	}
 
 	@Override
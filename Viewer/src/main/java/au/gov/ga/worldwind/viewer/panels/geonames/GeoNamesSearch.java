@@ -20,6 +20,8 @@ import gov.nasa.worldwind.geom.LatLon;
 
 import java.awt.Color;
 import java.awt.Font;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
@@ -37,10 +39,15 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+import au.gov.ga.worldwind.common.layers.geonames.GeoNamesIndex;
+import au.gov.ga.worldwind.common.layers.geonames.GeoNamesIndex.SearchMode;
 import au.gov.ga.worldwind.common.util.ColorFont;
+import au.gov.ga.worldwind.common.util.Util;
+import au.gov.ga.worldwind.viewer.settings.Settings;
 
 /**
- * Helper class for searching the GeoNames.org database.
+ * Helper class for searching the GeoNames.org database. If a local GeoNames
+ * index has been configured in the {@link Settings}, it is searched instead.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -48,10 +55,14 @@ public class GeoNamesSearch
 {
 	private final static String GEONAMES_SEARCH = "http://ws.geonames.org/search";
 	private final static String GEONAMES_USERNAME = "gam3dv";
+	private final static int MAX_INDEX_RESULTS = 100;
 	private final static Map<String, ColorFont> colorFonts = new HashMap<String, ColorFont>();
 	private final static ColorFont defaultColorFont = new ColorFont(Font.decode("Arial-PLAIN-10"), Color.white,
 			Color.black);
 
+	private static GeoNamesIndex localIndex;
+	private static String localIndexPath;
+
 	static
 	{
 		colorFonts.put("A", new ColorFont(Font.decode("Arial-BOLD-11"), Color.lightGray, Color.black));
@@ -70,15 +81,17 @@ public class GeoNamesSearch
 	 */
 	public static enum SearchType
 	{
-		FUZZY("q"),
-		PLACE("name"),
-		EXACT("name_equals");
+		FUZZY("q", SearchMode.FUZZY),
+		PLACE("name", SearchMode.PREFIX),
+		EXACT("name_equals", SearchMode.EXACT);
 
 		public final String queryParameter;
+		public final SearchMode indexMode;
 
-		SearchType(String queryParameter)
+		SearchType(String queryParameter, SearchMode indexMode)
 		{
 			this.queryParameter = queryParameter;
+			this.indexMode = indexMode;
 		}
 	}
 
@@ -114,6 +127,12 @@ public class GeoNamesSearch
 	 */
 	public static Results search(String text, SearchType type)
 	{
+		String indexPath = Settings.get().getGeoNamesIndex();
+		if (!Util.isBlank(indexPath))
+		{
+			return searchIndex(indexPath.trim(), text, type);
+		}
+
 		try
 		{
 			text = URLEncoder.encode(text, "UTF-8");
@@ -153,6 +172,71 @@ public class GeoNamesSearch
 		}
 	}
 
+	private static Results searchIndex(String indexPath, String text, SearchType type)
+	{
+		GeoNamesIndex index;
+		try
+		{
+			index = getLocalIndex(indexPath);
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			return new Results("Error opening GeoNames index: " + e.getMessage());
+		}
+
+		List<GeoName> places = new ArrayList<GeoName>();
+		for (GeoNamesIndex.Record record : index.search(text, type.indexMode, MAX_INDEX_RESULTS))
+		{
+			LatLon latlon = LatLon.fromDegrees(record.latitude, record.longitude);
+			ColorFont colorFont = colorFonts.get(record.featureClass);
+			if (colorFont == null)
+			{
+				colorFont = defaultColorFont;
+			}
+
+			GeoName place =
+					new GeoName(record.name, record.country, record.geonameId, latlon, record.featureClass,
+							GeoNamesIndex.getFeatureClassName(record.featureClass), record.featureCode,
+							index.getFeatureCodeName(record.featureClass, record.featureCode), colorFont);
+			places.add(place);
+		}
+		return new Results(places);
+	}
+
+	/**
+	 * @return The local GeoNames index configured in the {@link Settings}, or
+	 *         null if no index is configured or it couldn't be opened
+	 */
+	public static GeoNamesIndex getLocalIndex()
+	{
+		String indexPath = Settings.get().getGeoNamesIndex();
+		if (Util.isBlank(indexPath))
+		{
+			return null;
+		}
+
+		try
+		{
+			return getLocalIndex(indexPath.trim());
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private static synchronized GeoNamesIndex getLocalIndex(String indexPath) throws IOException
+	{
+		if (localIndex == null || !indexPath.equals(localIndexPath))
+		{
+			localIndex = GeoNamesIndex.open(new File(indexPath));
+			localIndexPath = indexPath;
+		}
+		return localIndex;
+	}
+
 	private static Results parse(Document document)
 	{
 		NodeList resultsCount = document.getElementsByTagName("totalResultsCount");
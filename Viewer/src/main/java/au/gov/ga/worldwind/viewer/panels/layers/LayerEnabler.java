@@ -85,8 +85,9 @@ public class LayerEnabler implements HierarchicalListener
 	private final Set<Hierarchical> hierarchicalListenees = new HashSet<Hierarchical>();
 	private final Set<ILayerNode> connectedHierarchicalLayerNodes = new HashSet<ILayerNode>();
 
-	private static ExecutorService loaderService = Executors.newSingleThreadExecutor(new DaemonThreadFactory(
-			"WMS layer loader"));
+	private static final int LOADER_THREADS = 4;
+	private static ExecutorService loaderService = Executors.newFixedThreadPool(LOADER_THREADS,
+			new DaemonThreadFactory("WMS layer loader"));
 
 	public LayerEnabler(WorldWindow wwd)
 	{
@@ -232,8 +233,7 @@ public class LayerEnabler implements HierarchicalListener
 
 	private void loadWmsLayer(final WmsLayerNode node)
 	{
-		final int index = nodes.indexOf(node);
-		if (index < 0) //layer must have been removed during loading
+		if (nodes.indexOf(node) < 0) //layer must have been removed during loading
 		{
 			return;
 		}
@@ -270,12 +270,8 @@ public class LayerEnabler implements HierarchicalListener
 								.getWmsParams());
 				loadedLayer.setLegendURL(node.getLegendURL());
 
-				Wrapper wrapper = wrappers.get(index);
-				wrapper.setLoaded(loadedLayer);
-
-				setLayerLoading(node, false, true);
-
-				refreshLists();
+				//WMS layers are loaded concurrently, so the node's index must be found under the lock
+				handleLoad(node, loadedLayer);
 			}
 		});
 	}
@@ -366,7 +362,13 @@ public class LayerEnabler implements HierarchicalListener
 		}
 	}
 
-	private synchronized void handleResult(ILayerNode node, RetrievalResult result)
+	/**
+	 * Handle the result of a layer definition download. Not synchronized, so
+	 * that layer definitions downloaded concurrently are parsed concurrently;
+	 * the loaded layer is added under the lock in
+	 * {@link #setLoaded(ILayerNode, LoadedLayer, boolean)}.
+	 */
+	private void handleResult(ILayerNode node, RetrievalResult result)
 	{
 		if (result.getError() != null)
 		{
@@ -410,6 +412,12 @@ public class LayerEnabler implements HierarchicalListener
 			return;
 		}
 
+		//if it was a download, have to refresh the layer list
+		setLoaded(node, loaded, !result.isFromCache());
+	}
+
+	private synchronized void setLoaded(ILayerNode node, LoadedLayer loaded, boolean refresh)
+	{
 		int index = nodes.indexOf(node);
 		if (index < 0) //layer must have been removed during loading
 		{
@@ -419,8 +427,7 @@ public class LayerEnabler implements HierarchicalListener
 		Wrapper wrapper = wrappers.get(index);
 		wrapper.setLoaded(loaded);
 
-		//must've been a download, so have to refresh the layer list
-		if (!result.isFromCache())
+		if (refresh)
 		{
 			refreshLists();
 			if (node.hasError())
@@ -26,9 +26,11 @@ import java.net.URL;
 
 import org.w3c.dom.Element;
 
+import au.gov.ga.worldwind.common.layers.geonames.GeoNamesLayer;
 import au.gov.ga.worldwind.common.layers.kml.KMLLayer;
 import au.gov.ga.worldwind.common.util.AVKeyMore;
 import au.gov.ga.worldwind.common.util.XMLUtil;
+import au.gov.ga.worldwind.viewer.panels.geonames.GeoNamesSearch;
 
 /**
  * Helper class for loading layers from XML. Uses the layer factory and
@@ -109,6 +111,16 @@ public class LayerLoader
 			throw new Exception("Error reading file");
 		}
 
+		if (o instanceof GeoNamesLayer)
+		{
+			//use the local index from the settings, unless the layer definition specifies one
+			GeoNamesLayer geonames = (GeoNamesLayer) o;
+			if (geonames.getIndex() == null)
+			{
+				geonames.setIndex(GeoNamesSearch.getLocalIndex());
+			}
+		}
+
 		LoadedLayer loaded = new LoadedLayer(o, params);
 		loaded.setLegendURL(legend);
 		loaded.setQueryURL(query);
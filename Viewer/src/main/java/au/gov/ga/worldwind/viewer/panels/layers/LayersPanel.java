@@ -31,6 +31,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.DropMode;
 import javax.swing.ImageIcon;
@@ -605,19 +606,30 @@ public class LayersPanel extends AbstractLayersPanel
 
 	private void addDefaultLayersFromDataset(IDataset dataset)
 	{
-		if (dataset instanceof ILazyDataset && dataset.getChildren().isEmpty())
+		if (dataset instanceof ILazyDataset && !((ILazyDataset) dataset).isLoaded())
 		{
 			final ILazyDataset lazy = (ILazyDataset) dataset;
-			lazy.addListener(new LazyLoadListener()
+			final AtomicBoolean added = new AtomicBoolean(false);
+			LazyLoadListener listener = new LazyLoadListener()
 			{
 				@Override
 				public void loaded(ILazyTreeObject object)
 				{
-					addDefaultLayersFromDataset(lazy, new ArrayList<IData>());
 					lazy.removeListener(this);
-					tree.relayoutOnEDT();
+					if (added.compareAndSet(false, true))
+					{
+						addDefaultLayersFromDataset(lazy, new ArrayList<IData>());
+						tree.relayoutOnEDT();
+					}
 				}
-			});
+			};
+			lazy.addListener(listener);
+
+			//the dataset may have finished loading in the background before the listener was added
+			if (lazy.isLoaded())
+			{
+				listener.loaded(lazy);
+			}
 		}
 		else
 		{
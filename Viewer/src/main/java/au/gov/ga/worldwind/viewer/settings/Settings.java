@@ -139,6 +139,7 @@ public class Settings implements StereoViewParameters
 	private boolean showDownloads = true;
 	private int placesPause = 1000;
 	private double fieldOfView = 45.0;
+	private String geoNamesIndex = null;
 
 	private int splitLocation = 300;
 	private List<ThemePanelProperties> panelProperties = new ArrayList<ThemePanelProperties>();
@@ -556,6 +557,27 @@ public class Settings implements StereoViewParameters
 		this.fieldOfView = fieldOfView;
 	}
 
+	/**
+	 * @return Path to a local GeoNames index file (created by the
+	 *         GeoNamesImporter) used for place name searches and by GeoNames
+	 *         layers, or null if geonames.org is used
+	 */
+	public String getGeoNamesIndex()
+	{
+		return geoNamesIndex;
+	}
+
+	/**
+	 * Set the path to a local GeoNames index file used for place name
+	 * searches; null or blank to search geonames.org
+	 * 
+	 * @param geoNamesIndex
+	 */
+	public void setGeoNamesIndex(String geoNamesIndex)
+	{
+		this.geoNamesIndex = geoNamesIndex;
+	}
+
 	/**
 	 * @return Saved theme panel properties (enabled & expanded state, size
 	 *         weight)
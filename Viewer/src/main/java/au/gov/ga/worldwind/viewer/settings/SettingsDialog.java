@@ -86,6 +86,7 @@ public class SettingsDialog extends JDialog
 	private JSlider viewIteratorSpeedSlider;
 	private JLabel viewIteratorSpeedLabel;
 	private JIntegerField annotationsPauseText;
+	private JTextField geoNamesIndexText;
 	private JCheckBox showDownloadsCheck;
 
 	private JRadioButton spanDisplayRadio;
@@ -232,6 +233,7 @@ public class SettingsDialog extends JDialog
 		double viewIteratorSpeed = sliderToSpeed(viewIteratorSpeedSlider.getValue());
 		Integer annotationsPause = annotationsPauseText.getValue();
 		boolean showDownloads = showDownloadsCheck.isSelected();
+		String geoNamesIndex = geoNamesIndexText.getText().trim();
 
 		Proxy proxy = new Proxy();
 		proxy.setEnabled(proxyEnabledCheck.isSelected());
@@ -277,6 +279,7 @@ public class SettingsDialog extends JDialog
 				settings.setPlacesPause(annotationsPause);
 			}
 			settings.setShowDownloads(showDownloads);
+			settings.setGeoNamesIndex(geoNamesIndex.length() == 0 ? null : geoNamesIndex);
 
 			settings.setProxy(proxy);
 		}
@@ -797,10 +800,33 @@ public class SettingsDialog extends JDialog
 		c.insets = new Insets(SPACING, 0, 0, SPACING);
 		panel2.add(label, c);
 
+
+		panel2 = new JPanel(new GridBagLayout());
+		c = new GridBagConstraints();
+		c.gridy = 4;
+		c.fill = GridBagConstraints.HORIZONTAL;
+		panel.add(panel2, c);
+
+		label = new JLabel("Local GeoNames index:");
+		c = new GridBagConstraints();
+		c.gridx = 0;
+		c.insets = new Insets(SPACING, SPACING, 0, SPACING);
+		panel2.add(label, c);
+
+		geoNamesIndexText = new JTextField(settings.getGeoNamesIndex());
+		geoNamesIndexText
+				.setToolTipText("Index file used to search place names offline; leave blank to search geonames.org");
+		c = new GridBagConstraints();
+		c.gridx = 1;
+		c.weightx = 1;
+		c.insets = new Insets(SPACING, 0, 0, SPACING);
+		c.fill = GridBagConstraints.HORIZONTAL;
+		panel2.add(geoNamesIndexText, c);
+
 		showDownloadsCheck = new JCheckBox("Display downloading tiles");
 		showDownloadsCheck.setSelected(settings.isShowDownloads());
 		c = new GridBagConstraints();
-		c.gridy = 4;
+		c.gridy = 5;
 		c.insets = new Insets(SPACING, SPACING, SPACING, SPACING);
 		c.anchor = GridBagConstraints.WEST;
 		panel.add(showDownloadsCheck, c);
@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.viewer.theme;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import au.gov.ga.worldwind.common.downloader.Downloader;
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
+import au.gov.ga.worldwind.viewer.application.StartupTimer;
+import au.gov.ga.worldwind.viewer.panels.dataset.IData;
+import au.gov.ga.worldwind.viewer.panels.dataset.IDataset;
+import au.gov.ga.worldwind.viewer.panels.dataset.ILayerDefinition;
+import au.gov.ga.worldwind.viewer.panels.dataset.ILazyDataset;
+
+/**
+ * Loads the documents referenced by a {@link Theme} in the background while
+ * the application starts, so that they are ready (or already downloading) by
+ * the time the dataset and layer panels need them.
+ * <p/>
+ * The theme's documents form a dependency graph: the theme references datasets
+ * and layer definitions, and each dataset references the default layer
+ * definitions within it. Each document is loaded as soon as the document that
+ * references it has been loaded, on a bounded pool of threads. Datasets are
+ * loaded (downloaded and parsed) using {@link ILazyDataset#load()}; layer
+ * definitions are downloaded into the {@link Downloader}'s cache, to be parsed
+ * by the LayerEnabler when the layer is enabled.
+ * <p/>
+ * Cached documents are used immediately, and revalidated with the server in
+ * the background. The completion of each group of documents is recorded with
+ * the {@link StartupTimer}.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class StartupLoader
+{
+	public static final int DEFAULT_PARALLELISM = 4;
+
+	private static final Logger logger = Logging.logger();
+
+	private final ThreadPoolExecutor executor;
+	private final Set<String> requestedLayers = Collections.synchronizedSet(new HashSet<String>());
+	private final AtomicInteger pendingDatasets = new AtomicInteger();
+	private final AtomicInteger pendingLayers = new AtomicInteger();
+
+	public StartupLoader()
+	{
+		this(DEFAULT_PARALLELISM);
+	}
+
+	public StartupLoader(int parallelism)
+	{
+		executor =
+				new ThreadPoolExecutor(parallelism, parallelism, 10, TimeUnit.SECONDS,
+						new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("Startup loader"));
+		//let the threads die once startup is complete
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Start loading the documents referenced by the given theme. Returns
+	 * immediately.
+	 * 
+	 * @param theme
+	 */
+	public void load(Theme theme)
+	{
+		//hold the counts above zero until everything referenced by the theme has been submitted; the layers
+		//count is held twice, once for this method and once for the datasets (released in datasetComplete())
+		pendingDatasets.incrementAndGet();
+		pendingLayers.incrementAndGet();
+		pendingLayers.incrementAndGet();
+
+		for (IDataset dataset : theme.getDatasets())
+		{
+			if (dataset instanceof ILazyDataset)
+			{
+				submitDataset((ILazyDataset) dataset);
+			}
+		}
+		for (ThemeLayer layer : theme.getLayers())
+		{
+			submitLayer(layer.getLayerURL());
+		}
+
+		datasetComplete();
+		layerComplete();
+	}
+
+	private void submitDataset(final ILazyDataset dataset)
+	{
+		pendingDatasets.incrementAndGet();
+		executor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					if (!dataset.isLoaded())
+					{
+						dataset.load();
+					}
+					submitDefaultLayers(dataset);
+				}
+				catch (Exception e)
+				{
+					logger.log(Level.WARNING, "Error loading dataset '" + dataset.getName() + "'", e);
+				}
+				finally
+				{
+					datasetComplete();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Submit the layer definitions that will be enabled by default within the
+	 * given dataset. Child datasets that are lazily loaded are not searched.
+	 */
+	private void submitDefaultLayers(IDataset dataset)
+	{
+		for (IData child : dataset.getChildren())
+		{
+			if (child instanceof ILayerDefinition)
+			{
+				ILayerDefinition layer = (ILayerDefinition) child;
+				if (layer.isDefault() && layer.isEnabled())
+				{
+					submitLayer(layer.getLayerURL());
+				}
+			}
+			else if (child instanceof IDataset && !(child instanceof ILazyDataset))
+			{
+				submitDefaultLayers((IDataset) child);
+			}
+		}
+	}
+
+	private void submitLayer(final URL url)
+	{
+		if (url == null || !requestedLayers.add(url.toExternalForm()))
+		{
+			return;
+		}
+
+		pendingLayers.incrementAndGet();
+		executor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					//unzipped, as the LayerEnabler downloads layer definitions
+					Downloader.downloadImmediatelyAndRevalidate(url, true);
+				}
+				catch (Exception e)
+				{
+					logger.log(Level.WARNING, "Error downloading layer definition " + url, e);
+				}
+				finally
+				{
+					layerComplete();
+				}
+			}
+		});
+	}
+
+	private void datasetComplete()
+	{
+		if (pendingDatasets.decrementAndGet() == 0)
+		{
+			StartupTimer.phaseComplete(StartupTimer.DATASETS_LOADED);
+			//datasets submit their default layers before completing
+			layerComplete();
+		}
+	}
+
+	private void layerComplete()
+	{
+		//datasets hold a count on the layers until they have submitted their default layers
+		if (pendingLayers.decrementAndGet() == 0)
+		{
+			StartupTimer.phaseComplete(StartupTimer.LAYERS_LOADED);
+		}
+	}
+}
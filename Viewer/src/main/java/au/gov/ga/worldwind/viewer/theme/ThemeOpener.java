@@ -29,11 +29,16 @@ import au.gov.ga.worldwind.common.downloader.HttpException;
 import au.gov.ga.worldwind.common.downloader.RetrievalResult;
 import au.gov.ga.worldwind.common.util.XMLUtil;
 import au.gov.ga.worldwind.viewer.application.Application;
+import au.gov.ga.worldwind.viewer.application.StartupTimer;
 
 /**
  * Helper class that downloads a {@link Theme} from a url, and notifies a
  * delegate when the download is complete. Displays a small progress dialog
  * during the download.
+ * <p/>
+ * Once the theme has been created, the datasets and layer definitions it
+ * references are loaded in the background by a {@link StartupLoader} while the
+ * application is being created.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -63,7 +68,10 @@ public class ThemeOpener
 
 		try
 		{
-			RetrievalResult result = Downloader.downloadImmediatelyIfModified(url, true);
+			//a cached remote theme is used immediately, and revalidated in the background
+			RetrievalResult result =
+					file ? Downloader.downloadImmediatelyIfModified(url, true) : Downloader
+							.downloadImmediatelyAndRevalidate(url, true);
 			if (progress.isCanceled())
 			{
 				return null;
@@ -76,6 +84,8 @@ public class ThemeOpener
 			{
 				throw new Exception("Could not create theme from XML document");
 			}
+			StartupTimer.phaseComplete(StartupTimer.THEME_LOADED);
+			new StartupLoader().load(theme);
 
 			progress.close();
 			return delegate.opened(theme, element, url);
@@ -115,6 +125,8 @@ public class ThemeOpener
 			{
 				throw new Exception("Could not create theme from XML document");
 			}
+			StartupTimer.phaseComplete(StartupTimer.THEME_LOADED);
+			new StartupLoader().load(theme);
 			return delegate.opened(theme, element, url);
 		}
 		catch (Exception e)
@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.viewer.components.sectorsaver;
+
+import static org.junit.Assert.*;
+import gov.nasa.worldwind.geom.Sector;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link TiledGeoTiffWriter} class
+ */
+public class TiledGeoTiffWriterTest
+{
+	private static final Sector SECTOR = Sector.fromDegrees(-40, -10, 110, 160);
+
+	private File file;
+
+	@Before
+	public void setup() throws Exception
+	{
+		file = File.createTempFile("tiled", ".tif");
+	}
+
+	@After
+	public void tearDown()
+	{
+		file.delete();
+	}
+
+	@Test
+	public void testClassicTiffLayout() throws Exception
+	{
+		assertTiffLayout(false);
+	}
+
+	@Test
+	public void testBigTiffLayout() throws Exception
+	{
+		assertTiffLayout(true);
+	}
+
+	@Test
+	public void testRequiresBigTiff()
+	{
+		assertFalse(TiledGeoTiffWriter.requiresBigTiff(30000, 30000, 512));
+		assertTrue(TiledGeoTiffWriter.requiresBigTiff(40000, 40000, 512));
+		//the tile data alone fits, but not with the 5.56 million tile offsets and byte counts
+		assertTrue(TiledGeoTiffWriter.requiresBigTiff(2780 * 16, 2000 * 16, 16));
+	}
+
+	@Test
+	public void testClassicTiffReadByImageIO() throws Exception
+	{
+		//ImageIO only has a TIFF reader on Java 9+, or with JAI Image I/O installed
+		Assume.assumeTrue(ImageIO.getImageReadersBySuffix("tif").hasNext());
+
+		writeTiles(false);
+		BufferedImage image = ImageIO.read(file);
+		assertNotNull(image);
+		assertEquals(40, image.getWidth());
+		assertEquals(20, image.getHeight());
+		for (int y = 0; y < 20; y++)
+		{
+			for (int x = 0; x < 40; x++)
+			{
+				assertEquals(pixel(x, y), image.getRGB(x, y) & 0xffffff);
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTileOutsideImage() throws Exception
+	{
+		TiledGeoTiffWriter writer = new TiledGeoTiffWriter(file, 40, 20, 32, SECTOR, false);
+		try
+		{
+			writer.writeTile(2, 0, new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB));
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	private void assertTiffLayout(boolean bigTiff) throws Exception
+	{
+		writeTiles(bigTiff);
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			assertEquals('M', raf.read());
+			assertEquals('M', raf.read());
+			assertEquals(bigTiff ? 43 : 42, raf.readShort());
+			long ifd;
+			if (bigTiff)
+			{
+				assertEquals(8, raf.readShort());
+				assertEquals(0, raf.readShort());
+				ifd = raf.readLong();
+			}
+			else
+			{
+				ifd = raf.readInt() & 0xffffffffL;
+			}
+
+			Map<Integer, long[]> tags = readIntegerTags(raf, ifd, bigTiff);
+			assertEquals(40, tags.get(256)[0]);
+			assertEquals(20, tags.get(257)[0]);
+			assertArrayEquals(new long[] { 8, 8, 8 }, tags.get(258));
+			assertEquals(16, tags.get(322)[0]);
+			assertEquals(16, tags.get(323)[0]);
+			assertEquals(6, tags.get(324).length);
+			assertEquals(16 * 16 * 3, tags.get(325)[5]);
+			assertEquals(4326, tags.get(34735)[15]);
+
+			long[] offsets = tags.get(324);
+			assertEquals(file.length(), offsets[5] + 16 * 16 * 3);
+			for (int[] xy : new int[][] { { 0, 0 }, { 39, 0 }, { 17, 5 }, { 39, 19 }, { 0, 19 }, { 33, 18 } })
+			{
+				int tile = (xy[1] / 16) * 3 + xy[0] / 16;
+				raf.seek(offsets[tile] + ((xy[1] % 16) * 16 + xy[0] % 16) * 3);
+				int rgb = (raf.read() << 16) | (raf.read() << 8) | raf.read();
+				assertEquals(pixel(xy[0], xy[1]), rgb);
+			}
+
+			//padding outside the image is black
+			raf.seek(offsets[5] + (15 * 16 + 15) * 3);
+			assertEquals(0, raf.read());
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	private void writeTiles(boolean bigTiff) throws Exception
+	{
+		//3 x 2 tiles, with partial tiles on the right and bottom
+		TiledGeoTiffWriter writer = new TiledGeoTiffWriter(file, 40, 20, 16, SECTOR, bigTiff);
+		assertEquals(3, writer.getTilesAcross());
+		assertEquals(2, writer.getTilesDown());
+
+		//write the tiles out of order
+		for (int row = writer.getTilesDown() - 1; row >= 0; row--)
+		{
+			for (int column = 0; column < writer.getTilesAcross(); column++)
+			{
+				int w = Math.min(16, 40 - column * 16);
+				int h = Math.min(16, 20 - row * 16);
+				BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+				for (int y = 0; y < h; y++)
+				{
+					for (int x = 0; x < w; x++)
+					{
+						image.setRGB(x, y, pixel(column * 16 + x, row * 16 + y));
+					}
+				}
+				writer.writeTile(column, row, image);
+			}
+		}
+		writer.close();
+	}
+
+	private static int pixel(int x, int y)
+	{
+		return (x * 5) << 16 | (y * 7) << 8 | ((x + y) & 0xff);
+	}
+
+	private static Map<Integer, long[]> readIntegerTags(RandomAccessFile raf, long ifd, boolean bigTiff)
+			throws Exception
+	{
+		Map<Integer, long[]> tags = new HashMap<Integer, long[]>();
+		raf.seek(ifd);
+		long count = bigTiff ? raf.readLong() : raf.readShort();
+		for (int i = 0; i < count; i++)
+		{
+			long entry = ifd + (bigTiff ? 8 + i * 20 : 2 + i * 12);
+			raf.seek(entry);
+			int tag = raf.readShort() & 0xffff;
+			int type = raf.readShort();
+			int n = (int) (bigTiff ? raf.readLong() : raf.readInt());
+			int size = type == 3 ? 2 : type == 4 ? 4 : 8;
+			if (type == 12)
+			{
+				continue;
+			}
+			long valueOffset = raf.getFilePointer();
+			if (n * size > (bigTiff ? 8 : 4))
+			{
+				valueOffset = bigTiff ? raf.readLong() : raf.readInt() & 0xffffffffL;
+			}
+			raf.seek(valueOffset);
+			long[] values = new long[n];
+			for (int j = 0; j < n; j++)
+			{
+				values[j] =
+						size == 2 ? raf.readShort() & 0xffff : size == 4 ? raf.readInt() & 0xffffffffL : raf
+								.readLong();
+			}
+			tags.put(tag, values);
+		}
+		return tags;
+	}
+}
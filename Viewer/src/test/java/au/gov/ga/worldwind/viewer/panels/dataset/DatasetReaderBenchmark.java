@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.viewer.panels.dataset;
+
+import java.io.ByteArrayInputStream;
+import java.net.URL;
+
+import au.gov.ga.worldwind.common.util.XMLUtil;
+
+/**
+ * Compares the DOM/XPath and streaming {@link DatasetReader}s on a generated
+ * dataset list. Run as an application; the optional first argument is the
+ * number of layer entries to generate (default 10000).
+ */
+public class DatasetReaderBenchmark
+{
+	private static final int ITERATIONS = 10;
+
+	public static void main(String[] args) throws Exception
+	{
+		int entries = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		byte[] xml = generate(entries).getBytes("UTF-8");
+		URL context = new URL("http://example.com/datasets/list.xml");
+		System.out.println("Generated " + entries + " entries (" + xml.length / 1024 + " KB)");
+
+		//warm up both paths before timing
+		for (int i = 0; i < 3; i++)
+		{
+			DatasetReader.read(XMLUtil.openDocument(new ByteArrayInputStream(xml)), context);
+			DatasetReader.read(new ByteArrayInputStream(xml), context);
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			DatasetReader.read(XMLUtil.openDocument(new ByteArrayInputStream(xml)), context);
+		}
+		long dom = (System.nanoTime() - start) / ITERATIONS;
+
+		start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			DatasetReader.read(new ByteArrayInputStream(xml), context);
+		}
+		long stax = (System.nanoTime() - start) / ITERATIONS;
+
+		System.out.println("DOM/XPath: " + dom / 1000000 + " ms per document");
+		System.out.println("StAX:      " + stax / 1000000 + " ms per document");
+	}
+
+	/**
+	 * Generate a dataset list containing the given number of layers, grouped
+	 * into nested datasets of 100 with a link at the end of each group.
+	 */
+	private static String generate(int entries)
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<DatasetList>\n");
+		int groups = (entries + 99) / 100;
+		int count = 0;
+		for (int g = 0; g < groups; g++)
+		{
+			sb.append("\t<Dataset name=\"Group ").append(g).append("\" info=\"group").append(g)
+					.append(".html\" icon=\"../icons/folder.png\">\n");
+			for (int i = 0; i < 100 && count < entries; i++, count++)
+			{
+				sb.append("\t\t<Layer name=\"Layer ").append(count).append("\" url=\"layers/layer").append(count)
+						.append(".xml\" info=\"layers/layer").append(count)
+						.append(".html\" icon=\"../icons/layer.png\" default=\"").append(i == 0)
+						.append("\" enabled=\"").append(i % 10 != 0).append("\"/>\n");
+			}
+			sb.append("\t\t<Link name=\"More ").append(g).append("\" url=\"more").append(g).append(".xml\"/>\n");
+			sb.append("\t</Dataset>\n");
+		}
+		sb.append("</DatasetList>\n");
+		return sb.toString();
+	}
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.viewer.panels.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.net.URL;
+import java.util.List;
+
+import org.junit.Test;
+
+import au.gov.ga.worldwind.common.util.XMLUtil;
+
+/**
+ * Unit tests for the {@link DatasetReader} class
+ */
+public class DatasetReaderTest
+{
+	private static final String XML = "<?xml version=\"1.0\"?>"
+			+ "<DatasetList>"
+			+ "<Dataset name=\"Imagery\" info=\"info.html\" base=\"true\">"
+			+ "<Layer name=\"Landsat\" url=\"landsat.xml\" icon=\"icon.png\" default=\"true\"/>"
+			+ "<Dataset name=\"Nested\">"
+			+ "<Layer name=\"Disabled\" url=\"disabled.xml\" enabled=\"false\"><Ignored name=\"x\"/></Layer>"
+			+ "</Dataset>"
+			+ "</Dataset>"
+			+ "<Link name=\"Remote\" url=\"http://example.com/datasets.xml\"/>"
+			+ "<Unknown><Layer name=\"Skipped\"/></Unknown>"
+			+ "</DatasetList>";
+
+	@Test
+	public void testStreamingReaderBuildsTree() throws Exception
+	{
+		URL context = new URL("http://example.com/root/datasets.xml");
+		IDataset root = DatasetReader.read(new ByteArrayInputStream(XML.getBytes("UTF-8")), context);
+
+		assertEquals(2, root.getChildren().size());
+
+		IDataset imagery = (IDataset) root.getChildren().get(0);
+		assertEquals("Imagery", imagery.getName());
+		assertEquals(new URL(context, "info.html"), imagery.getInfoURL());
+		assertTrue(imagery.isBase());
+		assertEquals(2, imagery.getChildren().size());
+
+		ILayerDefinition landsat = (ILayerDefinition) imagery.getChildren().get(0);
+		assertEquals(new URL(context, "landsat.xml"), landsat.getLayerURL());
+		assertTrue(landsat.isDefault());
+		assertTrue(landsat.isEnabled());
+		assertFalse(landsat.isBase());
+
+		IDataset nested = (IDataset) imagery.getChildren().get(1);
+		assertNull(nested.getInfoURL());
+		assertEquals(1, nested.getChildren().size());
+		assertFalse(((ILayerDefinition) nested.getChildren().get(0)).isEnabled());
+
+		assertTrue(root.getChildren().get(1) instanceof ILazyDataset);
+	}
+
+	@Test
+	public void testStreamingReaderMatchesDomReader() throws Exception
+	{
+		URL context = new URL("http://example.com/root/datasets.xml");
+		IDataset dom = DatasetReader.read(XMLUtil.openDocument(new ByteArrayInputStream(XML.getBytes("UTF-8"))), context);
+		IDataset stax = DatasetReader.read(new ByteArrayInputStream(XML.getBytes("UTF-8")), context);
+		assertSameTree(dom.getChildren(), stax.getChildren());
+	}
+
+	private static void assertSameTree(List<IData> expected, List<IData> actual)
+	{
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++)
+		{
+			IData e = expected.get(i);
+			IData a = actual.get(i);
+			assertEquals(e.getClass(), a.getClass());
+			assertEquals(e.getName(), a.getName());
+			assertEquals(e.getInfoURL(), a.getInfoURL());
+			assertEquals(e.getIconURL(), a.getIconURL());
+			assertEquals(e.isBase(), a.isBase());
+			if (e instanceof ILayerDefinition)
+			{
+				ILayerDefinition el = (ILayerDefinition) e;
+				ILayerDefinition al = (ILayerDefinition) a;
+				assertEquals(el.getLayerURL(), al.getLayerURL());
+				assertEquals(el.isDefault(), al.isDefault());
+				assertEquals(el.isEnabled(), al.isEnabled());
+			}
+			if (e instanceof IDataset && !(e instanceof ILazyDataset))
+			{
+				assertSameTree(((IDataset) e).getChildren(), ((IDataset) a).getChildren());
+			}
+		}
+	}
+}